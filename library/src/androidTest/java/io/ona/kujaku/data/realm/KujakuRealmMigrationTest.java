@@ -0,0 +1,123 @@
+package io.ona.kujaku.data.realm;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import io.ona.kujaku.data.MapBoxDownloadTask;
+import io.ona.kujaku.data.realm.objects.MapBoxOfflineQueueTask;
+import io.realm.DynamicRealm;
+import io.realm.DynamicRealmObject;
+import io.realm.FieldAttribute;
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import io.realm.RealmObjectSchema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Opens a version 1 realm, as created by the releases before the {@code mapName} field, with the
+ * current schema
+ */
+public class KujakuRealmMigrationTest extends RealmRelatedInstrumentedTest {
+
+    private static final String REALM_NAME = "kujaku-migration-test.realm";
+
+    private RealmConfiguration v1Configuration;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        Realm.init(context);
+
+        v1Configuration = new RealmConfiguration.Builder()
+                .name(REALM_NAME)
+                .schemaVersion(1)
+                .build();
+        Realm.deleteRealm(v1Configuration);
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        Realm.deleteRealm(v1Configuration);
+    }
+
+    @Test
+    public void migrateShouldFillMapNameAndIndexQueryFieldsWhenGivenVersion1Realm() throws JSONException {
+        createVersion1Realm();
+
+        RealmConfiguration configuration = new RealmConfiguration.Builder()
+                .name(REALM_NAME)
+                .schemaVersion(RealmDatabase.VERSION)
+                .migration(new KujakuRealmMigration())
+                .build();
+
+        Realm realm = Realm.getInstance(configuration);
+        try {
+            assertEquals(RealmDatabase.VERSION, realm.getVersion());
+
+            RealmObjectSchema taskSchema = realm.getSchema().get(KujakuRealmMigration.MAP_BOX_OFFLINE_QUEUE_TASK);
+            assertTrue(taskSchema.hasIndex("mapName"));
+            assertTrue(taskSchema.hasIndex("taskType"));
+            assertTrue(taskSchema.hasIndex("taskStatus"));
+
+            MapBoxOfflineQueueTask downloadTask = realm.where(MapBoxOfflineQueueTask.class)
+                    .equalTo("id", "download-task")
+                    .findFirst();
+            assertEquals("kampala-east", downloadTask.getMapName());
+            assertEquals(downloadTask, realm.where(MapBoxOfflineQueueTask.class)
+                    .equalTo("mapName", "kampala-east")
+                    .findFirst());
+
+            MapBoxOfflineQueueTask invalidTask = realm.where(MapBoxOfflineQueueTask.class)
+                    .equalTo("id", "invalid-task")
+                    .findFirst();
+            assertNull(invalidTask.getMapName());
+        } finally {
+            realm.close();
+        }
+    }
+
+    private void createVersion1Realm() throws JSONException {
+        DynamicRealm dynamicRealm = DynamicRealm.getInstance(v1Configuration);
+        try {
+            dynamicRealm.beginTransaction();
+            dynamicRealm.getSchema()
+                    .create(KujakuRealmMigration.MAP_BOX_OFFLINE_QUEUE_TASK)
+                    .addField("id", String.class, FieldAttribute.PRIMARY_KEY)
+                    .addField("taskType", String.class)
+                    .addField("taskStatus", int.class)
+                    .addField("task", String.class)
+                    .addField("dateCreated", Date.class)
+                    .addField("dateUpdated", Date.class);
+
+            JSONObject task = new JSONObject();
+            task.put(MapBoxDownloadTask.MAP_NAME, "kampala-east");
+            createVersion1Task(dynamicRealm, "download-task", task.toString());
+            createVersion1Task(dynamicRealm, "invalid-task", "not a json object");
+
+            dynamicRealm.commitTransaction();
+            assertEquals(1, dynamicRealm.getVersion());
+        } finally {
+            dynamicRealm.close();
+        }
+    }
+
+    private void createVersion1Task(DynamicRealm dynamicRealm, String id, String task) {
+        Date now = new Date();
+        DynamicRealmObject realmObject = dynamicRealm.createObject(KujakuRealmMigration.MAP_BOX_OFFLINE_QUEUE_TASK, id);
+        realmObject.setString("taskType", MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD);
+        realmObject.setInt("taskStatus", MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED);
+        realmObject.setString("task", task);
+        realmObject.setDate("dateCreated", now);
+        realmObject.setDate("dateUpdated", now);
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 import io.ona.kujaku.BuildConfig;
@@ -19,6 +20,7 @@ import io.realm.RealmResults;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -96,7 +98,7 @@ public class RealmDatabaseTest extends RealmRelatedInstrumentedTest {
         }
 
         RealmResults<MapBoxOfflineQueueTask> realmResults = RealmDatabase.init(context)
-                .getTasks();
+                .getTasks(Realm.getDefaultInstance());
 
         for(int i = 0; i < downloadAndDeleteTasksLen; i++) {
             MapBoxOfflineQueueTask task = tasks[i];
@@ -211,7 +213,7 @@ public class RealmDatabaseTest extends RealmRelatedInstrumentedTest {
         addedRecords.add(mapBoxOfflineQueueTask);
         addedRecords.add(mapBoxOfflineQueueTask1);
 
-        RealmResults<MapBoxOfflineQueueTask> realmResults = realmDatabase.getPendingOfflineMapDownloadsWithSimilarNames(downloadMapName);
+        RealmResults<MapBoxOfflineQueueTask> realmResults = realmDatabase.getPendingOfflineMapDownloadsWithSimilarNames(Realm.getDefaultInstance(), downloadMapName);
 
         assertEquals(2, realmResults.size());
     }
@@ -276,7 +278,7 @@ public class RealmDatabaseTest extends RealmRelatedInstrumentedTest {
         Realm realm = Realm.getDefaultInstance();
 
         while (true) {
-            MapBoxOfflineQueueTask nextTask = realmDatabase.getNextTask();
+            MapBoxOfflineQueueTask nextTask = realmDatabase.getNextTask(realm);
 
             if (nextTask == null) {
                 break;
@@ -313,7 +315,7 @@ public class RealmDatabaseTest extends RealmRelatedInstrumentedTest {
 
         realm.commitTransaction();
 
-        MapBoxOfflineQueueTask nextTask = realmDatabase.getNextTask();
+        MapBoxOfflineQueueTask nextTask = realmDatabase.getNextTask(realm);
 
         assertEquals(expectedNextTask.getId(), nextTask.getId());
         assertEquals(expectedNextTask.getTask().toString(), nextTask.getTask().toString());
@@ -332,6 +334,48 @@ public class RealmDatabaseTest extends RealmRelatedInstrumentedTest {
 
     }
 
+    @Test
+    public void enqueueDownloadTasksShouldReplacePendingDownloadsWithSameMapNames() throws JSONException {
+        RealmDatabase realmDatabase = RealmDatabase.init(context);
+        Realm realm = Realm.getDefaultInstance();
+
+        String mapName = UUID.randomUUID().toString();
+        String secondMapName = UUID.randomUUID().toString();
+
+        MapBoxOfflineQueueTask pendingTask = MapBoxDownloadTask.constructMapBoxOfflineQueueTask(createSampleDownloadTask("com.android.developer", mapName, sampleMapBoxStyleURL));
+        String pendingTaskId = pendingTask.getId();
+
+        ArrayList<MapBoxDownloadTask> mapBoxDownloadTasks = new ArrayList<>();
+        mapBoxDownloadTasks.add(createSampleDownloadTask("com.android.developer", mapName, sampleMapBoxStyleURL));
+        mapBoxDownloadTasks.add(createSampleDownloadTask("com.android.developer", secondMapName, sampleMapBoxStyleURL));
+
+        List<MapBoxOfflineQueueTask> queuedTasks = realmDatabase.enqueueDownloadTasks(realm, mapBoxDownloadTasks);
+        addedRecords.addAll(queuedTasks);
+
+        assertEquals(2, queuedTasks.size());
+        assertEquals(mapName, queuedTasks.get(0).getMapName());
+        assertEquals(secondMapName, queuedTasks.get(1).getMapName());
+        assertTrue(queuedTasks.get(0).getDateUpdated().before(queuedTasks.get(1).getDateUpdated()));
+
+        RealmResults<MapBoxOfflineQueueTask> pendingTasks = realmDatabase.getPendingOfflineMapDownloadsWithSimilarNames(realm, mapName);
+        assertEquals(1, pendingTasks.size());
+        assertEquals(queuedTasks.get(0).getId(), pendingTasks.first().getId());
+        assertNull(realm.where(MapBoxOfflineQueueTask.class).equalTo("id", pendingTaskId).findFirst());
+    }
+
+    @Test
+    public void constructMapBoxOfflineQueueTaskShouldSetMapName() {
+        String mapName = UUID.randomUUID().toString();
+
+        MapBoxOfflineQueueTask downloadTask = MapBoxDownloadTask.constructMapBoxOfflineQueueTask(createSampleDownloadTask("com.android.developer", mapName, sampleMapBoxStyleURL));
+        MapBoxOfflineQueueTask deleteTask = MapBoxDeleteTask.constructMapBoxOfflineQueueTask(new MapBoxDeleteTask(mapName, UUID.randomUUID().toString()));
+        addedRecords.add(downloadTask);
+        addedRecords.add(deleteTask);
+
+        assertEquals(mapName, downloadTask.getMapName());
+        assertEquals(mapName, deleteTask.getMapName());
+    }
+
     /*
     ---------------------------
 
@@ -344,6 +388,42 @@ public class RealmDatabaseTest extends RealmRelatedInstrumentedTest {
         assertEquals(expectedDate.getTime(), actualDate.getTime());
     }
 
+    @Test
+    public void getTasksShouldNotTakeReferencesOfItsOwn() {
+        RealmDatabase realmDatabase = RealmDatabase.init(context);
+        RealmConfiguration realmConfiguration = Realm.getDefaultConfiguration();
+        int instanceCount = Realm.getLocalInstanceCount(realmConfiguration);
+
+        Realm realm = Realm.getDefaultInstance();
+        realmDatabase.getNextTask(realm);
+        realmDatabase.getNextTask(realm);
+        realmDatabase.getTasks(realm);
+        assertEquals(instanceCount + 1, Realm.getLocalInstanceCount(realmConfiguration));
+
+        realm.close();
+        assertEquals(instanceCount, Realm.getLocalInstanceCount(realmConfiguration));
+    }
+
+    @Test
+    public void getTasksResultsShouldStayValidWhenAnotherCallerClosesItsReference() {
+        RealmDatabase realmDatabase = RealmDatabase.init(context);
+        addedRecords.add(MapBoxDownloadTask.constructMapBoxOfflineQueueTask(createSampleDownloadTask("com.android.developer", UUID.randomUUID().toString(), sampleMapBoxStyleURL)));
+
+        // eg. an activity listing the queue while the download service performs it on the same thread
+        Realm activityRealm = Realm.getDefaultInstance();
+        RealmResults<MapBoxOfflineQueueTask> realmResults = realmDatabase.getTasks(activityRealm);
+
+        Realm serviceRealm = Realm.getDefaultInstance();
+        realmDatabase.getNextTask(serviceRealm);
+        serviceRealm.close();
+
+        assertTrue(realmResults.isValid());
+        assertTrue(realmResults.size() > 0);
+        assertTrue(realmResults.first().isValid());
+
+        activityRealm.close();
+    }
+
     private MapBoxDownloadTask createSampleDownloadTask(String packageName, String mapName, String mapBoxStyleURL) {
 
         return new MapBoxDownloadTask(
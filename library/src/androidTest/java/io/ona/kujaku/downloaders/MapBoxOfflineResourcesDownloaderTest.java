@@ -15,6 +15,7 @@ import com.mapbox.mapboxsdk.offline.OfflineRegionDefinition;
 import com.mapbox.mapboxsdk.offline.OfflineRegionStatus;
 import com.mapbox.mapboxsdk.offline.OfflineTilePyramidRegionDefinition;
 
+import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -27,6 +28,9 @@ import org.mockito.stubbing.Answer;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 
@@ -34,6 +38,7 @@ import io.ona.kujaku.BaseTest;
 import io.ona.kujaku.BuildConfig;
 import io.ona.kujaku.data.MapBoxDownloadTask;
 import io.ona.kujaku.listeners.IncompleteMapDownloadCallback;
+import io.ona.kujaku.listeners.OfflineRegionStatusesCallback;
 import io.ona.kujaku.listeners.OnDownloadMapListener;
 import io.ona.kujaku.utils.exceptions.OfflineMapDownloadException;
 
@@ -466,6 +471,77 @@ public class MapBoxOfflineResourcesDownloaderTest extends BaseTest {
         assertEquals("Map deleted", outputsFromCallbacks.get(0));
     }
 
+    @Test
+    public void getMapStatusesShouldReturnStatusesOfExistingMapsAndListOfflineRegionsOnce() throws Throwable {
+        downLatch = new CountDownLatch(1);
+        resetTestVariables();
+
+        createMapboxOfflineResourcesDownloaderInstanceOnUIThread();
+
+        // Replace the OfflineManager in the MapBoxOfflineResourcesDownloader with the Spied one
+        OfflineManager spiedOfflineManager = Mockito.spy(mapBoxOfflineResourcesDownloader.offlineManager);
+        mapBoxOfflineResourcesDownloader.offlineManager = spiedOfflineManager;
+
+        final OfflineRegionStatus offlineRegionStatus = Mockito.mock(OfflineRegionStatus.class);
+        String[] mapNames = new String[]{UUID.randomUUID().toString(), UUID.randomUUID().toString()};
+        for (String mapName : mapNames) {
+            JSONObject metadata = new JSONObject();
+            metadata.put(MapBoxOfflineResourcesDownloader.METADATA_JSON_FIELD_REGION_NAME, mapName);
+
+            OfflineRegion offlineRegion = createMockOfflineRegion(metadata.toString().getBytes(MapBoxOfflineResourcesDownloader.JSON_CHARSET), null, generateOfflineRegionId());
+            Mockito.doAnswer(new Answer() {
+                @Override
+                public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+                    OfflineRegion.OfflineRegionStatusCallback offlineRegionStatusCallback = invocationOnMock.getArgument(0);
+                    offlineRegionStatusCallback.onStatus(offlineRegionStatus);
+
+                    return null;
+                }
+            }).when(offlineRegion)
+                    .getStatus(Mockito.any(OfflineRegion.OfflineRegionStatusCallback.class));
+
+            offlineRegionsList.add(offlineRegion);
+        }
+
+        // Mock OfflineManager.listOfflineRegions calls
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+                OfflineManager.ListOfflineRegionsCallback listOfflineRegionsCallback = invocationOnMock.getArgument(0);
+                listOfflineRegionsCallback.onList(offlineRegionsList.toArray(new OfflineRegion[offlineRegionsList.size()]));
+
+                return null;
+            }
+        }).when(spiedOfflineManager)
+                .listOfflineRegions(Mockito.any(OfflineManager.ListOfflineRegionsCallback.class));
+
+        final Map<String, OfflineRegionStatus> mapStatuses = new HashMap<>();
+        mapBoxOfflineResourcesDownloader.getMapStatuses(Arrays.asList(mapNames[0], mapNames[1], "Non-existent map name"), new OfflineRegionStatusesCallback() {
+            @Override
+            public void onStatuses(Map<String, OfflineRegionStatus> statuses) {
+                mapStatuses.putAll(statuses);
+                downLatch.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+                downLatch.countDown();
+            }
+        });
+
+        downLatch.await();
+
+        assertEquals(2, mapStatuses.size());
+        assertEquals(offlineRegionStatus, mapStatuses.get(mapNames[0]));
+        assertEquals(offlineRegionStatus, mapStatuses.get(mapNames[1]));
+
+        mapBoxOfflineResourcesDownloader.getMapStatus(mapNames[0], null);
+        mapBoxOfflineResourcesDownloader.pauseMapDownload(mapNames[1], null);
+
+        Mockito.verify(spiedOfflineManager, Mockito.times(1))
+                .listOfflineRegions(Mockito.any(OfflineManager.ListOfflineRegionsCallback.class));
+    }
+
     @Test
     public void resumeDownloadShouldCallErrorCallbackWhenGivenNullContext() throws Throwable {
         downLatch = new CountDownLatch(1);
@@ -30,6 +30,7 @@ import static android.content.Context.ALARM_SERVICE;
 public class KujakuLibrary {
 
     private static boolean enableMapDownloadResume;
+    private static int maxConcurrentMapDownloads = 1;
 
     private static KujakuLibrary library;
 
@@ -80,6 +81,25 @@ public class KujakuLibrary {
         enableMapDownloadResume = isEnableMapDownloadResume;
     }
 
+    public static int getMaxConcurrentMapDownloads() {
+        return maxConcurrentMapDownloads;
+    }
+
+    /**
+     * Sets the maximum number of offline maps downloaded at the same time by the
+     * {@link MapboxOfflineDownloaderService}. The default is 1 ie. maps are downloaded one after the other.
+     * The service downloads fewer maps at the same time after download errors or connectivity loss
+     *
+     * @param maxConcurrentMapDownloads At least 1
+     */
+    public static void setMaxConcurrentMapDownloads(int maxConcurrentMapDownloads) {
+        if (maxConcurrentMapDownloads < 1) {
+            throw new IllegalArgumentException("maxConcurrentMapDownloads should be at least 1");
+        }
+
+        KujakuLibrary.maxConcurrentMapDownloads = maxConcurrentMapDownloads;
+    }
+
     public void launchMapActivity(@NonNull Activity hostActivity, @NonNull String mapboxAccessToken
             , @Nullable List<Point> points, boolean enableDropPoint) {
         ActivityLauncherHelper.launchMapActivity(hostActivity, mapboxAccessToken, points, enableDropPoint);
@@ -5,6 +5,7 @@ import android.app.Activity;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.graphics.PointF;
+import android.graphics.RectF;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -22,6 +23,7 @@ import android.widget.Button;
 import android.widget.ImageButton;
 import android.widget.RelativeLayout;
 
+import com.google.gson.JsonParseException;
 import com.mapbox.geojson.Feature;
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
@@ -34,18 +36,29 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import io.ona.kujaku.R;
 import io.ona.kujaku.adapters.InfoWindowAdapter;
 import io.ona.kujaku.adapters.InfoWindowObject;
 import io.ona.kujaku.adapters.holders.InfoWindowViewHolder;
 import io.ona.kujaku.domain.Point;
+import io.ona.kujaku.callables.AsyncTaskCallable;
 import io.ona.kujaku.helpers.storage.MapBoxStyleStorage;
+import io.ona.kujaku.helpers.storage.MapBoxStyleStreamReader;
+import io.ona.kujaku.listeners.OnFinishedListener;
 import io.ona.kujaku.sorting.Sorter;
+import io.ona.kujaku.spatial.FeatureSpatialIndex;
+import io.ona.kujaku.tasks.TaskScheduler;
 import io.ona.kujaku.utils.Constants;
 import io.ona.kujaku.utils.Permissions;
 import io.ona.kujaku.utils.config.DataSourceConfig;
@@ -54,6 +67,7 @@ import io.ona.kujaku.utils.config.SortFieldConfig;
 import io.ona.kujaku.utils.exceptions.InvalidMapBoxStyleException;
 import io.ona.kujaku.utils.helpers.MapBoxStyleHelper;
 import io.ona.kujaku.utils.helpers.converters.GeoJSONFeature;
+import io.ona.kujaku.views.FeatureClickOptions;
 import io.ona.kujaku.views.InfoWindowLayoutManager;
 import io.ona.kujaku.views.KujakuMapView;
 
@@ -80,13 +94,14 @@ public class MapActivity extends AppCompatActivity implements MapboxMap.OnMapCli
     private KujakuMapView kujakuMapView;
     private String currentStylePath;
 
-    private SortFieldConfig[] sortFields;
-    private String[] dataLayers;
     private JSONObject mapboxStyleJSON;
+    private boolean isMapPositionSetUp = false;
     private static final String TAG = MapActivity.class.getSimpleName();
 
     private LinkedHashMap<String, InfoWindowObject> featuresMap = new LinkedHashMap<>();
     private ArrayList<String> featureIdList = new ArrayList<>();
+    private FeatureSpatialIndex featureSpatialIndex = new FeatureSpatialIndex();
+    private String[] dataSourceLayerIds = new String[0];
     private MapboxMap mapboxMap;
     private boolean infoWindowDisplayed = false;
 
@@ -111,9 +126,6 @@ public class MapActivity extends AppCompatActivity implements MapboxMap.OnMapCli
 
     private List<JSONObject> newPoints;
 
-    private static final String DATA = "data";
-    private static final String FEATURES = "features";
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -168,25 +180,7 @@ public class MapActivity extends AppCompatActivity implements MapboxMap.OnMapCli
                 if (currentStylePath != null && !currentStylePath.isEmpty()) {
                     currentStylePath = new MapBoxStyleStorage()
                             .getStyleURL(currentStylePath);
-                    mapboxStyleJSON = getStyleJSON(currentStylePath);
-
-                    // Extract kujaku meta-data
-                    try {
-                        MapBoxStyleHelper styleHelper = new MapBoxStyleHelper(mapboxStyleJSON);
-                        if (styleHelper.isKujakuConfigPresent()) {
-                            if (!styleHelper.getKujakuConfig().isValid()) {
-                                showIncompleteStyleError();
-                            } else {
-                                sortFields = SortFieldConfig.extractSortFieldConfigs(styleHelper);
-                                dataLayers = DataSourceConfig.extractDataSourceNames(styleHelper.getKujakuConfig().getDataSourceConfigs());
-                                featuresMap = extractLayerData(mapboxStyleJSON, dataLayers);
-                                featuresMap = sortData(featuresMap, sortFields);
-                                displayInitialFeatures(featuresMap, styleHelper.getKujakuConfig());
-                            }
-                        }
-                    } catch (JSONException | InvalidMapBoxStyleException e) {
-                        Log.e(TAG, Log.getStackTraceString(e));
-                    }
+                    loadStyle(currentStylePath);
                 }
             }
 
@@ -254,7 +248,16 @@ public class MapActivity extends AppCompatActivity implements MapboxMap.OnMapCli
             mapboxMap.setCameraPosition(cameraPositionBuilder.build());
         }
 
-        if (!mapboxStyleJSON.has(MapBoxStyleHelper.KEY_MAP_CENTER)) {
+        isMapPositionSetUp = true;
+        focusOnUserLocationIfMapCenterIsNotDefined();
+    }
+
+    /**
+     * Focus on the user location when the style does not define a center. This waits for both the style
+     * to be read & the map position to be set up, which can happen in any order
+     */
+    private void focusOnUserLocationIfMapCenterIsNotDefined() {
+        if (isMapPositionSetUp && mapboxStyleJSON != null && !mapboxStyleJSON.has(MapBoxStyleHelper.KEY_MAP_CENTER)) {
             kujakuMapView.focusOnUserLocation(true);
         }
     }
@@ -324,61 +327,90 @@ public class MapActivity extends AppCompatActivity implements MapboxMap.OnMapCli
         }
     }
 
-    private LinkedHashMap<String, InfoWindowObject> extractLayerData(@NonNull JSONObject mapBoxStyleJSON, String[] dataSourceNames) throws JSONException {
-        LinkedHashMap<String, InfoWindowObject> featuresMap = new LinkedHashMap<>();
-        if (dataSourceNames != null && mapBoxStyleJSON.has("sources")) {
-            JSONObject sources = mapBoxStyleJSON.getJSONObject("sources");
-            int counter = 0;
+    /**
+     * Stream the style on a background thread, extract the features of its Kujaku data sources then
+     * display them. Styles which are not files, such as Mapbox or asset styles, carry no Kujaku data
+     *
+     * @param stylePath
+     */
+    private void loadStyle(@NonNull String stylePath) {
+        TaskScheduler.getInstance().submit(new AsyncTaskCallable() {
+            @Override
+            public Object[] call() throws Exception {
+                return readStyle(stylePath);
+            }
+        }, new OnFinishedListener() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public void onSuccess(Object[] objects) {
+                onStyleRead((JSONObject) objects[0], (LinkedHashMap<String, InfoWindowObject>) objects[1]
+                        , (FeatureSpatialIndex) objects[2], (String[]) objects[3]);
+            }
 
-            for (String dataSourceName : dataSourceNames) {
-                if (sources.has(dataSourceName)) {
-                    JSONObject jsonObject = sources.getJSONObject(dataSourceName);
-                    if (jsonObject.has(DATA)) {
-                        JSONObject sourceDataJSONObject = jsonObject.optJSONObject(DATA);
-                        if (sourceDataJSONObject != null && sourceDataJSONObject.has(FEATURES)) {
-                            JSONArray featuresJSONArray = sourceDataJSONObject.getJSONArray(FEATURES);
-                            for (int i = 0; i < featuresJSONArray.length(); i++) {
-                                JSONObject featureJSON = featuresJSONArray.getJSONObject(i);
-
-                                String id = getFeatureId(featureJSON);
-                                if (!TextUtils.isEmpty(id)) {
-                                    //Todo: Should check for errors here & print them in LogCat or notify the dev somehow
-                                    featuresMap.put(id, new InfoWindowObject(counter, featureJSON));
-                                    featureIdList.add(id);
-                                    counter++;
-                                }
-                            }
-                        }
-                    }
-                }
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+                onStyleRead(new JSONObject(), null, null, null);
             }
+        });
+    }
+
+    /**
+     * Read the style & prepare its features for the info windows. This is called on a background thread
+     *
+     * @param stylePath
+     * @return The style without the inline GeoJSON features, the sorted features of the Kujaku data sources
+     * , their spatial index & the ids of the layers rendering them. The features are {@code NULL} when the
+     * style has no valid Kujaku config
+     * @throws IOException
+     * @throws JSONException
+     * @throws InvalidMapBoxStyleException
+     */
+    private Object[] readStyle(@NonNull String stylePath) throws IOException, JSONException, InvalidMapBoxStyleException {
+        Reader styleReader = new MapBoxStyleStorage().openStyle(stylePath);
+        if (styleReader == null) {
+            return new Object[]{new JSONObject(), null, null, null};
         }
 
-        return featuresMap;
+        DataSourceFeatureCollector featureCollector = new DataSourceFeatureCollector();
+        JSONObject style = new MapBoxStyleStreamReader().read(styleReader, featureCollector);
+
+        MapBoxStyleHelper styleHelper = new MapBoxStyleHelper(style);
+        if (!styleHelper.isKujakuConfigPresent() || !styleHelper.getKujakuConfig().isValid()) {
+            return new Object[]{style, null, null, null};
+        }
+
+        SortFieldConfig[] sortFields = SortFieldConfig.extractSortFieldConfigs(styleHelper);
+        String[] dataLayers = DataSourceConfig.extractDataSourceNames(styleHelper.getKujakuConfig().getDataSourceConfigs());
+        LinkedHashMap<String, InfoWindowObject> featuresMap = sortData(featureCollector.getFeaturesMap(dataLayers), sortFields
+                , Sorter.extractSortOrders(styleHelper));
+
+        return new Object[]{style, featuresMap, indexFeatures(featuresMap), getLayerIds(style, dataLayers)};
     }
 
-    private JSONObject getStyleJSON(@NonNull String stylePathOrJSON) {
+    private void onStyleRead(@NonNull JSONObject style, @Nullable LinkedHashMap<String, InfoWindowObject> featuresMap
+            , @Nullable FeatureSpatialIndex featureSpatialIndex, @Nullable String[] dataSourceLayerIds) {
+        mapboxStyleJSON = style;
+
+        // Extract kujaku meta-data
         try {
-            return new JSONObject(getStyleJSONString(stylePathOrJSON));
-        } catch (JSONException e) {
+            MapBoxStyleHelper styleHelper = new MapBoxStyleHelper(mapboxStyleJSON);
+            if (styleHelper.isKujakuConfigPresent()) {
+                if (!styleHelper.getKujakuConfig().isValid()) {
+                    showIncompleteStyleError();
+                } else if (featuresMap != null) {
+                    this.featuresMap = featuresMap;
+                    this.featureIdList = new ArrayList<>(featuresMap.keySet());
+                    this.featureSpatialIndex = featureSpatialIndex;
+                    this.dataSourceLayerIds = dataSourceLayerIds;
+                    displayInitialFeatures(featuresMap, styleHelper.getKujakuConfig());
+                }
+            }
+        } catch (JSONException | InvalidMapBoxStyleException e) {
             Log.e(TAG, Log.getStackTraceString(e));
-            return new JSONObject();
         }
-    }
 
-    //Todo handle this better --> In the near future but not now
-    private String getStyleJSONString(@NonNull String stylePathOrJSON) {
-        String defaultStyleJSONString = "";
-        if (stylePathOrJSON.matches(Constants.MAP_BOX_URL_FORMAT)) {
-            return defaultStyleJSONString;
-        } else if (stylePathOrJSON.contains("asset://")) {
-            return defaultStyleJSONString;
-        } else if (stylePathOrJSON.contains("file://")) {
-            return (new MapBoxStyleStorage())
-                    .readStyle(stylePathOrJSON);
-        } else {
-            return defaultStyleJSONString;
-        }
+        focusOnUserLocationIfMapCenterIsNotDefined();
     }
 
     private void displayInitialFeatures(@NonNull LinkedHashMap<String, InfoWindowObject> featuresMap, @NonNull KujakuConfig kujakuConfig) {
@@ -391,24 +423,67 @@ public class MapActivity extends AppCompatActivity implements MapboxMap.OnMapCli
         }
     }
 
-    private LinkedHashMap<String, InfoWindowObject> sortData(@NonNull LinkedHashMap<String, InfoWindowObject> featuresMap, @NonNull SortFieldConfig[] sortFields) throws JSONException {
-        //TODO: Add support for multiple sorts
+    /**
+     * Index the geometries of the features by their id so that clicks can be resolved to the nearest feature
+     *
+     * @param featuresMap
+     * @return
+     */
+    private FeatureSpatialIndex indexFeatures(@NonNull LinkedHashMap<String, InfoWindowObject> featuresMap) {
+        List<Feature> features = new ArrayList<>(featuresMap.size());
+        for (Map.Entry<String, InfoWindowObject> entry : featuresMap.entrySet()) {
+            try {
+                Feature feature = Feature.fromJson(entry.getValue().getJsonObject().toString());
+                features.add(Feature.fromGeometry(feature.geometry(), null, entry.getKey()));
+            } catch (JsonParseException e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+        }
+
+        FeatureSpatialIndex featureSpatialIndex = new FeatureSpatialIndex();
+        featureSpatialIndex.addAll(features);
+        return featureSpatialIndex;
+    }
+
+    /**
+     * Get the ids of the style layers which render the given sources
+     *
+     * @param style
+     * @param sourceNames
+     * @return
+     * @throws JSONException
+     */
+    private String[] getLayerIds(@NonNull JSONObject style, @NonNull String[] sourceNames) throws JSONException {
+        List<String> layerIds = new ArrayList<>();
+        JSONArray layers = style.optJSONArray("layers");
+        if (layers != null) {
+            Set<String> sources = new HashSet<>(Arrays.asList(sourceNames));
+            for (int i = 0; i < layers.length(); i++) {
+                JSONObject layer = layers.getJSONObject(i);
+                if (sources.contains(layer.optString("source"))) {
+                    layerIds.add(layer.getString("id"));
+                }
+            }
+        }
+
+        return layerIds.toArray(new String[0]);
+    }
+
+    private LinkedHashMap<String, InfoWindowObject> sortData(@NonNull LinkedHashMap<String, InfoWindowObject> featuresMap, @NonNull SortFieldConfig[] sortFields
+            , @NonNull Sorter.SortOrder[] sortOrders) throws JSONException {
         int counter = 0;
         if (sortFields.length > 0) {
-            SortFieldConfig sortField = sortFields[0];
-            if (sortField.getType() == SortFieldConfig.FieldType.DATE) {
-                Sorter sorter = new Sorter(new ArrayList(featuresMap.values()));
-                ArrayList<InfoWindowObject> infoWindowObjectArrayList = sorter.mergeSort(0, featuresMap.size() - 1, sortField.getDataField(), sortField.getType());
+            Sorter sorter = new Sorter(new ArrayList<>(featuresMap.values()));
+            ArrayList<InfoWindowObject> infoWindowObjectArrayList = sorter.sort(sortFields, sortOrders);
 
-                featuresMap.clear();
+            featuresMap.clear();
 
-                for (InfoWindowObject infoWindowObject : infoWindowObjectArrayList) {
-                    String id = getFeatureId(infoWindowObject);
-                    if (!TextUtils.isEmpty(id)) {
-                        infoWindowObject.setPosition(counter);
-                        featuresMap.put(id, infoWindowObject);
-                        counter++;
-                    }
+            for (InfoWindowObject infoWindowObject : infoWindowObjectArrayList) {
+                String id = getFeatureId(infoWindowObject);
+                if (!TextUtils.isEmpty(id)) {
+                    infoWindowObject.setPosition(counter);
+                    featuresMap.put(id, infoWindowObject);
+                    counter++;
                 }
             }
         }
@@ -508,28 +583,46 @@ public class MapActivity extends AppCompatActivity implements MapboxMap.OnMapCli
 
     @Override
     public boolean onMapClick(@NonNull LatLng point) {
-        // Convert LatLng coordinates to screen pixel and only query the rendered features.
-        final PointF pixel = mapboxMap.getProjection().toScreenLocation(point);
-        List<Feature> features = mapboxMap.queryRenderedFeatures(pixel);
-
-        // Get the first feature within the list if one exist
-        if (features.size() > 0) {
-            for (Feature feature : features) {
-
-                // Ensure the feature has properties defined
-                if (feature.properties() != null && feature.hasProperty("id")) {
-                    String id = feature.getProperty("id").getAsString();
-                    if (featuresMap.containsKey(id)) {
-                        focusOnFeature(id);
-                        break;
-                    }
-                }
+        if (dataSourceLayerIds.length == 0) {
+            return false;
+        }
+
+        // The index also holds the features hidden by the layer filters, zoom ranges or visibility. Only the
+        // features rendered within the touch radius can be focused, the nearest of them is looked up in the index
+        float radiusPixels = FeatureClickOptions.DEFAULT_RADIUS_DP * getResources().getDisplayMetrics().density;
+        PointF pixel = mapboxMap.getProjection().toScreenLocation(point);
+        RectF box = new RectF(pixel.x - radiusPixels, pixel.y - radiusPixels, pixel.x + radiusPixels, pixel.y + radiusPixels);
+        Set<String> renderedFeatureIds = getFeatureIds(mapboxMap.queryRenderedFeatures(box, dataSourceLayerIds));
+        if (renderedFeatureIds.isEmpty()) {
+            return false;
+        }
+
+        double radius = radiusPixels * mapboxMap.getProjection().getMetersPerPixelAtLatitude(point.getLatitude());
+        List<Feature> features = featureSpatialIndex.nearest(point.getLatitude(), point.getLongitude(), radius
+                , featureSpatialIndex.size());
+        for (Feature feature : features) {
+            if (renderedFeatureIds.contains(feature.id())) {
+                focusOnFeature(feature.id());
+                break;
             }
         }
 
         return false;
     }
 
+    private Set<String> getFeatureIds(@NonNull List<Feature> features) {
+        Set<String> featureIds = new HashSet<>();
+        for (Feature feature : features) {
+            if (feature.id() != null) {
+                featureIds.add(feature.id());
+            } else if (feature.properties() != null && feature.hasProperty("id")) {
+                featureIds.add(feature.getProperty("id").getAsString());
+            }
+        }
+
+        return featureIds;
+    }
+
     private void showInfoWindowListAndScrollToPosition(final int position, final boolean informInfoWindowAdapter) {
         if (!infoWindowDisplayed) {
 
@@ -731,4 +824,78 @@ public class MapActivity extends AppCompatActivity implements MapboxMap.OnMapCli
             view.setLayoutParams(relativeLayoutParams);
         }
     }
+
+    /**
+     * Collects the features of the Kujaku data sources while the style is streamed. The features of every
+     * GeoJSON source are collected until the Kujaku config is read, which can come after the sources, after
+     * which only the features of the data sources are kept
+     */
+    private class DataSourceFeatureCollector implements MapBoxStyleStreamReader.StyleListener {
+
+        private Set<String> dataSourceNames;
+        private final Map<String, List<JSONObject>> sourceFeatures = new HashMap<>();
+
+        @Override
+        public void onMetadata(@NonNull JSONObject metadata) {
+            dataSourceNames = new HashSet<>();
+
+            try {
+                if (metadata.has(MapBoxStyleHelper.KEY_KUJAKU)) {
+                    KujakuConfig kujakuConfig = new KujakuConfig(metadata.getJSONObject(MapBoxStyleHelper.KEY_KUJAKU));
+                    dataSourceNames.addAll(Arrays.asList(DataSourceConfig.extractDataSourceNames(kujakuConfig.getDataSourceConfigs())));
+                }
+            } catch (JSONException | InvalidMapBoxStyleException e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+
+            sourceFeatures.keySet().retainAll(dataSourceNames);
+        }
+
+        @Override
+        public boolean onGeoJsonSource(@NonNull String sourceName) {
+            return dataSourceNames == null || dataSourceNames.contains(sourceName);
+        }
+
+        @Override
+        public void onFeature(@NonNull String sourceName, @NonNull JSONObject feature) {
+            List<JSONObject> features = sourceFeatures.get(sourceName);
+            if (features == null) {
+                features = new ArrayList<>();
+                sourceFeatures.put(sourceName, features);
+            }
+
+            features.add(feature);
+        }
+
+        /**
+         * @param dataSourceNames
+         * @return The features with an id of the data sources, in the order of the data sources
+         * @throws JSONException
+         */
+        private LinkedHashMap<String, InfoWindowObject> getFeaturesMap(@Nullable String[] dataSourceNames) throws JSONException {
+            LinkedHashMap<String, InfoWindowObject> featuresMap = new LinkedHashMap<>();
+            if (dataSourceNames == null) {
+                return featuresMap;
+            }
+
+            int counter = 0;
+            for (String dataSourceName : dataSourceNames) {
+                List<JSONObject> features = sourceFeatures.get(dataSourceName);
+                if (features == null) {
+                    continue;
+                }
+
+                for (JSONObject featureJSON : features) {
+                    String id = getFeatureId(featureJSON);
+                    if (!TextUtils.isEmpty(id)) {
+                        //Todo: Should check for errors here & print them in LogCat or notify the dev somehow
+                        featuresMap.put(id, new InfoWindowObject(counter, featureJSON));
+                        counter++;
+                    }
+                }
+            }
+
+            return featuresMap;
+        }
+    }
 }
@@ -4,49 +4,44 @@ import android.support.annotation.NonNull;
 
 import com.mapbox.geojson.Feature;
 
-import org.threeten.bp.LocalDateTime;
-import org.threeten.bp.format.DateTimeFormatter;
-
 import java.util.Comparator;
 
 import io.ona.kujaku.layers.ArrowLineLayer;
 
 /**
+ * Compares {@link Feature}s using the {@link SortKeyExtractor} of a {@link ArrowLineLayer.SortConfig}.
+ * Features without a valid key are sorted last whatever the {@link ArrowLineLayer.SortConfig.SortOrder}.
+ * <p>
+ * The keys are extracted on every comparison, sorting many features is faster by extracting each
+ * key once as done by {@link ArrowLineLayer}.
+ * <p>
  * Created by Ephraim Kigamba - ekigamba@ona.io on 11/02/2019
  */
 
 public class ArrowLineSortConfigComparator implements Comparator<Feature> {
 
     private ArrowLineLayer.SortConfig sortConfig;
+    private SortKeyExtractor<?> keyExtractor;
 
     public ArrowLineSortConfigComparator(@NonNull ArrowLineLayer.SortConfig sortConfig) {
         this.sortConfig = sortConfig;
+        this.keyExtractor = SortKeyExtractors.getKeyExtractor(sortConfig);
     }
 
     @Override
     public int compare(Feature feature1, Feature feature2) {
-        String sortProperty = sortConfig.getSortProperty();
-        int compareResult = 0;
-
-        if (sortConfig.getPropertyType() == ArrowLineLayer.SortConfig.PropertyType.NUMBER) {
-            Number number1 = feature1.getNumberProperty(sortProperty);
-            Number number2 = feature2.getNumberProperty(sortProperty);
-
-            compareResult = Double.compare(number1.doubleValue(), number2.doubleValue());
-        } else if (sortConfig.getPropertyType() == ArrowLineLayer.SortConfig.PropertyType.STRING) {
-            String value1 = feature1.getStringProperty(sortProperty);
-            String value2 = feature2.getStringProperty(sortProperty);
-
-            compareResult = value1.compareTo(value2);
-        } else if (sortConfig.getPropertyType() == ArrowLineLayer.SortConfig.PropertyType.DATE_TIME) {
-            DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern(sortConfig.getDateTimeFormat());
+        return compare(keyExtractor, feature1, feature2);
+    }
 
-            LocalDateTime localDateTime1 = LocalDateTime.parse(feature1.getStringProperty(sortProperty), dateTimeFormatter);
-            LocalDateTime localDateTime2 = LocalDateTime.parse(feature2.getStringProperty(sortProperty), dateTimeFormatter);
+    private <K extends Comparable<? super K>> int compare(@NonNull SortKeyExtractor<K> keyExtractor, Feature feature1, Feature feature2) {
+        K key1 = keyExtractor.extractKey(feature1);
+        K key2 = keyExtractor.extractKey(feature2);
 
-            compareResult = localDateTime1.compareTo(localDateTime2);
+        if (key1 == null || key2 == null) {
+            return SortKeyExtractors.compareKeys(key1, key2);
         }
 
+        int compareResult = key1.compareTo(key2);
         if (sortConfig.getSortOrder() == ArrowLineLayer.SortConfig.SortOrder.DESC) {
             compareResult *= -1;
         }
@@ -0,0 +1,22 @@
+package io.ona.kujaku.comparators;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.geojson.Feature;
+
+/**
+ * Extracts the key on which a {@link Feature} is sorted. Keys are extracted once per feature before
+ * sorting and then compared
+ *
+ * @param <K> Type of the key
+ */
+public interface SortKeyExtractor<K extends Comparable<? super K>> {
+
+    /**
+     * @param feature
+     * @return The sort key or {@code NULL} if the feature does not have a valid key, such features are sorted last
+     */
+    @Nullable
+    K extractKey(@NonNull Feature feature);
+}
@@ -0,0 +1,144 @@
+package io.ona.kujaku.comparators;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.mapbox.geojson.Feature;
+
+import org.threeten.bp.LocalDateTime;
+import org.threeten.bp.format.DateTimeFormatter;
+import org.threeten.bp.format.DateTimeParseException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.ona.kujaku.layers.ArrowLineLayer;
+
+/**
+ * Default {@link SortKeyExtractor}s for each {@link ArrowLineLayer.SortConfig.PropertyType}. Missing
+ * properties and values which cannot be converted to the property type give {@code NULL} keys.
+ * <p>
+ * {@link DateTimeFormatter}s are immutable and thread-safe and are therefore cached by pattern.
+ */
+public class SortKeyExtractors {
+
+    private static final Map<String, DateTimeFormatter> dateTimeFormatters = new HashMap<>();
+
+    private SortKeyExtractors() {}
+
+    /**
+     * @param sortConfig
+     * @return The key extractor of the {@link ArrowLineLayer.SortConfig} if one was set, otherwise the
+     * default extractor of its property type
+     */
+    @NonNull
+    public static SortKeyExtractor<?> getKeyExtractor(@NonNull ArrowLineLayer.SortConfig sortConfig) {
+        if (sortConfig.getKeyExtractor() != null) {
+            return sortConfig.getKeyExtractor();
+        }
+
+        String sortProperty = sortConfig.getSortProperty();
+        switch (sortConfig.getPropertyType()) {
+            case NUMBER:
+                return numberKeyExtractor(sortProperty);
+            case DATE_TIME:
+                return dateTimeKeyExtractor(sortProperty, sortConfig.getDateTimeFormat());
+            default:
+                return stringKeyExtractor(sortProperty);
+        }
+    }
+
+    @NonNull
+    public static SortKeyExtractor<Double> numberKeyExtractor(@NonNull final String sortProperty) {
+        return new SortKeyExtractor<Double>() {
+            @Nullable
+            @Override
+            public Double extractKey(@NonNull Feature feature) {
+                JsonPrimitive value = getPrimitiveProperty(feature, sortProperty);
+                if (value == null) {
+                    return null;
+                } else if (value.isNumber()) {
+                    return value.getAsDouble();
+                }
+
+                try {
+                    return Double.valueOf(value.getAsString().trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        };
+    }
+
+    @NonNull
+    public static SortKeyExtractor<String> stringKeyExtractor(@NonNull final String sortProperty) {
+        return new SortKeyExtractor<String>() {
+            @Nullable
+            @Override
+            public String extractKey(@NonNull Feature feature) {
+                JsonPrimitive value = getPrimitiveProperty(feature, sortProperty);
+                return value != null ? value.getAsString() : null;
+            }
+        };
+    }
+
+    /**
+     * @param sortProperty
+     * @param dateTimeFormat Pattern as used by {@link DateTimeFormatter#ofPattern(String)}
+     * @return
+     */
+    @NonNull
+    public static SortKeyExtractor<LocalDateTime> dateTimeKeyExtractor(@NonNull final String sortProperty, @NonNull String dateTimeFormat) {
+        final DateTimeFormatter dateTimeFormatter = getDateTimeFormatter(dateTimeFormat);
+        return new SortKeyExtractor<LocalDateTime>() {
+            @Nullable
+            @Override
+            public LocalDateTime extractKey(@NonNull Feature feature) {
+                JsonPrimitive value = getPrimitiveProperty(feature, sortProperty);
+                if (value == null) {
+                    return null;
+                }
+
+                try {
+                    return LocalDateTime.parse(value.getAsString(), dateTimeFormatter);
+                } catch (DateTimeParseException e) {
+                    return null;
+                }
+            }
+        };
+    }
+
+    @NonNull
+    public static DateTimeFormatter getDateTimeFormatter(@NonNull String dateTimeFormat) {
+        synchronized (dateTimeFormatters) {
+            DateTimeFormatter dateTimeFormatter = dateTimeFormatters.get(dateTimeFormat);
+            if (dateTimeFormatter == null) {
+                dateTimeFormatter = DateTimeFormatter.ofPattern(dateTimeFormat);
+                dateTimeFormatters.put(dateTimeFormat, dateTimeFormatter);
+            }
+
+            return dateTimeFormatter;
+        }
+    }
+
+    /**
+     * Compare two keys, {@code NULL} keys being greater than any other key
+     */
+    static <K extends Comparable<? super K>> int compareKeys(@Nullable K key1, @Nullable K key2) {
+        if (key1 == null || key2 == null) {
+            return key1 == key2 ? 0 : (key1 == null ? 1 : -1);
+        }
+
+        return key1.compareTo(key2);
+    }
+
+    @Nullable
+    private static JsonPrimitive getPrimitiveProperty(@NonNull Feature feature, @NonNull String propertyName) {
+        JsonObject properties = feature.properties();
+        JsonElement element = properties != null ? properties.get(propertyName) : null;
+        return element != null && element.isJsonPrimitive() ? element.getAsJsonPrimitive() : null;
+    }
+}
@@ -2,6 +2,8 @@ package io.ona.kujaku.comparisons;
 
 public interface Comparison {
     String TYPE_STRING = "string";
+    String TYPE_NUMBER = "number";
+    String TYPE_DATE = "date";
 
     boolean compare(String a, String type, String b);
 
@@ -0,0 +1,13 @@
+package io.ona.kujaku.comparisons;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.geojson.Feature;
+
+/**
+ * A condition compiled once and evaluated against many {@link Feature}s
+ */
+public interface FeaturePredicate {
+
+    boolean test(@NonNull Feature feature);
+}
@@ -0,0 +1,431 @@
+package io.ona.kujaku.comparisons;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.mapbox.geojson.Feature;
+
+import org.threeten.bp.LocalDateTime;
+import org.threeten.bp.ZoneOffset;
+import org.threeten.bp.format.DateTimeFormatter;
+import org.threeten.bp.format.DateTimeParseException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import io.ona.kujaku.utils.FeatureIndex;
+
+/**
+ * Factory of the {@link FeaturePredicate}s used by {@link io.ona.kujaku.utils.FeatureFilter}.
+ * <p>
+ * Everything that does not depend on the feature (regex patterns, date formatters, parsed bounds) is
+ * prepared when the predicate is created so that evaluating it against a feature only reads and compares
+ * the property value. Numbers and dates are compared as typed values: a number property stored as a
+ * string is parsed, a date property is parsed using the given format.
+ * <p>
+ * A feature which does not have the property or whose value cannot be converted does not match.
+ */
+public class FeaturePredicates {
+
+    private static final String TAG = FeaturePredicates.class.getName();
+
+    private static final FeaturePredicate NONE = new FeaturePredicate() {
+        @Override
+        public boolean test(@NonNull Feature feature) {
+            return false;
+        }
+    };
+
+    private FeaturePredicates() {}
+
+    @NonNull
+    public static FeaturePredicate equalTo(@NonNull String propertyName, @NonNull String value) {
+        return new EqualTo(propertyName, value);
+    }
+
+    @NonNull
+    public static FeaturePredicate equalTo(@NonNull String propertyName, double value) {
+        return new NumberRange(propertyName, value, true, value, true);
+    }
+
+    /**
+     * @param propertyName
+     * @param regexPattern
+     * @return A predicate matching values which fully match the pattern. If the pattern is invalid, the
+     * predicate does not match any feature
+     */
+    @NonNull
+    public static FeaturePredicate regex(@NonNull String propertyName, @NonNull String regexPattern) {
+        try {
+            return new Regex(propertyName, Pattern.compile(regexPattern));
+        } catch (PatternSyntaxException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            return NONE;
+        }
+    }
+
+    /**
+     * @param propertyName
+     * @param min Lower bound, {@link Double#NEGATIVE_INFINITY} if there is none
+     * @param minInclusive
+     * @param max Upper bound, {@link Double#POSITIVE_INFINITY} if there is none
+     * @param maxInclusive
+     * @return
+     */
+    @NonNull
+    public static FeaturePredicate numberRange(@NonNull String propertyName, double min, boolean minInclusive, double max, boolean maxInclusive) {
+        return new NumberRange(propertyName, min, minInclusive, max, maxInclusive);
+    }
+
+    /**
+     * @param propertyName
+     * @param dateTimeFormat Format of the property values and of the bounds as used by {@link DateTimeFormatter#ofPattern(String)}
+     * @param from Inclusive lower bound or {@code NULL} if there is none
+     * @param to Inclusive upper bound or {@code NULL} if there is none
+     * @return
+     * @throws DateTimeParseException if one of the bounds does not match the format
+     */
+    @NonNull
+    public static FeaturePredicate dateRange(@NonNull String propertyName, @NonNull String dateTimeFormat, @Nullable String from, @Nullable String to) {
+        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern(dateTimeFormat);
+        double min = from != null ? toEpochMillis(LocalDateTime.parse(from, dateTimeFormatter)) : Double.NEGATIVE_INFINITY;
+        double max = to != null ? toEpochMillis(LocalDateTime.parse(to, dateTimeFormatter)) : Double.POSITIVE_INFINITY;
+
+        return new DateRange(propertyName, dateTimeFormat, dateTimeFormatter, min, max);
+    }
+
+    @NonNull
+    public static FeaturePredicate hasProperty(@NonNull String propertyName) {
+        return new HasProperty(propertyName);
+    }
+
+    @NonNull
+    public static FeaturePredicate allOf(@NonNull List<FeaturePredicate> predicates) {
+        return new AllOf(predicates);
+    }
+
+    @NonNull
+    public static FeaturePredicate anyOf(@NonNull List<FeaturePredicate> predicates) {
+        return new AnyOf(predicates);
+    }
+
+    @NonNull
+    public static FeaturePredicate not(@NonNull FeaturePredicate predicate) {
+        return new Not(predicate);
+    }
+
+    /**
+     * @param feature
+     * @param propertyName
+     * @return The value of a string, number or boolean property as a string, {@code NULL} otherwise
+     */
+    @Nullable
+    public static String getStringValue(@NonNull Feature feature, @NonNull String propertyName) {
+        JsonElement element = getProperty(feature, propertyName);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+
+    /**
+     * @param feature
+     * @param propertyName
+     * @return The value of a number property or of a string property holding a number, {@link Double#NaN} otherwise
+     */
+    public static double getNumberValue(@NonNull Feature feature, @NonNull String propertyName) {
+        JsonElement element = getProperty(feature, propertyName);
+        if (element == null || !element.isJsonPrimitive()) {
+            return Double.NaN;
+        }
+
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isNumber()) {
+            return primitive.getAsDouble();
+        } else if (primitive.isString()) {
+            try {
+                return Double.parseDouble(primitive.getAsString().trim());
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * @param feature
+     * @param propertyName
+     * @param dateTimeFormatter
+     * @return The date-time of the property in milliseconds since the epoch (taking the date-time as UTC)
+     * or {@link Double#NaN} if the property is missing or does not match the format
+     */
+    public static double getDateValue(@NonNull Feature feature, @NonNull String propertyName, @NonNull DateTimeFormatter dateTimeFormatter) {
+        String value = getStringValue(feature, propertyName);
+        if (value == null) {
+            return Double.NaN;
+        }
+
+        try {
+            return toEpochMillis(LocalDateTime.parse(value, dateTimeFormatter));
+        } catch (DateTimeParseException e) {
+            return Double.NaN;
+        }
+    }
+
+    @Nullable
+    private static JsonElement getProperty(@NonNull Feature feature, @NonNull String propertyName) {
+        JsonObject properties = feature.properties();
+        return properties != null ? properties.get(propertyName) : null;
+    }
+
+    private static double toEpochMillis(@NonNull LocalDateTime localDateTime) {
+        return localDateTime.toEpochSecond(ZoneOffset.UTC) * 1000d + localDateTime.getNano() / 1000000d;
+    }
+
+    private static boolean isInRange(double value, double min, boolean minInclusive, double max, boolean maxInclusive) {
+        return (minInclusive ? value >= min : value > min)
+                && (maxInclusive ? value <= max : value < max);
+    }
+
+    private static class EqualTo implements IndexedFeaturePredicate {
+        private final String propertyName;
+        private final String value;
+
+        private EqualTo(String propertyName, String value) {
+            this.propertyName = propertyName;
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(@NonNull Feature feature) {
+            return value.equals(getStringValue(feature, propertyName));
+        }
+
+        @Nullable
+        @Override
+        public int[] getCandidatePositions(@NonNull FeatureIndex featureIndex) {
+            return featureIndex.getPositionsEqualTo(propertyName, value);
+        }
+    }
+
+    private static class Regex implements FeaturePredicate {
+        private final String propertyName;
+        private final Pattern pattern;
+
+        private Regex(String propertyName, Pattern pattern) {
+            this.propertyName = propertyName;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean test(@NonNull Feature feature) {
+            String value = getStringValue(feature, propertyName);
+            return value != null && pattern.matcher(value).matches();
+        }
+    }
+
+    private static class NumberRange implements IndexedFeaturePredicate {
+        private final String propertyName;
+        private final double min;
+        private final boolean minInclusive;
+        private final double max;
+        private final boolean maxInclusive;
+
+        private NumberRange(String propertyName, double min, boolean minInclusive, double max, boolean maxInclusive) {
+            this.propertyName = propertyName;
+            this.min = min;
+            this.minInclusive = minInclusive;
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+        }
+
+        @Override
+        public boolean test(@NonNull Feature feature) {
+            return isInRange(getNumberValue(feature, propertyName), min, minInclusive, max, maxInclusive);
+        }
+
+        @Nullable
+        @Override
+        public int[] getCandidatePositions(@NonNull FeatureIndex featureIndex) {
+            return featureIndex.getPositionsInRange(propertyName, min, minInclusive, max, maxInclusive);
+        }
+    }
+
+    private static class DateRange implements IndexedFeaturePredicate {
+        private final String propertyName;
+        private final String dateTimeFormat;
+        private final DateTimeFormatter dateTimeFormatter;
+        private final double min;
+        private final double max;
+
+        private DateRange(String propertyName, String dateTimeFormat, DateTimeFormatter dateTimeFormatter, double min, double max) {
+            this.propertyName = propertyName;
+            this.dateTimeFormat = dateTimeFormat;
+            this.dateTimeFormatter = dateTimeFormatter;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public boolean test(@NonNull Feature feature) {
+            return isInRange(getDateValue(feature, propertyName, dateTimeFormatter), min, true, max, true);
+        }
+
+        @Nullable
+        @Override
+        public int[] getCandidatePositions(@NonNull FeatureIndex featureIndex) {
+            return featureIndex.getPositionsInDateRange(propertyName, dateTimeFormat, min, max);
+        }
+    }
+
+    private static class HasProperty implements FeaturePredicate {
+        private final String propertyName;
+
+        private HasProperty(String propertyName) {
+            this.propertyName = propertyName;
+        }
+
+        @Override
+        public boolean test(@NonNull Feature feature) {
+            return getProperty(feature, propertyName) != null;
+        }
+    }
+
+    private static class AllOf implements IndexedFeaturePredicate {
+        private final FeaturePredicate[] predicates;
+
+        private AllOf(List<FeaturePredicate> predicates) {
+            this.predicates = predicates.toArray(new FeaturePredicate[0]);
+        }
+
+        @Override
+        public boolean test(@NonNull Feature feature) {
+            for (FeaturePredicate predicate : predicates) {
+                if (!predicate.test(feature)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Nullable
+        @Override
+        public int[] getCandidatePositions(@NonNull FeatureIndex featureIndex) {
+            int[] candidates = null;
+            for (FeaturePredicate predicate : predicates) {
+                if (predicate instanceof IndexedFeaturePredicate) {
+                    int[] predicateCandidates = ((IndexedFeaturePredicate) predicate).getCandidatePositions(featureIndex);
+                    if (predicateCandidates != null) {
+                        candidates = candidates == null ? predicateCandidates : intersect(candidates, predicateCandidates);
+                    }
+                }
+            }
+
+            return candidates;
+        }
+    }
+
+    private static class AnyOf implements IndexedFeaturePredicate {
+        private final FeaturePredicate[] predicates;
+
+        private AnyOf(List<FeaturePredicate> predicates) {
+            this.predicates = predicates.toArray(new FeaturePredicate[0]);
+        }
+
+        @Override
+        public boolean test(@NonNull Feature feature) {
+            for (FeaturePredicate predicate : predicates) {
+                if (predicate.test(feature)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public int[] getCandidatePositions(@NonNull FeatureIndex featureIndex) {
+            // Every alternative should be narrowed down by the index, otherwise all the features are candidates
+            List<int[]> alternatives = new ArrayList<>(predicates.length);
+            for (FeaturePredicate predicate : predicates) {
+                int[] predicateCandidates = predicate instanceof IndexedFeaturePredicate
+                        ? ((IndexedFeaturePredicate) predicate).getCandidatePositions(featureIndex) : null;
+                if (predicateCandidates == null) {
+                    return null;
+                }
+
+                alternatives.add(predicateCandidates);
+            }
+
+            int[] candidates = new int[0];
+            for (int[] alternative : alternatives) {
+                candidates = union(candidates, alternative);
+            }
+
+            return candidates;
+        }
+    }
+
+    private static class Not implements FeaturePredicate {
+        private final FeaturePredicate predicate;
+
+        private Not(FeaturePredicate predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean test(@NonNull Feature feature) {
+            return !predicate.test(feature);
+        }
+    }
+
+    private static int[] intersect(int[] sortedPositions1, int[] sortedPositions2) {
+        int[] result = new int[Math.min(sortedPositions1.length, sortedPositions2.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+
+        while (i < sortedPositions1.length && j < sortedPositions2.length) {
+            if (sortedPositions1[i] < sortedPositions2[j]) {
+                i++;
+            } else if (sortedPositions1[i] > sortedPositions2[j]) {
+                j++;
+            } else {
+                result[size++] = sortedPositions1[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] union(int[] sortedPositions1, int[] sortedPositions2) {
+        int[] result = new int[sortedPositions1.length + sortedPositions2.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+
+        while (i < sortedPositions1.length || j < sortedPositions2.length) {
+            if (j == sortedPositions2.length
+                    || (i < sortedPositions1.length && sortedPositions1[i] < sortedPositions2[j])) {
+                result[size++] = sortedPositions1[i++];
+            } else if (i == sortedPositions1.length || sortedPositions1[i] > sortedPositions2[j]) {
+                result[size++] = sortedPositions2[j++];
+            } else {
+                result[size++] = sortedPositions1[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, size);
+    }
+}
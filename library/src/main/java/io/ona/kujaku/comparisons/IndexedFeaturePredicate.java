@@ -0,0 +1,22 @@
+package io.ona.kujaku.comparisons;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import io.ona.kujaku.utils.FeatureIndex;
+
+/**
+ * A {@link FeaturePredicate} which can narrow down the features to evaluate using a {@link FeatureIndex}
+ */
+public interface IndexedFeaturePredicate extends FeaturePredicate {
+
+    /**
+     * Get the positions of the features which might match this predicate. Every matching feature should
+     * be among the candidates, the candidates are still evaluated using {@link #test(com.mapbox.geojson.Feature)}
+     *
+     * @param featureIndex
+     * @return The sorted positions of the candidate features or {@code NULL} if the index cannot be used
+     */
+    @Nullable
+    int[] getCandidatePositions(@NonNull FeatureIndex featureIndex);
+}
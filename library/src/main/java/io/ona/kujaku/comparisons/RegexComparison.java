@@ -10,11 +10,13 @@ public class RegexComparison implements Comparison {
     private final String TAG = this.getClass().getSimpleName();
     public static final String COMPARISON_NAME = "regex";
 
+    private Pattern lastPattern;
+
     @Override
     public boolean compare(String a, String type, String b) {
         if (a != null && b != null) {
             try {
-                Pattern pattern = Pattern.compile(b);
+                Pattern pattern = getPattern(b);
                 Matcher matcher = pattern.matcher(a);
                 return matcher.matches();
             } catch (PatternSyntaxException e) {
@@ -27,6 +29,22 @@ public class RegexComparison implements Comparison {
         return false;
     }
 
+    /**
+     * The same pattern is usually compared against many values, the last compiled pattern is therefore reused
+     *
+     * @param regex
+     * @return
+     */
+    private Pattern getPattern(String regex) {
+        Pattern pattern = lastPattern;
+        if (pattern == null || !pattern.pattern().equals(regex)) {
+            pattern = Pattern.compile(regex);
+            lastPattern = pattern;
+        }
+
+        return pattern;
+    }
+
     @Override
     public String getFunctionName() {
         return COMPARISON_NAME;
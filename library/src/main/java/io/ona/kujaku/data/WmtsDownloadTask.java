@@ -0,0 +1,198 @@
+package io.ona.kujaku.data;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import io.ona.kujaku.data.realm.objects.MapBoxOfflineQueueTask;
+import io.ona.kujaku.downloaders.WmtsTileRange;
+import io.ona.kujaku.utils.exceptions.MalformedDataException;
+import io.realm.Realm;
+
+/**
+ * Stores/Carries the definition of a WMTS layer region whose tiles are prefetched into a
+ * {@link io.ona.kujaku.helpers.storage.MBTilesStore} for offline use
+ */
+public class WmtsDownloadTask {
+    private String mapName;
+    private String tileUrlTemplate;
+    private String storePath;
+    private int minZoom;
+    private int maxZoom;
+    private LatLng topLeftBound;
+    private LatLng bottomRightBound;
+
+    private JSONObject jsonObject;
+    private static final String TAG = WmtsDownloadTask.class.getSimpleName();
+
+    public static final String MAP_NAME = "mapName"
+            , TILE_URL_TEMPLATE = "tileUrlTemplate"
+            , STORE_PATH = "storePath"
+            , MIN_ZOOM = "minZoom"
+            , MAX_ZOOM = "maxZoom"
+            , TOP_LEFT_BOUND = "topLeftBound"
+            , BOTTOM_RIGHT_BOUND = "bottomRightBound";
+
+    public WmtsDownloadTask() {
+    }
+
+    public WmtsDownloadTask(@NonNull String mapName,
+                            @NonNull String tileUrlTemplate,
+                            @NonNull String storePath,
+                            int minZoom, int maxZoom,
+                            @NonNull LatLng topLeftBound,
+                            @NonNull LatLng bottomRightBound) {
+        this.mapName = mapName;
+        this.tileUrlTemplate = tileUrlTemplate;
+        this.storePath = storePath;
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.topLeftBound = topLeftBound;
+        this.bottomRightBound = bottomRightBound;
+    }
+
+    public WmtsDownloadTask(@NonNull JSONObject jsonObject) throws MalformedDataException {
+        this.jsonObject = jsonObject;
+
+        try {
+            mapName = jsonObject.getString(MAP_NAME);
+            tileUrlTemplate = jsonObject.getString(TILE_URL_TEMPLATE);
+            storePath = jsonObject.getString(STORE_PATH);
+            minZoom = jsonObject.getInt(MIN_ZOOM);
+            maxZoom = jsonObject.getInt(MAX_ZOOM);
+
+            topLeftBound = MapBoxDownloadTask.constructLatLng(jsonObject.getJSONObject(TOP_LEFT_BOUND));
+            bottomRightBound = MapBoxDownloadTask.constructLatLng(jsonObject.getJSONObject(BOTTOM_RIGHT_BOUND));
+        } catch (JSONException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            throw new MalformedDataException("Invalid WMTS Download Task definition", e);
+        }
+    }
+
+    /**
+     * Generates the {@link JSONObject} of the task that will be saved in {@link MapBoxOfflineQueueTask#task}
+     *
+     * @return
+     * @throws JSONException
+     */
+    public JSONObject getJSONObject() throws JSONException {
+        if (jsonObject == null) {
+            jsonObject = new JSONObject();
+        }
+
+        jsonObject.put(MAP_NAME, mapName);
+        jsonObject.put(TILE_URL_TEMPLATE, tileUrlTemplate);
+        jsonObject.put(STORE_PATH, storePath);
+        jsonObject.put(MIN_ZOOM, minZoom);
+        jsonObject.put(MAX_ZOOM, maxZoom);
+        jsonObject.put(TOP_LEFT_BOUND, MapBoxDownloadTask.constructLatLngJSONObject(topLeftBound));
+        jsonObject.put(BOTTOM_RIGHT_BOUND, MapBoxDownloadTask.constructLatLngJSONObject(bottomRightBound));
+
+        return jsonObject;
+    }
+
+    /**
+     * @return the {@link WmtsTileRange}s covering the bounds from {@link #getMinZoom()} to {@link #getMaxZoom()}
+     */
+    @NonNull
+    public List<WmtsTileRange> getTileRanges() {
+        return WmtsTileRange.expand(topLeftBound.getLatitude(), bottomRightBound.getLongitude()
+                , bottomRightBound.getLatitude(), topLeftBound.getLongitude(), minZoom, maxZoom);
+    }
+
+    public String getMapName() {
+        return mapName;
+    }
+
+    public void setMapName(String mapName) {
+        this.mapName = mapName;
+    }
+
+    public String getTileUrlTemplate() {
+        return tileUrlTemplate;
+    }
+
+    public void setTileUrlTemplate(String tileUrlTemplate) {
+        this.tileUrlTemplate = tileUrlTemplate;
+    }
+
+    public String getStorePath() {
+        return storePath;
+    }
+
+    public void setStorePath(String storePath) {
+        this.storePath = storePath;
+    }
+
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    public void setMinZoom(int minZoom) {
+        this.minZoom = minZoom;
+    }
+
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    public void setMaxZoom(int maxZoom) {
+        this.maxZoom = maxZoom;
+    }
+
+    public LatLng getTopLeftBound() {
+        return topLeftBound;
+    }
+
+    public void setTopLeftBound(LatLng topLeftBound) {
+        this.topLeftBound = topLeftBound;
+    }
+
+    public LatLng getBottomRightBound() {
+        return bottomRightBound;
+    }
+
+    public void setBottomRightBound(LatLng bottomRightBound) {
+        this.bottomRightBound = bottomRightBound;
+    }
+
+    /**
+     * Creates a valid {@link MapBoxOfflineQueueTask} of type {@link MapBoxOfflineQueueTask#TASK_TYPE_WMTS_DOWNLOAD}
+     * given a {@link WmtsDownloadTask} with default {@link MapBoxOfflineQueueTask#taskStatus} = {@link MapBoxOfflineQueueTask#TASK_STATUS_NOT_STARTED}
+     * & adds it to the queue
+     *
+     * @param wmtsDownloadTask to add to the queue
+     * @return the Queued Task {@link MapBoxOfflineQueueTask}
+     */
+    public static MapBoxOfflineQueueTask constructMapBoxOfflineQueueTask(@NonNull WmtsDownloadTask wmtsDownloadTask) {
+
+        Realm realm = Realm.getDefaultInstance();
+        try {
+            realm.beginTransaction();
+
+            MapBoxOfflineQueueTask mapBoxOfflineQueueTask = realm.createObject(MapBoxOfflineQueueTask.class, UUID.randomUUID().toString());
+            mapBoxOfflineQueueTask.setDateCreated(new Date());
+            mapBoxOfflineQueueTask.setDateUpdated(new Date());
+            mapBoxOfflineQueueTask.setTask(wmtsDownloadTask.getJSONObject());
+            mapBoxOfflineQueueTask.setMapName(wmtsDownloadTask.getMapName());
+            mapBoxOfflineQueueTask.setTaskStatus(MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED);
+            mapBoxOfflineQueueTask.setTaskType(MapBoxOfflineQueueTask.TASK_TYPE_WMTS_DOWNLOAD);
+
+            realm.commitTransaction();
+
+            return mapBoxOfflineQueueTask;
+        } catch (Exception e){
+            Log.e(TAG, Log.getStackTraceString(e));
+            realm.cancelTransaction();
+            return null;
+        }
+    }
+}
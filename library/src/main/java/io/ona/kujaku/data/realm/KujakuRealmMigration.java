@@ -0,0 +1,83 @@
+package io.ona.kujaku.data.realm;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import io.ona.kujaku.data.MapBoxDownloadTask;
+import io.realm.DynamicRealm;
+import io.realm.DynamicRealmObject;
+import io.realm.FieldAttribute;
+import io.realm.RealmMigration;
+import io.realm.RealmObjectSchema;
+import io.realm.RealmSchema;
+
+/**
+ * Migrates the {@link RealmDatabase} schema to {@link RealmDatabase#VERSION}
+ * <ul>
+ * <li>Version 2: Adds the indexed {@code mapName} field to {@code MapBoxOfflineQueueTask}, filled from the
+ * task JSON, and indexes {@code taskType} & {@code taskStatus}</li>
+ * </ul>
+ */
+public class KujakuRealmMigration implements RealmMigration {
+
+    private static final String TAG = KujakuRealmMigration.class.getSimpleName();
+
+    protected static final String MAP_BOX_OFFLINE_QUEUE_TASK = "MapBoxOfflineQueueTask";
+
+    @Override
+    public void migrate(DynamicRealm realm, long oldVersion, long newVersion) {
+        RealmSchema schema = realm.getSchema();
+
+        if (oldVersion < 2) {
+            RealmObjectSchema taskSchema = schema.get(MAP_BOX_OFFLINE_QUEUE_TASK);
+            if (taskSchema != null) {
+                if (!taskSchema.hasField("mapName")) {
+                    taskSchema.addField("mapName", String.class, FieldAttribute.INDEXED)
+                            .transform(new RealmObjectSchema.Function() {
+                                @Override
+                                public void apply(DynamicRealmObject obj) {
+                                    obj.setString("mapName", getMapName(obj.getString("task")));
+                                }
+                            });
+                }
+
+                addIndex(taskSchema, "taskType");
+                addIndex(taskSchema, "taskStatus");
+            }
+        }
+    }
+
+    private void addIndex(RealmObjectSchema schema, String fieldName) {
+        if (!schema.hasIndex(fieldName)) {
+            schema.addIndex(fieldName);
+        }
+    }
+
+    @Nullable
+    protected static String getMapName(@Nullable String task) {
+        if (task == null) {
+            return null;
+        }
+
+        try {
+            return new JSONObject(task).optString(MapBoxDownloadTask.MAP_NAME, null);
+        } catch (JSONException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            return null;
+        }
+    }
+
+    // Realm compares the migrations of configurations opened on the same file
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof KujakuRealmMigration;
+    }
+
+    @Override
+    public int hashCode() {
+        return KujakuRealmMigration.class.hashCode();
+    }
+}
@@ -3,21 +3,38 @@ package io.ona.kujaku.data.realm;
 import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 
 import com.mapbox.mapboxsdk.offline.OfflineRegion;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import io.ona.kujaku.data.MapBoxDownloadTask;
 import io.ona.kujaku.data.realm.objects.MapBoxOfflineQueueTask;
 import io.realm.Realm;
 import io.realm.RealmConfiguration;
+import io.realm.RealmQuery;
 import io.realm.RealmResults;
 import io.realm.Sort;
 
 /**
+ * Holds the offline map task queue.
+ * <p>
+ * Each call gets a reference to the {@link Realm} instance of its thread from {@link Realm#getDefaultInstance()},
+ * which is reference counted, & closes it once done. Calls which return {@link MapBoxOfflineQueueTask}s instead
+ * take the {@link Realm} of the caller, which owns that reference & closes it once done with the returned tasks.
+ * Closing it does not invalidate the tasks other callers on the same thread got from their own references.
+ * <p>
  * Created by Jason Rogena - jrogena@ona.io on 11/20/17.
  */
 public class RealmDatabase {
-    protected static final long VERSION = 1l;
+    protected static final long VERSION = 2l;
     protected static final String NAME = "kujaku.realm";
+    private static final String TAG = RealmDatabase.class.getSimpleName();
     private static RealmDatabase realmDatabase;
     private final Context context;
 
@@ -35,6 +52,7 @@ public class RealmDatabase {
         RealmConfiguration configuration = new RealmConfiguration.Builder()
                 .name(NAME)
                 .schemaVersion(VERSION)
+                .migration(new KujakuRealmMigration())
                 .build();
         Realm.setDefaultConfiguration(configuration);
     }
@@ -42,36 +60,37 @@ public class RealmDatabase {
     /**
      * Retrieves all {@link MapBoxOfflineQueueTask} records in ASCENDING order of the date created
      *
+     * @param realm the caller's reference, which has to stay open while the records are used
      * @return list of {@link MapBoxOfflineQueueTask} records
      */
-    public RealmResults<MapBoxOfflineQueueTask> getTasks() {
-        Realm realm = Realm.getDefaultInstance();
-        RealmResults<MapBoxOfflineQueueTask> realmResults = realm.where(MapBoxOfflineQueueTask.class)
-                .findAll();
-
-        return realmResults.sort("dateCreated", Sort.ASCENDING);
+    public RealmResults<MapBoxOfflineQueueTask> getTasks(@NonNull Realm realm) {
+        return realm.where(MapBoxOfflineQueueTask.class)
+                .findAllSorted("dateCreated", Sort.ASCENDING);
     }
 
     public boolean deleteTask(@NonNull String mapName, boolean isDownloadTask) {
-        Realm realm = Realm.getDefaultInstance();
-        MapBoxOfflineQueueTask taskToDelete;
-        String taskType = isDownloadTask ? MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD : MapBoxOfflineQueueTask.TASK_TYPE_DELETE;
+        return deleteTask(mapName, isDownloadTask ? MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD : MapBoxOfflineQueueTask.TASK_TYPE_DELETE);
+    }
 
-        taskToDelete = realm.where(MapBoxOfflineQueueTask.class)
-                .equalTo("taskType", taskType)
-                .contains("task", "\"mapName\":\"" + mapName + "\"")
-                .findFirst();
+    public boolean deleteTask(@NonNull String mapName, @NonNull String taskType) {
+        Realm realm = Realm.getDefaultInstance();
+        try {
+            MapBoxOfflineQueueTask taskToDelete = realm.where(MapBoxOfflineQueueTask.class)
+                    .equalTo("mapName", mapName)
+                    .equalTo("taskType", taskType)
+                    .findFirst();
 
-        if (taskToDelete != null) {
-            realm.beginTransaction();
-            taskToDelete.deleteFromRealm();
-            realm.commitTransaction();
+            if (taskToDelete != null) {
+                realm.beginTransaction();
+                taskToDelete.deleteFromRealm();
+                realm.commitTransaction();
 
+                return true;
+            } else {
+                return false;
+            }
+        } finally {
             realm.close();
-
-            return true;
-        } else {
-            return false;
         }
     }
 
@@ -84,10 +103,14 @@ public class RealmDatabase {
      */
     public void persistCompletedStatus(@NonNull MapBoxOfflineQueueTask mapBoxOfflineQueueTask) {
         Realm realm = Realm.getDefaultInstance();
-        realm.beginTransaction();
+        try {
+            realm.beginTransaction();
 
-        mapBoxOfflineQueueTask.setTaskStatus(MapBoxOfflineQueueTask.TASK_STATUS_DONE);
-        realm.commitTransaction();
+            mapBoxOfflineQueueTask.setTaskStatus(MapBoxOfflineQueueTask.TASK_STATUS_DONE);
+            realm.commitTransaction();
+        } finally {
+            realm.close();
+        }
     }
 
     /**
@@ -98,29 +121,74 @@ public class RealmDatabase {
      */
     public void persistDownloadStartedStatus(@NonNull MapBoxOfflineQueueTask mapBoxOfflineQueueTask) {
         Realm realm = Realm.getDefaultInstance();
-        realm.beginTransaction();
-        mapBoxOfflineQueueTask.setTaskStatus(MapBoxOfflineQueueTask.TASK_STATUS_STARTED);
+        try {
+            realm.beginTransaction();
+            mapBoxOfflineQueueTask.setTaskStatus(MapBoxOfflineQueueTask.TASK_STATUS_STARTED);
 
-        realm.commitTransaction();
+            realm.commitTransaction();
+        } finally {
+            realm.close();
+        }
+    }
+
+    /**
+     * Saves the {@link MapBoxOfflineQueueTask#TASK_STATUS_STARTED} tasks of the given type back as
+     * {@link MapBoxOfflineQueueTask#TASK_STATUS_NOT_STARTED} so that {@link #getNextTask(Realm)} returns them
+     * again. This is used to resume the downloads which were interrupted or failed
+     *
+     * @param taskType
+     * @param runningMapNames maps whose tasks are still being performed & should be left as they are
+     * @return the number of tasks requeued
+     */
+    public int requeueStartedTasks(@NonNull String taskType, @NonNull Collection<String> runningMapNames) {
+        Realm realm = Realm.getDefaultInstance();
+        try {
+            RealmResults<MapBoxOfflineQueueTask> startedTasks = realm.where(MapBoxOfflineQueueTask.class)
+                    .equalTo("taskType", taskType)
+                    .equalTo("taskStatus", MapBoxOfflineQueueTask.TASK_STATUS_STARTED)
+                    .findAll();
+
+            List<MapBoxOfflineQueueTask> tasksToRequeue = new ArrayList<>();
+            for (MapBoxOfflineQueueTask startedTask : startedTasks) {
+                if (!runningMapNames.contains(startedTask.getMapName())) {
+                    tasksToRequeue.add(startedTask);
+                }
+            }
+
+            if (tasksToRequeue.isEmpty()) {
+                return 0;
+            }
+
+            realm.beginTransaction();
+            for (MapBoxOfflineQueueTask taskToRequeue : tasksToRequeue) {
+                taskToRequeue.setTaskStatus(MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED);
+            }
+            realm.commitTransaction();
+
+            return tasksToRequeue.size();
+        } finally {
+            realm.close();
+        }
     }
 
     /**
      * Retrieves the {@link MapBoxOfflineQueueTask}s of type {@link MapBoxOfflineQueueTask#TASK_TYPE_DOWNLOAD}
      * which are pending i.e. their downloads have not started. Their status is {@link MapBoxOfflineQueueTask#TASK_STATUS_NOT_STARTED}
      *
+     * @param realm the caller's reference, which has to stay open while the tasks are used
      * @param mapName
      * @return
      */
-    protected RealmResults<MapBoxOfflineQueueTask> getPendingOfflineMapDownloadsWithSimilarNames(String mapName) {
-        Realm realm = Realm.getDefaultInstance();
-
-        RealmResults<MapBoxOfflineQueueTask> mapBoxOfflineQueueTaskRealmResults = realm.where(MapBoxOfflineQueueTask.class)
-                .equalTo("taskType", MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD)
-                .equalTo("taskStatus", MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED)
-                .contains("task", "\"mapName\":\"" + mapName + "\"")
+    protected RealmResults<MapBoxOfflineQueueTask> getPendingOfflineMapDownloadsWithSimilarNames(@NonNull Realm realm, String mapName) {
+        return getPendingOfflineMapDownloadsQuery(realm, mapName)
                 .findAll();
+    }
 
-        return mapBoxOfflineQueueTaskRealmResults;
+    private RealmQuery<MapBoxOfflineQueueTask> getPendingOfflineMapDownloadsQuery(@NonNull Realm realm, String mapName) {
+        return realm.where(MapBoxOfflineQueueTask.class)
+                .equalTo("mapName", mapName)
+                .equalTo("taskType", MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD)
+                .equalTo("taskStatus", MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED);
     }
 
     /**
@@ -135,34 +203,110 @@ public class RealmDatabase {
             return false;
         }
 
-        RealmResults<MapBoxOfflineQueueTask> realmResults = getPendingOfflineMapDownloadsWithSimilarNames(mapName);
-
         Realm realm = Realm.getDefaultInstance();
+        try {
+            RealmResults<MapBoxOfflineQueueTask> realmResults = getPendingOfflineMapDownloadsQuery(realm, mapName)
+                    .findAll();
+
+            realm.beginTransaction();
+
+            boolean isDeleted = realmResults.deleteAllFromRealm();
+
+            realm.commitTransaction();
+
+            return isDeleted;
+        } finally {
+            realm.close();
+        }
+    }
+
+    /**
+     * Queues several {@link MapBoxDownloadTask}s in a single transaction. Pending downloads of the same
+     * maps are replaced, the same way {@link #deletePendingOfflineMapDownloadsWithSimilarNames(String)}
+     * does for a single map. The tasks are performed in the order of the list
+     *
+     * @param realm the caller's reference, which has to stay open while the queued tasks are used
+     * @param mapBoxDownloadTasks
+     * @return The queued {@link MapBoxOfflineQueueTask}s, empty if the transaction failed
+     */
+    @NonNull
+    public List<MapBoxOfflineQueueTask> enqueueDownloadTasks(@NonNull Realm realm, @NonNull List<MapBoxDownloadTask> mapBoxDownloadTasks) {
+        List<MapBoxOfflineQueueTask> queuedTasks = new ArrayList<>();
+        if (mapBoxDownloadTasks.isEmpty()) {
+            return queuedTasks;
+        }
+
+        String[] mapNames = new String[mapBoxDownloadTasks.size()];
+        for (int i = 0; i < mapNames.length; i++) {
+            mapNames[i] = mapBoxDownloadTasks.get(i).getMapName();
+        }
+
         realm.beginTransaction();
+        try {
+            realm.where(MapBoxOfflineQueueTask.class)
+                    .in("mapName", mapNames)
+                    .equalTo("taskType", MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD)
+                    .equalTo("taskStatus", MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED)
+                    .findAll()
+                    .deleteAllFromRealm();
+
+            // The tasks are a millisecond apart so that getNextTask() returns them in the order given
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < mapBoxDownloadTasks.size(); i++) {
+                MapBoxDownloadTask mapBoxDownloadTask = mapBoxDownloadTasks.get(i);
+                Date date = new Date(now + i);
 
-        boolean isDeleted = realmResults.deleteAllFromRealm();
+                MapBoxOfflineQueueTask mapBoxOfflineQueueTask = realm.createObject(MapBoxOfflineQueueTask.class, UUID.randomUUID().toString());
+                mapBoxOfflineQueueTask.setDateCreated(date);
+                mapBoxOfflineQueueTask.setDateUpdated(date);
+                mapBoxOfflineQueueTask.setTask(mapBoxDownloadTask.getJSONObject());
+                mapBoxOfflineQueueTask.setMapName(mapBoxDownloadTask.getMapName());
+                mapBoxOfflineQueueTask.setTaskStatus(MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED);
+                mapBoxOfflineQueueTask.setTaskType(MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD);
 
-        realm.commitTransaction();
+                queuedTasks.add(mapBoxOfflineQueueTask);
+            }
 
-        return isDeleted;
+            realm.commitTransaction();
+        } catch (Exception e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            realm.cancelTransaction();
+            queuedTasks.clear();
+        }
+
+        return queuedTasks;
     }
 
     /**
-     * Returns the next {@link MapBoxOfflineQueueTask#TASK_STATUS_NOT_STARTED} {@link MapBoxOfflineQueueTask}
+     * Returns the next {@link MapBoxOfflineQueueTask#TASK_STATUS_NOT_STARTED} {@link MapBoxOfflineQueueTask},
+     * the one updated the earliest. The index on the status keeps this from scanning the completed tasks
      *
+     * @param realm the caller's reference, which has to stay open while the task is used
      * @return
      */
-    public MapBoxOfflineQueueTask getNextTask() {
-        Realm realm = Realm.getDefaultInstance();
+    @Nullable
+    public MapBoxOfflineQueueTask getNextTask(@NonNull Realm realm) {
+        Date oldestDateUpdated = getPendingTasksQuery(realm)
+                .minimumDate("dateUpdated");
 
-        RealmResults<MapBoxOfflineQueueTask> realmResults = realm.where(MapBoxOfflineQueueTask.class)
-                .equalTo("taskStatus", MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED)
-                .findAllSorted("dateUpdated", Sort.ASCENDING);
+        if (oldestDateUpdated == null) {
+            return null;
+        }
+
+        // Only the pending tasks updated at that exact time, usually a single one, are sorted
+        RealmResults<MapBoxOfflineQueueTask> realmResults = getPendingTasksQuery(realm)
+                .equalTo("dateUpdated", oldestDateUpdated)
+                .findAllSorted("dateCreated", Sort.ASCENDING);
 
-        if (realmResults.size() > 0) {
-            return realmResults.first();
+        if (realmResults.size() == 0) {
+            return null;
         }
 
-        return null;
+        return realmResults.first();
+    }
+
+    private RealmQuery<MapBoxOfflineQueueTask> getPendingTasksQuery(@NonNull Realm realm) {
+        return realm.where(MapBoxOfflineQueueTask.class)
+                .equalTo("taskStatus", MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED);
     }
 }
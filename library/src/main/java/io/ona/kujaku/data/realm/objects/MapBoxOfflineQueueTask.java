@@ -9,6 +9,7 @@ import java.util.Date;
 import java.util.UUID;
 
 import io.realm.RealmObject;
+import io.realm.annotations.Index;
 import io.realm.annotations.PrimaryKey;
 
 /**
@@ -18,7 +19,8 @@ import io.realm.annotations.PrimaryKey;
 public class MapBoxOfflineQueueTask extends RealmObject {
 
     public static final String TASK_TYPE_DOWNLOAD = "TASK TYPE DOWNLOAD"
-            , TASK_TYPE_DELETE = "TASK TYPE DELETE";
+            , TASK_TYPE_DELETE = "TASK TYPE DELETE"
+            , TASK_TYPE_WMTS_DOWNLOAD = "TASK TYPE WMTS DOWNLOAD";
 
     public static final int TASK_STATUS_DONE = 1
             , TASK_STATUS_NOT_STARTED = 2
@@ -26,9 +28,13 @@ public class MapBoxOfflineQueueTask extends RealmObject {
 
     @PrimaryKey
     private String id = UUID.randomUUID().toString();
+    @Index
     private String taskType;
+    @Index
     private int taskStatus;
     private String task;
+    @Index
+    private String mapName;
     private Date dateCreated;
     private Date dateUpdated;
 
@@ -60,6 +66,17 @@ public class MapBoxOfflineQueueTask extends RealmObject {
         this.task = task.toString();
     }
 
+    /**
+     * @return The name of the map the task is for, copied from the task JSON so that it can be queried
+     */
+    public String getMapName() {
+        return mapName;
+    }
+
+    public void setMapName(String mapName) {
+        this.mapName = mapName;
+    }
+
     public Date getDateCreated() {
         return dateCreated;
     }
@@ -0,0 +1,198 @@
+package io.ona.kujaku.downloaders;
+
+import android.support.annotation.NonNull;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+ * Decides how many offline region downloads can run at the same time & aggregates their progress.
+ * <p>
+ * The number of concurrent downloads starts at the configured maximum and backs off:
+ * <ul>
+ * <li>It is halved when a download fails or first reports an error</li>
+ * <li>It drops to one when the connectivity is lost</li>
+ * <li>No further download is started once the Mapbox tile count limit is exceeded</li>
+ * </ul>
+ * It grows back by one each time a download completes while connected, up to the configured maximum. A
+ * download cancelled by the user only frees its slot.
+ * <p>
+ * This class is not thread-safe and should be used from the main thread
+ */
+public class DownloadConcurrencyController {
+
+    private final int maxConcurrentDownloads;
+    private int concurrencyLimit;
+
+    private boolean isConnected = true;
+    private boolean isTileCountLimitExceeded = false;
+
+    private final LinkedHashMap<String, long[]> activeDownloads = new LinkedHashMap<>();
+    private final Set<String> erroredDownloads = new HashSet<>();
+
+    /**
+     * @param maxConcurrentDownloads Maximum number of regions downloaded at the same time, at least 1
+     */
+    public DownloadConcurrencyController(int maxConcurrentDownloads) {
+        if (maxConcurrentDownloads < 1) {
+            throw new IllegalArgumentException("maxConcurrentDownloads should be at least 1");
+        }
+
+        this.maxConcurrentDownloads = maxConcurrentDownloads;
+        this.concurrencyLimit = maxConcurrentDownloads;
+    }
+
+    /**
+     * @return {@code TRUE} if another download can be started now
+     */
+    public boolean canStartDownload() {
+        return !isTileCountLimitExceeded && activeDownloads.size() < concurrencyLimit;
+    }
+
+    /**
+     * Record the start of a map download
+     *
+     * @param mapName
+     */
+    public void onDownloadStarted(@NonNull String mapName) {
+        if (!activeDownloads.containsKey(mapName)) {
+            activeDownloads.put(mapName, new long[]{0, 0});
+        }
+    }
+
+    /**
+     * Record the progress of a map download
+     *
+     * @param mapName
+     * @param completedResourceCount
+     * @param requiredResourceCount
+     */
+    public void onDownloadProgress(@NonNull String mapName, long completedResourceCount, long requiredResourceCount) {
+        long[] progress = activeDownloads.get(mapName);
+        if (progress != null) {
+            progress[0] = completedResourceCount;
+            progress[1] = requiredResourceCount;
+        }
+    }
+
+    /**
+     * Record the end of a map download
+     *
+     * @param mapName
+     * @param successful {@code TRUE} if the map was completely downloaded
+     * @return {@code TRUE} if the download was active
+     */
+    public boolean onDownloadFinished(@NonNull String mapName, boolean successful) {
+        boolean hasBackedOff = erroredDownloads.remove(mapName);
+        if (activeDownloads.remove(mapName) == null) {
+            return false;
+        }
+
+        if (successful) {
+            if (isConnected && concurrencyLimit < maxConcurrentDownloads) {
+                concurrencyLimit++;
+            }
+        } else if (!hasBackedOff) {
+            concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+        }
+
+        return true;
+    }
+
+    /**
+     * Record an error reported by a running map download. The download stays active since it is
+     * retried by its downloader, but the concurrency limit is halved on the first error of each download
+     *
+     * @param mapName
+     * @return {@code TRUE} if the concurrency limit was lowered
+     */
+    public boolean onDownloadError(@NonNull String mapName) {
+        if (!activeDownloads.containsKey(mapName) || !erroredDownloads.add(mapName)) {
+            return false;
+        }
+
+        concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+        return true;
+    }
+
+    /**
+     * Record that a map download was stopped by the user. It frees the download slot without changing
+     * the concurrency limit since it says nothing about the network
+     *
+     * @param mapName
+     * @return {@code TRUE} if the download was active
+     */
+    public boolean onDownloadCancelled(@NonNull String mapName) {
+        erroredDownloads.remove(mapName);
+        return activeDownloads.remove(mapName) != null;
+    }
+
+    public void onConnectivityChanged(boolean isConnected) {
+        this.isConnected = isConnected;
+        if (!isConnected) {
+            concurrencyLimit = 1;
+        }
+    }
+
+    public void onTileCountLimitExceeded() {
+        isTileCountLimitExceeded = true;
+        concurrencyLimit = 1;
+    }
+
+    public boolean isTileCountLimitExceeded() {
+        return isTileCountLimitExceeded;
+    }
+
+    public boolean isDownloadActive(@NonNull String mapName) {
+        return activeDownloads.containsKey(mapName);
+    }
+
+    public int getActiveDownloadCount() {
+        return activeDownloads.size();
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public int getMaxConcurrentDownloads() {
+        return maxConcurrentDownloads;
+    }
+
+    /**
+     * @return The download percentage of each active map, in the order the downloads were started
+     */
+    @NonNull
+    public LinkedHashMap<String, Double> getDownloadProgress() {
+        LinkedHashMap<String, Double> downloadProgress = new LinkedHashMap<>();
+        for (String mapName : activeDownloads.keySet()) {
+            downloadProgress.put(mapName, getDownloadPercentage(mapName));
+        }
+
+        return downloadProgress;
+    }
+
+    /**
+     * @param mapName
+     * @return The download percentage of the map, 0 if the map is not being downloaded
+     */
+    public double getDownloadPercentage(@NonNull String mapName) {
+        long[] progress = activeDownloads.get(mapName);
+        return progress != null && progress[1] > 0 ? 100.0 * progress[0] / progress[1] : 0.0;
+    }
+
+    /**
+     * @return The download percentage of all the active maps, weighted by the number of resources of each map
+     */
+    public double getAggregateDownloadProgress() {
+        long completedResourceCount = 0;
+        long requiredResourceCount = 0;
+        for (long[] progress : activeDownloads.values()) {
+            completedResourceCount += progress[0];
+            requiredResourceCount += progress[1];
+        }
+
+        return requiredResourceCount > 0 ? 100.0 * completedResourceCount / requiredResourceCount : 0.0;
+    }
+}
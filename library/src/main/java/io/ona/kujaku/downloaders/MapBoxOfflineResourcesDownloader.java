@@ -2,6 +2,7 @@ package io.ona.kujaku.downloaders;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -19,12 +20,17 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import io.ona.kujaku.data.MapBoxDownloadTask;
 import io.ona.kujaku.data.realm.objects.MapBoxOfflineQueueTask;
 import io.ona.kujaku.listeners.IncompleteMapDownloadCallback;
 import io.ona.kujaku.listeners.OfflineRegionStatusCallback;
 import io.ona.kujaku.listeners.OnDownloadMapListener;
+import io.ona.kujaku.listeners.OfflineRegionStatusesCallback;
 import io.ona.kujaku.listeners.OnPauseMapDownloadCallback;
 import io.ona.kujaku.utils.Constants;
 import io.ona.kujaku.utils.exceptions.MalformedDataException;
@@ -40,6 +46,10 @@ import io.ona.kujaku.utils.exceptions.OfflineMapDownloadException;
  * - Deleting an offline map
  * - Getting the map status {@link com.mapbox.mapboxsdk.offline.OfflineRegionStatus}
  * <p>
+ * The offline regions are listed & their metadata decoded once, then looked up by map name from a cache
+ * which is updated when regions are created or deleted through this class. Call
+ * {@link #invalidateOfflineRegionCache()} if regions are created or deleted through the {@link OfflineManager} directly.
+ * The methods should be called from the main thread.
  * <p>
  *
  * CAUTION: Make sure you call {@link ConnectivityReceiver#deactivate()} when done in the lifecycle aware component
@@ -57,6 +67,10 @@ public class MapBoxOfflineResourcesDownloader {
 
     private int connectivityReceiverActivationCounter = 0;
 
+    private final Map<String, OfflineRegion> offlineRegionCache = new HashMap<>();
+    private boolean isOfflineRegionCacheLoaded = false;
+    private List<OfflineManager.ListOfflineRegionsCallback> pendingOfflineRegionCacheCallbacks;
+
     // JSON encoding/decoding
     public static final String JSON_CHARSET = "UTF-8";
     public static final String METADATA_JSON_FIELD_REGION_NAME = "FIELD_REGION_NAME";
@@ -148,7 +162,7 @@ public class MapBoxOfflineResourcesDownloader {
             throws OfflineMapDownloadException {
         checkDownloadMapParams(name, styleUrl, minZoom, maxZoom);
 
-        offlineManager.listOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
+        listCachedOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
             @Override
             public void onList(OfflineRegion[] offlineRegions) {
                 // Download the map
@@ -175,6 +189,7 @@ public class MapBoxOfflineResourcesDownloader {
                     offlineManager.createOfflineRegion(offlineMapDefinition, metadata, new OfflineManager.CreateOfflineRegionCallback() {
                         @Override
                         public void onCreate(OfflineRegion offlineRegion) {
+                            offlineRegionCache.put(name, offlineRegion);
                             resumeMapDownload(offlineRegion, onDownloadMapListener);
                         }
 
@@ -249,10 +264,10 @@ public class MapBoxOfflineResourcesDownloader {
             return;
         }
 
-        offlineManager.listOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
+        listCachedOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
             @Override
             public void onList(OfflineRegion[] offlineRegions) {
-                OfflineRegion offlineRegion = getOfflineRegion(name, offlineRegions);
+                final OfflineRegion offlineRegion = offlineRegionCache.get(name);
                 if (offlineRegion == null) {
                     if (offlineRegionDeleteCallback != null) {
                         offlineRegionDeleteCallback.onError("Map could not be found");
@@ -260,23 +275,26 @@ public class MapBoxOfflineResourcesDownloader {
                     return;
                 }
 
-                OfflineRegion.OfflineRegionDeleteCallback nonNullOfflineRegionCallback;
-                if (offlineRegionDeleteCallback == null) {
-                    nonNullOfflineRegionCallback = new OfflineRegion.OfflineRegionDeleteCallback() {
-                        @Override
-                        public void onDelete() {
+                offlineRegion.delete(new OfflineRegion.OfflineRegionDeleteCallback() {
+                    @Override
+                    public void onDelete() {
+                        removeCachedOfflineRegion(name, offlineRegion.getID());
+                        if (offlineRegionDeleteCallback == null) {
                             Log.i(TAG, "ON DELETE MAP {" + name + "} SUCCESS");
+                        } else {
+                            offlineRegionDeleteCallback.onDelete();
                         }
+                    }
 
-                        @Override
-                        public void onError(String error) {
+                    @Override
+                    public void onError(String error) {
+                        if (offlineRegionDeleteCallback == null) {
                             Log.e(TAG, "ON DELETE MAP : " + name + " --> " + error);
+                        } else {
+                            offlineRegionDeleteCallback.onError(error);
                         }
-                    };
-                } else {
-                    nonNullOfflineRegionCallback = offlineRegionDeleteCallback;
-                }
-                offlineRegion.delete(nonNullOfflineRegionCallback);
+                    }
+                });
             }
 
             @Override
@@ -305,10 +323,10 @@ public class MapBoxOfflineResourcesDownloader {
             return;
         }
 
-        offlineManager.listOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
+        listCachedOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
             @Override
             public void onList(OfflineRegion[] offlineRegions) {
-                final OfflineRegion offlineRegion = getOfflineRegion(name, offlineRegions);
+                final OfflineRegion offlineRegion = offlineRegionCache.get(name);
                 if (offlineRegion == null) {
                     Log.e(TAG, "Map could not be found");
                     if (onDownloadMapListener != null) {
@@ -458,10 +476,10 @@ public class MapBoxOfflineResourcesDownloader {
             return;
         }
 
-        offlineManager.listOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
+        listCachedOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
             @Override
             public void onList(OfflineRegion[] offlineRegions) {
-                final OfflineRegion offlineRegion = getOfflineRegion(name, offlineRegions);
+                final OfflineRegion offlineRegion = offlineRegionCache.get(name);
                 if (offlineRegion == null) {
                     Log.e(TAG, "Map could not be found");
                     if (onPauseMapDownloadCallback != null) {
@@ -526,10 +544,10 @@ public class MapBoxOfflineResourcesDownloader {
                 offlineRegionStatusCallback.onError("Context passed is null");
             }
         } else {
-            offlineManager.listOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
+            listCachedOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
                 @Override
                 public void onList(OfflineRegion[] offlineRegions) {
-                    final OfflineRegion offlineRegion = getOfflineRegion(name, offlineRegions);
+                    final OfflineRegion offlineRegion = offlineRegionCache.get(name);
                     if (offlineRegion == null) {
                         Log.e(TAG, "Map could not be found : " + name);
                         if (offlineRegionStatusCallback != null) {
@@ -558,36 +576,173 @@ public class MapBoxOfflineResourcesDownloader {
                 @Override
                 public void onError(String error) {
                     Log.e(TAG, error);
-                    offlineRegionStatusCallback.onError(error);
+                    if (offlineRegionStatusCallback != null) {
+                        offlineRegionStatusCallback.onError(error);
+                    }
                 }
             });
         }
     }
 
     /**
-     * Matches a given map name to an OfflineRegion given the OfflineRegions
+     * Retrieves the status {@see OfflineRegionStatus} of several Offline Maps with a single lookup of the
+     * offline regions
+     *
+     * @param names                         Unique names of the maps
+     * @param offlineRegionStatusesCallback Callback called once all the map statuses are retrieved or the operation FAILS
+     */
+    public void getMapStatuses(@NonNull List<String> names, @NonNull final OfflineRegionStatusesCallback offlineRegionStatusesCallback) {
+        if (offlineManager == null) {
+            Log.e(TAG, "Context passed is null");
+            offlineRegionStatusesCallback.onError("Context passed is null");
+            return;
+        }
+
+        final List<String> mapNames = new ArrayList<>(names);
+        listCachedOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
+            @Override
+            public void onList(OfflineRegion[] offlineRegions) {
+                final Map<String, OfflineRegionStatus> statuses = new HashMap<>();
+                final Map<String, OfflineRegion> mapRegions = new HashMap<>();
+
+                for (String mapName : mapNames) {
+                    OfflineRegion offlineRegion = offlineRegionCache.get(mapName);
+                    if (offlineRegion == null) {
+                        Log.e(TAG, "Map could not be found : " + mapName);
+                    } else {
+                        mapRegions.put(mapName, offlineRegion);
+                    }
+                }
+
+                if (mapRegions.isEmpty()) {
+                    offlineRegionStatusesCallback.onStatuses(statuses);
+                    return;
+                }
+
+                final int[] pendingStatusCount = {mapRegions.size()};
+                for (final Map.Entry<String, OfflineRegion> mapRegion : mapRegions.entrySet()) {
+                    mapRegion.getValue().getStatus(new OfflineRegion.OfflineRegionStatusCallback() {
+                        @Override
+                        public void onStatus(OfflineRegionStatus status) {
+                            statuses.put(mapRegion.getKey(), status);
+                            onStatusRetrieved();
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            Log.e(TAG, mapRegion.getKey() + " : " + error);
+                            onStatusRetrieved();
+                        }
+
+                        private void onStatusRetrieved() {
+                            pendingStatusCount[0]--;
+                            if (pendingStatusCount[0] == 0) {
+                                offlineRegionStatusesCallback.onStatuses(statuses);
+                            }
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.e(TAG, error);
+                offlineRegionStatusesCallback.onError(error);
+            }
+        });
+    }
+
+    /**
+     * Calls the callback with the offline regions once the offline region cache is loaded. The offline regions
+     * are only listed from the {@link OfflineManager} if the cache is not loaded yet, and only once for all the
+     * calls made while it is loading
      *
-     * @param name           Unique name of the map
-     * @param offlineRegions OfflineRegions returned from {@link OfflineManager#listOfflineRegions(OfflineManager.ListOfflineRegionsCallback)}
-     * @return {@link OfflineRegion} with the given name
+     * @param listOfflineRegionsCallback
      */
-    private OfflineRegion getOfflineRegion(@NonNull String name, @NonNull OfflineRegion[] offlineRegions) {
-        for (OfflineRegion offlineRegion : offlineRegions) {
-            try {
-                String json = new String(offlineRegion.getMetadata(), JSON_CHARSET);
-                JSONObject jsonObject = new JSONObject(json);
-                if (jsonObject.has(METADATA_JSON_FIELD_REGION_NAME)) {
-                    String regionName = jsonObject.getString(METADATA_JSON_FIELD_REGION_NAME);
-                    if (name.equals(regionName)) {
-                        return offlineRegion;
+    private void listCachedOfflineRegions(@NonNull OfflineManager.ListOfflineRegionsCallback listOfflineRegionsCallback) {
+        if (isOfflineRegionCacheLoaded) {
+            listOfflineRegionsCallback.onList(getCachedOfflineRegions());
+            return;
+        }
+
+        if (pendingOfflineRegionCacheCallbacks != null) {
+            pendingOfflineRegionCacheCallbacks.add(listOfflineRegionsCallback);
+            return;
+        }
+
+        pendingOfflineRegionCacheCallbacks = new ArrayList<>();
+        pendingOfflineRegionCacheCallbacks.add(listOfflineRegionsCallback);
+
+        offlineManager.listOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
+            @Override
+            public void onList(OfflineRegion[] offlineRegions) {
+                offlineRegionCache.clear();
+                for (OfflineRegion offlineRegion : offlineRegions) {
+                    String regionName = getRegionName(offlineRegion);
+
+                    // The oldest region wins when several have the same name
+                    if (regionName != null && !offlineRegionCache.containsKey(regionName)) {
+                        offlineRegionCache.put(regionName, offlineRegion);
                     }
                 }
+                isOfflineRegionCacheLoaded = true;
 
-            } catch (UnsupportedEncodingException | JSONException e) {
-                Log.e(TAG, Log.getStackTraceString(e));
-                // Just move to the next map
+                OfflineRegion[] cachedOfflineRegions = getCachedOfflineRegions();
+                for (OfflineManager.ListOfflineRegionsCallback callback : takePendingOfflineRegionCacheCallbacks()) {
+                    callback.onList(cachedOfflineRegions);
+                }
             }
 
+            @Override
+            public void onError(String error) {
+                for (OfflineManager.ListOfflineRegionsCallback callback : takePendingOfflineRegionCacheCallbacks()) {
+                    callback.onError(error);
+                }
+            }
+        });
+    }
+
+    private List<OfflineManager.ListOfflineRegionsCallback> takePendingOfflineRegionCacheCallbacks() {
+        List<OfflineManager.ListOfflineRegionsCallback> callbacks = pendingOfflineRegionCacheCallbacks;
+        pendingOfflineRegionCacheCallbacks = null;
+        return callbacks;
+    }
+
+    private OfflineRegion[] getCachedOfflineRegions() {
+        return offlineRegionCache.values().toArray(new OfflineRegion[offlineRegionCache.size()]);
+    }
+
+    private void removeCachedOfflineRegion(@NonNull String name, long offlineRegionId) {
+        OfflineRegion cachedOfflineRegion = offlineRegionCache.get(name);
+        if (cachedOfflineRegion != null && cachedOfflineRegion.getID() == offlineRegionId) {
+            offlineRegionCache.remove(name);
+        }
+    }
+
+    /**
+     * Clears the offline region cache so that the offline regions are listed again on the next call
+     */
+    public void invalidateOfflineRegionCache() {
+        offlineRegionCache.clear();
+        isOfflineRegionCacheLoaded = false;
+    }
+
+    /**
+     * Decodes the map name from the metadata of an {@link OfflineRegion}
+     *
+     * @param offlineRegion
+     * @return The map name or {@code NULL} if the metadata has no map name or is invalid
+     */
+    @Nullable
+    private String getRegionName(@NonNull OfflineRegion offlineRegion) {
+        try {
+            String json = new String(offlineRegion.getMetadata(), JSON_CHARSET);
+            JSONObject jsonObject = new JSONObject(json);
+            if (jsonObject.has(METADATA_JSON_FIELD_REGION_NAME)) {
+                return jsonObject.getString(METADATA_JSON_FIELD_REGION_NAME);
+            }
+        } catch (UnsupportedEncodingException | JSONException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
         }
 
         return null;
@@ -603,32 +758,26 @@ public class MapBoxOfflineResourcesDownloader {
         offlineManager.listOfflineRegions(new OfflineManager.ListOfflineRegionsCallback() {
             @Override
             public void onList(OfflineRegion[] offlineRegions) {
-                for (OfflineRegion offlineRegion : offlineRegions) {
-                    if (offlineRegion.getID() != mapIdToExclude) {
-                        try {
-                            String json = new String(offlineRegion.getMetadata(), MapBoxOfflineResourcesDownloader.JSON_CHARSET);
-                            JSONObject jsonObject = new JSONObject(json);
-                            if (jsonObject.has(MapBoxOfflineResourcesDownloader.METADATA_JSON_FIELD_REGION_NAME)) {
-                                String regionName = jsonObject.getString(MapBoxOfflineResourcesDownloader.METADATA_JSON_FIELD_REGION_NAME);
-                                if (mapName.equals(regionName)) {
-                                    offlineRegion.delete(new OfflineRegion.OfflineRegionDeleteCallback() {
-                                        @Override
-                                        public void onDelete() {
-                                            Log.i(TAG, "Map deleted successfully!");
-                                        }
-
-                                        @Override
-                                        public void onError(String error) {
-                                            Log.e(TAG, error);
-                                        }
-                                    });
-                                }
+                for (final OfflineRegion offlineRegion : offlineRegions) {
+                    if (!mapName.equals(getRegionName(offlineRegion))) {
+                        continue;
+                    }
+
+                    if (offlineRegion.getID() == mapIdToExclude) {
+                        offlineRegionCache.put(mapName, offlineRegion);
+                    } else {
+                        offlineRegion.delete(new OfflineRegion.OfflineRegionDeleteCallback() {
+                            @Override
+                            public void onDelete() {
+                                removeCachedOfflineRegion(mapName, offlineRegion.getID());
+                                Log.i(TAG, "Map deleted successfully!");
                             }
 
-                        } catch (UnsupportedEncodingException | JSONException e) {
-                            Log.e(TAG, Log.getStackTraceString(e));
-                            // Just move to the next map
-                        }
+                            @Override
+                            public void onError(String error) {
+                                Log.e(TAG, error);
+                            }
+                        });
                     }
                 }
             }
@@ -0,0 +1,298 @@
+package io.ona.kujaku.downloaders;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.ona.kujaku.helpers.storage.MBTilesStore;
+
+/**
+ * Downloads the tiles of a WMTS layer covering a set of {@link WmtsTileRange}s into a {@link MBTilesStore}.
+ * <p>
+ * The tiles are downloaded on an executor which can be shared by several prefetchers. At most twice
+ * {@code parallelism} tiles of a prefetcher are queued on it at the same time so that large regions do not
+ * hold millions of pending downloads in memory. Tiles already in the store are not downloaded again, which
+ * is how an interrupted prefetch is resumed. Tiles the server does not have (404 & 204 responses) are
+ * skipped. Tiles which cannot be written to the store count as failed.
+ */
+public class WmtsTilePrefetcher {
+
+    private static final String TAG = WmtsTilePrefetcher.class.getName();
+
+    public static final int DEFAULT_PARALLELISM = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int TIMEOUT = 15000;
+    private static final int PROGRESS_UPDATES = 100;
+
+    public interface Listener {
+
+        /**
+         * Called about a hundred times during a prefetch, from the download threads
+         *
+         * @param completedTileCount tiles in the store or skipped so far
+         * @param requiredTileCount  tiles in the prefetched ranges
+         */
+        void onProgress(long completedTileCount, long requiredTileCount);
+
+        /**
+         * @param requiredTileCount tiles in the prefetched ranges
+         */
+        void onComplete(long requiredTileCount);
+
+        /**
+         * Called once the prefetch is done if some tiles could not be downloaded. Prefetching the same
+         * ranges again only downloads the missing tiles
+         *
+         * @param error
+         */
+        void onError(@NonNull String error);
+    }
+
+    private final String tileUrlTemplate;
+    private final ExecutorService downloadExecutor;
+    private final int parallelism;
+
+    private volatile boolean cancelled = false;
+    private volatile String lastError;
+    private volatile boolean formatStored = false;
+    private volatile boolean retryable = true;
+
+    /**
+     * @param tileUrlTemplate  tile url with {@code {z}}, {@code {x}} & {@code {y}} placeholders as returned by
+     *                         {@link io.ona.kujaku.wmts.model.WmtsLayer#getTemplateUrl(String)}
+     * @param downloadExecutor executor the tiles are downloaded on, it is not shut down by the prefetcher
+     * @param parallelism      half the maximum number of tiles of this prefetcher queued on the executor
+     */
+    public WmtsTilePrefetcher(@NonNull String tileUrlTemplate, @NonNull ExecutorService downloadExecutor, int parallelism) {
+        this.tileUrlTemplate = tileUrlTemplate;
+        this.downloadExecutor = downloadExecutor;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public WmtsTilePrefetcher(@NonNull String tileUrlTemplate, @NonNull ExecutorService downloadExecutor) {
+        this(tileUrlTemplate, downloadExecutor, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Downloads the tiles of the {@code tileRanges} missing from the {@code store}. This blocks until
+     * all the tiles are processed & should therefore not be called on the main thread. The {@code listener}
+     * is not called if the prefetch is cancelled
+     *
+     * @param store      store the tiles are saved in
+     * @param tileRanges
+     * @param listener
+     */
+    public void prefetch(@NonNull final MBTilesStore store, @NonNull List<WmtsTileRange> tileRanges, @NonNull final Listener listener) {
+        final long requiredTileCount = WmtsTileRange.getTileCount(tileRanges);
+        final long progressStep = Math.max(1, requiredTileCount / PROGRESS_UPDATES);
+        final AtomicLong completedTileCount = new AtomicLong();
+        final AtomicLong failedTileCount = new AtomicLong();
+        retryable = true;
+
+        final int maxQueuedTiles = parallelism * 2;
+        final Semaphore queuePermits = new Semaphore(maxQueuedTiles);
+
+        try {
+            for (WmtsTileRange tileRange : tileRanges) {
+                final int zoom = tileRange.getZoom();
+                for (int row = tileRange.getMinRow(); row <= tileRange.getMaxRow(); row++) {
+                    for (int column = tileRange.getMinColumn(); column <= tileRange.getMaxColumn(); column++) {
+                        if (cancelled) {
+                            return;
+                        }
+
+                        if (store.hasTile(zoom, column, row)) {
+                            onTileCompleted(completedTileCount.incrementAndGet(), requiredTileCount, progressStep, listener);
+                            continue;
+                        }
+
+                        queuePermits.acquire();
+
+                        final int tileColumn = column;
+                        final int tileRow = row;
+                        downloadExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    if (cancelled) {
+                                        return;
+                                    }
+
+                                    if (downloadTile(store, zoom, tileColumn, tileRow)) {
+                                        onTileCompleted(completedTileCount.incrementAndGet(), requiredTileCount, progressStep, listener);
+                                    } else {
+                                        failedTileCount.incrementAndGet();
+                                    }
+                                } finally {
+                                    queuePermits.release();
+                                }
+                            }
+                        });
+                    }
+                }
+            }
+
+            // Wait for the queued tiles
+            queuePermits.acquire(maxQueuedTiles);
+        } catch (InterruptedException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            Thread.currentThread().interrupt();
+            cancel();
+        } catch (RejectedExecutionException e) {
+            // The executor was shut down
+            Log.e(TAG, Log.getStackTraceString(e));
+            cancel();
+        }
+
+        if (cancelled) {
+            return;
+        }
+
+        if (failedTileCount.get() > 0) {
+            listener.onError(String.format(Locale.ENGLISH, "%d of %d tiles could not be downloaded: %s"
+                    , failedTileCount.get(), requiredTileCount, lastError));
+        } else {
+            listener.onComplete(requiredTileCount);
+        }
+    }
+
+    /**
+     * Stops the prefetch. The tiles being downloaded are discarded
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return {@code FALSE} if the last prefetch failed on tiles the server refuses, eg. HTTP 403, in which
+     * case prefetching the same tiles again will fail again
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    @NonNull
+    public String getTileUrl(int zoom, int column, int row) {
+        return tileUrlTemplate.replace("{z}", String.valueOf(zoom))
+                .replace("{x}", String.valueOf(column))
+                .replace("{y}", String.valueOf(row));
+    }
+
+    private void onTileCompleted(long completedTileCount, long requiredTileCount, long progressStep, @NonNull Listener listener) {
+        if (completedTileCount % progressStep == 0 || completedTileCount == requiredTileCount) {
+            listener.onProgress(completedTileCount, requiredTileCount);
+        }
+    }
+
+    /**
+     * @param store
+     * @param zoom
+     * @param column
+     * @param row
+     * @return {@code TRUE} if the tile was stored or the server does not have it
+     */
+    private boolean downloadTile(@NonNull MBTilesStore store, int zoom, int column, int row) {
+        String tileUrl = getTileUrl(zoom, column, row);
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !cancelled; attempt++) {
+            HttpURLConnection connection = null;
+            try {
+                connection = (HttpURLConnection) new URL(tileUrl).openConnection();
+                connection.setConnectTimeout(TIMEOUT);
+                connection.setReadTimeout(TIMEOUT);
+
+                int responseCode = connection.getResponseCode();
+                if (responseCode == HttpURLConnection.HTTP_OK) {
+                    byte[] tile = readFully(connection.getInputStream());
+                    if (!cancelled) {
+                        try {
+                            store.putTile(zoom, column, row, tile);
+                            storeFormat(store, connection.getContentType());
+                        } catch (RuntimeException e) {
+                            // The store cannot be written eg. the disk is full or the store was closed
+                            lastError = e.getMessage();
+                            Log.e(TAG, Log.getStackTraceString(e));
+                            return false;
+                        }
+                    }
+                    return true;
+                } else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_NO_CONTENT) {
+                    return true;
+                }
+
+                lastError = String.format(Locale.ENGLISH, "HTTP %d for %s", responseCode, tileUrl);
+                if (responseCode < HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                    // The request will not succeed if retried
+                    retryable = false;
+                    break;
+                }
+            } catch (IOException e) {
+                lastError = e.getMessage();
+                Log.e(TAG, Log.getStackTraceString(e));
+            } finally {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Saves the format of the tiles in the store metadata so that they can be served with the right content type
+     *
+     * @param store
+     * @param contentType
+     */
+    private void storeFormat(@NonNull MBTilesStore store, @Nullable String contentType) {
+        if (formatStored || contentType == null) {
+            return;
+        }
+
+        String format;
+        if (contentType.startsWith("image/png")) {
+            format = "png";
+        } else if (contentType.startsWith("image/jpeg")) {
+            format = "jpg";
+        } else if (contentType.startsWith("image/webp")) {
+            format = "webp";
+        } else {
+            return;
+        }
+
+        formatStored = true;
+        store.setMetadata(MBTilesStore.METADATA_FORMAT, format);
+    }
+
+    private static byte[] readFully(@NonNull InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.ona.kujaku.downloaders;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rectangular range of {@code TileMatrix} columns & rows covering a region at a single zoom level.
+ * <p>
+ * The tile matrices are assumed to follow the GoogleMapsCompatible (web mercator XYZ) scheme, the
+ * same one {@link io.ona.kujaku.views.KujakuMapView} relies on when it adds a WMTS layer: the
+ * {@code TileMatrix} identifier is the zoom level, the matrix is {@code 2^zoom} tiles wide & high,
+ * column 0 starts at longitude -180 & row 0 at the northern edge of the projection.
+ */
+public class WmtsTileRange {
+
+    public static final double MAX_LATITUDE = 85.05112878;
+
+    private final int zoom;
+    private final int minColumn;
+    private final int maxColumn;
+    private final int minRow;
+    private final int maxRow;
+
+    public WmtsTileRange(int zoom, int minColumn, int maxColumn, int minRow, int maxRow) {
+        this.zoom = zoom;
+        this.minColumn = minColumn;
+        this.maxColumn = maxColumn;
+        this.minRow = minRow;
+        this.maxRow = maxRow;
+    }
+
+    /**
+     * Expands a bounding box & a zoom range into the tile ranges covering it, one per zoom level
+     *
+     * @param north   northern latitude of the region
+     * @param east    eastern longitude of the region
+     * @param south   southern latitude of the region
+     * @param west    western longitude of the region
+     * @param minZoom
+     * @param maxZoom
+     * @return the tile ranges from {@code minZoom} to {@code maxZoom}
+     */
+    @NonNull
+    public static List<WmtsTileRange> expand(double north, double east, double south, double west, int minZoom, int maxZoom) {
+        List<WmtsTileRange> tileRanges = new ArrayList<>();
+        for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+            tileRanges.add(new WmtsTileRange(zoom
+                    , getColumn(west, zoom), getColumn(east, zoom)
+                    , getRow(north, zoom), getRow(south, zoom)));
+        }
+
+        return tileRanges;
+    }
+
+    /**
+     * @param tileRanges
+     * @return the number of tiles in all the {@code tileRanges}
+     */
+    public static long getTileCount(@NonNull List<WmtsTileRange> tileRanges) {
+        long tileCount = 0;
+        for (WmtsTileRange tileRange : tileRanges) {
+            tileCount += tileRange.getTileCount();
+        }
+
+        return tileCount;
+    }
+
+    /**
+     * @param longitude
+     * @param zoom
+     * @return the column of the tile containing {@code longitude}
+     */
+    public static int getColumn(double longitude, int zoom) {
+        int tiles = 1 << zoom;
+        int column = (int) Math.floor((longitude + 180) / 360 * tiles);
+        return clamp(column, tiles);
+    }
+
+    /**
+     * @param latitude
+     * @param zoom
+     * @return the row of the tile containing {@code latitude}
+     */
+    public static int getRow(double latitude, int zoom) {
+        int tiles = 1 << zoom;
+        double latitudeRadians = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)));
+        double y = (1 - Math.log(Math.tan(latitudeRadians) + 1 / Math.cos(latitudeRadians)) / Math.PI) / 2;
+        return clamp((int) Math.floor(y * tiles), tiles);
+    }
+
+    private static int clamp(int index, int tiles) {
+        return Math.max(0, Math.min(tiles - 1, index));
+    }
+
+    public int getZoom() {
+        return zoom;
+    }
+
+    public int getMinColumn() {
+        return minColumn;
+    }
+
+    public int getMaxColumn() {
+        return maxColumn;
+    }
+
+    public int getMinRow() {
+        return minRow;
+    }
+
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    public long getTileCount() {
+        return (long) (maxColumn - minColumn + 1) * (maxRow - minRow + 1);
+    }
+}
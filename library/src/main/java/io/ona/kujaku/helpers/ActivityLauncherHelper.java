@@ -3,7 +3,6 @@ package io.ona.kujaku.helpers;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -18,7 +17,7 @@ import io.ona.kujaku.activities.MapActivity;
 import io.ona.kujaku.callables.AsyncTaskCallable;
 import io.ona.kujaku.domain.Point;
 import io.ona.kujaku.listeners.OnFinishedListener;
-import io.ona.kujaku.tasks.GenericAsyncTask;
+import io.ona.kujaku.tasks.TaskScheduler;
 import io.ona.kujaku.utils.Constants;
 
 import static io.ona.kujaku.utils.Constants.ENABLE_DROP_POINT_BUTTON;
@@ -65,7 +64,7 @@ public class ActivityLauncherHelper {
      * @param onFinishedListener
      */
     private static void createCustomStyleLayer(Context context, OnFinishedListener onFinishedListener) {
-        GenericAsyncTask genericAsyncTask = new GenericAsyncTask(new AsyncTaskCallable() {
+        TaskScheduler.getInstance().submit(new AsyncTaskCallable() {
             @Override
             public Object[] call() throws Exception {
                 String style = readInputStreamAsString(context.getAssets().open("sample-point-file.json"));
@@ -74,8 +73,6 @@ public class ActivityLauncherHelper {
 
                 return new Object[]{mapboxStyleJSON};
             }
-        });
-        genericAsyncTask.setOnFinishedListener(onFinishedListener);
-        genericAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }, onFinishedListener);
     }
 }
@@ -0,0 +1,479 @@
+package io.ona.kujaku.helpers;
+
+import android.database.sqlite.SQLiteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.ona.kujaku.helpers.storage.MBTilesStore;
+
+/**
+ * HTTP server bound to the loopback interface which serves the tiles of {@link MBTilesStore}s so that
+ * Mapbox tile sources can read them like any other tile url. A store is served under
+ * {@code http://127.0.0.1:<port>/<name>/{z}/{x}/{y}}, see {@link #addStore(String, File)}.
+ * <p>
+ * Missing tiles are answered with 404 Not Found which Mapbox renders as empty tiles. Stores which cannot
+ * be read, eg. corrupt or not MBTiles files, are answered with 500 Internal Server Error.
+ * <p>
+ * Each store is read through a small pool of read only, memory mapped connections so that the tiles
+ * requested in parallel by Mapbox are not read one after the other. The tiles served recently are kept
+ * in a memory cache shared by the stores & sized in bytes. Tiles missing from a store are not cached
+ * since a store being prefetched into gets new tiles.
+ */
+public class MBTilesTileServer implements Closeable {
+
+    private static final String TAG = MBTilesTileServer.class.getName();
+
+    private static final int IDLE_CONNECTION_TIMEOUT = 30000;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    public static final int DEFAULT_TILE_CACHE_SIZE = 16 * 1024 * 1024;
+    public static final int DEFAULT_READERS_PER_STORE = 4;
+    private static final int READER_TIMEOUT = 10000;
+
+    private static MBTilesTileServer instance;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool();
+    private final Map<String, StoreReaders> stores = new ConcurrentHashMap<>();
+    private final AtomicInteger storeIds = new AtomicInteger();
+    private final LruCache<String, byte[]> tileCache;
+    private final int readersPerStore;
+
+    private volatile boolean closed = false;
+
+    /**
+     * @return the server shared by the map views, started on first use
+     * @throws IOException if the server socket cannot be opened
+     */
+    @NonNull
+    public static synchronized MBTilesTileServer getInstance() throws IOException {
+        if (instance == null || instance.closed) {
+            instance = new MBTilesTileServer();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Starts a server on a free loopback port with a {@link #DEFAULT_TILE_CACHE_SIZE} tile cache &
+     * {@link #DEFAULT_READERS_PER_STORE} readers per store
+     *
+     * @throws IOException if the server socket cannot be opened
+     */
+    public MBTilesTileServer() throws IOException {
+        this(DEFAULT_TILE_CACHE_SIZE, DEFAULT_READERS_PER_STORE);
+    }
+
+    /**
+     * Starts a server on a free loopback port
+     *
+     * @param tileCacheSize   maximum size of the cached tiles in bytes
+     * @param readersPerStore maximum number of connections opened on each store
+     * @throws IOException if the server socket cannot be opened
+     */
+    public MBTilesTileServer(int tileCacheSize, int readersPerStore) throws IOException {
+        this.readersPerStore = Math.max(1, readersPerStore);
+        tileCache = new LruCache<String, byte[]>(Math.max(1, tileCacheSize)) {
+            @Override
+            protected int sizeOf(String key, byte[] tile) {
+                return tile.length;
+            }
+        };
+
+        serverSocket = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1"));
+
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, TAG);
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Serves the tiles of an existing MBTiles file. Adding a store under a name already in use replaces it
+     *
+     * @param name      name of the store in the tile urls, usually the layer identifier
+     * @param storeFile the MBTiles file
+     * @return the tile url template of the store, with {@code {z}}, {@code {x}} & {@code {y}} placeholders
+     */
+    @NonNull
+    public String addStore(@NonNull String name, @NonNull File storeFile) {
+        StoreReaders storeReaders = stores.get(name);
+        if (storeReaders == null || !storeReaders.file.equals(storeFile)) {
+            closeStore(stores.put(name, new StoreReaders(storeIds.incrementAndGet(), storeFile, readersPerStore)));
+        }
+
+        return getTileUrlTemplate(name);
+    }
+
+    /**
+     * Stops serving the tiles of a store & closes it
+     *
+     * @param name
+     */
+    public void removeStore(@NonNull String name) {
+        closeStore(stores.remove(name));
+    }
+
+    /**
+     * Reads a tile from the cache or from the store served under {@code name}
+     *
+     * @param name   name of the store
+     * @param zoom
+     * @param column
+     * @param row    XYZ row, 0 being the northernmost row
+     * @return the encoded tile or {@code null} if the store does not exist, cannot be read or does not have the tile
+     * @throws InterruptedException if the thread is interrupted while all the readers of the store are busy
+     */
+    @Nullable
+    public byte[] getTile(@NonNull String name, int zoom, int column, int row) throws InterruptedException {
+        StoreReaders storeReaders = stores.get(name);
+        if (storeReaders == null) {
+            return null;
+        }
+
+        try {
+            return getTile(storeReaders, zoom, column, row);
+        } catch (SQLiteException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            return null;
+        }
+    }
+
+    @NonNull
+    public String getTileUrlTemplate(@NonNull String name) {
+        try {
+            return String.format(Locale.ENGLISH, "http://127.0.0.1:%d/%s/{z}/{x}/{y}", getPort(), URLEncoder.encode(name, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        connectionExecutor.shutdownNow();
+
+        for (String name : stores.keySet()) {
+            removeStore(name);
+        }
+    }
+
+    /**
+     * @param storeReaders
+     * @param zoom
+     * @param column
+     * @param row
+     * @return the encoded tile or {@code null} if the store does not have the tile
+     * @throws InterruptedException
+     * @throws SQLiteException      if the store file is missing, corrupt or not an MBTiles database
+     */
+    @Nullable
+    private byte[] getTile(@NonNull StoreReaders storeReaders, int zoom, int column, int row) throws InterruptedException {
+        String cacheKey = storeReaders.id + "/" + zoom + "/" + column + "/" + row;
+        byte[] tile = tileCache.get(cacheKey);
+        if (tile != null) {
+            return tile;
+        }
+
+        MBTilesStore reader = storeReaders.acquire();
+        if (reader == null) {
+            Log.e(TAG, "No reader available for " + storeReaders.file.getPath());
+            return null;
+        }
+
+        try {
+            tile = reader.getTile(zoom, column, row);
+            if (storeReaders.contentType == null) {
+                String format = reader.getMetadata(MBTilesStore.METADATA_FORMAT);
+                if (format != null) {
+                    storeReaders.contentType = getContentType(format);
+                }
+            }
+        } finally {
+            storeReaders.release(reader);
+        }
+
+        if (tile != null && !storeReaders.closed) {
+            tileCache.put(cacheKey, tile);
+        }
+
+        return tile;
+    }
+
+    private void closeStore(@Nullable StoreReaders storeReaders) {
+        if (storeReaders == null) {
+            return;
+        }
+
+        storeReaders.close();
+
+        String cacheKeyPrefix = storeReaders.id + "/";
+        for (String cacheKey : tileCache.snapshot().keySet()) {
+            if (cacheKey.startsWith(cacheKeyPrefix)) {
+                tileCache.remove(cacheKey);
+            }
+        }
+    }
+
+    private void acceptConnections() {
+        while (!closed) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connectionExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleConnection(socket);
+                    }
+                });
+            } catch (IOException e) {
+                if (!closed) {
+                    Log.e(TAG, Log.getStackTraceString(e));
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers the requests of a kept-alive connection until the client closes it or leaves it idle
+     *
+     * @param socket
+     */
+    private void handleConnection(@NonNull Socket socket) {
+        try {
+            socket.setSoTimeout(IDLE_CONNECTION_TIMEOUT);
+            // The head & body of a response are written separately & should not wait for the client acknowledgement
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+
+            String requestLine;
+            while ((requestLine = readLine(in)) != null) {
+                // The headers are not needed
+                String header;
+                do {
+                    header = readLine(in);
+                } while (header != null && !header.isEmpty());
+
+                handleRequest(requestLine, out);
+                out.flush();
+            }
+        } catch (SocketTimeoutException e) {
+            // The idle connection is closed
+        } catch (IOException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+        }
+    }
+
+    private void handleRequest(@NonNull String requestLine, @NonNull OutputStream out) throws IOException {
+        String[] requestParts = requestLine.split(" ");
+        if (requestParts.length < 2 || !"GET".equals(requestParts[0])) {
+            writeResponse(out, 405, "Method Not Allowed", null, null);
+            return;
+        }
+
+        // /<name>/<z>/<x>/<y> with an optional extension
+        String[] pathParts = requestParts[1].split("/");
+        StoreReaders storeReaders = pathParts.length == 5 ? stores.get(URLDecoder.decode(pathParts[1], "UTF-8")) : null;
+        if (storeReaders == null) {
+            writeResponse(out, 404, "Not Found", null, null);
+            return;
+        }
+
+        byte[] tile;
+        try {
+            String row = pathParts[4];
+            int extensionStart = row.indexOf('.');
+            tile = getTile(storeReaders, Integer.parseInt(pathParts[2]), Integer.parseInt(pathParts[3])
+                    , Integer.parseInt(extensionStart == -1 ? row : row.substring(0, extensionStart)));
+        } catch (NumberFormatException e) {
+            writeResponse(out, 400, "Bad Request", null, null);
+            return;
+        } catch (InterruptedException e) {
+            // The server is closing
+            writeResponse(out, 503, "Service Unavailable", null, null);
+            return;
+        } catch (SQLiteException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            writeResponse(out, 500, "Internal Server Error", null, null);
+            return;
+        }
+
+        if (tile == null) {
+            writeResponse(out, 404, "Not Found", null, null);
+        } else {
+            String contentType = storeReaders.contentType;
+            writeResponse(out, 200, "OK", contentType == null ? getContentType(null) : contentType, tile);
+        }
+    }
+
+    private void writeResponse(@NonNull OutputStream out, int status, @NonNull String reason
+            , @Nullable String contentType, @Nullable byte[] body) throws IOException {
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n");
+        if (contentType != null) {
+            head.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        if (isGzipped(body)) {
+            // Vector tiles are usually stored gzipped in MBTiles files
+            head.append("Content-Encoding: gzip\r\n");
+        }
+        head.append("Content-Length: ").append(body == null ? 0 : body.length).append("\r\n\r\n");
+
+        out.write(head.toString().getBytes(ASCII));
+        if (body != null) {
+            out.write(body);
+        }
+    }
+
+    @NonNull
+    private static String getContentType(@Nullable String format) {
+        if ("jpg".equals(format) || "jpeg".equals(format)) {
+            return "image/jpeg";
+        } else if ("webp".equals(format)) {
+            return "image/webp";
+        } else if ("pbf".equals(format)) {
+            return "application/x-protobuf";
+        }
+
+        return "image/png";
+    }
+
+    private static boolean isGzipped(@Nullable byte[] body) {
+        return body != null && body.length > 2 && body[0] == (byte) 0x1f && body[1] == (byte) 0x8b;
+    }
+
+    /**
+     * @param in
+     * @return the line without its terminator or {@code null} if the connection was closed
+     * @throws IOException
+     */
+    @Nullable
+    private static String readLine(@NonNull InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int read;
+        while ((read = in.read()) != -1) {
+            if (read == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("Request line too long");
+            }
+            line.append((char) read);
+        }
+
+        return line.length() > 0 ? line.toString() : null;
+    }
+
+    /**
+     * Pool of the read only connections opened on a store. Connections are opened when all the idle ones
+     * are in use, up to {@code maxReaders}
+     */
+    private static class StoreReaders {
+
+        private final int id;
+        private final File file;
+        private final int maxReaders;
+        private final BlockingQueue<MBTilesStore> idleReaders = new LinkedBlockingQueue<>();
+        private final AtomicInteger openedReaders = new AtomicInteger();
+
+        private volatile String contentType;
+        private volatile boolean closed = false;
+
+        private StoreReaders(int id, @NonNull File file, int maxReaders) {
+            this.id = id;
+            this.file = file;
+            this.maxReaders = maxReaders;
+        }
+
+        /**
+         * @return an idle or new reader, or {@code null} if the store is closed or no reader became idle in time
+         * @throws InterruptedException
+         */
+        @Nullable
+        private MBTilesStore acquire() throws InterruptedException {
+            MBTilesStore reader = idleReaders.poll();
+            if (reader != null || closed) {
+                return reader;
+            }
+
+            if (openedReaders.incrementAndGet() <= maxReaders) {
+                try {
+                    return MBTilesStore.openReadOnly(file);
+                } catch (RuntimeException e) {
+                    openedReaders.decrementAndGet();
+                    throw e;
+                }
+            }
+
+            openedReaders.decrementAndGet();
+            return idleReaders.poll(READER_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+
+        private void release(@NonNull MBTilesStore reader) {
+            idleReaders.offer(reader);
+            if (closed) {
+                closeIdleReaders();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            closeIdleReaders();
+        }
+
+        private void closeIdleReaders() {
+            MBTilesStore reader;
+            while ((reader = idleReaders.poll()) != null) {
+                reader.close();
+            }
+        }
+    }
+}
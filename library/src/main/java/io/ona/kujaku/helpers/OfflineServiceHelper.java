@@ -6,6 +6,8 @@ import android.support.annotation.NonNull;
 
 import com.mapbox.mapboxsdk.geometry.LatLng;
 
+import java.io.File;
+
 import io.ona.kujaku.data.realm.objects.MapBoxOfflineQueueTask;
 import io.ona.kujaku.services.MapboxOfflineDownloaderService;
 import io.ona.kujaku.utils.Constants;
@@ -88,6 +90,58 @@ public abstract class OfflineServiceHelper {
         context.startService(stopDownloadIntent);
     }
 
+    /**
+     * Requests the {@link MapboxOfflineDownloaderService} to download the tiles of a WMTS layer covering the
+     * region into a {@link io.ona.kujaku.helpers.storage.MBTilesStore} so that the layer can be shown offline.
+     * The download is queued with the offline map downloads & reports its progress through the same broadcasts
+     *
+     * @param context
+     * @param mapName           unique name of the download
+     * @param tileUrlTemplate   tile url of the layer as returned by {@link io.ona.kujaku.wmts.model.WmtsLayer#getTemplateUrl(String)}
+     * @param storeFile         MBTiles file the tiles are saved in
+     * @param mapBoxAccessToken
+     * @param topLeftBound
+     * @param bottomRightBound
+     * @param zoomRange
+     */
+    public static void requestWmtsTilesDownload(@NonNull Context context, @NonNull String mapName,
+                                                @NonNull String tileUrlTemplate, @NonNull File storeFile,
+                                                @NonNull String mapBoxAccessToken,
+                                                @NonNull LatLng topLeftBound, @NonNull LatLng bottomRightBound,
+                                                @NonNull ZoomRange zoomRange) {
+        Intent intent = new Intent(context, MapboxOfflineDownloaderService.class);
+        intent.putExtra(Constants.PARCELABLE_KEY_SERVICE_ACTION, MapboxOfflineDownloaderService.SERVICE_ACTION.DOWNLOAD_MAP);
+        intent.putExtra(MapboxOfflineDownloaderService.PARCELABLE_KEY_WMTS_TILE_URL, tileUrlTemplate);
+        intent.putExtra(MapboxOfflineDownloaderService.PARCELABLE_KEY_WMTS_STORE_PATH, storeFile.getAbsolutePath());
+        intent.putExtra(Constants.PARCELABLE_KEY_MAP_UNIQUE_NAME, mapName);
+        intent.putExtra(Constants.PARCELABLE_KEY_MAPBOX_ACCESS_TOKEN, mapBoxAccessToken);
+        intent.putExtra(Constants.PARCELABLE_KEY_TOP_LEFT_BOUND, topLeftBound);
+        intent.putExtra(Constants.PARCELABLE_KEY_BOTTOM_RIGHT_BOUND, bottomRightBound);
+        intent.putExtra(Constants.PARCELABLE_KEY_MIN_ZOOM, zoomRange.getMinZoom());
+        intent.putExtra(Constants.PARCELABLE_KEY_MAX_ZOOM, zoomRange.getMaxZoom());
+
+        context.startService(intent);
+    }
+
+    /**
+     * Requests the {@link MapboxOfflineDownloaderService} to stop a WMTS tile download requested with
+     * {@link #requestWmtsTilesDownload(Context, String, String, File, String, LatLng, LatLng, ZoomRange)}.
+     * The tiles already downloaded are kept
+     *
+     * @param context
+     * @param mapName
+     * @param mapBoxAccessToken
+     */
+    public static void stopWmtsTilesDownload(@NonNull Context context, @NonNull String mapName, @NonNull String mapBoxAccessToken) {
+        Intent stopDownloadIntent = new Intent(context, MapboxOfflineDownloaderService.class);
+        stopDownloadIntent.putExtra(Constants.PARCELABLE_KEY_SERVICE_ACTION, MapboxOfflineDownloaderService.SERVICE_ACTION.STOP_CURRENT_DOWNLOAD);
+        stopDownloadIntent.putExtra(Constants.PARCELABLE_KEY_MAP_UNIQUE_NAME, mapName);
+        stopDownloadIntent.putExtra(Constants.PARCELABLE_KEY_MAPBOX_ACCESS_TOKEN, mapBoxAccessToken);
+        stopDownloadIntent.putExtra(Constants.PARCELABLE_KEY_DELETE_TASK_TYPE, MapBoxOfflineQueueTask.TASK_TYPE_WMTS_DOWNLOAD);
+
+        context.startService(stopDownloadIntent);
+    }
+
     public static class ZoomRange {
         private double minZoom;
         private double maxZoom;
@@ -21,6 +21,9 @@ import io.ona.kujaku.activities.MapActivity;
 public abstract class BaseStorage {
     protected static final String TAG = BaseStorage.class.getSimpleName();
 
+    // Gson instances are thread-safe and caching their type adapters makes them costly to build
+    private static final Gson GSON = new GsonBuilder().create();
+
     /**
      * Writes content to a file on local storage
      *
@@ -63,11 +66,10 @@ public abstract class BaseStorage {
      */
     public boolean gsonWriteObject(String folderName, String fileName, Object object) {
         File file = new File(Environment.getExternalStorageDirectory(), folderName + File.separator + fileName);
-        Gson gson = new GsonBuilder().create();
 
         try {
             FileWriter fw  = new FileWriter(file);
-            gson.toJson(object, fw);
+            GSON.toJson(object, fw);
             fw.close();
 
             return true;
@@ -89,11 +91,10 @@ public abstract class BaseStorage {
      */
     public <T> T gsonReadObject(String folderName, String fileName, Class<T> objClass) {
         File file = new File(Environment.getExternalStorageDirectory(), folderName + File.separator + fileName);
-        Gson gson = new GsonBuilder().create();
 
         try {
             FileReader fr  = new FileReader(file);
-            T obj = gson.fromJson(fr, objClass);
+            T obj = GSON.fromJson(fr, objClass);
             fr.close();
             return obj;
         } catch (IOException ex) {
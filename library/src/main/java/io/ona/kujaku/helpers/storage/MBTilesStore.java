@@ -0,0 +1,197 @@
+package io.ona.kujaku.helpers.storage;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseErrorHandler;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Tile store in the MBTiles layout: a SQLite database with a {@code metadata} name/value table & a
+ * {@code tiles} table keyed by {@code zoom_level}, {@code tile_column} & {@code tile_row}.
+ * <p>
+ * Tiles are addressed with XYZ coordinates, the y axis pointing south as in WMTS & slippy map urls.
+ * They are stored with the TMS row (y axis pointing north) required by MBTiles so that the file can be
+ * opened by other MBTiles readers.
+ * <p>
+ * The store can be written to & read from several threads at the same time. Stores opened with
+ * {@link #openReadOnly(File)} only read tiles & can be opened several times on the same file so that
+ * reads do not wait for each other.
+ */
+public class MBTilesStore implements Closeable {
+
+    public static final String METADATA_NAME = "name";
+    public static final String METADATA_FORMAT = "format";
+    public static final String METADATA_BOUNDS = "bounds";
+    public static final String METADATA_MIN_ZOOM = "minzoom";
+    public static final String METADATA_MAX_ZOOM = "maxzoom";
+
+    private static final String TABLE_METADATA = "metadata";
+    private static final String TABLE_TILES = "tiles";
+
+    /* Size of the file mapped in memory by the read only stores, on the SQLite versions supporting it */
+    private static final long MMAP_SIZE = 256L * 1024 * 1024;
+
+    private final File file;
+    private final SQLiteDatabase database;
+    private final SQLiteStatement insertTileStatement;
+
+    /**
+     * Opens the store, creating the file & its tables if they do not exist
+     *
+     * @param file the MBTiles file
+     */
+    public MBTilesStore(@NonNull File file) {
+        this.file = file;
+
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists()) {
+            directory.mkdirs();
+        }
+
+        database = SQLiteDatabase.openOrCreateDatabase(file, null);
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_METADATA + " (name TEXT PRIMARY KEY, value TEXT)");
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_TILES
+                + " (zoom_level INTEGER, tile_column INTEGER, tile_row INTEGER, tile_data BLOB)");
+        database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS tile_index ON " + TABLE_TILES + " (zoom_level, tile_column, tile_row)");
+
+        insertTileStatement = database.compileStatement("INSERT OR REPLACE INTO " + TABLE_TILES
+                + " (zoom_level, tile_column, tile_row, tile_data) VALUES (?, ?, ?, ?)");
+    }
+
+    private MBTilesStore(@NonNull File file, @NonNull SQLiteDatabase database) {
+        this.file = file;
+        this.database = database;
+        this.insertTileStatement = null;
+    }
+
+    /**
+     * Opens an existing MBTiles file, eg. one provided by a partner, for reading tiles only. The file is
+     * memory mapped where the SQLite version supports it
+     *
+     * @param file the MBTiles file
+     * @return the store
+     * @throws android.database.sqlite.SQLiteException if the file cannot be opened
+     */
+    @NonNull
+    public static MBTilesStore openReadOnly(@NonNull File file) {
+        // The default error handler deletes corrupt databases, the file is not ours to delete
+        SQLiteDatabase database = SQLiteDatabase.openDatabase(file.getPath(), null
+                , SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS, new DatabaseErrorHandler() {
+                    @Override
+                    public void onCorruption(SQLiteDatabase corruptDatabase) {
+                        // The error is reported by the failing query
+                    }
+                });
+
+        try {
+            // PRAGMA statements return a row & cannot be run with execSQL
+            Cursor cursor = database.rawQuery("PRAGMA mmap_size = " + MMAP_SIZE, null);
+            cursor.close();
+        } catch (RuntimeException e) {
+            database.close();
+            throw e;
+        }
+
+        return new MBTilesStore(file, database);
+    }
+
+    @NonNull
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @param zoom
+     * @param column
+     * @param row    XYZ row, 0 being the northernmost row
+     * @param data   the encoded tile
+     */
+    public void putTile(int zoom, int column, int row, @NonNull byte[] data) {
+        if (insertTileStatement == null) {
+            throw new IllegalStateException("The store is read only");
+        }
+
+        synchronized (insertTileStatement) {
+            insertTileStatement.clearBindings();
+            insertTileStatement.bindLong(1, zoom);
+            insertTileStatement.bindLong(2, column);
+            insertTileStatement.bindLong(3, toTmsRow(zoom, row));
+            insertTileStatement.bindBlob(4, data);
+            insertTileStatement.executeInsert();
+        }
+    }
+
+    /**
+     * @param zoom
+     * @param column
+     * @param row    XYZ row, 0 being the northernmost row
+     * @return the encoded tile or {@code null} if the store does not have it
+     */
+    @Nullable
+    public byte[] getTile(int zoom, int column, int row) {
+        Cursor cursor = database.rawQuery("SELECT tile_data FROM " + TABLE_TILES
+                + " WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?", toSelectionArgs(zoom, column, row));
+        try {
+            return cursor.moveToFirst() ? cursor.getBlob(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @param zoom
+     * @param column
+     * @param row    XYZ row, 0 being the northernmost row
+     * @return {@code TRUE} if the store has the tile, without reading it
+     */
+    public boolean hasTile(int zoom, int column, int row) {
+        return DatabaseUtils.longForQuery(database, "SELECT COUNT(*) FROM " + TABLE_TILES
+                + " WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?", toSelectionArgs(zoom, column, row)) > 0;
+    }
+
+    public long getTileCount() {
+        return DatabaseUtils.queryNumEntries(database, TABLE_TILES);
+    }
+
+    public void setMetadata(@NonNull String name, @NonNull String value) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put("name", name);
+        contentValues.put("value", value);
+        database.insertWithOnConflict(TABLE_METADATA, null, contentValues, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    @Nullable
+    public String getMetadata(@NonNull String name) {
+        Cursor cursor = database.rawQuery("SELECT value FROM " + TABLE_METADATA + " WHERE name = ?", new String[]{name});
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (insertTileStatement != null) {
+            synchronized (insertTileStatement) {
+                insertTileStatement.close();
+            }
+        }
+        database.close();
+    }
+
+    private static String[] toSelectionArgs(int zoom, int column, int row) {
+        return new String[]{String.valueOf(zoom), String.valueOf(column), String.valueOf(toTmsRow(zoom, row))};
+    }
+
+    private static int toTmsRow(int zoom, int row) {
+        return (1 << zoom) - 1 - row;
+    }
+}
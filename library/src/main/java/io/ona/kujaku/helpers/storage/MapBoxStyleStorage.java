@@ -1,9 +1,15 @@
 package io.ona.kujaku.helpers.storage;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
+import android.util.Log;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.Reader;
 import java.util.UUID;
 
 import io.ona.kujaku.utils.Constants;
@@ -109,6 +115,38 @@ public class MapBoxStyleStorage extends BaseStorage {
      * - The style's JSON String if the file exists</p>
      */
     public String readStyle(@NonNull String protocolledFilePath) {
+        String[] folderAndFileName = getFolderAndFileName(protocolledFilePath);
+        if (folderAndFileName == null) {
+            return null;
+        }
+
+        return readFile(folderAndFileName[0], folderAndFileName[1], true);
+    }
+
+    /**
+     * Opens a style file for streaming instead of reading it into a String. Use with
+     * {@link MapBoxStyleStreamReader} for styles with large inline GeoJSON sources
+     *
+     * @param protocolledFilePath Path to the style in the format {@code file://[Path_to_file] }
+     * @return A buffered reader of the style or {@code NULL} if the path is not a file path or the file does not exist
+     */
+    @Nullable
+    public Reader openStyle(@NonNull String protocolledFilePath) {
+        String[] folderAndFileName = getFolderAndFileName(protocolledFilePath);
+        if (folderAndFileName == null) {
+            return null;
+        }
+
+        try {
+            return new BufferedReader(new FileReader(new File(folderAndFileName[0] + File.separator + folderAndFileName[1])));
+        } catch (FileNotFoundException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            return null;
+        }
+    }
+
+    @Nullable
+    private String[] getFolderAndFileName(@NonNull String protocolledFilePath) {
         String fileProtocolOrSth = "file://";
         if (protocolledFilePath.isEmpty() || !protocolledFilePath.startsWith(fileProtocolOrSth)) {
             return null;
@@ -125,7 +163,7 @@ public class MapBoxStyleStorage extends BaseStorage {
                 protocolledFilePath.lastIndexOf(File.separator) + 1
         );
 
-        return readFile(folders, fileName, true);
+        return new String[]{folders, fileName};
     }
 
     @Override
@@ -0,0 +1,238 @@
+package io.ona.kujaku.helpers.storage;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a Mapbox style with a pull parser so that styles carrying large inline GeoJSON sources can be
+ * loaded without holding the style string & a complete {@link JSONObject} tree in memory.
+ * <p>
+ * The style is read in a single pass. The features of the inline GeoJSON sources are parsed one at a time
+ * & emitted to a {@link StyleListener} which decides which sources it wants and keeps only what it needs.
+ * Everything else is returned as the style "skeleton": a {@link JSONObject} of the style where the
+ * {@code features} of the inline GeoJSON sources are empty. The memory used by the parsing is therefore
+ * bounded by the skeleton & the largest feature, whatever the number of features.
+ * <p>
+ * HOW TO USE<br/>
+ * ----------<br/>
+ * <p>
+ * {@code JSONObject style = new MapBoxStyleStreamReader().read(new MapBoxStyleStorage().openStyle("file:///sdcard/style.json"), styleListener)}
+ */
+public class MapBoxStyleStreamReader {
+
+    public static final String KEY_SOURCES = "sources";
+    public static final String KEY_METADATA = "metadata";
+    public static final String KEY_DATA = "data";
+    public static final String KEY_FEATURES = "features";
+
+    public interface StyleListener {
+
+        /**
+         * Called once the style metadata is read, which can be after the sources
+         *
+         * @param metadata
+         */
+        void onMetadata(@NonNull JSONObject metadata);
+
+        /**
+         * Called when the inline data of a GeoJSON source is reached
+         *
+         * @param sourceName
+         * @return {@code TRUE} to receive the features of the source, {@code FALSE} to skip them
+         */
+        boolean onGeoJsonSource(@NonNull String sourceName);
+
+        /**
+         * Called for every feature of a GeoJSON source whose features are wanted, in the order of the style
+         *
+         * @param sourceName
+         * @param feature
+         */
+        void onFeature(@NonNull String sourceName, @NonNull JSONObject feature);
+    }
+
+    /**
+     * Read a style & emit the features of its inline GeoJSON sources. The reader is closed
+     *
+     * @param reader
+     * @param styleListener
+     * @return The style skeleton
+     * @throws IOException   If the style cannot be read or is not valid JSON
+     * @throws JSONException If the style is not a JSON object
+     */
+    @NonNull
+    public JSONObject read(@NonNull Reader reader, @NonNull StyleListener styleListener) throws IOException, JSONException {
+        JsonReader jsonReader = new JsonReader(reader);
+
+        try {
+            if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+                throw new JSONException("The style should be a JSON object");
+            }
+
+            JSONObject style = new JSONObject();
+            jsonReader.beginObject();
+
+            while (jsonReader.hasNext()) {
+                String name = jsonReader.nextName();
+                if (KEY_SOURCES.equals(name) && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                    style.put(name, readSources(jsonReader, styleListener));
+                } else {
+                    Object value = readValue(jsonReader);
+                    style.put(name, value);
+
+                    if (KEY_METADATA.equals(name) && value instanceof JSONObject) {
+                        styleListener.onMetadata((JSONObject) value);
+                    }
+                }
+            }
+
+            jsonReader.endObject();
+            return style;
+        } finally {
+            jsonReader.close();
+        }
+    }
+
+    private JSONObject readSources(@NonNull JsonReader jsonReader, @NonNull StyleListener styleListener) throws IOException, JSONException {
+        JSONObject sources = new JSONObject();
+        jsonReader.beginObject();
+
+        while (jsonReader.hasNext()) {
+            String sourceName = jsonReader.nextName();
+            if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                sources.put(sourceName, readSource(jsonReader, sourceName, styleListener));
+            } else {
+                sources.put(sourceName, readValue(jsonReader));
+            }
+        }
+
+        jsonReader.endObject();
+        return sources;
+    }
+
+    private JSONObject readSource(@NonNull JsonReader jsonReader, @NonNull String sourceName, @NonNull StyleListener styleListener) throws IOException, JSONException {
+        JSONObject source = new JSONObject();
+        jsonReader.beginObject();
+
+        while (jsonReader.hasNext()) {
+            String name = jsonReader.nextName();
+
+            // Only GeoJSON sources have a data property, which is either an URL or inline GeoJSON
+            if (KEY_DATA.equals(name) && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                source.put(name, readGeoJsonData(jsonReader, sourceName
+                        , styleListener.onGeoJsonSource(sourceName) ? styleListener : null));
+            } else {
+                source.put(name, readValue(jsonReader));
+            }
+        }
+
+        jsonReader.endObject();
+        return source;
+    }
+
+    private JSONObject readGeoJsonData(@NonNull JsonReader jsonReader, @NonNull String sourceName, @Nullable StyleListener styleListener) throws IOException, JSONException {
+        JSONObject data = new JSONObject();
+        jsonReader.beginObject();
+
+        while (jsonReader.hasNext()) {
+            String name = jsonReader.nextName();
+            if (KEY_FEATURES.equals(name) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    if (styleListener != null && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                        styleListener.onFeature(sourceName, readObject(jsonReader));
+                    } else {
+                        jsonReader.skipValue();
+                    }
+                }
+                jsonReader.endArray();
+
+                data.put(name, new JSONArray());
+            } else {
+                data.put(name, readValue(jsonReader));
+            }
+        }
+
+        jsonReader.endObject();
+        return data;
+    }
+
+    private JSONObject readObject(@NonNull JsonReader jsonReader) throws IOException, JSONException {
+        JSONObject jsonObject = new JSONObject();
+        jsonReader.beginObject();
+
+        while (jsonReader.hasNext()) {
+            jsonObject.put(jsonReader.nextName(), readValue(jsonReader));
+        }
+
+        jsonReader.endObject();
+        return jsonObject;
+    }
+
+    private JSONArray readArray(@NonNull JsonReader jsonReader) throws IOException, JSONException {
+        JSONArray jsonArray = new JSONArray();
+        jsonReader.beginArray();
+
+        while (jsonReader.hasNext()) {
+            jsonArray.put(readValue(jsonReader));
+        }
+
+        jsonReader.endArray();
+        return jsonArray;
+    }
+
+    private Object readValue(@NonNull JsonReader jsonReader) throws IOException, JSONException {
+        JsonToken token = jsonReader.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                return readObject(jsonReader);
+            case BEGIN_ARRAY:
+                return readArray(jsonReader);
+            case STRING:
+                return jsonReader.nextString();
+            case NUMBER:
+                return parseNumber(jsonReader.nextString());
+            case BOOLEAN:
+                return jsonReader.nextBoolean();
+            case NULL:
+                jsonReader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("Unexpected token " + token);
+        }
+    }
+
+    /**
+     * Parse a JSON number the way {@link JSONObject} does: integers to {@link Integer} or {@link Long} &
+     * other numbers to {@link Double}
+     *
+     * @param number
+     * @return
+     */
+    private Number parseNumber(@NonNull String number) {
+        if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+            try {
+                long longValue = Long.parseLong(number);
+                if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+                    return (int) longValue;
+                }
+
+                return longValue;
+            } catch (NumberFormatException e) {
+                // Too large for a long
+            }
+        }
+
+        return Double.valueOf(number);
+    }
+}
@@ -3,7 +3,7 @@ package io.ona.kujaku.helpers.storage;
 import android.location.Location;
 
 /**
- * Class StoreLocation used to store location with Gson
+ * Class StoreLocation used to read the locations stored with Gson by previous versions
  */
 class StoreLocation {
 
@@ -0,0 +1,321 @@
+package io.ona.kujaku.helpers.storage;
+
+import android.location.Location;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable columnar buffer of track locations.
+ *
+ * Each location attribute is kept in its own primitive array so that a track costs 45 bytes per location
+ * instead of a full {@link Location} object. Locations can only be appended: the values below
+ * {@link #size()} never change, which enables {@link #getView()} to share the arrays with readers on other
+ * threads without copying them.
+ *
+ * Providers other than the common ones are stored once in a table & referenced by their index, up to
+ * {@link #MAX_OTHER_PROVIDERS} of them per buffer. Further providers are read back as an empty provider.
+ */
+public class TrackBuffer {
+
+    private static final int DEFAULT_CAPACITY = 256;
+    public static final int MAX_OTHER_PROVIDERS = 256 - TrackingLog.FIRST_OTHER_PROVIDER;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] altitudes;
+    private long[] times;
+    private float[] accuracies;
+    private float[] bearings;
+    private float[] speeds;
+    private byte[] providers;
+    private String[] otherProviders;
+    private int otherProviderCount;
+
+    private int size;
+
+    public TrackBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity Number of locations which can be appended before the arrays are grown
+     */
+    public TrackBuffer(int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("initialCapacity should be greater than 0");
+        }
+
+        allocate(initialCapacity);
+    }
+
+    /**
+     * Append a location at the end of the track
+     *
+     * @param location
+     */
+    public void add(@NonNull Location location) {
+        add(location.getLatitude(), location.getLongitude(), location.getAltitude(), location.getTime(),
+                location.getAccuracy(), location.getBearing(), location.getSpeed(), location.getProvider());
+    }
+
+    synchronized void add(double latitude, double longitude, double altitude, long time
+            , float accuracy, float bearing, float speed, @Nullable String provider) {
+        if (size == latitudes.length) {
+            grow();
+        }
+
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        altitudes[size] = altitude;
+        times[size] = time;
+        accuracies[size] = accuracy;
+        bearings[size] = bearing;
+        speeds[size] = speed;
+        providers[size] = encodeProvider(provider);
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Remove all the locations. Views taken before keep their locations
+     */
+    public synchronized void clear() {
+        allocate(DEFAULT_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * Get a read only view of the locations appended so far. The view does not copy the locations and is not
+     * affected by the locations appended after it was taken
+     *
+     * @return
+     */
+    @NonNull
+    public synchronized View getView() {
+        return new View(this);
+    }
+
+    private void allocate(int capacity) {
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        altitudes = new double[capacity];
+        times = new long[capacity];
+        accuracies = new float[capacity];
+        bearings = new float[capacity];
+        speeds = new float[capacity];
+        providers = new byte[capacity];
+        otherProviders = new String[4];
+        otherProviderCount = 0;
+    }
+
+    private byte encodeProvider(@Nullable String provider) {
+        byte code = TrackingLog.encodeProvider(provider);
+        if (code != TrackingLog.PROVIDER_OTHER || provider == null || provider.isEmpty()) {
+            return code;
+        }
+
+        for (int i = 0; i < otherProviderCount; i++) {
+            if (otherProviders[i].equals(provider)) {
+                return (byte) (TrackingLog.FIRST_OTHER_PROVIDER + i);
+            }
+        }
+
+        if (otherProviderCount == MAX_OTHER_PROVIDERS) {
+            return TrackingLog.PROVIDER_OTHER;
+        }
+
+        if (otherProviderCount == otherProviders.length) {
+            otherProviders = Arrays.copyOf(otherProviders, Math.min(otherProviderCount * 2, MAX_OTHER_PROVIDERS));
+        }
+
+        // The table is only appended to so that views can share it like the columns
+        otherProviders[otherProviderCount] = provider;
+        return (byte) (TrackingLog.FIRST_OTHER_PROVIDER + otherProviderCount++);
+    }
+
+    private void grow() {
+        int capacity = latitudes.length + (latitudes.length >> 1) + 1;
+
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+        altitudes = Arrays.copyOf(altitudes, capacity);
+        times = Arrays.copyOf(times, capacity);
+        accuracies = Arrays.copyOf(accuracies, capacity);
+        bearings = Arrays.copyOf(bearings, capacity);
+        speeds = Arrays.copyOf(speeds, capacity);
+        providers = Arrays.copyOf(providers, capacity);
+    }
+
+    /**
+     * Read only view of the first {@link #size()} locations of a {@link TrackBuffer}
+     */
+    public static class View {
+
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final double[] altitudes;
+        private final long[] times;
+        private final float[] accuracies;
+        private final float[] bearings;
+        private final float[] speeds;
+        private final byte[] providers;
+        private final String[] otherProviders;
+        private final int size;
+
+        private View(TrackBuffer buffer) {
+            latitudes = buffer.latitudes;
+            longitudes = buffer.longitudes;
+            altitudes = buffer.altitudes;
+            times = buffer.times;
+            accuracies = buffer.accuracies;
+            bearings = buffer.bearings;
+            speeds = buffer.speeds;
+            providers = buffer.providers;
+            otherProviders = buffer.otherProviders;
+            size = buffer.size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public double getLatitude(int index) {
+            checkIndex(index);
+            return latitudes[index];
+        }
+
+        public double getLongitude(int index) {
+            checkIndex(index);
+            return longitudes[index];
+        }
+
+        public double getAltitude(int index) {
+            checkIndex(index);
+            return altitudes[index];
+        }
+
+        public long getTime(int index) {
+            checkIndex(index);
+            return times[index];
+        }
+
+        public float getAccuracy(int index) {
+            checkIndex(index);
+            return accuracies[index];
+        }
+
+        public float getBearing(int index) {
+            checkIndex(index);
+            return bearings[index];
+        }
+
+        public float getSpeed(int index) {
+            checkIndex(index);
+            return speeds[index];
+        }
+
+        @Nullable
+        public String getProvider(int index) {
+            checkIndex(index);
+            return decodeProvider(providers[index]);
+        }
+
+        /**
+         * Build a {@link Location} for the location at the given index
+         *
+         * @param index
+         * @return
+         */
+        @NonNull
+        public Location getLocation(int index) {
+            checkIndex(index);
+
+            Location location = new Location(decodeProvider(providers[index]));
+            location.setLatitude(latitudes[index]);
+            location.setLongitude(longitudes[index]);
+            location.setAltitude(altitudes[index]);
+            location.setTime(times[index]);
+            location.setAccuracy(accuracies[index]);
+            location.setBearing(bearings[index]);
+            location.setSpeed(speeds[index]);
+
+            return location;
+        }
+
+        /**
+         * Build a {@link Location} for each location of the view. Prefer the indexed getters for large tracks
+         *
+         * @return
+         */
+        @NonNull
+        public List<Location> toLocations() {
+            List<Location> locations = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                locations.add(getLocation(i));
+            }
+
+            return locations;
+        }
+
+        /**
+         * Write the track as a GeoJSON LineString geometry, straight from the columns
+         *
+         * @param appendable
+         * @throws IOException
+         */
+        public void writeLineString(@NonNull Appendable appendable) throws IOException {
+            appendable.append("{\"type\":\"LineString\",\"coordinates\":[");
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    appendable.append(',');
+                }
+
+                appendable.append('[')
+                        .append(Double.toString(longitudes[i]))
+                        .append(',')
+                        .append(Double.toString(latitudes[i]))
+                        .append(']');
+            }
+            appendable.append("]}");
+        }
+
+        /**
+         * @return The track as a GeoJSON LineString geometry which can be passed to a GeoJsonSource as is
+         */
+        @NonNull
+        public String toLineStringJson() {
+            // About 40 characters per coordinate
+            StringBuilder stringBuilder = new StringBuilder(48 + size * 40);
+            try {
+                writeLineString(stringBuilder);
+            } catch (IOException e) {
+                // StringBuilder does not throw IOExceptions
+            }
+
+            return stringBuilder.toString();
+        }
+
+        private String decodeProvider(byte provider) {
+            int otherIndex = (provider & 0xFF) - TrackingLog.FIRST_OTHER_PROVIDER;
+            return otherIndex >= 0 ? otherProviders[otherIndex] : TrackingLog.decodeProvider(provider);
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package io.ona.kujaku.helpers.storage;
+
+import android.location.Location;
+import android.location.LocationManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Segmented append-only binary log of {@link StoreLocation} records.
+ *
+ * Each segment file starts with a fixed size header (magic, version, record size, segment index
+ * and the CRC32 of the header) followed by fixed size records, each one ending with its own CRC32.
+ * A record torn by a crash fails its checksum and is truncated when the log is re-opened for writing.
+ * Readers stop at the first invalid record so that they can run while a track is being written.
+ *
+ * The common providers are stored as a code in the provider byte of the records. Any other provider is
+ * given a code of its own in the segment through a provider record, which has {@code 0xFF} in place of the
+ * provider byte & holds the code followed by the length prefixed UTF-8 name instead of the location. Names
+ * longer than {@link #MAX_PROVIDER_NAME_LENGTH} bytes, or beyond the 250 providers a segment can define, are
+ * read back as an empty provider.
+ */
+public class TrackingLog implements Closeable {
+    private static final String TAG = TrackingLog.class.getSimpleName();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static final String SEGMENT_PREFIX = "Tracks_";
+    public static final String SEGMENT_EXTENSION = ".bin";
+
+    private static final int MAGIC = 0x4B4A544C; // "KJTL"
+    private static final short VERSION = 1;
+
+    // magic(4) + version(2) + recordSize(2) + segmentIndex(4) + crc(4)
+    static final int HEADER_SIZE = 16;
+
+    // latitude(8) + longitude(8) + altitude(8) + time(8) + accuracy(4) + bearing(4) + speed(4)
+    // + provider(1) + reserved(3) + crc(4)
+    static final int RECORD_SIZE = 52;
+    private static final int PROVIDER_OFFSET = 44;
+
+    // Provider record: code(1) + nameLength(1) + name(42) + PROVIDER_RECORD(1) + reserved(3) + crc(4)
+    public static final int MAX_PROVIDER_NAME_LENGTH = PROVIDER_OFFSET - 2;
+
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 4096;
+    public static final int DEFAULT_SYNC_INTERVAL = 10;
+
+    static final byte PROVIDER_OTHER = 0;
+    private static final byte PROVIDER_GPS = 1;
+    private static final byte PROVIDER_NETWORK = 2;
+    private static final byte PROVIDER_PASSIVE = 3;
+    private static final byte PROVIDER_FUSED = 4;
+    static final int FIRST_OTHER_PROVIDER = 5;
+    private static final byte PROVIDER_RECORD = (byte) 0xFF;
+
+    private final File directory;
+    private final int recordsPerSegment;
+    private final int syncInterval;
+
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private final Map<String, Byte> segmentProviders = new HashMap<>();
+
+    private RandomAccessFile segmentFile;
+    private FileChannel segmentChannel;
+    private int segmentIndex = -1;
+    private int segmentRecordCount;
+    private int unsyncedRecordCount;
+
+    public TrackingLog(@NonNull File directory) {
+        this(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * @param directory         Directory holding the segments of the log
+     * @param recordsPerSegment Number of records after which a new segment is started
+     * @param syncInterval      Number of appended records after which the segment is forced to disk
+     */
+    public TrackingLog(@NonNull File directory, int recordsPerSegment, int syncInterval) {
+        if (recordsPerSegment < 1 || syncInterval < 1) {
+            throw new IllegalArgumentException("recordsPerSegment and syncInterval should be greater than 0");
+        }
+
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * Append a location at the end of the log. The segment is only forced to disk every
+     * {@code syncInterval} records, call {@link #sync()} to force it earlier.
+     *
+     * @param location
+     * @throws IOException
+     */
+    public synchronized void append(@NonNull Location location) throws IOException {
+        if (segmentChannel == null) {
+            openForAppend();
+        }
+
+        String providerName = location.getProvider();
+        byte provider = encodeProvider(providerName);
+        boolean isOtherProvider = provider == PROVIDER_OTHER && providerName != null && !providerName.isEmpty();
+
+        // A provider record is written in the same segment as the first location which refers to it
+        int recordCount = isOtherProvider && !segmentProviders.containsKey(providerName) ? 2 : 1;
+        if (segmentRecordCount > 0 && segmentRecordCount + recordCount > recordsPerSegment) {
+            closeSegment();
+            createSegment(segmentIndex + 1);
+        }
+
+        if (isOtherProvider) {
+            provider = getSegmentProvider(providerName);
+        }
+
+        recordBuffer.clear();
+        encode(location, provider, recordBuffer);
+        writeRecord();
+    }
+
+    /**
+     * Get the code of a provider in the current segment, writing its provider record if it is not defined yet
+     *
+     * @param provider
+     * @return The code of the provider or {@link #PROVIDER_OTHER} if it cannot be stored
+     * @throws IOException
+     */
+    private byte getSegmentProvider(@NonNull String provider) throws IOException {
+        Byte code = segmentProviders.get(provider);
+        if (code != null) {
+            return code;
+        }
+
+        byte[] name = provider.getBytes(UTF_8);
+        int nextCode = FIRST_OTHER_PROVIDER + segmentProviders.size();
+        if (name.length > MAX_PROVIDER_NAME_LENGTH || nextCode >= (PROVIDER_RECORD & 0xFF)) {
+            return PROVIDER_OTHER;
+        }
+
+        recordBuffer.clear();
+        Arrays.fill(recordBuffer.array(), (byte) 0);
+        recordBuffer.put((byte) nextCode);
+        recordBuffer.put((byte) name.length);
+        recordBuffer.put(name);
+        recordBuffer.position(PROVIDER_OFFSET);
+        recordBuffer.put(PROVIDER_RECORD);
+        putReservedAndCrc(recordBuffer);
+        writeRecord();
+
+        segmentProviders.put(provider, (byte) nextCode);
+        return (byte) nextCode;
+    }
+
+    /**
+     * Write the record in the {@link #recordBuffer} after the last record of the segment
+     *
+     * @throws IOException
+     */
+    private void writeRecord() throws IOException {
+        recordBuffer.flip();
+
+        long position = HEADER_SIZE + (long) segmentRecordCount * RECORD_SIZE;
+        while (recordBuffer.hasRemaining()) {
+            position += segmentChannel.write(recordBuffer, position);
+        }
+
+        segmentRecordCount++;
+        unsyncedRecordCount++;
+
+        if (unsyncedRecordCount >= syncInterval) {
+            sync();
+        }
+    }
+
+    /**
+     * Force the records appended since the last sync to disk
+     *
+     * @throws IOException
+     */
+    public synchronized void sync() throws IOException {
+        if (segmentChannel != null && unsyncedRecordCount > 0) {
+            segmentChannel.force(false);
+        }
+        unsyncedRecordCount = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeSegment();
+        segmentIndex = -1;
+    }
+
+    /**
+     * Read the whole track in a single sequential pass over the segments
+     *
+     * @return The locations in the order they were appended
+     */
+    public List<Location> readAll() {
+        TrackBuffer trackBuffer = new TrackBuffer();
+        readAll(trackBuffer);
+
+        return trackBuffer.getView().toLocations();
+    }
+
+    /**
+     * Read the whole track in a single sequential pass over the segments, without creating a
+     * {@link Location} per record
+     *
+     * @param trackBuffer Buffer to which the records are appended in the order they were appended to the log
+     */
+    public void readAll(@NonNull TrackBuffer trackBuffer) {
+        for (File segment : listSegments(directory)) {
+            try {
+                readSegment(segment, trackBuffer);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not read tracking log segment " + segment.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Open the last segment of the log, drop any torn record at its tail and position the writer after
+     * the last valid record
+     *
+     * @throws IOException
+     */
+    private void openForAppend() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory.getAbsolutePath());
+        }
+
+        File[] segments = listSegments(directory);
+        if (segments.length == 0) {
+            createSegment(0);
+            return;
+        }
+
+        File lastSegment = segments[segments.length - 1];
+        int lastIndex = getSegmentIndex(lastSegment);
+
+        RandomAccessFile file = new RandomAccessFile(lastSegment, "rw");
+        FileChannel channel = file.getChannel();
+
+        int validRecords = -1;
+        segmentProviders.clear();
+        if (channel.size() >= HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            header.flip();
+            if (isHeaderValid(header, new CRC32())) {
+                validRecords = countValidRecords(channel);
+            }
+        }
+
+        if (validRecords < 0) {
+            // The header itself was torn, the segment cannot hold any record
+            channel.close();
+            file.close();
+            createSegment(lastIndex);
+            return;
+        }
+
+        long validSize = HEADER_SIZE + (long) validRecords * RECORD_SIZE;
+        if (channel.size() > validSize) {
+            Log.w(TAG, "Truncating " + (channel.size() - validSize) + " bytes of torn records in " + lastSegment.getName());
+            channel.truncate(validSize);
+            channel.force(false);
+        }
+
+        segmentFile = file;
+        segmentChannel = channel;
+        segmentIndex = lastIndex;
+        segmentRecordCount = validRecords;
+        unsyncedRecordCount = 0;
+    }
+
+    private void createSegment(int index) throws IOException {
+        File segment = new File(directory, getSegmentFileName(index));
+
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        FileChannel channel = file.getChannel();
+        channel.truncate(0);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) RECORD_SIZE);
+        header.putInt(index);
+        crc.reset();
+        crc.update(header.array(), 0, HEADER_SIZE - 4);
+        header.putInt((int) crc.getValue());
+        header.flip();
+
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        channel.force(false);
+
+        segmentFile = file;
+        segmentChannel = channel;
+        segmentIndex = index;
+        segmentRecordCount = 0;
+        unsyncedRecordCount = 0;
+        segmentProviders.clear();
+    }
+
+    private void closeSegment() throws IOException {
+        if (segmentChannel != null) {
+            sync();
+            segmentChannel.close();
+            segmentFile.close();
+        }
+
+        segmentChannel = null;
+        segmentFile = null;
+    }
+
+    private int countValidRecords(FileChannel channel) throws IOException {
+        long available = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 256).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 checksum = new CRC32();
+
+        int count = 0;
+        long position = HEADER_SIZE;
+        while (count < available) {
+            buffer.clear();
+            int toRead = (int) Math.min(buffer.capacity(), (available - count) * RECORD_SIZE);
+            buffer.limit(toRead);
+            readFully(channel, buffer, position);
+            position += toRead;
+
+            for (int offset = 0; offset < toRead; offset += RECORD_SIZE) {
+                if (!isRecordValid(buffer.array(), offset, checksum)) {
+                    return count;
+                }
+
+                if (buffer.get(offset + PROVIDER_OFFSET) == PROVIDER_RECORD) {
+                    segmentProviders.put(readProviderName(buffer.array(), offset), buffer.get(offset));
+                }
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private static void readSegment(File segment, TrackBuffer trackBuffer) throws IOException {
+        long length = segment.length();
+        if (length < HEADER_SIZE) {
+            return;
+        }
+
+        byte[] bytes = new byte[(int) length];
+        FileInputStream inputStream = new FileInputStream(segment);
+        try {
+            int read = 0;
+            while (read < bytes.length) {
+                int count = inputStream.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+            length = read;
+        } finally {
+            inputStream.close();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 checksum = new CRC32();
+        String[] providers = new String[256];
+
+        if (length < HEADER_SIZE || !isHeaderValid(buffer, checksum)) {
+            Log.w(TAG, "Invalid header in tracking log segment " + segment.getName());
+            return;
+        }
+
+        for (int offset = HEADER_SIZE; offset + RECORD_SIZE <= length; offset += RECORD_SIZE) {
+            if (!isRecordValid(bytes, offset, checksum)) {
+                break;
+            }
+
+            if (bytes[offset + PROVIDER_OFFSET] == PROVIDER_RECORD) {
+                providers[bytes[offset] & 0xFF] = readProviderName(bytes, offset);
+                continue;
+            }
+
+            buffer.position(offset);
+            decode(buffer, providers, trackBuffer);
+        }
+    }
+
+    private static boolean isHeaderValid(ByteBuffer header, CRC32 checksum) {
+        checksum.reset();
+        checksum.update(header.array(), header.arrayOffset(), HEADER_SIZE - 4);
+
+        return header.getInt(0) == MAGIC
+                && header.getShort(4) == VERSION
+                && header.getShort(6) == RECORD_SIZE
+                && header.getInt(HEADER_SIZE - 4) == (int) checksum.getValue();
+    }
+
+    private static boolean isRecordValid(byte[] bytes, int offset, CRC32 checksum) {
+        checksum.reset();
+        checksum.update(bytes, offset, RECORD_SIZE - 4);
+
+        int expected = (bytes[offset + RECORD_SIZE - 4] & 0xFF)
+                | (bytes[offset + RECORD_SIZE - 3] & 0xFF) << 8
+                | (bytes[offset + RECORD_SIZE - 2] & 0xFF) << 16
+                | (bytes[offset + RECORD_SIZE - 1] & 0xFF) << 24;
+
+        return expected == (int) checksum.getValue();
+    }
+
+    private static String readProviderName(byte[] bytes, int offset) {
+        int length = Math.min(bytes[offset + 1] & 0xFF, MAX_PROVIDER_NAME_LENGTH);
+        return new String(bytes, offset + 2, length, UTF_8);
+    }
+
+    private void encode(Location location, byte provider, ByteBuffer buffer) {
+        buffer.putDouble(location.getLatitude());
+        buffer.putDouble(location.getLongitude());
+        buffer.putDouble(location.getAltitude());
+        buffer.putLong(location.getTime());
+        buffer.putFloat(location.getAccuracy());
+        buffer.putFloat(location.getBearing());
+        buffer.putFloat(location.getSpeed());
+        buffer.put(provider);
+        putReservedAndCrc(buffer);
+    }
+
+    private void putReservedAndCrc(ByteBuffer buffer) {
+        buffer.put((byte) 0);
+        buffer.put((byte) 0);
+        buffer.put((byte) 0);
+
+        crc.reset();
+        crc.update(buffer.array(), 0, RECORD_SIZE - 4);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private static void decode(ByteBuffer buffer, String[] providers, TrackBuffer trackBuffer) {
+        double latitude = buffer.getDouble();
+        double longitude = buffer.getDouble();
+        double altitude = buffer.getDouble();
+        long time = buffer.getLong();
+        float accuracy = buffer.getFloat();
+        float bearing = buffer.getFloat();
+        float speed = buffer.getFloat();
+        byte provider = buffer.get();
+
+        String providerName = (provider & 0xFF) >= FIRST_OTHER_PROVIDER ? providers[provider & 0xFF] : decodeProvider(provider);
+        trackBuffer.add(latitude, longitude, altitude, time, accuracy, bearing, speed, providerName);
+    }
+
+    static byte encodeProvider(@Nullable String provider) {
+        if (LocationManager.GPS_PROVIDER.equals(provider)) {
+            return PROVIDER_GPS;
+        } else if (LocationManager.NETWORK_PROVIDER.equals(provider)) {
+            return PROVIDER_NETWORK;
+        } else if (LocationManager.PASSIVE_PROVIDER.equals(provider)) {
+            return PROVIDER_PASSIVE;
+        } else if ("fused".equals(provider)) {
+            return PROVIDER_FUSED;
+        }
+
+        return PROVIDER_OTHER;
+    }
+
+    static String decodeProvider(byte provider) {
+        switch (provider) {
+            case PROVIDER_GPS:
+                return LocationManager.GPS_PROVIDER;
+            case PROVIDER_NETWORK:
+                return LocationManager.NETWORK_PROVIDER;
+            case PROVIDER_PASSIVE:
+                return LocationManager.PASSIVE_PROVIDER;
+            case PROVIDER_FUSED:
+                return "fused";
+            default:
+                return "";
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of tracking log segment");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * List the segments of a log sorted by their index
+     *
+     * @param directory
+     * @return
+     */
+    @NonNull
+    public static File[] listSegments(@NonNull File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+
+        List<File> segments = new ArrayList<>();
+        for (File file : files) {
+            if (getSegmentIndex(file) >= 0) {
+                segments.add(file);
+            }
+        }
+
+        File[] result = segments.toArray(new File[0]);
+        Arrays.sort(result, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                int index1 = getSegmentIndex(o1);
+                int index2 = getSegmentIndex(o2);
+                return index1 < index2 ? -1 : (index1 == index2 ? 0 : 1);
+            }
+        });
+
+        return result;
+    }
+
+    private static String getSegmentFileName(int index) {
+        return SEGMENT_PREFIX + index + SEGMENT_EXTENSION;
+    }
+
+    private static int getSegmentIndex(File file) {
+        String name = file.getName();
+        if (!file.isFile() || !name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_EXTENSION)) {
+            return -1;
+        }
+
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
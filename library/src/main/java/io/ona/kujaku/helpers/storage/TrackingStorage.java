@@ -5,7 +5,10 @@ import android.os.Environment;
 import android.util.Log;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -18,25 +21,39 @@ public class TrackingStorage extends BaseStorage {
     private static final String CURRENT_DIRECTORY = "Current";
     private static final String PREVIOUS_DIRECTORY = "Previous";
 
-    private static final String FILE_NAME = "Tracks";
-    private static final String FILE_EXTENSION = ".json";
+    private static final String LEGACY_FILE_EXTENSION = ".json";
+
+    private TrackingLog currentTrackingLog;
 
     /**
-     * Write serialized StoreLocation in a file
+     * Append a StoreLocation record to the current track log
      *
      * @param location
-     * @param index
+     * @param index    Position of the location in the track. Records are appended in call order
      */
     public void writeLocation(Location location, int index) {
-        String folderName = BASE_DIRECTORY + File.separator + CURRENT_DIRECTORY;
-        String fileName = FILE_NAME + "_" + index + FILE_EXTENSION;
+        if (location == null) {
+            return;
+        }
 
-        if (! fileExists(folderName, fileName)) {
-            createFile(folderName, fileName);
+        try {
+            getCurrentTrackingLog().append(location);
+        } catch (IOException e) {
+            Log.e(TAG, "An error occurs when writing location " + index, e);
         }
+    }
 
-        if (location != null) {
-            gsonWriteObject(folderName, fileName, new StoreLocation(location));
+    /**
+     * Force the locations written since the last sync to disk and release the current track log
+     */
+    public void closeLocationStorage() {
+        if (currentTrackingLog != null) {
+            try {
+                currentTrackingLog.close();
+            } catch (IOException e) {
+                Log.e(TAG, "An error occurs when closing the tracking log", e);
+            }
+            currentTrackingLog = null;
         }
     }
 
@@ -44,6 +61,8 @@ public class TrackingStorage extends BaseStorage {
      * Init TrackingService Store Location
      */
     public void initLocationStorage() {
+        closeLocationStorage();
+
         // If directory previous exists, delete it
         String previousFolderName = BASE_DIRECTORY + File.separator + PREVIOUS_DIRECTORY;
         if (directoryExists(previousFolderName)) {
@@ -60,8 +79,17 @@ public class TrackingStorage extends BaseStorage {
      * @return
      */
     public List<Location> getCurrentRecordedLocations() {
+        return getCurrentRecordedTrack().getView().toLocations();
+    }
+
+    /**
+     * Get Current track without creating a Location per record
+     *
+     * @return
+     */
+    public TrackBuffer getCurrentRecordedTrack() {
         String folderName = BASE_DIRECTORY + File.separator + CURRENT_DIRECTORY ;
-        return getRecordedLocations(folderName);
+        return getRecordedTrack(folderName);
     }
 
     /**
@@ -70,29 +98,36 @@ public class TrackingStorage extends BaseStorage {
      * @return
      */
     public List<Location> getPreviousRecordedLocations() {
+        return getPreviousRecordedTrack().getView().toLocations();
+    }
+
+    /**
+     * Get Previous track without creating a Location per record
+     *
+     * @return
+     */
+    public TrackBuffer getPreviousRecordedTrack() {
         String folderName = BASE_DIRECTORY + File.separator + PREVIOUS_DIRECTORY ;
-        return getRecordedLocations(folderName);
+        return getRecordedTrack(folderName);
     }
 
     /**
-     * Get List of Locations in a specific folder
+     * Get the track stored in a specific folder
      *
      * @param folderName
      * @return
      */
-    private List<Location> getRecordedLocations(String folderName) {
-        List<Location> result = new ArrayList<>();
+    private TrackBuffer getRecordedTrack(String folderName) {
+        TrackBuffer result = new TrackBuffer();
 
         if (directoryExists(folderName)) {
             File directory = new File(Environment.getExternalStorageDirectory(), folderName);
             if (directory.canRead()) {
-                File[] files = directory.listFiles();
-                if (files != null) {
-                    for (int i = 0; i < files.length; i++) {
-                        StoreLocation storeLoc = gsonReadObject(folderName, files[i].getName(), StoreLocation.class);
-                        if (storeLoc != null) {
-                            result.add(StoreLocation.locationFromStoreLocation(storeLoc));
-                        }
+                if (TrackingLog.listSegments(directory).length > 0) {
+                    new TrackingLog(directory).readAll(result);
+                } else {
+                    for (Location location : getLegacyRecordedLocations(folderName, directory)) {
+                        result.add(location);
                     }
                 }
             } else {
@@ -103,6 +138,63 @@ public class TrackingStorage extends BaseStorage {
         return result;
     }
 
+    /**
+     * Get List of Locations stored one JSON file per location by previous versions
+     *
+     * @param folderName
+     * @param directory
+     * @return
+     */
+    private List<Location> getLegacyRecordedLocations(String folderName, File directory) {
+        List<Location> result = new ArrayList<>();
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return result;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                int index1 = getLegacyFileIndex(o1);
+                int index2 = getLegacyFileIndex(o2);
+                return index1 < index2 ? -1 : (index1 == index2 ? 0 : 1);
+            }
+        });
+
+        for (File file : files) {
+            if (file.getName().endsWith(LEGACY_FILE_EXTENSION)) {
+                StoreLocation storeLoc = gsonReadObject(folderName, file.getName(), StoreLocation.class);
+                if (storeLoc != null) {
+                    result.add(StoreLocation.locationFromStoreLocation(storeLoc));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private int getLegacyFileIndex(File file) {
+        String name = file.getName();
+        int start = name.lastIndexOf('_') + 1;
+        int end = name.lastIndexOf('.');
+
+        try {
+            return end > start ? Integer.parseInt(name.substring(start, end)) : Integer.MAX_VALUE;
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private TrackingLog getCurrentTrackingLog() {
+        if (currentTrackingLog == null) {
+            String folderName = BASE_DIRECTORY + File.separator + CURRENT_DIRECTORY;
+            currentTrackingLog = new TrackingLog(new File(Environment.getExternalStorageDirectory(), folderName));
+        }
+
+        return currentTrackingLog;
+    }
+
     @Override
     protected String getDirectory() {
         return BASE_DIRECTORY;
@@ -0,0 +1,231 @@
+package io.ona.kujaku.helpers.storage;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import io.ona.kujaku.wmts.model.WmtsCapabilities;
+import io.ona.kujaku.wmts.serializer.WmtsCapabilitiesBinarySerializer;
+
+/**
+ * Disk cache of parsed {@link WmtsCapabilities} keyed by the url of the capabilities document. Each entry
+ * is stored in its own file, in the {@link WmtsCapabilitiesBinarySerializer} form, together with the
+ * ETag & Last-Modified validators of the response it was parsed from & the time it was fetched.
+ * <p>
+ * Entries are written to a temporary file which then replaces the previous entry so that a reader never
+ * sees a partially written entry. Unreadable entries are deleted & treated as missing.
+ */
+public class WmtsCapabilitiesCache {
+
+    private static final String TAG = WmtsCapabilitiesCache.class.getName();
+
+    private static final int MAGIC = 0x574d5453;
+    private static final String FILE_EXTENSION = ".wmts";
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final File directory;
+    private final WmtsCapabilitiesBinarySerializer serializer = new WmtsCapabilitiesBinarySerializer();
+
+    /**
+     * @param directory Directory where the entries are stored eg. {@code new File(context.getCacheDir(), "wmts")}.
+     *                  It is created when the first entry is stored
+     */
+    public WmtsCapabilitiesCache(@NonNull File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param url Url of the capabilities document
+     * @return The cached entry or {@code null} if there is none or it cannot be read
+     */
+    @Nullable
+    public synchronized Entry get(@NonNull String url) {
+        File file = getFile(url);
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Invalid capabilities cache file " + file.getName());
+            }
+
+            // Guards against two urls with the same file name
+            if (!url.equals(in.readUTF())) {
+                return null;
+            }
+
+            String eTag = readNullableString(in);
+            String lastModified = readNullableString(in);
+            long fetchedAt = in.readLong();
+
+            return new Entry(serializer.read(in), eTag, lastModified, fetchedAt);
+        } catch (IOException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            file.delete();
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * @param url   Url of the capabilities document
+     * @param entry
+     * @return {@code true} if the entry was stored, {@code false} otherwise
+     */
+    public synchronized boolean put(@NonNull String url, @NonNull Entry entry) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "The capabilities cache directory " + directory.getAbsolutePath() + " could not be created");
+            return false;
+        }
+
+        File file = getFile(url);
+        File temporaryFile = new File(directory, file.getName() + TEMPORARY_FILE_EXTENSION);
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeUTF(url);
+            writeNullableString(out, entry.getETag());
+            writeNullableString(out, entry.getLastModified());
+            out.writeLong(entry.getFetchedAt());
+            serializer.write(entry.getCapabilities(), out);
+            out.close();
+            out = null;
+
+            if (!temporaryFile.renameTo(file)) {
+                throw new IOException("The capabilities cache file " + file.getName() + " could not be replaced");
+            }
+
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            temporaryFile.delete();
+            return false;
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * @param url Url of the capabilities document
+     * @return {@code true} if an entry was removed, {@code false} otherwise
+     */
+    public synchronized boolean remove(@NonNull String url) {
+        return getFile(url).delete();
+    }
+
+    @NonNull
+    private File getFile(@NonNull String url) {
+        return new File(directory, hash(url) + FILE_EXTENSION);
+    }
+
+    @NonNull
+    private static String hash(@NonNull String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(Charset.forName("UTF-8")));
+
+            StringBuilder hash = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hash.append(Character.forDigit((b >> 4) & 0xf, 16));
+                hash.append(Character.forDigit(b & 0xf, 16));
+            }
+
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    private static void writeNullableString(@NonNull DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(@NonNull DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void close(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+        }
+    }
+
+    /**
+     * Capabilities cached for a url with the validators of the response they were parsed from
+     */
+    public static class Entry {
+
+        private final WmtsCapabilities capabilities;
+        private final String eTag;
+        private final String lastModified;
+        private final long fetchedAt;
+
+        /**
+         * @param capabilities
+         * @param eTag         The ETag header of the response, if any
+         * @param lastModified The Last-Modified header of the response, if any
+         * @param fetchedAt    When the capabilities were last fetched or revalidated, in milliseconds since the epoch
+         */
+        public Entry(@NonNull WmtsCapabilities capabilities, @Nullable String eTag, @Nullable String lastModified, long fetchedAt) {
+            this.capabilities = capabilities;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+
+        @NonNull
+        public WmtsCapabilities getCapabilities() {
+            return capabilities;
+        }
+
+        @Nullable
+        public String getETag() {
+            return eTag;
+        }
+
+        @Nullable
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        /**
+         * @param maxAge How long, in milliseconds, the capabilities are fresh after they were fetched
+         * @return
+         */
+        public boolean isStale(long maxAge) {
+            return System.currentTimeMillis() - fetchedAt >= maxAge;
+        }
+    }
+}
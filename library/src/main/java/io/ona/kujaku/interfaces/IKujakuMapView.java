@@ -12,6 +12,7 @@ import android.support.annotation.Nullable;
 
 import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxsdk.annotations.MarkerOptions;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
 import com.mapbox.mapboxsdk.style.expressions.Expression;
 
 import org.json.JSONException;
@@ -29,6 +30,7 @@ import io.ona.kujaku.listeners.OnFeatureClickListener;
 import io.ona.kujaku.listeners.TrackingServiceListener;
 import io.ona.kujaku.services.configurations.TrackingServiceUIConfiguration;
 import io.ona.kujaku.services.options.TrackingServiceOptions;
+import io.ona.kujaku.views.FeatureClickOptions;
 
 public interface IKujakuMapView extends IKujakuMapViewLowLevel {
 
@@ -119,6 +121,29 @@ public interface IKujakuMapView extends IKujakuMapViewLowLevel {
     void updateFeaturePointProperties(FeatureCollection featureCollection) throws JSONException;
 
 
+    /**
+     * Remove {@link com.mapbox.geojson.Feature Feature} points from the {@link io.ona.kujaku.views.KujakuMapView map}
+     * <p>
+     * Feature ids which are not on the map are ignored
+     *
+     * @param featureIds Ids of the {@link com.mapbox.geojson.Feature Feature} points to remove
+     */
+    void removeFeaturePoints(@NonNull String... featureIds);
+
+
+    /**
+     * Get the {@link com.mapbox.geojson.Feature Feature}s of the primary GeoJSON source whose bounding box intersects
+     * the given bounds. The features are looked up in a spatial index maintained by
+     * {@link #addFeaturePoints(FeatureCollection) addFeaturePoints} and {@link #updateFeaturePointProperties(FeatureCollection) updateFeaturePointProperties}
+     * instead of scanning the whole {@link FeatureCollection FeatureCollection}
+     *
+     * @param bounds
+     * @return
+     */
+    @NonNull
+    List<com.mapbox.geojson.Feature> queryFeatures(@NonNull LatLngBounds bounds);
+
+
     /**
      * Update the list of points displayed in KujakuMapView
      * Enables the app to get notified when the bounding box of the map changes if a user performs a pinch
@@ -129,7 +154,8 @@ public interface IKujakuMapView extends IKujakuMapViewLowLevel {
      * consume {@link com.mapbox.mapboxsdk.maps.MapboxMap.OnMoveListener#onMove(com.mapbox.android.gestures.MoveGestureDetector)}
      * <p>
      * There is an initial call to {@code boundsChangeListener} so that the host application can know
-     * the current bounding box
+     * the current bounding box. If the listener is a {@link io.ona.kujaku.listeners.VisibleFeaturesBoundsChangeListener},
+     * it also receives the visible features of the primary GeoJSON source
      *
      * @param boundsChangeListener
      */
@@ -164,6 +190,16 @@ public interface IKujakuMapView extends IKujakuMapViewLowLevel {
      */
     void setOnFeatureClickListener(@NonNull OnFeatureClickListener onFeatureClickListener, @Nullable Expression expressionFilter, @Nullable String... layerIds);
 
+    /**
+     * Sets an {@link OnFeatureClickListener} which will be fired when a feature on the map is touched/clicked.
+     * The {@code featureClickOptions} define whether the features rendered at the clicked pixel or the
+     * features of the primary source nearest to the click are passed to the listener
+     *
+     * @param onFeatureClickListener
+     * @param featureClickOptions
+     */
+    void setOnFeatureClickListener(@NonNull OnFeatureClickListener onFeatureClickListener, @NonNull FeatureClickOptions featureClickOptions);
+
     /**
      * Checks if the map warms GPS(this just means the location service that is going to be used).
      * Warming the GPS in this case means that it starts the location services as soon as you open
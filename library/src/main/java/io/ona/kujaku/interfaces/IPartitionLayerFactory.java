@@ -0,0 +1,23 @@
+package io.ona.kujaku.interfaces;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.mapboxsdk.style.layers.Layer;
+
+/**
+ * Creates the layer rendering one geohash partition of the primary GeoJSON source when the
+ * partitioning of the source is enabled through
+ * {@link io.ona.kujaku.views.KujakuMapView#setPrimarySourcePartitioning(int, IPartitionLayerFactory)},
+ * or the layer rendering the tiles of the primary GeoJSON source when its tiling is enabled through
+ * {@link io.ona.kujaku.views.KujakuMapView#setPrimarySourceTiling(int, IPartitionLayerFactory)}
+ */
+public interface IPartitionLayerFactory {
+
+    /**
+     * @param layerId  Id to give to the layer
+     * @param sourceId Id of the partition or tiled source the layer should render
+     * @return
+     */
+    @NonNull
+    Layer createLayer(@NonNull String layerId, @NonNull String sourceId);
+}
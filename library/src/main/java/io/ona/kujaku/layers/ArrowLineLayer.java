@@ -5,7 +5,6 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.os.AsyncTask;
 import android.support.annotation.ColorInt;
 import android.support.annotation.ColorRes;
 import android.support.annotation.NonNull;
@@ -37,16 +36,18 @@ import com.mapbox.turf.TurfMeasurement;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
 
 import io.ona.kujaku.R;
 import io.ona.kujaku.callables.AsyncTaskCallable;
-import io.ona.kujaku.comparators.ArrowLineSortConfigComparator;
+import io.ona.kujaku.comparators.SortKeyExtractor;
+import io.ona.kujaku.comparators.SortKeyExtractors;
 import io.ona.kujaku.exceptions.InvalidArrowLineConfigException;
 import io.ona.kujaku.listeners.OnFinishedListener;
-import io.ona.kujaku.tasks.GenericAsyncTask;
+import io.ona.kujaku.tasks.TaskScheduler;
 import io.ona.kujaku.utils.FeatureFilter;
 
 import static com.mapbox.mapboxsdk.style.expressions.Expression.get;
@@ -136,6 +137,11 @@ public class ArrowLineLayer extends KujakuLayer {
     private GeoJsonSource arrowHeadSource;
     private SymbolLayer arrowHeadLayer;
 
+    /**
+     * Map to which the sources & layers are added once the features are first generated
+     */
+    private MapboxMap pendingMapboxMap;
+
     public static final int MIN_ARROW_ZOOM = 10;
     public static final int MAX_ARROW_ZOOM = 22;
     public static final float MIN_ZOOM_ARROW_HEAD_SCALE = 0.5f;
@@ -229,69 +235,8 @@ public class ArrowLineLayer extends KujakuLayer {
         }
         createArrowLineLayer(builder);
 
-        GenericAsyncTask genericAsyncTask = new GenericAsyncTask(new AsyncTaskCallable() {
-            @Override
-            public Object[] call() throws Exception {
-                FeatureCollection filteredFeatureCollection = filterFeatures(builder.featureConfig, builder.sortConfig);
-                FeatureCollection arrowHeadFeatures;
-
-                if (builder.sortConfig != null) {
-                    FeatureCollection sortedFeatureCollection = sortFeatures(filteredFeatureCollection, builder.sortConfig);
-                    LineString arrowLine = calculateLineString(sortedFeatureCollection);
-                    arrowHeadFeatures = generateArrowHeadFeatureCollection(arrowLine);
-
-                    return new Object[]{arrowLine, arrowHeadFeatures};
-                } else if (builder.oneToManyConfig != null) {
-                    MultiLineString arrowLine = calculateMultiLineString(filteredFeatureCollection, builder.oneToManyConfig);
-                    arrowHeadFeatures = generateArrowHeadFeatureCollection(arrowLine);
-
-                    return new Object[]{arrowLine, arrowHeadFeatures};
-                } else {
-                    throw new IllegalArgumentException("SortConfig & OneToManyConfig not available to draw the line layer");
-                }
-            }
-        });
-        genericAsyncTask.setOnFinishedListener(new OnFinishedListener() {
-            @Override
-            public void onSuccess(Object[] objects) {
-                Geometry arrowLine = (Geometry) objects[0];
-                FeatureCollection arrowHeadFeatures = (FeatureCollection) objects[1];
-
-                arrowHeadSource.setGeoJson(arrowHeadFeatures);
-                lineLayerSource.setGeoJson(arrowLine);
-
-                Drawable arrowHead = AppCompatResources.getDrawable(builder.context, R.drawable.ic_arrow_head);
-                if (arrowHead == null) {
-                    return;
-                }
-
-                Drawable head = DrawableCompat.wrap(arrowHead);
-                DrawableCompat.setTint(head.mutate(), builder.arrowLineColor);
-                Bitmap icon = getBitmapFromDrawable(head);
-
-                mapboxMap.getStyle().addImage(ARROW_HEAD_ICON, icon);
-
-                mapboxMap.getStyle().addSource(arrowHeadSource);
-                mapboxMap.getStyle().addSource(lineLayerSource);
-
-                if (builder.addBelowLayerId != null && mapboxMap.getStyle().getLayer(builder.addBelowLayerId) != null) {
-                    mapboxMap.getStyle().addLayerBelow(lineLayer, builder.addBelowLayerId);
-                    mapboxMap.getStyle().addLayerBelow(arrowHeadLayer, builder.addBelowLayerId);
-                } else {
-                    mapboxMap.getStyle().addLayer(lineLayer);
-                    mapboxMap.getStyle().addLayer(arrowHeadLayer);
-                }
-
-                visible = true;
-            }
-
-            @Override
-            public void onError(Exception e) {
-                Log.e(TAG, Log.getStackTraceString(e));
-            }
-        });
-
-        genericAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        pendingMapboxMap = mapboxMap;
+        submitFeaturesUpdate();
     }
 
     @Override
@@ -334,6 +279,8 @@ public class ArrowLineLayer extends KujakuLayer {
     @Override
     public boolean removeLayerOnMap(@NonNull MapboxMap mapboxMap) {
         setRemoved(true);
+        TaskScheduler.getInstance().cancel(getTaskKey());
+        pendingMapboxMap = null;
 
         // Remove the layers & sources
         Style style = mapboxMap.getStyle();
@@ -364,46 +311,85 @@ public class ArrowLineLayer extends KujakuLayer {
         }
 
         if (lineLayer != null) {
-            GenericAsyncTask genericAsyncTask = new GenericAsyncTask(new AsyncTaskCallable() {
-                @Override
-                public Object[] call() throws Exception {
-                    FeatureCollection filteredFeatureCollection = filterFeatures(builder.featureConfig, builder.sortConfig);
-                    FeatureCollection arrowHeadFeatures;
-
-                    if (builder.sortConfig != null) {
-                        FeatureCollection sortedFeatureCollection = sortFeatures(filteredFeatureCollection, builder.sortConfig);
-                        LineString arrowLine = calculateLineString(sortedFeatureCollection);
-                        arrowHeadFeatures = generateArrowHeadFeatureCollection(arrowLine);
-
-                        return new Object[]{arrowLine, arrowHeadFeatures};
-                    } else if (builder.oneToManyConfig != null) {
-                        MultiLineString arrowLine = calculateMultiLineString(filteredFeatureCollection, builder.oneToManyConfig);
-                        arrowHeadFeatures = generateArrowHeadFeatureCollection(arrowLine);
-
-                        return new Object[]{arrowLine, arrowHeadFeatures};
-                    } else {
-                        throw new IllegalArgumentException("SortConfig & OneToManyConfig not available to draw the line layer");
-                    }
-                }
-            });
-            genericAsyncTask.setOnFinishedListener(new OnFinishedListener() {
-                @Override
-                public void onSuccess(Object[] objects) {
-                    Geometry arrowLine = (Geometry) objects[0];
-                    FeatureCollection arrowHeadFeatures = (FeatureCollection) objects[1];
-
-                    arrowHeadSource.setGeoJson(arrowHeadFeatures);
-                    lineLayerSource.setGeoJson(arrowLine);
+            submitFeaturesUpdate();
+        }
+    }
+
+    /**
+     * Generates the arrow line & arrow heads off the main thread. The layer's previous pending update
+     * is superseded so that only the latest features are drawn. The sources & layers are added to the
+     * style with the first result after {@link #addLayerToMap(MapboxMap)}
+     */
+    private void submitFeaturesUpdate() {
+        TaskScheduler.getInstance().submit(getTaskKey(), TaskScheduler.Priority.USER_VISIBLE, new AsyncTaskCallable() {
+            @Override
+            public Object[] call() throws Exception {
+                FeatureCollection filteredFeatureCollection = filterFeatures(builder.featureConfig, builder.sortConfig);
+                FeatureCollection arrowHeadFeatures;
+
+                if (builder.sortConfig != null) {
+                    FeatureCollection sortedFeatureCollection = sortFeatures(filteredFeatureCollection, builder.sortConfig);
+                    LineString arrowLine = calculateLineString(sortedFeatureCollection);
+                    arrowHeadFeatures = generateArrowHeadFeatureCollection(arrowLine);
+
+                    return new Object[]{arrowLine, arrowHeadFeatures};
+                } else if (builder.oneToManyConfig != null) {
+                    MultiLineString arrowLine = calculateMultiLineString(filteredFeatureCollection, builder.oneToManyConfig);
+                    arrowHeadFeatures = generateArrowHeadFeatureCollection(arrowLine);
+
+                    return new Object[]{arrowLine, arrowHeadFeatures};
+                } else {
+                    throw new IllegalArgumentException("SortConfig & OneToManyConfig not available to draw the line layer");
                 }
+            }
+        }, new OnFinishedListener() {
+            @Override
+            public void onSuccess(Object[] objects) {
+                Geometry arrowLine = (Geometry) objects[0];
+                FeatureCollection arrowHeadFeatures = (FeatureCollection) objects[1];
+
+                arrowHeadSource.setGeoJson(arrowHeadFeatures);
+                lineLayerSource.setGeoJson(arrowLine);
 
-                @Override
-                public void onError(Exception e) {
-                    Log.e(TAG, Log.getStackTraceString(e));
+                if (pendingMapboxMap != null) {
+                    MapboxMap mapboxMap = pendingMapboxMap;
+                    pendingMapboxMap = null;
+
+                    addSourcesAndLayers(mapboxMap);
                 }
-            });
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+        });
+    }
 
-            genericAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    private void addSourcesAndLayers(@NonNull MapboxMap mapboxMap) {
+        Drawable arrowHead = AppCompatResources.getDrawable(builder.context, R.drawable.ic_arrow_head);
+        if (arrowHead == null) {
+            return;
         }
+
+        Drawable head = DrawableCompat.wrap(arrowHead);
+        DrawableCompat.setTint(head.mutate(), builder.arrowLineColor);
+        Bitmap icon = getBitmapFromDrawable(head);
+
+        mapboxMap.getStyle().addImage(ARROW_HEAD_ICON, icon);
+
+        mapboxMap.getStyle().addSource(arrowHeadSource);
+        mapboxMap.getStyle().addSource(lineLayerSource);
+
+        if (builder.addBelowLayerId != null && mapboxMap.getStyle().getLayer(builder.addBelowLayerId) != null) {
+            mapboxMap.getStyle().addLayerBelow(lineLayer, builder.addBelowLayerId);
+            mapboxMap.getStyle().addLayerBelow(arrowHeadLayer, builder.addBelowLayerId);
+        } else {
+            mapboxMap.getStyle().addLayer(lineLayer);
+            mapboxMap.getStyle().addLayer(arrowHeadLayer);
+        }
+
+        visible = true;
     }
 
     private Bitmap getBitmapFromDrawable(Drawable drawable) {
@@ -420,7 +406,9 @@ public class ArrowLineLayer extends KujakuLayer {
     }
 
     /**
-     * Sorts the features using the {@link SortConfig} defined
+     * Sorts the features using the {@link SortConfig} defined. The sort key of each feature is extracted
+     * once, the features are then sorted on their keys (decorate-sort-undecorate). Features without a
+     * valid key are placed last.
      *
      * @param featureCollection
      * @param sortConfig
@@ -428,11 +416,42 @@ public class ArrowLineLayer extends KujakuLayer {
      */
     private FeatureCollection sortFeatures(@NonNull FeatureCollection featureCollection, @NonNull SortConfig sortConfig) {
         List<Feature> featuresList = featureCollection.features();
-        if (featuresList != null) {
-            Collections.sort(featuresList, new ArrowLineSortConfigComparator(sortConfig));
+        if (featuresList == null) {
+            return FeatureCollection.fromFeatures(new ArrayList<Feature>());
         }
 
-        return FeatureCollection.fromFeatures(featuresList);
+        return FeatureCollection.fromFeatures(sortFeaturesByKey(featuresList, SortKeyExtractors.getKeyExtractor(sortConfig)
+                , sortConfig.getSortOrder() == SortConfig.SortOrder.DESC));
+    }
+
+    private <K extends Comparable<? super K>> List<Feature> sortFeaturesByKey(@NonNull List<Feature> featuresList
+            , @NonNull SortKeyExtractor<K> keyExtractor, final boolean isDescending) {
+        List<SortEntry<K>> sortEntries = new ArrayList<>(featuresList.size());
+        for (Feature feature : featuresList) {
+            sortEntries.add(new SortEntry<>(keyExtractor.extractKey(feature), feature));
+        }
+
+        Collections.sort(sortEntries, new Comparator<SortEntry<K>>() {
+            @Override
+            public int compare(SortEntry<K> sortEntry1, SortEntry<K> sortEntry2) {
+                K key1 = sortEntry1.key;
+                K key2 = sortEntry2.key;
+
+                if (key1 == null || key2 == null) {
+                    // Features without a key are last in both orders
+                    return key1 == key2 ? 0 : (key1 == null ? 1 : -1);
+                }
+
+                return isDescending ? key2.compareTo(key1) : key1.compareTo(key2);
+            }
+        });
+
+        List<Feature> sortedFeatures = new ArrayList<>(sortEntries.size());
+        for (SortEntry<K> sortEntry : sortEntries) {
+            sortedFeatures.add(sortEntry.feature);
+        }
+
+        return sortedFeatures;
     }
 
     private FeatureCollection filterFeatures(@NonNull FeatureConfig featureConfig, @Nullable SortConfig sortConfig) {
@@ -717,6 +736,7 @@ public class ArrowLineLayer extends KujakuLayer {
         private SortOrder sortOrder;
         private PropertyType propertyType;
         private String dateTimeFormat;
+        private SortKeyExtractor<?> keyExtractor;
 
         public SortConfig(@NonNull String sortProperty, @NonNull SortOrder sortOrder, @NonNull PropertyType propertyType) {
             this.sortProperty = sortProperty;
@@ -751,6 +771,22 @@ public class ArrowLineLayer extends KujakuLayer {
         public String getDateTimeFormat() {
             return dateTimeFormat;
         }
+
+        /**
+         * Set a custom extractor of the sort keys, replacing the default one of the {@link PropertyType}
+         *
+         * @param keyExtractor
+         * @return
+         */
+        public SortConfig setKeyExtractor(@Nullable SortKeyExtractor<?> keyExtractor) {
+            this.keyExtractor = keyExtractor;
+            return this;
+        }
+
+        @Nullable
+        public SortKeyExtractor<?> getKeyExtractor() {
+            return keyExtractor;
+        }
     }
 
     /**
@@ -770,4 +806,14 @@ public class ArrowLineLayer extends KujakuLayer {
             return childrenDefinitionProperty;
         }
     }
+
+    private static class SortEntry<K> {
+        private final K key;
+        private final Feature feature;
+
+        private SortEntry(@Nullable K key, @NonNull Feature feature) {
+            this.key = key;
+            this.feature = feature;
+        }
+    }
 }
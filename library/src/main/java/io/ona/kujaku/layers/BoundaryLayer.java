@@ -1,16 +1,12 @@
 package io.ona.kujaku.layers;
 
 
-import android.os.AsyncTask;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
 import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
-import com.mapbox.geojson.Geometry;
 import com.mapbox.geojson.Point;
-import com.mapbox.mapboxsdk.geometry.LatLng;
-import com.mapbox.mapboxsdk.geometry.LatLngBounds;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.mapboxsdk.style.expressions.Expression;
@@ -20,9 +16,9 @@ import com.mapbox.mapboxsdk.style.layers.Property;
 import com.mapbox.mapboxsdk.style.layers.PropertyFactory;
 import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
-import com.mapbox.turf.TurfMeasurement;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -32,7 +28,9 @@ import static com.mapbox.mapboxsdk.style.layers.PropertyFactory.visibility;
 
 import io.ona.kujaku.callables.AsyncTaskCallable;
 import io.ona.kujaku.listeners.OnFinishedListener;
-import io.ona.kujaku.tasks.GenericAsyncTask;
+import io.ona.kujaku.spatial.LabelPointCalculator;
+import io.ona.kujaku.spatial.TopologySimplifier;
+import io.ona.kujaku.tasks.TaskScheduler;
 
 /**
  * This layer enables one to add labelled foci boundaries to the {@link io.ona.kujaku.views.KujakuMapView}
@@ -50,27 +48,91 @@ import io.ona.kujaku.tasks.GenericAsyncTask;
  * kujakuMapView.addLayer(builder.build());
  * </code>
  * <p>
+ * Below the {@link KujakuLayer.Builder#setSimplificationZooms(int...)}, if set, simplified boundaries are drawn
+ * from one source per simplification level so that large boundaries are not tessellated at full resolution
+ * at low zooms. The boundaries are simplified off the main thread by a {@link TopologySimplifier} which
+ * keeps shared borders gap-free & only simplifies the changed boundaries again on {@link #updateFeatures(FeatureCollection)}.
+ * <p>
+ * The labels are placed inside the boundaries, at the points furthest from their outlines, by a
+ * {@link LabelPointCalculator} which also only places the labels of the changed boundaries again.
+ * <p>
  * Created by Ephraim Kigamba - ekigamba@ona.io on 18/02/2019
  */
 public class BoundaryLayer extends KujakuLayer {
 
     private static final String TAG = BoundaryLayer.class.getName();
 
+    /**
+     * Simplification tolerance, in pixels at the highest zoom a simplification level is drawn at
+     */
+    private static final double SIMPLIFICATION_TOLERANCE_PIXELS = 1;
+
     protected KujakuLayer.Builder builder;
 
     protected String BOUNDARY_FEATURE_SOURCE_ID = UUID.randomUUID().toString();
     protected String BOUNDARY_LABEL_SOURCE_ID = UUID.randomUUID().toString();
     protected String BOUNDARY_LINE_LAYER_ID = UUID.randomUUID().toString();
     protected String BOUNDARY_LABEL_LAYER_ID = UUID.randomUUID().toString();
+    protected String[] BOUNDARY_SIMPLIFIED_SOURCE_IDS;
+    protected String[] BOUNDARY_SIMPLIFIED_LINE_LAYER_IDS;
 
     private GeoJsonSource boundarySource;
     private GeoJsonSource boundaryLabelsSource;
     private LineLayer boundaryLineLayer;
 
+    private List<GeoJsonSource> simplifiedSources = new ArrayList<>();
+    private List<LineLayer> simplifiedLineLayers = new ArrayList<>();
+    private TopologySimplifier simplifier;
+    private LabelPointCalculator labelPointCalculator;
+
     private SymbolLayer boundaryLabelLayer;
 
+    /**
+     * Map to which the sources & layers are added once the label points are first calculated
+     */
+    private MapboxMap pendingMapboxMap;
+
     BoundaryLayer(@NonNull KujakuLayer.Builder builder) {
         this.builder = builder;
+        this.labelPointCalculator = new LabelPointCalculator(builder.labelPrecision);
+
+        int levelCount = getSimplificationLevelCount();
+        BOUNDARY_SIMPLIFIED_SOURCE_IDS = new String[levelCount];
+        BOUNDARY_SIMPLIFIED_LINE_LAYER_IDS = new String[levelCount];
+        double[] tolerances = new double[levelCount];
+
+        for (int level = 0; level < levelCount; level++) {
+            BOUNDARY_SIMPLIFIED_SOURCE_IDS[level] = UUID.randomUUID().toString();
+            BOUNDARY_SIMPLIFIED_LINE_LAYER_IDS[level] = UUID.randomUUID().toString();
+            tolerances[level] = TopologySimplifier.getTolerance(builder.simplificationZooms[level], SIMPLIFICATION_TOLERANCE_PIXELS);
+        }
+
+        if (levelCount > 0) {
+            simplifier = new TopologySimplifier(tolerances);
+        }
+    }
+
+    /**
+     * @return The number of simplification levels drawn below the full resolution boundaries
+     */
+    protected int getSimplificationLevelCount() {
+        return builder.simplificationZooms.length;
+    }
+
+    /**
+     * Restrict a layer to the zooms of a simplification level
+     *
+     * @param layer
+     * @param level The simplification level or {@link #getSimplificationLevelCount()} for the full resolution
+     */
+    protected void setSimplificationLevelZooms(@NonNull Layer layer, int level) {
+        if (level > 0) {
+            layer.setMinZoom(builder.simplificationZooms[level - 1]);
+        }
+
+        if (level < getSimplificationLevelCount()) {
+            layer.setMaxZoom(builder.simplificationZooms[level]);
+        }
     }
 
     private void createBoundaryLabelLayer(@NonNull KujakuLayer.Builder builder) {
@@ -92,7 +154,11 @@ public class BoundaryLayer extends KujakuLayer {
     }
 
     private void createBoundaryLineLayer(@NonNull KujakuLayer.Builder builder) {
-        boundaryLineLayer = new LineLayer(BOUNDARY_LINE_LAYER_ID, BOUNDARY_FEATURE_SOURCE_ID)
+        boundaryLineLayer = createLineLayer(builder, BOUNDARY_LINE_LAYER_ID, BOUNDARY_FEATURE_SOURCE_ID);
+    }
+
+    private LineLayer createLineLayer(@NonNull KujakuLayer.Builder builder, @NonNull String layerId, @NonNull String sourceId) {
+        return new LineLayer(layerId, sourceId)
                 .withProperties(
                         PropertyFactory.lineJoin(Property.LINE_JOIN_ROUND),
                         PropertyFactory.lineWidth(builder.boundaryWidth),
@@ -113,30 +179,56 @@ public class BoundaryLayer extends KujakuLayer {
 
         createLayers(mapboxMap);
 
-        GenericAsyncTask genericAsyncTask = new GenericAsyncTask(new AsyncTaskCallable() {
+        pendingMapboxMap = mapboxMap;
+        submitFeaturesUpdate(builder.featureCollection);
+    }
+
+    /**
+     * Calculates the label points & simplifies the boundaries off the main thread. The layer's previous
+     * pending update is superseded so that only the latest features are drawn. The sources & layers are
+     * added to the style with the first result after {@link #addLayerToMap(MapboxMap)}
+     *
+     * @param featureCollection
+     */
+    private void submitFeaturesUpdate(@NonNull final FeatureCollection featureCollection) {
+        TaskScheduler.getInstance().submit(getTaskKey(), TaskScheduler.Priority.USER_VISIBLE, new AsyncTaskCallable() {
             @Override
             public Object[] call() throws Exception {
-                return new Object[]{calculateCenterPoints(builder.featureCollection)};
+                return new Object[]{calculateCenterPoints(featureCollection)
+                        , simplifier != null ? simplifier.simplify(featureCollection) : new ArrayList<FeatureCollection>()};
             }
-        });
-
-        genericAsyncTask.setOnFinishedListener(new OnFinishedListener() {
+        }, new OnFinishedListener() {
             @Override
             public void onSuccess(Object[] objects) {
                 FeatureCollection boundaryCenterFeatures = (FeatureCollection) objects[0];
+                @SuppressWarnings("unchecked")
+                List<FeatureCollection> simplifiedFeatureCollections = (List<FeatureCollection>) objects[1];
 
                 boundaryLabelsSource.setGeoJson(boundaryCenterFeatures);
+                for (int level = 0; level < simplifiedFeatureCollections.size() && level < simplifiedSources.size(); level++) {
+                    simplifiedSources.get(level).setGeoJson(simplifiedFeatureCollections.get(level));
+                }
+
+                if (pendingMapboxMap != null) {
+                    MapboxMap mapboxMap = pendingMapboxMap;
+                    pendingMapboxMap = null;
 
-                mapboxMap.getStyle().addSource(boundaryLabelsSource);
-                mapboxMap.getStyle().addSource(boundarySource);
+                    mapboxMap.getStyle().addSource(boundaryLabelsSource);
+                    mapboxMap.getStyle().addSource(boundarySource);
+                    for (GeoJsonSource simplifiedSource : simplifiedSources) {
+                        mapboxMap.getStyle().addSource(simplifiedSource);
+                    }
 
-                if (builder.belowLayerId != null) {
-                    addLayersBelow(mapboxMap);
-                } else {
-                    addLayers(mapboxMap);
+                    if (builder.belowLayerId != null) {
+                        addLayersBelow(mapboxMap);
+                    } else {
+                        addLayers(mapboxMap);
+                    }
+
+                    visible = true;
                 }
 
-                visible = true;
+                boundarySource.setGeoJson(featureCollection);
             }
 
             @Override
@@ -144,8 +236,6 @@ public class BoundaryLayer extends KujakuLayer {
                 Log.e(TAG, Log.getStackTraceString(e));
             }
         });
-
-        genericAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
     }
 
     protected void createLayers(@NonNull MapboxMap mapboxMap) {
@@ -170,14 +260,39 @@ public class BoundaryLayer extends KujakuLayer {
             BOUNDARY_LINE_LAYER_ID = UUID.randomUUID().toString();
         }
         createBoundaryLineLayer(builder);
+        setSimplificationLevelZooms(boundaryLineLayer, getSimplificationLevelCount());
+
+        // Create the simplification levels
+        simplifiedSources.clear();
+        simplifiedLineLayers.clear();
+        for (int level = 0; level < getSimplificationLevelCount(); level++) {
+            if (mapboxMap.getStyle().getSource(BOUNDARY_SIMPLIFIED_SOURCE_IDS[level]) != null) {
+                BOUNDARY_SIMPLIFIED_SOURCE_IDS[level] = UUID.randomUUID().toString();
+            }
+            simplifiedSources.add(new GeoJsonSource(BOUNDARY_SIMPLIFIED_SOURCE_IDS[level]));
+
+            if (mapboxMap.getStyle().getLayer(BOUNDARY_SIMPLIFIED_LINE_LAYER_IDS[level]) != null) {
+                BOUNDARY_SIMPLIFIED_LINE_LAYER_IDS[level] = UUID.randomUUID().toString();
+            }
+            LineLayer simplifiedLineLayer = createLineLayer(builder, BOUNDARY_SIMPLIFIED_LINE_LAYER_IDS[level]
+                    , BOUNDARY_SIMPLIFIED_SOURCE_IDS[level]);
+            setSimplificationLevelZooms(simplifiedLineLayer, level);
+            simplifiedLineLayers.add(simplifiedLineLayer);
+        }
     }
 
     protected void addLayersBelow(@NonNull MapboxMap mapboxMap) {
+        for (LineLayer simplifiedLineLayer : simplifiedLineLayers) {
+            mapboxMap.getStyle().addLayerBelow(simplifiedLineLayer, builder.belowLayerId);
+        }
         mapboxMap.getStyle().addLayerBelow(boundaryLineLayer, builder.belowLayerId);
         mapboxMap.getStyle().addLayerBelow(boundaryLabelLayer, builder.belowLayerId);
     }
 
     protected void addLayers(@NonNull MapboxMap mapboxMap) {
+        for (LineLayer simplifiedLineLayer : simplifiedLineLayers) {
+            mapboxMap.getStyle().addLayer(simplifiedLineLayer);
+        }
         mapboxMap.getStyle().addLayer(boundaryLineLayer);
         mapboxMap.getStyle().addLayer(boundaryLabelLayer);
     }
@@ -187,17 +302,11 @@ public class BoundaryLayer extends KujakuLayer {
 
         List<Feature> featureList = featureCollection.features();
         if (featureList != null) {
-            for (Feature feature : featureList) {
-                Geometry featureGeometry = feature.geometry();
-                if (featureGeometry != null) {
-                    Point featurePoint;
-                    if (featureGeometry instanceof Point) {
-                        featurePoint = (Point) featureGeometry;
-                    } else {
-                        featurePoint = getCenter(featureGeometry);
-                    }
-
-                    centerPoints.add(Feature.fromGeometry(featurePoint, feature.properties()));
+            List<Point> labelPoints = labelPointCalculator.calculate(featureList);
+            for (int i = 0; i < featureList.size(); i++) {
+                Point labelPoint = labelPoints.get(i);
+                if (labelPoint != null) {
+                    centerPoints.add(Feature.fromGeometry(labelPoint, featureList.get(i).properties()));
                 }
             }
         }
@@ -205,26 +314,12 @@ public class BoundaryLayer extends KujakuLayer {
         return FeatureCollection.fromFeatures(centerPoints);
     }
 
-    /**
-     * Generates the center from the {@link Geometry} of a given {@link Feature} for {@link Geometry}
-     * of types {@link com.mapbox.geojson.MultiPolygon}, {@link com.mapbox.geojson.Polygon} and
-     * {@link com.mapbox.geojson.MultiPoint}
-     *
-     * @param featureGeometry
-     * @return
-     */
-    private Point getCenter(@NonNull Geometry featureGeometry) {
-        double[] bbox = TurfMeasurement.bbox(featureGeometry);
-
-        LatLng centerLatLng  = LatLngBounds.from(bbox[3], bbox[2], bbox[1], bbox[0]).getCenter();
-        return Point.fromLngLat(centerLatLng.getLongitude(), centerLatLng.getLatitude());
-    }
-
     @Override
     public void enableLayerOnMap(@NonNull MapboxMap mapboxMap) {
         ArrayList<Layer> layers = new ArrayList<Layer>();
-        layers.add(mapboxMap.getStyle().getLayerAs(BOUNDARY_LINE_LAYER_ID));
-        layers.add(mapboxMap.getStyle().getLayerAs(BOUNDARY_LABEL_LAYER_ID));
+        for (String layerId : getLayerIds()) {
+            layers.add(mapboxMap.getStyle().getLayerAs(layerId));
+        }
 
         for (Layer layer: layers) {
             if (layer != null && NONE.equals(layer.getVisibility().getValue())) {
@@ -237,8 +332,9 @@ public class BoundaryLayer extends KujakuLayer {
     @Override
     public void disableLayerOnMap(@NonNull MapboxMap mapboxMap) {
         ArrayList<Layer> layers = new ArrayList<Layer>();
-        layers.add(mapboxMap.getStyle().getLayerAs(BOUNDARY_LINE_LAYER_ID));
-        layers.add(mapboxMap.getStyle().getLayerAs(BOUNDARY_LABEL_LAYER_ID));
+        for (String layerId : getLayerIds()) {
+            layers.add(mapboxMap.getStyle().getLayerAs(layerId));
+        }
 
         for (Layer layer: layers) {
             if (layer != null && VISIBLE.equals(layer.getVisibility().getValue())) {
@@ -250,12 +346,19 @@ public class BoundaryLayer extends KujakuLayer {
 
     @Override @NonNull
     public String[] getLayerIds() {
-        return new String[] {BOUNDARY_LABEL_LAYER_ID, BOUNDARY_LINE_LAYER_ID};
+        List<String> layerIds = new ArrayList<>();
+        layerIds.add(BOUNDARY_LABEL_LAYER_ID);
+        layerIds.add(BOUNDARY_LINE_LAYER_ID);
+        Collections.addAll(layerIds, BOUNDARY_SIMPLIFIED_LINE_LAYER_IDS);
+
+        return layerIds.toArray(new String[0]);
     }
 
     @Override
     public boolean removeLayerOnMap(@NonNull MapboxMap mapboxMap) {
         setRemoved(true);
+        TaskScheduler.getInstance().cancel(getTaskKey());
+        pendingMapboxMap = null;
 
         // Remove the layers & sources
         Style style = mapboxMap.getStyle();
@@ -273,11 +376,17 @@ public class BoundaryLayer extends KujakuLayer {
     protected void removeLayers(@NonNull Style style) {
         style.removeLayer(boundaryLabelLayer);
         style.removeLayer(boundaryLineLayer);
+        for (LineLayer simplifiedLineLayer : simplifiedLineLayers) {
+            style.removeLayer(simplifiedLineLayer);
+        }
     }
 
     protected void removeSources(@NonNull Style style) {
         style.removeSource(boundarySource);
         style.removeSource(boundaryLabelsSource);
+        for (GeoJsonSource simplifiedSource : simplifiedSources) {
+            style.removeSource(simplifiedSource);
+        }
     }
 
     @Override
@@ -285,29 +394,7 @@ public class BoundaryLayer extends KujakuLayer {
         this.builder.featureCollection = featureCollection;
 
         if (boundaryLabelLayer != null) {
-            GenericAsyncTask genericAsyncTask = new GenericAsyncTask(new AsyncTaskCallable() {
-                @Override
-                public Object[] call() throws Exception {
-                    return new Object[]{calculateCenterPoints(builder.featureCollection)};
-                }
-            });
-
-            genericAsyncTask.setOnFinishedListener(new OnFinishedListener() {
-                @Override
-                public void onSuccess(Object[] objects) {
-                    FeatureCollection boundaryCenterFeatures = (FeatureCollection) objects[0];
-
-                    boundaryLabelsSource.setGeoJson(boundaryCenterFeatures);
-                    boundarySource.setGeoJson(featureCollection);
-                }
-
-                @Override
-                public void onError(Exception e) {
-                    Log.e(TAG, Log.getStackTraceString(e));
-                }
-            });
-
-            genericAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            submitFeaturesUpdate(featureCollection);
         }
     }
 
@@ -21,15 +21,26 @@ import java.util.UUID;
 public class FillBoundaryLayer extends BoundaryLayer {
 
     private String BOUNDARY_FILL_LAYER_ID = UUID.randomUUID().toString();
+    private String[] BOUNDARY_SIMPLIFIED_FILL_LAYER_IDS;
 
     private FillLayer boundaryFillLayer;
+    private List<FillLayer> simplifiedFillLayers = new ArrayList<>();
 
     private FillBoundaryLayer(@NonNull KujakuLayer.Builder builder) {
        super(builder);
+
+       BOUNDARY_SIMPLIFIED_FILL_LAYER_IDS = new String[getSimplificationLevelCount()];
+       for (int level = 0; level < BOUNDARY_SIMPLIFIED_FILL_LAYER_IDS.length; level++) {
+           BOUNDARY_SIMPLIFIED_FILL_LAYER_IDS[level] = UUID.randomUUID().toString();
+       }
     }
 
     private void createBoundaryFillLayer(@NonNull KujakuLayer.Builder builder) {
-        boundaryFillLayer = new FillLayer(BOUNDARY_FILL_LAYER_ID, BOUNDARY_FEATURE_SOURCE_ID)
+        boundaryFillLayer = createFillLayer(builder, BOUNDARY_FILL_LAYER_ID, BOUNDARY_FEATURE_SOURCE_ID);
+    }
+
+    private FillLayer createFillLayer(@NonNull KujakuLayer.Builder builder, @NonNull String layerId, @NonNull String sourceId) {
+        return new FillLayer(layerId, sourceId)
                 .withProperties(
                         PropertyFactory.backgroundColor(builder.boundaryColor),
                         PropertyFactory.fillOpacity(0.5f)
@@ -42,6 +53,7 @@ public class FillBoundaryLayer extends BoundaryLayer {
 
         Collections.addAll(both, super.getLayerIds());
         Collections.addAll(both, BOUNDARY_FILL_LAYER_ID) ;
+        Collections.addAll(both, BOUNDARY_SIMPLIFIED_FILL_LAYER_IDS);
 
         return both.toArray(new String[both.size()]);
     }
@@ -56,17 +68,36 @@ public class FillBoundaryLayer extends BoundaryLayer {
         }
 
         createBoundaryFillLayer(builder);
+        setSimplificationLevelZooms(boundaryFillLayer, getSimplificationLevelCount());
+
+        simplifiedFillLayers.clear();
+        for (int level = 0; level < getSimplificationLevelCount(); level++) {
+            if (mapboxMap.getStyle().getLayer(BOUNDARY_SIMPLIFIED_FILL_LAYER_IDS[level]) != null) {
+                BOUNDARY_SIMPLIFIED_FILL_LAYER_IDS[level] = UUID.randomUUID().toString();
+            }
+
+            FillLayer simplifiedFillLayer = createFillLayer(builder, BOUNDARY_SIMPLIFIED_FILL_LAYER_IDS[level]
+                    , BOUNDARY_SIMPLIFIED_SOURCE_IDS[level]);
+            setSimplificationLevelZooms(simplifiedFillLayer, level);
+            simplifiedFillLayers.add(simplifiedFillLayer);
+        }
     }
 
     @Override
     protected void addLayersBelow(@NonNull MapboxMap mapboxMap) {
         super.addLayersBelow(mapboxMap);
+        for (FillLayer simplifiedFillLayer : simplifiedFillLayers) {
+            mapboxMap.getStyle().addLayerBelow(simplifiedFillLayer, builder.belowLayerId);
+        }
         mapboxMap.getStyle().addLayerBelow(boundaryFillLayer, builder.belowLayerId);
     }
 
     @Override
     protected void addLayers(@NonNull MapboxMap mapboxMap) {
         super.addLayers(mapboxMap);
+        for (FillLayer simplifiedFillLayer : simplifiedFillLayers) {
+            mapboxMap.getStyle().addLayer(simplifiedFillLayer);
+        }
         mapboxMap.getStyle().addLayer(boundaryFillLayer);
     }
 
@@ -74,6 +105,9 @@ public class FillBoundaryLayer extends BoundaryLayer {
     protected void removeLayers(@NonNull Style style) {
         super.removeLayers(style);
         style.removeLayer(boundaryFillLayer);
+        for (FillLayer simplifiedFillLayer : simplifiedFillLayers) {
+            style.removeLayer(simplifiedFillLayer);
+        }
     }
 
     public static class Builder extends KujakuLayer.Builder<FillBoundaryLayer, Builder> {
@@ -9,6 +9,10 @@ import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.style.expressions.Expression;
 
+import java.util.UUID;
+
+import io.ona.kujaku.spatial.LabelPointCalculator;
+
 /**
  * Created by Ephraim Kigamba - ekigamba@ona.io on 18/02/2019
  */
@@ -17,6 +21,8 @@ public abstract class KujakuLayer {
     private boolean isRemoved = false;
     protected boolean visible = false;
 
+    private final String taskKey = getClass().getSimpleName() + "-" + UUID.randomUUID().toString();
+
     /**
      * Adds the layer to a {@link MapboxMap}
      *
@@ -62,6 +68,17 @@ public abstract class KujakuLayer {
         this.isRemoved = isRemoved;
     }
 
+    /**
+     * Key under which the background work of this layer is submitted to the
+     * {@link io.ona.kujaku.tasks.TaskScheduler} so that only the latest feature update is applied
+     *
+     * @return
+     */
+    @NonNull
+    protected String getTaskKey() {
+        return taskKey;
+    }
+
     /**
      * Used to check if the layer has been enabled on the {@link MapboxMap}
      *
@@ -88,6 +105,8 @@ public abstract class KujakuLayer {
         protected String belowLayerId;
         protected String labelProperty = "";
         protected Expression labelTextSizeExpression;
+        protected int[] simplificationZooms = {};
+        protected double labelPrecision = LabelPointCalculator.DEFAULT_PRECISION;
 
         public Builder(@NonNull FeatureCollection featureCollection) {
             this.featureCollection = featureCollection;
@@ -146,6 +165,43 @@ public abstract class KujakuLayer {
             return getThis();
         }
 
+        /**
+         * Set how close the labels are placed to the point of each polygon furthest from its outline,
+         * relative to the size of the polygon. Smaller values place the labels better but take longer
+         *
+         * @param labelPrecision eg. 0.01 for 1% of the width or height of the polygon
+         * @return
+         */
+        public B setLabelPrecision(double labelPrecision) {
+            if (labelPrecision <= 0) {
+                throw new IllegalArgumentException("The label precision should be positive");
+            }
+
+            this.labelPrecision = labelPrecision;
+            return getThis();
+        }
+
+        /**
+         * Set the zooms below which simplified versions of the boundaries are drawn instead of the full
+         * resolution boundaries. With the zooms {@code 6, 10, 14}, the boundaries are simplified for zoom 6
+         * below zoom 6, for zoom 10 between zooms 6 & 10, for zoom 14 between zooms 10 & 14 & drawn at
+         * full resolution from zoom 14. The simplification is disabled by default & by passing no zoom. It
+         * pays off for boundaries with many vertices, each level adding a source & its layers to the map
+         *
+         * @param simplificationZooms Zooms in ascending order
+         * @return
+         */
+        public B setSimplificationZooms(@NonNull int... simplificationZooms) {
+            for (int i = 0; i < simplificationZooms.length; i++) {
+                if (simplificationZooms[i] <= 0 || (i > 0 && simplificationZooms[i] <= simplificationZooms[i - 1])) {
+                    throw new IllegalArgumentException("The simplification zooms should be positive & in ascending order");
+                }
+            }
+
+            this.simplificationZooms = simplificationZooms.clone();
+            return getThis();
+        }
+
         public abstract T build();
     }
 }
\ No newline at end of file
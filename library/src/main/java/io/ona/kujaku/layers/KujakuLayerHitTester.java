@@ -0,0 +1,240 @@
+package io.ona.kujaku.layers;
+
+import android.graphics.PointF;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+import com.mapbox.mapboxsdk.maps.Style;
+import com.mapbox.mapboxsdk.style.layers.Layer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the {@link KujakuLayer} rendered at a screen position.
+ * <p>
+ * The layer ids of the registered {@link KujakuLayer}s are indexed when the layers are added or removed, and
+ * again when a layer changed its ids, eg. when they were regenerated as the layer was added to the map, so
+ * that a tap is tested with a single {@link MapboxMap#queryRenderedFeatures(RectF, String...)} call
+ * over a tolerance box around the tap. Rendered features do not carry the id of the layer they were
+ * rendered on, so when several {@link KujakuLayer}s are registered and the tap hits one of them, the
+ * topmost one is found by halving the candidate layers, ordered by their position in the style, with
+ * about log2(n) extra queries. That order is kept until a layer is added, removed or changes its ids, or the
+ * style changes, so that a tap does not read all the style layers.
+ * <p>
+ * This class is not thread-safe and should be used from the main thread
+ */
+public class KujakuLayerHitTester {
+
+    public static final float DEFAULT_TOLERANCE_DP = 8f;
+
+    private final float tolerance;
+
+    private final LinkedHashMap<KujakuLayer, String[]> layerIds = new LinkedHashMap<>();
+    private String[] allLayerIds = new String[0];
+    private boolean isDirty = false;
+
+    private List<KujakuLayer> layersTopmostFirst;
+    private Style layersTopmostFirstStyle;
+
+    /**
+     * @param tolerance Half the side of the square tested around the tap, in pixels
+     */
+    public KujakuLayerHitTester(float tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("tolerance should not be negative");
+        }
+
+        this.tolerance = tolerance;
+    }
+
+    public float getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Register a layer. Registering a layer again refreshes its layer ids
+     *
+     * @param kujakuLayer
+     */
+    public void addLayer(@NonNull KujakuLayer kujakuLayer) {
+        layerIds.put(kujakuLayer, kujakuLayer.getLayerIds());
+        isDirty = true;
+        layersTopmostFirst = null;
+    }
+
+    /**
+     * Unregister a layer
+     *
+     * @param kujakuLayer
+     * @return {@code TRUE} if the layer was registered
+     */
+    public boolean removeLayer(@NonNull KujakuLayer kujakuLayer) {
+        boolean removed = layerIds.remove(kujakuLayer) != null;
+        if (removed) {
+            isDirty = true;
+            layersTopmostFirst = null;
+        }
+
+        return removed;
+    }
+
+    public boolean containsLayer(@NonNull KujakuLayer kujakuLayer) {
+        return layerIds.containsKey(kujakuLayer);
+    }
+
+    public int getLayerCount() {
+        return layerIds.size();
+    }
+
+    public void clear() {
+        layerIds.clear();
+        isDirty = true;
+        layersTopmostFirst = null;
+    }
+
+    /**
+     * Get the topmost registered layer rendered around a screen position
+     *
+     * @param mapboxMap
+     * @param pixel
+     * @return The {@link KujakuLayer} or {@code NULL} if no registered layer is rendered there
+     */
+    @Nullable
+    public KujakuLayer getLayerAt(@NonNull MapboxMap mapboxMap, @NonNull PointF pixel) {
+        if (layerIds.isEmpty()) {
+            return null;
+        }
+
+        refreshLayerIds();
+
+        RectF box = new RectF(pixel.x - tolerance, pixel.y - tolerance, pixel.x + tolerance, pixel.y + tolerance);
+        if (mapboxMap.queryRenderedFeatures(box, getAllLayerIds()).isEmpty()) {
+            return null;
+        }
+
+        if (layerIds.size() == 1) {
+            return layerIds.keySet().iterator().next();
+        }
+
+        List<KujakuLayer> candidates = getLayersTopmostFirst(mapboxMap.getStyle());
+        int start = 0;
+        int end = candidates.size();
+
+        // The topmost hit layer is in [start, end)
+        while (end - start > 1) {
+            int middle = (start + end) >>> 1;
+            if (mapboxMap.queryRenderedFeatures(box, getLayerIds(candidates, start, middle)).isEmpty()) {
+                start = middle;
+            } else {
+                end = middle;
+            }
+        }
+
+        return candidates.get(start);
+    }
+
+    /**
+     * Read the layer ids of the registered layers again since a layer can change them once registered
+     */
+    private void refreshLayerIds() {
+        for (Map.Entry<KujakuLayer, String[]> entry : layerIds.entrySet()) {
+            String[] kujakuLayerIds = entry.getKey().getLayerIds();
+            if (!Arrays.equals(entry.getValue(), kujakuLayerIds)) {
+                entry.setValue(kujakuLayerIds);
+                isDirty = true;
+                layersTopmostFirst = null;
+            }
+        }
+    }
+
+    @NonNull
+    private String[] getAllLayerIds() {
+        if (isDirty) {
+            List<String> ids = new ArrayList<>();
+            for (String[] kujakuLayerIds : layerIds.values()) {
+                Collections.addAll(ids, kujakuLayerIds);
+            }
+
+            allLayerIds = ids.toArray(new String[ids.size()]);
+            isDirty = false;
+        }
+
+        return allLayerIds;
+    }
+
+    @NonNull
+    private String[] getLayerIds(@NonNull List<KujakuLayer> kujakuLayers, int start, int end) {
+        List<String> ids = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            Collections.addAll(ids, layerIds.get(kujakuLayers.get(i)));
+        }
+
+        return ids.toArray(new String[ids.size()]);
+    }
+
+    /**
+     * Get the registered layers ordered by the position of their topmost layer in the style. Layers missing
+     * from the style keep their registration order, after the others. The order is kept once all the layers
+     * are in the style, until the registered layers or the style change
+     *
+     * @param style
+     * @return
+     */
+    @NonNull
+    private List<KujakuLayer> getLayersTopmostFirst(@Nullable Style style) {
+        if (layersTopmostFirst != null && layersTopmostFirstStyle == style) {
+            return layersTopmostFirst;
+        }
+
+        List<KujakuLayer> kujakuLayers = new ArrayList<>(layerIds.keySet());
+        if (style == null) {
+            return kujakuLayers;
+        }
+
+        Map<String, Integer> stylePositions = new HashMap<>();
+        List<Layer> styleLayers = style.getLayers();
+        for (int i = 0; i < styleLayers.size(); i++) {
+            stylePositions.put(styleLayers.get(i).getId(), i);
+        }
+
+        boolean isInStyle = true;
+        final Map<KujakuLayer, Integer> topPositions = new HashMap<>();
+        for (KujakuLayer kujakuLayer : kujakuLayers) {
+            int topPosition = -1;
+            for (String layerId : layerIds.get(kujakuLayer)) {
+                Integer position = stylePositions.get(layerId);
+                if (position != null && position > topPosition) {
+                    topPosition = position;
+                }
+            }
+
+            topPositions.put(kujakuLayer, topPosition);
+            isInStyle = isInStyle && topPosition != -1;
+        }
+
+        // The sort is stable so layers at the same position keep their registration order
+        Collections.sort(kujakuLayers, new Comparator<KujakuLayer>() {
+            @Override
+            public int compare(KujakuLayer first, KujakuLayer second) {
+                return topPositions.get(second) - topPositions.get(first);
+            }
+        });
+
+        // Layers missing from the style are placed once they are added to it
+        if (isInStyle) {
+            layersTopmostFirst = kujakuLayers;
+            layersTopmostFirstStyle = style;
+        }
+
+        return kujakuLayers;
+    }
+}
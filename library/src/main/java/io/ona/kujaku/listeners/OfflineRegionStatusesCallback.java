@@ -0,0 +1,26 @@
+package io.ona.kujaku.listeners;
+
+import com.mapbox.mapboxsdk.offline.OfflineRegionStatus;
+
+import java.util.Map;
+
+/**
+ * This callback receives an asynchronous response containing the {@link OfflineRegionStatus}es of
+ * several offline regions, or a {@link String} error message otherwise.
+ */
+public interface OfflineRegionStatusesCallback {
+    /**
+     * Receives the statuses once all of them have been retrieved
+     *
+     * @param statuses the offline region statuses keyed by map name. Maps which could not be found
+     *                 or whose status could not be retrieved are not included
+     */
+    void onStatuses(Map<String, OfflineRegionStatus> statuses);
+
+    /**
+     * Receives the error message
+     *
+     * @param error the error message
+     */
+    void onError(String error);
+}
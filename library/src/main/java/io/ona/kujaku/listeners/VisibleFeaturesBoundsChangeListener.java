@@ -0,0 +1,17 @@
+package io.ona.kujaku.listeners;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import java.util.List;
+
+/**
+ * {@link BoundsChangeListener} which also receives the features of the primary GeoJSON source that
+ * are inside the visible bounds, queried from the spatial index of the {@link io.ona.kujaku.views.KujakuMapView}
+ */
+public interface VisibleFeaturesBoundsChangeListener extends BoundsChangeListener {
+
+    void onVisibleFeaturesChanged(@NonNull LatLngBounds bounds, @NonNull List<Feature> visibleFeatures);
+}
@@ -3,7 +3,9 @@ package io.ona.kujaku.listeners;
 import io.ona.kujaku.wmts.model.WmtsCapabilities;
 
 /**
- * Listener called when capabilities have been retrieved
+ * Listener called when capabilities have been retrieved. When the capabilities are cached,
+ * {@link #onCapabilitiesReceived(WmtsCapabilities)} is called with the cached capabilities & called
+ * again if they turn out to be outdated.
  *
  * Created by Emmanuel Otin - eo@novel-t.ch 11/28/18.
  */
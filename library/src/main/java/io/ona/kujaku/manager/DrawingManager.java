@@ -13,8 +13,10 @@ import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.Style;
 import com.mapbox.mapboxsdk.plugins.annotation.Circle;
 import com.mapbox.mapboxsdk.plugins.annotation.CircleManager;
+import com.mapbox.mapboxsdk.plugins.annotation.Fill;
 import com.mapbox.mapboxsdk.plugins.annotation.FillManager;
 import com.mapbox.mapboxsdk.plugins.annotation.FillOptions;
+import com.mapbox.mapboxsdk.plugins.annotation.Line;
 import com.mapbox.mapboxsdk.plugins.annotation.LineManager;
 import com.mapbox.mapboxsdk.plugins.annotation.LineOptions;
 import com.mapbox.mapboxsdk.plugins.annotation.OnCircleClickListener;
@@ -43,6 +45,12 @@ public class DrawingManager {
     private LineManager lineManager;
     private CircleManager circleManager;
 
+    private Fill fill;
+    private Line line;
+
+    private MapView mapView;
+    private boolean isPolygonRefreshScheduled;
+
     private OnDrawingCircleClickListener onDrawingCircleClickListener;
     private OnDrawingCircleLongClickListener onDrawingCircleLongClickListener;
 
@@ -58,6 +66,7 @@ public class DrawingManager {
     public DrawingManager(@NonNull MapView mapView, @NonNull MapboxMap mapboxMap, @NonNull Style style) {
         this.circles = new ArrayList<>();
         this.setCurrentKujakuCircle(null);
+        this.mapView = mapView;
 
         fillManager = new FillManager(mapView, mapboxMap, style);
         lineManager = new LineManager(mapView, mapboxMap, style);
@@ -89,12 +98,12 @@ public class DrawingManager {
 
             @Override
             public void onAnnotationDrag(Circle circle) {
-                refreshPolygon();
+                schedulePolygonRefresh();
             }
 
             @Override
             public void onAnnotationDragFinished(Circle circle) {
-                // Left empty on purpose
+                refreshPolygon();
             }
         });
 
@@ -300,6 +309,45 @@ public class DrawingManager {
         }
     }
 
+    /**
+     * Creation of the middle points of the 2 segments next to a real point, the other middle points
+     * being kept as they are
+     *
+     * @param kujakuCircle
+     * @return false if the point is not between 2 real points, the middle points are then not created
+     */
+    private boolean createMiddlePoints(@NonNull KujakuCircle kujakuCircle) {
+        KujakuCircle previousCircle = kujakuCircle.getPreviousKujakuCircle();
+        KujakuCircle nextCircle = kujakuCircle.getNextKujakuCircle();
+
+        if (kujakuCircle.isMiddleCircle() || previousCircle == null || nextCircle == null || previousCircle == kujakuCircle
+                || previousCircle.isMiddleCircle() || nextCircle.isMiddleCircle()) {
+            return false;
+        }
+
+        // The middle circles are inserted in the list next to the point, the segment closing the polygon being at the end
+        int index = this.circles.indexOf(kujakuCircle);
+
+        KujakuCircleOptions previousMiddleOptions = this.createMiddleKujakuCircleOptions(previousCircle.getCircle(), kujakuCircle.getCircle(), getKujakuCircleMiddleOptions());
+        KujakuCircle previousMiddleCircle = new KujakuCircle(circleManager.create(previousMiddleOptions), previousCircle, true);
+        previousMiddleCircle.setNextKujakuCircle(kujakuCircle);
+
+        if (index == 0) {
+            this.circles.add(previousMiddleCircle);
+        } else {
+            this.circles.add(index, previousMiddleCircle);
+            index++;
+        }
+
+        KujakuCircleOptions nextMiddleOptions = this.createMiddleKujakuCircleOptions(kujakuCircle.getCircle(), nextCircle.getCircle(), getKujakuCircleMiddleOptions());
+        KujakuCircle nextMiddleCircle = new KujakuCircle(circleManager.create(nextMiddleOptions), kujakuCircle, true);
+        nextMiddleCircle.setNextKujakuCircle(nextCircle);
+
+        this.circles.add(index + 1, nextMiddleCircle);
+
+        return true;
+    }
+
     /**
      * Create new KujakuCircleOptions between circle1 and circle2 lat long. Copy options from parameter options
      *
@@ -322,12 +370,30 @@ public class DrawingManager {
     }
 
     /**
-     * Refresh the entire Polygon appearance
+     * Refresh the Polygon appearance on the next frame. Several calls within a frame result in a single refresh
+     */
+    private void schedulePolygonRefresh() {
+        if (isPolygonRefreshScheduled) {
+            return;
+        }
+
+        isPolygonRefreshScheduled = true;
+        mapView.postOnAnimation(new Runnable() {
+            @Override
+            public void run() {
+                if (isPolygonRefreshScheduled) {
+                    refreshPolygon();
+                }
+            }
+        });
+    }
+
+    /**
+     * Refresh the entire Polygon appearance. The fill & line are updated in place once created
      *
      */
     private void refreshPolygon() {
-        fillManager.deleteAll();
-        lineManager.deleteAll();
+        isPolygonRefreshScheduled = false;
 
         if (this.getKujakuCircles().size() > 1) {
             List<LatLng> list = new ArrayList<>();
@@ -340,18 +406,46 @@ public class DrawingManager {
             List<List<LatLng>> lists =  new ArrayList<>();
             lists.add(list);
 
-            fillManager.create(new FillOptions()
-                    .withLatLngs(lists)
-                    .withFillOpacity(Float.valueOf("0.5")));
+            if (fill == null) {
+                fill = fillManager.create(new FillOptions()
+                        .withLatLngs(lists)
+                        .withFillOpacity(Float.valueOf("0.5")));
+            } else {
+                fill.setLatLngs(lists);
+                fillManager.update(fill);
+            }
 
-            // We add the first point to the end of the list too
+            // We add the first point to the end of the line too
+            List<LatLng> lineLatLngs = new ArrayList<>(list);
             if (this.getKujakuCircles().size() > 2) {
-                list.add(this.getKujakuCircles().get(0).getCircle().getLatLng());
+                lineLatLngs.add(this.getKujakuCircles().get(0).getCircle().getLatLng());
             }
 
-            lineManager.create(new LineOptions()
-                    .withLatLngs(list)
-                    .withLineOpacity(Float.valueOf("0.5")));
+            if (line == null) {
+                line = lineManager.create(new LineOptions()
+                        .withLatLngs(lineLatLngs)
+                        .withLineOpacity(Float.valueOf("0.5")));
+            } else {
+                line.setLatLngs(lineLatLngs);
+                lineManager.update(line);
+            }
+        } else {
+            this.deletePolygon();
+        }
+    }
+
+    /**
+     * Delete the fill & line of the Polygon
+     */
+    private void deletePolygon() {
+        if (fill != null) {
+            fillManager.delete(fill);
+            fill = null;
+        }
+
+        if (line != null) {
+            lineManager.delete(line);
+            line = null;
         }
     }
 
@@ -425,6 +519,8 @@ public class DrawingManager {
         this.circleManager.deleteAll();
         this.fillManager.deleteAll();
         this.lineManager.deleteAll();
+        this.fill = null;
+        this.line = null;
     }
 
     /**
@@ -514,7 +610,13 @@ public class DrawingManager {
         circleManager.update(circle);
 
         if (!draggable) {
-            this.refresh(true);
+            // Only the segments next to the dragged point have changed
+            KujakuCircle kujakuCircle = getKujakuCircle(circle);
+            if (kujakuCircle != null && this.createMiddlePoints(kujakuCircle)) {
+                this.refreshPolygon();
+            } else {
+                this.refresh(true);
+            }
         }
     }
 
@@ -5,9 +5,12 @@ import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
+import android.support.annotation.NonNull;
 import android.support.v4.app.NotificationCompat;
+import android.text.TextUtils;
 
 import java.text.DecimalFormat;
+import java.util.Map;
 
 import io.ona.kujaku.R;
 import io.ona.kujaku.data.realm.objects.MapBoxOfflineQueueTask;
@@ -74,6 +77,28 @@ public class DownloadProgressNotification extends KujakuNotification {
             clearActions();
         }
 
+        notificationBuilder.setStyle(null);
+        updateNotificationWithDownloadProgress(percentageProgress);
+    }
+
+    /**
+     * Updates the download progress notification for several maps downloaded at the same time. The title
+     * lists the map names, the content shows the overall progress & the expanded notification shows the
+     * progress of each map. The STOP DOWNLOAD action is removed since it targets a single map
+     *
+     * @param mapsProgress       The download percentage of each map
+     * @param percentageProgress The overall download percentage
+     */
+    public void updateNotification(@NonNull Map<String, Double> mapsProgress, double percentageProgress) {
+        notificationBuilder.setContentTitle(String.format(context.getString(R.string.notification_download_progress_title), TextUtils.join(", ", mapsProgress.keySet())));
+        clearActions();
+
+        NotificationCompat.InboxStyle inboxStyle = new NotificationCompat.InboxStyle();
+        for (Map.Entry<String, Double> mapProgress : mapsProgress.entrySet()) {
+            inboxStyle.addLine(mapProgress.getKey() + ": " + String.format(context.getString(R.string.notification_download_progress_content), formatDecimal(mapProgress.getValue())));
+        }
+
+        notificationBuilder.setStyle(inboxStyle);
         updateNotificationWithDownloadProgress(percentageProgress);
     }
 
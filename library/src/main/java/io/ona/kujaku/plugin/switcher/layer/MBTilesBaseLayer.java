@@ -0,0 +1,200 @@
+package io.ona.kujaku.plugin.switcher.layer;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.mapboxsdk.style.layers.Layer;
+import com.mapbox.mapboxsdk.style.layers.RasterLayer;
+import com.mapbox.mapboxsdk.style.sources.RasterSource;
+import com.mapbox.mapboxsdk.style.sources.Source;
+import com.mapbox.mapboxsdk.style.sources.TileSet;
+import com.mapbox.mapboxsdk.style.sources.VectorSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import io.ona.kujaku.callables.AsyncTaskCallable;
+import io.ona.kujaku.helpers.MBTilesTileServer;
+import io.ona.kujaku.helpers.storage.MBTilesStore;
+import io.ona.kujaku.listeners.OnFinishedListener;
+import io.ona.kujaku.tasks.TaskScheduler;
+
+/**
+ * Base layer showing the tiles of an MBTiles file, served by the {@link MBTilesTileServer} so that the
+ * map can be used without a connection. Raster files are shown with a {@link RasterLayer} while vector
+ * files need the layers styling them, which should use {@link #getSourceId(File)} as their source
+ * <p>
+ * Resolving the tiles of the file starts the tile server & reads the file, use
+ * {@link #create(String, File, List, OnFinishedListener)} to do it off the main thread
+ */
+public class MBTilesBaseLayer extends BaseLayer {
+
+    private static final int RASTER_TILE_SIZE = 256;
+
+    private String displayName;
+    private String sourceId;
+
+    private LinkedHashSet<Layer> layers = new LinkedHashSet<>();
+    private List<Source> sources = new ArrayList<>();
+
+    /**
+     * Base layer of a raster MBTiles file. This starts the tile server & reads the file, it should not
+     * be called on the main thread
+     *
+     * @param displayName name of the layer in the {@link io.ona.kujaku.plugin.switcher.BaseLayerSwitcherPlugin}
+     * @param mbtilesFile
+     * @throws IOException if the tile server cannot be started
+     */
+    public MBTilesBaseLayer(@NonNull String displayName, @NonNull File mbtilesFile) throws IOException {
+        this(displayName, mbtilesFile, null);
+    }
+
+    /**
+     * Base layer of a vector MBTiles file. This starts the tile server & reads the file, it should not
+     * be called on the main thread
+     *
+     * @param displayName  name of the layer in the {@link io.ona.kujaku.plugin.switcher.BaseLayerSwitcherPlugin}
+     * @param mbtilesFile
+     * @param vectorLayers layers styling the vector tiles, from the bottom to the top one. A raster layer is
+     *                     created if {@code null}
+     * @throws IOException if the tile server cannot be started
+     */
+    public MBTilesBaseLayer(@NonNull String displayName, @NonNull File mbtilesFile, @Nullable List<Layer> vectorLayers) throws IOException {
+        this(displayName, mbtilesFile, createTileSet(mbtilesFile), vectorLayers);
+    }
+
+    private MBTilesBaseLayer(@NonNull String displayName, @NonNull File mbtilesFile, @NonNull TileSet tileSet, @Nullable List<Layer> vectorLayers) {
+        this.displayName = displayName;
+        this.sourceId = getSourceId(mbtilesFile);
+
+        createLayersAndSources(tileSet, vectorLayers);
+    }
+
+    /**
+     * Creates the base layer of an MBTiles file after starting the tile server & reading the file on the
+     * {@link TaskScheduler}
+     *
+     * @param displayName        name of the layer in the {@link io.ona.kujaku.plugin.switcher.BaseLayerSwitcherPlugin}
+     * @param mbtilesFile
+     * @param vectorLayers       layers styling the vector tiles, from the bottom to the top one. A raster
+     *                           layer is created if {@code null}
+     * @param onFinishedListener called on the main thread with the {@link MBTilesBaseLayer} as the only object
+     *                           or with the error if the tile server cannot be started
+     * @return the task, which can be cancelled
+     */
+    @NonNull
+    public static TaskScheduler.Task create(@NonNull final String displayName, @NonNull final File mbtilesFile
+            , @Nullable final List<Layer> vectorLayers, @NonNull final OnFinishedListener onFinishedListener) {
+        return TaskScheduler.getInstance().submit(null, TaskScheduler.Priority.USER_VISIBLE, new AsyncTaskCallable() {
+            @Override
+            public Object[] call() throws Exception {
+                return new Object[]{createTileSet(mbtilesFile)};
+            }
+        }, new OnFinishedListener() {
+            @Override
+            public void onSuccess(Object[] objects) {
+                // The sources & layers are created on the main thread like the ones of the other base layers
+                onFinishedListener.onSuccess(new Object[]{new MBTilesBaseLayer(displayName, mbtilesFile, (TileSet) objects[0], vectorLayers)});
+            }
+
+            @Override
+            public void onError(Exception e) {
+                onFinishedListener.onError(e);
+            }
+        });
+    }
+
+    /**
+     * @param mbtilesFile
+     * @return the id of the source of the {@code mbtilesFile} tiles
+     */
+    @NonNull
+    public static String getSourceId(@NonNull File mbtilesFile) {
+        return "mbtiles-" + mbtilesFile.getName();
+    }
+
+    /**
+     * Serves the tiles of the file & reads its zoom range
+     *
+     * @param mbtilesFile
+     * @return the {@link TileSet} of the served tiles
+     * @throws IOException if the tile server cannot be started
+     */
+    @NonNull
+    private static TileSet createTileSet(@NonNull File mbtilesFile) throws IOException {
+        TileSet tileSet = new TileSet("tileset", MBTilesTileServer.getInstance().addStore(getSourceId(mbtilesFile), mbtilesFile));
+
+        MBTilesStore store = MBTilesStore.openReadOnly(mbtilesFile);
+        try {
+            String minZoom = store.getMetadata(MBTilesStore.METADATA_MIN_ZOOM);
+            if (minZoom != null) {
+                tileSet.setMinZoom(Float.parseFloat(minZoom));
+            }
+
+            String maxZoom = store.getMetadata(MBTilesStore.METADATA_MAX_ZOOM);
+            if (maxZoom != null) {
+                tileSet.setMaxZoom(Float.parseFloat(maxZoom));
+            }
+        } catch (NumberFormatException e) {
+            // The zoom range is optional
+        } finally {
+            store.close();
+        }
+
+        return tileSet;
+    }
+
+    private void createLayersAndSources(@NonNull TileSet tileSet, @Nullable List<Layer> vectorLayers) {
+        if (vectorLayers == null) {
+            sources.add(new RasterSource(sourceId, tileSet, RASTER_TILE_SIZE));
+            layers.add(new RasterLayer(sourceId, sourceId));
+        } else {
+            sources.add(new VectorSource(sourceId, tileSet));
+            layers.addAll(vectorLayers);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @NonNull
+    @Override
+    public String[] getSourceIds() {
+        return new String[] {sourceId};
+    }
+
+    @Override
+    public LinkedHashSet<Layer> getLayers() {
+        return layers;
+    }
+
+    @Override
+    public List<Source> getSources() {
+        return sources;
+    }
+
+    @NonNull
+    @Override
+    public String getId() {
+        return sourceId + "-base-layer";
+    }
+
+    @NonNull
+    @Override
+    public String[] getLayerIds() {
+        String[] layerIds = new String[layers.size()];
+
+        int index = 0;
+        for (Layer layer : layers) {
+            layerIds[index++] = layer.getId();
+        }
+
+        return layerIds;
+    }
+}
@@ -10,10 +10,6 @@ import com.mapbox.mapboxsdk.style.layers.PropertyFactory;
 import com.mapbox.mapboxsdk.style.sources.Source;
 import com.mapbox.mapboxsdk.style.sources.VectorSource;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
@@ -45,16 +41,10 @@ public class StreetsBaseLayer extends BaseLayer {
         LayerUtil layerUtil = new LayerUtil();
 
         try {
-            JSONArray jsonArray = new JSONArray(
-                    IOUtil.readInputStreamAsString(context.getAssets().open("streets-base-layers.json"))
-            );
-
-            for (int i = 0; i < jsonArray.length(); i++) {
-                JSONObject jsonObject = jsonArray.getJSONObject(i);
+            String layersJSON = IOUtil.readInputStreamAsString(context.getAssets().open("streets-base-layers.json"));
 
-                Layer layer = layerUtil.getLayer(jsonObject.toString());
-
-                if (layer != null && layer.getId().equals("hillshade") && layer instanceof FillLayer) {
+            for (Layer layer : layerUtil.getLayers(layersJSON)) {
+                if (layer.getId().equals("hillshade") && layer instanceof FillLayer) {
                     // Add the correct opacity
                     Expression fillOpacityExpression = Expression.interpolate(Expression.Interpolator.linear()
                             , Expression.zoom()
@@ -68,11 +58,9 @@ public class StreetsBaseLayer extends BaseLayer {
                     ((FillLayer) layer).withProperties(PropertyFactory.fillOpacity(fillOpacityExpression));
                 }
 
-                if (layer != null) {
-                    layers.add(layer);
-                }
+                layers.add(layer);
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             Timber.e(e);
         }
     }
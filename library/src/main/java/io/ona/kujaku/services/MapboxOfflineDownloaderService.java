@@ -18,6 +18,7 @@ import android.util.Log;
 
 import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.net.ConnectivityListener;
 import com.mapbox.mapboxsdk.net.ConnectivityReceiver;
 import com.mapbox.mapboxsdk.offline.OfflineRegion;
 import com.mapbox.mapboxsdk.offline.OfflineRegionError;
@@ -25,13 +26,24 @@ import com.mapbox.mapboxsdk.offline.OfflineRegionStatus;
 
 import org.json.JSONException;
 
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import io.ona.kujaku.BuildConfig;
+import io.ona.kujaku.KujakuLibrary;
 import io.ona.kujaku.R;
 import io.ona.kujaku.data.MapBoxDeleteTask;
 import io.ona.kujaku.data.MapBoxDownloadTask;
+import io.ona.kujaku.data.WmtsDownloadTask;
 import io.ona.kujaku.data.realm.RealmDatabase;
 import io.ona.kujaku.data.realm.objects.MapBoxOfflineQueueTask;
+import io.ona.kujaku.downloaders.DownloadConcurrencyController;
 import io.ona.kujaku.downloaders.MapBoxOfflineResourcesDownloader;
+import io.ona.kujaku.downloaders.WmtsTilePrefetcher;
+import io.ona.kujaku.helpers.storage.MBTilesStore;
 import io.ona.kujaku.listeners.OfflineRegionObserver;
 import io.ona.kujaku.listeners.OfflineRegionStatusCallback;
 import io.ona.kujaku.listeners.OnDownloadMapListener;
@@ -43,6 +55,7 @@ import io.ona.kujaku.utils.Constants;
 import io.ona.kujaku.utils.ObjectCoercer;
 import io.ona.kujaku.utils.exceptions.MalformedDataException;
 import io.ona.kujaku.utils.exceptions.OfflineMapDownloadException;
+import io.realm.Realm;
 
 /**
  * Service performs Offline Map Download, Offline Map Deletion & Offline Map Download Resumption
@@ -59,6 +72,8 @@ import io.ona.kujaku.utils.exceptions.OfflineMapDownloadException;
  * - Optional {@link Constants#PARCELABLE_KEY_TOP_RIGHT_BOUND} - Required for {@link SERVICE_ACTION#DOWNLOAD_MAP}
  * - Optional {@link Constants#PARCELABLE_KEY_BOTTOM_RIGHT_BOUND} - Required for {@link SERVICE_ACTION#DOWNLOAD_MAP}
  * - Optional {@link Constants#PARCELABLE_KEY_BOTTOM_LEFT_BOUND} - Required for {@link SERVICE_ACTION#DOWNLOAD_MAP}
+ * - Optional {@link #PARCELABLE_KEY_WMTS_TILE_URL} - Required for {@link SERVICE_ACTION#DOWNLOAD_MAP} of WMTS tiles, instead of the style url
+ * - Optional {@link #PARCELABLE_KEY_WMTS_STORE_PATH} - Required for {@link SERVICE_ACTION#DOWNLOAD_MAP} of WMTS tiles
  * <p>
  * - Optional {@link Constants#PARCELABLE_KEY_DELETE_TASK_TYPE} - Required for {@link SERVICE_ACTION#STOP_CURRENT_DOWNLOAD}
  * </p>
@@ -103,6 +118,8 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
     public static final String KEY_RESULT_STATUS = "RESULT STATUS";
     public static final String KEY_RESULT_MESSAGE = "RESULT MESSAGE";
     public static final String KEY_RESULTS_PARENT_ACTION = "RESULTS PARENT ACTION";
+    public static final String PARCELABLE_KEY_WMTS_TILE_URL = "offline_map_wmts_tile_url";
+    public static final String PARCELABLE_KEY_WMTS_STORE_PATH = "offline_map_wmts_store_path";
     private static final String TAG = MapboxOfflineDownloaderService.class.getSimpleName();
 
     public static final String MY_PREFERENCES = "KUJAKU PREFERENCES";
@@ -111,12 +128,11 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
     private String mapBoxAccessToken = "";
     private String currentMapDownloadName;
     private SERVICE_ACTION currentServiceAction;
-    private MapBoxOfflineQueueTask currentMapBoxTask;
-    private long currentMapDownloadId;
 
     private DownloadProgressNotification downloadProgressNotification;
     public static final int PROGRESS_NOTIFICATION_ID = 80;
     public static final int REQUEST_ID_STOP_MAP_DOWNLOAD = 1;
+    public static final int MAX_WMTS_DOWNLOAD_ATTEMPTS = 3;
 
     // Should persist across service instances but within the same app session
     public static int LAST_DOWNLOAD_COMPLETE_NOTIFICATION_ID = 81;
@@ -124,8 +140,35 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
 
     private boolean isPerformingTask = false;
 
+    private final DownloadConcurrencyController downloadConcurrencyController = new DownloadConcurrencyController(KujakuLibrary.getMaxConcurrentMapDownloads());
+    private ConnectivityReceiver connectivityReceiver;
+    private final ConnectivityListener connectivityListener = new ConnectivityListener() {
+        @Override
+        public void onNetworkStateChanged(boolean connected) {
+            onConnectivityChanged(connected);
+        }
+    };
+
     private RealmDatabase realmDatabase;
 
+    /* The service's own reference for the queued tasks it performs. Only accessed on the main thread */
+    private Realm taskRealm;
+
+    /* The WMTS tile downloads running, by map name. Only accessed on the main thread */
+    private final Map<String, WmtsTilePrefetcher> wmtsTilePrefetchers = new HashMap<>();
+
+    /* Runs the WMTS prefetches, which block until all their tiles are downloaded, off the shared TaskScheduler */
+    private ExecutorService wmtsPrefetchExecutor;
+
+    /* Downloads the tiles of all the WMTS prefetches */
+    private ExecutorService wmtsTileDownloadExecutor;
+
+    /* The number of failed WMTS tile downloads of each map since the service started. Only accessed on the main thread */
+    private final Map<String, Integer> wmtsDownloadAttempts = new HashMap<>();
+
+    /* The tasks of the Mapbox region downloads running, by map name. Only accessed on the main thread */
+    private final Map<String, MapBoxOfflineQueueTask> regionDownloadTasks = new HashMap<>();
+
     @RestrictTo(RestrictTo.Scope.TESTS)
     public boolean onStartCommandCalled = false;
     @RestrictTo(RestrictTo.Scope.TESTS)
@@ -157,11 +200,22 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
 
         super.onStartCommand(intent, flags, startId);
         onStartCommandCalled = true;
+        registerConnectivityListener();
+        requeueInterruptedWmtsDownloads();
         persistOfflineMapTask(intent);
         performNextTask();
         return START_NOT_STICKY;
     }
 
+    private void registerConnectivityListener() {
+        if (connectivityReceiver == null) {
+            connectivityReceiver = ConnectivityReceiver.instance(this);
+            if (connectivityReceiver != null) {
+                connectivityReceiver.addListener(connectivityListener);
+            }
+        }
+    }
+
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
@@ -195,7 +249,9 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
                 downloadTask.setMapBoxAccessToken(mapBoxAccessToken);
 
                 if (serviceAction == SERVICE_ACTION.DOWNLOAD_MAP) {
-                    if (extras.containsKey(Constants.PARCELABLE_KEY_STYLE_URL)
+                    if (extras.containsKey(PARCELABLE_KEY_WMTS_TILE_URL)) {
+                        return persistWmtsDownloadTask(mapUniqueName, extras);
+                    } else if (extras.containsKey(Constants.PARCELABLE_KEY_STYLE_URL)
                             && extras.containsKey(Constants.PARCELABLE_KEY_MAX_ZOOM)
                             && extras.containsKey(Constants.PARCELABLE_KEY_MIN_ZOOM)
                             && extras.containsKey(Constants.PARCELABLE_KEY_TOP_LEFT_BOUND)
@@ -229,11 +285,17 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
                     final String taskType = extras.getString(Constants.PARCELABLE_KEY_DELETE_TASK_TYPE, "");
 
                     if (!TextUtils.isEmpty(taskType)) {
-                        if (taskType.equals(MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD) && mostRecentMapNameUpdate.equals(mapUniqueName)) {
+                        if (taskType.equals(MapBoxOfflineQueueTask.TASK_TYPE_WMTS_DOWNLOAD)) {
+                            stopWmtsDownload(mapUniqueName);
+                        } else if (taskType.equals(MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD)
+                                && downloadConcurrencyController.isDownloadActive(mapUniqueName)) {
                             MapBoxOfflineResourcesDownloader mapBoxOfflineResourcesDownloader = MapBoxOfflineResourcesDownloader.getInstance(this, mapBoxAccessToken);
 
                             // Remove the STOP DOWNLOAD ACTION from the notification so that it cannot be pressed and cause the app to crash!
-                            showProgressNotification(mostRecentMapNameUpdate, mostRecentPercentageUpdate, false);
+                            // The notification of several downloads has no action
+                            if (downloadConcurrencyController.getActiveDownloadCount() == 1) {
+                                showProgressNotification(mapUniqueName, downloadConcurrencyController.getDownloadPercentage(mapUniqueName), false);
+                            }
 
                             // Stop the download first
                             mapBoxOfflineResourcesDownloader.pauseMapDownload(mapUniqueName, new OnPauseMapDownloadCallback() {
@@ -251,6 +313,8 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
                                                     } else {
                                                         sendBroadcast(SERVICE_ACTION_RESULT.FAILED, mapUniqueName, SERVICE_ACTION.STOP_CURRENT_DOWNLOAD, getString(R.string.map_delete_task_error));
                                                     }
+                                                    regionDownloadTasks.remove(mapUniqueName);
+                                                    downloadConcurrencyController.onDownloadCancelled(mapUniqueName);
                                                     releaseQueueToPerformOtherJobs();
 
                                                     performNextTask();
@@ -288,7 +352,66 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
         return false;
     }
 
+    private boolean persistWmtsDownloadTask(@NonNull String mapUniqueName, @NonNull Bundle extras) {
+        if (extras.containsKey(PARCELABLE_KEY_WMTS_STORE_PATH)
+                && extras.containsKey(Constants.PARCELABLE_KEY_MAX_ZOOM)
+                && extras.containsKey(Constants.PARCELABLE_KEY_MIN_ZOOM)
+                && extras.containsKey(Constants.PARCELABLE_KEY_TOP_LEFT_BOUND)
+                && extras.containsKey(Constants.PARCELABLE_KEY_BOTTOM_RIGHT_BOUND)) {
+
+            WmtsDownloadTask wmtsDownloadTask = new WmtsDownloadTask(mapUniqueName
+                    , extras.getString(PARCELABLE_KEY_WMTS_TILE_URL)
+                    , extras.getString(PARCELABLE_KEY_WMTS_STORE_PATH)
+                    , (int) ObjectCoercer.coerceNumberObjectToDoublePrimitive(extras.get(Constants.PARCELABLE_KEY_MIN_ZOOM))
+                    , (int) ObjectCoercer.coerceNumberObjectToDoublePrimitive(extras.get(Constants.PARCELABLE_KEY_MAX_ZOOM))
+                    , (LatLng) extras.getParcelable(Constants.PARCELABLE_KEY_TOP_LEFT_BOUND)
+                    , (LatLng) extras.getParcelable(Constants.PARCELABLE_KEY_BOTTOM_RIGHT_BOUND));
+
+            return WmtsDownloadTask.constructMapBoxOfflineQueueTask(wmtsDownloadTask) != null;
+        }
+
+        return false;
+    }
+
+    /**
+     * Cancels the WMTS tile download of the map & removes it from the queue. The tiles already
+     * downloaded are kept in the store
+     *
+     * @param mapName
+     */
+    private void stopWmtsDownload(@NonNull String mapName) {
+        wmtsDownloadAttempts.remove(mapName);
+        WmtsTilePrefetcher wmtsTilePrefetcher = wmtsTilePrefetchers.remove(mapName);
+        if (wmtsTilePrefetcher != null) {
+            wmtsTilePrefetcher.cancel();
+            // A stop requested by the user is neither a success nor a failure of the network
+            downloadConcurrencyController.onDownloadCancelled(mapName);
+            releaseQueueToPerformOtherJobs();
+        }
+
+        if (deleteTaskFromRealmDatabase(MapBoxOfflineQueueTask.TASK_TYPE_WMTS_DOWNLOAD, mapName)) {
+            sendBroadcast(SERVICE_ACTION_RESULT.SUCCESSFUL, mapName, SERVICE_ACTION.STOP_CURRENT_DOWNLOAD);
+            if (wmtsTilePrefetcher != null) {
+                showDownloadCompleteNotification(String.format(getString(R.string.notification_stopped_download_title), mapName), getString(R.string.notification_stopped_wmts_download_content));
+            }
+        } else {
+            sendBroadcast(SERVICE_ACTION_RESULT.FAILED, mapName, SERVICE_ACTION.STOP_CURRENT_DOWNLOAD, String.format(getString(R.string.error_broadcast_for_download_pause), "Map could not be found"));
+        }
+    }
+
+    /**
+     * WMTS tile downloads which were interrupted, by the service being killed or an error, are queued
+     * again. Their tiles already in the store are not downloaded again
+     */
+    private void requeueInterruptedWmtsDownloads() {
+        realmDatabase.requeueStartedTasks(MapBoxOfflineQueueTask.TASK_TYPE_WMTS_DOWNLOAD, wmtsTilePrefetchers.keySet());
+    }
+
     private boolean deleteTaskFromRealmDatabase(@NonNull String taskType, @NonNull String mapUniqueName) {
+        if (taskType.equals(MapBoxOfflineQueueTask.TASK_TYPE_WMTS_DOWNLOAD)) {
+            return realmDatabase.deleteTask(mapUniqueName, taskType);
+        }
+
         boolean isDownloadTask = taskType.equals(MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD);
         return realmDatabase.deleteTask(mapUniqueName, isDownloadTask);
     }
@@ -298,132 +421,333 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
      * {@link MapBoxOfflineQueueTask#TASK_TYPE_DOWNLOAD} are performed here.
      * <p>
      * A {@link MapBoxOfflineQueueTask#TASK_TYPE_DELETE} will only be performed if the Offline
-     * Region with the given name exists.
+     * Region with the given name exists. It is performed once the running downloads are done & holds
+     * the queue until it is done.
      * <p>
      * A {@link MapBoxOfflineQueueTask#TASK_TYPE_DOWNLOAD} will either be RESUMED, OBSERVED if RUNNING
-     * , IGNORED(thus FAILING if it does) or DOWNLOADED.
+     * , IGNORED(thus FAILING if it does) or DOWNLOADED. Up to {@link KujakuLibrary#getMaxConcurrentMapDownloads()}
+     * downloads are started in the order they were queued, as allowed by the {@link DownloadConcurrencyController}
+     * <p>
+     * A {@link MapBoxOfflineQueueTask#TASK_TYPE_WMTS_DOWNLOAD} downloads the missing tiles of a WMTS layer
+     * region into a {@link MBTilesStore}. It counts as one of the concurrent downloads
      */
     private void performNextTask() {
         performNextTaskCalled = true;
 
-        if (isPerformingTask) {
-            return;
+        String previousTaskId = null;
+        while (!isPerformingTask && downloadConcurrencyController.canStartDownload()) {
+            final MapBoxOfflineQueueTask mapBoxOfflineQueueTask = realmDatabase.getNextTask(getTaskRealm());
+
+            if (mapBoxOfflineQueueTask == null) {
+                if (downloadConcurrencyController.getActiveDownloadCount() == 0) {
+                    cleanupAndExit();
+                }
+                return;
+            }
+
+            if (MapBoxOfflineQueueTask.TASK_TYPE_DELETE.equals(mapBoxOfflineQueueTask.getTaskType())
+                    && downloadConcurrencyController.getActiveDownloadCount() > 0) {
+                // The delete is performed once the running downloads are done
+                return;
+            }
+
+            if (mapBoxOfflineQueueTask.getId().equals(previousTaskId)) {
+                // The task failed & is still pending, it is retried on the next service start
+                return;
+            }
+
+            previousTaskId = mapBoxOfflineQueueTask.getId();
+            performTask(mapBoxOfflineQueueTask);
         }
 
-        final MapBoxOfflineQueueTask mapBoxOfflineQueueTask = realmDatabase.getNextTask();
+        if (downloadConcurrencyController.isTileCountLimitExceeded()
+                && downloadConcurrencyController.getActiveDownloadCount() == 0) {
+            // No other download can be performed and we should exit the service
+            cleanupAndExit();
+        }
+    }
+
+    private void performTask(@NonNull final MapBoxOfflineQueueTask mapBoxOfflineQueueTask) {
+        final String mapName = getMapName(mapBoxOfflineQueueTask);
+
+        if (MapBoxOfflineQueueTask.TASK_TYPE_WMTS_DOWNLOAD.equals(mapBoxOfflineQueueTask.getTaskType())) {
+            performWmtsDownloadTask(mapBoxOfflineQueueTask, mapName);
+            return;
+        }
 
-        if (mapBoxOfflineQueueTask != null) {
+        if (MapBoxOfflineQueueTask.TASK_TYPE_DELETE.equals(mapBoxOfflineQueueTask.getTaskType())) {
             placeQueueOnHold();
-            currentMapBoxTask = mapBoxOfflineQueueTask;
-            if (MapBoxOfflineQueueTask.TASK_TYPE_DELETE.equals(mapBoxOfflineQueueTask.getTaskType())) {
-                currentServiceAction = SERVICE_ACTION.DELETE_MAP;
-            } else {
-                currentServiceAction = SERVICE_ACTION.DOWNLOAD_MAP;
+            currentServiceAction = SERVICE_ACTION.DELETE_MAP;
+        } else {
+            regionDownloadTasks.put(mapName, mapBoxOfflineQueueTask);
+            downloadConcurrencyController.onDownloadStarted(mapName);
+            currentServiceAction = SERVICE_ACTION.DOWNLOAD_MAP;
 
-                if (mapBoxOfflineQueueTask.getTaskStatus() == MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED) {
-                    realmDatabase.persistDownloadStartedStatus(mapBoxOfflineQueueTask);
-                }
+            if (mapBoxOfflineQueueTask.getTaskStatus() == MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED) {
+                realmDatabase.persistDownloadStartedStatus(mapBoxOfflineQueueTask);
             }
+        }
 
-            getTaskStatus(mapBoxOfflineQueueTask, mapBoxAccessToken, new OfflineRegionStatusCallback() {
-                @Override
-                public void onStatus(OfflineRegionStatus status, OfflineRegion offlineRegion) {
+        final RegionDownloadListener regionDownloadListener = new RegionDownloadListener(mapBoxOfflineQueueTask, mapName);
 
-                    if (MapBoxOfflineQueueTask.TASK_TYPE_DELETE.equals(mapBoxOfflineQueueTask.getTaskType())) {
-                        currentServiceAction = SERVICE_ACTION.DELETE_MAP;
-                        MapBoxOfflineResourcesDownloader.getInstance(MapboxOfflineDownloaderService.this, mapBoxAccessToken)
-                                .deleteMap(currentMapDownloadName, new OfflineRegion.OfflineRegionDeleteCallback() {
-                                    @Override
-                                    public void onDelete() {
-                                        sendBroadcast(SERVICE_ACTION_RESULT.SUCCESSFUL, currentMapDownloadName, SERVICE_ACTION.DELETE_MAP, "Map deleted successfully!");
-                                        releaseQueueToPerformOtherJobs();
-                                        realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
-                                        performNextTask();
-                                    }
-
-                                    @Override
-                                    public void onError(String error) {
-                                        MapboxOfflineDownloaderService.this.onError(error, null);
-                                        // An error means this cannot be solved even at a later time THUS persist the task as DONE
-                                        releaseQueueToPerformOtherJobs();
-                                        realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
-                                        performNextTask();
-                                    }
-                                });
-                        return;
-                    }
+        getTaskStatus(mapBoxOfflineQueueTask, mapBoxAccessToken, new OfflineRegionStatusCallback() {
+            @Override
+            public void onStatus(OfflineRegionStatus status, OfflineRegion offlineRegion) {
 
-                    if (status.getDownloadState() == OfflineRegion.STATE_ACTIVE) {
-                        // TASK IS RUNNING
+                if (MapBoxOfflineQueueTask.TASK_TYPE_DELETE.equals(mapBoxOfflineQueueTask.getTaskType())) {
+                    currentServiceAction = SERVICE_ACTION.DELETE_MAP;
+                    MapBoxOfflineResourcesDownloader.getInstance(MapboxOfflineDownloaderService.this, mapBoxAccessToken)
+                            .deleteMap(mapName, new OfflineRegion.OfflineRegionDeleteCallback() {
+                                @Override
+                                public void onDelete() {
+                                    sendBroadcast(SERVICE_ACTION_RESULT.SUCCESSFUL, mapName, SERVICE_ACTION.DELETE_MAP, "Map deleted successfully!");
+                                    releaseQueueToPerformOtherJobs();
+                                    realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
+                                    performNextTask();
+                                }
+
+                                @Override
+                                public void onError(String error) {
+                                    onRegionError(mapName, SERVICE_ACTION.DELETE_MAP, formatErrorMessage(error, null));
+                                    // An error means this cannot be solved even at a later time THUS persist the task as DONE
+                                    releaseQueueToPerformOtherJobs();
+                                    realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
+                                    performNextTask();
+                                }
+                            });
+                    return;
+                }
+
+                if (status.getDownloadState() == OfflineRegion.STATE_ACTIVE) {
+                    // TASK IS RUNNING
+                    currentServiceAction = SERVICE_ACTION.DOWNLOAD_MAP;
+                    startDownloadProgressUpdater();
+                    observeOfflineRegion(offlineRegion, regionDownloadListener);
+                } else {
+                    if (!status.isComplete()) {
+                        // TASK IS NOT RUNNING
                         currentServiceAction = SERVICE_ACTION.DOWNLOAD_MAP;
-                        currentMapBoxTask = mapBoxOfflineQueueTask;
-                        currentMapDownloadId = offlineRegion.getID();
+                        // Set the progress notification
                         startDownloadProgressUpdater();
-                        observeOfflineRegion(offlineRegion);
+                        queueDownloadProgressUpdate(mapName, 0.0);
+                        showProgressNotification(mapName, 0.0);
+                        MapBoxOfflineResourcesDownloader.getInstance(MapboxOfflineDownloaderService.this, mapBoxAccessToken)
+                                .resumeMapDownload(offlineRegion, regionDownloadListener);
                     } else {
-                        if (!status.isComplete()) {
-                            // TASK IS NOT RUNNING
-                            currentServiceAction = SERVICE_ACTION.DOWNLOAD_MAP;
-                            currentMapBoxTask = mapBoxOfflineQueueTask;
-                            currentMapDownloadId = offlineRegion.getID();
-                            // Set the progress notification
+                        // IGNORE IT AND SEND A BROADCAST HERE
+                        realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
+                        onRegionError(mapName, SERVICE_ACTION.DOWNLOAD_MAP, formatErrorMessage(getString(R.string.error_similar_map_exists_and_downloaded), null));
+                        finishDownload(mapName, true);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                SERVICE_ACTION serviceAction = MapBoxOfflineQueueTask.TASK_TYPE_DELETE.equals(mapBoxOfflineQueueTask.getTaskType())
+                        ? SERVICE_ACTION.DELETE_MAP : SERVICE_ACTION.DOWNLOAD_MAP;
+
+                if (error.contains("Map could not be found")) {
+                    if (MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD.equals(mapBoxOfflineQueueTask.getTaskType())) {
+
+                        try {
                             startDownloadProgressUpdater();
-                            queueDownloadProgressUpdate(currentMapDownloadName, 0.0);
-                            showProgressNotification(currentMapDownloadName, 0.0);
                             MapBoxOfflineResourcesDownloader.getInstance(MapboxOfflineDownloaderService.this, mapBoxAccessToken)
-                                    .resumeMapDownload(offlineRegion, MapboxOfflineDownloaderService.this);
-                        } else {
-                            // IGNORE IT AND SEND A BROADCAST HERE
-                            realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
-                            MapboxOfflineDownloaderService.this.onError(getString(R.string.error_similar_map_exists_and_downloaded), null);
-                            releaseQueueToPerformOtherJobs();
+                                    .downloadMap(new MapBoxDownloadTask(mapBoxOfflineQueueTask.getTask()), regionDownloadListener);
+
+                            //Set the progress notification
+                            queueDownloadProgressUpdate(mapName, 0.0);
+                            showProgressNotification(mapName, 0.0);
+                        } catch (MalformedDataException | JSONException | OfflineMapDownloadException e) {
+                            Log.e(TAG, Log.getStackTraceString(e));
+                            finishDownload(mapName, false);
                         }
+                    } else {
+                        // An error means this cannot be solved even at a later time THUS persist the task as DONE
+                        String message;
+                        String taskType = mapBoxOfflineQueueTask.getTaskType();
+                        if (MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD.equals(taskType)) {
+                            message = getString(R.string.map_could_not_be_downloaded);
+                        } else if (MapBoxOfflineQueueTask.TASK_TYPE_DELETE.equals(taskType)) {
+                            message = getString(R.string.map_could_not_be_deleted);
+                        } else  {
+                            message = getString(R.string.map_download_could_not_be_stopped);
+                        }
+
+                        onRegionError(mapName, serviceAction, formatErrorMessage(error, message));
+                        finishDownload(mapName, false);
+                        realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
+                        performNextTask();
                     }
+                } else {
+                    onRegionError(mapName, serviceAction, formatErrorMessage(error, null));
+                    finishDownload(mapName, false);
                 }
+            }
+        });
+    }
 
-                @Override
-                public void onError(String error) {
-                    if (error.contains("Map could not be found")) {
-                        if (MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD.equals(mapBoxOfflineQueueTask.getTaskType())) {
-
-                            try {
-                                startDownloadProgressUpdater();
-                                MapBoxOfflineResourcesDownloader.getInstance(MapboxOfflineDownloaderService.this, mapBoxAccessToken)
-                                        .downloadMap(new MapBoxDownloadTask(mapBoxOfflineQueueTask.getTask()), MapboxOfflineDownloaderService.this);
-
-                                //Set the progress notification
-                                queueDownloadProgressUpdate(currentMapDownloadName, 0.0);
-                                showProgressNotification(currentMapDownloadName, 0.0);
-                            } catch (MalformedDataException | JSONException | OfflineMapDownloadException e) {
-                                Log.e(TAG, Log.getStackTraceString(e));
-                                releaseQueueToPerformOtherJobs();
-                            }
-                        } else {
-                            // An error means this cannot be solved even at a later time THUS persist the task as DONE
-                            String message;
-                            String taskType = mapBoxOfflineQueueTask.getTaskType();
-                            if (MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD.equals(taskType)) {
-                                message = getString(R.string.map_could_not_be_downloaded);
-                            } else if (MapBoxOfflineQueueTask.TASK_TYPE_DELETE.equals(taskType)) {
-                                message = getString(R.string.map_could_not_be_deleted);
-                            } else  {
-                                message = getString(R.string.map_download_could_not_be_stopped);
-                            }
+    private void performWmtsDownloadTask(@NonNull final MapBoxOfflineQueueTask mapBoxOfflineQueueTask, @NonNull final String mapName) {
+        final WmtsDownloadTask wmtsDownloadTask;
+        try {
+            wmtsDownloadTask = new WmtsDownloadTask(mapBoxOfflineQueueTask.getTask());
+        } catch (MalformedDataException | JSONException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            // An error means this cannot be solved even at a later time THUS persist the task as DONE
+            realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
+            onRegionError(mapName, SERVICE_ACTION.DOWNLOAD_MAP, formatErrorMessage(getString(R.string.map_could_not_be_downloaded), e.getMessage()));
+            return;
+        }
+
+        downloadConcurrencyController.onDownloadStarted(mapName);
+        currentServiceAction = SERVICE_ACTION.DOWNLOAD_MAP;
+        if (mapBoxOfflineQueueTask.getTaskStatus() == MapBoxOfflineQueueTask.TASK_STATUS_NOT_STARTED) {
+            realmDatabase.persistDownloadStartedStatus(mapBoxOfflineQueueTask);
+        }
 
-                            MapboxOfflineDownloaderService.this.onError(error, message);
-                            releaseQueueToPerformOtherJobs();
-                            realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
-                            performNextTask();
+        final WmtsTilePrefetcher wmtsTilePrefetcher = new WmtsTilePrefetcher(wmtsDownloadTask.getTileUrlTemplate(), getWmtsTileDownloadExecutor());
+        wmtsTilePrefetchers.put(mapName, wmtsTilePrefetcher);
+
+        // Set the progress notification
+        startDownloadProgressUpdater();
+        queueDownloadProgressUpdate(mapName, 0.0);
+        showProgressNotification(mapName, 0.0);
+
+        final WmtsTilePrefetcher.Listener listener = new WmtsTilePrefetcher.Listener() {
+            @Override
+            public void onProgress(final long completedTileCount, final long requiredTileCount) {
+                serviceHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (wmtsTilePrefetchers.get(mapName) == wmtsTilePrefetcher) {
+                            onWmtsDownloadProgress(mapName, completedTileCount, requiredTileCount);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onComplete(long requiredTileCount) {
+                serviceHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (wmtsTilePrefetchers.get(mapName) == wmtsTilePrefetcher) {
+                            wmtsTilePrefetchers.remove(mapName);
+                            onWmtsDownloadComplete(mapBoxOfflineQueueTask, mapName, new File(wmtsDownloadTask.getStorePath()));
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onError(@NonNull final String error) {
+                serviceHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (wmtsTilePrefetchers.get(mapName) == wmtsTilePrefetcher) {
+                            wmtsTilePrefetchers.remove(mapName);
+                            onWmtsDownloadError(mapBoxOfflineQueueTask, mapName, error, wmtsTilePrefetcher.isRetryable());
                         }
-                    } else {
-                        MapboxOfflineDownloaderService.this.onError(error, null);
-                        releaseQueueToPerformOtherJobs();
+                    }
+                });
+            }
+        };
+
+        // The prefetch blocks until all the tiles are downloaded, it gets its own thread so that it does not hold
+        // a thread of the TaskScheduler for the whole download
+        getWmtsPrefetchExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                MBTilesStore store = null;
+                try {
+                    store = new MBTilesStore(new File(wmtsDownloadTask.getStorePath()));
+                    writeWmtsStoreMetadata(store, wmtsDownloadTask);
+                    wmtsTilePrefetcher.prefetch(store, wmtsDownloadTask.getTileRanges(), listener);
+                } catch (RuntimeException e) {
+                    // The store cannot be opened or written
+                    Log.e(TAG, Log.getStackTraceString(e));
+                    listener.onError(e.getMessage() != null ? e.getMessage() : e.toString());
+                } finally {
+                    if (store != null) {
+                        store.close();
                     }
                 }
-            });
+            }
+        });
+    }
+
+    @NonNull
+    private ExecutorService getWmtsPrefetchExecutor() {
+        if (wmtsPrefetchExecutor == null) {
+            wmtsPrefetchExecutor = Executors.newCachedThreadPool();
+        }
+
+        return wmtsPrefetchExecutor;
+    }
+
+    @NonNull
+    private ExecutorService getWmtsTileDownloadExecutor() {
+        if (wmtsTileDownloadExecutor == null) {
+            wmtsTileDownloadExecutor = Executors.newFixedThreadPool(WmtsTilePrefetcher.DEFAULT_PARALLELISM);
+        }
+
+        return wmtsTileDownloadExecutor;
+    }
+
+    private void writeWmtsStoreMetadata(@NonNull MBTilesStore store, @NonNull WmtsDownloadTask wmtsDownloadTask) {
+        LatLng topLeftBound = wmtsDownloadTask.getTopLeftBound();
+        LatLng bottomRightBound = wmtsDownloadTask.getBottomRightBound();
+
+        store.setMetadata(MBTilesStore.METADATA_NAME, wmtsDownloadTask.getMapName());
+        store.setMetadata(MBTilesStore.METADATA_BOUNDS, topLeftBound.getLongitude() + "," + bottomRightBound.getLatitude()
+                + "," + bottomRightBound.getLongitude() + "," + topLeftBound.getLatitude());
+        store.setMetadata(MBTilesStore.METADATA_MIN_ZOOM, String.valueOf(wmtsDownloadTask.getMinZoom()));
+        store.setMetadata(MBTilesStore.METADATA_MAX_ZOOM, String.valueOf(wmtsDownloadTask.getMaxZoom()));
+    }
+
+    private void onWmtsDownloadProgress(@NonNull String mapName, long completedTileCount, long requiredTileCount) {
+        double percentageDownload = requiredTileCount > 0 ? 100.0 * completedTileCount / requiredTileCount : 100.0;
+        sendBroadcast(SERVICE_ACTION_RESULT.SUCCESSFUL, mapName, SERVICE_ACTION.DOWNLOAD_MAP, String.valueOf(percentageDownload));
+
+        downloadConcurrencyController.onDownloadProgress(mapName, completedTileCount, requiredTileCount);
+        queueDownloadProgressUpdate(mapName, percentageDownload);
+    }
+
+    private void onWmtsDownloadError(@NonNull MapBoxOfflineQueueTask mapBoxOfflineQueueTask, @NonNull String mapName
+            , @NonNull String error, boolean isRetryable) {
+        Integer previousAttempts = wmtsDownloadAttempts.get(mapName);
+        int attempts = previousAttempts == null ? 1 : previousAttempts + 1;
+
+        if (isRetryable && attempts < MAX_WMTS_DOWNLOAD_ATTEMPTS) {
+            // The task stays started & is queued again when the service starts or the device reconnects
+            wmtsDownloadAttempts.put(mapName, attempts);
         } else {
-            cleanupAndExit();
+            // Retrying will not help THUS persist the task as DONE. The tiles already downloaded are kept
+            wmtsDownloadAttempts.remove(mapName);
+            realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
+        }
+
+        onRegionError(mapName, SERVICE_ACTION.DOWNLOAD_MAP, formatErrorMessage(error, getString(R.string.map_could_not_be_downloaded)));
+        finishDownload(mapName, false);
+        if (downloadConcurrencyController.getActiveDownloadCount() == 0) {
+            stopDownloadProgressUpdater();
+        }
+
+        performNextTask();
+    }
+
+    private void onWmtsDownloadComplete(@NonNull MapBoxOfflineQueueTask mapBoxOfflineQueueTask, @NonNull String mapName, @NonNull File storeFile) {
+        sendBroadcast(SERVICE_ACTION_RESULT.SUCCESSFUL, mapName, SERVICE_ACTION.DOWNLOAD_MAP, String.valueOf(100.0));
+
+        wmtsDownloadAttempts.remove(mapName);
+        finishDownload(mapName, true);
+        if (downloadConcurrencyController.getActiveDownloadCount() == 0) {
+            stopDownloadProgressUpdater();
         }
+        showDownloadCompleteNotification(String.format(getString(R.string.notification_download_complete_title), mapName), String.format(getString(R.string.notification_download_complete_content), getFriendlyFileSize(storeFile.length())));
+
+        realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
+        performNextTask();
     }
 
     private void cleanupAndExit() {
@@ -538,7 +862,10 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
         }
 
         downloadProgressNotification.updateNotification(percentageProgress, mapName, REQUEST_ID_STOP_MAP_DOWNLOAD, showAction);
+        displayProgressNotification();
+    }
 
+    private void displayProgressNotification() {
         if (!shownForegroundNotification) {
             downloadProgressNotification.displayForegroundNotification(PROGRESS_NOTIFICATION_ID);
             shownForegroundNotification = true;
@@ -551,6 +878,28 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
         showProgressNotification(mapName, percentageProgress, true);
     }
 
+    /**
+     * Shows the progress of the map being downloaded or the aggregated progress of all the maps
+     * when several maps are being downloaded
+     */
+    private void showDownloadProgress() {
+        if (downloadConcurrencyController.getActiveDownloadCount() > 1) {
+            if (downloadProgressNotification == null) {
+                downloadProgressNotification = new DownloadProgressNotification(this);
+                downloadProgressNotification.createInitialNotification(mostRecentMapNameUpdate, BuildConfig.MAPBOX_SDK_ACCESS_TOKEN, REQUEST_ID_STOP_MAP_DOWNLOAD, false);
+            }
+
+            downloadProgressNotification.updateNotification(downloadConcurrencyController.getDownloadProgress()
+                    , downloadConcurrencyController.getAggregateDownloadProgress());
+            displayProgressNotification();
+        } else if (downloadConcurrencyController.getActiveDownloadCount() == 1) {
+            String mapName = downloadConcurrencyController.getDownloadProgress().keySet().iterator().next();
+            showProgressNotification(mapName, downloadConcurrencyController.getDownloadPercentage(mapName));
+        } else {
+            showProgressNotification(mostRecentMapNameUpdate, mostRecentPercentageUpdate);
+        }
+    }
+
     /**
      * Shows a customisable & removable notification with a default download icon. The notification
      * provides information for the download such as the Map Name & Map Size.
@@ -580,73 +929,153 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
      * @param offlineRegion The {@link OfflineRegion} to observe
      */
     private void observeOfflineRegion(@NonNull final OfflineRegion offlineRegion) {
+        observeOfflineRegion(offlineRegion, this);
+    }
+
+    /**
+     * Provides periodic updates about an ongoing {@link OfflineRegion} download to the given observer
+     *
+     * @param offlineRegion The {@link OfflineRegion} to observe
+     * @param offlineRegionObserver
+     * @see #observeOfflineRegion(OfflineRegion)
+     */
+    private void observeOfflineRegion(@NonNull final OfflineRegion offlineRegion, @NonNull final OfflineRegionObserver offlineRegionObserver) {
         //Do not remove the line below!!!
         offlineRegion.setDownloadState(OfflineRegion.STATE_ACTIVE);
         observeOfflineRegionCalled = true;
         offlineRegion.setObserver(new OfflineRegion.OfflineRegionObserver() {
             @Override
             public void onStatusChanged(OfflineRegionStatus status) {
-                MapboxOfflineDownloaderService.this.onStatusChanged(status, offlineRegion);
+                offlineRegionObserver.onStatusChanged(status, offlineRegion);
             }
 
             @Override
             public void onError(OfflineRegionError error) {
-                MapboxOfflineDownloaderService.this.onError(error.getReason(), error.getMessage());
+                offlineRegionObserver.onError(error.getReason(), error.getMessage());
             }
 
             @Override
             public void mapboxTileCountLimitExceeded(long limit) {
-                MapboxOfflineDownloaderService.this.mapboxTileCountLimitExceeded(limit);
+                offlineRegionObserver.mapboxTileCountLimitExceeded(limit);
             }
         });
     }
 
     @Override
     public void onStatusChanged(@NonNull OfflineRegionStatus status, @NonNull OfflineRegion offlineRegion) {
+        onRegionStatusChanged(currentMapDownloadName, regionDownloadTasks.get(currentMapDownloadName), currentServiceAction, status);
+    }
+
+    private void onRegionStatusChanged(@NonNull String mapName, MapBoxOfflineQueueTask mapBoxOfflineQueueTask
+            , SERVICE_ACTION serviceAction, @NonNull OfflineRegionStatus status) {
         double percentageDownload = (status.getRequiredResourceCount() >= 0) ? 100.0 * status.getCompletedResourceCount() / status.getRequiredResourceCount() : 0.0;
-        sendBroadcast(SERVICE_ACTION_RESULT.SUCCESSFUL, currentMapDownloadName, currentServiceAction, String.valueOf(percentageDownload));
+        sendBroadcast(SERVICE_ACTION_RESULT.SUCCESSFUL, mapName, serviceAction, String.valueOf(percentageDownload));
 
         if (status.isComplete()) {
-            stopDownloadProgressUpdater();
-            showDownloadCompleteNotification(String.format(getString(R.string.notification_download_complete_title), currentMapDownloadName), String.format(getString(R.string.notification_download_complete_content), getFriendlyFileSize(status.getCompletedResourceSize())));
+            finishDownload(mapName, true);
+            if (downloadConcurrencyController.getActiveDownloadCount() == 0) {
+                stopDownloadProgressUpdater();
+            }
+            showDownloadCompleteNotification(String.format(getString(R.string.notification_download_complete_title), mapName), String.format(getString(R.string.notification_download_complete_content), getFriendlyFileSize(status.getCompletedResourceSize())));
 
-            realmDatabase.persistCompletedStatus(currentMapBoxTask);
-            releaseQueueToPerformOtherJobs();
+            realmDatabase.persistCompletedStatus(mapBoxOfflineQueueTask);
             performNextTask();
         } else {
-            queueDownloadProgressUpdate(currentMapDownloadName, percentageDownload);
+            downloadConcurrencyController.onDownloadProgress(mapName, status.getCompletedResourceCount(), status.getRequiredResourceCount());
+            queueDownloadProgressUpdate(mapName, percentageDownload);
         }
     }
 
     @Override
     public void onError(String error) {
-        Log.e(TAG, error);
-        sendBroadcast(SERVICE_ACTION_RESULT.FAILED, currentMapDownloadName, currentServiceAction, error);
+        onRegionError(currentMapDownloadName, currentServiceAction, error);
     }
 
     @Override
     public void onError(@NonNull String reason, @Nullable String message) {
+        onError(formatErrorMessage(reason, message));
+    }
+
+    private void onRegionError(@NonNull String mapName, SERVICE_ACTION serviceAction, String error) {
+        Log.e(TAG, error);
+        sendBroadcast(SERVICE_ACTION_RESULT.FAILED, mapName, serviceAction, error);
+    }
+
+    private String formatErrorMessage(@NonNull String reason, @Nullable String message) {
         String finalMessage = String.format(getString(R.string.error_broadcast_message_format_part_reason), reason);
         if (message != null && !message.isEmpty()) {
             finalMessage += String.format(getString(R.string.error_broadcast_message_format_part_message), message);
         }
-        onError(finalMessage);
+        return finalMessage;
     }
 
     @Override
     public void mapboxTileCountLimitExceeded(long limit) {
-        String finalMessage = String.format(getString(R.string.error_mapbox_tile_count_limit), limit, currentMapDownloadName);
+        onRegionTileCountLimitExceeded(currentMapDownloadName, limit);
+    }
+
+    private void onRegionTileCountLimitExceeded(@NonNull String mapName, long limit) {
+        String finalMessage = String.format(getString(R.string.error_mapbox_tile_count_limit), limit, mapName);
         Log.e(TAG, finalMessage);
-        sendBroadcast(SERVICE_ACTION_RESULT.FAILED, currentMapDownloadName, SERVICE_ACTION.DOWNLOAD_MAP, finalMessage);
+        sendBroadcast(SERVICE_ACTION_RESULT.FAILED, mapName, SERVICE_ACTION.DOWNLOAD_MAP, finalMessage);
 
         // Show download error notification
         LAST_DOWNLOAD_ERROR_NOTIFICATION_ID++;
         CriticalDownloadErrorNotification criticalDownloadErrorNotification = new CriticalDownloadErrorNotification(this);
-        criticalDownloadErrorNotification.displayNotification(String.format(getString(R.string.error_occurred_download_map), currentMapDownloadName)
+        criticalDownloadErrorNotification.displayNotification(String.format(getString(R.string.error_occurred_download_map), mapName)
                 , String.format(getString(R.string.mapbox_tile_count_limit_of_exceeded), limit), LAST_DOWNLOAD_ERROR_NOTIFICATION_ID);
 
-        // No other download can be performed and we should exit the service
-        cleanupAndExit();
+        // No other download can be started. The service exits once the running downloads are done
+        downloadConcurrencyController.onTileCountLimitExceeded();
+        finishDownload(mapName, false);
+        if (downloadConcurrencyController.getActiveDownloadCount() == 0) {
+            cleanupAndExit();
+        }
+    }
+
+    /**
+     * Marks a map download as done so that the next download can be started
+     *
+     * @param mapName
+     * @param successful {@code TRUE} if the map was downloaded
+     */
+    private void finishDownload(@NonNull String mapName, boolean successful) {
+        regionDownloadTasks.remove(mapName);
+        downloadConcurrencyController.onDownloadFinished(mapName, successful);
+        releaseQueueToPerformOtherJobs();
+    }
+
+    @NonNull
+    private String getMapName(@NonNull MapBoxOfflineQueueTask mapBoxOfflineQueueTask) {
+        try {
+            if (MapBoxOfflineQueueTask.TASK_TYPE_DELETE.equals(mapBoxOfflineQueueTask.getTaskType())) {
+                return new MapBoxDeleteTask(mapBoxOfflineQueueTask.getTask()).getMapName();
+            } else if (MapBoxOfflineQueueTask.TASK_TYPE_WMTS_DOWNLOAD.equals(mapBoxOfflineQueueTask.getTaskType())) {
+                return new WmtsDownloadTask(mapBoxOfflineQueueTask.getTask()).getMapName();
+            } else {
+                return new MapBoxDownloadTask(mapBoxOfflineQueueTask.getTask()).getMapName();
+            }
+        } catch (MalformedDataException | JSONException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            return mapBoxOfflineQueueTask.getId();
+        }
+    }
+
+    @NonNull
+    private Realm getTaskRealm() {
+        if (taskRealm == null || taskRealm.isClosed()) {
+            taskRealm = Realm.getDefaultInstance();
+        }
+
+        return taskRealm;
+    }
+
+    private void onConnectivityChanged(boolean isConnected) {
+        downloadConcurrencyController.onConnectivityChanged(isConnected);
+        if (isConnected && realmDatabase != null) {
+            requeueInterruptedWmtsDownloads();
+            performNextTask();
+        }
     }
 
     private String getFriendlyFileSize(long bytes) {
@@ -676,7 +1105,7 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
                                     serviceHandler.post(new Runnable() {
                                         @Override
                                         public void run() {
-                                            showProgressNotification(mostRecentMapNameUpdate, mostRecentPercentageUpdate);
+                                            showDownloadProgress();
                                         }
                                     });
                                 }
@@ -715,10 +1144,73 @@ public class MapboxOfflineDownloaderService extends Service implements OfflineRe
         super.onDestroy();
         stopDownloadProgressUpdater();
 
+        for (Map.Entry<String, WmtsTilePrefetcher> wmtsTilePrefetcher : wmtsTilePrefetchers.entrySet()) {
+            wmtsTilePrefetcher.getValue().cancel();
+        }
+        wmtsTilePrefetchers.clear();
+
+        if (wmtsPrefetchExecutor != null) {
+            wmtsPrefetchExecutor.shutdownNow();
+            wmtsPrefetchExecutor = null;
+        }
+
+        if (wmtsTileDownloadExecutor != null) {
+            wmtsTileDownloadExecutor.shutdownNow();
+            wmtsTileDownloadExecutor = null;
+        }
+
+        if (taskRealm != null) {
+            if (!taskRealm.isClosed()) {
+                taskRealm.close();
+            }
+            taskRealm = null;
+        }
+
+        if (connectivityReceiver != null) {
+            connectivityReceiver.removeListener(connectivityListener);
+            connectivityReceiver = null;
+        }
+
         if (MapBoxOfflineResourcesDownloader.getInstance(this, BuildConfig.MAPBOX_SDK_ACCESS_TOKEN)
                 .getConnectivityReceiverActivationCounter() > 0) {
             ConnectivityReceiver.instance(this)
                     .deactivate();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Receives the download updates of a single map so that concurrent downloads are told apart
+     */
+    private class RegionDownloadListener implements OnDownloadMapListener, OfflineRegionObserver {
+
+        private final MapBoxOfflineQueueTask mapBoxOfflineQueueTask;
+        private final String mapName;
+
+        private RegionDownloadListener(@NonNull MapBoxOfflineQueueTask mapBoxOfflineQueueTask, @NonNull String mapName) {
+            this.mapBoxOfflineQueueTask = mapBoxOfflineQueueTask;
+            this.mapName = mapName;
+        }
+
+        @Override
+        public void onStatusChanged(OfflineRegionStatus status, OfflineRegion offlineRegion) {
+            onRegionStatusChanged(mapName, mapBoxOfflineQueueTask, SERVICE_ACTION.DOWNLOAD_MAP, status);
+        }
+
+        @Override
+        public void onError(String error) {
+            onRegionError(mapName, SERVICE_ACTION.DOWNLOAD_MAP, error);
+            // The region download is retried, fewer downloads are started meanwhile
+            downloadConcurrencyController.onDownloadError(mapName);
+        }
+
+        @Override
+        public void onError(String reason, String message) {
+            onError(formatErrorMessage(reason, message));
+        }
+
+        @Override
+        public void mapboxTileCountLimitExceeded(long limit) {
+            onRegionTileCountLimitExceeded(mapName, limit);
+        }
+    }
+}
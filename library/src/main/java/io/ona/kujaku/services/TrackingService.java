@@ -24,6 +24,7 @@ import android.os.IBinder;
 import android.os.Looper;
 import android.os.PowerManager;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
 import android.util.Log;
@@ -34,10 +35,13 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import io.ona.kujaku.R;
+import io.ona.kujaku.helpers.storage.TrackBuffer;
 import io.ona.kujaku.helpers.storage.TrackingStorage;
 import io.ona.kujaku.listeners.TrackingServiceListener;
 import io.ona.kujaku.services.options.TrackingServiceOptions;
 import io.ona.kujaku.services.options.TrackingServiceSaveBatteryOptions;
+import io.ona.kujaku.services.simplifiers.DouglasPeuckerTrackSimplifier;
+import io.ona.kujaku.services.simplifiers.TrackSimplifier;
 
 
 /**
@@ -72,7 +76,17 @@ public class TrackingService extends Service {
     private volatile Location lastBestLocation;
 
     // Store the recorded locations
-    private List<Location> recordedLocations;
+    private TrackBuffer recordedTrack;
+
+    // Reused to compute distances to recorded locations without creating Locations
+    private final float[] distanceResults = new float[1];
+
+    // Store the final locations of the simplified track, null while the simplification was never enabled
+    // since the simplified track is then the recorded one
+    private TrackBuffer simplifiedTrack;
+
+    // Simplification stage applied to the recorded locations, null to disable it
+    private TrackSimplifier trackSimplifier;
 
     private volatile Location firstLocationReceived = null ;
 
@@ -115,7 +129,7 @@ public class TrackingService extends Service {
         locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
         storage = new TrackingStorage();
 
-        recordedLocations = new ArrayList<>();
+        recordedTrack = new TrackBuffer();
     }
 
     /**
@@ -128,6 +142,9 @@ public class TrackingService extends Service {
         pendingRecordingLocation = null;
         firstLocationReceived = null ;
 
+        // Simplification
+        setTrackSimplifier(createTrackSimplifier(trackingServiceOptions));
+
         // Storage
         storage.initLocationStorage();
     }
@@ -487,12 +504,13 @@ public class TrackingService extends Service {
             Log.d(TAG, "Record pending location.");
 
             // We store the location in our list
-            recordedLocations.add(pendingRecordingLocation);
+            recordedTrack.add(pendingRecordingLocation);
+            simplifyLocation(pendingRecordingLocation);
 
             informNewTrackReceivedListener(pendingRecordingLocation);
             informCloseToDepartureLocationListener(pendingRecordingLocation);
 
-            storage.writeLocation(pendingRecordingLocation, recordedLocations.size());
+            storage.writeLocation(pendingRecordingLocation, recordedTrack.size());
         } else {
             Log.d(TAG, "Service is not recording.");
         }
@@ -501,6 +519,50 @@ public class TrackingService extends Service {
         pendingRecordingLocation = null;
     }
 
+    /**
+     * Create the simplification stage defined by the options
+     *
+     * @param options
+     * @return The {@link TrackSimplifier} or {@code null} if the simplification is disabled
+     */
+    @Nullable
+    private TrackSimplifier createTrackSimplifier(@NonNull TrackingServiceOptions options) {
+        if (options.getSimplificationTolerance() <= 0) {
+            return null;
+        }
+
+        return new DouglasPeuckerTrackSimplifier(options.getSimplificationTolerance(),
+                Math.max(2, options.getSimplificationWindowSize()));
+    }
+
+    /**
+     * Add a recorded location to the simplified track
+     *
+     * @param location
+     */
+    private synchronized void simplifyLocation(@NonNull Location location) {
+        if (trackSimplifier != null) {
+            addSimplifiedLocations(trackSimplifier.add(location));
+        } else if (simplifiedTrack != null) {
+            simplifiedTrack.add(location);
+        }
+    }
+
+    private void addSimplifiedLocations(@NonNull List<Location> locations) {
+        for (Location location : locations) {
+            simplifiedTrack.add(location);
+        }
+    }
+
+    /**
+     * Add the locations held back by the simplification stage to the simplified track
+     */
+    private synchronized void flushTrackSimplifier() {
+        if (trackSimplifier != null) {
+            addSimplifiedLocations(trackSimplifier.flush());
+        }
+    }
+
     /**
      * Volatile because different methods are called from the main thread and serviceThread
      */
@@ -622,6 +684,13 @@ public class TrackingService extends Service {
                 recordPendingLocation();
             }
 
+            flushTrackSimplifier();
+            Log.d(TAG, "Track simplified from " + getNumberOfLocationsRecorded() + " to "
+                    + getSimplifiedLocationCount() + " locations, compression ratio: " + getCompressionRatio());
+
+            // Flush the locations not synced yet to the track log
+            storage.closeLocationStorage();
+
             // Mark to notify thread is exiting
             serviceThreadRunningLatch.countDown();
         }
@@ -771,9 +840,15 @@ public class TrackingService extends Service {
                 return;
             }
 
-            Location departure = this.getFirstLocationRecorded();
+            TrackBuffer.View track = this.recordedTrack.getView();
+            if (track.isEmpty()) {
+                return;
+            }
 
-            if (departure != null && departure.distanceTo(location) <= trackingServiceOptions.getDistanceFromDeparture()) {
+            Location.distanceBetween(track.getLatitude(0), track.getLongitude(0),
+                    location.getLatitude(), location.getLongitude(), distanceResults);
+
+            if (distanceResults[0] <= trackingServiceOptions.getDistanceFromDeparture()) {
                 uiHandler.post(new Runnable() {
                     @Override
                     public void run() {
@@ -785,40 +860,108 @@ public class TrackingService extends Service {
     }
 
     /**
-     * Get First Location recorded
+     * Get number of locations recorded
+     *
      * @return
      */
-    private Location getFirstLocationRecorded() {
-        if (this.recordedLocations != null && this.recordedLocations.size() > 0) {
-            return this.recordedLocations.get(0);
+    private int getNumberOfLocationsRecorded() {
+        if (this.recordedTrack != null) {
+            return this.recordedTrack.size();
         }
 
-        return null;
+        return 0;
     }
 
+
+    /**** Public methods that can be used after bind ***/
+
     /**
-     * Get number of locations recorded
+     * Return all locations recorded. A {@link Location} is created for each of them,
+     * prefer {@link #getRecordedTrack()} for long tracks
      *
      * @return
      */
-    private int getNumberOfLocationsRecorded() {
-        if (this.recordedLocations != null) {
-            return this.recordedLocations.size();
+    public List<Location> getRecordedLocations() {
+        if (this.recordedTrack == null) {
+            return null;
         }
 
-        return 0;
+        return this.recordedTrack.getView().toLocations();
     }
 
+    /**
+     * Return a read only view of the locations recorded so far. The locations are not copied
+     *
+     * @return
+     */
+    public TrackBuffer.View getRecordedTrack() {
+        if (this.recordedTrack == null) {
+            return null;
+        }
 
-    /**** Public methods that can be used after bind ***/
+        return this.recordedTrack.getView();
+    }
 
     /**
-     * Return all locations recorded
+     * Return the simplified track of the recorded locations. The last location can still be
+     * replaced by the next ones
      *
      * @return
      */
-    public List<Location> getRecordedLocations() {
-        return this.recordedLocations;
+    public synchronized List<Location> getSimplifiedLocations() {
+        TrackBuffer track = simplifiedTrack != null ? simplifiedTrack : recordedTrack;
+        List<Location> locations = track != null ? track.getView().toLocations() : new ArrayList<Location>();
+
+        Location lastPendingLocation = trackSimplifier != null ? trackSimplifier.getLastPendingLocation() : null;
+        if (lastPendingLocation != null) {
+            locations.add(lastPendingLocation);
+        }
+
+        return locations;
+    }
+
+    /**
+     * Return the number of recorded locations for each location of the simplified track
+     *
+     * @return 1 if the simplification is disabled or no location is recorded
+     */
+    public synchronized float getCompressionRatio() {
+        int simplifiedLocationCount = getSimplifiedLocationCount();
+        if (simplifiedLocationCount == 0) {
+            return 1;
+        }
+
+        return (float) getNumberOfLocationsRecorded() / simplifiedLocationCount;
+    }
+
+    /**
+     * Replace the simplification stage applied to the next recorded locations. The locations
+     * held back by the previous one are added to the simplified track first
+     *
+     * @param trackSimplifier {@link TrackSimplifier} to use or {@code null} to disable the simplification
+     */
+    public synchronized void setTrackSimplifier(@Nullable TrackSimplifier trackSimplifier) {
+        flushTrackSimplifier();
+        if (trackSimplifier != null && simplifiedTrack == null) {
+            // The locations recorded so far were not simplified
+            simplifiedTrack = new TrackBuffer();
+            if (recordedTrack != null) {
+                TrackBuffer.View track = recordedTrack.getView();
+                for (int i = 0; i < track.size(); i++) {
+                    simplifiedTrack.add(track.getLocation(i));
+                }
+            }
+        }
+
+        this.trackSimplifier = trackSimplifier;
+    }
+
+    private synchronized int getSimplifiedLocationCount() {
+        TrackBuffer track = simplifiedTrack != null ? simplifiedTrack : recordedTrack;
+        int simplifiedLocationCount = track != null ? track.size() : 0;
+
+        return trackSimplifier != null && trackSimplifier.getLastPendingLocation() != null
+                ? simplifiedLocationCount + 1 : simplifiedLocationCount;
     }
 
     /**
@@ -962,4 +1105,24 @@ public class TrackingService extends Service {
         TrackingStorage storage = new TrackingStorage();
         return storage.getPreviousRecordedLocations();
     }
+
+    /**
+     * Return a read only view of the Recorded Locations stored
+     *
+     * @return
+     */
+    public static TrackBuffer.View getCurrentRecordedTrack() {
+        TrackingStorage storage = new TrackingStorage();
+        return storage.getCurrentRecordedTrack().getView();
+    }
+
+    /**
+     * Return a read only view of the Previous Recorded Locations stored
+     *
+     * @return
+     */
+    public static TrackBuffer.View getPreviousRecordedTrack() {
+        TrackingStorage storage = new TrackingStorage();
+        return storage.getPreviousRecordedTrack().getView();
+    }
 }
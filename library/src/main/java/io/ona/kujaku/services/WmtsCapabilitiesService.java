@@ -1,8 +1,10 @@
 package io.ona.kujaku.services;
 
-import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
+import java.io.File;
 import java.io.InputStreamReader;
 
 import java.net.HttpURLConnection;
@@ -10,31 +12,56 @@ import java.net.URL;
 
 import io.ona.kujaku.callables.AsyncTaskCallable;
 import io.ona.kujaku.exceptions.WmtsCapabilitiesException;
+import io.ona.kujaku.helpers.storage.WmtsCapabilitiesCache;
 import io.ona.kujaku.listeners.OnFinishedListener;
 import io.ona.kujaku.listeners.WmtsCapabilitiesListener;
-import io.ona.kujaku.tasks.GenericAsyncTask;
-import io.ona.kujaku.wmts.serializer.WmtsCapabilitiesSerializer;
+import io.ona.kujaku.tasks.TaskScheduler;
+import io.ona.kujaku.wmts.serializer.WmtsCapabilitiesPullParser;
 import io.ona.kujaku.wmts.model.WmtsCapabilities;
 
 /**
  * Service performs the retrieval of the WMTS Capabilities file describing all accessible layers
  *
+ * When a cache directory is given, the parsed capabilities are cached on disk. Cached capabilities are
+ * delivered straight away & revalidated in the background once they are older than the max age, with a
+ * conditional request using the ETag & Last-Modified headers of the cached response. The listener is
+ * called a second time only if the server returns new capabilities instead of confirming that the
+ * cached ones have not been modified.
+ *
  * Created by Emmanuel Otin - eo@novel-t.ch 11/28/18.
  */
 public class WmtsCapabilitiesService {
 
     public static final String TAG = WmtsCapabilitiesService.class.getName();
 
+    /**
+     * Cached capabilities are revalidated each time they are requested by default
+     */
+    public static final long DEFAULT_MAX_AGE = 0;
+
     private String url;
 
     private WmtsCapabilities capabilities;
 
     private WmtsCapabilitiesListener listener;
 
+    private WmtsCapabilitiesCache cache;
+
+    private long maxAge = DEFAULT_MAX_AGE;
+
     public WmtsCapabilitiesService(String url) {
         this.url = url;
     }
 
+    /**
+     * @param url
+     * @param cacheDirectory Directory where the capabilities are cached eg. {@code new File(context.getCacheDir(), "wmts")}
+     */
+    public WmtsCapabilitiesService(String url, @NonNull File cacheDirectory) {
+        this(url);
+        this.cache = new WmtsCapabilitiesCache(cacheDirectory);
+    }
+
     public void setListener(WmtsCapabilitiesListener listener) {
         this.listener = listener;
     }
@@ -43,39 +70,41 @@ public class WmtsCapabilitiesService {
         this.url = url;
     }
 
+    /**
+     * @param maxAge How long, in milliseconds, cached capabilities are used without being revalidated
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
     public void requestData() {
+        final String requestUrl = url;
 
-        GenericAsyncTask task = new GenericAsyncTask(new AsyncTaskCallable() {
+        TaskScheduler.getInstance().submit(new AsyncTaskCallable() {
             @Override
             public Object[] call() throws Exception {
-                if (url == null) {
+                if (requestUrl == null) {
                     throw new WmtsCapabilitiesException("The Url of the WmtsCapabilitiesService is not defined");
                 }
 
-                URL  myUrl = new URL(url);
-                HttpURLConnection connection =(HttpURLConnection) myUrl.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setReadTimeout(15000);
-                connection.setConnectTimeout(15000);
-
-                //Connect to our url
-                connection.connect();
-
-                InputStreamReader streamReader = new InputStreamReader(connection.getInputStream());
-
-                WmtsCapabilitiesSerializer serializer = new WmtsCapabilitiesSerializer();
-                capabilities = serializer.read(WmtsCapabilities.class, streamReader, false);
+                WmtsCapabilitiesCache.Entry entry = cache == null ? null : cache.get(requestUrl);
+                if (entry == null) {
+                    return new Object[]{fetch(requestUrl, null).getCapabilities(), null};
+                }
 
-                return new Object[]{capabilities};
+                return new Object[]{entry.getCapabilities(), entry.isStale(maxAge) ? entry : null};
             }
-        });
-
-        task.setOnFinishedListener(new OnFinishedListener() {
+        }, new OnFinishedListener() {
             @Override
             public void onSuccess(Object[] objects) {
+                capabilities = (WmtsCapabilities) objects[0];
                 if (listener != null) {
                     listener.onCapabilitiesReceived(capabilities);
                 }
+
+                if (objects[1] != null) {
+                    revalidate(requestUrl, (WmtsCapabilitiesCache.Entry) objects[1]);
+                }
             }
 
             @Override
@@ -86,7 +115,92 @@ public class WmtsCapabilitiesService {
                 }
             }
         });
+    }
+
+    private void revalidate(@NonNull final String requestUrl, @NonNull final WmtsCapabilitiesCache.Entry entry) {
+        TaskScheduler.getInstance().submit(new AsyncTaskCallable() {
+            @Override
+            public Object[] call() throws Exception {
+                WmtsCapabilitiesCache.Entry revalidatedEntry = fetch(requestUrl, entry);
+                return new Object[]{revalidatedEntry.getCapabilities() == entry.getCapabilities()
+                        ? null : revalidatedEntry.getCapabilities()};
+            }
+        }, new OnFinishedListener() {
+            @Override
+            public void onSuccess(Object[] objects) {
+                if (objects[0] != null && requestUrl.equals(url)) {
+                    capabilities = (WmtsCapabilities) objects[0];
+                    if (listener != null) {
+                        listener.onCapabilitiesReceived(capabilities);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // The cached capabilities have already been delivered
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+        });
+    }
+
+    /**
+     * Fetches the capabilities & caches them. When a cached entry is given, the request is conditional &
+     * the cached capabilities are kept if the server responds that they have not been modified.
+     * This performs network IO & should not be called on the main thread.
+     *
+     * @param requestUrl
+     * @param cachedEntry
+     * @return The fetched or revalidated entry
+     * @throws Exception
+     */
+    @NonNull
+    public WmtsCapabilitiesCache.Entry fetch(@NonNull String requestUrl, @Nullable WmtsCapabilitiesCache.Entry cachedEntry) throws Exception {
+        URL  myUrl = new URL(requestUrl);
+        HttpURLConnection connection =(HttpURLConnection) myUrl.openConnection();
+
+        try {
+            connection.setRequestMethod("GET");
+            connection.setReadTimeout(15000);
+            connection.setConnectTimeout(15000);
+
+            if (cachedEntry != null) {
+                if (cachedEntry.getETag() != null) {
+                    connection.setRequestProperty("If-None-Match", cachedEntry.getETag());
+                }
+
+                if (cachedEntry.getLastModified() != null) {
+                    connection.setRequestProperty("If-Modified-Since", cachedEntry.getLastModified());
+                }
+            }
+
+            //Connect to our url
+            connection.connect();
+
+            String eTag = connection.getHeaderField("ETag");
+            String lastModified = connection.getHeaderField("Last-Modified");
+            WmtsCapabilitiesCache.Entry entry;
+
+            if (cachedEntry != null && connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                entry = new WmtsCapabilitiesCache.Entry(cachedEntry.getCapabilities()
+                        , eTag == null ? cachedEntry.getETag() : eTag
+                        , lastModified == null ? cachedEntry.getLastModified() : lastModified
+                        , System.currentTimeMillis());
+            } else {
+                InputStreamReader streamReader = new InputStreamReader(connection.getInputStream());
+
+                WmtsCapabilities fetchedCapabilities = new WmtsCapabilitiesPullParser().read(streamReader);
+
+                entry = new WmtsCapabilitiesCache.Entry(fetchedCapabilities, eTag, lastModified, System.currentTimeMillis());
+            }
+
+            if (cache != null) {
+                cache.put(requestUrl, entry);
+            }
 
-        task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            return entry;
+        } finally {
+            connection.disconnect();
+        }
     }
 }
@@ -16,9 +16,13 @@ abstract public class TrackingServiceOptions implements Parcelable {
     protected long toleranceIntervalDistance;
     protected long distanceFromDeparture;
     protected long minAccuracy;
+    protected double simplificationTolerance;
+    protected int simplificationWindowSize;
 
     TrackingServiceOptions() {
         this.minTime = 0;
+        this.simplificationTolerance = 0;
+        this.simplificationWindowSize = 32;
     }
 
     /**
@@ -76,6 +80,54 @@ abstract public class TrackingServiceOptions implements Parcelable {
         return gpsMinDistance;
     }
 
+    /**
+     * Get the maximum distance in meters between a recorded location and the simplified track.
+     * 0, the default, disables the simplification
+     *
+     * @return
+     */
+    public double getSimplificationTolerance() {
+        return simplificationTolerance;
+    }
+
+    /**
+     * Set the maximum distance in meters between a recorded location and the simplified track.
+     * 0 disables the simplification
+     *
+     * @param simplificationTolerance
+     */
+    public void setSimplificationTolerance(double simplificationTolerance) {
+        if (simplificationTolerance < 0) {
+            throw new IllegalArgumentException("simplificationTolerance should be positive");
+        }
+
+        this.simplificationTolerance = simplificationTolerance;
+    }
+
+    /**
+     * Get the maximum number of recorded locations held back by the simplification before they are
+     * added to the simplified track
+     *
+     * @return
+     */
+    public int getSimplificationWindowSize() {
+        return simplificationWindowSize;
+    }
+
+    /**
+     * Set the maximum number of recorded locations held back by the simplification before they are
+     * added to the simplified track
+     *
+     * @param simplificationWindowSize at least 2
+     */
+    public void setSimplificationWindowSize(int simplificationWindowSize) {
+        if (simplificationWindowSize < 2) {
+            throw new IllegalArgumentException("simplificationWindowSize should be at least 2");
+        }
+
+        this.simplificationWindowSize = simplificationWindowSize;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -95,6 +147,8 @@ abstract public class TrackingServiceOptions implements Parcelable {
         dest.writeLong(toleranceIntervalDistance);
         dest.writeLong(distanceFromDeparture);
         dest.writeLong(minAccuracy);
+        dest.writeDouble(simplificationTolerance);
+        dest.writeInt(simplificationWindowSize);
     }
 
     /**
@@ -109,5 +163,7 @@ abstract public class TrackingServiceOptions implements Parcelable {
         this.toleranceIntervalDistance = in.readLong();
         this.distanceFromDeparture = in.readLong();
         this.minAccuracy = in.readLong();
+        this.simplificationTolerance = in.readDouble();
+        this.simplificationWindowSize = in.readInt();
     }
 }
@@ -0,0 +1,202 @@
+package io.ona.kujaku.services.simplifiers;
+
+import android.location.Location;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming <a href="https://en.wikipedia.org/wiki/Ramer%E2%80%93Douglas%E2%80%93Peucker_algorithm">Douglas-Peucker</a>
+ * simplification over a bounded window.
+ * <p>
+ * The locations added after the last final location (the anchor) are held back as long as they are all
+ * within the tolerance of the segment from the anchor to the latest location. When a location breaks
+ * the tolerance, or when the window is full, Douglas-Peucker runs on the window and the locations it
+ * keeps become final. Each location is therefore compared at most {@code windowSize} times.
+ * <p>
+ * Distances are measured on a local equirectangular projection around the anchor which is accurate
+ * enough for the short distances between tracked locations.
+ */
+public class DouglasPeuckerTrackSimplifier implements TrackSimplifier {
+
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    private final double tolerance;
+    private final int windowSize;
+
+    private Location anchor;
+    private final List<Location> window = new ArrayList<>();
+
+    /**
+     * @param tolerance  Maximum distance in meters between a dropped location & the simplified track
+     * @param windowSize Maximum number of locations held back, at least 2
+     */
+    public DouglasPeuckerTrackSimplifier(double tolerance, int windowSize) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("tolerance should be positive");
+        }
+
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("windowSize should be at least 2");
+        }
+
+        this.tolerance = tolerance;
+        this.windowSize = windowSize;
+    }
+
+    @NonNull
+    @Override
+    public List<Location> add(@NonNull Location location) {
+        List<Location> finalLocations = new ArrayList<>();
+
+        if (anchor == null) {
+            anchor = location;
+            finalLocations.add(location);
+            return finalLocations;
+        }
+
+        window.add(location);
+
+        if (window.size() > 1 && !isWindowWithinTolerance()) {
+            // The latest location breaks the tolerance, simplify the window without it
+            window.remove(window.size() - 1);
+            simplifyWindow(finalLocations);
+            window.add(location);
+        } else if (window.size() >= windowSize) {
+            simplifyWindow(finalLocations);
+        }
+
+        return finalLocations;
+    }
+
+    @NonNull
+    @Override
+    public List<Location> flush() {
+        List<Location> finalLocations = new ArrayList<>();
+        if (!window.isEmpty()) {
+            simplifyWindow(finalLocations);
+        }
+
+        return finalLocations;
+    }
+
+    @Nullable
+    @Override
+    public Location getLastPendingLocation() {
+        return window.isEmpty() ? null : window.get(window.size() - 1);
+    }
+
+    @Override
+    public void reset() {
+        anchor = null;
+        window.clear();
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    private boolean isWindowWithinTolerance() {
+        double[][] points = project();
+        int last = points.length - 1;
+        for (int i = 1; i < last; i++) {
+            if (getDistanceToSegment(points[i], points[0], points[last]) > tolerance) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Run Douglas-Peucker on the anchor & the window, add the kept locations to {@code finalLocations} and
+     * make the last location of the window the new anchor
+     *
+     * @param finalLocations
+     */
+    private void simplifyWindow(@NonNull List<Location> finalLocations) {
+        double[][] points = project();
+        boolean[] isKept = new boolean[points.length];
+        isKept[points.length - 1] = true;
+
+        // Iterative to bound the stack depth with large windows
+        int[] stack = new int[points.length * 2];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = points.length - 1;
+
+        while (stackSize > 0) {
+            int end = stack[--stackSize];
+            int start = stack[--stackSize];
+
+            double maxDistance = 0;
+            int farthest = -1;
+            for (int i = start + 1; i < end; i++) {
+                double distance = getDistanceToSegment(points[i], points[start], points[end]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+
+            if (farthest != -1 && maxDistance > tolerance) {
+                isKept[farthest] = true;
+                stack[stackSize++] = start;
+                stack[stackSize++] = farthest;
+                stack[stackSize++] = farthest;
+                stack[stackSize++] = end;
+            }
+        }
+
+        // Index 0 is the anchor which is already final
+        for (int i = 1; i < points.length; i++) {
+            if (isKept[i]) {
+                finalLocations.add(window.get(i - 1));
+            }
+        }
+
+        anchor = window.get(window.size() - 1);
+        window.clear();
+    }
+
+    /**
+     * @return The anchor followed by the window locations as {x, y} in meters from the anchor
+     */
+    private double[][] project() {
+        double[][] points = new double[window.size() + 1][];
+        double cosLatitude = Math.cos(Math.toRadians(anchor.getLatitude()));
+
+        points[0] = new double[]{0, 0};
+        for (int i = 0; i < window.size(); i++) {
+            Location location = window.get(i);
+            points[i + 1] = new double[]{
+                    Math.toRadians(location.getLongitude() - anchor.getLongitude()) * cosLatitude * EARTH_RADIUS,
+                    Math.toRadians(location.getLatitude() - anchor.getLatitude()) * EARTH_RADIUS
+            };
+        }
+
+        return points;
+    }
+
+    private static double getDistanceToSegment(double[] point, double[] start, double[] end) {
+        double dx = end[0] - start[0];
+        double dy = end[1] - start[1];
+        double lengthSquared = dx * dx + dy * dy;
+
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = ((point[0] - start[0]) * dx + (point[1] - start[1]) * dy) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+
+        double x = start[0] + t * dx - point[0];
+        double y = start[1] + t * dy - point[1];
+        return Math.sqrt(x * x + y * y);
+    }
+}
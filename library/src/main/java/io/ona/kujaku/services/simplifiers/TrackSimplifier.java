@@ -0,0 +1,45 @@
+package io.ona.kujaku.services.simplifiers;
+
+import android.location.Location;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Online simplification stage of the {@link io.ona.kujaku.services.TrackingService}.
+ * <p>
+ * The recorded locations are added one by one. A simplifier can hold back a bounded number of them
+ * until it knows whether they are needed to keep the shape of the track.
+ */
+public interface TrackSimplifier {
+
+    /**
+     * Add the next recorded location of the track
+     *
+     * @param location
+     * @return The locations which are now final in the simplified track, in track order. Can be empty
+     */
+    @NonNull
+    List<Location> add(@NonNull Location location);
+
+    /**
+     * End the track
+     *
+     * @return The locations held back which are kept in the simplified track, in track order
+     */
+    @NonNull
+    List<Location> flush();
+
+    /**
+     * @return The last location added which is not final yet, {@code NULL} if there is none.
+     * It ends the simplified track for now
+     */
+    @Nullable
+    Location getLastPendingLocation();
+
+    /**
+     * Forget the current track
+     */
+    void reset();
+}
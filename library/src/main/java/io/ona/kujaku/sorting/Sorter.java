@@ -1,147 +1,394 @@
 package io.ona.kujaku.sorting;
 
 import android.support.annotation.NonNull;
+import android.util.Log;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.threeten.bp.DateTimeUtils;
 import org.threeten.bp.LocalDateTime;
-import org.threeten.bp.ZoneId;
+import org.threeten.bp.ZoneOffset;
 import org.threeten.bp.format.DateTimeFormatter;
+import org.threeten.bp.format.DateTimeParseException;
 
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import io.ona.kujaku.adapters.InfoWindowObject;
+import io.ona.kujaku.tasks.TaskScheduler;
+import io.ona.kujaku.utils.config.KujakuConfig;
 import io.ona.kujaku.utils.config.SortFieldConfig;
+import io.ona.kujaku.utils.helpers.MapBoxStyleHelper;
 
 /**
+ * Sorts {@link InfoWindowObject}s on the feature properties defined by {@link SortFieldConfig}s.
+ * <p>
+ * The sort keys are extracted once per object into primitive columns before sorting: dates are parsed
+ * to epoch milliseconds, numbers to doubles and strings are replaced by their rank among the distinct
+ * values. The comparisons therefore never touch the JSON or parse a value. Objects missing a key are
+ * sorted after the others, whatever the sort order. The sort is stable.
+ * <p>
+ * Inputs of at least {@link #PARALLEL_THRESHOLD} objects have their keys extracted and are sorted in
+ * parallel chunks, on the {@link TaskScheduler#getComputationExecutor()}, which are then merged.
+ * <p>
+ * The {@link SortOrder} of each sort field is given separately from its {@link SortFieldConfig} & can
+ * be read from the {@code order} key of the style sort fields with {@link #extractSortOrders(MapBoxStyleHelper)}.
+ * A missing or unknown order is read as {@link SortOrder#ASC} so that existing styles keep working.
+ * <p>
  * Created by Ephraim Kigamba - ekigamba@ona.io on 29/11/2017.
  */
 
 public class Sorter {
 
     private static final String TAG = Sorter.class.getSimpleName();
+
+    public static final int PARALLEL_THRESHOLD = 10000;
+    public static final String KEY_ORDER = "order";
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    public enum SortOrder {
+        ASC,
+        DESC
+    }
+
     private ArrayList<InfoWindowObject> infoWindowObjects = new ArrayList<>();
-    private InfoWindowObject[] infoWindowObjectsHelper;
 
     public Sorter(@NonNull ArrayList<InfoWindowObject> infoWindowObjects) {
         this.infoWindowObjects = infoWindowObjects;
-        infoWindowObjectsHelper = new InfoWindowObject[infoWindowObjects.size()];
     }
 
+    /**
+     * Sort the objects in place in ascending order, first on the first sort field then on the following
+     * ones for objects with equal keys
+     *
+     * @param sortFields
+     * @return The sorted objects
+     */
+    public ArrayList<InfoWindowObject> sort(@NonNull SortFieldConfig... sortFields) {
+        return sort(sortFields, new SortOrder[0]);
+    }
+
+    /**
+     * Sort the objects in place, first on the first sort field then on the following ones for objects
+     * with equal keys
+     *
+     * @param sortFields
+     * @param sortOrders order of each sort field, the fields without an order are sorted in ascending order
+     * @return The sorted objects
+     */
+    public ArrayList<InfoWindowObject> sort(@NonNull SortFieldConfig[] sortFields, @NonNull SortOrder[] sortOrders) {
+        sort(0, infoWindowObjects.size(), sortFields, sortOrders);
+        return infoWindowObjects;
+    }
+
+    /**
+     * Read the {@link SortOrder}s from the {@code order} key of the kujaku config sort fields, in the order
+     * of {@link SortFieldConfig#extractSortFieldConfigs(MapBoxStyleHelper)}
+     *
+     * @param styleHelper
+     * @return the sort orders, {@link SortOrder#ASC} for the sort fields without a valid order
+     */
+    @NonNull
+    public static SortOrder[] extractSortOrders(@NonNull MapBoxStyleHelper styleHelper) {
+        JSONObject metadata = styleHelper.getStyleObject().optJSONObject(MapBoxStyleHelper.KEY_METADATA);
+        JSONObject kujakuConfig = metadata != null ? metadata.optJSONObject(MapBoxStyleHelper.KEY_KUJAKU) : null;
+        JSONArray sortFields = kujakuConfig != null ? kujakuConfig.optJSONArray(KujakuConfig.KEY_SORT_FIELDS) : null;
+        if (sortFields == null) {
+            return new SortOrder[0];
+        }
+
+        SortOrder[] sortOrders = new SortOrder[sortFields.length()];
+        for (int i = 0; i < sortOrders.length; i++) {
+            JSONObject sortField = sortFields.optJSONObject(i);
+            String sortOrder = sortField != null ? sortField.optString(KEY_ORDER) : "";
+            sortOrders[i] = SortOrder.DESC.toString().equalsIgnoreCase(sortOrder) ? SortOrder.DESC : SortOrder.ASC;
+        }
+
+        return sortOrders;
+    }
 
+    /**
+     * @deprecated Use {@link #sort(SortFieldConfig...)} which supports several sort fields. The
+     * {@link JSONException} is kept for source compatibility & is no longer thrown
+     */
+    @Deprecated
     public ArrayList<InfoWindowObject> mergeSort(int low, int high, String fieldName, SortFieldConfig.FieldType fieldType) throws JSONException {
-        // check if low is smaller than high, if not then the array is sorted
         if (low < high) {
-            // Get the index of the element which is in the middle
-            int middle = low + (high - low) / 2;
-            // Sort the left side of the array
-            mergeSort(low, middle, fieldName, fieldType);
-            // Sort the right side of the array
-            mergeSort(middle + 1, high, fieldName, fieldType);
-            // Combine them both
-            merge(low, middle, high, fieldName, fieldType);
+            sort(low, high + 1, new SortFieldConfig[]{new SortFieldConfig(fieldType, fieldName)}, new SortOrder[0]);
         }
 
-        return  infoWindowObjects;
+        return infoWindowObjects;
     }
 
-    private void merge(int low, int middle, int high, String fieldName, SortFieldConfig.FieldType fieldType) throws JSONException {
+    private void sort(int fromIndex, int toIndex, @NonNull SortFieldConfig[] sortFields, @NonNull SortOrder[] sortOrders) {
+        final int size = toIndex - fromIndex;
+        if (size < 2 || sortFields.length == 0) {
+            return;
+        }
+
+        final List<InfoWindowObject> objects = new ArrayList<>(infoWindowObjects.subList(fromIndex, toIndex));
+        int parallelism = size >= PARALLEL_THRESHOLD ? Math.min(Runtime.getRuntime().availableProcessors(), 4) : 1;
 
-        // Copy both parts into the helper array
-        for (int i = low; i <= high; i++) {
-            infoWindowObjectsHelper[i] = infoWindowObjects.get(i);
+        final SortKeys sortKeys = new SortKeys(sortFields, sortOrders, size);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
         }
 
-        int i = low;
-        int j = middle + 1;
-        int k = low;
-        // Copy the smallest values from either the left or the right side back
-        // to the original array
-        while (i <= middle && j <= high) {
-            if (compare(infoWindowObjectsHelper[i], infoWindowObjectsHelper[j], fieldName, fieldType) < 1) {
-                infoWindowObjects.set(k, infoWindowObjectsHelper[i]);
-                i++;
-            } else {
-                infoWindowObjects.set(k, infoWindowObjectsHelper[j]);
-                j++;
-            }
+        if (parallelism > 1) {
+            order = sortInParallel(objects, sortKeys, order, parallelism);
+        } else {
+            sortKeys.extract(objects, 0, size);
+            sortKeys.rankStrings();
+            mergeSort(order, order.clone(), 0, size, sortKeys);
+        }
+
+        for (int i = 0; i < size; i++) {
+            infoWindowObjects.set(fromIndex + i, objects.get(order[i]));
+        }
+    }
 
-            k++;
+    private int[] sortInParallel(@NonNull final List<InfoWindowObject> objects, @NonNull final SortKeys sortKeys
+            , @NonNull final int[] order, int parallelism) {
+        final int size = order.length;
+        final int chunkSize = (size + parallelism - 1) / parallelism;
+        final int[] aux = order.clone();
+
+        ExecutorService executorService = TaskScheduler.getComputationExecutor();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int start = 0; start < size; start += chunkSize) {
+            final int chunkStart = start;
+            final int chunkEnd = Math.min(start + chunkSize, size);
+            futures.add(executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    sortKeys.extract(objects, chunkStart, chunkEnd);
+                }
+            }));
         }
-        // Copy the rest of the left side of the array into the target array
-        while (i <= middle) {
-            infoWindowObjects.set(k, infoWindowObjectsHelper[i]);
-            k++;
-            i++;
+        waitFor(futures);
+
+        // Ranking the strings needs all the keys
+        sortKeys.rankStrings();
+
+        futures.clear();
+        for (int start = 0; start < size; start += chunkSize) {
+            final int chunkStart = start;
+            final int chunkEnd = Math.min(start + chunkSize, size);
+            futures.add(executorService.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    mergeSort(order, aux, chunkStart, chunkEnd, sortKeys);
+                    return null;
+                }
+            }));
         }
+        waitFor(futures);
+
+        // Merge the sorted chunks pairwise
+        int[] source = order;
+        int[] destination = aux;
+        for (int width = chunkSize; width < size; width *= 2) {
+            for (int low = 0; low < size; low += 2 * width) {
+                int middle = Math.min(low + width, size);
+                int high = Math.min(low + 2 * width, size);
+                merge(source, destination, low, middle, high, sortKeys);
+            }
 
-        // Since we are sorting in-place any leftover elements from the right side
-        // are already at the right position.
+            int[] temp = source;
+            source = destination;
+            destination = temp;
+        }
 
+        return source;
     }
 
-    private int compare(@NonNull InfoWindowObject object1, @NonNull InfoWindowObject object2, @NonNull String fieldName, @NonNull SortFieldConfig.FieldType fieldType) throws JSONException {
-        JSONObject jsonObject1 = object1.getJsonObject();
-        JSONObject jsonObject2 = object2.getJsonObject();
+    private void waitFor(@NonNull List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Stable merge sort of {@code order[low, high)} using {@code aux} as the buffer
+     */
+    private static void mergeSort(@NonNull int[] order, @NonNull int[] aux, int low, int high, @NonNull SortKeys sortKeys) {
+        if (high - low <= INSERTION_SORT_THRESHOLD) {
+            for (int i = low + 1; i < high; i++) {
+                int current = order[i];
+                int j = i - 1;
+                while (j >= low && sortKeys.compare(order[j], current) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = current;
+            }
+
+            return;
+        }
+
+        int middle = (low + high) >>> 1;
+        mergeSort(order, aux, low, middle, sortKeys);
+        mergeSort(order, aux, middle, high, sortKeys);
 
-        if (jsonObject1.has("properties") && jsonObject2.has("properties")) {
+        if (sortKeys.compare(order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
 
-            JSONObject object1Properties = jsonObject1.getJSONObject("properties");
-            JSONObject object2Properties = jsonObject2.getJSONObject("properties");
+        System.arraycopy(order, low, aux, low, high - low);
+        merge(aux, order, low, middle, high, sortKeys);
+    }
 
-            if (object1Properties.has(fieldName) && object2Properties.has(fieldName)) {
-                if (fieldType == SortFieldConfig.FieldType.DATE) {
-                    Date date1 = getDateFromISO8601(object1Properties.getString(fieldName));
-                    Date date2 = getDateFromISO8601(object2Properties.getString(fieldName));
+    /**
+     * Merge the sorted ranges {@code source[low, middle)} and {@code source[middle, high)} into
+     * {@code destination[low, high)}
+     */
+    private static void merge(@NonNull int[] source, @NonNull int[] destination, int low, int middle, int high, @NonNull SortKeys sortKeys) {
+        int i = low;
+        int j = middle;
+        for (int k = low; k < high; k++) {
+            if (j >= high || (i < middle && sortKeys.compare(source[i], source[j]) <= 0)) {
+                destination[k] = source[i++];
+            } else {
+                destination[k] = source[j++];
+            }
+        }
+    }
 
-                    return compare(date1, date2);
-                } else if (fieldType == SortFieldConfig.FieldType.NUMBER) {
-                    double number1 = object1Properties.getDouble(fieldName);
-                    double number2 = object2Properties.getDouble(fieldName);
+    /**
+     * Primitive sort key columns, one per sort field. A missing key is {@link Double#NaN}
+     */
+    private static class SortKeys {
+
+        private final SortFieldConfig[] sortFields;
+        private final double[][] keys;
+        private final String[][] stringKeys;
+        private final int[] directions;
+
+        private SortKeys(@NonNull SortFieldConfig[] sortFields, @NonNull SortOrder[] sortOrders, int size) {
+            this.sortFields = sortFields;
+            keys = new double[sortFields.length][size];
+            stringKeys = new String[sortFields.length][];
+            directions = new int[sortFields.length];
+
+            for (int field = 0; field < sortFields.length; field++) {
+                if (sortFields[field].getType() == SortFieldConfig.FieldType.STRING) {
+                    stringKeys[field] = new String[size];
+                }
 
-                    return compare(number1, number2);
-                } else if (fieldType == SortFieldConfig.FieldType.STRING) {
-                    String s1 = object1Properties.getString(fieldName);
-                    String s2 = object2Properties.getString(fieldName);
+                directions[field] = field < sortOrders.length && sortOrders[field] == SortOrder.DESC ? -1 : 1;
+            }
+        }
 
-                    return compare(s1, s2);
+        private void extract(@NonNull List<InfoWindowObject> objects, int fromIndex, int toIndex) {
+            for (int i = fromIndex; i < toIndex; i++) {
+                JSONObject jsonObject = objects.get(i).getJsonObject();
+                JSONObject properties = jsonObject != null ? jsonObject.optJSONObject("properties") : null;
+
+                for (int field = 0; field < sortFields.length; field++) {
+                    Object value = properties != null ? properties.opt(sortFields[field].getDataField()) : null;
+                    if (value == JSONObject.NULL) {
+                        value = null;
+                    }
+
+                    SortFieldConfig.FieldType fieldType = sortFields[field].getType();
+                    if (fieldType == SortFieldConfig.FieldType.STRING) {
+                        stringKeys[field][i] = value != null ? value.toString() : null;
+                    } else if (fieldType == SortFieldConfig.FieldType.DATE) {
+                        keys[field][i] = value != null ? getDateKey(value.toString()) : Double.NaN;
+                    } else {
+                        keys[field][i] = getNumberKey(value);
+                    }
                 }
             }
         }
 
-        return 0;
-    }
+        /**
+         * Replace the string keys by their rank among the distinct string values
+         */
+        private void rankStrings() {
+            for (int field = 0; field < sortFields.length; field++) {
+                String[] values = stringKeys[field];
+                if (values == null) {
+                    continue;
+                }
 
-    private int compare(@NonNull Object object1, @NonNull Object object2) {
-        if (object1 instanceof Date) {
-            Date date1 = (Date) object1;
-            Date date2 = (Date) object2;
+                Map<String, Integer> ranks = new HashMap<>();
+                for (String value : values) {
+                    if (value != null) {
+                        ranks.put(value, 0);
+                    }
+                }
 
-            return date1.compareTo(date2);
-        }
+                String[] distinctValues = ranks.keySet().toArray(new String[0]);
+                Arrays.sort(distinctValues);
+                for (int rank = 0; rank < distinctValues.length; rank++) {
+                    ranks.put(distinctValues[rank], rank);
+                }
+
+                for (int i = 0; i < values.length; i++) {
+                    keys[field][i] = values[i] != null ? ranks.get(values[i]) : Double.NaN;
+                }
 
-        // Test this
-        if (object1 instanceof Double) {
-            Double d1 = new Double((double) object1);
-            Double d2 = new Double((double) object2);
-            return d1.compareTo(d2);
+                stringKeys[field] = null;
+            }
         }
 
-        // Also test this
-        if (object1 instanceof  String) {
-            String s1 = (String) object1;
-            String s2 = (String) object2;
+        private int compare(int index1, int index2) {
+            for (int field = 0; field < keys.length; field++) {
+                double key1 = keys[field][index1];
+                double key2 = keys[field][index2];
+
+                if (key1 < key2) {
+                    return -directions[field];
+                } else if (key1 > key2) {
+                    return directions[field];
+                } else if (key1 != key2) {
+                    // At least one of the keys is missing
+                    boolean isKey1Missing = Double.isNaN(key1);
+                    boolean isKey2Missing = Double.isNaN(key2);
+                    if (isKey1Missing != isKey2Missing) {
+                        return isKey1Missing ? 1 : -1;
+                    }
+                }
+            }
 
-            return s1.compareTo(s2);
+            return 0;
         }
 
-        return 0;
-    }
+        private static double getDateKey(@NonNull String dateString) {
+            try {
+                LocalDateTime localDateTime = LocalDateTime.parse(dateString, DateTimeFormatter.ISO_DATE_TIME);
+                return localDateTime.toEpochSecond(ZoneOffset.UTC) * 1000d + localDateTime.getNano() / 1000000;
+            } catch (DateTimeParseException e) {
+                return Double.NaN;
+            }
+        }
 
-    private Date getDateFromISO8601(@NonNull String dateString) {
-        LocalDateTime localDateTime = LocalDateTime.parse(dateString, DateTimeFormatter.ISO_DATE_TIME);
-        return DateTimeUtils.toDate(localDateTime.atZone(ZoneId.systemDefault()).toInstant());
+        private static double getNumberKey(Object value) {
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            } else if (value instanceof String) {
+                try {
+                    return Double.parseDouble(((String) value).trim());
+                } catch (NumberFormatException e) {
+                    return Double.NaN;
+                }
+            }
+
+            return Double.NaN;
+        }
     }
 }
@@ -0,0 +1,113 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Options of a {@link PointClusterIndex}
+ */
+public class ClusterOptions {
+
+    public static final int DEFAULT_MIN_ZOOM = 0;
+    public static final int DEFAULT_MAX_ZOOM = 16;
+    public static final float DEFAULT_RADIUS = 40f;
+    public static final int DEFAULT_EXTENT = 512;
+    public static final int DEFAULT_MIN_POINTS = 2;
+
+    private int minZoom = DEFAULT_MIN_ZOOM;
+    private int maxZoom = DEFAULT_MAX_ZOOM;
+    private float radius = DEFAULT_RADIUS;
+    private int extent = DEFAULT_EXTENT;
+    private int minPoints = DEFAULT_MIN_POINTS;
+
+    private ClusterPropertyAggregator propertyAggregator;
+
+    /**
+     * @return The lowest zoom at which points are clustered
+     */
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    public ClusterOptions withMinZoom(int minZoom) {
+        if (minZoom < 0) {
+            throw new IllegalArgumentException("minZoom should not be negative");
+        }
+
+        this.minZoom = minZoom;
+        return this;
+    }
+
+    /**
+     * @return The highest zoom at which points are clustered. All the points are shown individually above it
+     */
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    public ClusterOptions withMaxZoom(int maxZoom) {
+        if (maxZoom < 0 || maxZoom > 24) {
+            throw new IllegalArgumentException("maxZoom should be between 0 & 24");
+        }
+
+        this.maxZoom = maxZoom;
+        return this;
+    }
+
+    /**
+     * @return The cluster radius in pixels of a tile of {@link #getExtent()} pixels
+     */
+    public float getRadius() {
+        return radius;
+    }
+
+    public ClusterOptions withRadius(float radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("radius should be positive");
+        }
+
+        this.radius = radius;
+        return this;
+    }
+
+    /**
+     * @return The size of a tile in pixels, the radius is relative to it
+     */
+    public int getExtent() {
+        return extent;
+    }
+
+    public ClusterOptions withExtent(int extent) {
+        if (extent <= 0) {
+            throw new IllegalArgumentException("extent should be positive");
+        }
+
+        this.extent = extent;
+        return this;
+    }
+
+    /**
+     * @return The minimum number of points forming a cluster
+     */
+    public int getMinPoints() {
+        return minPoints;
+    }
+
+    public ClusterOptions withMinPoints(int minPoints) {
+        if (minPoints < 2) {
+            throw new IllegalArgumentException("minPoints should be at least 2");
+        }
+
+        this.minPoints = minPoints;
+        return this;
+    }
+
+    @Nullable
+    public ClusterPropertyAggregator getPropertyAggregator() {
+        return propertyAggregator;
+    }
+
+    public ClusterOptions withPropertyAggregator(@Nullable ClusterPropertyAggregator propertyAggregator) {
+        this.propertyAggregator = propertyAggregator;
+        return this;
+    }
+}
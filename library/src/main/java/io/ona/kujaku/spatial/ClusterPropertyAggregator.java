@@ -0,0 +1,32 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.JsonObject;
+import com.mapbox.geojson.Feature;
+
+/**
+ * Aggregates the properties of the points of a cluster into properties of the cluster feature, eg. the
+ * number of points per status, so that clusters can be styled or labelled by what they contain.
+ * <p>
+ * The cluster properties start empty. The points & clusters merged into a cluster are then added one at
+ * a time, in any order.
+ */
+public interface ClusterPropertyAggregator {
+
+    /**
+     * Add a point to the aggregated properties of a cluster
+     *
+     * @param clusterProperties
+     * @param point
+     */
+    void addPoint(@NonNull JsonObject clusterProperties, @NonNull Feature point);
+
+    /**
+     * Add the aggregated properties of a cluster merged into another cluster
+     *
+     * @param clusterProperties
+     * @param childClusterProperties
+     */
+    void addCluster(@NonNull JsonObject clusterProperties, @NonNull JsonObject childClusterProperties);
+}
@@ -0,0 +1,63 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mapbox.geojson.Feature;
+
+import java.util.Map;
+
+/**
+ * Counts the points of a cluster by the value of one of their properties. A cluster of points with a
+ * {@code task-status} property gets eg. {@code task-status:visited = 12} & {@code task-status:not-visited = 3}
+ * properties. Points without the property are not counted.
+ */
+public class CountByPropertyAggregator implements ClusterPropertyAggregator {
+
+    public static final String SEPARATOR = ":";
+
+    private final String propertyName;
+    private final String keyPrefix;
+
+    public CountByPropertyAggregator(@NonNull String propertyName) {
+        this.propertyName = propertyName;
+        this.keyPrefix = propertyName + SEPARATOR;
+    }
+
+    @Override
+    public void addPoint(@NonNull JsonObject clusterProperties, @NonNull Feature point) {
+        JsonObject properties = point.properties();
+        if (properties == null) {
+            return;
+        }
+
+        JsonElement value = properties.get(propertyName);
+        if (value != null && value.isJsonPrimitive()) {
+            increment(clusterProperties, getCountPropertyName(value.getAsString()), 1);
+        }
+    }
+
+    @Override
+    public void addCluster(@NonNull JsonObject clusterProperties, @NonNull JsonObject childClusterProperties) {
+        for (Map.Entry<String, JsonElement> entry : childClusterProperties.entrySet()) {
+            if (entry.getKey().startsWith(keyPrefix)) {
+                increment(clusterProperties, entry.getKey(), entry.getValue().getAsInt());
+            }
+        }
+    }
+
+    /**
+     * @param value
+     * @return The name of the cluster property holding the number of points with the value
+     */
+    @NonNull
+    public String getCountPropertyName(@NonNull String value) {
+        return keyPrefix + value;
+    }
+
+    private void increment(@NonNull JsonObject clusterProperties, @NonNull String key, int count) {
+        JsonElement current = clusterProperties.get(key);
+        clusterProperties.addProperty(key, (current != null ? current.getAsInt() : 0) + count);
+    }
+}
@@ -0,0 +1,202 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+import com.mapbox.turf.TurfMeasurement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spatial index of {@link Feature}s keyed by their id, backed by an {@link RTree} of the feature bounding boxes.
+ * <p>
+ * Adding a feature with an id that is already indexed replaces the previous feature. Features without
+ * an id or a geometry are not indexed.
+ */
+public class FeatureSpatialIndex {
+
+    private static final double METERS_PER_DEGREE = 6371008.8 * Math.PI / 180;
+
+    private final RTree<Feature> tree = new RTree<>();
+    private final Map<String, IndexedFeature> indexedFeatures = new HashMap<>();
+
+    /**
+     * Add or replace a feature in the index
+     *
+     * @param feature
+     * @return {@code TRUE} if the feature was indexed, {@code FALSE} if it has no id or geometry
+     */
+    public boolean add(@NonNull Feature feature) {
+        String featureId = feature.id();
+        double[] bbox = getBoundingBox(feature.geometry());
+        if (featureId == null || bbox == null) {
+            return false;
+        }
+
+        remove(featureId);
+
+        tree.insert(feature, bbox[0], bbox[1], bbox[2], bbox[3]);
+        indexedFeatures.put(featureId, new IndexedFeature(feature, bbox));
+        return true;
+    }
+
+    /**
+     * Add or replace several features. When the index is empty, the features are bulk loaded which is
+     * much faster than adding them one by one
+     *
+     * @param features
+     */
+    public void addAll(@NonNull List<Feature> features) {
+        if (indexedFeatures.size() > 0) {
+            for (Feature feature : features) {
+                add(feature);
+            }
+            return;
+        }
+
+        List<Feature> items = new ArrayList<>(features.size());
+        List<double[]> bboxes = new ArrayList<>(features.size());
+        for (Feature feature : features) {
+            String featureId = feature.id();
+            double[] bbox = getBoundingBox(feature.geometry());
+            if (featureId != null && bbox != null) {
+                IndexedFeature previous = indexedFeatures.put(featureId, new IndexedFeature(feature, bbox));
+                if (previous != null) {
+                    // Duplicate id in the same batch, the last feature wins
+                    int index = items.indexOf(previous.feature);
+                    items.remove(index);
+                    bboxes.remove(index);
+                }
+
+                items.add(feature);
+                bboxes.add(bbox);
+            }
+        }
+
+        tree.load(items, bboxes);
+    }
+
+    /**
+     * Remove a feature from the index
+     *
+     * @param featureId
+     * @return {@code TRUE} if the feature was indexed, {@code FALSE} otherwise
+     */
+    public boolean remove(@NonNull String featureId) {
+        IndexedFeature indexedFeature = indexedFeatures.remove(featureId);
+        if (indexedFeature == null) {
+            return false;
+        }
+
+        double[] bbox = indexedFeature.bbox;
+        return tree.remove(indexedFeature.feature, bbox[0], bbox[1], bbox[2], bbox[3]);
+    }
+
+    /**
+     * Get an indexed feature by id
+     *
+     * @param featureId
+     * @return
+     */
+    @Nullable
+    public Feature get(@NonNull String featureId) {
+        IndexedFeature indexedFeature = indexedFeatures.get(featureId);
+        return indexedFeature != null ? indexedFeature.feature : null;
+    }
+
+    /**
+     * Get the features whose bounding box intersects the given bounds. Bounds crossing the antimeridian
+     * are supported.
+     *
+     * @param bounds
+     * @return
+     */
+    @NonNull
+    public List<Feature> query(@NonNull LatLngBounds bounds) {
+        List<Feature> results = new ArrayList<>();
+        double west = bounds.getLonWest();
+        double east = bounds.getLonEast();
+
+        if (west <= east) {
+            tree.search(west, bounds.getLatSouth(), east, bounds.getLatNorth(), results);
+        } else {
+            tree.search(west, bounds.getLatSouth(), 180, bounds.getLatNorth(), results);
+            tree.search(-180, bounds.getLatSouth(), east, bounds.getLatNorth(), results);
+        }
+
+        return results;
+    }
+
+    /**
+     * Get the features whose bounding box intersects the given bounding box
+     *
+     * @param results List to which the features found are added
+     */
+    public void query(double west, double south, double east, double north, @NonNull List<Feature> results) {
+        tree.search(west, south, east, north, results);
+    }
+
+    /**
+     * Get the features nearest to a coordinate, nearest first. The distance to a feature is the distance
+     * to its bounding box, approximated on an equirectangular projection centred on the coordinate
+     * which is accurate enough for the short distances of a touch radius.
+     *
+     * @param latitude
+     * @param longitude
+     * @param maxDistance Maximum distance of the features found in metres
+     * @param maxCount    Maximum number of features found
+     * @return
+     */
+    @NonNull
+    public List<Feature> nearest(double latitude, double longitude, double maxDistance, int maxCount) {
+        List<Feature> results = new ArrayList<>();
+        tree.nearest(longitude, latitude, Math.cos(Math.toRadians(latitude)), maxDistance / METERS_PER_DEGREE
+                , maxCount, results);
+
+        return results;
+    }
+
+    public int size() {
+        return indexedFeatures.size();
+    }
+
+    public void clear() {
+        tree.clear();
+        indexedFeatures.clear();
+    }
+
+    /**
+     * @param geometry
+     * @return The bounding box as {west, south, east, north} or {@code NULL} if the geometry is null
+     */
+    @Nullable
+    static double[] getBoundingBox(@Nullable Geometry geometry) {
+        if (geometry == null) {
+            return null;
+        }
+
+        if (geometry instanceof Point) {
+            Point point = (Point) geometry;
+            return new double[]{point.longitude(), point.latitude(), point.longitude(), point.latitude()};
+        }
+
+        return TurfMeasurement.bbox(geometry);
+    }
+
+    private static class IndexedFeature {
+        private final Feature feature;
+        private final double[] bbox;
+
+        private IndexedFeature(Feature feature, double[] bbox) {
+            this.feature = feature;
+            this.bbox = bbox;
+        }
+    }
+}
@@ -0,0 +1,730 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+import android.util.LruCache;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPoint;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+import com.mapbox.mapboxsdk.style.sources.GeometryTileProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Slices a collection of features into a pyramid of GeoJSON tiles on demand, so that a
+ * {@link com.mapbox.mapboxsdk.style.sources.CustomGeometrySource} only gets the features of the visible
+ * tiles, simplified for their zoom, instead of the whole collection.
+ * <p>
+ * The features are projected to Web Mercator once. A tile is cut from its closest cached ancestor, or from
+ * all the features, one zoom at a time by clipping the features of each parent to the child's bounds plus
+ * a buffer. The tiles visited on the way are kept in an LRU cache so that the neighbouring & child tiles
+ * are cut from them. The vertices of the lines & rings are ranked with Douglas-Peucker when the features
+ * are loaded & the vertices too close to their neighbours at the zoom of a tile are left out of it.
+ * <p>
+ * {@link #update(List)} compares the new features with the current ones by id & only drops the cached
+ * tiles overlapping the features which were added, changed or removed. Features without a geometry or
+ * with a {@link com.mapbox.geojson.GeometryCollection} are not tiled.
+ */
+public class GeoJsonTiler implements GeometryTileProvider {
+
+    public static final int DEFAULT_MAX_ZOOM = 14;
+    public static final int DEFAULT_MAX_CACHED_TILES = 512;
+
+    /**
+     * Simplification tolerance & tile buffer relative to the size of a tile, the geojson-vt defaults of
+     * 3 & 64 units of a 4096 units tile
+     */
+    private static final double TOLERANCE = 3d / 4096;
+    private static final double BUFFER = 64d / 4096;
+
+    /**
+     * Above this number of changed features, a single region covering all of them is invalidated
+     */
+    private static final int MAX_INVALIDATED_REGIONS = 64;
+
+    private static final int MAX_ZOOM = 24;
+
+    private static final int TYPE_POINT = 1;
+    private static final int TYPE_LINE = 2;
+    private static final int TYPE_POLYGON = 3;
+
+    private final int maxZoom;
+    private final LruCache<Long, List<TileFeature>> tiles;
+
+    private Map<String, TileFeature> features = new LinkedHashMap<>();
+
+    public GeoJsonTiler() {
+        this(DEFAULT_MAX_ZOOM, DEFAULT_MAX_CACHED_TILES);
+    }
+
+    /**
+     * @param maxZoom        Highest zoom the vertices are ranked for, the map over-zooms the tiles of this
+     *                       zoom beyond it when the source is created with this max zoom
+     * @param maxCachedTiles
+     */
+    public GeoJsonTiler(int maxZoom, int maxCachedTiles) {
+        if (maxZoom < 0 || maxZoom > MAX_ZOOM) {
+            throw new IllegalArgumentException("The max zoom should be between 0 & " + MAX_ZOOM);
+        }
+
+        this.maxZoom = maxZoom;
+        this.tiles = new LruCache<>(Math.max(1, maxCachedTiles));
+    }
+
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * Replace the features to tile. The cached tiles overlapping features which were added, changed or
+     * removed are dropped
+     *
+     * @param newFeatures
+     * @return The regions whose tiles changed, to invalidate in the source
+     */
+    @NonNull
+    public synchronized List<LatLngBounds> update(@NonNull List<Feature> newFeatures) {
+        Map<String, TileFeature> updatedFeatures = new LinkedHashMap<>();
+        List<double[]> changedBboxes = new ArrayList<>();
+
+        for (int i = 0; i < newFeatures.size(); i++) {
+            Feature feature = newFeatures.get(i);
+            String key = feature.id() != null ? feature.id() : "#" + i;
+
+            TileFeature tileFeature = features.remove(key);
+            if (tileFeature == null || !tileFeature.feature.equals(feature)) {
+                if (tileFeature != null) {
+                    changedBboxes.add(tileFeature.getBbox());
+                }
+
+                tileFeature = createTileFeature(feature);
+                if (tileFeature != null) {
+                    changedBboxes.add(tileFeature.getBbox());
+                }
+            }
+
+            if (tileFeature != null) {
+                updatedFeatures.put(key, tileFeature);
+            }
+        }
+
+        // The features left were removed
+        for (TileFeature removedFeature : features.values()) {
+            changedBboxes.add(removedFeature.getBbox());
+        }
+        features = updatedFeatures;
+
+        if (changedBboxes.size() > MAX_INVALIDATED_REGIONS) {
+            double[] union = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            for (double[] bbox : changedBboxes) {
+                extend(union, bbox[0], bbox[1]);
+                extend(union, bbox[2], bbox[3]);
+            }
+
+            changedBboxes = Collections.singletonList(union);
+        }
+
+        invalidateTiles(changedBboxes);
+
+        List<LatLngBounds> changedRegions = new ArrayList<>();
+        for (double[] bbox : changedBboxes) {
+            changedRegions.add(LatLngBounds.from(yLat(bbox[1]), xLng(bbox[2]), yLat(bbox[3]), xLng(bbox[0])));
+        }
+
+        return changedRegions;
+    }
+
+    /**
+     * @param zoom
+     * @param x
+     * @param y
+     * @return The features of the tile clipped to its bounds plus a buffer & simplified for its zoom
+     */
+    @NonNull
+    public synchronized FeatureCollection getTile(int zoom, int x, int y) {
+        if (zoom < 0 || zoom > MAX_ZOOM) {
+            throw new IllegalArgumentException("The zoom should be between 0 & " + MAX_ZOOM);
+        }
+
+        // Start from the closest cached ancestor
+        int ancestorZoom = zoom;
+        List<TileFeature> tileFeatures = null;
+        while (ancestorZoom > 0 && tileFeatures == null) {
+            tileFeatures = tiles.get(getTileKey(ancestorZoom, x >> (zoom - ancestorZoom), y >> (zoom - ancestorZoom)));
+            if (tileFeatures == null) {
+                ancestorZoom--;
+            }
+        }
+
+        if (tileFeatures == null) {
+            tileFeatures = new ArrayList<>(features.values());
+        }
+
+        for (int z = ancestorZoom + 1; z <= zoom; z++) {
+            int tileX = x >> (zoom - z);
+            int tileY = y >> (zoom - z);
+            double size = 1d / (1 << z);
+            double buffer = BUFFER * size;
+
+            tileFeatures = clip(tileFeatures, tileX * size - buffer, (tileX + 1) * size + buffer, 0);
+            tileFeatures = clip(tileFeatures, tileY * size - buffer, (tileY + 1) * size + buffer, 1);
+            tiles.put(getTileKey(z, tileX, tileY), tileFeatures);
+        }
+
+        return toFeatureCollection(tileFeatures, zoom);
+    }
+
+    @Override
+    public FeatureCollection getFeaturesForBounds(LatLngBounds bounds, int zoomLevel) {
+        LatLng center = bounds.getCenter();
+        int tileCount = 1 << zoomLevel;
+        int x = (int) Math.max(0, Math.min(tileCount - 1, Math.floor(lngX(center.getLongitude()) * tileCount)));
+        int y = (int) Math.max(0, Math.min(tileCount - 1, Math.floor(latY(center.getLatitude()) * tileCount)));
+
+        return getTile(zoomLevel, x, y);
+    }
+
+    public synchronized int getCachedTileCount() {
+        return tiles.size();
+    }
+
+    private void invalidateTiles(@NonNull List<double[]> changedBboxes) {
+        if (changedBboxes.isEmpty()) {
+            return;
+        }
+
+        for (Long key : tiles.snapshot().keySet()) {
+            int z = (int) (key >>> 50);
+            int x = (int) ((key >>> 25) & 0x1FFFFFF);
+            int y = (int) (key & 0x1FFFFFF);
+            double size = 1d / (1 << z);
+            double buffer = BUFFER * size;
+            double minX = x * size - buffer;
+            double minY = y * size - buffer;
+            double maxX = (x + 1) * size + buffer;
+            double maxY = (y + 1) * size + buffer;
+
+            for (double[] bbox : changedBboxes) {
+                if (bbox[0] <= maxX && bbox[2] >= minX && bbox[1] <= maxY && bbox[3] >= minY) {
+                    tiles.remove(key);
+                    break;
+                }
+            }
+        }
+    }
+
+    private static long getTileKey(int zoom, int x, int y) {
+        return ((long) zoom << 50) | ((long) x << 25) | y;
+    }
+
+    private TileFeature createTileFeature(@NonNull Feature feature) {
+        Geometry geometry = feature.geometry();
+        List<List<double[]>> parts = new ArrayList<>();
+        int type;
+
+        if (geometry instanceof Point) {
+            type = TYPE_POINT;
+            parts.add(Collections.singletonList(project(Collections.singletonList((Point) geometry), false)));
+        } else if (geometry instanceof MultiPoint) {
+            type = TYPE_POINT;
+            parts.add(Collections.singletonList(project(((MultiPoint) geometry).coordinates(), false)));
+        } else if (geometry instanceof LineString) {
+            type = TYPE_LINE;
+            parts.add(Collections.singletonList(project(((LineString) geometry).coordinates(), true)));
+        } else if (geometry instanceof MultiLineString) {
+            type = TYPE_LINE;
+            for (List<Point> line : ((MultiLineString) geometry).coordinates()) {
+                parts.add(Collections.singletonList(project(line, true)));
+            }
+        } else if (geometry instanceof Polygon) {
+            type = TYPE_POLYGON;
+            parts.add(projectRings(((Polygon) geometry).coordinates()));
+        } else if (geometry instanceof MultiPolygon) {
+            type = TYPE_POLYGON;
+            for (List<List<Point>> polygon : ((MultiPolygon) geometry).coordinates()) {
+                parts.add(projectRings(polygon));
+            }
+        } else {
+            return null;
+        }
+
+        return new TileFeature(feature, type, parts);
+    }
+
+    @NonNull
+    private List<double[]> projectRings(@NonNull List<List<Point>> rings) {
+        List<double[]> projectedRings = new ArrayList<>();
+        for (List<Point> ring : rings) {
+            projectedRings.add(project(ring, true));
+        }
+
+        return projectedRings;
+    }
+
+    /**
+     * @param points
+     * @param rank   Whether to rank the vertices with Douglas-Peucker
+     * @return The projected points as x, y & the square distance below which the vertex is simplified away
+     */
+    @NonNull
+    private double[] project(@NonNull List<Point> points, boolean rank) {
+        double[] coords = new double[points.size() * 3];
+        for (int i = 0; i < points.size(); i++) {
+            coords[3 * i] = lngX(points.get(i).longitude());
+            coords[3 * i + 1] = latY(points.get(i).latitude());
+        }
+
+        if (rank && points.size() > 0) {
+            coords[2] = 1;
+            coords[coords.length - 1] = 1;
+            double tolerance = TOLERANCE / (1 << maxZoom);
+            rankVertices(coords, tolerance * tolerance);
+        }
+
+        return coords;
+    }
+
+    /**
+     * Douglas-Peucker ranking of the vertices: each vertex gets the square distance to the segment it was
+     * split from, capped by the rank of the vertex that split the parent segment so that a vertex kept
+     * at a zoom always has its parents kept
+     *
+     * @param coords
+     * @param sqTolerance Vertices closer than this are never kept
+     */
+    private static void rankVertices(@NonNull double[] coords, double sqTolerance) {
+        int[] stack = new int[64];
+        double[] parentRanks = new double[32];
+        int stackSize = 0;
+
+        stack[stackSize++] = 0;
+        stack[stackSize++] = coords.length / 3 - 1;
+        parentRanks[0] = 1;
+
+        while (stackSize > 0) {
+            int last = stack[--stackSize];
+            int first = stack[--stackSize];
+            double parentRank = parentRanks[stackSize / 2];
+
+            double maxSqDistance = sqTolerance;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                double sqDistance = getSegmentSquareDistance(coords[3 * i], coords[3 * i + 1], coords[3 * first]
+                        , coords[3 * first + 1], coords[3 * last], coords[3 * last + 1]);
+                if (sqDistance > maxSqDistance) {
+                    index = i;
+                    maxSqDistance = sqDistance;
+                }
+            }
+
+            if (index == -1) {
+                continue;
+            }
+
+            double rank = Math.min(maxSqDistance, parentRank);
+            coords[3 * index + 2] = rank;
+
+            if (stackSize + 4 > stack.length) {
+                int[] newStack = new int[stack.length * 2];
+                System.arraycopy(stack, 0, newStack, 0, stack.length);
+                stack = newStack;
+
+                double[] newParentRanks = new double[parentRanks.length * 2];
+                System.arraycopy(parentRanks, 0, newParentRanks, 0, parentRanks.length);
+                parentRanks = newParentRanks;
+            }
+
+            if (index - first > 1) {
+                parentRanks[stackSize / 2] = rank;
+                stack[stackSize++] = first;
+                stack[stackSize++] = index;
+            }
+
+            if (last - index > 1) {
+                parentRanks[stackSize / 2] = rank;
+                stack[stackSize++] = index;
+                stack[stackSize++] = last;
+            }
+        }
+    }
+
+    private static double getSegmentSquareDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double x = ax;
+        double y = ay;
+        double dx = bx - x;
+        double dy = by - y;
+
+        if (dx != 0 || dy != 0) {
+            double t = ((px - x) * dx + (py - y) * dy) / (dx * dx + dy * dy);
+
+            if (t > 1) {
+                x = bx;
+                y = by;
+            } else if (t > 0) {
+                x += dx * t;
+                y += dy * t;
+            }
+        }
+
+        dx = px - x;
+        dy = py - y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Clip the features between {@code k1} & {@code k2} on an axis
+     *
+     * @param tileFeatures
+     * @param k1
+     * @param k2
+     * @param axis 0 for x, 1 for y
+     * @return
+     */
+    @NonNull
+    private static List<TileFeature> clip(@NonNull List<TileFeature> tileFeatures, double k1, double k2, int axis) {
+        List<TileFeature> clipped = new ArrayList<>();
+
+        for (TileFeature tileFeature : tileFeatures) {
+            double min = axis == 0 ? tileFeature.minX : tileFeature.minY;
+            double max = axis == 0 ? tileFeature.maxX : tileFeature.maxY;
+
+            if (min >= k1 && max <= k2) {
+                clipped.add(tileFeature);
+                continue;
+            } else if (max < k1 || min > k2) {
+                continue;
+            }
+
+            List<List<double[]>> parts = new ArrayList<>();
+            for (List<double[]> part : tileFeature.parts) {
+                if (tileFeature.type == TYPE_POINT) {
+                    double[] points = clipPoints(part.get(0), k1, k2, axis);
+                    if (points.length > 0) {
+                        parts.add(Collections.singletonList(points));
+                    }
+                } else if (tileFeature.type == TYPE_LINE) {
+                    List<double[]> lines = new ArrayList<>();
+                    clipLine(part.get(0), k1, k2, axis, false, lines);
+                    for (double[] line : lines) {
+                        parts.add(Collections.singletonList(line));
+                    }
+                } else {
+                    List<double[]> rings = new ArrayList<>();
+                    for (double[] ring : part) {
+                        List<double[]> clippedRing = new ArrayList<>();
+                        clipLine(ring, k1, k2, axis, true, clippedRing);
+
+                        if (!clippedRing.isEmpty() && clippedRing.get(0).length >= 12) {
+                            rings.add(clippedRing.get(0));
+                        } else if (rings.isEmpty()) {
+                            // The outer ring is outside the tile
+                            break;
+                        }
+                    }
+
+                    if (!rings.isEmpty()) {
+                        parts.add(rings);
+                    }
+                }
+            }
+
+            if (!parts.isEmpty()) {
+                clipped.add(new TileFeature(tileFeature.feature, tileFeature.type, parts));
+            }
+        }
+
+        return clipped;
+    }
+
+    @NonNull
+    private static double[] clipPoints(@NonNull double[] points, double k1, double k2, int axis) {
+        CoordinateList clipped = new CoordinateList(points.length);
+        for (int i = 0; i < points.length; i += 3) {
+            double a = points[i + axis];
+            if (a >= k1 && a <= k2) {
+                clipped.add(points[i], points[i + 1], points[i + 2]);
+            }
+        }
+
+        return clipped.toArray();
+    }
+
+    /**
+     * Clip a line into the parts between {@code k1} & {@code k2}, or a ring into a single ring running along
+     * the clip lines where it was cut. The vertices added at the intersections are always kept
+     */
+    private static void clipLine(@NonNull double[] coords, double k1, double k2, int axis, boolean isRing
+            , @NonNull List<double[]> clipped) {
+        CoordinateList slice = new CoordinateList(coords.length);
+
+        for (int i = 0; i + 3 < coords.length; i += 3) {
+            double ax = coords[i];
+            double ay = coords[i + 1];
+            double bx = coords[i + 3];
+            double by = coords[i + 4];
+            double a = axis == 0 ? ax : ay;
+            double b = axis == 0 ? bx : by;
+            boolean exited = false;
+
+            if (a < k1) {
+                // The line enters the clip region from below k1
+                if (b > k1) {
+                    addIntersection(slice, ax, ay, bx, by, k1, axis);
+                }
+            } else if (a > k2) {
+                // The line enters the clip region from above k2
+                if (b < k2) {
+                    addIntersection(slice, ax, ay, bx, by, k2, axis);
+                }
+            } else {
+                slice.add(ax, ay, coords[i + 2]);
+            }
+
+            if (b < k1 && a >= k1) {
+                addIntersection(slice, ax, ay, bx, by, k1, axis);
+                exited = true;
+            }
+
+            if (b > k2 && a <= k2) {
+                addIntersection(slice, ax, ay, bx, by, k2, axis);
+                exited = true;
+            }
+
+            if (!isRing && exited) {
+                clipped.add(slice.toArray());
+                slice = new CoordinateList(coords.length);
+            }
+        }
+
+        if (coords.length >= 3) {
+            int last = coords.length - 3;
+            double a = coords[last + axis];
+            if (a >= k1 && a <= k2) {
+                slice.add(coords[last], coords[last + 1], coords[last + 2]);
+            }
+        }
+
+        // Close the ring if it was cut
+        if (isRing && slice.size() >= 3 && !slice.isClosed()) {
+            slice.add(slice.get(0), slice.get(1), 1);
+        }
+
+        if (slice.size() > 0) {
+            clipped.add(slice.toArray());
+        }
+    }
+
+    private static void addIntersection(@NonNull CoordinateList slice, double ax, double ay, double bx, double by
+            , double k, int axis) {
+        if (axis == 0) {
+            double t = (k - ax) / (bx - ax);
+            slice.add(k, ay + (by - ay) * t, 1);
+        } else {
+            double t = (k - ay) / (by - ay);
+            slice.add(ax + (bx - ax) * t, k, 1);
+        }
+    }
+
+    @NonNull
+    private static FeatureCollection toFeatureCollection(@NonNull List<TileFeature> tileFeatures, int zoom) {
+        double tolerance = TOLERANCE / (1 << zoom);
+        double sqTolerance = tolerance * tolerance;
+        List<Feature> features = new ArrayList<>(tileFeatures.size());
+
+        for (TileFeature tileFeature : tileFeatures) {
+            Geometry geometry = toGeometry(tileFeature, sqTolerance);
+            if (geometry != null) {
+                features.add(Feature.fromGeometry(geometry, tileFeature.feature.properties(), tileFeature.feature.id()));
+            }
+        }
+
+        return FeatureCollection.fromFeatures(features);
+    }
+
+    private static Geometry toGeometry(@NonNull TileFeature tileFeature, double sqTolerance) {
+        if (tileFeature.type == TYPE_POINT) {
+            List<Point> points = unproject(tileFeature.parts.get(0).get(0), -1);
+            return points.size() == 1 ? points.get(0) : MultiPoint.fromLngLats(points);
+        } else if (tileFeature.type == TYPE_LINE) {
+            List<List<Point>> lines = new ArrayList<>();
+            for (List<double[]> part : tileFeature.parts) {
+                List<Point> line = unproject(part.get(0), sqTolerance);
+                if (line.size() >= 2) {
+                    lines.add(line);
+                }
+            }
+
+            if (lines.isEmpty()) {
+                return null;
+            }
+
+            return lines.size() == 1 ? LineString.fromLngLats(lines.get(0)) : MultiLineString.fromLngLats(lines);
+        } else {
+            List<List<List<Point>>> polygons = new ArrayList<>();
+            for (List<double[]> part : tileFeature.parts) {
+                List<List<Point>> rings = new ArrayList<>();
+                for (double[] ring : part) {
+                    List<Point> simplifiedRing = unproject(ring, sqTolerance);
+                    if (simplifiedRing.size() >= 4) {
+                        rings.add(simplifiedRing);
+                    } else if (rings.isEmpty()) {
+                        // The polygon is smaller than the tolerance
+                        break;
+                    }
+                }
+
+                if (!rings.isEmpty()) {
+                    polygons.add(rings);
+                }
+            }
+
+            if (polygons.isEmpty()) {
+                return null;
+            }
+
+            return polygons.size() == 1 ? Polygon.fromLngLats(polygons.get(0)) : MultiPolygon.fromLngLats(polygons);
+        }
+    }
+
+    /**
+     * @param coords
+     * @param sqTolerance The vertices ranked at or below this, except the first & last ones, are left out.
+     *                    -1 to keep all the vertices
+     * @return
+     */
+    @NonNull
+    private static List<Point> unproject(@NonNull double[] coords, double sqTolerance) {
+        List<Point> points = new ArrayList<>(coords.length / 3);
+        for (int i = 0; i < coords.length; i += 3) {
+            if (coords[i + 2] > sqTolerance || i == 0 || i == coords.length - 3) {
+                points.add(Point.fromLngLat(xLng(coords[i]), yLat(coords[i + 1])));
+            }
+        }
+
+        return points;
+    }
+
+    private static void extend(@NonNull double[] bbox, double x, double y) {
+        bbox[0] = Math.min(bbox[0], x);
+        bbox[1] = Math.min(bbox[1], y);
+        bbox[2] = Math.max(bbox[2], x);
+        bbox[3] = Math.max(bbox[3], y);
+    }
+
+    static double lngX(double lng) {
+        return lng / 360 + 0.5;
+    }
+
+    static double latY(double lat) {
+        double sin = Math.sin(lat * Math.PI / 180);
+        double y = 0.5 - 0.25 * Math.log((1 + sin) / (1 - sin)) / Math.PI;
+        return y < 0 ? 0 : y > 1 ? 1 : y;
+    }
+
+    static double xLng(double x) {
+        return (x - 0.5) * 360;
+    }
+
+    static double yLat(double y) {
+        double y2 = (180 - y * 360) * Math.PI / 180;
+        return 360 * Math.atan(Math.exp(y2)) / Math.PI - 90;
+    }
+
+    /**
+     * A feature, or the part of a feature in a tile, in projected coordinates
+     */
+    private static class TileFeature {
+
+        private final Feature feature;
+        private final int type;
+
+        /**
+         * Points: a single part with all the points, lines: one part per line, polygons: one part per
+         * polygon with its outer ring first
+         */
+        private final List<List<double[]>> parts;
+
+        private double minX = Double.POSITIVE_INFINITY;
+        private double minY = Double.POSITIVE_INFINITY;
+        private double maxX = Double.NEGATIVE_INFINITY;
+        private double maxY = Double.NEGATIVE_INFINITY;
+
+        private TileFeature(@NonNull Feature feature, int type, @NonNull List<List<double[]>> parts) {
+            this.feature = feature;
+            this.type = type;
+            this.parts = parts;
+
+            for (List<double[]> part : parts) {
+                for (double[] coords : part) {
+                    for (int i = 0; i < coords.length; i += 3) {
+                        minX = Math.min(minX, coords[i]);
+                        minY = Math.min(minY, coords[i + 1]);
+                        maxX = Math.max(maxX, coords[i]);
+                        maxY = Math.max(maxY, coords[i + 1]);
+                    }
+                }
+            }
+        }
+
+        @NonNull
+        private double[] getBbox() {
+            return new double[]{minX, minY, maxX, maxY};
+        }
+    }
+
+    /**
+     * Growable list of x, y & rank triples
+     */
+    private static class CoordinateList {
+
+        private double[] coords;
+        private int size;
+
+        private CoordinateList(int capacity) {
+            coords = new double[Math.max(capacity, 3)];
+        }
+
+        private void add(double x, double y, double rank) {
+            if (size + 3 > coords.length) {
+                double[] newCoords = new double[coords.length * 2];
+                System.arraycopy(coords, 0, newCoords, 0, size);
+                coords = newCoords;
+            }
+
+            coords[size++] = x;
+            coords[size++] = y;
+            coords[size++] = rank;
+        }
+
+        private double get(int index) {
+            return coords[index];
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private boolean isClosed() {
+            return coords[0] == coords[size - 3] && coords[1] == coords[size - 2];
+        }
+
+        @NonNull
+        private double[] toArray() {
+            double[] array = new double[size];
+            System.arraycopy(coords, 0, array, 0, size);
+            return array;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Encodes coordinates to <a href="https://en.wikipedia.org/wiki/Geohash">geohashes</a>
+ */
+public class Geohash {
+
+    private static final char[] BASE_32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    public static final int MAX_PRECISION = 12;
+
+    private Geohash() {}
+
+    /**
+     * Encode a coordinate to a geohash of the given number of characters
+     *
+     * @param latitude
+     * @param longitude
+     * @param precision Number of characters of the geohash between 1 and {@link #MAX_PRECISION}
+     * @return
+     */
+    @NonNull
+    public static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision should be between 1 and " + MAX_PRECISION);
+        }
+
+        char[] geohash = new char[precision];
+
+        double minLat = -90;
+        double maxLat = 90;
+        double minLng = -180;
+        double maxLng = 180;
+
+        boolean isEvenBit = true;
+        int bit = 0;
+        int charIndex = 0;
+        int length = 0;
+
+        while (length < precision) {
+            if (isEvenBit) {
+                double midLng = (minLng + maxLng) / 2;
+                if (longitude >= midLng) {
+                    charIndex = (charIndex << 1) | 1;
+                    minLng = midLng;
+                } else {
+                    charIndex = charIndex << 1;
+                    maxLng = midLng;
+                }
+            } else {
+                double midLat = (minLat + maxLat) / 2;
+                if (latitude >= midLat) {
+                    charIndex = (charIndex << 1) | 1;
+                    minLat = midLat;
+                } else {
+                    charIndex = charIndex << 1;
+                    maxLat = midLat;
+                }
+            }
+
+            isEvenBit = !isEvenBit;
+
+            if (++bit == 5) {
+                geohash[length++] = BASE_32[charIndex];
+                bit = 0;
+                charIndex = 0;
+            }
+        }
+
+        return new String(geohash);
+    }
+}
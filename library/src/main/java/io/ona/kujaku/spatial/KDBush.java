@@ -0,0 +1,265 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * Static, flat 2D k-d tree of points for fast range & radius queries.
+ * <p>
+ * The points are sorted in place once when the tree is created, alternating between x & y at each level
+ * of the tree, down to leaves of {@code nodeSize} points which are scanned linearly. The tree cannot be
+ * changed afterwards, create a new one instead. Queries return the indexes of the points in the order
+ * they were given.
+ */
+public class KDBush {
+
+    private static final int DEFAULT_NODE_SIZE = 64;
+
+    private final int nodeSize;
+    private final int[] ids;
+    private final double[] coords;
+
+    /**
+     * @param coords The coordinates of the points as x0, y0, x1, y1... The array is sorted in place
+     */
+    public KDBush(@NonNull double[] coords) {
+        this(coords, DEFAULT_NODE_SIZE);
+    }
+
+    /**
+     * @param coords   The coordinates of the points as x0, y0, x1, y1... The array is sorted in place
+     * @param nodeSize Number of points in a leaf
+     */
+    public KDBush(@NonNull double[] coords, int nodeSize) {
+        this.nodeSize = Math.max(1, nodeSize);
+        this.coords = coords;
+        this.ids = new int[coords.length / 2];
+
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+
+        sort(0, ids.length - 1, 0);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Find the points within a bounding box
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param results The indexes of the points found are added to this list
+     */
+    public void range(double minX, double minY, double maxX, double maxY, @NonNull List<Integer> results) {
+        int[] stack = new int[64];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = ids.length - 1;
+        stack[stackSize++] = 0;
+
+        while (stackSize > 0) {
+            int axis = stack[--stackSize];
+            int right = stack[--stackSize];
+            int left = stack[--stackSize];
+
+            if (right - left <= nodeSize) {
+                for (int i = left; i <= right; i++) {
+                    double x = coords[2 * i];
+                    double y = coords[2 * i + 1];
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                        results.add(ids[i]);
+                    }
+                }
+                continue;
+            }
+
+            int m = (left + right) >> 1;
+            double x = coords[2 * m];
+            double y = coords[2 * m + 1];
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                results.add(ids[m]);
+            }
+
+            stack = ensureCapacity(stack, stackSize + 6);
+            if (axis == 0 ? minX <= x : minY <= y) {
+                stack[stackSize++] = left;
+                stack[stackSize++] = m - 1;
+                stack[stackSize++] = 1 - axis;
+            }
+
+            if (axis == 0 ? maxX >= x : maxY >= y) {
+                stack[stackSize++] = m + 1;
+                stack[stackSize++] = right;
+                stack[stackSize++] = 1 - axis;
+            }
+        }
+    }
+
+    /**
+     * Find the points within a radius of a point
+     *
+     * @param qx
+     * @param qy
+     * @param radius
+     * @param results The indexes of the points found are added to this list
+     */
+    public void within(double qx, double qy, double radius, @NonNull List<Integer> results) {
+        int[] stack = new int[64];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = ids.length - 1;
+        stack[stackSize++] = 0;
+
+        double r2 = radius * radius;
+
+        while (stackSize > 0) {
+            int axis = stack[--stackSize];
+            int right = stack[--stackSize];
+            int left = stack[--stackSize];
+
+            if (right - left <= nodeSize) {
+                for (int i = left; i <= right; i++) {
+                    if (squareDistance(coords[2 * i], coords[2 * i + 1], qx, qy) <= r2) {
+                        results.add(ids[i]);
+                    }
+                }
+                continue;
+            }
+
+            int m = (left + right) >> 1;
+            double x = coords[2 * m];
+            double y = coords[2 * m + 1];
+            if (squareDistance(x, y, qx, qy) <= r2) {
+                results.add(ids[m]);
+            }
+
+            stack = ensureCapacity(stack, stackSize + 6);
+            if (axis == 0 ? qx - radius <= x : qy - radius <= y) {
+                stack[stackSize++] = left;
+                stack[stackSize++] = m - 1;
+                stack[stackSize++] = 1 - axis;
+            }
+
+            if (axis == 0 ? qx + radius >= x : qy + radius >= y) {
+                stack[stackSize++] = m + 1;
+                stack[stackSize++] = right;
+                stack[stackSize++] = 1 - axis;
+            }
+        }
+    }
+
+    private static int[] ensureCapacity(@NonNull int[] stack, int capacity) {
+        if (capacity <= stack.length) {
+            return stack;
+        }
+
+        int[] newStack = new int[Math.max(capacity, stack.length * 2)];
+        System.arraycopy(stack, 0, newStack, 0, stack.length);
+        return newStack;
+    }
+
+    private static double squareDistance(double ax, double ay, double bx, double by) {
+        double dx = ax - bx;
+        double dy = ay - by;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Sort the points between {@code left} & {@code right} so that the median is in the middle, the points
+     * before it are smaller on the axis & the points after it are larger, then sort each half on the
+     * other axis
+     *
+     * @param left
+     * @param right
+     * @param axis
+     */
+    private void sort(int left, int right, int axis) {
+        if (right - left <= nodeSize) {
+            return;
+        }
+
+        int m = (left + right) >> 1;
+        select(m, left, right, axis);
+
+        sort(left, m - 1, 1 - axis);
+        sort(m + 1, right, 1 - axis);
+    }
+
+    /**
+     * Floyd-Rivest selection of the k-th smallest point on the axis
+     *
+     * @param k
+     * @param left
+     * @param right
+     * @param axis
+     */
+    private void select(int k, int left, int right, int axis) {
+        while (right > left) {
+            if (right - left > 600) {
+                int n = right - left + 1;
+                int m = k - left + 1;
+                double z = Math.log(n);
+                double s = 0.5 * Math.exp(2 * z / 3);
+                double sd = 0.5 * Math.sqrt(z * s * (n - s) / n) * (m - n / 2 < 0 ? -1 : 1);
+                int newLeft = (int) Math.max(left, Math.floor(k - m * s / n + sd));
+                int newRight = (int) Math.min(right, Math.floor(k + (n - m) * s / n + sd));
+                select(k, newLeft, newRight, axis);
+            }
+
+            double t = coords[2 * k + axis];
+            int i = left;
+            int j = right;
+
+            swap(left, k);
+            if (coords[2 * right + axis] > t) {
+                swap(left, right);
+            }
+
+            while (i < j) {
+                swap(i, j);
+                i++;
+                j--;
+                while (coords[2 * i + axis] < t) {
+                    i++;
+                }
+                while (coords[2 * j + axis] > t) {
+                    j--;
+                }
+            }
+
+            if (coords[2 * left + axis] == t) {
+                swap(left, j);
+            } else {
+                j++;
+                swap(j, right);
+            }
+
+            if (j <= k) {
+                left = j + 1;
+            }
+
+            if (k <= j) {
+                right = j - 1;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+
+        double x = coords[2 * i];
+        double y = coords[2 * i + 1];
+        coords[2 * i] = coords[2 * j];
+        coords[2 * i + 1] = coords[2 * j + 1];
+        coords[2 * j] = x;
+        coords[2 * j + 1] = y;
+    }
+}
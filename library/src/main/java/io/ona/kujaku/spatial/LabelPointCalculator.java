@@ -0,0 +1,250 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+import com.mapbox.turf.TurfMeasurement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import io.ona.kujaku.tasks.TaskScheduler;
+
+/**
+ * Calculates where the labels of features are placed: at the {@link PolyLabel} pole of inaccessibility
+ * of polygons & multi-polygons, at the point of points & at the centre of the bounding box of the other
+ * geometries.
+ * <p>
+ * The label points are cached per feature id & geometry until the next call to {@link #calculate(List)},
+ * so that when a few features of a collection change only their label points are calculated again.
+ * Collections with at least {@link #PARALLEL_THRESHOLD} label points to calculate are split between
+ * the threads of the {@link TaskScheduler#getComputationExecutor()}.
+ */
+public class LabelPointCalculator {
+
+    private static final String TAG = LabelPointCalculator.class.getName();
+
+    public static final double DEFAULT_PRECISION = 0.01;
+    public static final int PARALLEL_THRESHOLD = 256;
+    private static final int MAX_PARALLELISM = 4;
+
+    private final double precision;
+
+    private Map<Key, Entry> labelPoints = new HashMap<>();
+    private int calculatedCount;
+    private int reusedCount;
+
+    public LabelPointCalculator() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision The precision of the label points relative to the size of each geometry eg. 0.01
+     *                  places a label point within 1% of the width or height of its polygon from the pole
+     *                  of inaccessibility
+     */
+    public LabelPointCalculator(double precision) {
+        if (precision <= 0) {
+            throw new IllegalArgumentException("The precision should be positive");
+        }
+
+        this.precision = precision;
+    }
+
+    /**
+     * @param features
+     * @return The label point of each feature, {@code null} for features without a geometry
+     */
+    @NonNull
+    public synchronized List<Point> calculate(@NonNull List<Feature> features) {
+        final Point[] points = new Point[features.size()];
+        final Key[] keys = new Key[features.size()];
+        final Geometry[] geometries = new Geometry[features.size()];
+        List<Integer> pending = new ArrayList<>();
+
+        for (int i = 0; i < features.size(); i++) {
+            Feature feature = features.get(i);
+            Geometry geometry = feature.geometry();
+            if (geometry == null) {
+                continue;
+            }
+
+            Key key = new Key(feature.id(), geometry.hashCode());
+            Entry entry = labelPoints.get(key);
+            if (entry != null && entry.geometry.equals(geometry)) {
+                points[i] = entry.point;
+            } else {
+                pending.add(i);
+            }
+
+            keys[i] = key;
+            geometries[i] = geometry;
+        }
+
+        reusedCount = features.size() - pending.size();
+        calculatedCount = pending.size();
+
+        int parallelism = pending.size() >= PARALLEL_THRESHOLD
+                ? Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARALLELISM) : 1;
+        final int[] indexes = new int[pending.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = pending.get(i);
+        }
+
+        if (parallelism > 1) {
+            calculateInParallel(geometries, indexes, points, parallelism);
+        } else {
+            calculate(geometries, indexes, 0, indexes.length, points);
+        }
+
+        // Only keep the label points of the current features
+        Map<Key, Entry> newLabelPoints = new HashMap<>();
+        for (int i = 0; i < points.length; i++) {
+            if (keys[i] != null) {
+                newLabelPoints.put(keys[i], new Entry(geometries[i], points[i]));
+            }
+        }
+        labelPoints = newLabelPoints;
+
+        return Arrays.asList(points);
+    }
+
+    /**
+     * @return The number of label points calculated by the last call to {@link #calculate(List)}
+     */
+    public int getCalculatedCount() {
+        return calculatedCount;
+    }
+
+    /**
+     * @return The number of features whose label points were reused, or which had no geometry, during the
+     * last call to {@link #calculate(List)}
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * @param geometry
+     * @param precision The precision of the label point relative to the size of the geometry
+     * @return
+     */
+    @NonNull
+    public static Point getLabelPoint(@NonNull Geometry geometry, double precision) {
+        if (geometry instanceof Point) {
+            return (Point) geometry;
+        }
+
+        double[] bbox = TurfMeasurement.bbox(geometry);
+        double size = Math.max(bbox[2] - bbox[0], bbox[3] - bbox[1]);
+
+        if (size > 0) {
+            if (geometry instanceof Polygon) {
+                return PolyLabel.find((Polygon) geometry, size * precision);
+            } else if (geometry instanceof MultiPolygon) {
+                return PolyLabel.find((MultiPolygon) geometry, size * precision);
+            }
+        }
+
+        return Point.fromLngLat((bbox[0] + bbox[2]) / 2, (bbox[1] + bbox[3]) / 2);
+    }
+
+    private void calculate(@NonNull Geometry[] geometries, @NonNull int[] indexes, int start, int end, @NonNull Point[] points) {
+        for (int i = start; i < end; i++) {
+            int index = indexes[i];
+            points[index] = getLabelPoint(geometries[index], precision);
+        }
+    }
+
+    private void calculateInParallel(@NonNull final Geometry[] geometries, @NonNull final int[] indexes
+            , @NonNull final Point[] points, int parallelism) {
+        final int chunkSize = (indexes.length + parallelism - 1) / parallelism;
+
+        ExecutorService executorService = TaskScheduler.getComputationExecutor();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int start = 0; start < indexes.length; start += chunkSize) {
+            final int chunkStart = start;
+            final int chunkEnd = Math.min(start + chunkSize, indexes.length);
+            futures.add(executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    calculate(geometries, indexes, chunkStart, chunkEnd, points);
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            // Keep the interrupt for the caller & drop the chunks which have not been calculated yet
+            Thread.currentThread().interrupt();
+            cancel(futures);
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            cancel(futures);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void cancel(@NonNull List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static class Key {
+
+        private final String id;
+        private final int geometryHash;
+
+        private Key(@Nullable String id, int geometryHash) {
+            this.id = id;
+            this.geometryHash = geometryHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return geometryHash == key.geometryHash && (id == null ? key.id == null : id.equals(key.id));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (id == null ? 0 : id.hashCode()) + geometryHash;
+        }
+    }
+
+    private static class Entry {
+
+        private final Geometry geometry;
+        private final Point point;
+
+        private Entry(@NonNull Geometry geometry, @NonNull Point point) {
+            this.geometry = geometry;
+            this.point = point;
+        }
+    }
+}
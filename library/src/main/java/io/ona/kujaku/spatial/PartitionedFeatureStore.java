@@ -0,0 +1,188 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.geojson.Feature;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Change-tracking store of {@link Feature}s split into geohash partitions.
+ * <p>
+ * Adds, updates and removes are recorded as pending changes and coalesced by feature id until
+ * {@link #commit()} is called, which applies them and returns the partitions that changed. This enables
+ * the caller to push only the changed partitions to their respective sources, once per frame.
+ * <p>
+ * A feature is placed in the partition of the geohash of the centre of its bounding box. With a
+ * precision of 0, all the features are in the single partition {@link #SINGLE_PARTITION}.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class PartitionedFeatureStore {
+
+    public static final String SINGLE_PARTITION = "";
+
+    private final int geohashPrecision;
+
+    private final Map<String, String> featurePartitions = new HashMap<>();
+    private final Map<String, LinkedHashMap<String, Feature>> partitions = new LinkedHashMap<>();
+
+    private final LinkedHashMap<String, Feature> pendingUpserts = new LinkedHashMap<>();
+    private final Set<String> pendingRemovals = new LinkedHashSet<>();
+
+    /**
+     * @param geohashPrecision Number of characters of the geohash partition keys, 0 to disable partitioning
+     */
+    public PartitionedFeatureStore(int geohashPrecision) {
+        if (geohashPrecision < 0 || geohashPrecision > Geohash.MAX_PRECISION) {
+            throw new IllegalArgumentException("geohashPrecision should be between 0 and " + Geohash.MAX_PRECISION);
+        }
+
+        this.geohashPrecision = geohashPrecision;
+    }
+
+    public int getGeohashPrecision() {
+        return geohashPrecision;
+    }
+
+    /**
+     * Record the addition or the update of a feature. The feature should have an id
+     *
+     * @param feature
+     * @return {@code FALSE} if the feature has no id and was ignored, {@code TRUE} otherwise
+     */
+    public boolean put(@NonNull Feature feature) {
+        String featureId = feature.id();
+        if (featureId == null) {
+            return false;
+        }
+
+        pendingRemovals.remove(featureId);
+        pendingUpserts.put(featureId, feature);
+        return true;
+    }
+
+    /**
+     * Record the removal of a feature
+     *
+     * @param featureId
+     */
+    public void remove(@NonNull String featureId) {
+        pendingUpserts.remove(featureId);
+        if (featurePartitions.containsKey(featureId)) {
+            pendingRemovals.add(featureId);
+        }
+    }
+
+    public boolean hasPendingChanges() {
+        return !pendingUpserts.isEmpty() || !pendingRemovals.isEmpty();
+    }
+
+    /**
+     * Apply the pending changes
+     *
+     * @return The keys of the partitions that changed
+     */
+    @NonNull
+    public Set<String> commit() {
+        Set<String> changedPartitions = new LinkedHashSet<>();
+
+        for (String featureId : pendingRemovals) {
+            String partitionKey = featurePartitions.remove(featureId);
+            if (partitionKey != null) {
+                removeFromPartition(partitionKey, featureId);
+                changedPartitions.add(partitionKey);
+            }
+        }
+
+        for (Feature feature : pendingUpserts.values()) {
+            String featureId = feature.id();
+            String partitionKey = getPartitionKey(feature);
+
+            String previousPartitionKey = featurePartitions.put(featureId, partitionKey);
+            if (previousPartitionKey != null && !previousPartitionKey.equals(partitionKey)) {
+                removeFromPartition(previousPartitionKey, featureId);
+                changedPartitions.add(previousPartitionKey);
+            }
+
+            LinkedHashMap<String, Feature> partition = partitions.get(partitionKey);
+            if (partition == null) {
+                partition = new LinkedHashMap<>();
+                partitions.put(partitionKey, partition);
+            }
+
+            partition.put(featureId, feature);
+            changedPartitions.add(partitionKey);
+        }
+
+        pendingRemovals.clear();
+        pendingUpserts.clear();
+
+        return changedPartitions;
+    }
+
+    /**
+     * @param partitionKey
+     * @return The committed features of the partition, an empty list if the partition does not exist
+     */
+    @NonNull
+    public List<Feature> getPartitionFeatures(@NonNull String partitionKey) {
+        LinkedHashMap<String, Feature> partition = partitions.get(partitionKey);
+        return partition != null ? new ArrayList<>(partition.values()) : new ArrayList<Feature>();
+    }
+
+    /**
+     * @return The keys of the partitions holding committed features
+     */
+    @NonNull
+    public Set<String> getPartitionKeys() {
+        return partitions.keySet();
+    }
+
+    /**
+     * @return The number of committed features
+     */
+    public int size() {
+        return featurePartitions.size();
+    }
+
+    @Nullable
+    public Feature get(@NonNull String featureId) {
+        String partitionKey = featurePartitions.get(featureId);
+        return partitionKey != null ? partitions.get(partitionKey).get(featureId) : null;
+    }
+
+    /**
+     * Get the partition key of a feature
+     *
+     * @param feature
+     * @return
+     */
+    @NonNull
+    public String getPartitionKey(@NonNull Feature feature) {
+        if (geohashPrecision == 0) {
+            return SINGLE_PARTITION;
+        }
+
+        double[] bbox = FeatureSpatialIndex.getBoundingBox(feature.geometry());
+        if (bbox == null) {
+            return SINGLE_PARTITION;
+        }
+
+        return Geohash.encode((bbox[1] + bbox[3]) / 2, (bbox[0] + bbox[2]) / 2, geohashPrecision);
+    }
+
+    private void removeFromPartition(String partitionKey, String featureId) {
+        LinkedHashMap<String, Feature> partition = partitions.get(partitionKey);
+        if (partition != null) {
+            partition.remove(featureId);
+        }
+    }
+}
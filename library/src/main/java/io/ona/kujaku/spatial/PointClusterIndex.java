@@ -0,0 +1,606 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical clustering of point {@link Feature}s, precomputed for every zoom so that the clusters &
+ * points to draw in a viewport can be served without looking at the other points.
+ * <p>
+ * {@link #load(List)} builds the hierarchy from the highest zoom down: at each zoom, the points & clusters
+ * of the zoom above that are within {@link ClusterOptions#getRadius()} pixels of each other are merged
+ * into clusters. Each zoom is indexed in a {@link KDBush}. Building the hierarchy of 100k points takes
+ * around a second & should be done off the main thread, the index is then used from one thread only.
+ * This class is not thread-safe.
+ * <p>
+ * Points added with {@link #add(Feature)} after the hierarchy is built are inserted incrementally: the
+ * point joins the nearest cluster within the radius at the highest zoom where there is one, which also
+ * updates the cluster's ancestors, & is drawn by itself above the zoom that cluster was created at. New
+ * points are never merged with other unclustered points so the hierarchy slowly drifts from a complete
+ * rebuild, {@link #isRebuildRecommended()} tells when rebuilding it is worth it.
+ * <p>
+ * Clusters are returned as point features at the weighted center of their points with the
+ * {@link #PROPERTY_CLUSTER}, {@link #PROPERTY_CLUSTER_ID}, {@link #PROPERTY_POINT_COUNT} &
+ * {@link #PROPERTY_POINT_COUNT_ABBREVIATED} properties, like the clusters of Mapbox GeoJSON sources, &
+ * the properties of the {@link ClusterOptions#getPropertyAggregator()}. Points are returned as they were
+ * added. Cluster ids change when the hierarchy is rebuilt.
+ */
+public class PointClusterIndex {
+
+    public static final String PROPERTY_CLUSTER = "cluster";
+    public static final String PROPERTY_CLUSTER_ID = "cluster_id";
+    public static final String PROPERTY_POINT_COUNT = "point_count";
+    public static final String PROPERTY_POINT_COUNT_ABBREVIATED = "point_count_abbreviated";
+
+    /**
+     * Number of points inserted after a build before {@link #isRebuildRecommended()}, as a fraction of the
+     * points the hierarchy was built with
+     */
+    private static final double REBUILD_RATIO = 0.25;
+    private static final int MIN_POINTS_BEFORE_REBUILD = 64;
+
+    private final ClusterOptions options;
+    private final int minZoom;
+    private final int maxZoom;
+
+    /**
+     * Points & clusters of each zoom from {@code minZoom} to {@code maxZoom + 1}, the individual points
+     */
+    private final Level[] levels;
+    private final List<ClusterNode> clusters = new ArrayList<>();
+
+    private int pointCount;
+    private int loadedPointCount;
+
+    public PointClusterIndex() {
+        this(new ClusterOptions());
+    }
+
+    public PointClusterIndex(@NonNull ClusterOptions options) {
+        if (options.getMinZoom() > options.getMaxZoom()) {
+            throw new IllegalArgumentException("minZoom should not be greater than maxZoom");
+        }
+
+        this.options = options;
+        this.minZoom = options.getMinZoom();
+        this.maxZoom = options.getMaxZoom();
+        this.levels = new Level[maxZoom - minZoom + 2];
+
+        clear();
+    }
+
+    /**
+     * Build the hierarchy of the point features, replacing the current points. Features which are not
+     * points are ignored
+     *
+     * @param features
+     */
+    public void load(@NonNull List<Feature> features) {
+        clear();
+
+        List<ClusterNode> points = new ArrayList<>(features.size());
+        for (Feature feature : features) {
+            ClusterNode point = createPoint(feature);
+            if (point != null) {
+                points.add(point);
+            }
+        }
+
+        pointCount = points.size();
+        loadedPointCount = pointCount;
+
+        Level level = new Level(points);
+        levels[maxZoom + 1 - minZoom] = level;
+
+        for (int zoom = maxZoom; zoom >= minZoom; zoom--) {
+            level = new Level(cluster(level, zoom));
+            levels[zoom - minZoom] = level;
+        }
+    }
+
+    /**
+     * Insert a point feature in the hierarchy
+     *
+     * @param feature
+     * @return {@code TRUE} if the feature was added, {@code FALSE} if it is not a point
+     */
+    public boolean add(@NonNull Feature feature) {
+        ClusterNode point = createPoint(feature);
+        if (point == null) {
+            return false;
+        }
+
+        pointCount++;
+
+        ClusterNode cluster = null;
+        for (int zoom = maxZoom; zoom >= minZoom && cluster == null; zoom--) {
+            cluster = levels[zoom - minZoom].findNearestCluster(point.x, point.y, getRadius(zoom));
+        }
+
+        // The point is drawn by itself above the zoom its cluster was created at
+        int lowestZoom = cluster != null ? cluster.zoom + 1 : minZoom;
+        for (int zoom = lowestZoom; zoom <= maxZoom + 1; zoom++) {
+            levels[zoom - minZoom].add(point);
+        }
+
+        if (cluster != null) {
+            point.parent = cluster;
+            cluster.children.add(point);
+
+            // The point is now part of the cluster & of the cluster's ancestors
+            for (ClusterNode ancestor = cluster; ancestor != null; ancestor = ancestor.parent) {
+                ancestor.merge(point);
+                aggregate(ancestor, point);
+            }
+        }
+
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = new Level(new ArrayList<ClusterNode>());
+        }
+
+        clusters.clear();
+        pointCount = 0;
+        loadedPointCount = 0;
+    }
+
+    /**
+     * Get the clusters & points to draw in a bounding box at a zoom
+     *
+     * @param west
+     * @param south
+     * @param east
+     * @param north
+     * @param zoom
+     * @return
+     */
+    @NonNull
+    public List<Feature> getClusters(double west, double south, double east, double north, double zoom) {
+        double minLng = ((west + 180) % 360 + 360) % 360 - 180;
+        double minLat = Math.max(-90, Math.min(90, south));
+        double maxLng = east == 180 ? 180 : ((east + 180) % 360 + 360) % 360 - 180;
+        double maxLat = Math.max(-90, Math.min(90, north));
+
+        if (east - west >= 360) {
+            minLng = -180;
+            maxLng = 180;
+        } else if (minLng > maxLng) {
+            // The bounding box crosses the antimeridian
+            List<Feature> features = getClusters(minLng, minLat, 180, maxLat, zoom);
+            features.addAll(getClusters(-180, minLat, maxLng, maxLat, zoom));
+            return features;
+        }
+
+        List<ClusterNode> nodes = new ArrayList<>();
+        levels[limitZoom(zoom) - minZoom].range(lngX(minLng), latY(maxLat), lngX(maxLng), latY(minLat), nodes);
+
+        List<Feature> features = new ArrayList<>(nodes.size());
+        for (ClusterNode node : nodes) {
+            features.add(toFeature(node));
+        }
+
+        return features;
+    }
+
+    /**
+     * Get the clusters & points a cluster splits into at {@link #getClusterExpansionZoom(int)}
+     *
+     * @param clusterId
+     * @return
+     */
+    @NonNull
+    public List<Feature> getChildren(int clusterId) {
+        ClusterNode cluster = getCluster(clusterId);
+
+        List<Feature> children = new ArrayList<>(cluster.children.size());
+        for (ClusterNode child : cluster.children) {
+            children.add(toFeature(child));
+        }
+
+        return children;
+    }
+
+    /**
+     * Get the points of a cluster, with pagination
+     *
+     * @param clusterId
+     * @param limit     Maximum number of points returned
+     * @param offset    Number of points skipped
+     * @return
+     */
+    @NonNull
+    public List<Feature> getLeaves(int clusterId, int limit, int offset) {
+        ClusterNode cluster = getCluster(clusterId);
+        List<Feature> leaves = new ArrayList<>(Math.max(0, Math.min(limit, cluster.numPoints - offset)));
+        appendLeaves(cluster, limit, offset, 0, leaves);
+        return leaves;
+    }
+
+    /**
+     * @param clusterId
+     * @return The zoom at which the cluster splits into its children
+     */
+    public int getClusterExpansionZoom(int clusterId) {
+        return Math.min(getCluster(clusterId).zoom + 1, maxZoom + 1);
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * @return {@code TRUE} if enough points were inserted since the hierarchy was built for the clusters to
+     * differ noticeably from a rebuild with {@link #load(List)}
+     */
+    public boolean isRebuildRecommended() {
+        int insertedPointCount = pointCount - loadedPointCount;
+        return insertedPointCount >= MIN_POINTS_BEFORE_REBUILD && insertedPointCount > loadedPointCount * REBUILD_RATIO;
+    }
+
+    @NonNull
+    public ClusterOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Merge the points & clusters of a zoom within the radius of each other into the clusters of the zoom below
+     *
+     * @param level
+     * @param zoom
+     * @return The points & clusters of {@code zoom}
+     */
+    @NonNull
+    private List<ClusterNode> cluster(@NonNull Level level, int zoom) {
+        List<ClusterNode> nodes = level.nodes;
+        List<ClusterNode> nextNodes = new ArrayList<>();
+        List<Integer> neighborIds = new ArrayList<>();
+        double radius = getRadius(zoom);
+
+        for (int i = 0; i < nodes.size(); i++) {
+            ClusterNode node = nodes.get(i);
+            // Already merged into a cluster or kept at this zoom
+            if (node.visitedZoom <= zoom) {
+                continue;
+            }
+            node.visitedZoom = zoom;
+
+            neighborIds.clear();
+            level.tree.within(node.x, node.y, radius, neighborIds);
+
+            int numPoints = node.numPoints;
+            for (int neighborId : neighborIds) {
+                ClusterNode neighbor = nodes.get(neighborId);
+                if (neighbor.visitedZoom > zoom) {
+                    numPoints += neighbor.numPoints;
+                }
+            }
+
+            if (numPoints > node.numPoints && numPoints >= options.getMinPoints()) {
+                ClusterNode cluster = new ClusterNode(clusters.size(), zoom);
+                clusters.add(cluster);
+                addChild(cluster, node);
+
+                for (int neighborId : neighborIds) {
+                    ClusterNode neighbor = nodes.get(neighborId);
+                    if (neighbor.visitedZoom > zoom) {
+                        neighbor.visitedZoom = zoom;
+                        addChild(cluster, neighbor);
+                    }
+                }
+
+                nextNodes.add(cluster);
+            } else {
+                nextNodes.add(node);
+
+                // Too few neighbors to form a cluster, they are kept as they are
+                if (numPoints > node.numPoints) {
+                    for (int neighborId : neighborIds) {
+                        ClusterNode neighbor = nodes.get(neighborId);
+                        if (neighbor.visitedZoom > zoom) {
+                            neighbor.visitedZoom = zoom;
+                            nextNodes.add(neighbor);
+                        }
+                    }
+                }
+            }
+        }
+
+        return nextNodes;
+    }
+
+    private void addChild(@NonNull ClusterNode cluster, @NonNull ClusterNode child) {
+        child.parent = cluster;
+        cluster.children.add(child);
+        cluster.merge(child);
+        aggregate(cluster, child);
+    }
+
+    private void aggregate(@NonNull ClusterNode cluster, @NonNull ClusterNode child) {
+        ClusterPropertyAggregator propertyAggregator = options.getPropertyAggregator();
+        if (propertyAggregator == null) {
+            return;
+        }
+
+        if (child.point != null) {
+            propertyAggregator.addPoint(cluster.properties, child.point);
+        } else {
+            propertyAggregator.addCluster(cluster.properties, child.properties);
+        }
+    }
+
+    private int appendLeaves(@NonNull ClusterNode cluster, int limit, int offset, int skipped, @NonNull List<Feature> leaves) {
+        for (ClusterNode child : cluster.children) {
+            if (leaves.size() >= limit) {
+                break;
+            }
+
+            if (child.point != null) {
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    leaves.add(child.point);
+                }
+            } else if (skipped + child.numPoints <= offset) {
+                // Skip the whole cluster
+                skipped += child.numPoints;
+            } else {
+                skipped = appendLeaves(child, limit, offset, skipped, leaves);
+            }
+        }
+
+        return skipped;
+    }
+
+    @NonNull
+    private ClusterNode getCluster(int clusterId) {
+        if (clusterId < 0 || clusterId >= clusters.size()) {
+            throw new IllegalArgumentException("No cluster with the id " + clusterId);
+        }
+
+        return clusters.get(clusterId);
+    }
+
+    @NonNull
+    private Feature toFeature(@NonNull ClusterNode node) {
+        if (node.point != null) {
+            return node.point;
+        }
+
+        JsonObject properties = new JsonObject();
+        if (node.properties != null) {
+            for (Map.Entry<String, JsonElement> entry : node.properties.entrySet()) {
+                properties.add(entry.getKey(), entry.getValue());
+            }
+        }
+
+        properties.addProperty(PROPERTY_CLUSTER, true);
+        properties.addProperty(PROPERTY_CLUSTER_ID, node.id);
+        properties.addProperty(PROPERTY_POINT_COUNT, node.numPoints);
+        properties.addProperty(PROPERTY_POINT_COUNT_ABBREVIATED, abbreviate(node.numPoints));
+
+        return Feature.fromGeometry(Point.fromLngLat(xLng(node.x), yLat(node.y)), properties);
+    }
+
+    @Nullable
+    private ClusterNode createPoint(@NonNull Feature feature) {
+        Geometry geometry = feature.geometry();
+        if (!(geometry instanceof Point)) {
+            return null;
+        }
+
+        Point point = (Point) geometry;
+        return new ClusterNode(feature, lngX(point.longitude()), latY(point.latitude()));
+    }
+
+    private int limitZoom(double zoom) {
+        return (int) Math.max(minZoom, Math.min(Math.floor(zoom), maxZoom + 1));
+    }
+
+    /**
+     * @param zoom
+     * @return The cluster radius at the zoom in projected coordinates
+     */
+    private double getRadius(int zoom) {
+        return options.getRadius() / (options.getExtent() * Math.pow(2, zoom));
+    }
+
+    @NonNull
+    static String abbreviate(int count) {
+        if (count >= 10000) {
+            return Math.round(count / 1000d) + "k";
+        } else if (count >= 1000) {
+            return (Math.round(count / 100d) / 10d) + "k";
+        }
+
+        return String.valueOf(count);
+    }
+
+    /**
+     * @param lng
+     * @return The spherical mercator x in [0, 1]
+     */
+    static double lngX(double lng) {
+        return lng / 360 + 0.5;
+    }
+
+    /**
+     * @param lat
+     * @return The spherical mercator y in [0, 1], 0 being the north
+     */
+    static double latY(double lat) {
+        double sin = Math.sin(lat * Math.PI / 180);
+        double y = 0.5 - 0.25 * Math.log((1 + sin) / (1 - sin)) / Math.PI;
+        return y < 0 ? 0 : y > 1 ? 1 : y;
+    }
+
+    static double xLng(double x) {
+        return (x - 0.5) * 360;
+    }
+
+    static double yLat(double y) {
+        double y2 = (180 - y * 360) * Math.PI / 180;
+        return 360 * Math.atan(Math.exp(y2)) / Math.PI - 90;
+    }
+
+    /**
+     * A point or a cluster. A node appears at every zoom from the zoom it was created at down to the zoom
+     * it is merged into its parent cluster
+     */
+    private static class ClusterNode {
+
+        private final int id;
+        private final Feature point;
+        private final List<ClusterNode> children;
+        private final JsonObject properties;
+
+        /**
+         * The zoom a cluster was created at
+         */
+        private final int zoom;
+
+        private double x;
+        private double y;
+        private int numPoints;
+
+        private ClusterNode parent;
+
+        /**
+         * Lowest zoom the node was clustered at while building the hierarchy
+         */
+        private int visitedZoom = Integer.MAX_VALUE;
+
+        private ClusterNode(@NonNull Feature point, double x, double y) {
+            this.id = -1;
+            this.point = point;
+            this.children = null;
+            this.properties = null;
+            this.zoom = Integer.MAX_VALUE;
+            this.x = x;
+            this.y = y;
+            this.numPoints = 1;
+        }
+
+        private ClusterNode(int id, int zoom) {
+            this.id = id;
+            this.point = null;
+            this.children = new ArrayList<>();
+            this.properties = new JsonObject();
+            this.zoom = zoom;
+        }
+
+        /**
+         * Move the cluster to the weighted center of its points & the merged node's
+         *
+         * @param node
+         */
+        private void merge(@NonNull ClusterNode node) {
+            int totalPoints = numPoints + node.numPoints;
+            x = (x * numPoints + node.x * node.numPoints) / totalPoints;
+            y = (y * numPoints + node.y * node.numPoints) / totalPoints;
+            numPoints = totalPoints;
+        }
+    }
+
+    /**
+     * The points & clusters of a zoom, the first {@code indexedCount} of which are indexed in a {@link KDBush}.
+     * Nodes added incrementally are searched linearly until there are enough of them to re-index the zoom
+     */
+    private static class Level {
+
+        private static final int MIN_UNINDEXED_NODES = 256;
+
+        private final List<ClusterNode> nodes;
+        private KDBush tree;
+        private int indexedCount;
+
+        private Level(@NonNull List<ClusterNode> nodes) {
+            this.nodes = nodes;
+            index();
+        }
+
+        private void add(@NonNull ClusterNode node) {
+            nodes.add(node);
+
+            if (nodes.size() - indexedCount > Math.max(MIN_UNINDEXED_NODES, indexedCount / 8)) {
+                index();
+            }
+        }
+
+        private void index() {
+            double[] coords = new double[nodes.size() * 2];
+            for (int i = 0; i < nodes.size(); i++) {
+                ClusterNode node = nodes.get(i);
+                coords[2 * i] = node.x;
+                coords[2 * i + 1] = node.y;
+            }
+
+            tree = new KDBush(coords);
+            indexedCount = nodes.size();
+        }
+
+        private void range(double minX, double minY, double maxX, double maxY, @NonNull List<ClusterNode> results) {
+            List<Integer> ids = new ArrayList<>();
+            tree.range(minX, minY, maxX, maxY, ids);
+            for (int id : ids) {
+                results.add(nodes.get(id));
+            }
+
+            for (int i = indexedCount; i < nodes.size(); i++) {
+                ClusterNode node = nodes.get(i);
+                if (node.x >= minX && node.x <= maxX && node.y >= minY && node.y <= maxY) {
+                    results.add(node);
+                }
+            }
+        }
+
+        /**
+         * Clusters move slightly when points are inserted into them. They are found where they were when
+         * the zoom was last indexed
+         *
+         * @param x
+         * @param y
+         * @param radius
+         * @return
+         */
+        @Nullable
+        private ClusterNode findNearestCluster(double x, double y, double radius) {
+            List<Integer> ids = new ArrayList<>();
+            tree.within(x, y, radius, ids);
+
+            ClusterNode nearest = null;
+            double nearestDistance = Double.MAX_VALUE;
+            for (int id : ids) {
+                ClusterNode node = nodes.get(id);
+                if (node.point == null) {
+                    double distance = squareDistance(node, x, y);
+                    if (distance < nearestDistance) {
+                        nearest = node;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+
+            // Only points are added after the zoom is indexed
+            return nearest;
+        }
+
+        private static double squareDistance(@NonNull ClusterNode node, double x, double y) {
+            double dx = node.x - x;
+            double dy = node.y - y;
+            return dx * dx + dy * dy;
+        }
+    }
+}
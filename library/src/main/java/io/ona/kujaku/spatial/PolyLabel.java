@@ -0,0 +1,229 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Finds the pole of inaccessibility of a polygon: the point inside the polygon which is the furthest
+ * from its outline, which is where a label fits best. Unlike the centre of the bounding box, the pole is
+ * always inside the polygon, even for concave polygons & polygons with holes.
+ * <p>
+ * The bounding box of the polygon is covered with square cells which are split in four, most promising
+ * cell first, until no cell can contain a point further from the outline than the best point found by
+ * more than the precision.
+ */
+public class PolyLabel {
+
+    private static final double SQRT_2 = Math.sqrt(2);
+
+    private PolyLabel() {}
+
+    /**
+     * @param polygon
+     * @param precision The maximum distance, in the units of the coordinates, between the point returned
+     *                  & the actual pole of inaccessibility
+     * @return
+     */
+    @NonNull
+    public static Point find(@NonNull Polygon polygon, double precision) {
+        Cell pole = findPole(polygon.coordinates(), precision);
+        return Point.fromLngLat(pole.x, pole.y);
+    }
+
+    /**
+     * Finds the pole of inaccessibility of the polygon of a {@link MultiPolygon} with the most room for a label
+     *
+     * @param multiPolygon
+     * @param precision The maximum distance, in the units of the coordinates, between the point returned
+     *                  & the actual pole of inaccessibility
+     * @return
+     */
+    @NonNull
+    public static Point find(@NonNull MultiPolygon multiPolygon, double precision) {
+        Cell best = null;
+        for (List<List<Point>> polygon : multiPolygon.coordinates()) {
+            Cell pole = findPole(polygon, precision);
+            if (best == null || pole.distance > best.distance) {
+                best = pole;
+            }
+        }
+
+        if (best == null) {
+            throw new IllegalArgumentException("The MultiPolygon has no polygon");
+        }
+
+        return Point.fromLngLat(best.x, best.y);
+    }
+
+    @NonNull
+    private static Cell findPole(@NonNull List<List<Point>> rings, double precision) {
+        if (precision <= 0) {
+            throw new IllegalArgumentException("The precision should be positive");
+        }
+
+        if (rings.isEmpty() || rings.get(0).isEmpty()) {
+            throw new IllegalArgumentException("The polygon has no outer ring");
+        }
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (Point point : rings.get(0)) {
+            minX = Math.min(minX, point.longitude());
+            minY = Math.min(minY, point.latitude());
+            maxX = Math.max(maxX, point.longitude());
+            maxY = Math.max(maxY, point.latitude());
+        }
+
+        double width = maxX - minX;
+        double height = maxY - minY;
+        double cellSize = Math.min(width, height);
+        if (cellSize == 0) {
+            return new Cell(minX + width / 2, minY + height / 2, 0, rings);
+        }
+
+        PriorityQueue<Cell> queue = new PriorityQueue<>(16, new Comparator<Cell>() {
+            @Override
+            public int compare(Cell cell1, Cell cell2) {
+                return Double.compare(cell2.max, cell1.max);
+            }
+        });
+
+        double halfSize = cellSize / 2;
+        for (double x = minX; x < maxX; x += cellSize) {
+            for (double y = minY; y < maxY; y += cellSize) {
+                queue.add(new Cell(x + halfSize, y + halfSize, halfSize, rings));
+            }
+        }
+
+        Cell best = getCentroidCell(rings);
+        Cell bboxCell = new Cell(minX + width / 2, minY + height / 2, 0, rings);
+        if (bboxCell.distance > best.distance) {
+            best = bboxCell;
+        }
+
+        while (!queue.isEmpty()) {
+            Cell cell = queue.poll();
+
+            if (cell.distance > best.distance) {
+                best = cell;
+            }
+
+            // No point of this cell can be much further from the outline than the best point
+            if (cell.max - best.distance <= precision) {
+                continue;
+            }
+
+            halfSize = cell.halfSize / 2;
+            queue.add(new Cell(cell.x - halfSize, cell.y - halfSize, halfSize, rings));
+            queue.add(new Cell(cell.x + halfSize, cell.y - halfSize, halfSize, rings));
+            queue.add(new Cell(cell.x - halfSize, cell.y + halfSize, halfSize, rings));
+            queue.add(new Cell(cell.x + halfSize, cell.y + halfSize, halfSize, rings));
+        }
+
+        return best;
+    }
+
+    @NonNull
+    private static Cell getCentroidCell(@NonNull List<List<Point>> rings) {
+        List<Point> ring = rings.get(0);
+        double area = 0;
+        double x = 0;
+        double y = 0;
+
+        for (int i = 0, j = ring.size() - 1; i < ring.size(); j = i++) {
+            Point a = ring.get(i);
+            Point b = ring.get(j);
+            double f = a.longitude() * b.latitude() - b.longitude() * a.latitude();
+            x += (a.longitude() + b.longitude()) * f;
+            y += (a.latitude() + b.latitude()) * f;
+            area += f * 3;
+        }
+
+        if (area == 0) {
+            return new Cell(ring.get(0).longitude(), ring.get(0).latitude(), 0, rings);
+        }
+
+        return new Cell(x / area, y / area, 0, rings);
+    }
+
+    /**
+     * @return The distance from the point to the outline of the polygon, negative when the point is outside
+     */
+    private static double getSignedDistance(double x, double y, @NonNull List<List<Point>> rings) {
+        boolean inside = false;
+        double minSquareDistance = Double.POSITIVE_INFINITY;
+
+        for (List<Point> ring : rings) {
+            for (int i = 0, j = ring.size() - 1; i < ring.size(); j = i++) {
+                Point a = ring.get(i);
+                Point b = ring.get(j);
+                double ax = a.longitude();
+                double ay = a.latitude();
+                double bx = b.longitude();
+                double by = b.latitude();
+
+                if ((ay > y) != (by > y) && x < (bx - ax) * (y - ay) / (by - ay) + ax) {
+                    inside = !inside;
+                }
+
+                minSquareDistance = Math.min(minSquareDistance, getSegmentSquareDistance(x, y, ax, ay, bx, by));
+            }
+        }
+
+        double distance = Math.sqrt(minSquareDistance);
+        return inside ? distance : -distance;
+    }
+
+    private static double getSegmentSquareDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double x = ax;
+        double y = ay;
+        double dx = bx - x;
+        double dy = by - y;
+
+        if (dx != 0 || dy != 0) {
+            double t = ((px - x) * dx + (py - y) * dy) / (dx * dx + dy * dy);
+
+            if (t > 1) {
+                x = bx;
+                y = by;
+            } else if (t > 0) {
+                x += dx * t;
+                y += dy * t;
+            }
+        }
+
+        dx = px - x;
+        dy = py - y;
+        return dx * dx + dy * dy;
+    }
+
+    private static class Cell {
+
+        private final double x;
+        private final double y;
+        private final double halfSize;
+        private final double distance;
+
+        /**
+         * The furthest any point of the cell can be from the outline
+         */
+        private final double max;
+
+        private Cell(double x, double y, double halfSize, @NonNull List<List<Point>> rings) {
+            this.x = x;
+            this.y = y;
+            this.halfSize = halfSize;
+            this.distance = getSignedDistance(x, y, rings);
+            this.max = distance + halfSize * SQRT_2;
+        }
+    }
+}
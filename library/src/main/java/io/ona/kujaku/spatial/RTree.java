@@ -0,0 +1,567 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * In-memory R-tree of items with a bounding box in (x, y) = (longitude, latitude) coordinates.
+ * <p>
+ * Items can be inserted one at a time or bulk loaded into an empty tree (Sort-Tile-Recursive packing),
+ * removed, searched by bounding box or searched for the items nearest to a point. Node splits use the
+ * R*-tree margin & overlap heuristics.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class RTree<T> {
+
+    private static final int DEFAULT_MAX_ENTRIES = 9;
+
+    private final int maxEntries;
+    private final int minEntries;
+
+    private Node<T> root;
+    private int size;
+
+    private static final Comparator<Node<?>> COMPARE_MIN_X = new Comparator<Node<?>>() {
+        @Override
+        public int compare(Node<?> o1, Node<?> o2) {
+            return Double.compare(o1.minX, o2.minX);
+        }
+    };
+
+    private static final Comparator<NodeDistance<?>> COMPARE_DISTANCE = new Comparator<NodeDistance<?>>() {
+        @Override
+        public int compare(NodeDistance<?> o1, NodeDistance<?> o2) {
+            return Double.compare(o1.distance, o2.distance);
+        }
+    };
+
+    private static final Comparator<Node<?>> COMPARE_MIN_Y = new Comparator<Node<?>>() {
+        @Override
+        public int compare(Node<?> o1, Node<?> o2) {
+            return Double.compare(o1.minY, o2.minY);
+        }
+    };
+
+    public RTree() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries Maximum number of entries in a node before it is split
+     */
+    public RTree(int maxEntries) {
+        this.maxEntries = Math.max(4, maxEntries);
+        this.minEntries = Math.max(2, (int) Math.ceil(this.maxEntries * 0.4));
+        clear();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = createNode(new ArrayList<Node<T>>());
+        size = 0;
+    }
+
+    /**
+     * Insert an item with the given bounding box
+     */
+    public void insert(@NonNull T item, double minX, double minY, double maxX, double maxY) {
+        insert(createEntry(item, minX, minY, maxX, maxY), root.height - 1);
+        size++;
+    }
+
+    /**
+     * Bulk load items in the tree. This is several times faster than inserting the items one by one
+     * and produces a better packed tree when the tree is empty.
+     *
+     * @param items  Items to load
+     * @param bboxes Bounding boxes of the items as {minX, minY, maxX, maxY}
+     */
+    public void load(@NonNull List<T> items, @NonNull List<double[]> bboxes) {
+        if (items.size() != bboxes.size()) {
+            throw new IllegalArgumentException("items and bboxes should have the same size");
+        }
+
+        if (size > 0 || items.size() < minEntries) {
+            for (int i = 0; i < items.size(); i++) {
+                double[] bbox = bboxes.get(i);
+                insert(items.get(i), bbox[0], bbox[1], bbox[2], bbox[3]);
+            }
+            return;
+        }
+
+        List<Node<T>> entries = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            double[] bbox = bboxes.get(i);
+            entries.add(createEntry(items.get(i), bbox[0], bbox[1], bbox[2], bbox[3]));
+        }
+
+        root = build(entries, 0, entries.size() - 1, 0);
+        size = items.size();
+    }
+
+    /**
+     * Remove an item previously inserted with the given bounding box. Items are compared by identity.
+     *
+     * @return {@code TRUE} if the item was found and removed, {@code FALSE} otherwise
+     */
+    public boolean remove(@NonNull T item, double minX, double minY, double maxX, double maxY) {
+        List<Node<T>> path = new ArrayList<>();
+        if (findLeafPath(root, item, minX, minY, maxX, maxY, path)) {
+            Node<T> leaf = path.get(path.size() - 1);
+            for (int i = 0; i < leaf.children.size(); i++) {
+                if (leaf.children.get(i).item == item) {
+                    leaf.children.remove(i);
+                    break;
+                }
+            }
+
+            size--;
+            condense(path);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Find all the items whose bounding box intersects the given bounding box
+     *
+     * @param results List to which the items found are added
+     */
+    public void search(double minX, double minY, double maxX, double maxY, @NonNull List<T> results) {
+        if (!intersects(root, minX, minY, maxX, maxY)) {
+            return;
+        }
+
+        List<Node<T>> stack = new ArrayList<>();
+        Node<T> node = root;
+
+        while (node != null) {
+            for (int i = 0; i < node.children.size(); i++) {
+                Node<T> child = node.children.get(i);
+                if (intersects(child, minX, minY, maxX, maxY)) {
+                    if (node.leaf) {
+                        results.add(child.item);
+                    } else if (contains(minX, minY, maxX, maxY, child)) {
+                        collectAll(child, results);
+                    } else {
+                        stack.add(child);
+                    }
+                }
+            }
+
+            node = stack.isEmpty() ? null : stack.remove(stack.size() - 1);
+        }
+    }
+
+    /**
+     * Find the items whose bounding box is nearest to a point, nearest first. Nodes are visited in the
+     * order of their distance to the point so that only the branches that can hold one of the nearest
+     * items are expanded.
+     * <p>
+     * The distance is the euclidean distance to the bounding box, 0 when the point is inside it, after
+     * scaling the x distances by {@code xScale}. Pass the cosine of the latitude to get distances in
+     * degrees of latitude from longitude, latitude coordinates.
+     *
+     * @param maxDistance Maximum distance of the items found
+     * @param maxCount    Maximum number of items found
+     * @param results     List to which the items found are added
+     */
+    public void nearest(double x, double y, double xScale, double maxDistance, int maxCount, @NonNull List<T> results) {
+        if (maxCount < 1 || size == 0) {
+            return;
+        }
+
+        PriorityQueue<NodeDistance<T>> queue = new PriorityQueue<>(16, COMPARE_DISTANCE);
+        Node<T> node = root;
+        int found = 0;
+
+        while (node != null) {
+            for (int i = 0; i < node.children.size(); i++) {
+                Node<T> child = node.children.get(i);
+                double distance = distance(child, x, y, xScale);
+                if (distance <= maxDistance) {
+                    queue.add(new NodeDistance<>(child, distance, node.leaf));
+                }
+            }
+
+            // An item at the head of the queue is nearer than any item in the nodes not expanded yet
+            while (!queue.isEmpty() && queue.peek().isItem) {
+                results.add(queue.poll().node.item);
+                if (++found == maxCount) {
+                    return;
+                }
+            }
+
+            NodeDistance<T> next = queue.poll();
+            node = next != null ? next.node : null;
+        }
+    }
+
+    /**
+     * @return The bounding box of all the items as {minX, minY, maxX, maxY} or {@code NULL} if the tree is empty
+     */
+    public double[] getBounds() {
+        return size == 0 ? null : new double[]{root.minX, root.minY, root.maxX, root.maxY};
+    }
+
+    private void collectAll(Node<T> node, List<T> results) {
+        List<Node<T>> stack = new ArrayList<>();
+        while (node != null) {
+            if (node.leaf) {
+                for (int i = 0; i < node.children.size(); i++) {
+                    results.add(node.children.get(i).item);
+                }
+            } else {
+                stack.addAll(node.children);
+            }
+            node = stack.isEmpty() ? null : stack.remove(stack.size() - 1);
+        }
+    }
+
+    private boolean findLeafPath(Node<T> node, T item, double minX, double minY, double maxX, double maxY, List<Node<T>> path) {
+        path.add(node);
+
+        if (node.leaf) {
+            for (int i = 0; i < node.children.size(); i++) {
+                if (node.children.get(i).item == item) {
+                    return true;
+                }
+            }
+        } else {
+            for (int i = 0; i < node.children.size(); i++) {
+                Node<T> child = node.children.get(i);
+                if (contains(child.minX, child.minY, child.maxX, child.maxY, minX, minY, maxX, maxY)
+                        && findLeafPath(child, item, minX, minY, maxX, maxY, path)) {
+                    return true;
+                }
+            }
+        }
+
+        path.remove(path.size() - 1);
+        return false;
+    }
+
+    private void condense(List<Node<T>> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node<T> node = path.get(i);
+            if (node.children.isEmpty()) {
+                if (i > 0) {
+                    path.get(i - 1).children.remove(node);
+                } else {
+                    root = createNode(new ArrayList<Node<T>>());
+                }
+            } else {
+                calculateBounds(node);
+            }
+        }
+    }
+
+    private void insert(Node<T> entry, int level) {
+        List<Node<T>> insertPath = new ArrayList<>();
+
+        Node<T> node = chooseSubtree(entry, root, level, insertPath);
+        node.children.add(entry);
+        extend(node, entry);
+
+        // Split on node overflow & propagate upwards if necessary
+        while (level >= 0) {
+            if (insertPath.get(level).children.size() > maxEntries) {
+                split(insertPath, level);
+                level--;
+            } else {
+                break;
+            }
+        }
+
+        for (int i = level; i >= 0; i--) {
+            extend(insertPath.get(i), entry);
+        }
+    }
+
+    private Node<T> chooseSubtree(Node<T> entry, Node<T> node, int level, List<Node<T>> path) {
+        while (true) {
+            path.add(node);
+
+            if (node.leaf || path.size() - 1 == level) {
+                return node;
+            }
+
+            double minArea = Double.POSITIVE_INFINITY;
+            double minEnlargement = Double.POSITIVE_INFINITY;
+            Node<T> targetNode = null;
+
+            for (int i = 0; i < node.children.size(); i++) {
+                Node<T> child = node.children.get(i);
+                double area = area(child);
+                double enlargement = enlargedArea(entry, child) - area;
+
+                if (enlargement < minEnlargement) {
+                    minEnlargement = enlargement;
+                    minArea = area < minArea ? area : minArea;
+                    targetNode = child;
+                } else if (enlargement == minEnlargement && area < minArea) {
+                    minArea = area;
+                    targetNode = child;
+                }
+            }
+
+            node = targetNode != null ? targetNode : node.children.get(0);
+        }
+    }
+
+    private void split(List<Node<T>> insertPath, int level) {
+        Node<T> node = insertPath.get(level);
+        int count = node.children.size();
+
+        chooseSplitAxis(node, minEntries, count);
+        int splitIndex = chooseSplitIndex(node, minEntries, count);
+
+        List<Node<T>> movedChildren = new ArrayList<>(node.children.subList(splitIndex, count));
+        node.children.subList(splitIndex, count).clear();
+
+        Node<T> newNode = createNode(movedChildren);
+        newNode.height = node.height;
+        newNode.leaf = node.leaf;
+
+        calculateBounds(node);
+        calculateBounds(newNode);
+
+        if (level > 0) {
+            insertPath.get(level - 1).children.add(newNode);
+        } else {
+            List<Node<T>> rootChildren = new ArrayList<>();
+            rootChildren.add(node);
+            rootChildren.add(newNode);
+
+            root = createNode(rootChildren);
+            root.height = node.height + 1;
+            root.leaf = false;
+            calculateBounds(root);
+        }
+    }
+
+    private int chooseSplitIndex(Node<T> node, int min, int max) {
+        int index = -1;
+        double minOverlap = Double.POSITIVE_INFINITY;
+        double minArea = Double.POSITIVE_INFINITY;
+
+        for (int i = min; i <= max - min; i++) {
+            Node<T> bbox1 = distributionBounds(node, 0, i);
+            Node<T> bbox2 = distributionBounds(node, i, max);
+
+            double overlap = intersectionArea(bbox1, bbox2);
+            double area = area(bbox1) + area(bbox2);
+
+            if (overlap < minOverlap) {
+                minOverlap = overlap;
+                index = i;
+                minArea = area < minArea ? area : minArea;
+            } else if (overlap == minOverlap && area < minArea) {
+                minArea = area;
+                index = i;
+            }
+        }
+
+        return index > 0 ? index : max - min;
+    }
+
+    private void chooseSplitAxis(Node<T> node, int min, int max) {
+        double xMargin = allDistributionMargin(node, min, max, COMPARE_MIN_X);
+        double yMargin = allDistributionMargin(node, min, max, COMPARE_MIN_Y);
+
+        // The children are sorted by minY at this point, sort them again if the x axis is better
+        if (xMargin < yMargin) {
+            Collections.sort(node.children, COMPARE_MIN_X);
+        }
+    }
+
+    private double allDistributionMargin(Node<T> node, int min, int max, Comparator<Node<?>> comparator) {
+        Collections.sort(node.children, comparator);
+
+        Node<T> leftBounds = distributionBounds(node, 0, min);
+        Node<T> rightBounds = distributionBounds(node, max - min, max);
+        double margin = margin(leftBounds) + margin(rightBounds);
+
+        for (int i = min; i < max - min; i++) {
+            extend(leftBounds, node.children.get(i));
+            margin += margin(leftBounds);
+        }
+
+        for (int i = max - min - 1; i >= min; i--) {
+            extend(rightBounds, node.children.get(i));
+            margin += margin(rightBounds);
+        }
+
+        return margin;
+    }
+
+    private Node<T> build(List<Node<T>> entries, int left, int right, int height) {
+        int count = right - left + 1;
+        int nodeCapacity = maxEntries;
+
+        if (count <= nodeCapacity) {
+            Node<T> node = createNode(new ArrayList<>(entries.subList(left, right + 1)));
+            calculateBounds(node);
+            return node;
+        }
+
+        if (height == 0) {
+            // Target height of the bulk-loaded tree & root entries to maximize storage utilization
+            height = (int) Math.ceil(Math.log(count) / Math.log(nodeCapacity));
+            nodeCapacity = (int) Math.ceil(count / Math.pow(nodeCapacity, height - 1));
+        }
+
+        Node<T> node = createNode(new ArrayList<Node<T>>());
+        node.leaf = false;
+        node.height = height;
+
+        int verticalSliceSize = (int) Math.ceil((double) count / nodeCapacity);
+        int horizontalSliceSize = verticalSliceSize * (int) Math.ceil(Math.sqrt(nodeCapacity));
+
+        Collections.sort(entries.subList(left, right + 1), COMPARE_MIN_X);
+
+        for (int i = left; i <= right; i += horizontalSliceSize) {
+            int right2 = Math.min(i + horizontalSliceSize - 1, right);
+            Collections.sort(entries.subList(i, right2 + 1), COMPARE_MIN_Y);
+
+            for (int j = i; j <= right2; j += verticalSliceSize) {
+                int right3 = Math.min(j + verticalSliceSize - 1, right2);
+                node.children.add(build(entries, j, right3, height - 1));
+            }
+        }
+
+        calculateBounds(node);
+        return node;
+    }
+
+    private Node<T> distributionBounds(Node<T> node, int from, int to) {
+        Node<T> bounds = createNode(null);
+        for (int i = from; i < to; i++) {
+            extend(bounds, node.children.get(i));
+        }
+
+        return bounds;
+    }
+
+    private void calculateBounds(Node<T> node) {
+        node.minX = Double.POSITIVE_INFINITY;
+        node.minY = Double.POSITIVE_INFINITY;
+        node.maxX = Double.NEGATIVE_INFINITY;
+        node.maxY = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < node.children.size(); i++) {
+            extend(node, node.children.get(i));
+        }
+    }
+
+    private static void extend(Node<?> a, Node<?> b) {
+        a.minX = Math.min(a.minX, b.minX);
+        a.minY = Math.min(a.minY, b.minY);
+        a.maxX = Math.max(a.maxX, b.maxX);
+        a.maxY = Math.max(a.maxY, b.maxY);
+    }
+
+    private static double area(Node<?> a) {
+        return (a.maxX - a.minX) * (a.maxY - a.minY);
+    }
+
+    private static double margin(Node<?> a) {
+        return (a.maxX - a.minX) + (a.maxY - a.minY);
+    }
+
+    private static double enlargedArea(Node<?> a, Node<?> b) {
+        return (Math.max(b.maxX, a.maxX) - Math.min(b.minX, a.minX))
+                * (Math.max(b.maxY, a.maxY) - Math.min(b.minY, a.minY));
+    }
+
+    private static double intersectionArea(Node<?> a, Node<?> b) {
+        double minX = Math.max(a.minX, b.minX);
+        double minY = Math.max(a.minY, b.minY);
+        double maxX = Math.min(a.maxX, b.maxX);
+        double maxY = Math.min(a.maxY, b.maxY);
+
+        return Math.max(0, maxX - minX) * Math.max(0, maxY - minY);
+    }
+
+    private static boolean contains(double minX, double minY, double maxX, double maxY, Node<?> b) {
+        return contains(minX, minY, maxX, maxY, b.minX, b.minY, b.maxX, b.maxY);
+    }
+
+    private static boolean contains(double aMinX, double aMinY, double aMaxX, double aMaxY,
+                                    double bMinX, double bMinY, double bMaxX, double bMaxY) {
+        return aMinX <= bMinX && aMinY <= bMinY && bMaxX <= aMaxX && bMaxY <= aMaxY;
+    }
+
+    private static double distance(Node<?> a, double x, double y, double xScale) {
+        double dx = Math.max(0, Math.max(a.minX - x, x - a.maxX)) * xScale;
+        double dy = Math.max(0, Math.max(a.minY - y, y - a.maxY));
+
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static boolean intersects(Node<?> a, double minX, double minY, double maxX, double maxY) {
+        return minX <= a.maxX && minY <= a.maxY && maxX >= a.minX && maxY >= a.minY;
+    }
+
+    private Node<T> createNode(List<Node<T>> children) {
+        Node<T> node = new Node<>();
+        node.children = children;
+        node.leaf = true;
+        node.height = 1;
+        node.minX = Double.POSITIVE_INFINITY;
+        node.minY = Double.POSITIVE_INFINITY;
+        node.maxX = Double.NEGATIVE_INFINITY;
+        node.maxY = Double.NEGATIVE_INFINITY;
+
+        return node;
+    }
+
+    private Node<T> createEntry(T item, double minX, double minY, double maxX, double maxY) {
+        Node<T> entry = new Node<>();
+        entry.item = item;
+        entry.minX = minX;
+        entry.minY = minY;
+        entry.maxX = maxX;
+        entry.maxY = maxY;
+
+        return entry;
+    }
+
+    /**
+     * A node of the tree. Item entries are nodes without children holding an item
+     */
+    static class Node<T> {
+        double minX;
+        double minY;
+        double maxX;
+        double maxY;
+
+        boolean leaf;
+        int height;
+
+        List<Node<T>> children;
+        T item;
+    }
+
+    private static class NodeDistance<T> {
+        private final Node<T> node;
+        private final double distance;
+        private final boolean isItem;
+
+        private NodeDistance(Node<T> node, double distance, boolean isItem) {
+            this.node = node;
+            this.distance = distance;
+            this.isItem = isItem;
+        }
+    }
+}
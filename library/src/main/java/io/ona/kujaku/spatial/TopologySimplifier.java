@@ -0,0 +1,608 @@
+package io.ona.kujaku.spatial;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Simplifies polygons & lines at several tolerances without opening gaps or overlaps between features
+ * sharing a border.
+ * <p>
+ * The rings & lines are first cut into arcs at their junctions: the vertices where features stop sharing
+ * their border. A border shared by two features is then the same arc in both and is simplified once, so
+ * both features keep exactly the same simplified border. The arcs are simplified with Douglas-Peucker
+ * once for all the tolerances: every vertex gets the tolerance below which it is kept.
+ * <p>
+ * The simplified arcs are cached until the next call to {@link #simplify(FeatureCollection)} so that, when
+ * a few features of a collection change, only the arcs of the changed features & of the features sharing
+ * a border with them are simplified again.
+ * <p>
+ * The tolerances are in degrees, see {@link #getTolerance(int, double)}. Features which are not polygons or
+ * lines are kept as they are.
+ */
+public class TopologySimplifier {
+
+    private final double[] tolerances;
+    private final double minTolerance;
+
+    private Map<Arc, double[]> arcImportances = new HashMap<>();
+
+    private int simplifiedArcCount;
+    private int reusedArcCount;
+
+    /**
+     * @param tolerances The tolerance of each simplification level in degrees
+     */
+    public TopologySimplifier(@NonNull double... tolerances) {
+        if (tolerances.length == 0) {
+            throw new IllegalArgumentException("At least one tolerance is required");
+        }
+
+        double minTolerance = Double.MAX_VALUE;
+        for (double tolerance : tolerances) {
+            if (tolerance <= 0) {
+                throw new IllegalArgumentException("The tolerances should be positive");
+            }
+            minTolerance = Math.min(minTolerance, tolerance);
+        }
+
+        this.tolerances = tolerances.clone();
+        this.minTolerance = minTolerance;
+    }
+
+    /**
+     * @param zoom   The highest zoom at which the simplified geometries are drawn
+     * @param pixels The tolerance in pixels of 512 pixels tiles
+     * @return The tolerance in degrees
+     */
+    public static double getTolerance(int zoom, double pixels) {
+        return pixels * 360 / (512 * Math.pow(2, zoom));
+    }
+
+    /**
+     * Simplify the features at each tolerance
+     *
+     * @param featureCollection
+     * @return The simplified features of each tolerance, in the order of the tolerances
+     */
+    @NonNull
+    public synchronized List<FeatureCollection> simplify(@NonNull FeatureCollection featureCollection) {
+        List<Feature> features = featureCollection.features() != null ? featureCollection.features() : new ArrayList<Feature>();
+
+        Map<Vertex, VertexNeighbors> topology = new HashMap<>();
+        for (Feature feature : features) {
+            for (List<Point> part : getParts(feature.geometry())) {
+                addToTopology(part, topology);
+            }
+        }
+
+        Map<Arc, double[]> previousArcImportances = arcImportances;
+        arcImportances = new HashMap<>();
+        simplifiedArcCount = 0;
+        reusedArcCount = 0;
+
+        List<List<Feature>> levels = new ArrayList<>(tolerances.length);
+        for (int i = 0; i < tolerances.length; i++) {
+            levels.add(new ArrayList<Feature>(features.size()));
+        }
+
+        for (Feature feature : features) {
+            Geometry[] geometries = simplify(feature.geometry(), topology, previousArcImportances);
+            for (int i = 0; i < tolerances.length; i++) {
+                levels.get(i).add(geometries == null ? feature
+                        : Feature.fromGeometry(geometries[i], feature.properties(), feature.id()));
+            }
+        }
+
+        List<FeatureCollection> featureCollections = new ArrayList<>(tolerances.length);
+        for (List<Feature> level : levels) {
+            featureCollections.add(FeatureCollection.fromFeatures(level));
+        }
+
+        return featureCollections;
+    }
+
+    /**
+     * @return The number of arcs simplified by the last call to {@link #simplify(FeatureCollection)}
+     */
+    public int getSimplifiedArcCount() {
+        return simplifiedArcCount;
+    }
+
+    /**
+     * @return The number of arcs reused from the previous call by the last call to {@link #simplify(FeatureCollection)}
+     */
+    public int getReusedArcCount() {
+        return reusedArcCount;
+    }
+
+    /**
+     * @param geometry
+     * @param topology
+     * @param previousArcImportances
+     * @return The simplified geometry of each tolerance or {@code NULL} if the geometry is not simplified
+     */
+    @Nullable
+    private Geometry[] simplify(@Nullable Geometry geometry, @NonNull Map<Vertex, VertexNeighbors> topology
+            , @NonNull Map<Arc, double[]> previousArcImportances) {
+        Geometry[] geometries = new Geometry[tolerances.length];
+
+        if (geometry instanceof Polygon) {
+            List<List<List<Point>>> rings = simplifyParts(((Polygon) geometry).coordinates(), true, topology, previousArcImportances);
+            for (int i = 0; i < tolerances.length; i++) {
+                geometries[i] = Polygon.fromLngLats(rings.get(i));
+            }
+        } else if (geometry instanceof MultiPolygon) {
+            List<List<List<List<Point>>>> polygons = new ArrayList<>(tolerances.length);
+            for (int i = 0; i < tolerances.length; i++) {
+                polygons.add(new ArrayList<List<List<Point>>>());
+            }
+
+            for (List<List<Point>> polygon : ((MultiPolygon) geometry).coordinates()) {
+                List<List<List<Point>>> rings = simplifyParts(polygon, true, topology, previousArcImportances);
+                for (int i = 0; i < tolerances.length; i++) {
+                    polygons.get(i).add(rings.get(i));
+                }
+            }
+
+            for (int i = 0; i < tolerances.length; i++) {
+                geometries[i] = MultiPolygon.fromLngLats(polygons.get(i));
+            }
+        } else if (geometry instanceof LineString) {
+            List<List<List<Point>>> lines = simplifyParts(Arrays.asList(((LineString) geometry).coordinates())
+                    , false, topology, previousArcImportances);
+            for (int i = 0; i < tolerances.length; i++) {
+                geometries[i] = LineString.fromLngLats(lines.get(i).get(0));
+            }
+        } else if (geometry instanceof MultiLineString) {
+            List<List<List<Point>>> lines = simplifyParts(((MultiLineString) geometry).coordinates(), false, topology, previousArcImportances);
+            for (int i = 0; i < tolerances.length; i++) {
+                geometries[i] = MultiLineString.fromLngLats(lines.get(i));
+            }
+        } else {
+            return null;
+        }
+
+        return geometries;
+    }
+
+    /**
+     * @param parts
+     * @param isRing
+     * @param topology
+     * @param previousArcImportances
+     * @return The simplified parts of each tolerance
+     */
+    @NonNull
+    private List<List<List<Point>>> simplifyParts(@NonNull List<List<Point>> parts, boolean isRing
+            , @NonNull Map<Vertex, VertexNeighbors> topology, @NonNull Map<Arc, double[]> previousArcImportances) {
+        List<List<List<Point>>> simplifiedParts = new ArrayList<>(tolerances.length);
+        for (int i = 0; i < tolerances.length; i++) {
+            simplifiedParts.add(new ArrayList<List<Point>>(parts.size()));
+        }
+
+        for (List<Point> part : parts) {
+            List<List<Point>> simplifiedPart = isRing ? simplifyRing(part, topology, previousArcImportances)
+                    : simplifyLine(part, topology, previousArcImportances);
+            for (int i = 0; i < tolerances.length; i++) {
+                simplifiedParts.get(i).add(simplifiedPart.get(i));
+            }
+        }
+
+        return simplifiedParts;
+    }
+
+    @NonNull
+    private List<List<Point>> simplifyRing(@NonNull List<Point> ring, @NonNull Map<Vertex, VertexNeighbors> topology
+            , @NonNull Map<Arc, double[]> previousArcImportances) {
+        int vertexCount = getRingVertexCount(ring);
+        List<List<Point>> simplifiedRings = createParts();
+        if (vertexCount < 3) {
+            for (List<Point> simplifiedRing : simplifiedRings) {
+                simplifiedRing.addAll(ring);
+            }
+            return simplifiedRings;
+        }
+
+        List<Integer> junctions = new ArrayList<>();
+        for (int i = 0; i < vertexCount; i++) {
+            if (topology.get(new Vertex(ring.get(i))).isJunction) {
+                junctions.add(i);
+            }
+        }
+
+        if (junctions.isEmpty()) {
+            // The ring does not touch any other ring, start it at its lowest vertex so that identical rings
+            // are simplified the same way
+            int start = 0;
+            for (int i = 1; i < vertexCount; i++) {
+                if (compare(ring.get(i), ring.get(start)) < 0) {
+                    start = i;
+                }
+            }
+
+            appendArc(ring, vertexCount, start, start + vertexCount, simplifiedRings, previousArcImportances);
+        } else {
+            for (int i = 0; i < junctions.size(); i++) {
+                int from = junctions.get(i);
+                int to = i + 1 < junctions.size() ? junctions.get(i + 1) : junctions.get(0) + vertexCount;
+                appendArc(ring, vertexCount, from, to, simplifiedRings, previousArcImportances);
+            }
+        }
+
+        return simplifiedRings;
+    }
+
+    @NonNull
+    private List<List<Point>> simplifyLine(@NonNull List<Point> line, @NonNull Map<Vertex, VertexNeighbors> topology
+            , @NonNull Map<Arc, double[]> previousArcImportances) {
+        List<List<Point>> simplifiedLines = createParts();
+        if (line.size() < 3) {
+            for (List<Point> simplifiedLine : simplifiedLines) {
+                simplifiedLine.addAll(line);
+            }
+            return simplifiedLines;
+        }
+
+        int from = 0;
+        for (int i = 1; i < line.size(); i++) {
+            if (i == line.size() - 1 || topology.get(new Vertex(line.get(i))).isJunction) {
+                appendArc(line, line.size(), from, i, simplifiedLines, previousArcImportances);
+                from = i;
+            }
+        }
+
+        return simplifiedLines;
+    }
+
+    /**
+     * Simplify the arc between two vertices of a part & append it to the simplified parts, without its
+     * first vertex if the simplified parts already end with it
+     *
+     * @param part
+     * @param vertexCount            Number of vertices of the part, without the closing vertex of rings
+     * @param from                   Index of the first vertex of the arc
+     * @param to                     Index of the last vertex of the arc, modulo {@code vertexCount}
+     * @param simplifiedParts
+     * @param previousArcImportances
+     */
+    private void appendArc(@NonNull List<Point> part, int vertexCount, int from, int to
+            , @NonNull List<List<Point>> simplifiedParts, @NonNull Map<Arc, double[]> previousArcImportances) {
+        int length = to - from + 1;
+        Point[] points = new Point[length];
+        for (int i = 0; i < length; i++) {
+            points[i] = part.get((from + i) % vertexCount);
+        }
+
+        // Shared arcs are traversed in opposite directions by their features, simplify them in a single direction
+        boolean isReversed = length > 2 && (compare(points[0], points[length - 1]) > 0
+                || (compare(points[0], points[length - 1]) == 0 && compare(points[1], points[length - 2]) > 0));
+        if (isReversed) {
+            reverse(points);
+        }
+
+        double[] coordinates = new double[length * 2];
+        for (int i = 0; i < length; i++) {
+            coordinates[2 * i] = points[i].longitude();
+            coordinates[2 * i + 1] = points[i].latitude();
+        }
+
+        Arc arc = new Arc(coordinates);
+        double[] importances = arcImportances.get(arc);
+        if (importances == null) {
+            importances = previousArcImportances.get(arc);
+            if (importances == null) {
+                importances = getImportances(coordinates);
+                simplifiedArcCount++;
+            } else {
+                reusedArcCount++;
+            }
+            arcImportances.put(arc, importances);
+        }
+
+        for (int level = 0; level < tolerances.length; level++) {
+            List<Point> simplifiedPart = simplifiedParts.get(level);
+            int start = simplifiedPart.isEmpty() ? 0 : 1;
+
+            for (int i = start; i < length; i++) {
+                int index = isReversed ? length - 1 - i : i;
+                if (importances[index] > tolerances[level]) {
+                    simplifiedPart.add(points[index]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Douglas-Peucker simplification of an arc down to the smallest tolerance, recording for each vertex the
+     * largest tolerance at which it is kept
+     *
+     * @param coordinates
+     * @return The importance of each vertex, the end vertices are always kept
+     */
+    @NonNull
+    private double[] getImportances(@NonNull double[] coordinates) {
+        int length = coordinates.length / 2;
+        double[] importances = new double[length];
+        importances[0] = Double.POSITIVE_INFINITY;
+        importances[length - 1] = Double.POSITIVE_INFINITY;
+
+        boolean isClosed = length > 3 && coordinates[0] == coordinates[2 * (length - 1)]
+                && coordinates[1] == coordinates[2 * (length - 1) + 1];
+        if (!isClosed) {
+            simplify(coordinates, 0, length - 1, Double.POSITIVE_INFINITY, importances);
+            return importances;
+        }
+
+        // Closed arcs are split at their vertex farthest from the start & keep at least 4 vertices
+        int farthest = 1;
+        double farthestDistance = -1;
+        for (int i = 1; i < length - 1; i++) {
+            double distance = squareDistance(coordinates, i, 0);
+            if (distance > farthestDistance) {
+                farthest = i;
+                farthestDistance = distance;
+            }
+        }
+
+        importances[farthest] = Double.POSITIVE_INFINITY;
+        simplify(coordinates, 0, farthest, Double.POSITIVE_INFINITY, importances);
+        simplify(coordinates, farthest, length - 1, Double.POSITIVE_INFINITY, importances);
+
+        int mostImportant = -1;
+        for (int i = 1; i < length - 1; i++) {
+            if (i != farthest && (mostImportant == -1 || importances[i] > importances[mostImportant])) {
+                mostImportant = i;
+            }
+        }
+
+        if (mostImportant != -1) {
+            importances[mostImportant] = Double.POSITIVE_INFINITY;
+        }
+
+        return importances;
+    }
+
+    private void simplify(@NonNull double[] coordinates, int first, int last, double parentImportance
+            , @NonNull double[] importances) {
+        int[] stack = new int[64];
+        double[] parentImportances = new double[32];
+        int stackSize = 0;
+
+        stack[0] = first;
+        stack[1] = last;
+        parentImportances[0] = parentImportance;
+        stackSize++;
+
+        while (stackSize > 0) {
+            stackSize--;
+            int segmentFirst = stack[2 * stackSize];
+            int segmentLast = stack[2 * stackSize + 1];
+            double segmentImportance = parentImportances[stackSize];
+
+            double maxDistance = -1;
+            int index = -1;
+            for (int i = segmentFirst + 1; i < segmentLast; i++) {
+                double distance = segmentDistance(coordinates, i, segmentFirst, segmentLast);
+                if (distance > maxDistance) {
+                    index = i;
+                    maxDistance = distance;
+                }
+            }
+
+            if (index == -1 || maxDistance <= minTolerance) {
+                continue;
+            }
+
+            // A vertex is never more important than the vertices it was split from
+            double importance = Math.min(maxDistance, segmentImportance);
+            importances[index] = importance;
+
+            if (stackSize + 2 > parentImportances.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                parentImportances = Arrays.copyOf(parentImportances, parentImportances.length * 2);
+            }
+
+            stack[2 * stackSize] = segmentFirst;
+            stack[2 * stackSize + 1] = index;
+            parentImportances[stackSize] = importance;
+            stackSize++;
+
+            stack[2 * stackSize] = index;
+            stack[2 * stackSize + 1] = segmentLast;
+            parentImportances[stackSize] = importance;
+            stackSize++;
+        }
+    }
+
+    /**
+     * @return The distance between a vertex & the segment between two other vertices
+     */
+    private static double segmentDistance(@NonNull double[] coordinates, int index, int first, int last) {
+        double x = coordinates[2 * first];
+        double y = coordinates[2 * first + 1];
+        double dx = coordinates[2 * last] - x;
+        double dy = coordinates[2 * last + 1] - y;
+
+        if (dx != 0 || dy != 0) {
+            double t = ((coordinates[2 * index] - x) * dx + (coordinates[2 * index + 1] - y) * dy) / (dx * dx + dy * dy);
+            if (t > 1) {
+                x = coordinates[2 * last];
+                y = coordinates[2 * last + 1];
+            } else if (t > 0) {
+                x += dx * t;
+                y += dy * t;
+            }
+        }
+
+        dx = coordinates[2 * index] - x;
+        dy = coordinates[2 * index + 1] - y;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static double squareDistance(@NonNull double[] coordinates, int i, int j) {
+        double dx = coordinates[2 * i] - coordinates[2 * j];
+        double dy = coordinates[2 * i + 1] - coordinates[2 * j + 1];
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Record the neighbors of every vertex of a part. A vertex is a junction if it does not have the same
+     * neighbors in all the parts it belongs to, or if it ends a line
+     *
+     * @param part
+     * @param topology
+     */
+    private void addToTopology(@NonNull List<Point> part, @NonNull Map<Vertex, VertexNeighbors> topology) {
+        boolean isRing = part.size() > 3 && compare(part.get(0), part.get(part.size() - 1)) == 0;
+        int vertexCount = isRing ? part.size() - 1 : part.size();
+
+        for (int i = 0; i < vertexCount; i++) {
+            Vertex vertex = new Vertex(part.get(i));
+            Vertex previous = isRing ? new Vertex(part.get((i - 1 + vertexCount) % vertexCount))
+                    : i > 0 ? new Vertex(part.get(i - 1)) : null;
+            Vertex next = isRing ? new Vertex(part.get((i + 1) % vertexCount))
+                    : i < vertexCount - 1 ? new Vertex(part.get(i + 1)) : null;
+
+            VertexNeighbors neighbors = topology.get(vertex);
+            if (neighbors == null) {
+                topology.put(vertex, new VertexNeighbors(previous, next, !isRing && (i == 0 || i == vertexCount - 1)));
+            } else if (!neighbors.isJunction && !neighbors.isSame(previous, next)) {
+                neighbors.isJunction = true;
+            }
+        }
+    }
+
+    @NonNull
+    private List<List<Point>> getParts(@Nullable Geometry geometry) {
+        List<List<Point>> parts = new ArrayList<>();
+
+        if (geometry instanceof Polygon) {
+            parts.addAll(((Polygon) geometry).coordinates());
+        } else if (geometry instanceof MultiPolygon) {
+            for (List<List<Point>> polygon : ((MultiPolygon) geometry).coordinates()) {
+                parts.addAll(polygon);
+            }
+        } else if (geometry instanceof LineString) {
+            parts.add(((LineString) geometry).coordinates());
+        } else if (geometry instanceof MultiLineString) {
+            parts.addAll(((MultiLineString) geometry).coordinates());
+        }
+
+        return parts;
+    }
+
+    @NonNull
+    private List<List<Point>> createParts() {
+        List<List<Point>> parts = new ArrayList<>(tolerances.length);
+        for (int i = 0; i < tolerances.length; i++) {
+            parts.add(new ArrayList<Point>());
+        }
+
+        return parts;
+    }
+
+    private static int getRingVertexCount(@NonNull List<Point> ring) {
+        return ring.size() > 1 && compare(ring.get(0), ring.get(ring.size() - 1)) == 0 ? ring.size() - 1 : ring.size();
+    }
+
+    private static int compare(@NonNull Point point1, @NonNull Point point2) {
+        int comparison = Double.compare(point1.longitude(), point2.longitude());
+        return comparison != 0 ? comparison : Double.compare(point1.latitude(), point2.latitude());
+    }
+
+    private static void reverse(@NonNull Point[] points) {
+        for (int i = 0, j = points.length - 1; i < j; i++, j--) {
+            Point point = points[i];
+            points[i] = points[j];
+            points[j] = point;
+        }
+    }
+
+    private static class Vertex {
+
+        private final double x;
+        private final double y;
+
+        private Vertex(@NonNull Point point) {
+            this.x = point.longitude();
+            this.y = point.latitude();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Vertex)) {
+                return false;
+            }
+
+            Vertex vertex = (Vertex) o;
+            return x == vertex.x && y == vertex.y;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(x) * 31 + Double.doubleToLongBits(y);
+            return (int) (bits ^ (bits >>> 32));
+        }
+    }
+
+    private static class VertexNeighbors {
+
+        private final Vertex previous;
+        private final Vertex next;
+        private boolean isJunction;
+
+        private VertexNeighbors(@Nullable Vertex previous, @Nullable Vertex next, boolean isJunction) {
+            this.previous = previous;
+            this.next = next;
+            this.isJunction = isJunction;
+        }
+
+        private boolean isSame(@Nullable Vertex otherPrevious, @Nullable Vertex otherNext) {
+            return (equals(previous, otherPrevious) && equals(next, otherNext))
+                    || (equals(previous, otherNext) && equals(next, otherPrevious));
+        }
+
+        private static boolean equals(@Nullable Vertex vertex1, @Nullable Vertex vertex2) {
+            return vertex1 == null ? vertex2 == null : vertex1.equals(vertex2);
+        }
+    }
+
+    /**
+     * The coordinates of an arc, in the direction it is simplified in
+     */
+    private static class Arc {
+
+        private final double[] coordinates;
+        private final int hashCode;
+
+        private Arc(@NonNull double[] coordinates) {
+            this.coordinates = coordinates;
+            this.hashCode = Arrays.hashCode(coordinates);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Arc && hashCode == ((Arc) o).hashCode && Arrays.equals(coordinates, ((Arc) o).coordinates);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
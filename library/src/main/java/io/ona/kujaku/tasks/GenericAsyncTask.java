@@ -10,8 +10,11 @@ import io.ona.kujaku.utils.LogUtil;
 
 /**
  * Created by Ephraim Kigamba - ekigamba@ona.io on 03/10/2018
+ *
+ * @deprecated Use {@link TaskScheduler} which bounds the number of worker threads and supersedes
+ * outdated tasks
  */
-
+@Deprecated
 public class GenericAsyncTask extends AsyncTask<Void, Void, Object[]> {
 
     private static final String TAG = GenericAsyncTask.class.getName();
@@ -0,0 +1,402 @@
+package io.ona.kujaku.tasks;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.ona.kujaku.callables.AsyncTaskCallable;
+import io.ona.kujaku.listeners.OnFinishedListener;
+import io.ona.kujaku.utils.LogUtil;
+
+/**
+ * Library-wide scheduler running {@link AsyncTaskCallable}s on a bounded pool of background threads
+ * and delivering their results to an {@link OnFinishedListener} on the main thread. It replaces
+ * {@link GenericAsyncTask}.
+ * <p>
+ * Tasks are run by {@link Priority} then in submission order. Tasks submitted with the same key follow
+ * the "latest wins" rule: submitting a task supersedes the previous task of the key, which is dropped if
+ * it has not started and whose result is discarded otherwise. A burst of submissions for a key therefore
+ * results in at most the running task and the latest one being computed and only the latest result being
+ * delivered, in order. Superseded and cancelled tasks do not notify their listener.
+ */
+public class TaskScheduler {
+
+    private static final String TAG = TaskScheduler.class.getName();
+
+    public enum Priority {
+        /**
+         * Work whose result is waited for by the user eg. layer features
+         */
+        USER_VISIBLE,
+        /**
+         * Work which can wait eg. refreshing a cache. The priority only orders the queued tasks, long running
+         * work such as downloads should not be submitted since it holds a thread until it is done
+         */
+        BACKGROUND
+    }
+
+    private static final int MAX_POOL_SIZE = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static TaskScheduler instance;
+    private static ExecutorService computationExecutor;
+
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler;
+
+    private final Map<String, Task> latestTasks = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong supersededCount = new AtomicLong();
+    private final AtomicLong totalQueueTimeMillis = new AtomicLong();
+    private final AtomicLong totalExecutionTimeMillis = new AtomicLong();
+    private final AtomicLong startedCount = new AtomicLong();
+
+    public static synchronized TaskScheduler getInstance() {
+        if (instance == null) {
+            int poolSize = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, MAX_POOL_SIZE));
+            instance = new TaskScheduler(poolSize, new Handler(Looper.getMainLooper()));
+        }
+
+        return instance;
+    }
+
+    /**
+     * Executor shared by the CPU-bound work split in parallel chunks, eg. sorting or label placement.
+     * It is bounded to the number of processors, at most {@link #MAX_POOL_SIZE} threads, & its threads
+     * stop when idle. Chunks submitted while all the threads are busy wait in the queue, so the caller
+     * should wait for its chunks from a thread which is not one of the executor threads
+     *
+     * @return the executor, created on first use
+     */
+    @NonNull
+    public static synchronized ExecutorService getComputationExecutor() {
+        if (computationExecutor == null) {
+            int poolSize = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_POOL_SIZE));
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS
+                    , new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "kujaku-computation-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            computationExecutor = executor;
+        }
+
+        return computationExecutor;
+    }
+
+    @VisibleForTesting
+    TaskScheduler(int poolSize, @NonNull Handler mainHandler) {
+        this.mainHandler = mainHandler;
+
+        executor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS
+                , new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "kujaku-task-" + threadCount.incrementAndGet());
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Submit a {@link Priority#USER_VISIBLE} task without a key
+     *
+     * @param callable
+     * @param onFinishedListener
+     * @return
+     */
+    @NonNull
+    public Task submit(@NonNull AsyncTaskCallable callable, @Nullable OnFinishedListener onFinishedListener) {
+        return submit(null, Priority.USER_VISIBLE, callable, onFinishedListener);
+    }
+
+    /**
+     * Submit a task
+     *
+     * @param key                Key of the task, the task supersedes the previous task with the same key.
+     *                           {@code NULL} for independent tasks
+     * @param priority
+     * @param callable           The work to perform on a background thread
+     * @param onFinishedListener Called on the main thread with the result or the error
+     * @return
+     */
+    @NonNull
+    public Task submit(@Nullable String key, @NonNull Priority priority, @NonNull AsyncTaskCallable callable
+            , @Nullable OnFinishedListener onFinishedListener) {
+        Task task = new Task(key, priority, sequence.getAndIncrement(), callable, onFinishedListener);
+        submittedCount.incrementAndGet();
+
+        if (key != null) {
+            Task previousTask;
+            synchronized (latestTasks) {
+                previousTask = latestTasks.put(key, task);
+            }
+
+            if (previousTask != null && previousTask.supersede()) {
+                executor.remove(previousTask);
+                supersededCount.incrementAndGet();
+            }
+        }
+
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Cancel the latest task of the key, its listener is not notified
+     *
+     * @param key
+     */
+    public void cancel(@NonNull String key) {
+        Task task;
+        synchronized (latestTasks) {
+            task = latestTasks.remove(key);
+        }
+
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * @return The number of tasks waiting for a thread
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @NonNull
+    public Metrics getMetrics() {
+        long started = startedCount.get();
+        long finished = completedCount.get() + failedCount.get();
+
+        return new Metrics(getQueueDepth(), executor.getActiveCount(), submittedCount.get(), completedCount.get()
+                , failedCount.get(), supersededCount.get()
+                , started > 0 ? (double) totalQueueTimeMillis.get() / started : 0
+                , finished > 0 ? (double) totalExecutionTimeMillis.get() / finished : 0);
+    }
+
+    private void onTaskFinished(@NonNull Task task) {
+        if (task.key != null) {
+            synchronized (latestTasks) {
+                if (latestTasks.get(task.key) == task) {
+                    latestTasks.remove(task.key);
+                }
+            }
+        }
+    }
+
+    public class Task implements Runnable, Comparable<Task> {
+
+        private static final int STATE_ACTIVE = 0;
+        private static final int STATE_SUPERSEDED = 1;
+        private static final int STATE_CANCELLED = 2;
+
+        private final String key;
+        private final Priority priority;
+        private final long sequenceNumber;
+        private final AsyncTaskCallable callable;
+        private final OnFinishedListener onFinishedListener;
+        private final long submitTimeMillis;
+
+        private final AtomicInteger state = new AtomicInteger(STATE_ACTIVE);
+
+        private Task(@Nullable String key, @NonNull Priority priority, long sequenceNumber
+                , @NonNull AsyncTaskCallable callable, @Nullable OnFinishedListener onFinishedListener) {
+            this.key = key;
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+            this.callable = callable;
+            this.onFinishedListener = onFinishedListener;
+            this.submitTimeMillis = System.currentTimeMillis();
+        }
+
+        @Override
+        public void run() {
+            if (state.get() != STATE_ACTIVE) {
+                return;
+            }
+
+            long startTimeMillis = System.currentTimeMillis();
+            startedCount.incrementAndGet();
+            totalQueueTimeMillis.addAndGet(startTimeMillis - submitTimeMillis);
+
+            Object[] result = null;
+            Exception exception = null;
+            try {
+                result = callable.call();
+            } catch (Exception e) {
+                LogUtil.e(TAG, e);
+                exception = e;
+            }
+
+            totalExecutionTimeMillis.addAndGet(System.currentTimeMillis() - startTimeMillis);
+            if (exception == null) {
+                completedCount.incrementAndGet();
+            } else {
+                failedCount.incrementAndGet();
+            }
+
+            final Object[] finalResult = result;
+            final Exception finalException = exception;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onTaskFinished(Task.this);
+
+                    // The task might have been superseded or cancelled while running
+                    if (state.get() != STATE_ACTIVE || onFinishedListener == null) {
+                        return;
+                    }
+
+                    if (finalException == null) {
+                        onFinishedListener.onSuccess(finalResult);
+                    } else {
+                        onFinishedListener.onError(finalException);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Cancel the task. Like a superseded task, it does not notify its listener since cancelling is
+         * requested by the caller and is not an error
+         */
+        public void cancel() {
+            if (state.compareAndSet(STATE_ACTIVE, STATE_CANCELLED)) {
+                executor.remove(this);
+                onTaskFinished(this);
+            }
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        public boolean isSuperseded() {
+            return state.get() == STATE_SUPERSEDED;
+        }
+
+        @Nullable
+        public String getKey() {
+            return key;
+        }
+
+        @NonNull
+        public Priority getPriority() {
+            return priority;
+        }
+
+        private boolean supersede() {
+            return state.compareAndSet(STATE_ACTIVE, STATE_SUPERSEDED);
+        }
+
+        @Override
+        public int compareTo(@NonNull Task other) {
+            if (priority != other.priority) {
+                return priority.ordinal() - other.priority.ordinal();
+            }
+
+            return sequenceNumber < other.sequenceNumber ? -1 : (sequenceNumber == other.sequenceNumber ? 0 : 1);
+        }
+    }
+
+    /**
+     * Snapshot of the scheduler metrics
+     */
+    public static class Metrics {
+
+        private final int queueDepth;
+        private final int activeCount;
+        private final long submittedCount;
+        private final long completedCount;
+        private final long failedCount;
+        private final long supersededCount;
+        private final double averageQueueTimeMillis;
+        private final double averageExecutionTimeMillis;
+
+        private Metrics(int queueDepth, int activeCount, long submittedCount, long completedCount, long failedCount
+                , long supersededCount, double averageQueueTimeMillis, double averageExecutionTimeMillis) {
+            this.queueDepth = queueDepth;
+            this.activeCount = activeCount;
+            this.submittedCount = submittedCount;
+            this.completedCount = completedCount;
+            this.failedCount = failedCount;
+            this.supersededCount = supersededCount;
+            this.averageQueueTimeMillis = averageQueueTimeMillis;
+            this.averageExecutionTimeMillis = averageExecutionTimeMillis;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getActiveCount() {
+            return activeCount;
+        }
+
+        public long getSubmittedCount() {
+            return submittedCount;
+        }
+
+        public long getCompletedCount() {
+            return completedCount;
+        }
+
+        public long getFailedCount() {
+            return failedCount;
+        }
+
+        public long getSupersededCount() {
+            return supersededCount;
+        }
+
+        /**
+         * @return The average time tasks waited in the queue before running
+         */
+        public double getAverageQueueTimeMillis() {
+            return averageQueueTimeMillis;
+        }
+
+        /**
+         * @return The average time tasks took to run
+         */
+        public double getAverageExecutionTimeMillis() {
+            return averageExecutionTimeMillis;
+        }
+    }
+}
@@ -7,18 +7,25 @@ import com.mapbox.geojson.Feature;
 import com.mapbox.geojson.FeatureCollection;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 import io.ona.kujaku.comparisons.Comparison;
 import io.ona.kujaku.comparisons.EqualToComparison;
+import io.ona.kujaku.comparisons.FeaturePredicate;
+import io.ona.kujaku.comparisons.FeaturePredicates;
+import io.ona.kujaku.comparisons.IndexedFeaturePredicate;
 import io.ona.kujaku.comparisons.RegexComparison;
 
 /**
  * Provides the ability to filter locations or features before displaying them on the map. This filter
  * can only perform filter operations on {@link Feature} properties. The operations that can be performed
- * are {@code equalTo} and {@code regex} on {@code {@link String}}. Several conditions can be enforced
- * but only using the {@code and} operator.
+ * are {@code equalTo} and {@code regex} on {@code {@link String}}s, {@code equalTo}, {@code greaterThan},
+ * {@code lessThan} and {@code between} on numbers and {@code between} on date-times. Conditions are
+ * combined using the {@code and} operator, {@code or} and {@code not} are supported through {@link Group}s.
+ * <p>
+ * The conditions are compiled once when the {@link FeatureFilter} is built: regex patterns are compiled
+ * and number and date bounds are parsed. When the same {@link FeatureCollection} is filtered repeatedly,
+ * a {@link FeatureIndex} can be shared by the filters to avoid scanning all the features.
  *
  * Example usage:
  * <code>
@@ -26,7 +33,9 @@ import io.ona.kujaku.comparisons.RegexComparison;
  *     FeatureFilter.Builder builder = new FeatureFilter.Builder(myFeatureCollection)
  *                                          .whereEq("propertyName", "expectedPropertyValue")
  *                                          .whereEq("building-type", "commercial")
- *                                          .whereRegex("district", "(Rungwe|Kilombero|Kyela|Magu|Sikonge|Kasulu)");
+ *                                          .whereRegex("district", "(Rungwe|Kilombero|Kyela|Magu|Sikonge|Kasulu)")
+ *                                          .whereAnyOf(new FeatureFilter.Group().whereGte("floors", 3),
+ *                                                  new FeatureFilter.Group().whereNot(new FeatureFilter.Group().whereEq("status", "active")));
  *     FeatureFilter featureFilter = builder.build();
  *     FeatureCollection filteredFeatureCollection = featureFilter.filter();
  * </code>
@@ -36,52 +45,43 @@ import io.ona.kujaku.comparisons.RegexComparison;
 public class FeatureFilter {
 
     private Builder builder;
+    private FeaturePredicate predicate;
 
     private FeatureFilter(@NonNull Builder builder) {
         this.builder = builder;
+
+        List<FeaturePredicate> predicates = new ArrayList<>();
+        if (builder.getSortProperty() != null) {
+            predicates.add(FeaturePredicates.hasProperty(builder.getSortProperty()));
+        }
+
+        for (FilterCondition filterCondition : builder.getFilterConditions()) {
+            predicates.add(filterCondition.getPredicate());
+        }
+
+        this.predicate = FeaturePredicates.allOf(predicates);
     }
 
     public FeatureCollection filter() {
         List<Feature> featuresList = builder.getFeatureCollection().features();
         ArrayList<Feature> filteredFeatures = new ArrayList<>();
 
-        HashMap<String, Comparison> comparisons = new HashMap<>();
-
-        EqualToComparison equalToComparison = new EqualToComparison();
-        RegexComparison regexComparison = new RegexComparison();
-
-        comparisons.put(equalToComparison.getFunctionName(), equalToComparison);
-        comparisons.put(regexComparison.getFunctionName(), regexComparison);
-
         if (featuresList != null) {
-            ArrayList<FilterCondition> filterConditions = builder.getFilterConditions();
-
-            if (filterConditions.size() > 0) {
-                for (Feature feature : featuresList) {
-                    boolean skipFeature = false;
-                    if (builder.getSortProperty() != null
-                            && !feature.hasProperty(builder.getSortProperty())) {
-                        continue;
-                    }
-
-                    for (FilterCondition filterCondition : filterConditions) {
-                        String propertyName = filterCondition.getPropertyName();
-                        if (feature.hasProperty(propertyName)) {
-                            Comparison comparison = comparisons.get(filterCondition.getComparisionType());
-                            if (comparison != null && !comparison.compare(
-                                    feature.getStringProperty(propertyName),
-                                    filterCondition.getValueType(),
-                                    (String) filterCondition.getValue())) {
-                                skipFeature = true;
-                                break;
-                            }
-                        } else {
-                            skipFeature = true;
+            if (builder.getFilterConditions().size() > 0) {
+                int[] candidatePositions = getCandidatePositions();
+
+                if (candidatePositions != null) {
+                    for (int position : candidatePositions) {
+                        Feature feature = featuresList.get(position);
+                        if (predicate.test(feature)) {
+                            filteredFeatures.add(feature);
                         }
                     }
-
-                    if (!skipFeature) {
-                        filteredFeatures.add(feature);
+                } else {
+                    for (Feature feature : featuresList) {
+                        if (predicate.test(feature)) {
+                            filteredFeatures.add(feature);
+                        }
                     }
                 }
             } else {
@@ -96,28 +96,181 @@ public class FeatureFilter {
         return builder.getFeatureCollection();
     }
 
-    public static class Builder {
+    /**
+     * @return The positions of the features to evaluate or {@code NULL} if all of them should be evaluated
+     */
+    @Nullable
+    private int[] getCandidatePositions() {
+        FeatureIndex featureIndex = builder.getFeatureIndex();
+
+        // The index is ignored when it was built for another collection eg. after Builder#setFeatureCollection
+        if (featureIndex != null && featureIndex.getFeatureCollection() == builder.getFeatureCollection()
+                && predicate instanceof IndexedFeaturePredicate) {
+            return ((IndexedFeaturePredicate) predicate).getCandidatePositions(featureIndex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Conditions shared by the {@link Builder} and the {@link Group}s. All the conditions should be
+     * satisfied for a feature to be matched. A feature which does not have the property of a condition
+     * does not satisfy it.
+     *
+     * @param <T> The type returned by the {@code where} methods for chaining
+     */
+    public abstract static class Conditions<T extends Conditions<T>> {
+
+        private ArrayList<FilterCondition> filterConditions = new ArrayList<>();
+
+        protected abstract T getThis();
+
+        public T whereEq(@NonNull String property, @NonNull String value) {
+            filterConditions.add(new FilterCondition(EqualToComparison.COMPARISON_NAME, property, value, Comparison.TYPE_STRING));
+            return getThis();
+        }
+
+        public T whereEq(@NonNull String property, @NonNull Number value) {
+            return addCondition(EqualToComparison.COMPARISON_NAME, property, value, Comparison.TYPE_NUMBER
+                    , FeaturePredicates.equalTo(property, value.doubleValue()));
+        }
+
+        public T whereRegex(@NonNull String property, @NonNull String regexPattern) {
+            filterConditions.add(new FilterCondition(RegexComparison.COMPARISON_NAME, property, regexPattern, Comparison.TYPE_STRING));
+            return getThis();
+        }
+
+        public T whereGt(@NonNull String property, @NonNull Number value) {
+            return addCondition(FilterCondition.GREATER_THAN, property, value, Comparison.TYPE_NUMBER
+                    , FeaturePredicates.numberRange(property, value.doubleValue(), false, Double.POSITIVE_INFINITY, true));
+        }
+
+        public T whereGte(@NonNull String property, @NonNull Number value) {
+            return addCondition(FilterCondition.GREATER_THAN_OR_EQUAL_TO, property, value, Comparison.TYPE_NUMBER
+                    , FeaturePredicates.numberRange(property, value.doubleValue(), true, Double.POSITIVE_INFINITY, true));
+        }
+
+        public T whereLt(@NonNull String property, @NonNull Number value) {
+            return addCondition(FilterCondition.LESS_THAN, property, value, Comparison.TYPE_NUMBER
+                    , FeaturePredicates.numberRange(property, Double.NEGATIVE_INFINITY, true, value.doubleValue(), false));
+        }
+
+        public T whereLte(@NonNull String property, @NonNull Number value) {
+            return addCondition(FilterCondition.LESS_THAN_OR_EQUAL_TO, property, value, Comparison.TYPE_NUMBER
+                    , FeaturePredicates.numberRange(property, Double.NEGATIVE_INFINITY, true, value.doubleValue(), true));
+        }
+
+        /**
+         * Match number values between {@code min} and {@code max} inclusive
+         */
+        public T whereBetween(@NonNull String property, @NonNull Number min, @NonNull Number max) {
+            return addCondition(FilterCondition.BETWEEN, property, new Number[]{min, max}, Comparison.TYPE_NUMBER
+                    , FeaturePredicates.numberRange(property, min.doubleValue(), true, max.doubleValue(), true));
+        }
+
+        /**
+         * Match date-time values between {@code from} and {@code to} inclusive
+         *
+         * @param property
+         * @param dateTimeFormat Format of the property values and of the bounds eg. {@code yyyy-MM-dd HH:mm:ss}
+         * @param from Lower bound or {@code NULL} if there is none
+         * @param to Upper bound or {@code NULL} if there is none
+         * @return
+         */
+        public T whereDateBetween(@NonNull String property, @NonNull String dateTimeFormat, @Nullable String from, @Nullable String to) {
+            return addCondition(FilterCondition.BETWEEN, property, new String[]{from, to}, Comparison.TYPE_DATE
+                    , FeaturePredicates.dateRange(property, dateTimeFormat, from, to));
+        }
+
+        /**
+         * Match features which satisfy the conditions of at least one of the groups. The groups are
+         * compiled when this method is called and should not be modified afterwards
+         *
+         * @param groups
+         * @return
+         */
+        public T whereAnyOf(@NonNull Group... groups) {
+            List<FeaturePredicate> predicates = new ArrayList<>(groups.length);
+            for (Group group : groups) {
+                predicates.add(group.compile());
+            }
+
+            return addCondition(FilterCondition.ANY_OF, "", groups, FilterCondition.TYPE_GROUP
+                    , FeaturePredicates.anyOf(predicates));
+        }
+
+        /**
+         * Match features which do not satisfy all the conditions of the group. The group is compiled when
+         * this method is called and should not be modified afterwards
+         *
+         * @param group
+         * @return
+         */
+        public T whereNot(@NonNull Group group) {
+            return addCondition(FilterCondition.NOT, "", group, FilterCondition.TYPE_GROUP
+                    , FeaturePredicates.not(group.compile()));
+        }
+
+        public ArrayList<FilterCondition> getFilterConditions() {
+            return filterConditions;
+        }
+
+        private T addCondition(@NonNull String comparisonType, @NonNull String property, @NonNull Object value
+                , @NonNull String valueType, @NonNull FeaturePredicate predicate) {
+            filterConditions.add(new FilterCondition(comparisonType, property, value, valueType, predicate));
+            return getThis();
+        }
+    }
+
+    /**
+     * A group of conditions which are all satisfied, used with {@link Conditions#whereAnyOf(Group...)}
+     * and {@link Conditions#whereNot(Group)}
+     */
+    public static class Group extends Conditions<Group> {
+
+        @Override
+        protected Group getThis() {
+            return this;
+        }
+
+        @NonNull
+        FeaturePredicate compile() {
+            List<FeaturePredicate> predicates = new ArrayList<>();
+            for (FilterCondition filterCondition : getFilterConditions()) {
+                predicates.add(filterCondition.getPredicate());
+            }
+
+            return FeaturePredicates.allOf(predicates);
+        }
+    }
+
+    public static class Builder extends Conditions<Builder> {
 
         private FeatureCollection featureCollection;
+        private FeatureIndex featureIndex;
         private String sortProperty;
-        private ArrayList<FilterCondition> filterConditions = new ArrayList<>();
 
         public Builder(@NonNull FeatureCollection featureCollection) {
             this.featureCollection = featureCollection;
         }
 
-        public Builder setSortProperty(@Nullable String sortProperty) {
-            this.sortProperty = sortProperty;
-            return this;
+        /**
+         * Filter the collection of the {@link FeatureIndex} using the index
+         *
+         * @param featureIndex
+         */
+        public Builder(@NonNull FeatureIndex featureIndex) {
+            this.featureCollection = featureIndex.getFeatureCollection();
+            this.featureIndex = featureIndex;
         }
 
-        public Builder whereEq(@NonNull String property, @NonNull String value) {
-            filterConditions.add(new FilterCondition(EqualToComparison.COMPARISON_NAME, property, value, Comparison.TYPE_STRING));
+        @Override
+        protected Builder getThis() {
             return this;
         }
 
-        public Builder whereRegex(@NonNull String property, @NonNull String regexPattern) {
-            filterConditions.add(new FilterCondition(RegexComparison.COMPARISON_NAME, property, regexPattern, Comparison.TYPE_STRING));
+        public Builder setSortProperty(@Nullable String sortProperty) {
+            this.sortProperty = sortProperty;
             return this;
         }
 
@@ -129,13 +282,26 @@ public class FeatureFilter {
             this.featureCollection = featureCollection;
         }
 
+        /**
+         * Set the index used to filter the feature collection. The index is only used while it was built
+         * for the current feature collection
+         *
+         * @param featureIndex
+         * @return
+         */
+        public Builder setFeatureIndex(@Nullable FeatureIndex featureIndex) {
+            this.featureIndex = featureIndex;
+            return this;
+        }
+
         @Nullable
-        public String getSortProperty() {
-            return sortProperty;
+        public FeatureIndex getFeatureIndex() {
+            return featureIndex;
         }
 
-        public ArrayList<FilterCondition> getFilterConditions() {
-            return filterConditions;
+        @Nullable
+        public String getSortProperty() {
+            return sortProperty;
         }
 
         public FeatureFilter build() {
@@ -144,16 +310,34 @@ public class FeatureFilter {
     }
 
     public static class FilterCondition {
+
+        public static final String GREATER_THAN = "greaterThan";
+        public static final String GREATER_THAN_OR_EQUAL_TO = "greaterThanOrEqualTo";
+        public static final String LESS_THAN = "lessThan";
+        public static final String LESS_THAN_OR_EQUAL_TO = "lessThanOrEqualTo";
+        public static final String BETWEEN = "between";
+        public static final String ANY_OF = "anyOf";
+        public static final String NOT = "not";
+
+        public static final String TYPE_GROUP = "group";
+
         private String comparisionType;
         private String propertyName;
         private Object value;
         private String valueType;
+        private FeaturePredicate predicate;
 
         public FilterCondition(@NonNull String comparisionType, @NonNull String propertyName, @NonNull Object value, @NonNull String valueType) {
+            this(comparisionType, propertyName, value, valueType, compile(comparisionType, propertyName, value));
+        }
+
+        public FilterCondition(@NonNull String comparisionType, @NonNull String propertyName, @NonNull Object value
+                , @NonNull String valueType, @NonNull FeaturePredicate predicate) {
             this.comparisionType = comparisionType;
             this.propertyName = propertyName;
             this.value = value;
             this.valueType = valueType;
+            this.predicate = predicate;
         }
 
         public String getComparisionType() {
@@ -171,5 +355,20 @@ public class FeatureFilter {
         public String getValueType() {
             return valueType;
         }
+
+        public FeaturePredicate getPredicate() {
+            return predicate;
+        }
+
+        private static FeaturePredicate compile(@NonNull String comparisonType, @NonNull String propertyName, @NonNull Object value) {
+            if (EqualToComparison.COMPARISON_NAME.equals(comparisonType)) {
+                return FeaturePredicates.equalTo(propertyName, String.valueOf(value));
+            } else if (RegexComparison.COMPARISON_NAME.equals(comparisonType)) {
+                return FeaturePredicates.regex(propertyName, String.valueOf(value));
+            } else {
+                // Unknown comparisons only require the property
+                return FeaturePredicates.hasProperty(propertyName);
+            }
+        }
     }
 }
@@ -0,0 +1,223 @@
+package io.ona.kujaku.utils;
+
+import android.support.annotation.NonNull;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+
+import org.threeten.bp.format.DateTimeFormatter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.ona.kujaku.comparisons.FeaturePredicates;
+
+/**
+ * Per-property indexes over the features of a {@link FeatureCollection} which speed up
+ * {@link FeatureFilter}s evaluated repeatedly on the same collection.
+ * <p>
+ * An index is built the first time a property is queried and reused by the following queries:
+ * <ul>
+ * <li>a hash index from the string value to the positions of the features for {@code equalTo} conditions</li>
+ * <li>a sorted index of the number (or date) values for range conditions</li>
+ * </ul>
+ * Positions are indexes in {@link FeatureCollection#features()} and are always returned sorted.
+ * <p>
+ * The index does not track changes to the collection, a new index should be created when the
+ * features or their properties change.
+ */
+public class FeatureIndex {
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final FeatureCollection featureCollection;
+    private final List<Feature> features;
+
+    private final Map<String, Map<String, int[]>> hashIndexes = new HashMap<>();
+    private final Map<String, SortedIndex> sortedIndexes = new HashMap<>();
+
+    public FeatureIndex(@NonNull FeatureCollection featureCollection) {
+        this.featureCollection = featureCollection;
+
+        List<Feature> features = featureCollection.features();
+        this.features = features != null ? features : new ArrayList<Feature>();
+    }
+
+    @NonNull
+    public FeatureCollection getFeatureCollection() {
+        return featureCollection;
+    }
+
+    @NonNull
+    public Feature getFeature(int position) {
+        return features.get(position);
+    }
+
+    public int size() {
+        return features.size();
+    }
+
+    /**
+     * @param propertyName
+     * @param value
+     * @return The sorted positions of the features whose property is equal to the value
+     */
+    @NonNull
+    public synchronized int[] getPositionsEqualTo(@NonNull String propertyName, @NonNull String value) {
+        Map<String, int[]> hashIndex = hashIndexes.get(propertyName);
+        if (hashIndex == null) {
+            hashIndex = buildHashIndex(propertyName);
+            hashIndexes.put(propertyName, hashIndex);
+        }
+
+        int[] positions = hashIndex.get(value);
+        return positions != null ? positions : NO_POSITIONS;
+    }
+
+    /**
+     * @param propertyName
+     * @param min
+     * @param minInclusive
+     * @param max
+     * @param maxInclusive
+     * @return The sorted positions of the features whose number property is in the range
+     */
+    @NonNull
+    public synchronized int[] getPositionsInRange(@NonNull String propertyName, double min, boolean minInclusive, double max, boolean maxInclusive) {
+        SortedIndex sortedIndex = sortedIndexes.get(propertyName);
+        if (sortedIndex == null) {
+            sortedIndex = buildSortedIndex(propertyName, null);
+            sortedIndexes.put(propertyName, sortedIndex);
+        }
+
+        return sortedIndex.getPositionsInRange(min, minInclusive, max, maxInclusive);
+    }
+
+    /**
+     * @param propertyName
+     * @param dateTimeFormat Format of the property values
+     * @param min Inclusive lower bound in milliseconds as returned by {@link FeaturePredicates#getDateValue(Feature, String, DateTimeFormatter)}
+     * @param max Inclusive upper bound in milliseconds
+     * @return The sorted positions of the features whose date property is in the range
+     */
+    @NonNull
+    public synchronized int[] getPositionsInDateRange(@NonNull String propertyName, @NonNull String dateTimeFormat, double min, double max) {
+        String indexKey = propertyName + "|" + dateTimeFormat;
+        SortedIndex sortedIndex = sortedIndexes.get(indexKey);
+        if (sortedIndex == null) {
+            sortedIndex = buildSortedIndex(propertyName, DateTimeFormatter.ofPattern(dateTimeFormat));
+            sortedIndexes.put(indexKey, sortedIndex);
+        }
+
+        return sortedIndex.getPositionsInRange(min, true, max, true);
+    }
+
+    private Map<String, int[]> buildHashIndex(@NonNull String propertyName) {
+        Map<String, List<Integer>> positionLists = new HashMap<>();
+        for (int i = 0; i < features.size(); i++) {
+            String value = FeaturePredicates.getStringValue(features.get(i), propertyName);
+            if (value != null) {
+                List<Integer> positions = positionLists.get(value);
+                if (positions == null) {
+                    positions = new ArrayList<>();
+                    positionLists.put(value, positions);
+                }
+
+                positions.add(i);
+            }
+        }
+
+        Map<String, int[]> hashIndex = new HashMap<>(positionLists.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : positionLists.entrySet()) {
+            List<Integer> positionList = entry.getValue();
+            int[] positions = new int[positionList.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = positionList.get(i);
+            }
+
+            hashIndex.put(entry.getKey(), positions);
+        }
+
+        return hashIndex;
+    }
+
+    private SortedIndex buildSortedIndex(@NonNull String propertyName, DateTimeFormatter dateTimeFormatter) {
+        final double[] values = new double[features.size()];
+        List<Integer> indexedPositions = new ArrayList<>();
+
+        for (int i = 0; i < features.size(); i++) {
+            Feature feature = features.get(i);
+            values[i] = dateTimeFormatter != null
+                    ? FeaturePredicates.getDateValue(feature, propertyName, dateTimeFormatter)
+                    : FeaturePredicates.getNumberValue(feature, propertyName);
+
+            if (!Double.isNaN(values[i])) {
+                indexedPositions.add(i);
+            }
+        }
+
+        Collections.sort(indexedPositions, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer position1, Integer position2) {
+                return Double.compare(values[position1], values[position2]);
+            }
+        });
+
+        SortedIndex sortedIndex = new SortedIndex(indexedPositions.size());
+        for (int i = 0; i < indexedPositions.size(); i++) {
+            int position = indexedPositions.get(i);
+            sortedIndex.positions[i] = position;
+            sortedIndex.values[i] = values[position];
+        }
+
+        return sortedIndex;
+    }
+
+    private static class SortedIndex {
+        private final double[] values;
+        private final int[] positions;
+
+        private SortedIndex(int size) {
+            values = new double[size];
+            positions = new int[size];
+        }
+
+        private int[] getPositionsInRange(double min, boolean minInclusive, double max, boolean maxInclusive) {
+            int start = lowerBound(min, !minInclusive);
+            int end = lowerBound(max, maxInclusive);
+            if (start >= end) {
+                return NO_POSITIONS;
+            }
+
+            int[] result = Arrays.copyOfRange(positions, start, end);
+            Arrays.sort(result);
+            return result;
+        }
+
+        /**
+         * @param value
+         * @param skipEqual
+         * @return The index of the first value greater than or equal to the value, or strictly greater than
+         * it when {@code skipEqual} is {@code TRUE}
+         */
+        private int lowerBound(double value, boolean skipEqual) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < value || (skipEqual && values[middle] == value)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package io.ona.kujaku.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import com.mapbox.mapboxsdk.style.expressions.Expression;
+import com.mapbox.mapboxsdk.style.layers.BackgroundLayer;
+import com.mapbox.mapboxsdk.style.layers.CircleLayer;
+import com.mapbox.mapboxsdk.style.layers.ExposedLayoutPropertyValue;
+import com.mapbox.mapboxsdk.style.layers.ExposedPaintPropertyValue;
+import com.mapbox.mapboxsdk.style.layers.FillExtrusionLayer;
+import com.mapbox.mapboxsdk.style.layers.FillLayer;
+import com.mapbox.mapboxsdk.style.layers.HeatmapLayer;
+import com.mapbox.mapboxsdk.style.layers.HillshadeLayer;
+import com.mapbox.mapboxsdk.style.layers.Layer;
+import com.mapbox.mapboxsdk.style.layers.LineLayer;
+import com.mapbox.mapboxsdk.style.layers.PropertyValue;
+import com.mapbox.mapboxsdk.style.layers.RasterLayer;
+import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import io.ona.kujaku.utils.LayerUtil.LAYER_TYPE;
+
+/**
+ * Immutable, compiled form of a Mapbox style layer JSON definition.
+ * <p>
+ * The layer JSON is parsed once: the layout & paint values are converted to their {@link PropertyValue}s
+ * and the filter to an {@link Expression}. {@link Layer}s, which cannot be shared between styles, are then
+ * created from the definition with {@link #createLayer()} without parsing or re-serializing the JSON again.
+ * <p>
+ * Use {@link LayerUtil} which caches the compiled definitions.
+ */
+public final class LayerDefinition {
+
+    private final String type;
+    private final String id;
+    private final String source;
+    private final String sourceLayer;
+    private final Expression filter;
+    private final Float minZoom;
+    private final Float maxZoom;
+    private final PropertyValue[] propertyValues;
+
+    private LayerDefinition(@NonNull String type, @NonNull String id, @Nullable String source, @Nullable String sourceLayer
+            , @Nullable Expression filter, @Nullable Float minZoom, @Nullable Float maxZoom, @NonNull PropertyValue[] propertyValues) {
+        this.type = type;
+        this.id = id;
+        this.source = source;
+        this.sourceLayer = sourceLayer;
+        this.filter = filter;
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.propertyValues = propertyValues;
+    }
+
+    /**
+     * Compile a layer JSON definition
+     *
+     * @param jsonObject
+     * @return
+     * @throws JSONException If the layer has no type or id
+     */
+    @NonNull
+    public static LayerDefinition compile(@NonNull JSONObject jsonObject) throws JSONException {
+        String layerType = jsonObject.getString(LayerUtil.TYPE);
+        String layerId = jsonObject.getString(LayerUtil.ID);
+        String source = jsonObject.optString(LayerUtil.SOURCE);
+        String sourceLayer = jsonObject.optString(LayerUtil.SOURCE_LAYER);
+        String filter = jsonObject.optString(LayerUtil.FILTER);
+
+        ArrayList<PropertyValue> propertyValues = new ArrayList<>();
+
+        JSONObject layoutObject = jsonObject.optJSONObject(LayerUtil.LAYOUT);
+        if (layoutObject != null) {
+            Iterator<String> keys = layoutObject.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Object value = compileValue(layoutObject.opt(key), "text-offset".equals(key));
+
+                if (value != null) {
+                    propertyValues.add(new ExposedLayoutPropertyValue<>(key, value));
+                }
+            }
+        }
+
+        JSONObject paintObject = jsonObject.optJSONObject(LayerUtil.PAINT);
+        if (paintObject != null) {
+            Iterator<String> keys = paintObject.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Object value = compileValue(paintObject.opt(key)
+                        , "line-dasharray".equals(key) || "line-translate".equals(key) || "text-translate".equals(key));
+
+                if (value != null) {
+                    propertyValues.add(new ExposedPaintPropertyValue<>(key, value));
+                }
+            }
+        }
+
+        Float minZoom = jsonObject.has(LayerUtil.MINZOOM) ? ((Double) jsonObject.getDouble(LayerUtil.MINZOOM)).floatValue() : null;
+        Float maxZoom = jsonObject.has(LayerUtil.MAXZOOM) ? ((Double) jsonObject.getDouble(LayerUtil.MAXZOOM)).floatValue() : null;
+
+        return new LayerDefinition(layerType, layerId, source, sourceLayer
+                , !TextUtils.isEmpty(filter) ? Expression.raw(filter) : null
+                , minZoom, maxZoom, propertyValues.toArray(new PropertyValue[0]));
+    }
+
+    /**
+     * Convert a layout or paint JSON value to the value of its {@link PropertyValue}
+     *
+     * @param value
+     * @param isFloatArray {@code TRUE} if an array of numbers is a float array property
+     * @return
+     * @throws JSONException
+     */
+    @Nullable
+    private static Object compileValue(@Nullable Object value, boolean isFloatArray) throws JSONException {
+        if (value instanceof JSONArray) {
+            // Check if this is an array of numbers
+            JSONArray jsonArray = (JSONArray) value;
+
+            if (isJSONArrayOfNumbers(jsonArray)) {
+                if (isFloatArray) {
+                    return getFloatArray(jsonArray);
+                }
+            } else {
+                return Expression.raw(value.toString());
+            }
+        } else if (value instanceof JSONObject) {
+            return value.toString();
+        }
+
+        return value;
+    }
+
+    @NonNull
+    static Float[] getFloatArray(@NonNull JSONArray jsonArray) throws JSONException {
+        Float[] floatArray = new Float[jsonArray.length()];
+
+        for (int i = 0; i < jsonArray.length(); i++) {
+            floatArray[i] = Double.valueOf(jsonArray.getDouble(i)).floatValue();
+        }
+
+        return floatArray;
+    }
+
+    private static boolean isJSONArrayOfNumbers(@NonNull JSONArray jsonArray) {
+        if (jsonArray.length() > 1) {
+            return !Double.isNaN(jsonArray.optDouble(0)) && !Double.isNaN(jsonArray.optDouble(1));
+        } else {
+            return !Double.isNaN(jsonArray.optDouble(0));
+        }
+    }
+
+    /**
+     * Create a new {@link Layer} from the definition
+     *
+     * @return The layer or {@code NULL} if the layer type is not supported
+     */
+    @Nullable
+    public Layer createLayer() {
+        Layer layer = null;
+
+        if (type.equals(LAYER_TYPE.RASTER)) {
+            layer = new RasterLayer(id, source);
+            if (!TextUtils.isEmpty(sourceLayer)) {
+                ((RasterLayer) layer).setSourceLayer(sourceLayer);
+            }
+        } else if (type.equals(LAYER_TYPE.FILL)) {
+            layer = new FillLayer(id, source);
+            if (!TextUtils.isEmpty(sourceLayer)) {
+                ((FillLayer) layer).setSourceLayer(sourceLayer);
+            }
+
+            if (filter != null) {
+                ((FillLayer) layer).setFilter(filter);
+            }
+        } else if (type.equals(LAYER_TYPE.LINE)) {
+            layer = new LineLayer(id, source);
+            if (!TextUtils.isEmpty(sourceLayer)) {
+                ((LineLayer) layer).setSourceLayer(sourceLayer);
+            }
+
+            if (filter != null) {
+                ((LineLayer) layer).setFilter(filter);
+            }
+        } else if (type.equals(LAYER_TYPE.SYMBOL)) {
+            layer = new SymbolLayer(id, source);
+            if (!TextUtils.isEmpty(sourceLayer)) {
+                ((SymbolLayer) layer).setSourceLayer(sourceLayer);
+            }
+
+            if (filter != null) {
+                ((SymbolLayer) layer).setFilter(filter);
+            }
+        } else if (type.equals(LAYER_TYPE.CIRCLE)) {
+            layer = new CircleLayer(id, source);
+            if (!TextUtils.isEmpty(sourceLayer)) {
+                ((CircleLayer) layer).setSourceLayer(sourceLayer);
+            }
+
+            if (filter != null) {
+                ((CircleLayer) layer).setFilter(filter);
+            }
+        } else if (type.equals(LAYER_TYPE.HEATMAP)) {
+            layer = new HeatmapLayer(id, source);
+            if (!TextUtils.isEmpty(sourceLayer)) {
+                ((HeatmapLayer) layer).setSourceLayer(sourceLayer);
+            }
+
+            if (filter != null) {
+                ((HeatmapLayer) layer).setFilter(filter);
+            }
+        } else if (type.equals(LAYER_TYPE.FILL_EXTRUSION)) {
+            layer = new FillExtrusionLayer(id, source);
+            if (!TextUtils.isEmpty(sourceLayer)) {
+                ((FillExtrusionLayer) layer).setSourceLayer(sourceLayer);
+            }
+
+            if (filter != null) {
+                ((FillExtrusionLayer) layer).setFilter(filter);
+            }
+        } else if (type.equals(LAYER_TYPE.HILLSHADE)) {
+            layer = new HillshadeLayer(id, source);
+            if (!TextUtils.isEmpty(sourceLayer)) {
+                ((HillshadeLayer) layer).setSourceLayer(sourceLayer);
+            }
+        } else if (type.equals(LAYER_TYPE.BACKGROUND)) {
+            layer = new BackgroundLayer(id);
+        }
+
+        if (layer != null) {
+            layer.setProperties(propertyValues);
+
+            if (minZoom != null) {
+                layer.setMinZoom(minZoom);
+            }
+
+            if (maxZoom != null) {
+                layer.setMaxZoom(maxZoom);
+            }
+        }
+
+        return layer;
+    }
+
+    @NonNull
+    public String getType() {
+        return type;
+    }
+
+    @NonNull
+    public String getId() {
+        return id;
+    }
+
+    @Nullable
+    public String getSource() {
+        return source;
+    }
+
+    @Nullable
+    public String getSourceLayer() {
+        return sourceLayer;
+    }
+
+    @Nullable
+    public Expression getFilter() {
+        return filter;
+    }
+
+    @Nullable
+    public Float getMinZoom() {
+        return minZoom;
+    }
+
+    @Nullable
+    public Float getMaxZoom() {
+        return maxZoom;
+    }
+
+    public int getPropertyCount() {
+        return propertyValues.length;
+    }
+}
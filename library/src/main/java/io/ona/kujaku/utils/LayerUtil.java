@@ -3,29 +3,17 @@ package io.ona.kujaku.utils;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
-import android.text.TextUtils;
-
-import com.mapbox.mapboxsdk.style.expressions.Expression;
-import com.mapbox.mapboxsdk.style.layers.BackgroundLayer;
-import com.mapbox.mapboxsdk.style.layers.CircleLayer;
-import com.mapbox.mapboxsdk.style.layers.ExposedLayoutPropertyValue;
-import com.mapbox.mapboxsdk.style.layers.ExposedPaintPropertyValue;
-import com.mapbox.mapboxsdk.style.layers.FillExtrusionLayer;
-import com.mapbox.mapboxsdk.style.layers.FillLayer;
-import com.mapbox.mapboxsdk.style.layers.HeatmapLayer;
-import com.mapbox.mapboxsdk.style.layers.HillshadeLayer;
+import android.util.LruCache;
+
 import com.mapbox.mapboxsdk.style.layers.Layer;
-import com.mapbox.mapboxsdk.style.layers.LineLayer;
-import com.mapbox.mapboxsdk.style.layers.PropertyValue;
-import com.mapbox.mapboxsdk.style.layers.RasterLayer;
-import com.mapbox.mapboxsdk.style.layers.SymbolLayer;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.List;
 
 import timber.log.Timber;
 
@@ -68,188 +56,119 @@ public class LayerUtil {
         public static final String VIDEO = "video";
     }
 
+    private static final int MAX_CACHED_LAYER_DEFINITIONS = 512;
+    private static final int MAX_CACHED_LAYER_LISTS = 8;
+
+    /**
+     * Compiled layer definitions keyed by the layer JSON. The keys are compared by their content hash then
+     * equality so that the same JSON is only parsed once
+     */
+    private static final LruCache<String, LayerDefinition> layerDefinitions = new LruCache<>(MAX_CACHED_LAYER_DEFINITIONS);
+
+    /**
+     * Compiled layer definitions of a JSON array of layers keyed by the JSON array
+     */
+    private static final LruCache<String, List<LayerDefinition>> layerListDefinitions = new LruCache<>(MAX_CACHED_LAYER_LISTS);
+
+    /**
+     * Create a layer from its JSON definition. The definition is compiled the first time & cached
+     *
+     * @param layerJSON
+     * @return The layer or {@code NULL} if the definition is invalid or the layer type is not supported
+     */
     @Nullable
     public Layer getLayer(@NonNull String layerJSON) {
-        Layer layer = null;
-        try {
-            JSONObject jsonObject = new JSONObject(layerJSON);
-            String layerType = jsonObject.getString(TYPE);
-            String layerId = jsonObject.getString(ID);
-            String source = jsonObject.optString(SOURCE);
-            String sourceLayer = jsonObject.optString(SOURCE_LAYER);
-            String filter = jsonObject.optString(FILTER);
-            Expression filterExpression = null;
-
-            ArrayList<PropertyValue> propertyValues = new ArrayList<>();
-
-            if (!jsonObject.optString(LAYOUT).equals("")) {
-                JSONObject layoutObject = jsonObject.optJSONObject(LAYOUT);
-
-                Iterator<String> keys = layoutObject.keys();
-                while (keys.hasNext()) {
-                    String key = keys.next();
-                    Object value = layoutObject.opt(key);
-
-                    if (value instanceof JSONArray) {
-                        // Check if this is an array of numbers
-                        JSONArray jsonArray = (JSONArray) value;
-
-                        if (isJSONArrayOfNumbers(jsonArray)) {
-                            if ("text-offset".equals(key)) {
-                                value = getFloatArray(jsonArray);
-                            }
-                        } else {
-                            value = Expression.raw(value.toString());
-                        }
-                    } else if (value instanceof JSONObject) {
-                        value = value.toString();
-                    }
-
-                    if (value != null) {
-                        propertyValues.add(new ExposedLayoutPropertyValue<>(key, value));
-                    }
-
-                }
-            }
-
-            if (!jsonObject.optString(PAINT).equals("")) {
-                JSONObject paintObject = jsonObject.optJSONObject(PAINT);
-
-                Iterator<String> keys = paintObject.keys();
-                while (keys.hasNext()) {
-                    String key = keys.next();
-                    Object value = paintObject.opt(key);
-
-                    if (value instanceof JSONArray) {
-                        // Check if this is an array of numbers
-                        JSONArray jsonArray = (JSONArray) value;
-
-                        if (isJSONArrayOfNumbers(jsonArray)) {
-                            if ("line-dasharray".equals(key) || "line-translate".equals(key) || "text-translate".equals(key)) {
-                                value = getFloatArray(jsonArray);
-                            }
-                        } else {
-                            value = Expression.raw(value.toString());
-                        }
-                    } else if (value instanceof JSONObject) {
-                        value = value.toString();
-                    }
-
-                    if (value != null) {
-                        propertyValues.add(new ExposedPaintPropertyValue<>(key, value));
-                    }
+        LayerDefinition layerDefinition = getLayerDefinition(layerJSON);
+        return layerDefinition != null ? layerDefinition.createLayer() : null;
+    }
 
-                }
-            }
+    /**
+     * Create the layers of a JSON array of layer definitions such as the {@code layers} of a style. The whole
+     * array is compiled the first time & cached. Invalid definitions & unsupported layer types are skipped
+     *
+     * @param layersJSON
+     * @return The layers in the order of the array
+     */
+    @NonNull
+    public List<Layer> getLayers(@NonNull String layersJSON) {
+        List<Layer> layers = new ArrayList<>();
 
-            if (!TextUtils.isEmpty(filter)) {
-                filterExpression = Expression.raw(filter);
+        for (LayerDefinition layerDefinition : getLayerDefinitions(layersJSON)) {
+            Layer layer = layerDefinition.createLayer();
+            if (layer != null) {
+                layers.add(layer);
             }
+        }
 
-            if (layerType.equals(LAYER_TYPE.RASTER)) {
-                layer = new RasterLayer(layerId, source);
-                if (!TextUtils.isEmpty(sourceLayer)) {
-                    ((RasterLayer) layer).setSourceLayer(sourceLayer);
-                }
-            } else if (layerType.equals(LAYER_TYPE.FILL)) {
-                layer = new FillLayer(layerId, source);
-                if (!TextUtils.isEmpty(sourceLayer)) {
-                    ((FillLayer) layer).setSourceLayer(sourceLayer);
-                }
-
-                if (filterExpression != null) {
-                    ((FillLayer) layer).setFilter(filterExpression);
-                }
-            } else if (layerType.equals(LAYER_TYPE.LINE)) {
-                layer = new LineLayer(layerId, source);
-                if (!TextUtils.isEmpty(sourceLayer)) {
-                    ((LineLayer) layer).setSourceLayer(sourceLayer);
-                }
-
-                if (filterExpression != null) {
-                    ((LineLayer) layer).setFilter(filterExpression);
-                }
-            } else if (layerType.equals(LAYER_TYPE.SYMBOL)) {
-                layer = new SymbolLayer(layerId, source);
-                if (!TextUtils.isEmpty(sourceLayer)) {
-                    ((SymbolLayer) layer).setSourceLayer(sourceLayer);
-                }
-
-                if (filterExpression != null) {
-                    ((SymbolLayer) layer).setFilter(filterExpression);
-                }
-            } else if (layerType.equals(LAYER_TYPE.CIRCLE)) {
-                layer = new CircleLayer(layerId, source);
-                if (!TextUtils.isEmpty(sourceLayer)) {
-                    ((CircleLayer) layer).setSourceLayer(sourceLayer);
-                }
-
-                if (filterExpression != null) {
-                    ((CircleLayer) layer).setFilter(filterExpression);
-                }
-            } else if (layerType.equals(LAYER_TYPE.HEATMAP)) {
-                layer = new HeatmapLayer(layerId, source);
-                if (!TextUtils.isEmpty(sourceLayer)) {
-                    ((HeatmapLayer) layer).setSourceLayer(sourceLayer);
-                }
-
-                if (filterExpression != null) {
-                    ((HeatmapLayer) layer).setFilter(filterExpression);
-                }
-            } else if (layerType.equals(LAYER_TYPE.FILL_EXTRUSION)) {
-                layer = new FillExtrusionLayer(layerId, source);
-                if (!TextUtils.isEmpty(sourceLayer)) {
-                    ((FillExtrusionLayer) layer).setSourceLayer(sourceLayer);
-                }
+        return layers;
+    }
 
-                if (filterExpression != null) {
-                    ((FillExtrusionLayer) layer).setFilter(filterExpression);
-                }
-            } else if (layerType.equals(LAYER_TYPE.HILLSHADE)) {
-                layer = new HillshadeLayer(layerId, source);
-                if (!TextUtils.isEmpty(sourceLayer)) {
-                    ((HillshadeLayer) layer).setSourceLayer(sourceLayer);
-                }
-            } else if (layerType.equals(LAYER_TYPE.BACKGROUND)) {
-                layer = new BackgroundLayer(layerId);
+    /**
+     * Get the compiled definition of a layer
+     *
+     * @param layerJSON
+     * @return The definition or {@code NULL} if the layer JSON is invalid
+     */
+    @Nullable
+    public LayerDefinition getLayerDefinition(@NonNull String layerJSON) {
+        LayerDefinition layerDefinition = layerDefinitions.get(layerJSON);
+        if (layerDefinition == null) {
+            try {
+                layerDefinition = LayerDefinition.compile(new JSONObject(layerJSON));
+                layerDefinitions.put(layerJSON, layerDefinition);
+            } catch (JSONException e) {
+                Timber.e(e);
+                return null;
             }
+        }
 
-            if (layer != null) {
-                layer.setProperties(propertyValues.toArray(new PropertyValue[0]));
+        return layerDefinition;
+    }
 
-                if (jsonObject.has(MINZOOM)) {
-                    layer.setMinZoom(((Double) jsonObject.getDouble(MINZOOM)).floatValue());
-                }
+    /**
+     * Get the compiled definitions of a JSON array of layers
+     *
+     * @param layersJSON
+     * @return The definitions of the valid layers, an empty list if the JSON array is invalid
+     */
+    @NonNull
+    public List<LayerDefinition> getLayerDefinitions(@NonNull String layersJSON) {
+        List<LayerDefinition> definitions = layerListDefinitions.get(layersJSON);
+        if (definitions != null) {
+            return definitions;
+        }
 
-                if (jsonObject.has(MAXZOOM)) {
-                    layer.setMaxZoom(((Double) jsonObject.getDouble(MAXZOOM)).floatValue());
+        definitions = new ArrayList<>();
+        try {
+            JSONArray jsonArray = new JSONArray(layersJSON);
+            for (int i = 0; i < jsonArray.length(); i++) {
+                try {
+                    definitions.add(LayerDefinition.compile(jsonArray.getJSONObject(i)));
+                } catch (JSONException e) {
+                    Timber.e(e);
                 }
             }
         } catch (JSONException e) {
             Timber.e(e);
-            return null;
+            return definitions;
         }
 
-        return layer;
+        definitions = Collections.unmodifiableList(definitions);
+        layerListDefinitions.put(layersJSON, definitions);
+        return definitions;
+    }
+
+    /**
+     * Clear the compiled layer definitions
+     */
+    public static void clearCache() {
+        layerDefinitions.evictAll();
+        layerListDefinitions.evictAll();
     }
 
     @VisibleForTesting
     @NonNull
     protected Float[] getFloatArray(JSONArray jsonArray) throws JSONException {
-        Float[] lineDashArrayValue = new Float[jsonArray.length()];
-
-        for (int i = 0; i < jsonArray.length(); i++) {
-            lineDashArrayValue[i] = Double.valueOf(jsonArray.getDouble(i)).floatValue();
-        }
-
-        return lineDashArrayValue;
-    }
-
-    private boolean isJSONArrayOfNumbers(@NonNull JSONArray jsonArray) {
-        if (jsonArray.length() > 1) {
-            return !Double.isNaN(jsonArray.optDouble(0)) && !Double.isNaN(jsonArray.optDouble(1));
-        } else {
-            return !Double.isNaN(jsonArray.optDouble(0));
-        }
+        return LayerDefinition.getFloatArray(jsonArray);
     }
 }
@@ -0,0 +1,108 @@
+package io.ona.kujaku.views;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mapbox.mapboxsdk.style.expressions.Expression;
+
+import io.ona.kujaku.listeners.OnFeatureClickListener;
+
+/**
+ * Defines how the features passed to an {@link OnFeatureClickListener} are found when the map is clicked.
+ * <p>
+ * In {@link #MODE_RENDERED_FEATURES} mode, the default, the features rendered at the clicked pixel in the
+ * given layers & fulfilling the given filter are returned. In {@link #MODE_NEAREST_FEATURES} mode, the
+ * features of the primary source nearest to the click & within {@link #getRadius()} are returned nearest
+ * first. They are looked up in a spatial index of the primary source which makes small features easier to
+ * hit on dense maps.
+ */
+public class FeatureClickOptions {
+
+    public static final int MODE_RENDERED_FEATURES = 0;
+    public static final int MODE_NEAREST_FEATURES = 1;
+
+    public static final float DEFAULT_RADIUS_DP = 24f;
+    public static final int DEFAULT_MAX_FEATURE_COUNT = 1;
+
+    private int mode = MODE_RENDERED_FEATURES;
+    private float radius = DEFAULT_RADIUS_DP;
+    private int maxFeatureCount = DEFAULT_MAX_FEATURE_COUNT;
+
+    private Expression expressionFilter;
+    private String[] layerIds;
+
+    public int getMode() {
+        return mode;
+    }
+
+    public FeatureClickOptions withMode(int mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * @return The search radius around the click in dp, used in {@link #MODE_NEAREST_FEATURES} mode
+     */
+    public float getRadius() {
+        return radius;
+    }
+
+    public FeatureClickOptions withRadius(float radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius should not be negative");
+        }
+
+        this.radius = radius;
+        return this;
+    }
+
+    /**
+     * @return The maximum number of features returned in {@link #MODE_NEAREST_FEATURES} mode
+     */
+    public int getMaxFeatureCount() {
+        return maxFeatureCount;
+    }
+
+    public FeatureClickOptions withMaxFeatureCount(int maxFeatureCount) {
+        if (maxFeatureCount < 1) {
+            throw new IllegalArgumentException("maxFeatureCount should be at least 1");
+        }
+
+        this.maxFeatureCount = maxFeatureCount;
+        return this;
+    }
+
+    /**
+     * @return The filter of the features in {@link #MODE_RENDERED_FEATURES} mode
+     */
+    @Nullable
+    public Expression getExpressionFilter() {
+        return expressionFilter;
+    }
+
+    public FeatureClickOptions withExpressionFilter(@Nullable Expression expressionFilter) {
+        this.expressionFilter = expressionFilter;
+        return this;
+    }
+
+    /**
+     * @return The layers queried in {@link #MODE_RENDERED_FEATURES} mode
+     */
+    @Nullable
+    public String[] getLayerIds() {
+        return layerIds;
+    }
+
+    public FeatureClickOptions withLayerIds(@Nullable String... layerIds) {
+        this.layerIds = layerIds;
+        return this;
+    }
+
+    @NonNull
+    public static FeatureClickOptions nearestFeatures(float radius, int maxFeatureCount) {
+        return new FeatureClickOptions()
+                .withMode(MODE_NEAREST_FEATURES)
+                .withRadius(radius)
+                .withMaxFeatureCount(maxFeatureCount);
+    }
+}
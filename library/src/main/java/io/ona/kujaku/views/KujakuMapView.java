@@ -7,6 +7,7 @@ import android.content.Context;
 import android.content.IntentSender;
 import android.content.ServiceConnection;
 import android.content.res.TypedArray;
+import android.database.sqlite.SQLiteException;
 import android.graphics.Color;
 import android.graphics.PointF;
 import android.location.Location;
@@ -44,16 +45,21 @@ import com.mapbox.mapboxsdk.annotations.MarkerOptions;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
 import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
 import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
 import com.mapbox.mapboxsdk.geometry.VisibleRegion;
 import com.mapbox.mapboxsdk.maps.MapView;
 import com.mapbox.mapboxsdk.maps.MapboxMap;
 import com.mapbox.mapboxsdk.maps.MapboxMapOptions;
 import com.mapbox.mapboxsdk.maps.OnMapReadyCallback;
 import com.mapbox.mapboxsdk.maps.Style;
+import com.mapbox.mapboxsdk.net.ConnectivityListener;
+import com.mapbox.mapboxsdk.net.ConnectivityReceiver;
 import com.mapbox.mapboxsdk.plugins.annotation.Circle;
 import com.mapbox.mapboxsdk.style.expressions.Expression;
 import com.mapbox.mapboxsdk.style.layers.Layer;
 import com.mapbox.mapboxsdk.style.layers.RasterLayer;
+import com.mapbox.mapboxsdk.style.sources.CustomGeometrySource;
+import com.mapbox.mapboxsdk.style.sources.CustomGeometrySourceOptions;
 import com.mapbox.mapboxsdk.style.sources.GeoJsonSource;
 import com.mapbox.mapboxsdk.style.sources.RasterSource;
 import com.mapbox.mapboxsdk.style.sources.TileSet;
@@ -61,34 +67,43 @@ import com.mapbox.mapboxsdk.style.sources.TileSet;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import io.ona.kujaku.R;
+import io.ona.kujaku.callables.AsyncTaskCallable;
 import io.ona.kujaku.callbacks.AddPointCallback;
 import io.ona.kujaku.callbacks.OnLocationServicesEnabledCallBack;
 import io.ona.kujaku.exceptions.DrawingManagerIsNullException;
 import io.ona.kujaku.exceptions.TrackingServiceNotInitializedException;
 import io.ona.kujaku.exceptions.WmtsCapabilitiesException;
+import io.ona.kujaku.helpers.MBTilesTileServer;
 import io.ona.kujaku.helpers.MapboxLocationComponentWrapper;
 import io.ona.kujaku.interfaces.IKujakuMapView;
 import io.ona.kujaku.interfaces.ILocationClient;
+import io.ona.kujaku.interfaces.IPartitionLayerFactory;
 import io.ona.kujaku.layers.FillBoundaryLayer;
 import io.ona.kujaku.layers.KujakuLayer;
+import io.ona.kujaku.layers.KujakuLayerHitTester;
 import io.ona.kujaku.listeners.BaseLocationListener;
 import io.ona.kujaku.listeners.BoundsChangeListener;
 import io.ona.kujaku.listeners.LocationClientStartedCallback;
 import io.ona.kujaku.listeners.OnDrawingCircleClickListener;
 import io.ona.kujaku.listeners.OnDrawingCircleLongClickListener;
 import io.ona.kujaku.listeners.OnFeatureClickListener;
+import io.ona.kujaku.listeners.OnFinishedListener;
 import io.ona.kujaku.listeners.OnKujakuLayerClickListener;
 import io.ona.kujaku.listeners.OnKujakuLayerLongClickListener;
 import io.ona.kujaku.listeners.OnLocationChanged;
 import io.ona.kujaku.listeners.TrackingServiceListener;
+import io.ona.kujaku.listeners.VisibleFeaturesBoundsChangeListener;
 import io.ona.kujaku.manager.DrawingManager;
 import io.ona.kujaku.manager.KujakuCircle;
 import io.ona.kujaku.services.TrackingService;
@@ -96,11 +111,18 @@ import io.ona.kujaku.services.configurations.TrackingServiceDefaultUIConfigurati
 import io.ona.kujaku.services.configurations.TrackingServiceUIConfiguration;
 import io.ona.kujaku.services.options.TrackingServiceHighAccuracyOptions;
 import io.ona.kujaku.services.options.TrackingServiceOptions;
+import io.ona.kujaku.spatial.ClusterOptions;
+import io.ona.kujaku.spatial.FeatureSpatialIndex;
+import io.ona.kujaku.spatial.GeoJsonTiler;
+import io.ona.kujaku.spatial.PartitionedFeatureStore;
+import io.ona.kujaku.spatial.PointClusterIndex;
 import io.ona.kujaku.location.clients.GoogleLocationClient;
+import io.ona.kujaku.tasks.TaskScheduler;
 import io.ona.kujaku.utils.Constants;
 import io.ona.kujaku.utils.KujakuMultiplePermissionListener;
 import io.ona.kujaku.utils.LocationSettingsHelper;
 import io.ona.kujaku.utils.LogUtil;
+import io.ona.kujaku.utils.NetworkUtil;
 import io.ona.kujaku.utils.Permissions;
 import io.ona.kujaku.wmts.model.WmtsCapabilities;
 import io.ona.kujaku.wmts.model.WmtsLayer;
@@ -156,10 +178,72 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
      */
     private Set<WmtsLayer> wmtsLayers;
 
+    /**
+     * MBTiles stores of the Wmts Layers, by layer identifier, used when the device is offline
+     */
+    private Map<String, File> wmtsOfflineStores;
+
+    /**
+     * Tile urls the sources of the Wmts Layers were added with, by layer identifier. The sources of the
+     * layers with an offline store are switched between the store & the WMTS tile url when the connectivity changes
+     */
+    private final Map<String, String> wmtsTileUrls = new HashMap<>();
+    private final String wmtsTileUrlsTaskKey = "wmts-tile-urls-" + UUID.randomUUID().toString();
+    private final ConnectivityListener wmtsConnectivityListener = new ConnectivityListener() {
+        @Override
+        public void onNetworkStateChanged(boolean connected) {
+            if (!wmtsOfflineStores.isEmpty() && mapboxMap != null && mapboxMap.getStyle() != null
+                    && mapboxMap.getStyle().isFullyLoaded()) {
+                addWmtsLayers();
+            }
+        }
+    };
+
     private FeatureCollection featureCollection;
 
     private Map<String, Integer> featureMap;
 
+    private FeatureSpatialIndex featureSpatialIndex;
+
+    /**
+     * Changes to the primary GeoJSON source are coalesced & pushed to the map once per frame
+     */
+    private boolean isPrimarySourceDirty = false;
+    private boolean isPrimarySourceUpdateScheduled = false;
+
+    /**
+     * Geohash partitions of the primary GeoJSON source, {@code NULL} when the source is not partitioned
+     */
+    private PartitionedFeatureStore primaryFeatureStore;
+    private IPartitionLayerFactory partitionLayerFactory;
+    private Map<String, String> partitionLayerIds = new HashMap<>();
+
+    /**
+     * Clusters of the points of the primary GeoJSON source, {@code NULL} when the source is not clustered.
+     * The cluster index is rebuilt off the main thread, features added meanwhile are inserted once it is built
+     */
+    private ClusterOptions primarySourceClusterOptions;
+    private PointClusterIndex primaryClusterIndex;
+    private boolean isPrimaryClusterIndexBuilding = false;
+    private boolean isPrimaryClusterIndexStale = false;
+    private List<com.mapbox.geojson.Feature> featuresAddedWhileClustering = new ArrayList<>();
+    private LatLngBounds clusteredBounds;
+    private int clusteredZoom = -1;
+
+    /**
+     * Tiles of the primary GeoJSON source served to a {@link CustomGeometrySource}, {@code NULL} when the
+     * source is not tiled. The tiler is updated off the main thread with the latest features & the regions
+     * it invalidates are collected until an update is delivered, so that none is lost when an update is
+     * superseded
+     */
+    private GeoJsonTiler primaryTiler;
+    private IPartitionLayerFactory tiledLayerFactory;
+    private String tiledSourceId;
+    private String tiledLayerId;
+    private volatile List<com.mapbox.geojson.Feature> primaryTilerFeatures;
+    private final List<LatLngBounds> primaryTilerInvalidatedRegions = new ArrayList<>();
+    private final String primaryTilerTaskKey = "primary-tiler-" + UUID.randomUUID().toString();
+
     private Layer primaryLayer;
 
     private GeoJsonSource primaryGeoJsonSource;
@@ -175,8 +259,7 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
     private BoundsChangeListener boundsChangeListener;
 
     private OnFeatureClickListener onFeatureClickListener;
-    private String[] featureClickLayerIdFilters;
-    private Expression featureClickExpressionFilter;
+    private FeatureClickOptions featureClickOptions;
 
     private OnKujakuLayerClickListener onKujakuLayerClickListener;
     private OnKujakuLayerLongClickListener onKujakuLayerLongClickListener;
@@ -190,6 +273,7 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
     private OnLocationServicesEnabledCallBack onLocationServicesEnabledCallBack;
 
     private ArrayList<KujakuLayer> kujakuLayers = new ArrayList<>();
+    private KujakuLayerHitTester kujakuLayerHitTester;
     private ArrayList<LocationClientStartedCallback> locationClientCallbacks = new ArrayList<>();
 
     /**
@@ -237,6 +321,9 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
 
         droppedPoints = new HashSet<>();
         wmtsLayers = new HashSet<>();
+        wmtsOfflineStores = new HashMap<>();
+        kujakuLayerHitTester = new KujakuLayerHitTester(KujakuLayerHitTester.DEFAULT_TOLERANCE_DP
+                * getResources().getDisplayMetrics().density);
 
         doneAddingPointBtn = findViewById(R.id.btn_mapview_locationSelectionBtn);
         addPointButtonsLayout = findViewById(R.id.ll_mapview_locationSelectionBtns);
@@ -285,6 +372,7 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
         }
 
         featureMap = new HashMap<>();
+        featureSpatialIndex = new FeatureSpatialIndex();
         mapboxLocationComponentWrapper = new MapboxLocationComponentWrapper();
     }
 
@@ -597,6 +685,7 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
         }
 
         addPrimaryGeoJsonSourceAndLayerToStyle(style);
+        pushPrimarySourceChanges(style);
 
         if (getCameraPosition() != null) {
             mapboxMap.setCameraPosition(getCameraPosition());
@@ -628,27 +717,146 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
     }
 
     /**
-     * Add all Wmts Layers in wmtsLayers on the map
+     * Add all Wmts Layers in wmtsLayers on the map. The layers with an offline store are added once the
+     * server of the store is started off the main thread
      */
     private void addWmtsLayers() {
         // Add WmtsLayers
-        if (wmtsLayers != null) {
-            for (WmtsLayer layer : wmtsLayers) {
-                if (mapboxMap.getStyle().getSource(layer.getIdentifier()) == null) {
+        if (wmtsLayers == null || mapboxMap == null || mapboxMap.getStyle() == null) {
+            return;
+        }
+
+        final List<WmtsLayer> layersWithOfflineStore = new ArrayList<>();
+        for (WmtsLayer layer : wmtsLayers) {
+            if (wmtsOfflineStores.containsKey(layer.getIdentifier())) {
+                layersWithOfflineStore.add(layer);
+            } else {
+                setWmtsLayerSource(mapboxMap.getStyle(), layer, layer.getTemplateUrl("tile"));
+            }
+        }
+
+        if (layersWithOfflineStore.isEmpty()) {
+            return;
+        }
+
+        final Map<String, File> offlineStores = new HashMap<>(wmtsOfflineStores);
+        final Context context = getContext().getApplicationContext();
+        TaskScheduler.getInstance().submit(wmtsTileUrlsTaskKey, TaskScheduler.Priority.USER_VISIBLE, new AsyncTaskCallable() {
+            @Override
+            public Object[] call() throws Exception {
+                boolean isConnected = NetworkUtil.isNetworkConnected(context);
+                String[] tileUrls = new String[layersWithOfflineStore.size()];
+                for (int i = 0; i < tileUrls.length; i++) {
+                    WmtsLayer layer = layersWithOfflineStore.get(i);
+                    tileUrls[i] = getWmtsTileUrl(layer, offlineStores.get(layer.getIdentifier()), isConnected);
+                }
+
+                return tileUrls;
+            }
+        }, new OnFinishedListener() {
+            @Override
+            public void onSuccess(Object[] objects) {
+                if (mapboxMap == null || mapboxMap.getStyle() == null) {
+                    return;
+                }
+
+                for (int i = 0; i < objects.length; i++) {
+                    setWmtsLayerSource(mapboxMap.getStyle(), layersWithOfflineStore.get(i), (String) objects[i]);
+                }
+            }
 
-                    TileSet tileSet = new TileSet("tileset", layer.getTemplateUrl("tile"));
-                    tileSet.setMaxZoom(layer.getMaximumZoom());
-                    tileSet.setMinZoom(layer.getMinimumZoom());
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+        });
+    }
 
-                    RasterSource webMapSource = new RasterSource(
-                            layer.getIdentifier(),
-                            tileSet, layer.getTilesSize());
-                    mapboxMap.getStyle().addSource(webMapSource);
+    /**
+     * Adds the raster source & layer of a Wmts Layer or replaces its source if the tile url changed
+     *
+     * @param style
+     * @param layer
+     * @param tileUrl
+     */
+    private void setWmtsLayerSource(@NonNull Style style, @NonNull WmtsLayer layer, @NonNull String tileUrl) {
+        String layerIdentifier = layer.getIdentifier();
+        int layerIndex = -1;
+
+        if (style.getSource(layerIdentifier) != null) {
+            String currentTileUrl = wmtsTileUrls.get(layerIdentifier);
+            if (currentTileUrl == null || currentTileUrl.equals(tileUrl)) {
+                // The source was not added by this view or is up to date
+                return;
+            }
 
-                    RasterLayer webMapLayer = new RasterLayer(layer.getIdentifier(), layer.getIdentifier());
-                    mapboxMap.getStyle().addLayer(webMapLayer);
+            // The tiles of a raster source cannot be changed, the source & its layer are added again at the same position
+            List<Layer> styleLayers = style.getLayers();
+            for (int i = 0; i < styleLayers.size(); i++) {
+                if (layerIdentifier.equals(styleLayers.get(i).getId())) {
+                    layerIndex = i;
+                    break;
                 }
             }
+
+            style.removeLayer(layerIdentifier);
+            style.removeSource(layerIdentifier);
+        }
+
+        TileSet tileSet = new TileSet("tileset", tileUrl);
+        tileSet.setMaxZoom(layer.getMaximumZoom());
+        tileSet.setMinZoom(layer.getMinimumZoom());
+
+        RasterSource webMapSource = new RasterSource(
+                layerIdentifier,
+                tileSet, layer.getTilesSize());
+        style.addSource(webMapSource);
+
+        RasterLayer webMapLayer = new RasterLayer(layerIdentifier, layerIdentifier);
+        if (layerIndex == -1) {
+            style.addLayer(webMapLayer);
+        } else {
+            style.addLayerAt(webMapLayer, layerIndex);
+        }
+
+        wmtsTileUrls.put(layerIdentifier, tileUrl);
+    }
+
+    /**
+     * Should not be called on the main thread since it starts the tile server & reads the file system
+     *
+     * @param layer
+     * @param offlineStore
+     * @param isConnected
+     * @return the url of the layer tiles in its offline store if the device is offline & the store
+     * exists, the WMTS tile url otherwise
+     */
+    @NonNull
+    private static String getWmtsTileUrl(@NonNull WmtsLayer layer, @Nullable File offlineStore, boolean isConnected) {
+        if (offlineStore != null && !isConnected && offlineStore.exists()) {
+            try {
+                return MBTilesTileServer.getInstance().addStore(layer.getIdentifier(), offlineStore);
+            } catch (IOException | SQLiteException e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+        }
+
+        return layer.getTemplateUrl("tile");
+    }
+
+    /**
+     * Sets the MBTiles store the tiles of a Wmts Layer are served from when the device is offline. The
+     * store is usually filled with {@link io.ona.kujaku.helpers.OfflineServiceHelper#requestWmtsTilesDownload}.
+     * The store is used the next time the layer is added to the map style or the connectivity changes
+     *
+     * @param layerIdentifier
+     * @param offlineStore    the MBTiles file or {@code null} to always use the WMTS tile url
+     */
+    public void setWmtsLayerOfflineStore(@NonNull String layerIdentifier, @Nullable File offlineStore) {
+        if (offlineStore == null) {
+            wmtsOfflineStores.remove(layerIdentifier);
+        } else {
+            wmtsOfflineStores.put(layerIdentifier, offlineStore);
         }
     }
 
@@ -814,6 +1022,13 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
                 callBoundsChangedListeners();
             }
         });
+
+        mapboxMap.addOnCameraIdleListener(new MapboxMap.OnCameraIdleListener() {
+            @Override
+            public void onCameraIdle() {
+                updatePrimarySourceClustersForCamera();
+            }
+        });
     }
 
     private void callBoundsChangedListeners() {
@@ -823,6 +1038,11 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
             if (visibleRegion != null) {
                 boundsChangeListener.onBoundsChanged(visibleRegion.farLeft, visibleRegion.farRight
                         , visibleRegion.nearRight, visibleRegion.nearLeft);
+
+                if (boundsChangeListener instanceof VisibleFeaturesBoundsChangeListener && visibleRegion.latLngBounds != null) {
+                    ((VisibleFeaturesBoundsChangeListener) boundsChangeListener)
+                            .onVisibleFeaturesChanged(visibleRegion.latLngBounds, queryFeatures(visibleRegion.latLngBounds));
+                }
             }
         }
     }
@@ -893,9 +1113,17 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
         return mapboxMap == null ? zoomLevel : mapboxMap.getCameraPosition().zoom > zoomLevel ? -1d : zoomLevel;
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        ConnectivityReceiver.instance(getContext()).addListener(wmtsConnectivityListener);
+    }
+
     @Override
     public void onStop() {
         super.onStop();
+        ConnectivityReceiver.instance(getContext()).removeListener(wmtsConnectivityListener);
+        TaskScheduler.getInstance().cancel(wmtsTileUrlsTaskKey);
 
         // Clean up location services
         if (locationClient != null && locationClient.isMonitoringLocation()) {
@@ -938,16 +1166,20 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
 
     @Override
     public void setOnFeatureClickListener(@NonNull OnFeatureClickListener onFeatureClickListener, @Nullable String... layerIds) {
-        this.onFeatureClickListener = onFeatureClickListener;
-        this.featureClickLayerIdFilters = layerIds;
-        this.featureClickExpressionFilter = null;
+        setOnFeatureClickListener(onFeatureClickListener, new FeatureClickOptions().withLayerIds(layerIds));
     }
 
     @Override
     public void setOnFeatureClickListener(@NonNull OnFeatureClickListener onFeatureClickListener, @Nullable Expression expressionFilter, @Nullable String... layerIds) {
+        setOnFeatureClickListener(onFeatureClickListener, new FeatureClickOptions()
+                .withExpressionFilter(expressionFilter)
+                .withLayerIds(layerIds));
+    }
+
+    @Override
+    public void setOnFeatureClickListener(@NonNull OnFeatureClickListener onFeatureClickListener, @NonNull FeatureClickOptions featureClickOptions) {
         this.onFeatureClickListener = onFeatureClickListener;
-        this.featureClickLayerIdFilters = layerIds;
-        this.featureClickExpressionFilter = expressionFilter;
+        this.featureClickOptions = featureClickOptions;
     }
 
     /**
@@ -1022,20 +1254,24 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
     @Override
     public void addFeaturePoints(FeatureCollection featureCollection) {
         List<com.mapbox.geojson.Feature> features = this.featureCollection.features();
+        List<com.mapbox.geojson.Feature> addedFeatures = new ArrayList<>();
         for (com.mapbox.geojson.Feature feature : featureCollection.features()) {
             String featureId = feature.id();
             if (featureId != null && !featureMap.containsKey(featureId)) {
                 featureMap.put(featureId, features.size());
                 features.add(feature);
+                addedFeatures.add(feature);
+
+                if (primaryFeatureStore != null) {
+                    primaryFeatureStore.put(feature);
+                }
             }
         }
-        if (mapboxMap != null) {
-            mapboxMap.getStyle(new Style.OnStyleLoaded() {
-                @Override
-                public void onStyleLoaded(@NonNull Style style) {
-                    ((GeoJsonSource) style.getSource(primaryGeoJsonSource.getId())).setGeoJson(KujakuMapView.this.featureCollection);
-                }
-            });
+        featureSpatialIndex.addAll(addedFeatures);
+        addFeaturesToPrimaryClusterIndex(addedFeatures);
+
+        if (!addedFeatures.isEmpty()) {
+            schedulePrimarySourceUpdate();
         }
     }
 
@@ -1052,6 +1288,10 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
                     currFeature.removeProperty(entry.getKey());
                     currFeature.addStringProperty(entry.getKey(), entry.getValue().getAsString());
                 }
+
+                if (primaryFeatureStore != null) {
+                    primaryFeatureStore.put(currFeature);
+                }
             } else {
                 newFeatures.add(feature);
             }
@@ -1059,11 +1299,508 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
         // add new features if any
         FeatureCollection newFeatureCollection = FeatureCollection.fromFeatures(newFeatures);
         addFeaturePoints(newFeatureCollection);
-        if (mapboxMap != null) {
-            ((GeoJsonSource) mapboxMap.getStyle().getSource(primaryGeoJsonSource.getId())).setGeoJson(this.featureCollection);
+
+        // The aggregated properties of the clusters may have changed
+        rebuildPrimaryClusterIndex();
+        schedulePrimarySourceUpdate();
+    }
+
+    @Override
+    public void removeFeaturePoints(@NonNull String... featureIds) {
+        List<com.mapbox.geojson.Feature> features = this.featureCollection.features();
+        boolean isRemoved = false;
+
+        for (String featureId : featureIds) {
+            Integer featureIndex = featureMap.remove(featureId);
+            if (featureIndex == null) {
+                continue;
+            }
+
+            // Move the last feature into the removed slot so that the other indexes stay valid
+            int lastIndex = features.size() - 1;
+            com.mapbox.geojson.Feature lastFeature = features.remove(lastIndex);
+            if (featureIndex != lastIndex) {
+                features.set(featureIndex, lastFeature);
+                featureMap.put(lastFeature.id(), featureIndex);
+            }
+
+            featureSpatialIndex.remove(featureId);
+            if (primaryFeatureStore != null) {
+                primaryFeatureStore.remove(featureId);
+            }
+            isRemoved = true;
+        }
+
+        if (isRemoved) {
+            rebuildPrimaryClusterIndex();
+            schedulePrimarySourceUpdate();
+        }
+    }
+
+    /**
+     * Shard the primary GeoJSON source into several GeoJSON sources, one per geohash cell of {@code geohashPrecision}
+     * characters, so that adding, updating or removing features only re-uploads the partitions that changed
+     * instead of the whole {@link FeatureCollection}. Each partition is rendered by a layer created
+     * through {@code partitionLayerFactory} and added above the primary layer. The ids of these layers
+     * are available through {@link #getPrimarySourcePartitionLayerIds()} eg. to filter feature clicks.
+     * <p>
+     * A precision of 3 (cells of ~156km x 156km) or 4 (cells of ~39km x 20km) works well for country to
+     * district wide datasets. Passing 0 disables the partitioning.
+     *
+     * @param geohashPrecision
+     * @param partitionLayerFactory
+     */
+    public void setPrimarySourcePartitioning(int geohashPrecision, @Nullable IPartitionLayerFactory partitionLayerFactory) {
+        if (geohashPrecision > 0 && partitionLayerFactory == null) {
+            throw new IllegalArgumentException("A partitionLayerFactory is required to partition the primary source");
+        }
+
+        removePartitionLayersAndSources();
+
+        if (geohashPrecision > 0) {
+            // Clustering, tiling & partitioning are exclusive
+            disablePrimarySourceClustering();
+            disablePrimarySourceTiling();
+            primaryFeatureStore = new PartitionedFeatureStore(geohashPrecision);
+            if (featureCollection != null) {
+                for (com.mapbox.geojson.Feature feature : featureCollection.features()) {
+                    primaryFeatureStore.put(feature);
+                }
+            }
+        } else {
+            primaryFeatureStore = null;
+        }
+
+        this.partitionLayerFactory = partitionLayerFactory;
+        schedulePrimarySourceUpdate();
+    }
+
+    /**
+     * @return The ids of the layers rendering the partitions of the primary GeoJSON source
+     */
+    @NonNull
+    public List<String> getPrimarySourcePartitionLayerIds() {
+        return new ArrayList<>(partitionLayerIds.values());
+    }
+
+    /**
+     * Cluster the points of the primary GeoJSON source. Instead of all the features, the primary source
+     * then holds the clusters & points of the visible region at the current zoom, served by a
+     * {@link PointClusterIndex} which is built off the main thread & updated incrementally as points are
+     * added. Cluster features have the {@link PointClusterIndex#PROPERTY_CLUSTER} & {@link PointClusterIndex#PROPERTY_POINT_COUNT}
+     * properties, & the properties of the {@link ClusterOptions#getPropertyAggregator()}, which the primary
+     * layer can use to style them. Passing {@code NULL} disables the clustering.
+     * <p>
+     * Clustering disables the partitioning & the tiling of the primary source, see {@link #setPrimarySourcePartitioning(int, IPartitionLayerFactory)}
+     * & {@link #setPrimarySourceTiling(int, IPartitionLayerFactory)}
+     *
+     * @param clusterOptions
+     */
+    public void setPrimarySourceClustering(@Nullable ClusterOptions clusterOptions) {
+        if (clusterOptions != null && primaryFeatureStore != null) {
+            setPrimarySourcePartitioning(0, null);
+        }
+
+        if (clusterOptions != null) {
+            disablePrimarySourceTiling();
+        }
+
+        disablePrimarySourceClustering();
+        primarySourceClusterOptions = clusterOptions;
+
+        if (clusterOptions != null) {
+            rebuildPrimaryClusterIndex();
+        }
+
+        schedulePrimarySourceUpdate();
+    }
+
+    /**
+     * @param clusterId The {@link PointClusterIndex#PROPERTY_CLUSTER_ID} of a cluster of the primary source
+     * @return The clusters & points the cluster splits into when zooming in, empty if the cluster does not exist
+     */
+    @NonNull
+    public List<com.mapbox.geojson.Feature> getPrimarySourceClusterChildren(int clusterId) {
+        try {
+            return primaryClusterIndex != null ? primaryClusterIndex.getChildren(clusterId)
+                    : new ArrayList<com.mapbox.geojson.Feature>();
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * @param clusterId The {@link PointClusterIndex#PROPERTY_CLUSTER_ID} of a cluster of the primary source
+     * @return The zoom at which the cluster splits into its children or -1 if the cluster does not exist
+     */
+    public int getPrimarySourceClusterExpansionZoom(int clusterId) {
+        try {
+            return primaryClusterIndex != null ? primaryClusterIndex.getClusterExpansionZoom(clusterId) : -1;
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Serve the features of the primary GeoJSON source as tiles cut on demand by a {@link GeoJsonTiler}
+     * through a {@link CustomGeometrySource}, so that the map only holds the features of the visible tiles
+     * simplified for the zoom instead of the whole {@link FeatureCollection}. Adding, updating or removing
+     * features only invalidates the tiles of the changed features. The tiles are rendered by a layer created
+     * through {@code tiledLayerFactory} & added above the primary layer, whose id is available through
+     * {@link #getPrimarySourceTiledLayerId()}.
+     * <p>
+     * This is meant for datasets too large to be uploaded to a {@link GeoJsonSource} at once eg. national
+     * datasets. Tiling disables the partitioning & the clustering of the primary source. Passing a
+     * {@code NULL} {@code tiledLayerFactory} disables the tiling.
+     *
+     * @param maxZoom           Highest zoom tiles are cut for, the map over-zooms them beyond it eg. {@link GeoJsonTiler#DEFAULT_MAX_ZOOM}
+     * @param tiledLayerFactory
+     */
+    public void setPrimarySourceTiling(int maxZoom, @Nullable IPartitionLayerFactory tiledLayerFactory) {
+        disablePrimarySourceTiling();
+
+        if (tiledLayerFactory != null) {
+            if (primaryFeatureStore != null) {
+                setPrimarySourcePartitioning(0, null);
+            }
+            disablePrimarySourceClustering();
+
+            primaryTiler = new GeoJsonTiler(maxZoom, GeoJsonTiler.DEFAULT_MAX_CACHED_TILES);
+            this.tiledLayerFactory = tiledLayerFactory;
+        }
+
+        schedulePrimarySourceUpdate();
+    }
+
+    /**
+     * @return The id of the layer rendering the tiles of the primary GeoJSON source, {@code NULL} if the
+     * source is not tiled or the layer is not added yet
+     */
+    @Nullable
+    public String getPrimarySourceTiledLayerId() {
+        return tiledLayerId;
+    }
+
+    private void disablePrimarySourceTiling() {
+        TaskScheduler.getInstance().cancel(primaryTilerTaskKey);
+
+        if (tiledSourceId != null && mapboxMap != null && mapboxMap.getStyle() != null) {
+            Style style = mapboxMap.getStyle();
+            style.removeLayer(tiledLayerId);
+            style.removeSource(tiledSourceId);
+        }
+
+        primaryTiler = null;
+        tiledLayerFactory = null;
+        tiledSourceId = null;
+        tiledLayerId = null;
+        primaryTilerFeatures = null;
+        synchronized (primaryTilerInvalidatedRegions) {
+            primaryTilerInvalidatedRegions.clear();
+        }
+    }
+
+    /**
+     * Add the tiled source & its layer on the first update, then update the tiler with the current features
+     * off the main thread & invalidate the regions of the changed features
+     *
+     * @param style
+     * @param source
+     */
+    private void pushPrimarySourceTiles(@NonNull Style style, @NonNull GeoJsonSource source) {
+        if (tiledSourceId == null) {
+            // The features are now rendered by the tiled source
+            source.setGeoJson(FeatureCollection.fromFeatures(new ArrayList<com.mapbox.geojson.Feature>()));
+
+            tiledSourceId = primaryGeoJsonSource.getId() + "-tiles";
+            style.addSource(new CustomGeometrySource(tiledSourceId
+                    , new CustomGeometrySourceOptions().withMaxZoom(primaryTiler.getMaxZoom()), primaryTiler));
+
+            tiledLayerId = tiledSourceId + "-layer";
+            Layer tiledLayer = tiledLayerFactory.createLayer(tiledLayerId, tiledSourceId);
+            if (primaryLayer != null && style.getLayer(primaryLayer.getId()) != null) {
+                style.addLayerAbove(tiledLayer, primaryLayer.getId());
+            } else {
+                style.addLayer(tiledLayer);
+            }
+        }
+
+        final GeoJsonTiler tiler = primaryTiler;
+        primaryTilerFeatures = new ArrayList<>(featureCollection.features());
+
+        TaskScheduler.getInstance().submit(primaryTilerTaskKey, TaskScheduler.Priority.USER_VISIBLE, new AsyncTaskCallable() {
+            @Override
+            public Object[] call() throws Exception {
+                List<com.mapbox.geojson.Feature> features = primaryTilerFeatures;
+                if (features != null) {
+                    List<LatLngBounds> invalidatedRegions = tiler.update(features);
+                    synchronized (primaryTilerInvalidatedRegions) {
+                        primaryTilerInvalidatedRegions.addAll(invalidatedRegions);
+                    }
+                }
+
+                return new Object[0];
+            }
+        }, new OnFinishedListener() {
+            @Override
+            public void onSuccess(Object[] objects) {
+                List<LatLngBounds> invalidatedRegions;
+                synchronized (primaryTilerInvalidatedRegions) {
+                    invalidatedRegions = new ArrayList<>(primaryTilerInvalidatedRegions);
+                    primaryTilerInvalidatedRegions.clear();
+                }
+
+                if (tiler != primaryTiler || mapboxMap == null || mapboxMap.getStyle() == null) {
+                    return;
+                }
+
+                CustomGeometrySource tiledSource = mapboxMap.getStyle().getSourceAs(tiledSourceId);
+                if (tiledSource != null) {
+                    for (LatLngBounds invalidatedRegion : invalidatedRegions) {
+                        tiledSource.invalidateRegion(invalidatedRegion);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+        });
+    }
+
+    private void disablePrimarySourceClustering() {
+        primarySourceClusterOptions = null;
+        primaryClusterIndex = null;
+        isPrimaryClusterIndexStale = false;
+        featuresAddedWhileClustering.clear();
+        clusteredBounds = null;
+        clusteredZoom = -1;
+    }
+
+    private void addFeaturesToPrimaryClusterIndex(@NonNull List<com.mapbox.geojson.Feature> features) {
+        if (primarySourceClusterOptions == null || features.isEmpty()) {
+            return;
+        }
+
+        if (isPrimaryClusterIndexBuilding) {
+            featuresAddedWhileClustering.addAll(features);
+            return;
+        }
+
+        if (primaryClusterIndex != null) {
+            for (com.mapbox.geojson.Feature feature : features) {
+                primaryClusterIndex.add(feature);
+            }
+
+            if (primaryClusterIndex.isRebuildRecommended()) {
+                rebuildPrimaryClusterIndex();
+            }
+        }
+    }
+
+    /**
+     * Build a new cluster index of the primary source features off the main thread. The current index, if
+     * any, keeps serving the clusters until the new one is built
+     */
+    private void rebuildPrimaryClusterIndex() {
+        final ClusterOptions clusterOptions = primarySourceClusterOptions;
+        if (clusterOptions == null || featureCollection == null) {
+            return;
+        }
+
+        if (isPrimaryClusterIndexBuilding) {
+            isPrimaryClusterIndexStale = true;
+            return;
+        }
+
+        isPrimaryClusterIndexBuilding = true;
+        isPrimaryClusterIndexStale = false;
+        featuresAddedWhileClustering.clear();
+
+        final List<com.mapbox.geojson.Feature> features = new ArrayList<>(featureCollection.features());
+        TaskScheduler.getInstance().submit(new AsyncTaskCallable() {
+            @Override
+            public Object[] call() throws Exception {
+                PointClusterIndex clusterIndex = new PointClusterIndex(clusterOptions);
+                clusterIndex.load(features);
+                return new Object[]{clusterIndex};
+            }
+        }, new OnFinishedListener() {
+            @Override
+            public void onSuccess(Object[] objects) {
+                isPrimaryClusterIndexBuilding = false;
+                if (clusterOptions != primarySourceClusterOptions) {
+                    // The clustering was changed meanwhile
+                    rebuildPrimaryClusterIndex();
+                    return;
+                }
+
+                primaryClusterIndex = (PointClusterIndex) objects[0];
+                for (com.mapbox.geojson.Feature feature : featuresAddedWhileClustering) {
+                    primaryClusterIndex.add(feature);
+                }
+                featuresAddedWhileClustering.clear();
+
+                if (isPrimaryClusterIndexStale) {
+                    rebuildPrimaryClusterIndex();
+                }
+
+                clusteredBounds = null;
+                schedulePrimarySourceUpdate();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                isPrimaryClusterIndexBuilding = false;
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+        });
+    }
+
+    /**
+     * Update the clusters of the primary source if the camera left the clustered region or the zoom changed
+     */
+    private void updatePrimarySourceClustersForCamera() {
+        if (primaryClusterIndex == null || mapboxMap == null) {
+            return;
+        }
+
+        VisibleRegion visibleRegion = getCurrentBounds();
+        int zoom = (int) Math.floor(mapboxMap.getCameraPosition().zoom);
+        if (clusteredBounds == null || zoom != clusteredZoom || visibleRegion == null || visibleRegion.latLngBounds == null
+                || !clusteredBounds.contains(visibleRegion.latLngBounds)) {
+            schedulePrimarySourceUpdate();
         }
     }
 
+    /**
+     * Set the clusters & points of the visible region, padded by half its size on each side so that small
+     * pans do not need new clusters, to the primary source
+     *
+     * @param source
+     */
+    private void pushPrimarySourceClusters(@NonNull GeoJsonSource source) {
+        VisibleRegion visibleRegion = getCurrentBounds();
+        if (primaryClusterIndex == null || mapboxMap == null || visibleRegion == null || visibleRegion.latLngBounds == null) {
+            return;
+        }
+
+        LatLngBounds bounds = visibleRegion.latLngBounds;
+        double latPadding = bounds.getLatitudeSpan() / 2;
+        double lonPadding = bounds.getLongitudeSpan() / 2;
+        clusteredBounds = LatLngBounds.from(Math.min(90, bounds.getLatNorth() + latPadding), Math.min(180, bounds.getLonEast() + lonPadding)
+                , Math.max(-90, bounds.getLatSouth() - latPadding), Math.max(-180, bounds.getLonWest() - lonPadding));
+        clusteredZoom = (int) Math.floor(mapboxMap.getCameraPosition().zoom);
+
+        source.setGeoJson(FeatureCollection.fromFeatures(primaryClusterIndex.getClusters(clusteredBounds.getLonWest()
+                , clusteredBounds.getLatSouth(), clusteredBounds.getLonEast(), clusteredBounds.getLatNorth(), clusteredZoom)));
+    }
+
+    /**
+     * Mark the primary GeoJSON source as changed & push the changes on the next frame. Several changes
+     * within a frame result in a single update of the source(s)
+     */
+    private void schedulePrimarySourceUpdate() {
+        isPrimarySourceDirty = true;
+
+        if (mapboxMap == null || isPrimarySourceUpdateScheduled) {
+            return;
+        }
+
+        isPrimarySourceUpdateScheduled = true;
+        postOnAnimation(new Runnable() {
+            @Override
+            public void run() {
+                isPrimarySourceUpdateScheduled = false;
+                if (mapboxMap != null) {
+                    mapboxMap.getStyle(new Style.OnStyleLoaded() {
+                        @Override
+                        public void onStyleLoaded(@NonNull Style style) {
+                            pushPrimarySourceChanges(style);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void pushPrimarySourceChanges(@NonNull Style style) {
+        if (!isPrimarySourceDirty || primaryGeoJsonSource == null) {
+            return;
+        }
+
+        GeoJsonSource source = style.getSourceAs(primaryGeoJsonSource.getId());
+        if (source == null) {
+            return;
+        }
+
+        isPrimarySourceDirty = false;
+
+        if (primarySourceClusterOptions != null) {
+            pushPrimarySourceClusters(source);
+            return;
+        }
+
+        if (primaryTiler != null) {
+            pushPrimarySourceTiles(style, source);
+            return;
+        }
+
+        if (primaryFeatureStore == null) {
+            source.setGeoJson(featureCollection);
+            return;
+        }
+
+        if (partitionLayerIds.isEmpty()) {
+            // The features are now rendered by the partition sources
+            source.setGeoJson(FeatureCollection.fromFeatures(new ArrayList<com.mapbox.geojson.Feature>()));
+        }
+
+        for (String partitionKey : primaryFeatureStore.commit()) {
+            String partitionSourceId = primaryGeoJsonSource.getId() + "-" + partitionKey;
+            FeatureCollection partitionFeatures = FeatureCollection.fromFeatures(primaryFeatureStore.getPartitionFeatures(partitionKey));
+
+            GeoJsonSource partitionSource = style.getSourceAs(partitionSourceId);
+            if (partitionSource == null) {
+                style.addSource(new GeoJsonSource(partitionSourceId, partitionFeatures));
+
+                String partitionLayerId = partitionSourceId + "-layer";
+                Layer partitionLayer = partitionLayerFactory.createLayer(partitionLayerId, partitionSourceId);
+                if (primaryLayer != null && style.getLayer(primaryLayer.getId()) != null) {
+                    style.addLayerAbove(partitionLayer, primaryLayer.getId());
+                } else {
+                    style.addLayer(partitionLayer);
+                }
+
+                partitionLayerIds.put(partitionKey, partitionLayerId);
+            } else {
+                partitionSource.setGeoJson(partitionFeatures);
+            }
+        }
+    }
+
+    private void removePartitionLayersAndSources() {
+        if (!partitionLayerIds.isEmpty() && mapboxMap != null && mapboxMap.getStyle() != null
+                && primaryGeoJsonSource != null) {
+            Style style = mapboxMap.getStyle();
+            for (Map.Entry<String, String> partitionLayer : partitionLayerIds.entrySet()) {
+                style.removeLayer(partitionLayer.getValue());
+                style.removeSource(primaryGeoJsonSource.getId() + "-" + partitionLayer.getKey());
+            }
+        }
+
+        partitionLayerIds.clear();
+    }
+
+    @NonNull
+    @Override
+    public List<com.mapbox.geojson.Feature> queryFeatures(@NonNull LatLngBounds bounds) {
+        return featureSpatialIndex.query(bounds);
+    }
+
     public void initializePrimaryGeoJsonSource(String sourceId, boolean isFetchSourceFromStyle, String geoJsonSource) {
         if (sourceId == null || (isFetchSourceFromStyle && geoJsonSource == null)) {
             Log.e(TAG, "GeoJson source initialization failed! Ensure that the source id is not null or that the GeoJson source is not null.");
@@ -1091,6 +1828,18 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
 
     private void initializeFeatureCollection() {
         featureCollection = FeatureCollection.fromFeatures(new ArrayList<>());
+        featureMap.clear();
+        featureSpatialIndex.clear();
+
+        if (primarySourceClusterOptions != null) {
+            primaryClusterIndex = null;
+            rebuildPrimaryClusterIndex();
+        }
+
+        if (primaryFeatureStore != null) {
+            removePartitionLayersAndSources();
+            primaryFeatureStore = new PartitionedFeatureStore(primaryFeatureStore.getGeohashPrecision());
+        }
     }
 
     public CameraPosition getCameraPosition() {
@@ -1231,7 +1980,7 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
         PointF pixel = mapboxMap.getProjection().toScreenLocation(point);
 
         if (onFeatureClickListener != null) {
-            List<com.mapbox.geojson.Feature> features = mapboxMap.queryRenderedFeatures(pixel, featureClickExpressionFilter, featureClickLayerIdFilters);
+            List<com.mapbox.geojson.Feature> features = getClickedFeatures(point, pixel);
 
             if (features.size() > 0) {
                 onFeatureClickListener.onFeatureClick(features);
@@ -1263,29 +2012,31 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
     }
 
     /**
-     * return the clicked KujakuLayer
+     * Get the features clicked as defined by the {@link FeatureClickOptions} of the {@link OnFeatureClickListener}
      *
+     * @param point
      * @param pixel
      * @return
      */
-    private KujakuLayer getKujakuLayerSelected(PointF pixel) {
-        List<String> kujakuLayerListIds = new ArrayList<>();
-
-        for (KujakuLayer layer: kujakuLayers) {
-            for (String layerId : layer.getLayerIds()) {
-                kujakuLayerListIds.add(layerId);
-            }
-
-            String[] kujakuLayerIds = new String[kujakuLayerListIds.size()];
-            kujakuLayerIds = kujakuLayerListIds.toArray(kujakuLayerIds);
-            List<com.mapbox.geojson.Feature> features = mapboxMap.queryRenderedFeatures(pixel, null, kujakuLayerIds);
-
-            if (features.size() > 0) {
-               return layer;
-            }
+    private List<com.mapbox.geojson.Feature> getClickedFeatures(@NonNull LatLng point, @NonNull PointF pixel) {
+        if (featureClickOptions.getMode() == FeatureClickOptions.MODE_NEAREST_FEATURES) {
+            double radius = featureClickOptions.getRadius() * getResources().getDisplayMetrics().density
+                    * mapboxMap.getProjection().getMetersPerPixelAtLatitude(point.getLatitude());
+            return featureSpatialIndex.nearest(point.getLatitude(), point.getLongitude(), radius
+                    , featureClickOptions.getMaxFeatureCount());
         }
 
-        return null;
+        return mapboxMap.queryRenderedFeatures(pixel, featureClickOptions.getExpressionFilter(), featureClickOptions.getLayerIds());
+    }
+
+    /**
+     * return the clicked KujakuLayer
+     *
+     * @param pixel
+     * @return
+     */
+    private KujakuLayer getKujakuLayerSelected(PointF pixel) {
+        return kujakuLayerHitTester.getLayerAt(mapboxMap, pixel);
     }
 
     public boolean isWarmGps() {
@@ -1343,6 +2094,7 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
         kujakuLayer.setRemoved(false);
         if (!kujakuLayers.contains(kujakuLayer)) {
             kujakuLayers.add(kujakuLayer);
+            kujakuLayerHitTester.addLayer(kujakuLayer);
             getMapAsync(new OnMapReadyCallback() {
                 @Override
                 public void onMapReady(MapboxMap mapboxMap) {
@@ -1435,6 +2187,7 @@ public class KujakuMapView extends MapView implements IKujakuMapView, MapboxMap.
         }
 
         kujakuLayers.remove(kujakuLayer);
+        kujakuLayerHitTester.removeLayer(kujakuLayer);
     }
 
     private void resetRejectionDialogContent() {
@@ -27,11 +27,25 @@ public class WmtsCapabilities {
     @Attribute(name="version", required=false)
     private String version;
 
+    public WmtsCapabilities() {}
+
+    public WmtsCapabilities(@Nullable WmtsServiceIdentification serviceIdentification, @NonNull WmtsContents contents
+            , @Nullable String version) {
+        this.serviceIdentification = serviceIdentification;
+        this.contents = contents;
+        this.version = version;
+    }
+
     @Nullable
     public WmtsServiceIdentification getServiceIdentification() {
         return this.serviceIdentification;
     }
 
+    @Nullable
+    public WmtsContents getContents() {
+        return this.contents;
+    }
+
     @Nullable
     public String getVersion() {
         return this.version;
@@ -21,6 +21,13 @@ public class WmtsContents {
     @ElementList(inline=true, entry="TileMatrixSet")
     private List<WmtsTileMatrixSet> tileMatrixSets;
 
+    public WmtsContents() {}
+
+    public WmtsContents(@NonNull List<WmtsLayer> layers, @NonNull List<WmtsTileMatrixSet> tileMatrixSets) {
+        this.layers = layers;
+        this.tileMatrixSets = tileMatrixSets;
+    }
+
     @NonNull
     public List<WmtsLayer> getLayers() {
         return this.layers;
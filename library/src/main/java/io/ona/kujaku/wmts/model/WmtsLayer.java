@@ -43,6 +43,17 @@ public class WmtsLayer {
   
     private int tilesSize;
 
+    public WmtsLayer() {}
+
+    public WmtsLayer(@NonNull List<LanguageStringType> titles, @NonNull String identifier, @NonNull List<WmtsStyle> styles
+            , @NonNull List<WmtsTileMatrixSetLink> tileMatrixSetLinks, @NonNull List<WmtsResourceUrl> resourceURLs) {
+        this.titles = titles;
+        this.identifier = identifier;
+        this.styles = styles;
+        this.tileMatrixSetLinks = tileMatrixSetLinks;
+        this.resourceURLs = resourceURLs;
+    }
+
     @NonNull
     public List<LanguageStringType> getTitles() {
         return this.titles;
@@ -53,6 +64,21 @@ public class WmtsLayer {
         return this.identifier;
     }
 
+    @NonNull
+    public List<WmtsStyle> getStyles() {
+        return this.styles;
+    }
+
+    @NonNull
+    public List<WmtsTileMatrixSetLink> getTileMatrixSetLinks() {
+        return this.tileMatrixSetLinks;
+    }
+
+    @NonNull
+    public List<WmtsResourceUrl> getResourceUrls() {
+        return this.resourceURLs;
+    }
+
     public void setSelectedStyleIdentifier(@NonNull String selectedStyleIdentifier) {
         this.selectedStyleIdentifier = selectedStyleIdentifier;
     }
@@ -45,12 +45,27 @@ public class WmtsResourceUrl {
     @Attribute(name="template")
     private String template;
 
+    public WmtsResourceUrl() {}
+
+    public WmtsResourceUrl(@NonNull String format, @NonNull String resourceType, @NonNull String template) {
+        this.format = format;
+        this.resourceType = resourceType;
+        this.template = template;
+    }
+
     @NonNull
     public String getFormat() { return this.format; }
 
     @NonNull
     public String getResourceType() { return this.resourceType; }
 
+    /**
+     * Return the template Url as described in the capabilities, without any variable replaced
+     * @return string
+     */
+    @NonNull
+    public String getTemplate() { return this.template; }
+
     /**
      * Return template Url
      * @return string
@@ -17,6 +17,12 @@ public class WmtsServiceIdentification {
     @ElementList(inline=true, entry="Title")
     private List<LanguageStringType> titles;
 
+    public WmtsServiceIdentification() {}
+
+    public WmtsServiceIdentification(@NonNull List<LanguageStringType> titles) {
+        this.titles = titles;
+    }
+
     @NonNull
     public List<LanguageStringType> getTitles() { return this.titles; }
 
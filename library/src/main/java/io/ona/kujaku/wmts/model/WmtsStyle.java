@@ -28,6 +28,14 @@ public class WmtsStyle {
     @Element(name="Identifier")
     private String identifier;
 
+    public WmtsStyle() {}
+
+    public WmtsStyle(boolean isDefault, @Nullable List<LanguageStringType> titles, @NonNull String identifier) {
+        this.isDefault = isDefault;
+        this.titles = titles;
+        this.identifier = identifier;
+    }
+
     public boolean isDefault() {
         return this.isDefault;
     }
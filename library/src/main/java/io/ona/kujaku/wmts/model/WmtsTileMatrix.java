@@ -15,6 +15,13 @@ public class WmtsTileMatrix {
     @Element(name="TileWidth")
     private int tileWidth;
 
+    public WmtsTileMatrix() {}
+
+    public WmtsTileMatrix(int identifier, int tileWidth) {
+        this.identifier = identifier;
+        this.tileWidth = tileWidth;
+    }
+
     public int getIdentifier() {
         return this.identifier;
     }
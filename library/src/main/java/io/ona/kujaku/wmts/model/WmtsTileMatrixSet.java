@@ -26,6 +26,13 @@ public class WmtsTileMatrixSet {
     private int minimumZoom = -1;
     private int tilesSize = -1;
 
+    public WmtsTileMatrixSet() {}
+
+    public WmtsTileMatrixSet(@NonNull String identifier, @NonNull List<WmtsTileMatrix> tileMatrixs) {
+        this.identifier = identifier;
+        this.tileMatrixs = tileMatrixs;
+    }
+
     @NonNull
     public String getIdentifier() {
         return this.identifier;
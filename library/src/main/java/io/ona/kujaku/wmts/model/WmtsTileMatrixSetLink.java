@@ -14,6 +14,12 @@ public class WmtsTileMatrixSetLink {
     @Element(name="TileMatrixSet")
     private String tileMatrixSet;
 
+    public WmtsTileMatrixSetLink() {}
+
+    public WmtsTileMatrixSetLink(@NonNull String tileMatrixSet) {
+        this.tileMatrixSet = tileMatrixSet;
+    }
+
     @NonNull
     public String getTileMatrixSet() {
         return this.tileMatrixSet;
@@ -20,6 +20,13 @@ public class LanguageStringType {
     @Attribute(name="lang", required=false)
     private String lang;
 
+    public LanguageStringType() {}
+
+    public LanguageStringType(@NonNull String value, @Nullable String lang) {
+        this.value = value;
+        this.lang = lang;
+    }
+
     @NonNull
     public String getValue() {
         return this.value;
@@ -0,0 +1,220 @@
+package io.ona.kujaku.wmts.serializer;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.ona.kujaku.wmts.model.WmtsCapabilities;
+import io.ona.kujaku.wmts.model.WmtsContents;
+import io.ona.kujaku.wmts.model.WmtsLayer;
+import io.ona.kujaku.wmts.model.WmtsResourceUrl;
+import io.ona.kujaku.wmts.model.WmtsServiceIdentification;
+import io.ona.kujaku.wmts.model.WmtsStyle;
+import io.ona.kujaku.wmts.model.WmtsTileMatrix;
+import io.ona.kujaku.wmts.model.WmtsTileMatrixSet;
+import io.ona.kujaku.wmts.model.WmtsTileMatrixSetLink;
+import io.ona.kujaku.wmts.model.common.ows.LanguageStringType;
+
+/**
+ * Writes {@link WmtsCapabilities} in a compact binary form & reads them back. Only the elements of the
+ * capabilities which are kept by the model are written, so reading them back is much faster than parsing
+ * the XML capabilities document again.
+ */
+public class WmtsCapabilitiesBinarySerializer {
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public void write(@NonNull WmtsCapabilities capabilities, @NonNull DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        writeString(out, capabilities.getVersion());
+
+        WmtsServiceIdentification serviceIdentification = capabilities.getServiceIdentification();
+        out.writeBoolean(serviceIdentification != null);
+        if (serviceIdentification != null) {
+            writeTitles(out, serviceIdentification.getTitles());
+        }
+
+        WmtsContents contents = capabilities.getContents();
+        if (contents == null) {
+            throw new IOException("The capabilities have no contents");
+        }
+
+        List<WmtsLayer> layers = contents.getLayers();
+        out.writeInt(layers.size());
+        for (WmtsLayer layer : layers) {
+            writeLayer(out, layer);
+        }
+
+        List<WmtsTileMatrixSet> tileMatrixSets = contents.geTileMatrixSets();
+        out.writeInt(tileMatrixSets.size());
+        for (WmtsTileMatrixSet tileMatrixSet : tileMatrixSets) {
+            writeString(out, tileMatrixSet.getIdentifier());
+
+            List<WmtsTileMatrix> tileMatrixs = tileMatrixSet.getTileMatrixs();
+            out.writeInt(tileMatrixs.size());
+            for (WmtsTileMatrix tileMatrix : tileMatrixs) {
+                out.writeInt(tileMatrix.getIdentifier());
+                out.writeInt(tileMatrix.getTileWidth());
+            }
+        }
+    }
+
+    /**
+     * @param in
+     * @return
+     * @throws IOException if the data was written with another {@link #FORMAT_VERSION} or is truncated
+     */
+    @NonNull
+    public WmtsCapabilities read(@NonNull DataInputStream in) throws IOException {
+        int formatVersion = in.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported capabilities format version " + formatVersion);
+        }
+
+        String version = readString(in);
+
+        WmtsServiceIdentification serviceIdentification = null;
+        if (in.readBoolean()) {
+            serviceIdentification = new WmtsServiceIdentification(readTitles(in));
+        }
+
+        int layerCount = in.readInt();
+        List<WmtsLayer> layers = new ArrayList<>(layerCount);
+        for (int i = 0; i < layerCount; i++) {
+            layers.add(readLayer(in));
+        }
+
+        int tileMatrixSetCount = in.readInt();
+        List<WmtsTileMatrixSet> tileMatrixSets = new ArrayList<>(tileMatrixSetCount);
+        for (int i = 0; i < tileMatrixSetCount; i++) {
+            String identifier = readString(in);
+
+            int tileMatrixCount = in.readInt();
+            List<WmtsTileMatrix> tileMatrixs = new ArrayList<>(tileMatrixCount);
+            for (int j = 0; j < tileMatrixCount; j++) {
+                tileMatrixs.add(new WmtsTileMatrix(in.readInt(), in.readInt()));
+            }
+
+            tileMatrixSets.add(new WmtsTileMatrixSet(identifier, tileMatrixs));
+        }
+
+        return new WmtsCapabilities(serviceIdentification, new WmtsContents(layers, tileMatrixSets), version);
+    }
+
+    private void writeLayer(@NonNull DataOutputStream out, @NonNull WmtsLayer layer) throws IOException {
+        writeTitles(out, layer.getTitles());
+        writeString(out, layer.getIdentifier());
+
+        List<WmtsStyle> styles = layer.getStyles();
+        out.writeInt(styles.size());
+        for (WmtsStyle style : styles) {
+            out.writeBoolean(style.isDefault());
+            writeTitles(out, style.getTitles());
+            writeString(out, style.getIdentifier());
+        }
+
+        List<WmtsTileMatrixSetLink> tileMatrixSetLinks = layer.getTileMatrixSetLinks();
+        out.writeInt(tileMatrixSetLinks.size());
+        for (WmtsTileMatrixSetLink tileMatrixSetLink : tileMatrixSetLinks) {
+            writeString(out, tileMatrixSetLink.getTileMatrixSet());
+        }
+
+        List<WmtsResourceUrl> resourceUrls = layer.getResourceUrls();
+        out.writeInt(resourceUrls.size());
+        for (WmtsResourceUrl resourceUrl : resourceUrls) {
+            writeString(out, resourceUrl.getFormat());
+            writeString(out, resourceUrl.getResourceType());
+            writeString(out, resourceUrl.getTemplate());
+        }
+    }
+
+    @NonNull
+    private WmtsLayer readLayer(@NonNull DataInputStream in) throws IOException {
+        List<LanguageStringType> titles = readTitles(in);
+        String identifier = readString(in);
+
+        int styleCount = in.readInt();
+        List<WmtsStyle> styles = new ArrayList<>(styleCount);
+        for (int i = 0; i < styleCount; i++) {
+            boolean isDefault = in.readBoolean();
+            styles.add(new WmtsStyle(isDefault, readTitles(in), readString(in)));
+        }
+
+        int tileMatrixSetLinkCount = in.readInt();
+        List<WmtsTileMatrixSetLink> tileMatrixSetLinks = new ArrayList<>(tileMatrixSetLinkCount);
+        for (int i = 0; i < tileMatrixSetLinkCount; i++) {
+            tileMatrixSetLinks.add(new WmtsTileMatrixSetLink(readString(in)));
+        }
+
+        int resourceUrlCount = in.readInt();
+        List<WmtsResourceUrl> resourceUrls = new ArrayList<>(resourceUrlCount);
+        for (int i = 0; i < resourceUrlCount; i++) {
+            resourceUrls.add(new WmtsResourceUrl(readString(in), readString(in), readString(in)));
+        }
+
+        return new WmtsLayer(titles, identifier, styles, tileMatrixSetLinks, resourceUrls);
+    }
+
+    private void writeTitles(@NonNull DataOutputStream out, @Nullable List<LanguageStringType> titles) throws IOException {
+        if (titles == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        out.writeInt(titles.size());
+        for (LanguageStringType title : titles) {
+            writeString(out, title.getValue());
+            writeString(out, title.getLang());
+        }
+    }
+
+    @Nullable
+    private List<LanguageStringType> readTitles(@NonNull DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count == -1) {
+            return null;
+        }
+
+        List<LanguageStringType> titles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            titles.add(new LanguageStringType(readString(in), readString(in)));
+        }
+
+        return titles;
+    }
+
+    /**
+     * Strings are written as their UTF-8 length followed by their bytes since {@link DataOutputStream#writeUTF(String)}
+     * is limited to 65535 bytes
+     */
+    private void writeString(@NonNull DataOutputStream out, @Nullable String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Nullable
+    private String readString(@NonNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,343 @@
+package io.ona.kujaku.wmts.serializer;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.ona.kujaku.wmts.model.WmtsCapabilities;
+import io.ona.kujaku.wmts.model.WmtsContents;
+import io.ona.kujaku.wmts.model.WmtsLayer;
+import io.ona.kujaku.wmts.model.WmtsResourceUrl;
+import io.ona.kujaku.wmts.model.WmtsServiceIdentification;
+import io.ona.kujaku.wmts.model.WmtsStyle;
+import io.ona.kujaku.wmts.model.WmtsTileMatrix;
+import io.ona.kujaku.wmts.model.WmtsTileMatrixSet;
+import io.ona.kujaku.wmts.model.WmtsTileMatrixSetLink;
+import io.ona.kujaku.wmts.model.common.ows.LanguageStringType;
+
+/**
+ * Streaming reader of WMTS GetCapabilities documents which builds the {@link WmtsCapabilities} model
+ * with an {@link XmlPullParser} instead of the reflection of {@link WmtsCapabilitiesSerializer}.
+ * <p>
+ * Elements which are not part of the model are skipped without being materialized. When layer identifiers
+ * are given, only those layers & the tile matrix sets they link to are built: the other layers & tile
+ * matrix sets are skipped as soon as their identifier has been read. This relies on the layers preceding
+ * the tile matrix sets in the contents, as required by the WMTS schema.
+ * <p>
+ * Like {@link WmtsCapabilitiesSerializer}, elements are matched by their local name whatever their namespace.
+ */
+public class WmtsCapabilitiesPullParser {
+
+    private static final String CAPABILITIES = "Capabilities";
+    private static final String SERVICE_IDENTIFICATION = "ServiceIdentification";
+    private static final String CONTENTS = "Contents";
+    private static final String LAYER = "Layer";
+    private static final String TITLE = "Title";
+    private static final String IDENTIFIER = "Identifier";
+    private static final String STYLE = "Style";
+    private static final String TILE_MATRIX_SET_LINK = "TileMatrixSetLink";
+    private static final String TILE_MATRIX_SET = "TileMatrixSet";
+    private static final String TILE_MATRIX = "TileMatrix";
+    private static final String TILE_WIDTH = "TileWidth";
+    private static final String RESOURCE_URL = "ResourceURL";
+
+    private static final String VERSION_ATTRIBUTE = "version";
+    private static final String LANG_ATTRIBUTE = "lang";
+    private static final String IS_DEFAULT_ATTRIBUTE = "isDefault";
+    private static final String FORMAT_ATTRIBUTE = "format";
+    private static final String RESOURCE_TYPE_ATTRIBUTE = "resourceType";
+    private static final String TEMPLATE_ATTRIBUTE = "template";
+
+    /**
+     * Reads the full capabilities
+     *
+     * @param source
+     * @return
+     * @throws XmlPullParserException if the document is not a valid capabilities document
+     * @throws IOException
+     */
+    @NonNull
+    public WmtsCapabilities read(@NonNull Reader source) throws XmlPullParserException, IOException {
+        return read(source, null);
+    }
+
+    /**
+     * @param source
+     * @param layerIdentifiers Identifiers of the layers to read or {@code null} to read all of them
+     * @return The capabilities with the requested layers which were found & the tile matrix sets they link to
+     * @throws XmlPullParserException if the document is not a valid capabilities document
+     * @throws IOException
+     */
+    @NonNull
+    public WmtsCapabilities read(@NonNull Reader source, @Nullable Set<String> layerIdentifiers) throws XmlPullParserException, IOException {
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(source);
+        parser.nextTag();
+
+        if (!CAPABILITIES.equals(parser.getName())) {
+            throw new XmlPullParserException("The document is not a WMTS capabilities document", parser, null);
+        }
+
+        String version = getAttributeValue(parser, VERSION_ATTRIBUTE);
+        WmtsServiceIdentification serviceIdentification = null;
+        WmtsContents contents = null;
+
+        while (nextChildTag(parser)) {
+            String name = parser.getName();
+            if (SERVICE_IDENTIFICATION.equals(name)) {
+                serviceIdentification = readServiceIdentification(parser);
+            } else if (CONTENTS.equals(name)) {
+                contents = readContents(parser, layerIdentifiers);
+            } else {
+                skip(parser);
+            }
+        }
+
+        if (contents == null) {
+            throw new XmlPullParserException("The capabilities have no contents", parser, null);
+        }
+
+        return new WmtsCapabilities(serviceIdentification, contents, version);
+    }
+
+    @NonNull
+    private WmtsServiceIdentification readServiceIdentification(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
+        List<LanguageStringType> titles = new ArrayList<>();
+
+        while (nextChildTag(parser)) {
+            if (TITLE.equals(parser.getName())) {
+                titles.add(readLanguageString(parser));
+            } else {
+                skip(parser);
+            }
+        }
+
+        return new WmtsServiceIdentification(titles);
+    }
+
+    @NonNull
+    private WmtsContents readContents(@NonNull XmlPullParser parser, @Nullable Set<String> layerIdentifiers) throws XmlPullParserException, IOException {
+        List<WmtsLayer> layers = new ArrayList<>();
+        List<WmtsTileMatrixSet> tileMatrixSets = new ArrayList<>();
+        Set<String> linkedTileMatrixSets = new HashSet<>();
+
+        while (nextChildTag(parser)) {
+            String name = parser.getName();
+            if (LAYER.equals(name)) {
+                WmtsLayer layer = readLayer(parser, layerIdentifiers);
+                if (layer != null) {
+                    layers.add(layer);
+                    for (WmtsTileMatrixSetLink tileMatrixSetLink : layer.getTileMatrixSetLinks()) {
+                        linkedTileMatrixSets.add(tileMatrixSetLink.getTileMatrixSet());
+                    }
+                }
+            } else if (TILE_MATRIX_SET.equals(name)) {
+                WmtsTileMatrixSet tileMatrixSet = readTileMatrixSet(parser, layerIdentifiers == null ? null : linkedTileMatrixSets);
+                if (tileMatrixSet != null) {
+                    tileMatrixSets.add(tileMatrixSet);
+                }
+            } else {
+                skip(parser);
+            }
+        }
+
+        return new WmtsContents(layers, tileMatrixSets);
+    }
+
+    /**
+     * @return The layer or {@code null} if it was skipped because its identifier is not one of the layer identifiers
+     */
+    @Nullable
+    private WmtsLayer readLayer(@NonNull XmlPullParser parser, @Nullable Set<String> layerIdentifiers) throws XmlPullParserException, IOException {
+        List<LanguageStringType> titles = new ArrayList<>();
+        String identifier = null;
+        List<WmtsStyle> styles = new ArrayList<>();
+        List<WmtsTileMatrixSetLink> tileMatrixSetLinks = new ArrayList<>();
+        List<WmtsResourceUrl> resourceUrls = new ArrayList<>();
+
+        while (nextChildTag(parser)) {
+            String name = parser.getName();
+            if (TITLE.equals(name)) {
+                titles.add(readLanguageString(parser));
+            } else if (IDENTIFIER.equals(name)) {
+                identifier = parser.nextText();
+                if (layerIdentifiers != null && !layerIdentifiers.contains(identifier)) {
+                    skip(parser);
+                    return null;
+                }
+            } else if (STYLE.equals(name)) {
+                styles.add(readStyle(parser));
+            } else if (TILE_MATRIX_SET_LINK.equals(name)) {
+                tileMatrixSetLinks.add(readTileMatrixSetLink(parser));
+            } else if (RESOURCE_URL.equals(name)) {
+                resourceUrls.add(new WmtsResourceUrl(getAttributeValue(parser, FORMAT_ATTRIBUTE)
+                        , getAttributeValue(parser, RESOURCE_TYPE_ATTRIBUTE), getAttributeValue(parser, TEMPLATE_ATTRIBUTE)));
+                skip(parser);
+            } else {
+                skip(parser);
+            }
+        }
+
+        if (identifier == null) {
+            throw new XmlPullParserException("A layer has no identifier", parser, null);
+        }
+
+        return new WmtsLayer(titles, identifier, styles, tileMatrixSetLinks, resourceUrls);
+    }
+
+    @NonNull
+    private WmtsStyle readStyle(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
+        boolean isDefault = Boolean.parseBoolean(getAttributeValue(parser, IS_DEFAULT_ATTRIBUTE));
+        List<LanguageStringType> titles = null;
+        String identifier = null;
+
+        while (nextChildTag(parser)) {
+            String name = parser.getName();
+            if (TITLE.equals(name)) {
+                if (titles == null) {
+                    titles = new ArrayList<>();
+                }
+                titles.add(readLanguageString(parser));
+            } else if (IDENTIFIER.equals(name)) {
+                identifier = parser.nextText();
+            } else {
+                skip(parser);
+            }
+        }
+
+        return new WmtsStyle(isDefault, titles, identifier);
+    }
+
+    @NonNull
+    private WmtsTileMatrixSetLink readTileMatrixSetLink(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
+        String tileMatrixSet = null;
+
+        while (nextChildTag(parser)) {
+            if (TILE_MATRIX_SET.equals(parser.getName())) {
+                tileMatrixSet = parser.nextText();
+            } else {
+                skip(parser);
+            }
+        }
+
+        return new WmtsTileMatrixSetLink(tileMatrixSet);
+    }
+
+    /**
+     * @param identifiers Identifiers of the tile matrix sets to read or {@code null} to read all of them
+     * @return The tile matrix set or {@code null} if it was skipped because its identifier is not one of the identifiers
+     */
+    @Nullable
+    private WmtsTileMatrixSet readTileMatrixSet(@NonNull XmlPullParser parser, @Nullable Set<String> identifiers) throws XmlPullParserException, IOException {
+        String identifier = null;
+        List<WmtsTileMatrix> tileMatrixs = new ArrayList<>();
+
+        while (nextChildTag(parser)) {
+            String name = parser.getName();
+            if (IDENTIFIER.equals(name)) {
+                identifier = parser.nextText();
+                if (identifiers != null && !identifiers.contains(identifier)) {
+                    skip(parser);
+                    return null;
+                }
+            } else if (TILE_MATRIX.equals(name)) {
+                tileMatrixs.add(readTileMatrix(parser));
+            } else {
+                skip(parser);
+            }
+        }
+
+        return new WmtsTileMatrixSet(identifier, tileMatrixs);
+    }
+
+    @NonNull
+    private WmtsTileMatrix readTileMatrix(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
+        int identifier = 0;
+        int tileWidth = 0;
+
+        while (nextChildTag(parser)) {
+            String name = parser.getName();
+            if (IDENTIFIER.equals(name)) {
+                identifier = readInt(parser);
+            } else if (TILE_WIDTH.equals(name)) {
+                tileWidth = readInt(parser);
+            } else {
+                skip(parser);
+            }
+        }
+
+        return new WmtsTileMatrix(identifier, tileWidth);
+    }
+
+    @NonNull
+    private LanguageStringType readLanguageString(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
+        String lang = getAttributeValue(parser, LANG_ATTRIBUTE);
+        return new LanguageStringType(parser.nextText(), lang);
+    }
+
+    private int readInt(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
+        String text = parser.nextText();
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new XmlPullParserException("Invalid integer " + text, parser, e);
+        }
+    }
+
+    /**
+     * Moves to the next child start tag of the current element
+     *
+     * @return {@code true} if the parser is on a child start tag, {@code false} if it reached the end tag of the element
+     */
+    private boolean nextChildTag(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
+        int eventType = parser.next();
+        while (eventType != XmlPullParser.START_TAG && eventType != XmlPullParser.END_TAG) {
+            if (eventType == XmlPullParser.END_DOCUMENT) {
+                throw new XmlPullParserException("Unexpected end of the document", parser, null);
+            }
+            eventType = parser.next();
+        }
+
+        return eventType == XmlPullParser.START_TAG;
+    }
+
+    /**
+     * Moves to the end tag of the current element without reading its children. Once a child has been read,
+     * the current element is the parent.
+     */
+    private void skip(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int eventType = parser.next();
+            if (eventType == XmlPullParser.START_TAG) {
+                depth++;
+            } else if (eventType == XmlPullParser.END_TAG) {
+                depth--;
+            } else if (eventType == XmlPullParser.END_DOCUMENT) {
+                throw new XmlPullParserException("Unexpected end of the document", parser, null);
+            }
+        }
+    }
+
+    @Nullable
+    private String getAttributeValue(@NonNull XmlPullParser parser, @NonNull String name) {
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            if (name.equals(parser.getAttributeName(i))) {
+                return parser.getAttributeValue(i);
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,113 @@
+package io.ona.kujaku.benchmarks;
+
+import android.content.Context;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.ReflectionHelpers;
+import org.threeten.bp.LocalDateTime;
+import org.threeten.bp.format.DateTimeFormatter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import io.ona.kujaku.comparators.ArrowLineSortConfigComparator;
+import io.ona.kujaku.exceptions.InvalidArrowLineConfigException;
+import io.ona.kujaku.layers.ArrowLineLayer;
+
+/**
+ * Sorting features for an {@link ArrowLineLayer} by date-time using the comparator that parsed the dates
+ * on every comparison, the current {@link ArrowLineSortConfigComparator} and the decorate-sort-undecorate
+ * sort stage of {@link ArrowLineLayer}
+ */
+public class ArrowLineSortBenchmark extends BaseBenchmark {
+
+    private static final int[] FEATURE_COUNTS = {10000, 100000};
+    private static final String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+    @Test
+    public void sortByDateTime() throws InvalidArrowLineConfigException {
+        Context context = RuntimeEnvironment.application;
+
+        for (int featureCount : FEATURE_COUNTS) {
+            final List<Feature> features = generateFeatures(featureCount);
+            final FeatureCollection featureCollection = FeatureCollection.fromFeatures(features);
+            final ArrowLineLayer.SortConfig sortConfig = new ArrowLineLayer.SortConfig("visit-date"
+                    , ArrowLineLayer.SortConfig.SortOrder.ASC
+                    , ArrowLineLayer.SortConfig.PropertyType.DATE_TIME)
+                    .setDateTimeFormat(DATE_TIME_FORMAT);
+            final ArrowLineLayer arrowLineLayer = new ArrowLineLayer.Builder(context
+                    , new ArrowLineLayer.FeatureConfig(featureCollection), sortConfig)
+                    .build();
+
+            double legacyDuration = measure(new Runnable() {
+                @Override
+                public void run() {
+                    Collections.sort(new ArrayList<>(features), new LegacyComparator(sortConfig));
+                }
+            });
+            report("sortByDateTime legacyComparator", "features=" + featureCount, legacyDuration);
+
+            double comparatorDuration = measure(new Runnable() {
+                @Override
+                public void run() {
+                    Collections.sort(new ArrayList<>(features), new ArrowLineSortConfigComparator(sortConfig));
+                }
+            });
+            report("sortByDateTime comparator", "features=" + featureCount, comparatorDuration);
+
+            double decoratedSortDuration = measure(new Runnable() {
+                @Override
+                public void run() {
+                    ReflectionHelpers.callInstanceMethod(arrowLineLayer
+                            , "sortFeatures"
+                            , ReflectionHelpers.ClassParameter.from(FeatureCollection.class, featureCollection)
+                            , ReflectionHelpers.ClassParameter.from(ArrowLineLayer.SortConfig.class, sortConfig));
+                }
+            });
+            report("sortByDateTime decorateSortUndecorate", "features=" + featureCount, decoratedSortDuration);
+        }
+    }
+
+    private List<Feature> generateFeatures(int count) {
+        List<Feature> features = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Feature feature = Feature.fromGeometry(getRandomPoint());
+            feature.addStringProperty("visit-date", String.format(Locale.ENGLISH, "2019-%02d-%02d %02d:%02d:%02d"
+                    , 1 + (int) (Math.random() * 12), 1 + (int) (Math.random() * 28)
+                    , (int) (Math.random() * 24), (int) (Math.random() * 60), (int) (Math.random() * 60)));
+            features.add(feature);
+        }
+
+        return features;
+    }
+
+    /**
+     * The date-time comparison of ArrowLineSortConfigComparator before the sort keys were extracted once
+     */
+    private static class LegacyComparator implements Comparator<Feature> {
+
+        private final ArrowLineLayer.SortConfig sortConfig;
+
+        private LegacyComparator(ArrowLineLayer.SortConfig sortConfig) {
+            this.sortConfig = sortConfig;
+        }
+
+        @Override
+        public int compare(Feature feature1, Feature feature2) {
+            String sortProperty = sortConfig.getSortProperty();
+            DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern(sortConfig.getDateTimeFormat());
+
+            LocalDateTime localDateTime1 = LocalDateTime.parse(feature1.getStringProperty(sortProperty), dateTimeFormatter);
+            LocalDateTime localDateTime2 = LocalDateTime.parse(feature2.getStringProperty(sortProperty), dateTimeFormatter);
+
+            return localDateTime1.compareTo(localDateTime2);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.ona.kujaku.benchmarks;
+
+import org.junit.Assume;
+import org.junit.Before;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+import io.ona.kujaku.BaseTest;
+
+/**
+ * Base class of the micro-benchmarks. They are skipped during normal test runs and can be run with:
+ * <p>
+ * {@code ./gradlew :library:testDebugUnitTest -Dkujaku.benchmarks=true --tests 'io.ona.kujaku.benchmarks.*'}
+ * <p>
+ * Each measurement is preceded by warm-up iterations so that the JIT has compiled the code under test.
+ * The results are printed to the standard output and can be found in the test report.
+ */
+public abstract class BaseBenchmark extends BaseTest {
+
+    public static final String BENCHMARKS_PROPERTY = "kujaku.benchmarks";
+
+    protected static final int WARM_UP_ITERATIONS = 5;
+    protected static final int MEASURED_ITERATIONS = 10;
+
+    @Before
+    public void assumeBenchmarksEnabled() {
+        Assume.assumeTrue("Benchmarks are disabled", Boolean.getBoolean(BENCHMARKS_PROPERTY));
+    }
+
+    /**
+     * Run the operation {@link #WARM_UP_ITERATIONS} times then measure {@link #MEASURED_ITERATIONS} runs
+     *
+     * @param operation
+     * @return The average duration of a run in milliseconds
+     */
+    protected double measure(Runnable operation) {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            operation.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operation.run();
+        }
+
+        return (System.nanoTime() - start) / (MEASURED_ITERATIONS * 1e6);
+    }
+
+    /**
+     * Run the operation {@link #WARM_UP_ITERATIONS} times then measure the memory allocated by the current
+     * thread during {@link #MEASURED_ITERATIONS} runs
+     *
+     * @param operation
+     * @return The average number of bytes allocated by a run or -1 if the JVM cannot measure allocations
+     */
+    protected long measureAllocations(Runnable operation) {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        com.sun.management.ThreadMXBean allocationsBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            operation.run();
+        }
+
+        long start = allocationsBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operation.run();
+        }
+
+        return (allocationsBean.getThreadAllocatedBytes(threadId) - start) / MEASURED_ITERATIONS;
+    }
+
+    protected void report(String benchmark, String parameters, double milliseconds) {
+        System.out.println(String.format(Locale.ENGLISH, "%-45s %-30s %12.3f ms", benchmark, parameters, milliseconds));
+    }
+
+    protected void reportAllocations(String benchmark, String parameters, long bytes) {
+        System.out.println(String.format(Locale.ENGLISH, "%-45s %-30s %12.1f kB", benchmark, parameters, bytes / 1024d));
+    }
+
+    protected void reportThroughput(String benchmark, String parameters, double operationsPerSecond, String operation) {
+        System.out.println(String.format(Locale.ENGLISH, "%-45s %-30s %12.1f %s/s", benchmark, parameters, operationsPerSecond, operation));
+    }
+}
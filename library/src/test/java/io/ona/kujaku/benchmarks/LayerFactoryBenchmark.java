@@ -0,0 +1,140 @@
+package io.ona.kujaku.benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.ona.kujaku.utils.LayerDefinition;
+import io.ona.kujaku.utils.LayerUtil;
+
+/**
+ * Cost of turning the layer JSON definitions of a style into layer definitions when every layer JSON is
+ * parsed & its expressions re-serialized on each style switch, as {@link LayerUtil#getLayer(String)} used
+ * to, vs when the compiled definitions are cached by {@link LayerUtil}.
+ * <p>
+ * Creating the {@link com.mapbox.mapboxsdk.style.layers.Layer}s from the definitions is the same in both
+ * cases and cannot run outside a device.
+ */
+public class LayerFactoryBenchmark extends BaseBenchmark {
+
+    private static final int[] LAYER_COUNTS = {50, 200};
+
+    @Test
+    public void compileLayers() throws JSONException {
+        for (int layerCount : LAYER_COUNTS) {
+            final List<String> layerJsons = generateLayerJsons(layerCount);
+
+            double duration = measure(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (String layerJson : layerJsons) {
+                            LayerDefinition.compile(new JSONObject(layerJson));
+                        }
+                    } catch (JSONException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+
+            report("compileLayers", "layers=" + layerCount, duration);
+        }
+    }
+
+    @Test
+    public void cachedLayerDefinitions() throws JSONException {
+        final LayerUtil layerUtil = new LayerUtil();
+
+        for (int layerCount : LAYER_COUNTS) {
+            final List<String> layerJsons = generateLayerJsons(layerCount);
+            LayerUtil.clearCache();
+
+            double duration = measure(new Runnable() {
+                @Override
+                public void run() {
+                    for (String layerJson : layerJsons) {
+                        layerUtil.getLayerDefinition(layerJson);
+                    }
+                }
+            });
+
+            report("cachedLayerDefinitions", "layers=" + layerCount, duration);
+        }
+    }
+
+    @Test
+    public void cachedStyleLayerDefinitions() throws JSONException {
+        final LayerUtil layerUtil = new LayerUtil();
+
+        for (int layerCount : LAYER_COUNTS) {
+            JSONArray layers = new JSONArray();
+            for (String layerJson : generateLayerJsons(layerCount)) {
+                layers.put(new JSONObject(layerJson));
+            }
+
+            final String layersJson = layers.toString();
+            LayerUtil.clearCache();
+
+            double duration = measure(new Runnable() {
+                @Override
+                public void run() {
+                    layerUtil.getLayerDefinitions(layersJson);
+                }
+            });
+
+            report("cachedStyleLayerDefinitions", "layers=" + layerCount, duration);
+        }
+    }
+
+    /**
+     * Generate fill, line & symbol layers with data-driven expressions, zoom functions & filters similar to
+     * the layers of the streets base layer
+     *
+     * @param count
+     * @return
+     * @throws JSONException
+     */
+    private List<String> generateLayerJsons(int count) throws JSONException {
+        List<String> layerJsons = new ArrayList<>(count);
+        String[] types = {"fill", "line", "symbol"};
+
+        for (int i = 0; i < count; i++) {
+            String type = types[i % types.length];
+
+            JSONObject layer = new JSONObject();
+            layer.put("id", type + "-" + i);
+            layer.put("type", type);
+            layer.put("source", "composite");
+            layer.put("source-layer", "layer-" + (i % 10));
+            layer.put("minzoom", 5);
+            layer.put("filter", new JSONArray("[\"all\", [\"==\", [\"get\", \"class\"], \"class-" + i + "\"], [\"match\", [\"get\", \"type\"], [\"a\", \"b\", \"c\"], true, false]]"));
+
+            JSONObject layout = new JSONObject();
+            JSONObject paint = new JSONObject();
+            if ("fill".equals(type)) {
+                paint.put("fill-color", new JSONArray("[\"match\", [\"get\", \"class\"], \"park\", \"#d8e8c8\", \"school\", \"#f0e8f8\", \"#e0e0e0\"]"));
+                paint.put("fill-opacity", new JSONArray("[\"interpolate\", [\"linear\"], [\"zoom\"], 5, 0, 6, 1]"));
+            } else if ("line".equals(type)) {
+                layout.put("line-join", "round");
+                paint.put("line-width", new JSONArray("[\"interpolate\", [\"exponential\", 1.5], [\"zoom\"], 5, 0.75, 18, 32]"));
+                paint.put("line-dasharray", new JSONArray("[3, 3]"));
+                paint.put("line-color", "hsl(0, 0%, 100%)");
+            } else {
+                layout.put("text-field", new JSONArray("[\"coalesce\", [\"get\", \"name_en\"], [\"get\", \"name\"]]"));
+                layout.put("text-size", new JSONArray("[\"interpolate\", [\"linear\"], [\"zoom\"], 10, 10, 18, 16]"));
+                layout.put("text-offset", new JSONArray("[0, 0.5]"));
+                paint.put("text-color", "hsl(0, 0%, 40%)");
+            }
+
+            layer.put("layout", layout);
+            layer.put("paint", paint);
+            layerJsons.add(layer.toString());
+        }
+
+        return layerJsons;
+    }
+}
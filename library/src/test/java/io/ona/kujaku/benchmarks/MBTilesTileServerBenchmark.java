@@ -0,0 +1,156 @@
+package io.ona.kujaku.benchmarks;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.ona.kujaku.helpers.MBTilesTileServer;
+import io.ona.kujaku.helpers.storage.MBTilesStore;
+
+/**
+ * Tiles per second served by the {@link MBTilesTileServer} from an MBTiles file of 256 zoom 8 tiles of
+ * 20kB, read directly from the store (cold, the tile cache being too small to hold them), from the tile
+ * cache (hot) & over HTTP by as many concurrent clients as Mapbox opens connections.
+ */
+public class MBTilesTileServerBenchmark extends BaseBenchmark {
+
+    private static final int ZOOM = 8;
+    private static final int TILES_PER_SIDE = 16;
+    private static final int TILE_SIZE = 20 * 1024;
+    private static final int REQUESTS_PER_RUN = 512;
+    private static final int[] CLIENT_COUNTS = {1, 4};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File storeFile;
+
+    @Before
+    public void setUp() {
+        storeFile = new File(temporaryFolder.getRoot(), "benchmark.mbtiles");
+        MBTilesStore store = new MBTilesStore(storeFile);
+        store.setMetadata(MBTilesStore.METADATA_FORMAT, "png");
+
+        Random random = new Random(0);
+        for (int column = 0; column < TILES_PER_SIDE; column++) {
+            for (int row = 0; row < TILES_PER_SIDE; row++) {
+                byte[] tile = new byte[TILE_SIZE];
+                random.nextBytes(tile);
+                store.putTile(ZOOM, column, row, tile);
+            }
+        }
+
+        store.close();
+    }
+
+    @Test
+    public void tileReads() throws Exception {
+        String parameters = String.format(Locale.ENGLISH, "tiles=%d size=%dkB", TILES_PER_SIDE * TILES_PER_SIDE, TILE_SIZE / 1024);
+
+        MBTilesTileServer coldServer = new MBTilesTileServer(TILE_SIZE, MBTilesTileServer.DEFAULT_READERS_PER_STORE);
+        try {
+            coldServer.addStore("benchmark", storeFile);
+            reportThroughput("coldTileReads", parameters, REQUESTS_PER_RUN * 1000 / measure(readTiles(coldServer)), "tiles");
+        } finally {
+            coldServer.close();
+        }
+
+        MBTilesTileServer hotServer = new MBTilesTileServer();
+        try {
+            hotServer.addStore("benchmark", storeFile);
+            reportThroughput("hotTileReads", parameters, REQUESTS_PER_RUN * 1000 / measure(readTiles(hotServer)), "tiles");
+        } finally {
+            hotServer.close();
+        }
+    }
+
+    @Test
+    public void tileRequests() throws Exception {
+        MBTilesTileServer server = new MBTilesTileServer();
+        final ExecutorService clients = Executors.newFixedThreadPool(CLIENT_COUNTS[CLIENT_COUNTS.length - 1]);
+        try {
+            final String tileUrlTemplate = server.addStore("benchmark", storeFile);
+
+            for (final int clientCount : CLIENT_COUNTS) {
+                double duration = measure(new Runnable() {
+                    @Override
+                    public void run() {
+                        requestTiles(clients, clientCount, tileUrlTemplate);
+                    }
+                });
+
+                reportThroughput("tileRequests", "clients=" + clientCount, REQUESTS_PER_RUN * 1000 / duration, "tiles");
+            }
+        } finally {
+            clients.shutdownNow();
+            server.close();
+        }
+    }
+
+    private Runnable readTiles(final MBTilesTileServer server) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < REQUESTS_PER_RUN; i++) {
+                        server.getTile("benchmark", ZOOM, i % TILES_PER_SIDE, (i / TILES_PER_SIDE) % TILES_PER_SIDE);
+                    }
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    private void requestTiles(ExecutorService clients, int clientCount, final String tileUrlTemplate) {
+        Future<?>[] futures = new Future<?>[clientCount];
+        for (int client = 0; client < clientCount; client++) {
+            final int firstRequest = client;
+            final int step = clientCount;
+            futures[client] = clients.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    byte[] buffer = new byte[8192];
+                    for (int i = firstRequest; i < REQUESTS_PER_RUN; i += step) {
+                        String tileUrl = tileUrlTemplate.replace("{z}", String.valueOf(ZOOM))
+                                .replace("{x}", String.valueOf(i % TILES_PER_SIDE))
+                                .replace("{y}", String.valueOf((i / TILES_PER_SIDE) % TILES_PER_SIDE));
+
+                        // Reading the whole body lets the connection be kept alive like Mapbox does
+                        InputStream in = new URL(tileUrl).openConnection().getInputStream();
+                        try {
+                            while (in.read(buffer) != -1) {
+                                // Discarded
+                            }
+                        } finally {
+                            in.close();
+                        }
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
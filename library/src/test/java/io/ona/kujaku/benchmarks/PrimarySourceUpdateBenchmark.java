@@ -0,0 +1,95 @@
+package io.ona.kujaku.benchmarks;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import io.ona.kujaku.spatial.PartitionedFeatureStore;
+
+/**
+ * Latency of pushing an update of 10 features to the primary GeoJSON source against the size of the
+ * collection, when the whole collection is re-serialized vs when only the changed geohash partitions are.
+ * <p>
+ * Serializing to GeoJSON stands for {@link com.mapbox.mapboxsdk.style.sources.GeoJsonSource#setGeoJson(FeatureCollection)}
+ * which cannot run outside a device.
+ */
+public class PrimarySourceUpdateBenchmark extends BaseBenchmark {
+
+    private static final int[] COLLECTION_SIZES = {1000, 10000, 50000};
+    private static final int UPDATED_FEATURES = 10;
+
+    @Test
+    public void fullCollectionUpdate() {
+        for (int collectionSize : COLLECTION_SIZES) {
+            List<Feature> features = generateFeatures(collectionSize);
+            FeatureCollection featureCollection = FeatureCollection.fromFeatures(features);
+
+            double duration = measure(new Runnable() {
+                @Override
+                public void run() {
+                    updateFeatures(features);
+                    featureCollection.toJson();
+                }
+            });
+
+            report("fullCollectionUpdate", "features=" + collectionSize, duration);
+        }
+    }
+
+    @Test
+    public void partitionedUpdate() {
+        for (int precision = 3; precision <= 4; precision++) {
+            for (int collectionSize : COLLECTION_SIZES) {
+                List<Feature> features = generateFeatures(collectionSize);
+                PartitionedFeatureStore featureStore = new PartitionedFeatureStore(precision);
+                for (Feature feature : features) {
+                    featureStore.put(feature);
+                }
+                featureStore.commit();
+
+                double duration = measure(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Feature feature : updateFeatures(features)) {
+                            featureStore.put(feature);
+                        }
+
+                        Set<String> changedPartitions = featureStore.commit();
+                        for (String partitionKey : changedPartitions) {
+                            FeatureCollection.fromFeatures(featureStore.getPartitionFeatures(partitionKey)).toJson();
+                        }
+                    }
+                });
+
+                report("partitionedUpdate", "features=" + collectionSize + " precision=" + precision, duration);
+            }
+        }
+    }
+
+    private List<Feature> updateFeatures(List<Feature> features) {
+        List<Feature> updatedFeatures = new ArrayList<>();
+        for (int i = 0; i < UPDATED_FEATURES; i++) {
+            Feature feature = features.get((int) (Math.random() * features.size()));
+            feature.addStringProperty("task-status", "visited");
+            updatedFeatures.add(feature);
+        }
+
+        return updatedFeatures;
+    }
+
+    private List<Feature> generateFeatures(int count) {
+        List<Feature> features = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Feature feature = Feature.fromGeometry(getRandomPoint(), null, String.valueOf(i));
+            feature.addStringProperty("task-status", "not-visited");
+            features.add(feature);
+        }
+
+        return features;
+    }
+}
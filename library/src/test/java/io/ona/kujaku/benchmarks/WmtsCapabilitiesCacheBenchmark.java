@@ -0,0 +1,99 @@
+package io.ona.kujaku.benchmarks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Locale;
+
+import io.ona.kujaku.helpers.storage.WmtsCapabilitiesCache;
+import io.ona.kujaku.services.WmtsCapabilitiesService;
+import io.ona.kujaku.test.StubHttpServer;
+
+/**
+ * Time until the WMTS capabilities are available against the number of layers they describe, when they
+ * are fetched & parsed (cold start), read from the disk cache (warm start) & revalidated with a
+ * conditional request which the server answers with 304 Not Modified. The capabilities are served by a
+ * local stub HTTP server so that only the transfer, parsing & caching costs are measured.
+ */
+public class WmtsCapabilitiesCacheBenchmark extends BaseBenchmark {
+
+    private static final int[] LAYER_COUNTS = {1, 10, 100};
+    private static final String ETAG = "\"v1\"";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private volatile byte[] capabilitiesDocument;
+    private StubHttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubHttpServer(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                if (ETAG.equals(request.getHeader("If-None-Match"))) {
+                    return new StubHttpServer.Response(HttpURLConnection.HTTP_NOT_MODIFIED, new byte[0]);
+                }
+
+                return new StubHttpServer.Response(HttpURLConnection.HTTP_OK, capabilitiesDocument)
+                        .setHeader("ETag", ETAG);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void capabilitiesStartup() throws Exception {
+        for (final int layerCount : LAYER_COUNTS) {
+            capabilitiesDocument = WmtsCapabilitiesDocuments.generate(layerCount);
+
+            final String url = server.getUrl("/capabilities-" + layerCount + ".xml");
+            final WmtsCapabilitiesCache cache = new WmtsCapabilitiesCache(temporaryFolder.getRoot());
+            final WmtsCapabilitiesService service = new WmtsCapabilitiesService(url, temporaryFolder.getRoot());
+            String parameters = String.format(Locale.ENGLISH, "layers=%d size=%dkB", layerCount, capabilitiesDocument.length / 1024);
+
+            double coldDuration = measure(new Runnable() {
+                @Override
+                public void run() {
+                    cache.remove(url);
+                    fetch(service, url, null);
+                }
+            });
+            report("coldStart", parameters, coldDuration);
+
+            final WmtsCapabilitiesCache.Entry entry = cache.get(url);
+            double warmDuration = measure(new Runnable() {
+                @Override
+                public void run() {
+                    cache.get(url);
+                }
+            });
+            report("warmStart", parameters, warmDuration);
+
+            double revalidationDuration = measure(new Runnable() {
+                @Override
+                public void run() {
+                    fetch(service, url, entry);
+                }
+            });
+            report("notModifiedRevalidation", parameters, revalidationDuration);
+        }
+    }
+
+    private void fetch(WmtsCapabilitiesService service, String url, WmtsCapabilitiesCache.Entry entry) {
+        try {
+            service.fetch(url, entry);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
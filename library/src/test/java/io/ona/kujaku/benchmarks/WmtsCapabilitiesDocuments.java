@@ -0,0 +1,77 @@
+package io.ona.kujaku.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import io.ona.kujaku.utils.IOUtil;
+
+/**
+ * Generates large WMTS capabilities documents, similar to those of national mapping agencies, by
+ * repeating the layer & the tile matrix sets of the test capabilities with distinct identifiers
+ */
+final class WmtsCapabilitiesDocuments {
+
+    private static final String LAYER_IDENTIFIER = "Vegetation_Mapping_Texas_Ecological_Mapping_Systems_Data";
+
+    private static final String LAYER_START = "<Layer>";
+    private static final String LAYER_END = "</Layer>";
+    private static final String TILE_MATRIX_SET_START = "<TileMatrixSet>";
+    private static final String CONTENTS_END = "</Contents>";
+
+    private static final String[] TILE_MATRIX_SETS = {"default028mm", "GoogleMapsCompatible"};
+
+    private WmtsCapabilitiesDocuments() {}
+
+    /**
+     * @param layerCount
+     * @return A capabilities document with {@code layerCount} layers identified by {@link #getLayerIdentifier(int)},
+     * each linking to its own 2 tile matrix sets
+     * @throws IOException
+     */
+    static byte[] generate(int layerCount) throws IOException {
+        String template = readTemplate();
+
+        int layerStart = template.indexOf(LAYER_START);
+        int layerEnd = template.indexOf(LAYER_END) + LAYER_END.length();
+        int tileMatrixSetsStart = template.indexOf(TILE_MATRIX_SET_START, layerEnd);
+        int tileMatrixSetsEnd = template.indexOf(CONTENTS_END);
+
+        String layer = template.substring(layerStart, layerEnd);
+        String tileMatrixSets = template.substring(tileMatrixSetsStart, tileMatrixSetsEnd);
+
+        StringBuilder capabilities = new StringBuilder(template.length() + (layer.length() + tileMatrixSets.length()) * layerCount);
+        capabilities.append(template, 0, layerStart);
+        for (int i = 0; i < layerCount; i++) {
+            capabilities.append(renameTileMatrixSets(layer.replace(">" + LAYER_IDENTIFIER + "</ows:Identifier>"
+                    , ">" + getLayerIdentifier(i) + "</ows:Identifier>"), i));
+        }
+        for (int i = 0; i < layerCount; i++) {
+            capabilities.append(renameTileMatrixSets(tileMatrixSets, i));
+        }
+        capabilities.append(template.substring(tileMatrixSetsEnd));
+
+        return capabilities.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    static String getLayerIdentifier(int index) {
+        return "Layer_" + index + "_" + LAYER_IDENTIFIER;
+    }
+
+    private static String renameTileMatrixSets(String xml, int index) {
+        for (String tileMatrixSet : TILE_MATRIX_SETS) {
+            xml = xml.replace(">" + tileMatrixSet + "<", ">" + tileMatrixSet + "_" + index + "<");
+        }
+
+        return xml;
+    }
+
+    private static String readTemplate() throws IOException {
+        InputStream in = WmtsCapabilitiesDocuments.class.getClassLoader().getResourceAsStream("Capabilities.xml");
+        try {
+            return IOUtil.readInputStreamAsString(in);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.ona.kujaku.benchmarks;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+
+import io.ona.kujaku.wmts.model.WmtsCapabilities;
+import io.ona.kujaku.wmts.serializer.WmtsCapabilitiesPullParser;
+import io.ona.kujaku.wmts.serializer.WmtsCapabilitiesSerializer;
+
+/**
+ * Time & memory allocated to read WMTS capabilities against the number of layers they describe, with
+ * the reflective {@link WmtsCapabilitiesSerializer}, the {@link WmtsCapabilitiesPullParser} building
+ * the full model & the {@link WmtsCapabilitiesPullParser} only building a single layer.
+ */
+public class WmtsCapabilitiesParserBenchmark extends BaseBenchmark {
+
+    private static final int[] LAYER_COUNTS = {10, 100, 1000};
+
+    @Test
+    public void readCapabilities() throws Exception {
+        for (int layerCount : LAYER_COUNTS) {
+            final byte[] document = WmtsCapabilitiesDocuments.generate(layerCount);
+            final Set<String> layerIdentifiers = Collections.singleton(WmtsCapabilitiesDocuments.getLayerIdentifier(layerCount / 2));
+            String parameters = String.format(Locale.ENGLISH, "layers=%d size=%dkB", layerCount, document.length / 1024);
+
+            Runnable serializerRead = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        new WmtsCapabilitiesSerializer().read(WmtsCapabilities.class, createReader(document), false);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+            Runnable pullParserRead = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        new WmtsCapabilitiesPullParser().read(createReader(document));
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+            Runnable filteredPullParserRead = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        new WmtsCapabilitiesPullParser().read(createReader(document), layerIdentifiers);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+
+            report("serializerRead", parameters, measure(serializerRead));
+            reportAllocations("serializerRead", parameters, measureAllocations(serializerRead));
+            report("pullParserRead", parameters, measure(pullParserRead));
+            reportAllocations("pullParserRead", parameters, measureAllocations(pullParserRead));
+            report("filteredPullParserRead", parameters, measure(filteredPullParserRead));
+            reportAllocations("filteredPullParserRead", parameters, measureAllocations(filteredPullParserRead));
+        }
+    }
+
+    private Reader createReader(byte[] document) {
+        return new InputStreamReader(new ByteArrayInputStream(document), Charset.forName("UTF-8"));
+    }
+}
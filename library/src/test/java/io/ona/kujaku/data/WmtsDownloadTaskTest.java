@@ -0,0 +1,59 @@
+package io.ona.kujaku.data;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.List;
+
+import io.ona.kujaku.BaseTest;
+import io.ona.kujaku.downloaders.WmtsTileRange;
+import io.ona.kujaku.utils.exceptions.MalformedDataException;
+
+import static org.junit.Assert.assertEquals;
+
+public class WmtsDownloadTaskTest extends BaseTest {
+
+    @Test
+    public void constructorShouldRestoreTaskFromJSONObject() throws Exception {
+        WmtsDownloadTask wmtsDownloadTask = new WmtsDownloadTask("imagery", "https://example.com/{z}/{y}/{x}.png"
+                , "/sdcard/imagery.mbtiles", 3, 12, new LatLng(-1.2, 36.7), new LatLng(-1.35, 36.95));
+
+        WmtsDownloadTask restoredTask = new WmtsDownloadTask(new JSONObject(wmtsDownloadTask.getJSONObject().toString()));
+
+        assertEquals("imagery", restoredTask.getMapName());
+        assertEquals("https://example.com/{z}/{y}/{x}.png", restoredTask.getTileUrlTemplate());
+        assertEquals("/sdcard/imagery.mbtiles", restoredTask.getStorePath());
+        assertEquals(3, restoredTask.getMinZoom());
+        assertEquals(12, restoredTask.getMaxZoom());
+        assertEquals(new LatLng(-1.2, 36.7), restoredTask.getTopLeftBound());
+        assertEquals(new LatLng(-1.35, 36.95), restoredTask.getBottomRightBound());
+    }
+
+    @Test
+    public void getTileRangesShouldCoverBoundsAtEachZoom() {
+        WmtsDownloadTask wmtsDownloadTask = new WmtsDownloadTask("imagery", "https://example.com/{z}/{y}/{x}.png"
+                , "/sdcard/imagery.mbtiles", 11, 12, new LatLng(-1.2, 36.7), new LatLng(-1.35, 36.95));
+
+        List<WmtsTileRange> tileRanges = wmtsDownloadTask.getTileRanges();
+
+        assertEquals(2, tileRanges.size());
+        assertEquals(11, tileRanges.get(0).getZoom());
+        WmtsTileRange tileRange = tileRanges.get(1);
+        assertEquals(12, tileRange.getZoom());
+        assertEquals(2465, tileRange.getMinColumn());
+        assertEquals(2468, tileRange.getMaxColumn());
+        assertEquals(2061, tileRange.getMinRow());
+        assertEquals(2063, tileRange.getMaxRow());
+    }
+
+    @Test(expected = MalformedDataException.class)
+    public void constructorShouldThrowExceptionWhenStorePathIsMissing() throws Exception {
+        JSONObject jsonObject = new WmtsDownloadTask("imagery", "https://example.com/{z}/{y}/{x}.png"
+                , "/sdcard/imagery.mbtiles", 3, 12, new LatLng(-1.2, 36.7), new LatLng(-1.35, 36.95)).getJSONObject();
+        jsonObject.remove(WmtsDownloadTask.STORE_PATH);
+
+        new WmtsDownloadTask(jsonObject);
+    }
+}
@@ -0,0 +1,135 @@
+package io.ona.kujaku.downloaders;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadConcurrencyControllerTest {
+
+    @Test
+    public void canStartDownloadShouldReturnFalseWhenMaxConcurrentDownloadsAreActive() {
+        DownloadConcurrencyController controller = new DownloadConcurrencyController(2);
+
+        controller.onDownloadStarted("map-1");
+        assertTrue(controller.canStartDownload());
+
+        controller.onDownloadStarted("map-2");
+        assertFalse(controller.canStartDownload());
+
+        controller.onDownloadFinished("map-1", true);
+        assertTrue(controller.canStartDownload());
+    }
+
+    @Test
+    public void onDownloadFinishedShouldHalveConcurrencyLimitWhenDownloadFails() {
+        DownloadConcurrencyController controller = new DownloadConcurrencyController(4);
+
+        controller.onDownloadStarted("map-1");
+        controller.onDownloadFinished("map-1", false);
+        assertEquals(2, controller.getConcurrencyLimit());
+
+        controller.onDownloadStarted("map-2");
+        controller.onDownloadFinished("map-2", false);
+        controller.onDownloadStarted("map-3");
+        controller.onDownloadFinished("map-3", false);
+        assertEquals(1, controller.getConcurrencyLimit());
+
+        controller.onDownloadStarted("map-4");
+        controller.onDownloadFinished("map-4", true);
+        assertEquals(2, controller.getConcurrencyLimit());
+    }
+
+    @Test
+    public void onDownloadCancelledShouldFreeSlotWithoutChangingConcurrencyLimit() {
+        DownloadConcurrencyController controller = new DownloadConcurrencyController(4);
+
+        controller.onDownloadStarted("map-1");
+        controller.onDownloadFinished("map-1", false);
+        assertEquals(2, controller.getConcurrencyLimit());
+
+        controller.onDownloadStarted("map-2");
+        controller.onDownloadStarted("map-3");
+        assertFalse(controller.canStartDownload());
+
+        assertTrue(controller.onDownloadCancelled("map-2"));
+        assertFalse(controller.onDownloadCancelled("map-2"));
+        assertEquals(2, controller.getConcurrencyLimit());
+        assertEquals(1, controller.getActiveDownloadCount());
+        assertTrue(controller.canStartDownload());
+    }
+
+    @Test
+    public void onDownloadErrorShouldHalveConcurrencyLimitOncePerDownload() {
+        DownloadConcurrencyController controller = new DownloadConcurrencyController(4);
+
+        assertFalse(controller.onDownloadError("map-1"));
+        assertEquals(4, controller.getConcurrencyLimit());
+
+        controller.onDownloadStarted("map-1");
+        assertTrue(controller.onDownloadError("map-1"));
+        assertFalse(controller.onDownloadError("map-1"));
+        assertTrue(controller.isDownloadActive("map-1"));
+        assertEquals(2, controller.getConcurrencyLimit());
+
+        controller.onDownloadFinished("map-1", false);
+        assertEquals(2, controller.getConcurrencyLimit());
+
+        controller.onDownloadStarted("map-2");
+        controller.onDownloadError("map-2");
+        assertEquals(1, controller.getConcurrencyLimit());
+        controller.onDownloadFinished("map-2", true);
+        assertEquals(2, controller.getConcurrencyLimit());
+    }
+
+    @Test
+    public void onConnectivityChangedShouldLimitDownloadsToOneUntilDownloadsCompleteWhileConnected() {
+        DownloadConcurrencyController controller = new DownloadConcurrencyController(3);
+
+        controller.onConnectivityChanged(false);
+        assertEquals(1, controller.getConcurrencyLimit());
+
+        controller.onDownloadStarted("map-1");
+        controller.onDownloadFinished("map-1", true);
+        assertEquals(1, controller.getConcurrencyLimit());
+
+        controller.onConnectivityChanged(true);
+        controller.onDownloadStarted("map-2");
+        controller.onDownloadFinished("map-2", true);
+        controller.onDownloadStarted("map-3");
+        controller.onDownloadFinished("map-3", true);
+        controller.onDownloadStarted("map-4");
+        controller.onDownloadFinished("map-4", true);
+        assertEquals(3, controller.getConcurrencyLimit());
+    }
+
+    @Test
+    public void canStartDownloadShouldReturnFalseWhenTileCountLimitIsExceeded() {
+        DownloadConcurrencyController controller = new DownloadConcurrencyController(3);
+
+        controller.onTileCountLimitExceeded();
+
+        assertTrue(controller.isTileCountLimitExceeded());
+        assertFalse(controller.canStartDownload());
+    }
+
+    @Test
+    public void getAggregateDownloadProgressShouldWeightMapsByResourceCount() {
+        DownloadConcurrencyController controller = new DownloadConcurrencyController(3);
+
+        controller.onDownloadStarted("map-1");
+        controller.onDownloadStarted("map-2");
+        controller.onDownloadProgress("map-1", 50, 100);
+        controller.onDownloadProgress("map-2", 300, 300);
+
+        LinkedHashMap<String, Double> downloadProgress = controller.getDownloadProgress();
+        assertEquals(50d, downloadProgress.get("map-1"), 0);
+        assertEquals(100d, downloadProgress.get("map-2"), 0);
+        assertEquals(87.5d, controller.getAggregateDownloadProgress(), 0);
+        assertEquals(50d, controller.getDownloadPercentage("map-1"), 0);
+        assertEquals(0d, controller.getDownloadPercentage("map-3"), 0);
+    }
+}
@@ -0,0 +1,206 @@
+package io.ona.kujaku.downloaders;
+
+import android.database.sqlite.SQLiteFullException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.ona.kujaku.BaseTest;
+import io.ona.kujaku.helpers.storage.MBTilesStore;
+import io.ona.kujaku.test.StubHttpServer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WmtsTilePrefetcherTest extends BaseTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private StubHttpServer server;
+    private MBTilesStore store;
+    private ExecutorService downloadExecutor;
+    private volatile String missingTilePath;
+    private volatile String failingTilePath;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubHttpServer(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                if (request.getPath().equals(missingTilePath)) {
+                    return new StubHttpServer.Response(HttpURLConnection.HTTP_NOT_FOUND, new byte[0]);
+                } else if (request.getPath().equals(failingTilePath)) {
+                    return new StubHttpServer.Response(HttpURLConnection.HTTP_FORBIDDEN, new byte[0]);
+                }
+
+                return new StubHttpServer.Response(HttpURLConnection.HTTP_OK, request.getPath().getBytes(Charset.forName("UTF-8")))
+                        .setHeader("Content-Type", "image/jpeg");
+            }
+        });
+        store = new MBTilesStore(new File(temporaryFolder.getRoot(), "layer.mbtiles"));
+        downloadExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        downloadExecutor.shutdownNow();
+        store.close();
+        server.close();
+    }
+
+    @Test
+    public void prefetchShouldStoreAllTilesOfRanges() {
+        RecordingListener listener = new RecordingListener();
+
+        createPrefetcher().prefetch(store, WmtsTileRange.expand(90, 180, -90, -180, 0, 2), listener);
+
+        assertEquals(21, listener.completedTileCount);
+        assertEquals(21, listener.requiredTileCount);
+        assertTrue(listener.completed);
+        assertNull(listener.error);
+
+        assertEquals(21, store.getTileCount());
+        assertArrayEquals("/tiles/2/3/1.png".getBytes(Charset.forName("UTF-8")), store.getTile(2, 3, 1));
+        assertEquals("jpg", store.getMetadata(MBTilesStore.METADATA_FORMAT));
+    }
+
+    @Test
+    public void prefetchShouldLeaveSharedExecutorRunningForNextPrefetches() {
+        RecordingListener listener = new RecordingListener();
+        createPrefetcher().prefetch(store, WmtsTileRange.expand(90, 180, -90, -180, 0, 1), listener);
+        assertTrue(listener.completed);
+        assertFalse(downloadExecutor.isShutdown());
+
+        listener = new RecordingListener();
+        createPrefetcher().prefetch(store, WmtsTileRange.expand(90, 180, -90, -180, 2, 2), listener);
+        assertTrue(listener.completed);
+        assertEquals(21, store.getTileCount());
+    }
+
+    @Test
+    public void prefetchShouldOnlyDownloadTilesMissingFromStore() {
+        List<WmtsTileRange> tileRanges = Collections.singletonList(new WmtsTileRange(1, 0, 1, 0, 1));
+        store.putTile(1, 0, 0, new byte[]{1});
+        store.putTile(1, 1, 1, new byte[]{1});
+
+        RecordingListener listener = new RecordingListener();
+        createPrefetcher().prefetch(store, tileRanges, listener);
+
+        assertTrue(listener.completed);
+        assertEquals(4, listener.completedTileCount);
+        assertEquals(2, server.getRequests().size());
+        assertArrayEquals(new byte[]{1}, store.getTile(1, 0, 0));
+        assertEquals(4, store.getTileCount());
+    }
+
+    @Test
+    public void prefetchShouldSkipTilesServerDoesNotHave() {
+        missingTilePath = "/tiles/1/1/0.png";
+
+        RecordingListener listener = new RecordingListener();
+        createPrefetcher().prefetch(store, Collections.singletonList(new WmtsTileRange(1, 0, 1, 0, 1)), listener);
+
+        assertTrue(listener.completed);
+        assertFalse(store.hasTile(1, 1, 0));
+        assertEquals(3, store.getTileCount());
+    }
+
+    @Test
+    public void prefetchShouldReportErrorAndResumeWhenTilesFail() {
+        List<WmtsTileRange> tileRanges = Collections.singletonList(new WmtsTileRange(1, 0, 1, 0, 1));
+        failingTilePath = "/tiles/1/0/1.png";
+
+        RecordingListener listener = new RecordingListener();
+        WmtsTilePrefetcher prefetcher = createPrefetcher();
+        prefetcher.prefetch(store, tileRanges, listener);
+
+        assertFalse(listener.completed);
+        assertTrue(listener.error.startsWith("1 of 4 tiles could not be downloaded"));
+        assertFalse(prefetcher.isRetryable());
+        assertEquals(3, store.getTileCount());
+
+        failingTilePath = null;
+        int requestCount = server.getRequests().size();
+        listener = new RecordingListener();
+        createPrefetcher().prefetch(store, tileRanges, listener);
+
+        assertTrue(listener.completed);
+        assertEquals(requestCount + 1, server.getRequests().size());
+        assertEquals(4, store.getTileCount());
+    }
+
+    @Test
+    public void prefetchShouldReportErrorWhenStoreCannotBeWritten() {
+        MBTilesStore failingStore = Mockito.spy(store);
+        Mockito.doThrow(new SQLiteFullException("database or disk is full"))
+                .when(failingStore).putTile(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.any(byte[].class));
+
+        RecordingListener listener = new RecordingListener();
+        WmtsTilePrefetcher prefetcher = createPrefetcher();
+        prefetcher.prefetch(failingStore, Collections.singletonList(new WmtsTileRange(1, 0, 1, 0, 1)), listener);
+
+        assertFalse(listener.completed);
+        assertTrue(listener.error.startsWith("4 of 4 tiles could not be downloaded"));
+        assertTrue(listener.error.endsWith("database or disk is full"));
+        assertTrue(prefetcher.isRetryable());
+        assertEquals(0, store.getTileCount());
+    }
+
+    @Test
+    public void prefetchShouldNotCallListenerWhenCancelled() {
+        WmtsTilePrefetcher prefetcher = createPrefetcher();
+        prefetcher.cancel();
+
+        RecordingListener listener = new RecordingListener();
+        prefetcher.prefetch(store, WmtsTileRange.expand(90, 180, -90, -180, 0, 2), listener);
+
+        assertFalse(listener.completed);
+        assertNull(listener.error);
+        assertEquals(0, store.getTileCount());
+    }
+
+    private WmtsTilePrefetcher createPrefetcher() {
+        return new WmtsTilePrefetcher(server.getUrl("/tiles/{z}/{x}/{y}.png"), downloadExecutor, 2);
+    }
+
+    private static class RecordingListener implements WmtsTilePrefetcher.Listener {
+
+        private long completedTileCount;
+        private long requiredTileCount;
+        private boolean completed;
+        private String error;
+
+        @Override
+        public synchronized void onProgress(long completedTileCount, long requiredTileCount) {
+            this.completedTileCount = Math.max(this.completedTileCount, completedTileCount);
+            this.requiredTileCount = requiredTileCount;
+        }
+
+        @Override
+        public void onComplete(long requiredTileCount) {
+            completed = true;
+        }
+
+        @Override
+        public void onError(String error) {
+            this.error = error;
+        }
+    }
+}
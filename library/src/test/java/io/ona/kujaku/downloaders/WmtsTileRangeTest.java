@@ -0,0 +1,59 @@
+package io.ona.kujaku.downloaders;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import io.ona.kujaku.BaseTest;
+
+import static org.junit.Assert.assertEquals;
+
+public class WmtsTileRangeTest extends BaseTest {
+
+    @Test
+    public void expandShouldReturnWholeMatrixForWorldBounds() {
+        List<WmtsTileRange> tileRanges = WmtsTileRange.expand(90, 180, -90, -180, 0, 2);
+
+        assertEquals(3, tileRanges.size());
+        for (int zoom = 0; zoom <= 2; zoom++) {
+            WmtsTileRange tileRange = tileRanges.get(zoom);
+            int lastIndex = (1 << zoom) - 1;
+
+            assertEquals(zoom, tileRange.getZoom());
+            assertEquals(0, tileRange.getMinColumn());
+            assertEquals(lastIndex, tileRange.getMaxColumn());
+            assertEquals(0, tileRange.getMinRow());
+            assertEquals(lastIndex, tileRange.getMaxRow());
+        }
+
+        assertEquals(1 + 4 + 16, WmtsTileRange.getTileCount(tileRanges));
+    }
+
+    @Test
+    public void expandShouldReturnRowsAndColumnsCoveringBounds() {
+        // Nairobi
+        List<WmtsTileRange> tileRanges = WmtsTileRange.expand(-1.2, 36.95, -1.35, 36.7, 12, 12);
+
+        WmtsTileRange tileRange = tileRanges.get(0);
+        assertEquals(2465, tileRange.getMinColumn());
+        assertEquals(2468, tileRange.getMaxColumn());
+        assertEquals(2061, tileRange.getMinRow());
+        assertEquals(2063, tileRange.getMaxRow());
+        assertEquals(12, tileRange.getTileCount());
+    }
+
+    @Test
+    public void getRowShouldStartAtNorthernEdge() {
+        assertEquals(0, WmtsTileRange.getRow(WmtsTileRange.MAX_LATITUDE, 3));
+        assertEquals(3, WmtsTileRange.getRow(0.1, 3));
+        assertEquals(4, WmtsTileRange.getRow(-0.1, 3));
+        assertEquals(7, WmtsTileRange.getRow(-90, 3));
+    }
+
+    @Test
+    public void getColumnShouldClampLongitudes() {
+        assertEquals(0, WmtsTileRange.getColumn(-180, 4));
+        assertEquals(8, WmtsTileRange.getColumn(0, 4));
+        assertEquals(15, WmtsTileRange.getColumn(180, 4));
+    }
+}
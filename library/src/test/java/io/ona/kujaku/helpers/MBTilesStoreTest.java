@@ -0,0 +1,91 @@
+package io.ona.kujaku.helpers;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import io.ona.kujaku.BaseTest;
+import io.ona.kujaku.helpers.storage.MBTilesStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MBTilesStoreTest extends BaseTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void getTileShouldReturnTilePutInStore() {
+        MBTilesStore store = new MBTilesStore(new File(temporaryFolder.getRoot(), "tiles/layer.mbtiles"));
+
+        store.putTile(3, 5, 1, new byte[]{1, 2, 3});
+        store.putTile(3, 5, 1, new byte[]{4, 5});
+
+        assertTrue(store.hasTile(3, 5, 1));
+        assertFalse(store.hasTile(3, 5, 2));
+        assertArrayEquals(new byte[]{4, 5}, store.getTile(3, 5, 1));
+        assertNull(store.getTile(3, 5, 2));
+        assertEquals(1, store.getTileCount());
+
+        store.close();
+    }
+
+    @Test
+    public void putTileShouldStoreTmsRow() {
+        File file = new File(temporaryFolder.getRoot(), "layer.mbtiles");
+        MBTilesStore store = new MBTilesStore(file);
+        store.putTile(3, 5, 1, new byte[]{1});
+        store.close();
+
+        SQLiteDatabase database = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+        Cursor cursor = database.rawQuery("SELECT zoom_level, tile_column, tile_row FROM tiles", null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(3, cursor.getInt(0));
+            assertEquals(5, cursor.getInt(1));
+            assertEquals(6, cursor.getInt(2));
+        } finally {
+            cursor.close();
+            database.close();
+        }
+    }
+
+    @Test
+    public void getMetadataShouldReturnLastValueSet() {
+        File file = new File(temporaryFolder.getRoot(), "layer.mbtiles");
+        MBTilesStore store = new MBTilesStore(file);
+        store.setMetadata(MBTilesStore.METADATA_FORMAT, "jpg");
+        store.setMetadata(MBTilesStore.METADATA_FORMAT, "png");
+        store.close();
+
+        store = new MBTilesStore(file);
+        assertEquals("png", store.getMetadata(MBTilesStore.METADATA_FORMAT));
+        assertNull(store.getMetadata(MBTilesStore.METADATA_BOUNDS));
+        store.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void putTileShouldFailOnReadOnlyStore() {
+        File file = new File(temporaryFolder.getRoot(), "layer.mbtiles");
+        MBTilesStore store = new MBTilesStore(file);
+        store.putTile(3, 5, 1, new byte[]{1});
+        store.close();
+
+        store = MBTilesStore.openReadOnly(file);
+        try {
+            assertArrayEquals(new byte[]{1}, store.getTile(3, 5, 1));
+            store.putTile(3, 5, 2, new byte[]{2});
+        } finally {
+            store.close();
+        }
+    }
+}
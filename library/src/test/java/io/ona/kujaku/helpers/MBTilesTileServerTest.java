@@ -0,0 +1,141 @@
+package io.ona.kujaku.helpers;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import io.ona.kujaku.BaseTest;
+import io.ona.kujaku.helpers.storage.MBTilesStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MBTilesTileServerTest extends BaseTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MBTilesTileServer server;
+    private File storeFile;
+
+    @Before
+    public void setUp() throws IOException {
+        storeFile = new File(temporaryFolder.getRoot(), "layer.mbtiles");
+        MBTilesStore store = new MBTilesStore(storeFile);
+        store.setMetadata(MBTilesStore.METADATA_FORMAT, "jpg");
+        store.putTile(3, 5, 1, new byte[]{1, 2, 3});
+        store.putTile(3, 5, 2, new byte[]{(byte) 0x1f, (byte) 0x8b, 8, 0});
+        store.close();
+
+        server = new MBTilesTileServer(1024, 2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void requestShouldReturnStoredTile() throws IOException {
+        String tileUrlTemplate = server.addStore("layer", storeFile);
+
+        HttpURLConnection connection = openConnection(tileUrlTemplate, 3, 5, 1);
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        assertEquals("image/jpeg", connection.getContentType());
+        assertArrayEquals(new byte[]{1, 2, 3}, readFully(connection.getInputStream()));
+
+        connection = openConnection(tileUrlTemplate, 3, 5, 2);
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND, openConnection(tileUrlTemplate, 3, 5, 3).getResponseCode());
+    }
+
+    @Test
+    public void getTileShouldReturnCachedTileUntilStoreIsRemoved() throws Exception {
+        server.addStore("layer", storeFile);
+        assertArrayEquals(new byte[]{1, 2, 3}, server.getTile("layer", 3, 5, 1));
+
+        MBTilesStore store = new MBTilesStore(storeFile);
+        store.putTile(3, 5, 1, new byte[]{4});
+        store.close();
+        assertArrayEquals(new byte[]{1, 2, 3}, server.getTile("layer", 3, 5, 1));
+
+        server.removeStore("layer");
+        assertNull(server.getTile("layer", 3, 5, 1));
+
+        server.addStore("layer", storeFile);
+        assertArrayEquals(new byte[]{4}, server.getTile("layer", 3, 5, 1));
+    }
+
+    @Test
+    public void getTileShouldReturnNullWhenStoreFileIsMissing() throws Exception {
+        server.addStore("missing", new File(temporaryFolder.getRoot(), "missing.mbtiles"));
+
+        assertNull(server.getTile("missing", 3, 5, 1));
+    }
+
+    @Test
+    public void requestShouldReturnServerErrorWhenStoreIsNotMBTilesDatabase() throws Exception {
+        File textFile = temporaryFolder.newFile("text.mbtiles");
+        FileOutputStream out = new FileOutputStream(textFile);
+        try {
+            out.write("not a database".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        File otherDatabaseFile = new File(temporaryFolder.getRoot(), "other.mbtiles");
+        SQLiteDatabase otherDatabase = SQLiteDatabase.openOrCreateDatabase(otherDatabaseFile, null);
+        otherDatabase.execSQL("CREATE TABLE places (name TEXT)");
+        otherDatabase.close();
+
+        for (File invalidStoreFile : new File[]{textFile, otherDatabaseFile}) {
+            String tileUrlTemplate = server.addStore(invalidStoreFile.getName(), invalidStoreFile);
+
+            assertEquals(HttpURLConnection.HTTP_INTERNAL_ERROR, openConnection(tileUrlTemplate, 3, 5, 1).getResponseCode());
+            assertNull(server.getTile(invalidStoreFile.getName(), 3, 5, 1));
+            assertTrue(invalidStoreFile.exists());
+        }
+
+        // The valid stores are still served
+        HttpURLConnection connection = openConnection(server.addStore("layer", storeFile), 3, 5, 1);
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        assertArrayEquals(new byte[]{1, 2, 3}, readFully(connection.getInputStream()));
+    }
+
+    private static HttpURLConnection openConnection(String tileUrlTemplate, int zoom, int column, int row) throws IOException {
+        return (HttpURLConnection) new URL(tileUrlTemplate.replace("{z}", String.valueOf(zoom))
+                .replace("{x}", String.valueOf(column))
+                .replace("{y}", String.valueOf(row))).openConnection();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.ona.kujaku.helpers;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.ona.kujaku.BuildConfig;
+import io.ona.kujaku.helpers.storage.MapBoxStyleStreamReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, manifest = Config.NONE)
+public class MapBoxStyleStreamReaderTest {
+
+    private static final String STYLE = "{\"version\": 8, \"name\": \"kujaku-map\","
+            + "\"sources\": {"
+            + "  \"points\": {\"type\": \"geojson\", \"data\": {\"type\": \"FeatureCollection\", \"features\": ["
+            + "    {\"type\": \"Feature\", \"id\": \"1\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [36.8, -1.3]}, \"properties\": {\"count\": 12345678901, \"visited\": true, \"note\": null}},"
+            + "    {\"type\": \"Feature\", \"properties\": {\"id\": \"2\", \"weight\": 2.5}}"
+            + "  ]}},"
+            + "  \"buildings\": {\"type\": \"geojson\", \"data\": {\"type\": \"FeatureCollection\", \"features\": [{\"type\": \"Feature\", \"id\": \"3\"}]}},"
+            + "  \"streets\": {\"type\": \"vector\", \"url\": \"mapbox://mapbox.mapbox-streets-v7\"}"
+            + "},"
+            + "\"layers\": [{\"id\": \"points-layer\", \"type\": \"circle\", \"source\": \"points\"}],"
+            + "\"metadata\": {\"kujaku\": {\"data_sources\": [{\"name\": \"points\"}]}},"
+            + "\"center\": [36.8, -1.3]}";
+
+    @Test
+    public void readShouldEmitFeaturesOfWantedSourcesAndReturnStyleWithoutFeatures() throws IOException, JSONException {
+        final List<String> events = new ArrayList<>();
+        final List<JSONObject> features = new ArrayList<>();
+
+        JSONObject style = new MapBoxStyleStreamReader().read(new StringReader(STYLE), new MapBoxStyleStreamReader.StyleListener() {
+            @Override
+            public void onMetadata(@NonNull JSONObject metadata) {
+                events.add("metadata");
+            }
+
+            @Override
+            public boolean onGeoJsonSource(@NonNull String sourceName) {
+                events.add("source:" + sourceName);
+                return "points".equals(sourceName);
+            }
+
+            @Override
+            public void onFeature(@NonNull String sourceName, @NonNull JSONObject feature) {
+                events.add("feature:" + sourceName);
+                features.add(feature);
+            }
+        });
+
+        // The metadata comes after the sources in this style
+        assertEquals("source:points", events.get(0));
+        assertEquals("feature:points", events.get(1));
+        assertEquals("feature:points", events.get(2));
+        assertEquals("source:buildings", events.get(3));
+        assertEquals("metadata", events.get(4));
+        assertEquals(5, events.size());
+
+        assertEquals("1", features.get(0).getString("id"));
+        JSONObject properties = features.get(0).getJSONObject("properties");
+        assertEquals(12345678901L, properties.getLong("count"));
+        assertTrue(properties.getBoolean("visited"));
+        assertTrue(properties.isNull("note"));
+        assertEquals(-1.3, features.get(0).getJSONObject("geometry").getJSONArray("coordinates").getDouble(1), 0);
+        assertEquals(2.5, features.get(1).getJSONObject("properties").getDouble("weight"), 0);
+
+        JSONObject sources = style.getJSONObject("sources");
+        assertEquals(0, sources.getJSONObject("points").getJSONObject("data").getJSONArray("features").length());
+        assertEquals(0, sources.getJSONObject("buildings").getJSONObject("data").getJSONArray("features").length());
+        assertEquals("mapbox://mapbox.mapbox-streets-v7", sources.getJSONObject("streets").getString("url"));
+        assertEquals("points-layer", style.getJSONArray("layers").getJSONObject(0).getString("id"));
+        assertEquals("points", style.getJSONObject("metadata").getJSONObject("kujaku")
+                .getJSONArray("data_sources").getJSONObject(0).getString("name"));
+        assertTrue(style.has("center"));
+        assertEquals(8, style.getInt("version"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void readShouldThrowExceptionWhenStyleIsNotAnObject() throws IOException, JSONException {
+        new MapBoxStyleStreamReader().read(new StringReader("[]"), new MapBoxStyleStreamReader.StyleListener() {
+            @Override
+            public void onMetadata(@NonNull JSONObject metadata) {
+                // Do nothing
+            }
+
+            @Override
+            public boolean onGeoJsonSource(@NonNull String sourceName) {
+                return true;
+            }
+
+            @Override
+            public void onFeature(@NonNull String sourceName, @NonNull JSONObject feature) {
+                // Do nothing
+            }
+        });
+    }
+
+    @Test
+    public void readShouldSkipFeaturesOfUnwantedSources() throws IOException, JSONException {
+        final List<JSONObject> features = new ArrayList<>();
+
+        new MapBoxStyleStreamReader().read(new StringReader(STYLE), new MapBoxStyleStreamReader.StyleListener() {
+            @Override
+            public void onMetadata(@NonNull JSONObject metadata) {
+                // Do nothing
+            }
+
+            @Override
+            public boolean onGeoJsonSource(@NonNull String sourceName) {
+                return false;
+            }
+
+            @Override
+            public void onFeature(@NonNull String sourceName, @NonNull JSONObject feature) {
+                features.add(feature);
+            }
+        });
+
+        assertFalse(features.size() > 0);
+    }
+}
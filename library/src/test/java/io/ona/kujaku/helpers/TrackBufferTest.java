@@ -0,0 +1,142 @@
+package io.ona.kujaku.helpers;
+
+import android.location.Location;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import io.ona.kujaku.BuildConfig;
+import io.ona.kujaku.helpers.storage.TrackBuffer;
+
+import static android.location.LocationManager.GPS_PROVIDER;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, manifest = Config.NONE)
+public class TrackBufferTest {
+
+    @Test
+    public void addShouldGrowBufferAndKeepLocationsInOrder() {
+        TrackBuffer trackBuffer = new TrackBuffer(2);
+        for (int i = 0; i < 25; i++) {
+            trackBuffer.add(createLocation(i));
+        }
+
+        Assert.assertEquals(25, trackBuffer.size());
+
+        List<Location> locations = trackBuffer.getView().toLocations();
+        Assert.assertEquals(25, locations.size());
+        for (int i = 0; i < 25; i++) {
+            Location expected = createLocation(i);
+            Location actual = locations.get(i);
+
+            Assert.assertEquals(expected.getLatitude(), actual.getLatitude(), 0);
+            Assert.assertEquals(expected.getLongitude(), actual.getLongitude(), 0);
+            Assert.assertEquals(expected.getAltitude(), actual.getAltitude(), 0);
+            Assert.assertEquals(expected.getTime(), actual.getTime());
+            Assert.assertEquals(expected.getAccuracy(), actual.getAccuracy(), 0);
+            Assert.assertEquals(expected.getBearing(), actual.getBearing(), 0);
+            Assert.assertEquals(expected.getSpeed(), actual.getSpeed(), 0);
+            Assert.assertEquals(GPS_PROVIDER, actual.getProvider());
+        }
+    }
+
+    @Test
+    public void getProviderShouldReturnProvidersOtherThanCommonOnes() {
+        TrackBuffer trackBuffer = new TrackBuffer(2);
+        String[] providers = {"mock", GPS_PROVIDER, "external-gnss", "mock", "", null};
+        for (int i = 0; i < providers.length; i++) {
+            Location location = createLocation(i);
+            location.setProvider(providers[i]);
+            trackBuffer.add(location);
+        }
+
+        TrackBuffer.View view = trackBuffer.getView();
+        Assert.assertEquals("mock", view.getProvider(0));
+        Assert.assertEquals(GPS_PROVIDER, view.getProvider(1));
+        Assert.assertEquals("external-gnss", view.getProvider(2));
+        Assert.assertEquals("mock", view.getProvider(3));
+        Assert.assertEquals("", view.getProvider(4));
+        Assert.assertEquals("", view.getProvider(5));
+        Assert.assertEquals("external-gnss", view.getLocation(2).getProvider());
+    }
+
+        @Test
+    public void getViewShouldNotSeeLocationsAddedOrClearedAfterwards() {
+        TrackBuffer trackBuffer = new TrackBuffer(2);
+        trackBuffer.add(createLocation(0));
+        trackBuffer.add(createLocation(1));
+
+        TrackBuffer.View view = trackBuffer.getView();
+
+        // Grows the arrays
+        trackBuffer.add(createLocation(2));
+        Assert.assertEquals(2, view.size());
+
+        trackBuffer.clear();
+        Assert.assertEquals(0, trackBuffer.size());
+        Assert.assertEquals(2, view.size());
+        Assert.assertEquals(createLocation(1).getLatitude(), view.getLatitude(1), 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getLatitudeShouldThrowExceptionWhenGivenIndexOutOfView() {
+        TrackBuffer trackBuffer = new TrackBuffer();
+        trackBuffer.add(createLocation(0));
+
+        TrackBuffer.View view = trackBuffer.getView();
+        trackBuffer.add(createLocation(1));
+
+        view.getLatitude(1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getLocationShouldThrowExceptionWhenGivenIndexOutOfView() {
+        TrackBuffer trackBuffer = new TrackBuffer();
+        trackBuffer.add(createLocation(0));
+
+        TrackBuffer.View view = trackBuffer.getView();
+        trackBuffer.add(createLocation(1));
+
+        view.getLocation(1);
+    }
+
+    @Test
+    public void toLineStringJsonShouldReturnGeoJSONLineString() throws JSONException {
+        TrackBuffer trackBuffer = new TrackBuffer();
+        trackBuffer.add(createLocation(0));
+        trackBuffer.add(createLocation(1));
+
+        JSONObject lineString = new JSONObject(trackBuffer.getView().toLineStringJson());
+        Assert.assertEquals("LineString", lineString.getString("type"));
+
+        JSONArray coordinates = lineString.getJSONArray("coordinates");
+        Assert.assertEquals(2, coordinates.length());
+        Assert.assertEquals(createLocation(1).getLongitude(), coordinates.getJSONArray(1).getDouble(0), 0);
+        Assert.assertEquals(createLocation(1).getLatitude(), coordinates.getJSONArray(1).getDouble(1), 0);
+    }
+
+    @Test
+    public void toLineStringJsonShouldReturnEmptyLineStringWhenBufferIsEmpty() {
+        Assert.assertEquals("{\"type\":\"LineString\",\"coordinates\":[]}", new TrackBuffer().getView().toLineStringJson());
+    }
+
+    private Location createLocation(int i) {
+        Location location = new Location(GPS_PROVIDER);
+        location.setLatitude(-1.29 + i * 0.0001);
+        location.setLongitude(36.82 + i * 0.0001);
+        location.setAltitude(1600 + i);
+        location.setTime(1500000000000L + i * 1000);
+        location.setAccuracy(5 + i % 3);
+        location.setBearing(i * 10 % 360);
+        location.setSpeed(1.5f);
+        return location;
+    }
+}
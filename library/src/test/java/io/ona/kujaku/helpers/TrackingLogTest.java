@@ -0,0 +1,179 @@
+package io.ona.kujaku.helpers;
+
+import android.location.Location;
+import android.os.Environment;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import io.ona.kujaku.BuildConfig;
+import io.ona.kujaku.helpers.storage.TrackingLog;
+
+import static android.location.LocationManager.GPS_PROVIDER;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, manifest = Config.NONE)
+public class TrackingLogTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(Environment.getExternalStorageDirectory(), ".KujakuTracking/TrackingLogTest");
+        deleteDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDirectory();
+    }
+
+    @Test
+    public void readAllShouldReturnAppendedLocationsInOrder() throws IOException {
+        TrackingLog trackingLog = new TrackingLog(directory);
+        for (int i = 0; i < 25; i++) {
+            trackingLog.append(createLocation(i));
+        }
+        trackingLog.close();
+
+        List<Location> locations = new TrackingLog(directory).readAll();
+
+        Assert.assertEquals(25, locations.size());
+        for (int i = 0; i < 25; i++) {
+            assertLocation(createLocation(i), locations.get(i));
+        }
+    }
+
+    @Test
+    public void appendShouldRollOverSegments() throws IOException {
+        TrackingLog trackingLog = new TrackingLog(directory, 10, 5);
+        for (int i = 0; i < 25; i++) {
+            trackingLog.append(createLocation(i));
+        }
+        trackingLog.close();
+
+        Assert.assertEquals(3, TrackingLog.listSegments(directory).length);
+
+        List<Location> locations = new TrackingLog(directory, 10, 5).readAll();
+        Assert.assertEquals(25, locations.size());
+        assertLocation(createLocation(24), locations.get(24));
+    }
+
+    @Test
+    public void appendShouldTruncateTornRecordsAtTheTail() throws IOException {
+        TrackingLog trackingLog = new TrackingLog(directory);
+        for (int i = 0; i < 3; i++) {
+            trackingLog.append(createLocation(i));
+        }
+        trackingLog.close();
+
+        // Simulate a crash in the middle of a record
+        File segment = TrackingLog.listSegments(directory)[0];
+        long validLength = segment.length();
+        FileOutputStream outputStream = new FileOutputStream(segment, true);
+        outputStream.write(new byte[]{1, 2, 3, 4, 5, 6, 7});
+        outputStream.close();
+
+        Assert.assertEquals(3, new TrackingLog(directory).readAll().size());
+
+        trackingLog = new TrackingLog(directory);
+        trackingLog.append(createLocation(3));
+        trackingLog.close();
+
+        Assert.assertEquals(validLength + (validLength - 16) / 3, segment.length());
+
+        List<Location> locations = new TrackingLog(directory).readAll();
+        Assert.assertEquals(4, locations.size());
+        assertLocation(createLocation(3), locations.get(3));
+    }
+
+    @Test
+    public void readAllShouldReturnProvidersOtherThanCommonOnes() throws IOException {
+        String[] providers = {"mock", GPS_PROVIDER, "fused", "mock", "external-gnss"};
+        TrackingLog trackingLog = new TrackingLog(directory, 3, 5);
+        for (int i = 0; i < providers.length; i++) {
+            trackingLog.append(createLocation(i, providers[i]));
+        }
+        trackingLog.close();
+
+        // The provider records of the last segment are read again when the log is re-opened for writing
+        trackingLog = new TrackingLog(directory, 3, 5);
+        trackingLog.append(createLocation(5, "external-gnss"));
+        trackingLog.close();
+
+        File[] segments = TrackingLog.listSegments(directory);
+        Assert.assertEquals(3, segments.length);
+        Assert.assertEquals(16 + 3 * 52, segments[2].length());
+
+        List<Location> locations = new TrackingLog(directory).readAll();
+        Assert.assertEquals(6, locations.size());
+        for (int i = 0; i < providers.length; i++) {
+            assertLocation(createLocation(i, providers[i]), locations.get(i));
+        }
+        assertLocation(createLocation(5, "external-gnss"), locations.get(5));
+    }
+
+    @Test
+    public void readAllShouldReturnEmptyProviderWhenNameIsTooLong() throws IOException {
+        StringBuilder provider = new StringBuilder();
+        for (int i = 0; i <= TrackingLog.MAX_PROVIDER_NAME_LENGTH; i++) {
+            provider.append('p');
+        }
+
+        TrackingLog trackingLog = new TrackingLog(directory);
+        trackingLog.append(createLocation(0, provider.toString()));
+        trackingLog.close();
+
+        List<Location> locations = new TrackingLog(directory).readAll();
+        Assert.assertEquals(1, locations.size());
+        Assert.assertEquals("", locations.get(0).getProvider());
+    }
+
+    private Location createLocation(int i) {
+        return createLocation(i, GPS_PROVIDER);
+    }
+
+    private Location createLocation(int i, String provider) {
+        Location location = new Location(provider);
+        location.setLatitude(1.1 + i * 0.0001);
+        location.setLongitude(36.2 + i * 0.0001);
+        location.setAltitude(1500 + i);
+        location.setAccuracy(4.5f);
+        location.setBearing(i);
+        location.setSpeed(1.2f);
+        location.setTime(1554336000000L + i * 1000L);
+
+        return location;
+    }
+
+    private void assertLocation(Location expected, Location actual) {
+        Assert.assertEquals(expected.getProvider(), actual.getProvider());
+        Assert.assertEquals(expected.getLatitude(), actual.getLatitude(), 0);
+        Assert.assertEquals(expected.getLongitude(), actual.getLongitude(), 0);
+        Assert.assertEquals(expected.getAltitude(), actual.getAltitude(), 0);
+        Assert.assertEquals(expected.getAccuracy(), actual.getAccuracy(), 0);
+        Assert.assertEquals(expected.getBearing(), actual.getBearing(), 0);
+        Assert.assertEquals(expected.getSpeed(), actual.getSpeed(), 0);
+        Assert.assertEquals(expected.getTime(), actual.getTime());
+    }
+
+    private void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,99 @@
+package io.ona.kujaku.helpers;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+
+import io.ona.kujaku.BaseTest;
+import io.ona.kujaku.helpers.storage.WmtsCapabilitiesCache;
+import io.ona.kujaku.wmts.model.WmtsCapabilities;
+import io.ona.kujaku.wmts.model.WmtsLayer;
+import io.ona.kujaku.wmts.serializer.WmtsCapabilitiesSerializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WmtsCapabilitiesCacheTest extends BaseTest {
+
+    private static final String URL = "https://example.com/wmts/1.0.0/WMTSCapabilities.xml";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void getShouldReturnCapabilitiesAndValidatorsStoredByPut() throws Exception {
+        WmtsCapabilitiesCache cache = new WmtsCapabilitiesCache(new File(temporaryFolder.getRoot(), "wmts"));
+        assertTrue(cache.put(URL, new WmtsCapabilitiesCache.Entry(readCapabilities(), "\"v1\""
+                , "Wed, 21 Oct 2015 07:28:00 GMT", 1000)));
+
+        WmtsCapabilitiesCache.Entry entry = cache.get(URL);
+
+        assertNotNull(entry);
+        assertEquals("\"v1\"", entry.getETag());
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", entry.getLastModified());
+        assertEquals(1000, entry.getFetchedAt());
+
+        WmtsCapabilities capabilities = entry.getCapabilities();
+        assertEquals("1.0.0", capabilities.getVersion());
+        assertEquals("Vegetation_Mapping_Texas_Ecological_Mapping_Systems_Data", capabilities.getServiceIdentification().getTitles().get(0).getValue());
+        assertEquals(1, capabilities.getLayers().size());
+        assertEquals(19, capabilities.getMaximumTileMatrixZoom("default028mm"));
+        assertEquals(0, capabilities.getMinimumTileMatrixZoom("default028mm"));
+        assertEquals(18, capabilities.getMaximumTileMatrixZoom("GoogleMapsCompatible"));
+        assertEquals(256, capabilities.getTilesSize("GoogleMapsCompatible"));
+
+        WmtsLayer layer = capabilities.getLayer("Vegetation_Mapping_Texas_Ecological_Mapping_Systems_Data");
+        assertNotNull(layer);
+        assertEquals("default", layer.getStyle("default").getIdentifier());
+        assertTrue(layer.getStyle("default").isDefault());
+        assertNotNull(layer.getTileMatrixSetLink("GoogleMapsCompatible"));
+        assertEquals(readCapabilities().getLayers().get(0).getTemplateUrl("tile"), layer.getTemplateUrl("tile"));
+    }
+
+    @Test
+    public void getShouldReturnNullWhenThereIsNoEntryForUrl() throws Exception {
+        WmtsCapabilitiesCache cache = new WmtsCapabilitiesCache(temporaryFolder.getRoot());
+        cache.put(URL, new WmtsCapabilitiesCache.Entry(readCapabilities(), null, null, 1000));
+
+        assertNull(cache.get(URL + "?service=WMTS"));
+        assertTrue(cache.remove(URL));
+        assertNull(cache.get(URL));
+    }
+
+    @Test
+    public void getShouldReturnNullAndDeleteEntryWhenEntryIsCorrupt() throws Exception {
+        WmtsCapabilitiesCache cache = new WmtsCapabilitiesCache(temporaryFolder.getRoot());
+        cache.put(URL, new WmtsCapabilitiesCache.Entry(readCapabilities(), null, null, 1000));
+
+        File[] files = temporaryFolder.getRoot().listFiles();
+        assertEquals(1, files.length);
+        FileOutputStream out = new FileOutputStream(files[0]);
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+
+        assertNull(cache.get(URL));
+        assertFalse(files[0].exists());
+    }
+
+    @Test
+    public void isStaleShouldReturnTrueWhenEntryIsOlderThanMaxAge() throws Exception {
+        WmtsCapabilitiesCache.Entry entry = new WmtsCapabilitiesCache.Entry(readCapabilities(), null, null
+                , System.currentTimeMillis() - 60000);
+
+        assertTrue(entry.isStale(0));
+        assertTrue(entry.isStale(30000));
+        assertFalse(entry.isStale(3600000));
+    }
+
+    private WmtsCapabilities readCapabilities() throws Exception {
+        InputStreamReader streamReader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream("Capabilities.xml"));
+        return new WmtsCapabilitiesSerializer().read(WmtsCapabilities.class, streamReader, false);
+    }
+}
@@ -1,6 +1,7 @@
 package io.ona.kujaku.layers;
 
 import android.content.Context;
+import android.support.annotation.NonNull;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -33,6 +34,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
 
+import io.ona.kujaku.comparators.SortKeyExtractor;
 import io.ona.kujaku.exceptions.InvalidArrowLineConfigException;
 import io.ona.kujaku.test.shadows.ShadowLayer;
 import io.ona.kujaku.test.shadows.ShadowLineLayer;
@@ -542,6 +544,82 @@ public class ArrowLineLayerTest extends BaseKujakuLayerTest {
         }
     }
 
+    @Test
+    public void sortFeaturesShouldPlaceFeaturesWithoutValidKeysLast() throws InvalidArrowLineConfigException {
+        ArrayList<Feature> featuresList = new ArrayList<>();
+
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("position", 3)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("sample-date", "2019-01-01 00:00:00")
+                , new GeoJSONFeature.Property("position", 1)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("sample-date", "01/01/2019")
+                , new GeoJSONFeature.Property("position", 4)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("sample-date", "2019-01-01 00:00:03")
+                , new GeoJSONFeature.Property("position", 0)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("sample-date", "2014-01-01 00:00:00")
+                , new GeoJSONFeature.Property("position", 2)));
+
+        FeatureCollection featureCollection = FeatureCollection.fromFeatures(featuresList);
+
+        ArrowLineLayer.FeatureConfig featureConfig = new ArrowLineLayer.FeatureConfig(featureCollection);
+        ArrowLineLayer.SortConfig sortConfig = new ArrowLineLayer.SortConfig("sample-date"
+                , ArrowLineLayer.SortConfig.SortOrder.DESC
+                , ArrowLineLayer.SortConfig.PropertyType.DATE_TIME)
+                .setDateTimeFormat("yyyy-MM-dd HH:mm:ss");
+
+        ArrowLineLayer arrowLineLayer = new ArrowLineLayer.Builder(context, featureConfig, sortConfig).build();
+
+        FeatureCollection sortedFeatureCollection = ReflectionHelpers.callInstanceMethod(arrowLineLayer
+                , "sortFeatures"
+                , ReflectionHelpers.ClassParameter.from(FeatureCollection.class, featureCollection)
+                , ReflectionHelpers.ClassParameter.from(ArrowLineLayer.SortConfig.class, sortConfig)
+        );
+
+        List<Feature> sortedFeatures = sortedFeatureCollection.features();
+        assertEquals(5, sortedFeatures.size());
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, (int) sortedFeatures.get(i).getNumberProperty("position"));
+        }
+    }
+
+    @Test
+    public void sortFeaturesShouldUseCustomKeyExtractor() throws InvalidArrowLineConfigException {
+        ArrayList<Feature> featuresList = new ArrayList<>();
+
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("case-id", "case-10")
+                , new GeoJSONFeature.Property("position", 2)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("case-id", "case-2")
+                , new GeoJSONFeature.Property("position", 0)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("case-id", "case-9")
+                , new GeoJSONFeature.Property("position", 1)));
+
+        FeatureCollection featureCollection = FeatureCollection.fromFeatures(featuresList);
+
+        ArrowLineLayer.FeatureConfig featureConfig = new ArrowLineLayer.FeatureConfig(featureCollection);
+        ArrowLineLayer.SortConfig sortConfig = new ArrowLineLayer.SortConfig("case-id"
+                , ArrowLineLayer.SortConfig.SortOrder.ASC
+                , ArrowLineLayer.SortConfig.PropertyType.STRING)
+                .setKeyExtractor(new SortKeyExtractor<Integer>() {
+                    @Override
+                    public Integer extractKey(@NonNull Feature feature) {
+                        return Integer.valueOf(feature.getStringProperty("case-id").substring(5));
+                    }
+                });
+
+        ArrowLineLayer arrowLineLayer = new ArrowLineLayer.Builder(context, featureConfig, sortConfig).build();
+
+        FeatureCollection sortedFeatureCollection = ReflectionHelpers.callInstanceMethod(arrowLineLayer
+                , "sortFeatures"
+                , ReflectionHelpers.ClassParameter.from(FeatureCollection.class, featureCollection)
+                , ReflectionHelpers.ClassParameter.from(ArrowLineLayer.SortConfig.class, sortConfig)
+        );
+
+        List<Feature> sortedFeatures = sortedFeatureCollection.features();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, (int) sortedFeatures.get(i).getNumberProperty("position"));
+        }
+    }
+
     @Test
     public void sortFeaturesShouldSortAscByNumber() throws InvalidArrowLineConfigException {
         ArrayList<Feature> featuresList = new ArrayList<>();
@@ -196,6 +196,18 @@ public class BoundaryLayerTest extends BaseKujakuLayerTest {
         assertEquals(2, layerIds.length);
         assertNotNull(layerIds[0]);
         assertNotNull(layerIds[1]);
+
+        BoundaryLayer simplifiedBoundaryLayer = new BoundaryLayer.Builder(featureCollection)
+                .setSimplificationZooms(6, 10, 14)
+                .build();
+
+        assertEquals(5, simplifiedBoundaryLayer.getLayerIds().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setSimplificationZoomsShouldThrowExceptionWhenZoomsAreNotAscending() {
+        new BoundaryLayer.Builder(FeatureCollection.fromFeatures(new ArrayList<Feature>()))
+                .setSimplificationZooms(10, 6);
     }
 
     @Test
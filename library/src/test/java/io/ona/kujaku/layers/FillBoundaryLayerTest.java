@@ -77,5 +77,11 @@ public class FillBoundaryLayerTest extends BaseKujakuLayerTest {
         assertNotNull(layerIds[0]);
         assertNotNull(layerIds[1]);
         assertNotNull(layerIds[2]);
+
+        FillBoundaryLayer simplifiedFillBoundaryLayer = new FillBoundaryLayer.Builder(featureCollection)
+                .setSimplificationZooms(6, 10, 14)
+                .build();
+
+        assertEquals(9, simplifiedFillBoundaryLayer.getLayerIds().length);
     }
 }
\ No newline at end of file
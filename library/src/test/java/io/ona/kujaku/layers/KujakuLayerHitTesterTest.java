@@ -0,0 +1,231 @@
+package io.ona.kujaku.layers;
+
+import android.graphics.PointF;
+import android.graphics.RectF;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxsdk.maps.MapboxMap;
+import com.mapbox.mapboxsdk.maps.Style;
+import com.mapbox.mapboxsdk.style.layers.Layer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.ona.kujaku.BaseTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class KujakuLayerHitTesterTest extends BaseTest {
+
+    private MapboxMap mapboxMap;
+    private Set<String> hitLayerIds;
+    private List<RectF> queriedBoxes;
+
+    @Before
+    public void setUp() {
+        hitLayerIds = new HashSet<>();
+        queriedBoxes = new ArrayList<>();
+
+        mapboxMap = Mockito.mock(MapboxMap.class);
+        Mockito.when(mapboxMap.queryRenderedFeatures(ArgumentMatchers.any(RectF.class), ArgumentMatchers.<String>any()))
+                .thenAnswer(new Answer<List<Feature>>() {
+                    @Override
+                    public List<Feature> answer(InvocationOnMock invocation) {
+                        queriedBoxes.add((RectF) invocation.getArgument(0));
+
+                        List<Feature> features = new ArrayList<>();
+                        for (String layerId : getQueriedLayerIds(invocation)) {
+                            if (hitLayerIds.contains(layerId)) {
+                                features.add(Feature.fromGeometry(Point.fromLngLat(0, 0)));
+                            }
+                        }
+
+                        return features;
+                    }
+                });
+    }
+
+    @Test
+    public void getLayerAtShouldReturnNullWithoutQueryingWhenNoLayerIsRegistered() {
+        KujakuLayerHitTester hitTester = new KujakuLayerHitTester(4);
+
+        assertNull(hitTester.getLayerAt(mapboxMap, new PointF(10, 10)));
+        assertTrue(queriedBoxes.isEmpty());
+    }
+
+    @Test
+    public void getLayerAtShouldQueryToleranceBoxOnceWhenSingleLayerIsRegistered() {
+        KujakuLayerHitTester hitTester = new KujakuLayerHitTester(4);
+        KujakuLayer kujakuLayer = mockKujakuLayer("line", "label");
+        hitTester.addLayer(kujakuLayer);
+
+        assertNull(hitTester.getLayerAt(mapboxMap, new PointF(10, 20)));
+
+        hitLayerIds.add("label");
+        assertSame(kujakuLayer, hitTester.getLayerAt(mapboxMap, new PointF(10, 20)));
+
+        assertEquals(2, queriedBoxes.size());
+        RectF box = queriedBoxes.get(1);
+        assertEquals(6, box.left, 0);
+        assertEquals(16, box.top, 0);
+        assertEquals(14, box.right, 0);
+        assertEquals(24, box.bottom, 0);
+    }
+
+    @Test
+    public void getLayerAtShouldReturnTopmostHitLayerInStyleOrder() {
+        KujakuLayerHitTester hitTester = new KujakuLayerHitTester(4);
+        List<KujakuLayer> kujakuLayers = new ArrayList<>();
+        List<String> styleLayerIds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            KujakuLayer kujakuLayer = mockKujakuLayer("fill-" + i, "line-" + i);
+            kujakuLayers.add(kujakuLayer);
+            hitTester.addLayer(kujakuLayer);
+
+            // Layers are registered bottom-up except layer 2 which is moved to the top of the style
+            if (i != 2) {
+                styleLayerIds.add("fill-" + i);
+                styleLayerIds.add("line-" + i);
+            }
+        }
+
+        styleLayerIds.add("fill-2");
+        styleLayerIds.add("line-2");
+        mockStyle(styleLayerIds);
+
+        hitLayerIds.addAll(Arrays.asList("fill-1", "line-5"));
+        assertSame(kujakuLayers.get(5), hitTester.getLayerAt(mapboxMap, new PointF(0, 0)));
+        // One query for the hit test & at most log2(8) queries to find the topmost layer
+        assertTrue(queriedBoxes.size() <= 4);
+
+        hitLayerIds.add("fill-2");
+        assertSame(kujakuLayers.get(2), hitTester.getLayerAt(mapboxMap, new PointF(0, 0)));
+    }
+
+    @Test
+    public void getLayerAtShouldReadStyleLayersOnlyWhenRegisteredLayersChange() {
+        KujakuLayerHitTester hitTester = new KujakuLayerHitTester(4);
+        KujakuLayer bottomLayer = mockKujakuLayer("bottom");
+        KujakuLayer topLayer = mockKujakuLayer("top");
+        hitTester.addLayer(bottomLayer);
+        hitTester.addLayer(topLayer);
+        mockStyle(Arrays.asList("bottom", "top", "middle"));
+        Style style = mapboxMap.getStyle();
+
+        hitLayerIds.addAll(Arrays.asList("bottom", "top", "middle"));
+        assertSame(topLayer, hitTester.getLayerAt(mapboxMap, new PointF(0, 0)));
+        assertSame(topLayer, hitTester.getLayerAt(mapboxMap, new PointF(5, 5)));
+        Mockito.verify(style, Mockito.times(1)).getLayers();
+
+        KujakuLayer middleLayer = mockKujakuLayer("middle");
+        hitTester.addLayer(middleLayer);
+        assertSame(middleLayer, hitTester.getLayerAt(mapboxMap, new PointF(0, 0)));
+        Mockito.verify(style, Mockito.times(2)).getLayers();
+    }
+
+    @Test
+    public void getLayerAtShouldPlaceLayerOnceItIsAddedToStyle() {
+        KujakuLayerHitTester hitTester = new KujakuLayerHitTester(4);
+        KujakuLayer bottomLayer = mockKujakuLayer("bottom");
+        KujakuLayer topLayer = mockKujakuLayer("top");
+        hitTester.addLayer(topLayer);
+        hitTester.addLayer(bottomLayer);
+        mockStyle(Arrays.asList("bottom"));
+        Style style = mapboxMap.getStyle();
+
+        hitLayerIds.addAll(Arrays.asList("bottom", "top"));
+        assertSame(bottomLayer, hitTester.getLayerAt(mapboxMap, new PointF(0, 0)));
+
+        List<Layer> layers = mockLayers(Arrays.asList("bottom", "top"));
+        Mockito.when(style.getLayers()).thenReturn(layers);
+        assertSame(topLayer, hitTester.getLayerAt(mapboxMap, new PointF(0, 0)));
+    }
+
+    @Test
+    public void getLayerAtShouldUseLayerIdsChangedAfterRegistration() {
+        KujakuLayerHitTester hitTester = new KujakuLayerHitTester(4);
+        KujakuLayer kujakuLayer = mockKujakuLayer("arrow-line");
+        hitTester.addLayer(kujakuLayer);
+
+        // The layer regenerates its ids when they collide with ids already in the style
+        Mockito.when(kujakuLayer.getLayerIds()).thenReturn(new String[]{"arrow-line-2"});
+        hitLayerIds.add("arrow-line-2");
+
+        assertSame(kujakuLayer, hitTester.getLayerAt(mapboxMap, new PointF(10, 20)));
+    }
+
+    @Test
+    public void removeLayerShouldStopHitTestingLayer() {
+        KujakuLayerHitTester hitTester = new KujakuLayerHitTester(4);
+        KujakuLayer bottomLayer = mockKujakuLayer("bottom");
+        KujakuLayer topLayer = mockKujakuLayer("top");
+        hitTester.addLayer(bottomLayer);
+        hitTester.addLayer(topLayer);
+        mockStyle(Arrays.asList("bottom", "top"));
+
+        hitLayerIds.addAll(Arrays.asList("bottom", "top"));
+        assertSame(topLayer, hitTester.getLayerAt(mapboxMap, new PointF(0, 0)));
+
+        assertTrue(hitTester.removeLayer(topLayer));
+        assertFalse(hitTester.removeLayer(topLayer));
+        assertFalse(hitTester.containsLayer(topLayer));
+        assertSame(bottomLayer, hitTester.getLayerAt(mapboxMap, new PointF(0, 0)));
+
+        hitTester.removeLayer(bottomLayer);
+        assertNull(hitTester.getLayerAt(mapboxMap, new PointF(0, 0)));
+    }
+
+    private KujakuLayer mockKujakuLayer(String... layerIds) {
+        KujakuLayer kujakuLayer = Mockito.mock(KujakuLayer.class);
+        Mockito.when(kujakuLayer.getLayerIds()).thenReturn(layerIds);
+        return kujakuLayer;
+    }
+
+    private void mockStyle(List<String> layerIds) {
+        List<Layer> layers = mockLayers(layerIds);
+
+        Style style = Mockito.mock(Style.class);
+        Mockito.when(style.getLayers()).thenReturn(layers);
+        Mockito.when(mapboxMap.getStyle()).thenReturn(style);
+    }
+
+    private List<Layer> mockLayers(List<String> layerIds) {
+        List<Layer> layers = new ArrayList<>();
+        for (String layerId : layerIds) {
+            Layer layer = Mockito.mock(Layer.class);
+            Mockito.when(layer.getId()).thenReturn(layerId);
+            layers.add(layer);
+        }
+
+        return layers;
+    }
+
+    private static List<String> getQueriedLayerIds(InvocationOnMock invocation) {
+        List<String> layerIds = new ArrayList<>();
+        Object[] arguments = invocation.getArguments();
+        for (int i = 1; i < arguments.length; i++) {
+            if (arguments[i] instanceof String[]) {
+                layerIds.addAll(Arrays.asList((String[]) arguments[i]));
+            } else if (arguments[i] instanceof String) {
+                layerIds.add((String) arguments[i]);
+            }
+        }
+
+        return layerIds;
+    }
+}
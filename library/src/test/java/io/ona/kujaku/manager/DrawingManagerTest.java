@@ -0,0 +1,187 @@
+package io.ona.kujaku.manager;
+
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.maps.MapView;
+import com.mapbox.mapboxsdk.plugins.annotation.Circle;
+import com.mapbox.mapboxsdk.plugins.annotation.CircleManager;
+import com.mapbox.mapboxsdk.plugins.annotation.CircleOptions;
+import com.mapbox.mapboxsdk.plugins.annotation.Fill;
+import com.mapbox.mapboxsdk.plugins.annotation.FillManager;
+import com.mapbox.mapboxsdk.plugins.annotation.FillOptions;
+import com.mapbox.mapboxsdk.plugins.annotation.Line;
+import com.mapbox.mapboxsdk.plugins.annotation.LineManager;
+import com.mapbox.mapboxsdk.plugins.annotation.LineOptions;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.ona.kujaku.BaseTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The annotation managers need a rendered map, they are mocked & the {@link DrawingManager} is created
+ * without its constructor
+ */
+public class DrawingManagerTest extends BaseTest {
+
+    private static final List<LatLng> VERTICES = Arrays.asList(new LatLng(0, 0), new LatLng(0, 10)
+            , new LatLng(10, 10), new LatLng(10, 0));
+    private static final LatLng RELEASED_VERTEX = new LatLng(5, 20);
+
+    private long circleIds;
+
+    private DrawingManager drawingManager;
+    private FillManager fillManager;
+    private LineManager lineManager;
+
+    @Before
+    public void setUp() throws Exception {
+        fillManager = Mockito.mock(FillManager.class);
+        lineManager = Mockito.mock(LineManager.class);
+        drawingManager = createDrawingManager(fillManager, lineManager);
+        drawingManager.startDrawing(toPoints(VERTICES));
+    }
+
+    @Test
+    public void setDraggableShouldCreateMiddleCirclesOfFullRebuildWhenFirstVertexIsReleased() throws Exception {
+        assertReleasedVertexMatchesFullRebuild(0);
+    }
+
+    @Test
+    public void setDraggableShouldCreateMiddleCirclesOfFullRebuildWhenMiddleVertexIsReleased() throws Exception {
+        assertReleasedVertexMatchesFullRebuild(2);
+    }
+
+    @Test
+    public void setDraggableShouldCreateMiddleCirclesOfFullRebuildWhenLastVertexIsReleased() throws Exception {
+        assertReleasedVertexMatchesFullRebuild(VERTICES.size() - 1);
+    }
+
+    /**
+     * Drags a vertex to {@link #RELEASED_VERTEX}, releases it & compares the circles with the ones of a
+     * polygon drawn with the vertex already at this position
+     *
+     * @param vertexIndex
+     * @throws Exception
+     */
+    private void assertReleasedVertexMatchesFullRebuild(int vertexIndex) throws Exception {
+        Fill fill = (Fill) getPrivateField(drawingManager, "fill");
+        Line line = (Line) getPrivateField(drawingManager, "line");
+        Mockito.clearInvocations(fillManager, lineManager);
+
+        // Real vertices & middle circles alternate
+        Circle vertex = getKujakuCircles(drawingManager).get(vertexIndex * 2).getCircle();
+        drawingManager.setDraggable(true, vertex);
+        Mockito.when(vertex.getLatLng()).thenReturn(RELEASED_VERTEX);
+        drawingManager.setDraggable(false, vertex);
+
+        List<LatLng> movedVertices = new ArrayList<>(VERTICES);
+        movedVertices.set(vertexIndex, RELEASED_VERTEX);
+        DrawingManager rebuiltDrawingManager = createDrawingManager(Mockito.mock(FillManager.class), Mockito.mock(LineManager.class));
+        rebuiltDrawingManager.startDrawing(toPoints(movedVertices));
+
+        assertSameCircles(getKujakuCircles(rebuiltDrawingManager), getKujakuCircles(drawingManager));
+
+        // The fill & line are updated in place
+        assertSame(fill, getPrivateField(drawingManager, "fill"));
+        assertSame(line, getPrivateField(drawingManager, "line"));
+        Mockito.verify(fillManager).update(fill);
+        Mockito.verify(lineManager).update(line);
+        Mockito.verify(fillManager, Mockito.never()).create(ArgumentMatchers.any(FillOptions.class));
+        Mockito.verify(lineManager, Mockito.never()).create(ArgumentMatchers.any(LineOptions.class));
+        Mockito.verify(fillManager, Mockito.never()).deleteAll();
+        Mockito.verify(lineManager, Mockito.never()).deleteAll();
+    }
+
+    private void assertSameCircles(List<KujakuCircle> expectedCircles, List<KujakuCircle> actualCircles) {
+        assertEquals(expectedCircles.size(), actualCircles.size());
+
+        int circleCount = actualCircles.size();
+        for (int i = 0; i < circleCount; i++) {
+            KujakuCircle expectedCircle = expectedCircles.get(i);
+            KujakuCircle actualCircle = actualCircles.get(i);
+
+            assertEquals(expectedCircle.isMiddleCircle(), actualCircle.isMiddleCircle());
+            assertEquals(expectedCircle.getCircle().getLatLng(), actualCircle.getCircle().getLatLng());
+
+            // The circles are linked in a ring in the order of the list
+            assertSame(actualCircles.get((i + 1) % circleCount), actualCircle.getNextKujakuCircle());
+            assertSame(actualCircles.get((i - 1 + circleCount) % circleCount), actualCircle.getPreviousKujakuCircle());
+        }
+    }
+
+    private DrawingManager createDrawingManager(FillManager fillManager, LineManager lineManager) throws Exception {
+        Mockito.when(fillManager.create(ArgumentMatchers.any(FillOptions.class))).thenAnswer(new Answer<Fill>() {
+            @Override
+            public Fill answer(InvocationOnMock invocation) {
+                return Mockito.mock(Fill.class);
+            }
+        });
+        Mockito.when(lineManager.create(ArgumentMatchers.any(LineOptions.class))).thenAnswer(new Answer<Line>() {
+            @Override
+            public Line answer(InvocationOnMock invocation) {
+                return Mockito.mock(Line.class);
+            }
+        });
+
+        CircleManager circleManager = Mockito.mock(CircleManager.class);
+        Mockito.when(circleManager.create(ArgumentMatchers.any(CircleOptions.class))).thenAnswer(new Answer<Circle>() {
+            @Override
+            public Circle answer(InvocationOnMock invocation) {
+                LatLng latLng = ((CircleOptions) invocation.getArgument(0)).getLatLng();
+
+                Circle circle = Mockito.mock(Circle.class);
+                Mockito.when(circle.getId()).thenReturn(circleIds++);
+                Mockito.when(circle.getLatLng()).thenReturn(new LatLng(latLng.getLatitude(), latLng.getLongitude()));
+                return circle;
+            }
+        });
+
+        DrawingManager drawingManager = Mockito.mock(DrawingManager.class, Mockito.CALLS_REAL_METHODS);
+        setPrivateField(drawingManager, "circles", new ArrayList<KujakuCircle>());
+        setPrivateField(drawingManager, "mapView", Mockito.mock(MapView.class));
+        setPrivateField(drawingManager, "circleManager", circleManager);
+        setPrivateField(drawingManager, "fillManager", fillManager);
+        setPrivateField(drawingManager, "lineManager", lineManager);
+
+        return drawingManager;
+    }
+
+    private static List<Point> toPoints(List<LatLng> latLngs) {
+        List<Point> points = new ArrayList<>();
+        for (LatLng latLng : latLngs) {
+            points.add(Point.fromLngLat(latLng.getLongitude(), latLng.getLatitude()));
+        }
+
+        return points;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<KujakuCircle> getKujakuCircles(DrawingManager drawingManager) throws Exception {
+        return (List<KujakuCircle>) getPrivateField(drawingManager, "circles");
+    }
+
+    private static Object getPrivateField(DrawingManager drawingManager, String fieldName) throws Exception {
+        Field field = DrawingManager.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        return field.get(drawingManager);
+    }
+
+    private static void setPrivateField(DrawingManager drawingManager, String fieldName, Object value) throws Exception {
+        Field field = DrawingManager.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(drawingManager, value);
+    }
+}
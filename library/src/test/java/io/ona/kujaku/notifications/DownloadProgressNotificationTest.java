@@ -14,6 +14,7 @@ import org.robolectric.shadows.ShadowNotification;
 import org.robolectric.shadows.ShadowNotificationManager;
 import org.robolectric.shadows.ShadowService;
 
+import java.util.LinkedHashMap;
 import java.util.UUID;
 
 import io.ona.kujaku.R;
@@ -266,4 +267,24 @@ public class DownloadProgressNotificationTest extends BaseNotificationTest {
         assertFalse(notificationChannel.shouldShowLights());
         assertEquals(NotificationManager.IMPORTANCE_LOW, notificationChannel.getImportance());
     }
+
+    @Test
+    public void updateNotificationShouldShowAggregateProgressAndRemoveActionWhenGivenSeveralMaps() throws NoSuchFieldException, IllegalAccessException {
+        DownloadProgressNotification downloadProgressNotification = new DownloadProgressNotification(context);
+
+        String mapBoxAccessToken = "sample_access_token";
+        int requestCode = 89238087;
+
+        downloadProgressNotification.createInitialNotification("Map A", mapBoxAccessToken, requestCode, true);
+        assertEquals(1, downloadProgressNotification.notificationBuilder.mActions.size());
+
+        LinkedHashMap<String, Double> mapsProgress = new LinkedHashMap<>();
+        mapsProgress.put("Map A", 20d);
+        mapsProgress.put("Map B", 60d);
+
+        downloadProgressNotification.updateNotification(mapsProgress, 45d);
+
+        assertNotificationBuilder(downloadProgressNotification.notificationBuilder, "Map A, Map B", 45d);
+        assertEquals(0, downloadProgressNotification.notificationBuilder.mActions.size());
+    }
 }
@@ -0,0 +1,161 @@
+package io.ona.kujaku.plugin.switcher.layer;
+
+import com.mapbox.mapboxsdk.style.layers.Layer;
+import com.mapbox.mapboxsdk.style.layers.RasterLayer;
+import com.mapbox.mapboxsdk.style.sources.RasterSource;
+import com.mapbox.mapboxsdk.style.sources.Source;
+import com.mapbox.mapboxsdk.style.sources.TileSet;
+import com.mapbox.mapboxsdk.style.sources.VectorSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.ona.kujaku.BaseTest;
+import io.ona.kujaku.helpers.MBTilesTileServer;
+import io.ona.kujaku.helpers.storage.MBTilesStore;
+import io.ona.kujaku.listeners.OnFinishedListener;
+import io.ona.kujaku.test.shadows.ShadowLayer;
+import io.ona.kujaku.test.shadows.ShadowRasterLayer;
+import io.ona.kujaku.test.shadows.ShadowRasterSource;
+import io.ona.kujaku.test.shadows.ShadowVectorSource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@Config(shadows = {ShadowLayer.class, ShadowRasterLayer.class, ShadowRasterSource.class, ShadowVectorSource.class})
+public class MBTilesBaseLayerTest extends BaseTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File mbtilesFile;
+    private String sourceId;
+
+    @Before
+    public void setUp() {
+        mbtilesFile = new File(temporaryFolder.getRoot(), "streets.mbtiles");
+        MBTilesStore store = new MBTilesStore(mbtilesFile);
+        store.setMetadata(MBTilesStore.METADATA_FORMAT, "png");
+        store.setMetadata(MBTilesStore.METADATA_MIN_ZOOM, "2");
+        store.setMetadata(MBTilesStore.METADATA_MAX_ZOOM, "14");
+        store.putTile(3, 5, 1, new byte[]{1, 2, 3});
+        store.close();
+
+        sourceId = MBTilesBaseLayer.getSourceId(mbtilesFile);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        MBTilesTileServer.getInstance().removeStore(sourceId);
+    }
+
+    @Test
+    public void constructorShouldCreateRasterSourceAndLayerWhenGivenNoVectorLayers() throws IOException {
+        MBTilesBaseLayer baseLayer = new MBTilesBaseLayer("Streets", mbtilesFile);
+
+        assertEquals("Streets", baseLayer.getDisplayName());
+        assertEquals("mbtiles-streets.mbtiles", sourceId);
+        assertEquals(sourceId + "-base-layer", baseLayer.getId());
+        assertArrayEquals(new String[]{sourceId}, baseLayer.getSourceIds());
+
+        List<Source> sources = baseLayer.getSources();
+        assertEquals(1, sources.size());
+        assertTrue(sources.get(0) instanceof RasterSource);
+
+        assertEquals(1, baseLayer.getLayers().size());
+        assertTrue(baseLayer.getLayers().iterator().next() instanceof RasterLayer);
+        assertArrayEquals(new String[]{sourceId}, baseLayer.getLayerIds());
+    }
+
+    @Test
+    public void constructorShouldCreateVectorSourceAndKeepLayerOrderWhenGivenVectorLayers() throws IOException {
+        List<Layer> vectorLayers = new ArrayList<>();
+        vectorLayers.add(createLayer("roads"));
+        vectorLayers.add(createLayer("buildings"));
+
+        MBTilesBaseLayer baseLayer = new MBTilesBaseLayer("Streets", mbtilesFile, vectorLayers);
+
+        List<Source> sources = baseLayer.getSources();
+        assertEquals(1, sources.size());
+        assertTrue(sources.get(0) instanceof VectorSource);
+        assertArrayEquals(new String[]{sourceId}, baseLayer.getSourceIds());
+
+        assertArrayEquals(new String[]{"roads", "buildings"}, baseLayer.getLayerIds());
+        assertSame(vectorLayers.get(0), baseLayer.getLayers().iterator().next());
+    }
+
+    @Test
+    public void createTileSetShouldServeFileAndReadZoomRange() throws IOException {
+        TileSet tileSet = createTileSet(mbtilesFile);
+
+        assertEquals(MBTilesTileServer.getInstance().addStore(sourceId, mbtilesFile), tileSet.getTiles()[0]);
+        assertEquals(2f, tileSet.getMinZoom(), 0);
+        assertEquals(14f, tileSet.getMaxZoom(), 0);
+    }
+
+    @Test
+    public void createTileSetShouldIgnoreInvalidZoomRange() {
+        MBTilesStore store = new MBTilesStore(mbtilesFile);
+        store.setMetadata(MBTilesStore.METADATA_MIN_ZOOM, "low");
+        store.close();
+
+        TileSet tileSet = createTileSet(mbtilesFile);
+
+        assertNull(tileSet.getMinZoom());
+        assertNotNull(tileSet.getTiles());
+    }
+
+    @Test
+    public void createShouldReturnBaseLayerOnMainThread() throws InterruptedException {
+        final List<Object> results = new ArrayList<>();
+        MBTilesBaseLayer.create("Streets", mbtilesFile, null, new OnFinishedListener() {
+            @Override
+            public void onSuccess(Object[] objects) {
+                results.add(objects[0]);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                results.add(e);
+            }
+        });
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while (results.isEmpty() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+
+        assertEquals(1, results.size());
+        assertTrue(results.get(0) instanceof MBTilesBaseLayer);
+
+        MBTilesBaseLayer baseLayer = (MBTilesBaseLayer) results.get(0);
+        assertEquals("Streets", baseLayer.getDisplayName());
+        assertTrue(baseLayer.getSources().get(0) instanceof RasterSource);
+    }
+
+    private TileSet createTileSet(File mbtilesFile) {
+        return ReflectionHelpers.callStaticMethod(MBTilesBaseLayer.class, "createTileSet"
+                , ReflectionHelpers.ClassParameter.from(File.class, mbtilesFile));
+    }
+
+    private Layer createLayer(String layerId) {
+        // The shadows only keep the id of the raster layers
+        return new RasterLayer(layerId, sourceId);
+    }
+}
@@ -34,11 +34,13 @@ import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.shadows.ShadowNotification;
 import org.robolectric.shadows.ShadowNotificationManager;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 
@@ -47,8 +49,11 @@ import io.ona.kujaku.data.MapBoxDeleteTask;
 import io.ona.kujaku.data.MapBoxDownloadTask;
 import io.ona.kujaku.data.realm.RealmDatabase;
 import io.ona.kujaku.data.realm.objects.MapBoxOfflineQueueTask;
+import io.ona.kujaku.downloaders.DownloadConcurrencyController;
 import io.ona.kujaku.downloaders.MapBoxOfflineResourcesDownloader;
+import io.ona.kujaku.listeners.OfflineRegionObserver;
 import io.ona.kujaku.listeners.OfflineRegionStatusCallback;
+import io.ona.kujaku.listeners.OnPauseMapDownloadCallback;
 import io.ona.kujaku.test.shadows.ShadowConnectivityReceiver;
 import io.ona.kujaku.test.shadows.ShadowMapBoxDeleteTask;
 import io.ona.kujaku.test.shadows.ShadowMapBoxDownloadTask;
@@ -60,6 +65,7 @@ import io.ona.kujaku.utils.Constants;
 import io.ona.kujaku.utils.NumberFormatter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -450,6 +456,150 @@ public class MapboxOfflineDownloaderServiceTest {
         assertTrue(mapboxOfflineDownloaderService.performNextTaskCalled);
     }
 
+    @Test
+    public void regionDownloadListenersShouldTrackConcurrentDownloadsPerMap() throws Exception {
+        RealmDatabase realmDatabase = Mockito.mock(RealmDatabase.class);
+        insertValueInPrivateField(mapboxOfflineDownloaderService, "realmDatabase", realmDatabase);
+        DownloadConcurrencyController downloadConcurrencyController = insertDownloadConcurrencyController(4);
+
+        MapBoxOfflineQueueTask firstTask = new MapBoxOfflineQueueTask();
+        MapBoxOfflineQueueTask secondTask = new MapBoxOfflineQueueTask();
+        OfflineRegionObserver firstListener = startRegionDownload(firstTask, "map-1");
+        OfflineRegionObserver secondListener = startRegionDownload(secondTask, "map-2");
+
+        latch = new CountDownLatch(2);
+        registerLocalBroadcastReceiverForDownloadServiceUpdates();
+        firstListener.onStatusChanged(createOfflineRegion(OfflineRegion.STATE_ACTIVE, 50, 100, 10, 1000, 100, true, false), null);
+        secondListener.onStatusChanged(createOfflineRegion(OfflineRegion.STATE_ACTIVE, 30, 100, 10, 1000, 300, true, false), null);
+        latch.await();
+
+        assertBroadcastResults((Intent) resultsToCheck.get(0), MapboxOfflineDownloaderService.SERVICE_ACTION_RESULT.SUCCESSFUL, "map-1", "50.0", MapboxOfflineDownloaderService.SERVICE_ACTION.DOWNLOAD_MAP);
+        assertBroadcastResults((Intent) resultsToCheck.get(1), MapboxOfflineDownloaderService.SERVICE_ACTION_RESULT.SUCCESSFUL, "map-2", "10.0", MapboxOfflineDownloaderService.SERVICE_ACTION.DOWNLOAD_MAP);
+        assertEquals(50d, downloadConcurrencyController.getDownloadPercentage("map-1"), 0);
+        assertEquals(10d, downloadConcurrencyController.getDownloadPercentage("map-2"), 0);
+
+        // Completing the second map should persist its own task & leave the first download running
+        secondListener.onStatusChanged(createOfflineRegion(OfflineRegion.STATE_ACTIVE, 300, 100, 10, 1000, 300, true, true), null);
+
+        Mockito.verify(realmDatabase).persistCompletedStatus(secondTask);
+        Mockito.verify(realmDatabase, Mockito.never()).persistCompletedStatus(firstTask);
+        assertTrue(downloadConcurrencyController.isDownloadActive("map-1"));
+        assertFalse(downloadConcurrencyController.isDownloadActive("map-2"));
+
+        Map<String, MapBoxOfflineQueueTask> regionDownloadTasks = (Map<String, MapBoxOfflineQueueTask>) getValueInPrivateField(mapboxOfflineDownloaderService, "regionDownloadTasks");
+        assertEquals(1, regionDownloadTasks.size());
+        assertEquals(firstTask, regionDownloadTasks.get("map-1"));
+    }
+
+    @Test
+    public void regionDownloadErrorShouldLowerConcurrencyLimitAndKeepDownloadActive() throws Exception {
+        insertValueInPrivateField(mapboxOfflineDownloaderService, "realmDatabase", Mockito.mock(RealmDatabase.class));
+        DownloadConcurrencyController downloadConcurrencyController = insertDownloadConcurrencyController(4);
+
+        OfflineRegionObserver firstListener = startRegionDownload(new MapBoxOfflineQueueTask(), "map-1");
+        startRegionDownload(new MapBoxOfflineQueueTask(), "map-2");
+
+        latch = new CountDownLatch(1);
+        registerLocalBroadcastReceiverForDownloadServiceUpdates();
+        firstListener.onError("Connection", "timeout");
+        latch.await();
+
+        assertBroadcastResults((Intent) resultsToCheck.get(0), MapboxOfflineDownloaderService.SERVICE_ACTION_RESULT.FAILED, "map-1", "REASON : Connection\nMESSAGE: timeout", MapboxOfflineDownloaderService.SERVICE_ACTION.DOWNLOAD_MAP);
+        assertEquals(2, downloadConcurrencyController.getConcurrencyLimit());
+        assertTrue(downloadConcurrencyController.isDownloadActive("map-1"));
+        assertFalse(downloadConcurrencyController.canStartDownload());
+
+        // Mapbox keeps reporting errors while it retries the region
+        firstListener.onError("Connection", "timeout");
+        assertEquals(2, downloadConcurrencyController.getConcurrencyLimit());
+    }
+
+    @Test
+    public void stopDownloadShouldOnlyFreeSlotOfStoppedMap() throws Exception {
+        RealmDatabase realmDatabase = Mockito.mock(RealmDatabase.class);
+        Mockito.doReturn(true).when(realmDatabase).deleteTask("map-1", true);
+        insertValueInPrivateField(mapboxOfflineDownloaderService, "realmDatabase", realmDatabase);
+        DownloadConcurrencyController downloadConcurrencyController = insertDownloadConcurrencyController(4);
+
+        MapBoxOfflineResourcesDownloader mapBoxOfflineResourcesDownloader = Mockito.mock(MapBoxOfflineResourcesDownloader.class);
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ((OnPauseMapDownloadCallback) invocation.getArgument(1)).onPauseSuccess();
+                return null;
+            }
+        }).when(mapBoxOfflineResourcesDownloader).pauseMapDownload(Mockito.eq("map-1"), Mockito.any(OnPauseMapDownloadCallback.class));
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ((OfflineRegion.OfflineRegionDeleteCallback) invocation.getArgument(1)).onDelete();
+                return null;
+            }
+        }).when(mapBoxOfflineResourcesDownloader).deleteMap(Mockito.eq("map-1"), Mockito.any(OfflineRegion.OfflineRegionDeleteCallback.class));
+        setMapBoxOfflineResourcesDownloaderInstance(mapBoxOfflineResourcesDownloader);
+
+        try {
+            MapBoxOfflineQueueTask secondTask = new MapBoxOfflineQueueTask();
+            OfflineRegionObserver firstListener = startRegionDownload(new MapBoxOfflineQueueTask(), "map-1");
+            startRegionDownload(secondTask, "map-2");
+            firstListener.onError("Connection", "timeout");
+            assertEquals(2, downloadConcurrencyController.getConcurrencyLimit());
+
+            latch = new CountDownLatch(1);
+            registerLocalBroadcastReceiverForDownloadServiceUpdates();
+
+            Intent stopIntent = createMapboxOfflineDownloaderServiceIntent();
+            stopIntent.putExtra(Constants.PARCELABLE_KEY_SERVICE_ACTION, MapboxOfflineDownloaderService.SERVICE_ACTION.STOP_CURRENT_DOWNLOAD);
+            stopIntent.putExtra(Constants.PARCELABLE_KEY_MAP_UNIQUE_NAME, "map-1");
+            stopIntent.putExtra(Constants.PARCELABLE_KEY_MAPBOX_ACCESS_TOKEN, mapboxAccessToken);
+            stopIntent.putExtra(Constants.PARCELABLE_KEY_DELETE_TASK_TYPE, MapBoxOfflineQueueTask.TASK_TYPE_DOWNLOAD);
+            mapboxOfflineDownloaderService.persistOfflineMapTask(stopIntent);
+            latch.await();
+
+            Intent intent = (Intent) resultsToCheck.get(resultsToCheck.size() - 1);
+            assertBroadcastResults(intent, MapboxOfflineDownloaderService.SERVICE_ACTION_RESULT.SUCCESSFUL, "map-1", MapboxOfflineDownloaderService.SERVICE_ACTION.STOP_CURRENT_DOWNLOAD);
+            Mockito.verify(mapBoxOfflineResourcesDownloader, Mockito.never()).pauseMapDownload(Mockito.eq("map-2"), Mockito.any(OnPauseMapDownloadCallback.class));
+
+            assertFalse(downloadConcurrencyController.isDownloadActive("map-1"));
+            assertTrue(downloadConcurrencyController.isDownloadActive("map-2"));
+            assertEquals(2, downloadConcurrencyController.getConcurrencyLimit());
+
+            Map<String, MapBoxOfflineQueueTask> regionDownloadTasks = (Map<String, MapBoxOfflineQueueTask>) getValueInPrivateField(mapboxOfflineDownloaderService, "regionDownloadTasks");
+            assertEquals(1, regionDownloadTasks.size());
+            assertEquals(secondTask, regionDownloadTasks.get("map-2"));
+        } finally {
+            setMapBoxOfflineResourcesDownloaderInstance(null);
+        }
+    }
+
+    @Test
+    public void wmtsDownloadErrorShouldCompleteTaskWhenAttemptsAreExhaustedOrErrorIsNotRetryable() throws Exception {
+        RealmDatabase realmDatabase = Mockito.mock(RealmDatabase.class);
+        insertValueInPrivateField(mapboxOfflineDownloaderService, "realmDatabase", realmDatabase);
+        DownloadConcurrencyController downloadConcurrencyController = insertDownloadConcurrencyController(4);
+
+        MapBoxOfflineQueueTask retriedTask = new MapBoxOfflineQueueTask();
+        for (int attempt = 1; attempt < MapboxOfflineDownloaderService.MAX_WMTS_DOWNLOAD_ATTEMPTS; attempt++) {
+            downloadConcurrencyController.onDownloadStarted("map-1");
+            invokeOnWmtsDownloadError(retriedTask, "map-1", "HTTP 503", true);
+
+            assertFalse(downloadConcurrencyController.isDownloadActive("map-1"));
+            Mockito.verify(realmDatabase, Mockito.never()).persistCompletedStatus(retriedTask);
+        }
+
+        downloadConcurrencyController.onDownloadStarted("map-1");
+        invokeOnWmtsDownloadError(retriedTask, "map-1", "HTTP 503", true);
+        Mockito.verify(realmDatabase).persistCompletedStatus(retriedTask);
+
+        MapBoxOfflineQueueTask refusedTask = new MapBoxOfflineQueueTask();
+        downloadConcurrencyController.onDownloadStarted("map-2");
+        invokeOnWmtsDownloadError(refusedTask, "map-2", "HTTP 403", false);
+        Mockito.verify(realmDatabase).persistCompletedStatus(refusedTask);
+
+        Map<String, Integer> wmtsDownloadAttempts = (Map<String, Integer>) getValueInPrivateField(mapboxOfflineDownloaderService, "wmtsDownloadAttempts");
+        assertTrue(wmtsDownloadAttempts.isEmpty());
+    }
+
     /*
     --------------------------
     --------------------------
@@ -558,6 +708,40 @@ public class MapboxOfflineDownloaderServiceTest {
         }
     }
 
+    private DownloadConcurrencyController insertDownloadConcurrencyController(int maxConcurrentDownloads) throws NoSuchFieldException, IllegalAccessException {
+        DownloadConcurrencyController downloadConcurrencyController = new DownloadConcurrencyController(maxConcurrentDownloads);
+        insertValueInPrivateField(mapboxOfflineDownloaderService, "downloadConcurrencyController", downloadConcurrencyController);
+        return downloadConcurrencyController;
+    }
+
+    /**
+     * Registers a running Mapbox region download the way {@code performTask} does & returns the
+     * listener of its region
+     */
+    private OfflineRegionObserver startRegionDownload(MapBoxOfflineQueueTask mapBoxOfflineQueueTask, String mapName) throws Exception {
+        ((Map<String, MapBoxOfflineQueueTask>) getValueInPrivateField(mapboxOfflineDownloaderService, "regionDownloadTasks"))
+                .put(mapName, mapBoxOfflineQueueTask);
+        ((DownloadConcurrencyController) getValueInPrivateField(mapboxOfflineDownloaderService, "downloadConcurrencyController"))
+                .onDownloadStarted(mapName);
+
+        Class<?> listenerClass = Class.forName(MapboxOfflineDownloaderService.class.getName() + "$RegionDownloadListener");
+        Constructor<?> constructor = listenerClass.getDeclaredConstructor(MapboxOfflineDownloaderService.class, MapBoxOfflineQueueTask.class, String.class);
+        constructor.setAccessible(true);
+        return (OfflineRegionObserver) constructor.newInstance(mapboxOfflineDownloaderService, mapBoxOfflineQueueTask, mapName);
+    }
+
+    private void invokeOnWmtsDownloadError(MapBoxOfflineQueueTask mapBoxOfflineQueueTask, String mapName, String error, boolean isRetryable) throws Exception {
+        Method onWmtsDownloadError = MapboxOfflineDownloaderService.class.getDeclaredMethod("onWmtsDownloadError", MapBoxOfflineQueueTask.class, String.class, String.class, boolean.class);
+        onWmtsDownloadError.setAccessible(true);
+        onWmtsDownloadError.invoke(mapboxOfflineDownloaderService, mapBoxOfflineQueueTask, mapName, error, isRetryable);
+    }
+
+    private void setMapBoxOfflineResourcesDownloaderInstance(MapBoxOfflineResourcesDownloader mapBoxOfflineResourcesDownloader) throws NoSuchFieldException, IllegalAccessException {
+        Field instanceField = MapBoxOfflineResourcesDownloader.class.getDeclaredField("instance");
+        instanceField.setAccessible(true);
+        instanceField.set(null, mapBoxOfflineResourcesDownloader);
+    }
+
     private void setMapNameAndDownloadAction(String mapName, MapboxOfflineDownloaderService.SERVICE_ACTION serviceAction) throws NoSuchFieldException, IllegalAccessException {
         insertValueInPrivateField(mapboxOfflineDownloaderService, "currentMapDownloadName", mapName);
         insertValueInPrivateField(mapboxOfflineDownloaderService, "currentServiceAction", serviceAction);
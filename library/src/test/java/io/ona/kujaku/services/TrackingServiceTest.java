@@ -22,16 +22,20 @@ import org.robolectric.android.controller.ServiceController;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLocationManager;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 import io.ona.kujaku.BuildConfig;
 import io.ona.kujaku.R;
 import io.ona.kujaku.activities.MapActivity;
+import io.ona.kujaku.helpers.storage.TrackBuffer;
 import io.ona.kujaku.listeners.TrackingServiceListener;
 import io.ona.kujaku.services.configurations.TrackingServiceDefaultUIConfiguration;
 import io.ona.kujaku.services.options.TrackingServiceHighAccuracyOptions;
 import io.ona.kujaku.services.options.TrackingServiceSaveBatteryOptions;
+import io.ona.kujaku.services.simplifiers.DouglasPeuckerTrackSimplifier;
 
 import static android.location.LocationManager.GPS_PROVIDER;
 import static org.junit.Assert.assertEquals;
@@ -146,9 +150,31 @@ public class TrackingServiceTest {
         assertEquals(createdFromParcel.getMinDistance(), 5);
         assertEquals(createdFromParcel.getMinTime(), 0);
         assertEquals(createdFromParcel.getToleranceIntervalDistance(), 1);
+        assertEquals(createdFromParcel.getSimplificationTolerance(), 0, 0);
+        assertEquals(createdFromParcel.getSimplificationWindowSize(), 32);
 
     }
 
+    @Test
+    public void testParcelableTrackingServiceOptionsWithCustomSimplification() {
+        TrackingServiceHighAccuracyOptions options = new TrackingServiceHighAccuracyOptions();
+        options.setSimplificationTolerance(0.5);
+        options.setSimplificationWindowSize(16);
+        Parcel parcel = Parcel.obtain();
+        options.writeToParcel(parcel, options.describeContents());
+        parcel.setDataPosition(0);
+
+        TrackingServiceHighAccuracyOptions createdFromParcel = TrackingServiceHighAccuracyOptions.CREATOR.createFromParcel(parcel);
+        assertEquals(createdFromParcel.getSimplificationTolerance(), 0.5, 0);
+        assertEquals(createdFromParcel.getSimplificationWindowSize(), 16);
+        assertEquals(createdFromParcel.getMinDistance(), 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetSimplificationWindowSizeShouldRejectWindowsSmallerThanTwo() {
+        new TrackingServiceSaveBatteryOptions().setSimplificationWindowSize(1);
+    }
+
     @Test
     public void testParcelableTrackingServiceSaveBatteryOptions() {
         TrackingServiceSaveBatteryOptions options = new TrackingServiceSaveBatteryOptions();
@@ -163,6 +189,8 @@ public class TrackingServiceTest {
         assertEquals(createdFromParcel.getMinDistance(), 5);
         assertEquals(createdFromParcel.getMinTime(), 0);
         assertEquals(createdFromParcel.getToleranceIntervalDistance(), 1);
+        assertEquals(createdFromParcel.getSimplificationTolerance(), 0, 0);
+        assertEquals(createdFromParcel.getSimplificationWindowSize(), 32);
 
     }
 
@@ -216,6 +244,76 @@ public class TrackingServiceTest {
         assertEquals(connectionStatus, "disconnected");
     }
 
+    @Test
+    public void testSimplifiedTrackIsRecordedTrackUntilSimplificationIsEnabled() throws Exception {
+        controller = Robolectric.buildService(TrackingService.class,
+                TrackingService.getIntent(context, MapActivity.class, new TrackingServiceHighAccuracyOptions()));
+        TrackingService service = controller.create().get();
+
+        recordLocation(service, location_1);
+        recordLocation(service, location_2);
+
+        // No copy of the recorded track is kept while the simplification is disabled
+        assertNull(getSimplifiedTrack(service));
+        List<Location> simplifiedLocations = service.getSimplifiedLocations();
+        assertEquals(2, simplifiedLocations.size());
+        assertEquals(location_2.getLatitude(), simplifiedLocations.get(1).getLatitude(), 0);
+        assertEquals(1, service.getCompressionRatio(), 0);
+
+        service.setTrackSimplifier(new DouglasPeuckerTrackSimplifier(2, 32));
+        assertEquals(2, getSimplifiedTrack(service).size());
+
+        recordLocation(service, location_3);
+        assertEquals(3, service.getSimplifiedLocations().size());
+        assertEquals(location_3.getLongitude(), service.getSimplifiedLocations().get(2).getLongitude(), 0);
+    }
+
+    @Test
+    public void testCustomSimplificationToleranceReachesTrackSimplifier() throws Exception {
+        TrackingServiceHighAccuracyOptions options = new TrackingServiceHighAccuracyOptions();
+        options.setSimplificationTolerance(0.5);
+        options.setSimplificationWindowSize(16);
+
+        controller = Robolectric.buildService(TrackingService.class,
+                TrackingService.getIntent(context, MapActivity.class, options));
+        TrackingService service = controller.create().startCommand(0, 0).get();
+
+        Object trackSimplifier = getTrackSimplifier(service);
+        assertTrue(trackSimplifier instanceof DouglasPeuckerTrackSimplifier);
+        assertEquals(0.5, ((DouglasPeuckerTrackSimplifier) trackSimplifier).getTolerance(), 0);
+    }
+
+    @Test
+    public void testSimplificationIsDisabledByDefault() throws Exception {
+        controller = Robolectric.buildService(TrackingService.class,
+                TrackingService.getIntent(context, MapActivity.class, new TrackingServiceSaveBatteryOptions()));
+        TrackingService service = controller.create().startCommand(0, 0).get();
+
+        assertNull(getTrackSimplifier(service));
+    }
+
+    private Object getTrackSimplifier(TrackingService service) throws Exception {
+        Field trackSimplifierField = TrackingService.class.getDeclaredField("trackSimplifier");
+        trackSimplifierField.setAccessible(true);
+        return trackSimplifierField.get(service);
+    }
+
+    private void recordLocation(TrackingService service, Location location) throws Exception {
+        Field recordedTrackField = TrackingService.class.getDeclaredField("recordedTrack");
+        recordedTrackField.setAccessible(true);
+        ((TrackBuffer) recordedTrackField.get(service)).add(location);
+
+        Method simplifyLocation = TrackingService.class.getDeclaredMethod("simplifyLocation", Location.class);
+        simplifyLocation.setAccessible(true);
+        simplifyLocation.invoke(service, location);
+    }
+
+    private TrackBuffer getSimplifiedTrack(TrackingService service) throws Exception {
+        Field simplifiedTrackField = TrackingService.class.getDeclaredField("simplifiedTrack");
+        simplifiedTrackField.setAccessible(true);
+        return (TrackBuffer) simplifiedTrackField.get(service);
+    }
+
     @Test
     public void testServiceWithLocationInDistanceTolerance() throws InterruptedException {
         controller = Robolectric.buildService(TrackingService.class,
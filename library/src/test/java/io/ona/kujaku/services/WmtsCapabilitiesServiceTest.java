@@ -0,0 +1,117 @@
+package io.ona.kujaku.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+import io.ona.kujaku.BaseTest;
+import io.ona.kujaku.helpers.storage.WmtsCapabilitiesCache;
+import io.ona.kujaku.test.StubHttpServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WmtsCapabilitiesServiceTest extends BaseTest {
+
+    private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private byte[] capabilitiesDocument;
+    private String currentETag = "\"v1\"";
+    private StubHttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        capabilitiesDocument = readResource("Capabilities.xml");
+        server = new StubHttpServer(new StubHttpServer.Handler() {
+            @Override
+            public StubHttpServer.Response handle(StubHttpServer.Request request) {
+                if (currentETag.equals(request.getHeader("If-None-Match"))) {
+                    return new StubHttpServer.Response(HttpURLConnection.HTTP_NOT_MODIFIED, new byte[0]);
+                }
+
+                return new StubHttpServer.Response(HttpURLConnection.HTTP_OK, capabilitiesDocument)
+                        .setHeader("ETag", currentETag)
+                        .setHeader("Last-Modified", LAST_MODIFIED);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void fetchShouldCacheCapabilitiesWithTheirValidators() throws Exception {
+        String url = server.getUrl("/WMTSCapabilities.xml");
+        WmtsCapabilitiesService service = new WmtsCapabilitiesService(url, temporaryFolder.getRoot());
+
+        WmtsCapabilitiesCache.Entry entry = service.fetch(url, null);
+
+        assertEquals("1.0.0", entry.getCapabilities().getVersion());
+        assertNull(server.getRequests().get(0).getHeader("If-None-Match"));
+
+        WmtsCapabilitiesCache.Entry cachedEntry = new WmtsCapabilitiesCache(temporaryFolder.getRoot()).get(url);
+        assertNotNull(cachedEntry);
+        assertEquals("\"v1\"", cachedEntry.getETag());
+        assertEquals(LAST_MODIFIED, cachedEntry.getLastModified());
+        assertEquals(1, cachedEntry.getCapabilities().getLayers().size());
+    }
+
+    @Test
+    public void fetchShouldKeepCachedCapabilitiesWhenServerRespondsNotModified() throws Exception {
+        String url = server.getUrl("/WMTSCapabilities.xml");
+        WmtsCapabilitiesService service = new WmtsCapabilitiesService(url, temporaryFolder.getRoot());
+        WmtsCapabilitiesCache.Entry entry = service.fetch(url, null);
+
+        WmtsCapabilitiesCache.Entry revalidatedEntry = service.fetch(url, entry);
+
+        StubHttpServer.Request request = server.getRequests().get(1);
+        assertEquals("\"v1\"", request.getHeader("If-None-Match"));
+        assertEquals(LAST_MODIFIED, request.getHeader("If-Modified-Since"));
+        assertSame(entry.getCapabilities(), revalidatedEntry.getCapabilities());
+        assertEquals("\"v1\"", revalidatedEntry.getETag());
+        assertTrue(revalidatedEntry.getFetchedAt() >= entry.getFetchedAt());
+    }
+
+    @Test
+    public void fetchShouldReplaceCachedCapabilitiesWhenServerRespondsWithNewCapabilities() throws Exception {
+        String url = server.getUrl("/WMTSCapabilities.xml");
+        WmtsCapabilitiesService service = new WmtsCapabilitiesService(url, temporaryFolder.getRoot());
+        WmtsCapabilitiesCache.Entry entry = service.fetch(url, null);
+
+        currentETag = "\"v2\"";
+        WmtsCapabilitiesCache.Entry revalidatedEntry = service.fetch(url, entry);
+
+        assertNotSame(entry.getCapabilities(), revalidatedEntry.getCapabilities());
+        assertEquals("\"v2\"", revalidatedEntry.getETag());
+        assertEquals("\"v2\"", new WmtsCapabilitiesCache(temporaryFolder.getRoot()).get(url).getETag());
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(name);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+
+        return out.toByteArray();
+    }
+}
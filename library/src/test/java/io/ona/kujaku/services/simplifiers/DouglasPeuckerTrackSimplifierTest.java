@@ -0,0 +1,97 @@
+package io.ona.kujaku.services.simplifiers;
+
+import android.location.Location;
+import android.location.LocationManager;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.ona.kujaku.BaseTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class DouglasPeuckerTrackSimplifierTest extends BaseTest {
+
+    // About 1 meter in latitude
+    private static final double METER = 1 / 111195.0;
+
+    @Test
+    public void addShouldDropCollinearLocationsWhenWithinTolerance() {
+        DouglasPeuckerTrackSimplifier simplifier = new DouglasPeuckerTrackSimplifier(2, 100);
+        List<Location> simplifiedLocations = new ArrayList<>();
+
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            // Straight line north with a 0.5m zigzag
+            locations.add(createLocation(i * 5 * METER, (i % 2) * 0.5 * METER));
+        }
+
+        for (Location location : locations) {
+            simplifiedLocations.addAll(simplifier.add(location));
+        }
+        assertSame(locations.get(49), simplifier.getLastPendingLocation());
+
+        simplifiedLocations.addAll(simplifier.flush());
+
+        assertEquals(2, simplifiedLocations.size());
+        assertSame(locations.get(0), simplifiedLocations.get(0));
+        assertSame(locations.get(49), simplifiedLocations.get(1));
+        assertNull(simplifier.getLastPendingLocation());
+    }
+
+    @Test
+    public void addShouldKeepCornerLocationsWhenOutOfTolerance() {
+        DouglasPeuckerTrackSimplifier simplifier = new DouglasPeuckerTrackSimplifier(2, 100);
+        List<Location> simplifiedLocations = new ArrayList<>();
+
+        // L shaped track: 10 locations north then 10 locations east
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            locations.add(createLocation(i * 5 * METER, 0));
+        }
+        for (int i = 1; i <= 10; i++) {
+            locations.add(createLocation(50 * METER, i * 5 * METER));
+        }
+
+        for (Location location : locations) {
+            simplifiedLocations.addAll(simplifier.add(location));
+        }
+        simplifiedLocations.addAll(simplifier.flush());
+
+        assertEquals(3, simplifiedLocations.size());
+        assertSame(locations.get(0), simplifiedLocations.get(0));
+        assertSame(locations.get(10), simplifiedLocations.get(1));
+        assertSame(locations.get(20), simplifiedLocations.get(2));
+    }
+
+    @Test
+    public void addShouldMakeLocationsFinalWhenWindowIsFull() {
+        DouglasPeuckerTrackSimplifier simplifier = new DouglasPeuckerTrackSimplifier(2, 5);
+
+        assertEquals(1, simplifier.add(createLocation(0, 0)).size());
+        for (int i = 1; i < 5; i++) {
+            assertEquals(0, simplifier.add(createLocation(i * METER, 0)).size());
+        }
+
+        List<Location> finalLocations = simplifier.add(createLocation(5 * METER, 0));
+        assertEquals(1, finalLocations.size());
+        assertEquals(5 * METER, finalLocations.get(0).getLatitude(), 0);
+        assertNull(simplifier.getLastPendingLocation());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionWhenGivenWindowSizeLowerThan2() {
+        new DouglasPeuckerTrackSimplifier(2, 1);
+    }
+
+    private Location createLocation(double latitude, double longitude) {
+        Location location = new Location(LocationManager.GPS_PROVIDER);
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        return location;
+    }
+}
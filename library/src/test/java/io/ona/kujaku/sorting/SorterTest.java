@@ -0,0 +1,126 @@
+package io.ona.kujaku.sorting;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.ona.kujaku.BaseTest;
+import io.ona.kujaku.adapters.InfoWindowObject;
+import io.ona.kujaku.utils.config.KujakuConfig;
+import io.ona.kujaku.utils.config.SortFieldConfig;
+import io.ona.kujaku.utils.exceptions.InvalidMapBoxStyleException;
+import io.ona.kujaku.utils.helpers.MapBoxStyleHelper;
+
+public class SorterTest extends BaseTest {
+
+    @Test
+    public void sortShouldSortByDateAscending() throws JSONException {
+        ArrayList<InfoWindowObject> infoWindowObjects = new ArrayList<>();
+        infoWindowObjects.add(createInfoWindowObject(0, "visit-date", "2017-11-24T10:00:00"));
+        infoWindowObjects.add(createInfoWindowObject(1, "visit-date", "2017-11-22T10:00:00"));
+        infoWindowObjects.add(createInfoWindowObject(2, "visit-date", "2017-11-24T09:59:59"));
+
+        List<InfoWindowObject> sortedObjects = new Sorter(infoWindowObjects)
+                .sort(new SortFieldConfig(SortFieldConfig.FieldType.DATE, "visit-date"));
+
+        assertOrder(sortedObjects, 1, 2, 0);
+    }
+
+    @Test
+    public void sortShouldUseFollowingFieldsWhenKeysAreEqual() throws JSONException {
+        ArrayList<InfoWindowObject> infoWindowObjects = new ArrayList<>();
+        infoWindowObjects.add(createInfoWindowObject(0, "district", "Kyela", "population", 120));
+        infoWindowObjects.add(createInfoWindowObject(1, "district", "Magu", "population", 80));
+        infoWindowObjects.add(createInfoWindowObject(2, "district", "Kyela", "population", 300));
+        infoWindowObjects.add(createInfoWindowObject(3, "district", "Kasulu", "population", "150"));
+
+        SortFieldConfig[] sortFields = {new SortFieldConfig(SortFieldConfig.FieldType.STRING, "district")
+                , new SortFieldConfig(SortFieldConfig.FieldType.NUMBER, "population")};
+
+        List<InfoWindowObject> sortedObjects = new Sorter(infoWindowObjects)
+                .sort(sortFields, new Sorter.SortOrder[]{Sorter.SortOrder.ASC, Sorter.SortOrder.DESC});
+
+        assertOrder(sortedObjects, 3, 2, 0, 1);
+    }
+
+    @Test
+    public void sortShouldPlaceObjectsWithMissingKeysLastAndKeepTheirOrder() throws JSONException {
+        ArrayList<InfoWindowObject> infoWindowObjects = new ArrayList<>();
+        infoWindowObjects.add(createInfoWindowObject(0, "population", "unknown"));
+        infoWindowObjects.add(createInfoWindowObject(1, "population", 10));
+        infoWindowObjects.add(createInfoWindowObject(2, "district", "Magu"));
+        infoWindowObjects.add(createInfoWindowObject(3, "population", 30));
+
+        SortFieldConfig[] sortFields = {new SortFieldConfig(SortFieldConfig.FieldType.NUMBER, "population")};
+
+        List<InfoWindowObject> sortedObjects = new Sorter(infoWindowObjects)
+                .sort(sortFields, new Sorter.SortOrder[]{Sorter.SortOrder.DESC});
+
+        assertOrder(sortedObjects, 3, 1, 0, 2);
+    }
+
+    @Test
+    public void sortShouldSortLargeInputsInParallel() throws JSONException {
+        int size = Sorter.PARALLEL_THRESHOLD * 2 + 7;
+        ArrayList<InfoWindowObject> infoWindowObjects = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            infoWindowObjects.add(createInfoWindowObject(i, "population", i % 1000));
+        }
+        Collections.shuffle(infoWindowObjects);
+
+        List<InfoWindowObject> sortedObjects = new Sorter(infoWindowObjects)
+                .sort(new SortFieldConfig(SortFieldConfig.FieldType.NUMBER, "population"));
+
+        Assert.assertEquals(size, sortedObjects.size());
+        for (int i = 1; i < size; i++) {
+            int previousPopulation = getProperties(sortedObjects.get(i - 1)).getInt("population");
+            int population = getProperties(sortedObjects.get(i)).getInt("population");
+            Assert.assertTrue(previousPopulation <= population);
+        }
+    }
+
+    @Test
+    public void extractSortOrdersShouldReadOrderOfStyleSortFields() throws JSONException, InvalidMapBoxStyleException {
+        JSONArray sortFields = new JSONArray();
+        sortFields.put(new JSONObject().put("type", "number").put("data_field", "population").put(Sorter.KEY_ORDER, "desc"));
+        sortFields.put(new JSONObject().put("type", "string").put("data_field", "district"));
+
+        JSONObject style = new JSONObject().put(MapBoxStyleHelper.KEY_METADATA, new JSONObject()
+                .put(MapBoxStyleHelper.KEY_KUJAKU, new JSONObject().put(KujakuConfig.KEY_SORT_FIELDS, sortFields)));
+
+        Sorter.SortOrder[] sortOrders = Sorter.extractSortOrders(new MapBoxStyleHelper(style));
+
+        Assert.assertArrayEquals(new Sorter.SortOrder[]{Sorter.SortOrder.DESC, Sorter.SortOrder.ASC}, sortOrders);
+    }
+
+    private InfoWindowObject createInfoWindowObject(int position, Object... properties) throws JSONException {
+        JSONObject propertiesJSON = new JSONObject();
+        propertiesJSON.put("position", position);
+        for (int i = 0; i < properties.length; i += 2) {
+            propertiesJSON.put((String) properties[i], properties[i + 1]);
+        }
+
+        JSONObject featureJSON = new JSONObject();
+        featureJSON.put("type", "Feature");
+        featureJSON.put("properties", propertiesJSON);
+
+        return new InfoWindowObject(position, featureJSON);
+    }
+
+    private JSONObject getProperties(InfoWindowObject infoWindowObject) throws JSONException {
+        return infoWindowObject.getJsonObject().getJSONObject("properties");
+    }
+
+    private void assertOrder(List<InfoWindowObject> sortedObjects, int... expectedPositions) throws JSONException {
+        Assert.assertEquals(expectedPositions.length, sortedObjects.size());
+        for (int i = 0; i < expectedPositions.length; i++) {
+            Assert.assertEquals(expectedPositions[i], getProperties(sortedObjects.get(i)).getInt("position"));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package io.ona.kujaku.spatial;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Point;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+import com.mapbox.turf.TurfConstants;
+import com.mapbox.turf.TurfMeasurement;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.ona.kujaku.BaseTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeatureSpatialIndexTest extends BaseTest {
+
+    @Test
+    public void queryShouldReturnSameFeaturesAsLinearScanWhenBulkLoaded() {
+        List<Feature> features = generateFeatures(0, 2000);
+        FeatureSpatialIndex featureSpatialIndex = new FeatureSpatialIndex();
+        featureSpatialIndex.addAll(features);
+
+        assertEquals(2000, featureSpatialIndex.size());
+        assertQueryMatchesLinearScan(featureSpatialIndex, features, LatLngBounds.from(20, 10, -5, -10));
+        assertQueryMatchesLinearScan(featureSpatialIndex, features, LatLngBounds.from(60, 60, -30, -30));
+    }
+
+    @Test
+    public void queryShouldReturnSameFeaturesAsLinearScanWhenAddedIncrementally() {
+        List<Feature> features = generateFeatures(0, 500);
+        FeatureSpatialIndex featureSpatialIndex = new FeatureSpatialIndex();
+        featureSpatialIndex.addAll(features);
+
+        List<Feature> newFeatures = generateFeatures(500, 1500);
+        for (Feature feature : newFeatures) {
+            assertTrue(featureSpatialIndex.add(feature));
+        }
+        features.addAll(newFeatures);
+
+        assertEquals(2000, featureSpatialIndex.size());
+        assertQueryMatchesLinearScan(featureSpatialIndex, features, LatLngBounds.from(45, 30, 15, 5));
+    }
+
+    @Test
+    public void removeShouldRemoveFeatureFromQueryResults() {
+        List<Feature> features = generateFeatures(0, 300);
+        FeatureSpatialIndex featureSpatialIndex = new FeatureSpatialIndex();
+        featureSpatialIndex.addAll(features);
+
+        for (int i = 0; i < 300; i += 2) {
+            assertTrue(featureSpatialIndex.remove(String.valueOf(i)));
+        }
+        assertFalse(featureSpatialIndex.remove("0"));
+
+        List<Feature> remainingFeatures = new ArrayList<>();
+        for (int i = 1; i < 300; i += 2) {
+            remainingFeatures.add(features.get(i));
+        }
+
+        assertEquals(150, featureSpatialIndex.size());
+        assertNull(featureSpatialIndex.get("0"));
+        assertQueryMatchesLinearScan(featureSpatialIndex, remainingFeatures, LatLngBounds.from(60, 60, -30, -30));
+    }
+
+    @Test
+    public void addShouldReplaceFeatureWithSameId() {
+        FeatureSpatialIndex featureSpatialIndex = new FeatureSpatialIndex();
+        featureSpatialIndex.add(Feature.fromGeometry(Point.fromLngLat(10, 10), null, "feature-id"));
+        featureSpatialIndex.add(Feature.fromGeometry(Point.fromLngLat(-10, -10), null, "feature-id"));
+
+        assertEquals(1, featureSpatialIndex.size());
+        assertEquals(0, featureSpatialIndex.query(LatLngBounds.from(11, 11, 9, 9)).size());
+        assertEquals(1, featureSpatialIndex.query(LatLngBounds.from(-9, -9, -11, -11)).size());
+    }
+
+    @Test
+    public void addShouldIgnoreFeaturesWithoutId() {
+        FeatureSpatialIndex featureSpatialIndex = new FeatureSpatialIndex();
+
+        assertFalse(featureSpatialIndex.add(Feature.fromGeometry(Point.fromLngLat(10, 10))));
+        assertEquals(0, featureSpatialIndex.size());
+    }
+
+    @Test
+    public void nearestShouldReturnNearestFeaturesWithinDistanceNearestFirst() {
+        List<Feature> features = generateFeatures(0, 2000);
+        FeatureSpatialIndex featureSpatialIndex = new FeatureSpatialIndex();
+        featureSpatialIndex.addAll(features);
+
+        double latitude = 15;
+        double longitude = 15;
+        double maxDistance = 500000;
+
+        final Map<String, Double> distances = new HashMap<>();
+        List<Feature> expectedFeatures = new ArrayList<>();
+        for (Feature feature : features) {
+            Point point = (Point) feature.geometry();
+            double distance = TurfMeasurement.distance(Point.fromLngLat(longitude, latitude), point, TurfConstants.UNIT_METERS);
+            distances.put(feature.id(), distance);
+            if (distance <= maxDistance) {
+                expectedFeatures.add(feature);
+            }
+        }
+
+        Collections.sort(expectedFeatures, new Comparator<Feature>() {
+            @Override
+            public int compare(Feature o1, Feature o2) {
+                return Double.compare(distances.get(o1.id()), distances.get(o2.id()));
+            }
+        });
+
+        List<Feature> nearestFeatures = featureSpatialIndex.nearest(latitude, longitude, maxDistance, 5);
+        assertEquals(5, nearestFeatures.size());
+        for (int i = 0; i < nearestFeatures.size(); i++) {
+            // The equirectangular approximation is within 1% of the great-circle distance at this range
+            assertEquals(distances.get(expectedFeatures.get(i).id()), distances.get(nearestFeatures.get(i).id()), maxDistance / 100);
+        }
+
+        List<Feature> allNearestFeatures = featureSpatialIndex.nearest(latitude, longitude, maxDistance, Integer.MAX_VALUE);
+        assertTrue(Math.abs(expectedFeatures.size() - allNearestFeatures.size()) <= expectedFeatures.size() / 50 + 1);
+    }
+
+    @Test
+    public void nearestShouldReturnEmptyListWhenNoFeatureIsWithinDistance() {
+        FeatureSpatialIndex featureSpatialIndex = new FeatureSpatialIndex();
+        featureSpatialIndex.add(Feature.fromGeometry(Point.fromLngLat(10, 10), null, "far"));
+        featureSpatialIndex.add(Feature.fromGeometry(Point.fromLngLat(0.0001, 0), null, "near"));
+
+        assertTrue(featureSpatialIndex.nearest(0, 0, 5, 3).isEmpty());
+
+        List<Feature> nearestFeatures = featureSpatialIndex.nearest(0, 0, 20, 3);
+        assertEquals(1, nearestFeatures.size());
+        assertEquals("near", nearestFeatures.get(0).id());
+    }
+
+    private void assertQueryMatchesLinearScan(FeatureSpatialIndex featureSpatialIndex, List<Feature> features, LatLngBounds bounds) {
+        Set<String> expectedIds = new HashSet<>();
+        for (Feature feature : features) {
+            Point point = (Point) feature.geometry();
+            if (bounds.contains(new com.mapbox.mapboxsdk.geometry.LatLng(point.latitude(), point.longitude()))) {
+                expectedIds.add(feature.id());
+            }
+        }
+
+        Set<String> actualIds = new HashSet<>();
+        for (Feature feature : featureSpatialIndex.query(bounds)) {
+            actualIds.add(feature.id());
+        }
+
+        assertEquals(expectedIds, actualIds);
+    }
+
+    private List<Feature> generateFeatures(int firstId, int count) {
+        List<Feature> features = new ArrayList<>();
+        for (int i = firstId; i < firstId + count; i++) {
+            features.add(Feature.fromGeometry(getRandomPoint(), null, String.valueOf(i)));
+        }
+
+        return features;
+    }
+}
@@ -0,0 +1,181 @@
+package io.ona.kujaku.spatial;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+import com.mapbox.mapboxsdk.geometry.LatLngBounds;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.ona.kujaku.BaseTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeoJsonTilerTest extends BaseTest {
+
+    @Test
+    public void getTileShouldOnlyReturnFeaturesOfTheTile() {
+        GeoJsonTiler tiler = new GeoJsonTiler();
+        tiler.update(generatePoints(-40, -40, 40, 40, 100));
+
+        // Zoom 1 tiles split the world at the equator & the prime meridian
+        int total = 0;
+        for (int x = 0; x < 2; x++) {
+            for (int y = 0; y < 2; y++) {
+                for (Feature feature : tiler.getTile(1, x, y).features()) {
+                    Point point = (Point) feature.geometry();
+                    assertEquals(x == 0, point.longitude() < 0);
+                    assertEquals(y == 0, point.latitude() > 0);
+                    total++;
+                }
+            }
+        }
+
+        assertEquals(100, total);
+        assertEquals(100, tiler.getTile(0, 0, 0).features().size());
+    }
+
+    @Test
+    public void getTileShouldClipLinesAndPolygonsToTheTileAndItsBuffer() {
+        List<Point> line = new ArrayList<>();
+        for (int i = 0; i <= 100; i++) {
+            line.add(Point.fromLngLat(-50 + i, 0.5 * Math.sin(i)));
+        }
+
+        List<Point> ring = new ArrayList<>();
+        ring.add(Point.fromLngLat(-40, -20));
+        ring.add(Point.fromLngLat(40, -20));
+        ring.add(Point.fromLngLat(40, 20));
+        ring.add(Point.fromLngLat(-40, 20));
+        ring.add(Point.fromLngLat(-40, -20));
+
+        List<Feature> features = new ArrayList<>();
+        features.add(Feature.fromGeometry(LineString.fromLngLats(line), null, "line"));
+        features.add(Feature.fromGeometry(Polygon.fromLngLats(Collections.singletonList(ring)), null, "polygon"));
+
+        GeoJsonTiler tiler = new GeoJsonTiler();
+        tiler.update(features);
+
+        // The zoom 1 tile east of the prime meridian & north of the equator, with a buffer of 64/4096 of the tile
+        double buffer = 180d * 64 / 4096;
+        FeatureCollection tile = tiler.getTile(1, 1, 0);
+        assertEquals(2, tile.features().size());
+
+        for (Feature feature : tile.features()) {
+            List<Point> points = feature.geometry() instanceof Polygon
+                    ? ((Polygon) feature.geometry()).coordinates().get(0)
+                    : getLinePoints(feature);
+
+            for (Point point : points) {
+                assertTrue(point.longitude() >= -buffer - 1e-9);
+                assertTrue(point.latitude() >= -buffer - 1e-6);
+            }
+
+            if (feature.geometry() instanceof Polygon) {
+                assertTrue(points.size() >= 4);
+                assertEquals(points.get(0), points.get(points.size() - 1));
+            }
+        }
+    }
+
+    @Test
+    public void getTileShouldSimplifyLinesAtLowZooms() {
+        List<Point> line = new ArrayList<>();
+        for (int i = 0; i <= 1000; i++) {
+            line.add(Point.fromLngLat(i * 0.001, 0.0001 * (i % 2)));
+        }
+
+        GeoJsonTiler tiler = new GeoJsonTiler();
+        tiler.update(Collections.singletonList(Feature.fromGeometry(LineString.fromLngLats(line), null, "line")));
+
+        int lowZoomVertices = getLinePoints(tiler.getTile(2, 2, 1).features().get(0)).size();
+        int x = (int) Math.floor(GeoJsonTiler.lngX(0.5) * (1 << 14));
+        int y = (int) Math.floor(GeoJsonTiler.latY(0) * (1 << 14));
+        int highZoomVertices = getLinePoints(tiler.getTile(14, x, y).features().get(0)).size();
+
+        assertEquals(2, lowZoomVertices);
+        assertTrue(highZoomVertices > lowZoomVertices);
+    }
+
+    @Test
+    public void updateShouldOnlyInvalidateTilesOfChangedFeatures() {
+        GeoJsonTiler tiler = new GeoJsonTiler();
+        List<Feature> features = generatePoints(-10, -10, 10, 10, 100);
+        List<LatLngBounds> changedRegions = tiler.update(features);
+        assertEquals(1, changedRegions.size());
+
+        for (int x = 0; x < 2; x++) {
+            for (int y = 0; y < 2; y++) {
+                tiler.getTile(1, x, y);
+            }
+        }
+        assertEquals(4, tiler.getCachedTileCount());
+
+        // Unchanged features do not invalidate anything
+        assertEquals(0, tiler.update(features).size());
+        assertEquals(4, tiler.getCachedTileCount());
+
+        // Move a feature within the north-east quarter
+        List<Feature> updatedFeatures = new ArrayList<>(features);
+        updatedFeatures.set(99, Feature.fromGeometry(Point.fromLngLat(5, 5), null, features.get(99).id()));
+
+        changedRegions = tiler.update(updatedFeatures);
+        assertEquals(2, changedRegions.size());
+        assertEquals(3, tiler.getCachedTileCount());
+
+        Set<String> ids = new HashSet<>();
+        for (Feature feature : tiler.getTile(1, 1, 0).features()) {
+            ids.add(feature.id());
+        }
+        assertTrue(ids.contains(features.get(99).id()));
+    }
+
+    @Test
+    public void getFeaturesForBoundsShouldReturnTheTileOfTheBounds() {
+        GeoJsonTiler tiler = new GeoJsonTiler();
+        tiler.update(generatePoints(-10, -10, 10, 10, 100));
+
+        FeatureCollection tile = tiler.getFeaturesForBounds(LatLngBounds.from(85, 180, 0, 0), 1);
+
+        assertEquals(tiler.getTile(1, 1, 0).features().size(), tile.features().size());
+    }
+
+    private List<Point> getLinePoints(Feature feature) {
+        if (feature.geometry() instanceof LineString) {
+            return ((LineString) feature.geometry()).coordinates();
+        }
+
+        List<Point> points = new ArrayList<>();
+        for (List<Point> line : ((MultiLineString) feature.geometry()).coordinates()) {
+            points.addAll(line);
+        }
+
+        return points;
+    }
+
+    /**
+     * Generate points at the centres of the cells of a regular grid covering the bounds
+     */
+    private List<Feature> generatePoints(double west, double south, double east, double north, int count) {
+        List<Feature> features = new ArrayList<>();
+        int side = (int) Math.ceil(Math.sqrt(count));
+
+        for (int i = 0; i < count; i++) {
+            double lng = west + (east - west) * (i % side + 0.5) / side;
+            double lat = south + (north - south) * (i / side + 0.5) / side;
+            features.add(Feature.fromGeometry(Point.fromLngLat(lng, lat), null, "feature-" + i));
+        }
+
+        return features;
+    }
+}
@@ -0,0 +1,20 @@
+package io.ona.kujaku.spatial;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class GeohashTest {
+
+    @Test
+    public void encodeShouldReturnKnownGeohashes() {
+        assertEquals("ezs42", Geohash.encode(42.605, -5.603, 5));
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+        assertEquals("kzf0", Geohash.encode(-1.2921, 36.8219, 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encodeShouldThrowExceptionWhenPrecisionIsInvalid() {
+        Geohash.encode(0, 0, 0);
+    }
+}
@@ -0,0 +1,166 @@
+package io.ona.kujaku.spatial;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.ona.kujaku.BaseTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LabelPointCalculatorTest extends BaseTest {
+
+    @Test
+    public void getLabelPointShouldPlaceLabelInsideConcavePolygon() {
+        // U shaped polygon whose bounding box centre is in the gap between its arms
+        Polygon polygon = createPolygon(0, 0, 10, 0, 10, 10, 7, 10, 7, 3, 3, 3, 3, 10, 0, 10, 0, 0);
+
+        Point labelPoint = LabelPointCalculator.getLabelPoint(polygon, LabelPointCalculator.DEFAULT_PRECISION);
+
+        assertTrue(isInU(labelPoint));
+    }
+
+    @Test
+    public void getLabelPointShouldPlaceLabelOutsideHoles() {
+        List<Point> outerRing = createRing(0, 0, 10, 0, 10, 10, 0, 10, 0, 0);
+        List<Point> hole = createRing(2, 2, 8, 2, 8, 8, 2, 8, 2, 2);
+        Polygon polygon = Polygon.fromLngLats(Arrays.asList(outerRing, hole));
+
+        Point labelPoint = LabelPointCalculator.getLabelPoint(polygon, LabelPointCalculator.DEFAULT_PRECISION);
+
+        boolean inHole = labelPoint.longitude() > 2 && labelPoint.longitude() < 8
+                && labelPoint.latitude() > 2 && labelPoint.latitude() < 8;
+        assertTrue(!inHole);
+        assertTrue(labelPoint.longitude() > 0 && labelPoint.longitude() < 10);
+        assertTrue(labelPoint.latitude() > 0 && labelPoint.latitude() < 10);
+    }
+
+    @Test
+    public void getLabelPointShouldPlaceLabelInLargestPolygonOfMultiPolygon() {
+        MultiPolygon multiPolygon = MultiPolygon.fromLngLats(Arrays.asList(
+                Collections.singletonList(createRing(0, 0, 1, 0, 1, 1, 0, 1, 0, 0)),
+                Collections.singletonList(createRing(20, 20, 30, 20, 30, 30, 20, 30, 20, 20))
+        ));
+
+        Point labelPoint = LabelPointCalculator.getLabelPoint(multiPolygon, LabelPointCalculator.DEFAULT_PRECISION);
+
+        assertEquals(25, labelPoint.longitude(), 0.1);
+        assertEquals(25, labelPoint.latitude(), 0.1);
+    }
+
+    @Test
+    public void getLabelPointShouldReturnPointOrBoundingBoxCentreForOtherGeometries() {
+        Point point = Point.fromLngLat(3, 4);
+        assertSame(point, LabelPointCalculator.getLabelPoint(point, LabelPointCalculator.DEFAULT_PRECISION));
+
+        LineString lineString = LineString.fromLngLats(createRing(0, 0, 4, 2));
+        Point labelPoint = LabelPointCalculator.getLabelPoint(lineString, LabelPointCalculator.DEFAULT_PRECISION);
+        assertEquals(2, labelPoint.longitude(), 0d);
+        assertEquals(1, labelPoint.latitude(), 0d);
+    }
+
+    @Test
+    public void calculateShouldOnlyCalculateChangedFeatures() {
+        LabelPointCalculator labelPointCalculator = new LabelPointCalculator();
+
+        List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            features.add(Feature.fromGeometry(createPolygon(i, 0, i + 1, 0, i + 1, 1, i, 1, i, 0), null, "feature-" + i));
+        }
+        features.add(Feature.fromGeometry(null, null, "no-geometry"));
+
+        List<Point> labelPoints = labelPointCalculator.calculate(features);
+        assertEquals(11, labelPoints.size());
+        assertEquals(10, labelPointCalculator.getCalculatedCount());
+        assertNull(labelPoints.get(10));
+
+        // Change the geometry of a single feature
+        features.set(3, Feature.fromGeometry(createPolygon(3, 0, 4, 0, 4, 2, 3, 2, 3, 0), null, "feature-3"));
+
+        List<Point> updatedLabelPoints = labelPointCalculator.calculate(features);
+        assertEquals(1, labelPointCalculator.getCalculatedCount());
+        assertEquals(10, labelPointCalculator.getReusedCount());
+        assertSame(labelPoints.get(0), updatedLabelPoints.get(0));
+        assertEquals(1, updatedLabelPoints.get(3).latitude(), 0.02);
+    }
+
+    @Test
+    public void calculateShouldCalculateLargeCollectionsInParallel() {
+        List<Feature> features = createUFeatures(LabelPointCalculator.PARALLEL_THRESHOLD * 2);
+
+        List<Point> labelPoints = new LabelPointCalculator().calculate(features);
+
+        assertEquals(features.size(), labelPoints.size());
+        for (int i = 0; i < labelPoints.size(); i++) {
+            Point labelPoint = labelPoints.get(i);
+            assertTrue(isInU(Point.fromLngLat(labelPoint.longitude() - i * 20, labelPoint.latitude())));
+        }
+    }
+
+    @Test
+    public void calculateShouldKeepInterruptWhenInterruptedDuringParallelCalculation() {
+        List<Feature> features = createUFeatures(LabelPointCalculator.PARALLEL_THRESHOLD * 4);
+
+        Thread.currentThread().interrupt();
+        try {
+            new LabelPointCalculator().calculate(features);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionWhenPrecisionIsNotPositive() {
+        new LabelPointCalculator(0);
+    }
+
+    private boolean isInU(Point point) {
+        double x = point.longitude();
+        double y = point.latitude();
+        boolean inBase = x > 0 && x < 10 && y > 0 && y < 3;
+        boolean inArm = y > 0 && y < 10 && ((x > 0 && x < 3) || (x > 7 && x < 10));
+
+        return inBase || inArm;
+    }
+
+    private List<Feature> createUFeatures(int count) {
+        List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double x = i * 20;
+            features.add(Feature.fromGeometry(createPolygon(x, 0, x + 10, 0, x + 10, 10, x + 7, 10, x + 7, 3
+                    , x + 3, 3, x + 3, 10, x, 10, x, 0)));
+        }
+
+        return features;
+    }
+
+    private Polygon createPolygon(double... coordinates) {
+        return Polygon.fromLngLats(Collections.singletonList(createRing(coordinates)));
+    }
+
+    private List<Point> createRing(double... coordinates) {
+        List<Point> ring = new ArrayList<>();
+        for (int i = 0; i + 1 < coordinates.length; i += 2) {
+            ring.add(Point.fromLngLat(coordinates[i], coordinates[i + 1]));
+        }
+
+        return ring;
+    }
+}
@@ -0,0 +1,81 @@
+package io.ona.kujaku.spatial;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Point;
+
+import org.junit.Test;
+
+import java.util.Set;
+
+import io.ona.kujaku.BaseTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionedFeatureStoreTest extends BaseTest {
+
+    @Test
+    public void commitShouldReturnOnlyChangedPartitions() {
+        PartitionedFeatureStore featureStore = new PartitionedFeatureStore(2);
+        featureStore.put(Feature.fromGeometry(Point.fromLngLat(36.8, -1.3), null, "nairobi"));
+        featureStore.put(Feature.fromGeometry(Point.fromLngLat(32.6, 0.3), null, "kampala"));
+
+        Set<String> changedPartitions = featureStore.commit();
+        assertEquals(2, changedPartitions.size());
+        assertEquals(2, featureStore.size());
+
+        featureStore.put(Feature.fromGeometry(Point.fromLngLat(36.81, -1.31), null, "nairobi-2"));
+        changedPartitions = featureStore.commit();
+
+        assertEquals(1, changedPartitions.size());
+        String partitionKey = changedPartitions.iterator().next();
+        assertEquals(Geohash.encode(-1.3, 36.8, 2), partitionKey);
+        assertEquals(2, featureStore.getPartitionFeatures(partitionKey).size());
+    }
+
+    @Test
+    public void commitShouldCoalesceChangesToTheSameFeature() {
+        PartitionedFeatureStore featureStore = new PartitionedFeatureStore(3);
+        featureStore.put(Feature.fromGeometry(Point.fromLngLat(36.8, -1.3), null, "feature-1"));
+        featureStore.put(Feature.fromGeometry(Point.fromLngLat(36.8, -1.3), null, "feature-2"));
+        featureStore.remove("feature-2");
+        featureStore.put(Feature.fromGeometry(Point.fromLngLat(32.6, 0.3), null, "feature-1"));
+
+        Set<String> changedPartitions = featureStore.commit();
+
+        assertEquals(1, changedPartitions.size());
+        assertEquals(1, featureStore.size());
+        assertNull(featureStore.get("feature-2"));
+        assertEquals(Geohash.encode(0.3, 32.6, 3), changedPartitions.iterator().next());
+        assertFalse(featureStore.hasPendingChanges());
+    }
+
+    @Test
+    public void commitShouldMarkBothPartitionsAsChangedWhenFeatureMoves() {
+        PartitionedFeatureStore featureStore = new PartitionedFeatureStore(3);
+        featureStore.put(Feature.fromGeometry(Point.fromLngLat(36.8, -1.3), null, "feature-1"));
+        featureStore.commit();
+
+        featureStore.put(Feature.fromGeometry(Point.fromLngLat(32.6, 0.3), null, "feature-1"));
+        assertTrue(featureStore.hasPendingChanges());
+        Set<String> changedPartitions = featureStore.commit();
+
+        assertEquals(2, changedPartitions.size());
+        assertEquals(0, featureStore.getPartitionFeatures(Geohash.encode(-1.3, 36.8, 3)).size());
+        assertEquals(1, featureStore.getPartitionFeatures(Geohash.encode(0.3, 32.6, 3)).size());
+    }
+
+    @Test
+    public void commitShouldUseSinglePartitionWhenPrecisionIsZero() {
+        PartitionedFeatureStore featureStore = new PartitionedFeatureStore(0);
+        featureStore.put(Feature.fromGeometry(Point.fromLngLat(36.8, -1.3), null, "nairobi"));
+        featureStore.put(Feature.fromGeometry(Point.fromLngLat(32.6, 0.3), null, "kampala"));
+
+        Set<String> changedPartitions = featureStore.commit();
+
+        assertEquals(1, changedPartitions.size());
+        assertEquals(2, featureStore.getPartitionFeatures(PartitionedFeatureStore.SINGLE_PARTITION).size());
+    }
+}
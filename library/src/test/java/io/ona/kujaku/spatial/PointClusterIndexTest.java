@@ -0,0 +1,283 @@
+package io.ona.kujaku.spatial;
+
+import com.google.gson.JsonObject;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.Point;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import io.ona.kujaku.BaseTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PointClusterIndexTest extends BaseTest {
+
+    private static final String STATUS = "status";
+
+    @Test
+    public void getClustersShouldReturnEveryPointOnceAtEveryZoom() {
+        List<Feature> features = generateFeatures(0, 5000);
+        PointClusterIndex clusterIndex = new PointClusterIndex();
+        clusterIndex.load(features);
+
+        assertEquals(5000, clusterIndex.getPointCount());
+        for (int zoom = 0; zoom <= ClusterOptions.DEFAULT_MAX_ZOOM + 1; zoom++) {
+            assertEquals(5000, getPointCount(clusterIndex.getClusters(-180, -85, 180, 85, zoom)));
+        }
+
+        // Clusters get smaller when zooming in
+        assertTrue(clusterIndex.getClusters(-180, -85, 180, 85, 0).size() < clusterIndex.getClusters(-180, -85, 180, 85, 10).size());
+        assertEquals(5000, clusterIndex.getClusters(-180, -85, 180, 85, 17).size());
+    }
+
+    @Test
+    public void getClustersShouldOnlyReturnClustersInBoundingBox() {
+        List<Feature> features = new ArrayList<>();
+        features.add(createFeature("1", 36.8, -1.3, "visited"));
+        features.add(createFeature("2", 36.8001, -1.3001, "visited"));
+        features.add(createFeature("3", -74, 40.7, "visited"));
+
+        PointClusterIndex clusterIndex = new PointClusterIndex();
+        clusterIndex.load(features);
+
+        List<Feature> clusters = clusterIndex.getClusters(30, -5, 40, 5, 10);
+        assertEquals(1, clusters.size());
+        assertTrue(clusters.get(0).getBooleanProperty(PointClusterIndex.PROPERTY_CLUSTER));
+        assertEquals(2, clusters.get(0).getNumberProperty(PointClusterIndex.PROPERTY_POINT_COUNT).intValue());
+
+        Point center = (Point) clusters.get(0).geometry();
+        assertEquals(36.80005, center.longitude(), 1e-6);
+        assertEquals(-1.30005, center.latitude(), 1e-6);
+
+        assertEquals(2, clusterIndex.getClusters(30, -5, 40, 5, 17).size());
+        assertSame(features.get(2), clusterIndex.getClusters(-80, 35, -70, 45, 10).get(0));
+    }
+
+    @Test
+    public void getClustersShouldHandleBoundingBoxCrossingAntimeridian() {
+        PointClusterIndex clusterIndex = new PointClusterIndex();
+        clusterIndex.load(Arrays.asList(createFeature("1", 179.5, 0, null), createFeature("2", -179.5, 0, null)
+                , createFeature("3", 0, 0, null)));
+
+        assertEquals(2, clusterIndex.getClusters(179, -10, -179, 10, 17).size());
+        assertEquals(3, clusterIndex.getClusters(-200, -10, 200, 10, 17).size());
+    }
+
+    @Test
+    public void loadShouldIgnoreFeaturesWhichAreNotPoints() {
+        PointClusterIndex clusterIndex = new PointClusterIndex();
+        clusterIndex.load(Arrays.asList(createFeature("1", 36.8, -1.3, null)
+                , Feature.fromGeometry(LineString.fromLngLats(Arrays.asList(Point.fromLngLat(0, 0), Point.fromLngLat(1, 1))))));
+
+        assertEquals(1, clusterIndex.getPointCount());
+        assertFalse(clusterIndex.add(Feature.fromGeometry(LineString.fromLngLats(Arrays.asList(Point.fromLngLat(0, 0), Point.fromLngLat(1, 1))))));
+    }
+
+    @Test
+    public void getChildrenAndGetLeavesShouldReturnPointsOfCluster() {
+        List<Feature> features = generateFeatures(0, 2000);
+        PointClusterIndex clusterIndex = new PointClusterIndex();
+        clusterIndex.load(features);
+
+        Feature cluster = getLargestCluster(clusterIndex.getClusters(-180, -85, 180, 85, 5));
+        int clusterId = cluster.getNumberProperty(PointClusterIndex.PROPERTY_CLUSTER_ID).intValue();
+        int pointCount = cluster.getNumberProperty(PointClusterIndex.PROPERTY_POINT_COUNT).intValue();
+
+        List<Feature> children = clusterIndex.getChildren(clusterId);
+        assertTrue(children.size() > 1);
+        assertEquals(pointCount, getPointCount(children));
+
+        // The children are drawn at the expansion zoom
+        int expansionZoom = clusterIndex.getClusterExpansionZoom(clusterId);
+        assertTrue(expansionZoom > 5);
+        Set<String> childIds = getIds(clusterIndex.getClusters(-180, -85, 180, 85, expansionZoom));
+        assertTrue(childIds.containsAll(getIds(children)));
+
+        List<Feature> leaves = clusterIndex.getLeaves(clusterId, Integer.MAX_VALUE, 0);
+        assertEquals(pointCount, leaves.size());
+        assertEquals(pointCount, new HashSet<>(leaves).size());
+
+        List<Feature> page = clusterIndex.getLeaves(clusterId, 10, 5);
+        assertEquals(10, page.size());
+        assertSame(leaves.get(5), page.get(0));
+        assertSame(leaves.get(14), page.get(9));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getChildrenShouldThrowExceptionWhenClusterDoesNotExist() {
+        PointClusterIndex clusterIndex = new PointClusterIndex();
+        clusterIndex.load(generateFeatures(0, 10));
+
+        clusterIndex.getChildren(1000);
+    }
+
+    @Test
+    public void clustersShouldAggregatePropertiesOfTheirPoints() {
+        List<Feature> features = generateFeatures(0, 3000);
+        CountByPropertyAggregator aggregator = new CountByPropertyAggregator(STATUS);
+        PointClusterIndex clusterIndex = new PointClusterIndex(new ClusterOptions().withPropertyAggregator(aggregator));
+        clusterIndex.load(features);
+
+        int visitedCount = 0;
+        int notVisitedCount = 0;
+        for (Feature feature : clusterIndex.getClusters(-180, -85, 180, 85, 3)) {
+            if (feature.hasProperty(PointClusterIndex.PROPERTY_CLUSTER)) {
+                int visited = getCount(feature, aggregator.getCountPropertyName("visited"));
+                int notVisited = getCount(feature, aggregator.getCountPropertyName("not-visited"));
+                assertEquals(feature.getNumberProperty(PointClusterIndex.PROPERTY_POINT_COUNT).intValue(), visited + notVisited);
+
+                visitedCount += visited;
+                notVisitedCount += notVisited;
+            } else if ("visited".equals(feature.getStringProperty(STATUS))) {
+                visitedCount++;
+            } else {
+                notVisitedCount++;
+            }
+        }
+
+        assertEquals(1000, visitedCount);
+        assertEquals(2000, notVisitedCount);
+    }
+
+    @Test
+    public void addShouldInsertPointsIntoExistingClusters() {
+        CountByPropertyAggregator aggregator = new CountByPropertyAggregator(STATUS);
+        PointClusterIndex clusterIndex = new PointClusterIndex(new ClusterOptions().withPropertyAggregator(aggregator));
+        clusterIndex.load(generateFeatures(0, 3000));
+
+        List<Feature> newFeatures = generateFeatures(3000, 1000);
+        for (Feature feature : newFeatures) {
+            assertTrue(clusterIndex.add(feature));
+        }
+
+        assertEquals(4000, clusterIndex.getPointCount());
+        for (int zoom = 0; zoom <= ClusterOptions.DEFAULT_MAX_ZOOM + 1; zoom++) {
+            List<Feature> clusters = clusterIndex.getClusters(-180, -85, 180, 85, zoom);
+            assertEquals(4000, getPointCount(clusters));
+
+            Set<Feature> leaves = new HashSet<>();
+            for (Feature feature : clusters) {
+                if (feature.hasProperty(PointClusterIndex.PROPERTY_CLUSTER)) {
+                    leaves.addAll(clusterIndex.getLeaves(feature.getNumberProperty(PointClusterIndex.PROPERTY_CLUSTER_ID).intValue()
+                            , Integer.MAX_VALUE, 0));
+                } else {
+                    leaves.add(feature);
+                }
+            }
+            assertEquals(4000, leaves.size());
+        }
+
+        int visitedCount = 0;
+        for (Feature feature : clusterIndex.getClusters(-180, -85, 180, 85, 0)) {
+            visitedCount += feature.hasProperty(PointClusterIndex.PROPERTY_CLUSTER)
+                    ? getCount(feature, aggregator.getCountPropertyName("visited"))
+                    : "visited".equals(feature.getStringProperty(STATUS)) ? 1 : 0;
+        }
+        assertEquals(1334, visitedCount);
+
+        assertTrue(clusterIndex.isRebuildRecommended());
+    }
+
+    @Test
+    public void addShouldKeepIsolatedPointsUnclustered() {
+        PointClusterIndex clusterIndex = new PointClusterIndex();
+        clusterIndex.add(createFeature("1", 36.8, -1.3, null));
+
+        assertEquals(1, clusterIndex.getPointCount());
+        for (int zoom = 0; zoom <= ClusterOptions.DEFAULT_MAX_ZOOM + 1; zoom++) {
+            List<Feature> clusters = clusterIndex.getClusters(-180, -85, 180, 85, zoom);
+            assertEquals(1, clusters.size());
+            assertEquals("1", clusters.get(0).id());
+        }
+    }
+
+    @Test
+    public void abbreviateShouldAbbreviateThousands() {
+        assertEquals("999", PointClusterIndex.abbreviate(999));
+        assertEquals("1.5k", PointClusterIndex.abbreviate(1500));
+        assertEquals("12k", PointClusterIndex.abbreviate(12345));
+    }
+
+    @Test
+    public void projectionShouldRoundTrip() {
+        assertEquals(0.5, PointClusterIndex.lngX(0), 0);
+        assertEquals(0.5, PointClusterIndex.latY(0), 1e-12);
+        assertEquals(-12.5, PointClusterIndex.yLat(PointClusterIndex.latY(-12.5)), 1e-9);
+        assertEquals(36.8, PointClusterIndex.xLng(PointClusterIndex.lngX(36.8)), 1e-9);
+    }
+
+    private int getPointCount(List<Feature> features) {
+        int pointCount = 0;
+        for (Feature feature : features) {
+            pointCount += feature.hasProperty(PointClusterIndex.PROPERTY_POINT_COUNT)
+                    ? feature.getNumberProperty(PointClusterIndex.PROPERTY_POINT_COUNT).intValue() : 1;
+        }
+
+        return pointCount;
+    }
+
+    private int getCount(Feature feature, String propertyName) {
+        return feature.hasProperty(propertyName) ? feature.getNumberProperty(propertyName).intValue() : 0;
+    }
+
+    private Feature getLargestCluster(List<Feature> features) {
+        Feature largestCluster = null;
+        for (Feature feature : features) {
+            if (feature.hasProperty(PointClusterIndex.PROPERTY_CLUSTER) && (largestCluster == null
+                    || feature.getNumberProperty(PointClusterIndex.PROPERTY_POINT_COUNT).intValue()
+                    > largestCluster.getNumberProperty(PointClusterIndex.PROPERTY_POINT_COUNT).intValue())) {
+                largestCluster = feature;
+            }
+        }
+
+        return largestCluster;
+    }
+
+    private Set<String> getIds(List<Feature> features) {
+        Set<String> ids = new HashSet<>();
+        for (Feature feature : features) {
+            ids.add(feature.hasProperty(PointClusterIndex.PROPERTY_CLUSTER)
+                    ? "cluster-" + feature.getNumberProperty(PointClusterIndex.PROPERTY_CLUSTER_ID) : feature.id());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Generate points around Nairobi, one in three is visited
+     *
+     * @param startId
+     * @param count
+     * @return
+     */
+    private List<Feature> generateFeatures(int startId, int count) {
+        Random random = new Random(startId);
+        List<Feature> features = new ArrayList<>(count);
+        for (int i = startId; i < startId + count; i++) {
+            features.add(createFeature(String.valueOf(i), 36 + random.nextDouble() * 2, -2 + random.nextDouble() * 2
+                    , i % 3 == 0 ? "visited" : "not-visited"));
+        }
+
+        return features;
+    }
+
+    private Feature createFeature(String id, double lng, double lat, String status) {
+        JsonObject properties = new JsonObject();
+        if (status != null) {
+            properties.addProperty(STATUS, status);
+        }
+
+        return Feature.fromGeometry(Point.fromLngLat(lng, lat), properties, id);
+    }
+}
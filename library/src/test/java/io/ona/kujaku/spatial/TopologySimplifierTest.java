@@ -0,0 +1,202 @@
+package io.ona.kujaku.spatial;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import io.ona.kujaku.BaseTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TopologySimplifierTest extends BaseTest {
+
+    private static final int GRID_SIZE = 4;
+    private static final int EDGE_VERTICES = 200;
+
+    @Test
+    public void simplifyShouldKeepSharedBordersWithoutGaps() {
+        TopologySimplifier simplifier = createSimplifier();
+        List<FeatureCollection> levels = simplifier.simplify(FeatureCollection.fromFeatures(generateGrid(EDGE_VERTICES)));
+
+        assertEquals(3, levels.size());
+
+        int previousVertexCount = 0;
+        for (FeatureCollection level : levels) {
+            Map<String, Integer> segmentCounts = new HashMap<>();
+            int vertexCount = 0;
+
+            for (Feature feature : level.features()) {
+                List<Point> ring = ((Polygon) feature.geometry()).coordinates().get(0);
+                vertexCount += ring.size();
+
+                assertTrue(ring.size() >= 4);
+                assertEquals(ring.get(0), ring.get(ring.size() - 1));
+
+                for (int i = 0; i + 1 < ring.size(); i++) {
+                    String segment = getSegmentKey(ring.get(i), ring.get(i + 1));
+                    Integer count = segmentCounts.get(segment);
+                    segmentCounts.put(segment, count == null ? 1 : count + 1);
+                }
+            }
+
+            // Every segment inside the grid is the border of exactly two cells
+            for (Map.Entry<String, Integer> entry : segmentCounts.entrySet()) {
+                assertTrue(entry.getValue() <= 2);
+                if (entry.getValue() == 1) {
+                    assertTrue(isOnGridBoundary(entry.getKey()));
+                }
+            }
+
+            // Levels are ordered from the lowest zoom, the coarsest levels keep the fewest vertices
+            assertTrue(vertexCount < GRID_SIZE * GRID_SIZE * 4 * EDGE_VERTICES);
+            assertTrue(vertexCount >= previousVertexCount);
+            previousVertexCount = vertexCount;
+        }
+    }
+
+    @Test
+    public void simplifyShouldOnlySimplifyChangedArcs() {
+        TopologySimplifier simplifier = createSimplifier();
+        List<Feature> features = generateGrid(EDGE_VERTICES);
+
+        simplifier.simplify(FeatureCollection.fromFeatures(features));
+        int arcCount = simplifier.getSimplifiedArcCount();
+        assertTrue(arcCount > 0);
+        assertEquals(0, simplifier.getReusedArcCount());
+
+        simplifier.simplify(FeatureCollection.fromFeatures(features));
+        assertEquals(0, simplifier.getSimplifiedArcCount());
+        assertEquals(arcCount, simplifier.getReusedArcCount());
+
+        // Change a single cell inside the grid: only its own borders are simplified again
+        List<Feature> updatedFeatures = new ArrayList<>(features);
+        updatedFeatures.set(GRID_SIZE + 1, generateCell(1, 1, EDGE_VERTICES + 10));
+
+        simplifier.simplify(FeatureCollection.fromFeatures(updatedFeatures));
+        assertTrue(simplifier.getSimplifiedArcCount() > 0);
+        assertTrue(simplifier.getSimplifiedArcCount() <= 4);
+        assertTrue(simplifier.getReusedArcCount() > 0);
+    }
+
+    @Test
+    public void simplifyShouldKeepPointsAndSimplifyLines() {
+        TopologySimplifier simplifier = createSimplifier();
+
+        List<Point> line = new ArrayList<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            line.add(Point.fromLngLat(i * 0.001, random.nextDouble() * 0.00001));
+        }
+
+        Feature pointFeature = Feature.fromGeometry(Point.fromLngLat(1, 1), null, "point");
+        Feature lineFeature = Feature.fromGeometry(LineString.fromLngLats(line), null, "line");
+
+        List<FeatureCollection> levels = simplifier.simplify(FeatureCollection.fromFeatures(Arrays.asList(pointFeature, lineFeature)));
+
+        for (FeatureCollection level : levels) {
+            assertEquals(2, level.features().size());
+            assertEquals(pointFeature.geometry(), level.features().get(0).geometry());
+
+            List<Point> simplifiedLine = ((LineString) level.features().get(1).geometry()).coordinates();
+            assertTrue(simplifiedLine.size() < line.size());
+            assertEquals(line.get(0), simplifiedLine.get(0));
+            assertEquals(line.get(line.size() - 1), simplifiedLine.get(simplifiedLine.size() - 1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionWhenToleranceIsNotPositive() {
+        new TopologySimplifier(0.1, 0);
+    }
+
+    private TopologySimplifier createSimplifier() {
+        return new TopologySimplifier(TopologySimplifier.getTolerance(4, 1)
+                , TopologySimplifier.getTolerance(8, 1)
+                , TopologySimplifier.getTolerance(12, 1));
+    }
+
+    private boolean isOnGridBoundary(String segmentKey) {
+        for (String point : segmentKey.split("\\|")) {
+            String[] coordinates = point.split(" ");
+            double x = Double.parseDouble(coordinates[0]);
+            double y = Double.parseDouble(coordinates[1]);
+
+            // The jagged edges stray at most 0.01 degrees from the grid lines
+            if (Math.min(Math.min(x, GRID_SIZE - x), Math.min(y, GRID_SIZE - y)) > 0.01) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private String getSegmentKey(Point a, Point b) {
+        String first = a.longitude() + " " + a.latitude();
+        String second = b.longitude() + " " + b.latitude();
+        return first.compareTo(second) < 0 ? first + "|" + second : second + "|" + first;
+    }
+
+    private List<Feature> generateGrid(int edgeVertices) {
+        List<Feature> features = new ArrayList<>();
+        for (int j = 0; j < GRID_SIZE; j++) {
+            for (int i = 0; i < GRID_SIZE; i++) {
+                features.add(generateCell(i, j, edgeVertices));
+            }
+        }
+
+        return features;
+    }
+
+    /**
+     * Generate the cell [i, i + 1] x [j, j + 1] with jagged edges. The edges are generated from their
+     * position so that neighbouring cells share the same border
+     *
+     * @param i
+     * @param j
+     * @param edgeVertices
+     * @return
+     */
+    private Feature generateCell(int i, int j, int edgeVertices) {
+        List<Point> bottom = generateEdge(i, j, i + 1, j, edgeVertices, ("h" + i + "," + j).hashCode());
+        List<Point> right = generateEdge(i + 1, j, i + 1, j + 1, edgeVertices, ("v" + (i + 1) + "," + j).hashCode());
+        List<Point> top = generateEdge(i, j + 1, i + 1, j + 1, edgeVertices, ("h" + i + "," + (j + 1)).hashCode());
+        List<Point> left = generateEdge(i, j, i, j + 1, edgeVertices, ("v" + i + "," + j).hashCode());
+        Collections.reverse(top);
+        Collections.reverse(left);
+
+        List<Point> ring = new ArrayList<>(bottom);
+        ring.addAll(right.subList(1, right.size()));
+        ring.addAll(top.subList(1, top.size()));
+        ring.addAll(left.subList(1, left.size()));
+
+        return Feature.fromGeometry(Polygon.fromLngLats(Collections.singletonList(ring)), null, i + "," + j);
+    }
+
+    private List<Point> generateEdge(double x0, double y0, double x1, double y1, int vertices, long seed) {
+        Random random = new Random(seed);
+        List<Point> edge = new ArrayList<>();
+        boolean horizontal = y0 == y1;
+
+        for (int k = 0; k <= vertices; k++) {
+            double t = (double) k / vertices;
+            double noise = k == 0 || k == vertices ? 0 : (random.nextDouble() - 0.5) * 0.02;
+            edge.add(Point.fromLngLat(x0 + (x1 - x0) * t + (horizontal ? 0 : noise)
+                    , y0 + (y1 - y0) * t + (horizontal ? noise : 0)));
+        }
+
+        return edge;
+    }
+}
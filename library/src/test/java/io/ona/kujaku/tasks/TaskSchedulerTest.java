@@ -0,0 +1,168 @@
+package io.ona.kujaku.tasks;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import io.ona.kujaku.BaseTest;
+import io.ona.kujaku.callables.AsyncTaskCallable;
+import io.ona.kujaku.listeners.OnFinishedListener;
+
+public class TaskSchedulerTest extends BaseTest {
+
+    private TaskScheduler taskScheduler;
+
+    private List<Object> results;
+    private List<Exception> errors;
+
+    @Before
+    public void setUp() {
+        taskScheduler = new TaskScheduler(1, new Handler(Looper.getMainLooper()));
+        results = Collections.synchronizedList(new ArrayList<>());
+        errors = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    public void submitShouldDeliverResultOnMainThread() throws InterruptedException {
+        taskScheduler.submit(createCallable("result"), createListener());
+
+        waitForDeliveries(1);
+
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("result", results.get(0));
+        Assert.assertEquals(1, taskScheduler.getMetrics().getCompletedCount());
+    }
+
+    @Test
+    public void submitShouldDeliverErrorWhenCallableThrowsException() throws InterruptedException {
+        taskScheduler.submit(new AsyncTaskCallable() {
+            @Override
+            public Object[] call() throws Exception {
+                throw new IllegalStateException("failed");
+            }
+        }, createListener());
+
+        waitForDeliveries(1);
+
+        Assert.assertEquals(0, results.size());
+        Assert.assertTrue(errors.get(0) instanceof IllegalStateException);
+        Assert.assertEquals(1, taskScheduler.getMetrics().getFailedCount());
+    }
+
+    @Test
+    public void submitShouldOnlyDeliverLatestResultWhenTasksHaveSameKey() throws InterruptedException {
+        CountDownLatch blockingLatch = blockWorker();
+
+        taskScheduler.submit("layer", TaskScheduler.Priority.USER_VISIBLE, createCallable(1), createListener());
+        taskScheduler.submit("layer", TaskScheduler.Priority.USER_VISIBLE, createCallable(2), createListener());
+        taskScheduler.submit("layer", TaskScheduler.Priority.USER_VISIBLE, createCallable(3), createListener());
+
+        Assert.assertEquals(1, taskScheduler.getQueueDepth());
+
+        blockingLatch.countDown();
+        waitForDeliveries(2);
+
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(3, results.get(1));
+
+        TaskScheduler.Metrics metrics = taskScheduler.getMetrics();
+        Assert.assertEquals(4, metrics.getSubmittedCount());
+        Assert.assertEquals(2, metrics.getSupersededCount());
+        Assert.assertEquals(2, metrics.getCompletedCount());
+    }
+
+    @Test
+    public void submitShouldRunUserVisibleTasksBeforeBackgroundTasks() throws InterruptedException {
+        CountDownLatch blockingLatch = blockWorker();
+
+        taskScheduler.submit(null, TaskScheduler.Priority.BACKGROUND, createCallable("prefetch"), createListener());
+        taskScheduler.submit(null, TaskScheduler.Priority.USER_VISIBLE, createCallable("layer"), createListener());
+
+        blockingLatch.countDown();
+        waitForDeliveries(3);
+
+        Assert.assertEquals("layer", results.get(1));
+        Assert.assertEquals("prefetch", results.get(2));
+    }
+
+    @Test
+    public void cancelShouldDropTaskWithoutNotifyingListener() throws InterruptedException {
+        CountDownLatch blockingLatch = blockWorker();
+
+        taskScheduler.submit("layer", TaskScheduler.Priority.USER_VISIBLE, createCallable("layer"), createListener());
+        taskScheduler.cancel("layer");
+
+        Assert.assertEquals(0, taskScheduler.getQueueDepth());
+
+        blockingLatch.countDown();
+        waitForDeliveries(1);
+        taskScheduler.submit(createCallable("next"), createListener());
+        waitForDeliveries(2);
+
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals("next", results.get(1));
+        Assert.assertEquals(0, errors.size());
+    }
+
+    /**
+     * Occupies the single worker thread until the returned latch is counted down
+     *
+     * @return
+     */
+    private CountDownLatch blockWorker() throws InterruptedException {
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        final CountDownLatch blockingLatch = new CountDownLatch(1);
+
+        taskScheduler.submit(new AsyncTaskCallable() {
+            @Override
+            public Object[] call() throws Exception {
+                startedLatch.countDown();
+                blockingLatch.await();
+                return new Object[]{"blocking"};
+            }
+        }, createListener());
+
+        startedLatch.await();
+        return blockingLatch;
+    }
+
+    private AsyncTaskCallable createCallable(final Object result) {
+        return new AsyncTaskCallable() {
+            @Override
+            public Object[] call() throws Exception {
+                return new Object[]{result};
+            }
+        };
+    }
+
+    private OnFinishedListener createListener() {
+        return new OnFinishedListener() {
+            @Override
+            public void onSuccess(Object[] objects) {
+                results.add(objects[0]);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                errors.add(e);
+            }
+        };
+    }
+
+    private void waitForDeliveries(int count) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (results.size() + errors.size() < count && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.ona.kujaku.test;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal HTTP/1.1 server listening on the loopback interface which answers each request with the
+ * {@link Response} returned by its {@link Handler}. Each connection serves a single request.
+ */
+public class StubHttpServer implements Closeable {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private final ServerSocket serverSocket;
+    private final Handler handler;
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+
+    public StubHttpServer(Handler handler) throws IOException {
+        this.handler = handler;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        serve(serverSocket.accept());
+                    } catch (IOException e) {
+                        // The server socket was closed
+                    }
+                }
+            }
+        }, "stub-http-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public String getUrl(String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    public List<Request> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void serve(Socket socket) throws IOException {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), ISO_8859_1));
+            String[] requestLine = reader.readLine().split(" ");
+
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                int separator = line.indexOf(':');
+                headers.put(line.substring(0, separator).trim().toLowerCase(), line.substring(separator + 1).trim());
+            }
+
+            Request request = new Request(requestLine[0], requestLine[1], headers);
+            requests.add(request);
+
+            Response response = handler.handle(request);
+            StringBuilder head = new StringBuilder("HTTP/1.1 ").append(response.status).append(" Stub\r\n");
+            for (Map.Entry<String, String> header : response.headers.entrySet()) {
+                head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+            head.append("Content-Length: ").append(response.body.length).append("\r\n");
+            head.append("Connection: close\r\n\r\n");
+
+            OutputStream out = socket.getOutputStream();
+            out.write(head.toString().getBytes(ISO_8859_1));
+            out.write(response.body);
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    public interface Handler {
+        Response handle(Request request);
+    }
+
+    public static class Request {
+
+        private final String method;
+        private final String path;
+        private final Map<String, String> headers;
+
+        private Request(String method, String path, Map<String, String> headers) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @param name Case insensitive name of the header
+         * @return
+         */
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase());
+        }
+    }
+
+    public static class Response {
+
+        private final int status;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private final byte[] body;
+
+        public Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public Response setHeader(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+    }
+}
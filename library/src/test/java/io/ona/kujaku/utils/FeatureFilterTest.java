@@ -130,4 +130,126 @@ public class FeatureFilterTest extends BaseTest {
         Assert.assertEquals(4, (int) actualFeatures.get(1).getNumberProperty("position"));
         Assert.assertEquals(5, (int) actualFeatures.get(2).getNumberProperty("position"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void filterShouldCompareNumbersAsTypedValues() {
+        ArrayList<Feature> featuresList = new ArrayList<>();
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("floors", 9)
+                , new GeoJSONFeature.Property("position", 0)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("floors", 10)
+                , new GeoJSONFeature.Property("position", 1)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("floors", "12")
+                , new GeoJSONFeature.Property("position", 2)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("floors", "unknown")
+                , new GeoJSONFeature.Property("position", 3)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("position", 4)));
+
+        List<Feature> actualFeatures = new FeatureFilter.Builder(FeatureCollection.fromFeatures(featuresList))
+                .whereGte("floors", 10)
+                .build()
+                .filter()
+                .features();
+
+        Assert.assertEquals(2, actualFeatures.size());
+        Assert.assertEquals(1, (int) actualFeatures.get(0).getNumberProperty("position"));
+        Assert.assertEquals(2, (int) actualFeatures.get(1).getNumberProperty("position"));
+
+        actualFeatures = new FeatureFilter.Builder(FeatureCollection.fromFeatures(featuresList))
+                .whereBetween("floors", 9, 10)
+                .build()
+                .filter()
+                .features();
+
+        Assert.assertEquals(2, actualFeatures.size());
+        Assert.assertEquals(0, (int) actualFeatures.get(0).getNumberProperty("position"));
+        Assert.assertEquals(1, (int) actualFeatures.get(1).getNumberProperty("position"));
+    }
+
+    @Test
+    public void filterShouldFilterByDateRange() {
+        ArrayList<Feature> featuresList = new ArrayList<>();
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("visit-date", "2019-01-31 23:59:59")
+                , new GeoJSONFeature.Property("position", 0)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("visit-date", "2019-02-01 00:00:00")
+                , new GeoJSONFeature.Property("position", 1)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("visit-date", "2019-02-14 08:30:00")
+                , new GeoJSONFeature.Property("position", 2)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("visit-date", "14/02/2019")
+                , new GeoJSONFeature.Property("position", 3)));
+
+        List<Feature> actualFeatures = new FeatureFilter.Builder(FeatureCollection.fromFeatures(featuresList))
+                .whereDateBetween("visit-date", "yyyy-MM-dd HH:mm:ss", "2019-02-01 00:00:00", null)
+                .build()
+                .filter()
+                .features();
+
+        Assert.assertEquals(2, actualFeatures.size());
+        Assert.assertEquals(1, (int) actualFeatures.get(0).getNumberProperty("position"));
+        Assert.assertEquals(2, (int) actualFeatures.get(1).getNumberProperty("position"));
+    }
+
+    @Test
+    public void filterShouldSupportAnyOfAndNotGroups() {
+        ArrayList<Feature> featuresList = new ArrayList<>();
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("task-status", "positive")
+                , new GeoJSONFeature.Property("floors", 1)
+                , new GeoJSONFeature.Property("position", 0)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("task-status", "negative")
+                , new GeoJSONFeature.Property("floors", 5)
+                , new GeoJSONFeature.Property("position", 1)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("task-status", "negative")
+                , new GeoJSONFeature.Property("floors", 2)
+                , new GeoJSONFeature.Property("position", 2)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("task-status", "unknown")
+                , new GeoJSONFeature.Property("floors", 8)
+                , new GeoJSONFeature.Property("position", 3)));
+
+        List<Feature> actualFeatures = new FeatureFilter.Builder(FeatureCollection.fromFeatures(featuresList))
+                .whereAnyOf(new FeatureFilter.Group().whereEq("task-status", "positive")
+                        , new FeatureFilter.Group().whereGt("floors", 4))
+                .whereNot(new FeatureFilter.Group().whereEq("task-status", "unknown"))
+                .build()
+                .filter()
+                .features();
+
+        Assert.assertEquals(2, actualFeatures.size());
+        Assert.assertEquals(0, (int) actualFeatures.get(0).getNumberProperty("position"));
+        Assert.assertEquals(1, (int) actualFeatures.get(1).getNumberProperty("position"));
+    }
+
+    @Test
+    public void filterShouldReturnSameFeaturesWhenUsingFeatureIndex() {
+        ArrayList<Feature> featuresList = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("task-status", i % 3 == 0 ? "positive" : "negative")
+                    , new GeoJSONFeature.Property("floors", i % 10)
+                    , new GeoJSONFeature.Property("district", "district-" + (i % 7))
+                    , new GeoJSONFeature.Property("position", i)));
+        }
+
+        FeatureCollection featureCollection = FeatureCollection.fromFeatures(featuresList);
+        FeatureIndex featureIndex = new FeatureIndex(featureCollection);
+
+        FeatureFilter.Group[] groups = new FeatureFilter.Group[]{
+                new FeatureFilter.Group().whereEq("task-status", "positive").whereBetween("floors", 2, 6),
+                new FeatureFilter.Group().whereLt("floors", 3).whereRegex("district", "district-[12]"),
+                new FeatureFilter.Group().whereEq("floors", 9).whereNot(new FeatureFilter.Group().whereEq("district", "district-0"))
+        };
+
+        for (FeatureFilter.Group group : groups) {
+            List<Feature> expectedFeatures = new FeatureFilter.Builder(featureCollection)
+                    .whereAnyOf(group)
+                    .build()
+                    .filter()
+                    .features();
+            List<Feature> actualFeatures = new FeatureFilter.Builder(featureIndex)
+                    .whereAnyOf(group)
+                    .build()
+                    .filter()
+                    .features();
+
+            Assert.assertTrue(expectedFeatures.size() > 0);
+            Assert.assertEquals(expectedFeatures, actualFeatures);
+        }
+    }
+}
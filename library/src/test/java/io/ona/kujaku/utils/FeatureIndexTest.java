@@ -0,0 +1,48 @@
+package io.ona.kujaku.utils;
+
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import io.ona.kujaku.BaseTest;
+import io.ona.kujaku.utils.helpers.converters.GeoJSONFeature;
+
+public class FeatureIndexTest extends BaseTest {
+
+    @Test
+    public void getPositionsEqualToShouldReturnSortedPositionsOfMatchingFeatures() {
+        ArrayList<Feature> featuresList = new ArrayList<>();
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("task-status", "positive")));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("task-status", "negative")));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("task-status", "positive")));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("floors", 3)));
+
+        FeatureIndex featureIndex = new FeatureIndex(FeatureCollection.fromFeatures(featuresList));
+
+        Assert.assertArrayEquals(new int[]{0, 2}, featureIndex.getPositionsEqualTo("task-status", "positive"));
+        Assert.assertArrayEquals(new int[]{1}, featureIndex.getPositionsEqualTo("task-status", "negative"));
+        Assert.assertArrayEquals(new int[0], featureIndex.getPositionsEqualTo("task-status", "unknown"));
+        Assert.assertArrayEquals(new int[]{3}, featureIndex.getPositionsEqualTo("floors", "3"));
+    }
+
+    @Test
+    public void getPositionsInRangeShouldRespectBoundInclusivity() {
+        ArrayList<Feature> featuresList = new ArrayList<>();
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("floors", 5)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("floors", 1)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("floors", "3")));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("floors", 5)));
+        featuresList.add(generateRandomFeatureWithProperties(new GeoJSONFeature.Property("floors", "many")));
+
+        FeatureIndex featureIndex = new FeatureIndex(FeatureCollection.fromFeatures(featuresList));
+
+        Assert.assertArrayEquals(new int[]{0, 1, 2, 3}, featureIndex.getPositionsInRange("floors", 1, true, 5, true));
+        Assert.assertArrayEquals(new int[]{2}, featureIndex.getPositionsInRange("floors", 1, false, 5, false));
+        Assert.assertArrayEquals(new int[]{0, 3}, featureIndex.getPositionsInRange("floors", 5, true, Double.POSITIVE_INFINITY, true));
+        Assert.assertArrayEquals(new int[0], featureIndex.getPositionsInRange("floors", 5, false, Double.POSITIVE_INFINITY, true));
+    }
+}
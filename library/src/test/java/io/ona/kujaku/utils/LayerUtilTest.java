@@ -17,6 +17,7 @@ import org.robolectric.annotation.Config;
 import org.robolectric.shadow.api.Shadow;
 
 import java.io.IOException;
+import java.util.List;
 
 import io.ona.kujaku.BaseTest;
 import io.ona.kujaku.test.shadows.ShadowBackgroundLayer;
@@ -37,6 +38,7 @@ public class LayerUtilTest extends BaseTest {
     public void setUp() {
         context = RuntimeEnvironment.application;
         layerUtil = new LayerUtil();
+        LayerUtil.clearCache();
     }
 
     @Test
@@ -79,4 +81,53 @@ public class LayerUtilTest extends BaseTest {
         Assert.assertEquals(90f, result[1]);
         Assert.assertEquals(958f, result[6]);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getLayerDefinitionShouldCompileSameJsonOnce() {
+        String layerJson = "{\"id\": \"background\", \"type\": \"background\", \"paint\": {\"background-color\": \"#ffffff\", \"background-opacity\": [\"interpolate\", [\"linear\"], [\"zoom\"], 5, 0.5, 10, 1]}}";
+
+        LayerDefinition layerDefinition = layerUtil.getLayerDefinition(layerJson);
+        Assert.assertNotNull(layerDefinition);
+        Assert.assertSame(layerDefinition, new LayerUtil().getLayerDefinition(new String(layerJson.toCharArray())));
+        Assert.assertEquals("background", layerDefinition.getId());
+        Assert.assertEquals(2, layerDefinition.getPropertyCount());
+
+        Layer firstLayer = layerUtil.getLayer(layerJson);
+        Layer secondLayer = layerUtil.getLayer(layerJson);
+        Assert.assertNotSame(firstLayer, secondLayer);
+        Assert.assertTrue(((ShadowLayer) Shadow.extract(secondLayer)).getPropertyValues().containsKey("background-opacity"));
+    }
+
+    @Test
+    public void getLayerShouldReturnNullWhenJsonIsInvalid() {
+        Assert.assertNull(layerUtil.getLayer("{\"type\": \"background\"}"));
+        Assert.assertNull(layerUtil.getLayerDefinition("not json"));
+    }
+
+    @Test
+    public void getLayersShouldCreateValidLayersOfJsonArrayInOrder() {
+        String layersJson = "["
+                + "{\"id\": \"background\", \"type\": \"background\", \"paint\": {\"background-color\": \"#ffffff\"}},"
+                + "{\"type\": \"fill\"},"
+                + "{\"id\": \"satellite\", \"type\": \"raster\", \"source\": \"mapbox://mapbox.satellite\"}"
+                + "]";
+
+        List<Layer> layers = layerUtil.getLayers(layersJson);
+        Assert.assertEquals(2, layers.size());
+        Assert.assertTrue(layers.get(0) instanceof BackgroundLayer);
+        Assert.assertTrue(layers.get(1) instanceof RasterLayer);
+
+        List<LayerDefinition> layerDefinitions = layerUtil.getLayerDefinitions(layersJson);
+        Assert.assertSame(layerDefinitions, layerUtil.getLayerDefinitions(layersJson));
+        Assert.assertEquals("satellite", layerDefinitions.get(1).getId());
+        Assert.assertEquals("mapbox://mapbox.satellite", layerDefinitions.get(1).getSource());
+
+        List<Layer> newLayers = layerUtil.getLayers(layersJson);
+        Assert.assertNotSame(layers.get(0), newLayers.get(0));
+    }
+
+    @Test
+    public void getLayersShouldReturnEmptyListWhenJsonIsInvalid() {
+        Assert.assertEquals(0, layerUtil.getLayers("{}").size());
+    }
+}
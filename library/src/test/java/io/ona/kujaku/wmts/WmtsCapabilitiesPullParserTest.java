@@ -0,0 +1,125 @@
+package io.ona.kujaku.wmts;
+
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.Collections;
+
+import io.ona.kujaku.BaseTest;
+import io.ona.kujaku.wmts.model.WmtsCapabilities;
+import io.ona.kujaku.wmts.model.WmtsLayer;
+import io.ona.kujaku.wmts.model.WmtsStyle;
+import io.ona.kujaku.wmts.serializer.WmtsCapabilitiesPullParser;
+import io.ona.kujaku.wmts.serializer.WmtsCapabilitiesSerializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WmtsCapabilitiesPullParserTest extends BaseTest {
+
+    private static final String CAPABILITIES = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<Capabilities xmlns=\"http://www.opengis.net/wmts/1.0\" xmlns:ows=\"http://www.opengis.net/ows/1.1\" version=\"1.0.0\">"
+            + "<Contents>"
+            + createLayer("roads", "roads-set")
+            + createLayer("rivers", "rivers-set")
+            + createTileMatrixSet("roads-set", 0, 1)
+            + createTileMatrixSet("rivers-set", 0, 1, 2)
+            + createTileMatrixSet("unused-set", 5)
+            + "</Contents>"
+            + "</Capabilities>";
+
+    @Test
+    public void readShouldBuildSameCapabilitiesAsSerializer() throws Exception {
+        WmtsCapabilities expected = new WmtsCapabilitiesSerializer().read(WmtsCapabilities.class
+                , new InputStreamReader(getClass().getClassLoader().getResourceAsStream("Capabilities.xml")), false);
+
+        WmtsCapabilities capabilities = new WmtsCapabilitiesPullParser().read(
+                new InputStreamReader(getClass().getClassLoader().getResourceAsStream("Capabilities.xml")));
+
+        assertEquals(expected.getVersion(), capabilities.getVersion());
+        assertEquals(expected.getServiceIdentification().getTitles().get(0).getValue()
+                , capabilities.getServiceIdentification().getTitles().get(0).getValue());
+        assertEquals(expected.getLayers().size(), capabilities.getLayers().size());
+        assertEquals(expected.getContents().geTileMatrixSets().size(), capabilities.getContents().geTileMatrixSets().size());
+
+        for (String tileMatrixSet : new String[]{"default028mm", "GoogleMapsCompatible"}) {
+            assertEquals(expected.getMaximumTileMatrixZoom(tileMatrixSet), capabilities.getMaximumTileMatrixZoom(tileMatrixSet));
+            assertEquals(expected.getMinimumTileMatrixZoom(tileMatrixSet), capabilities.getMinimumTileMatrixZoom(tileMatrixSet));
+            assertEquals(expected.getTilesSize(tileMatrixSet), capabilities.getTilesSize(tileMatrixSet));
+        }
+
+        String layerIdentifier = "Vegetation_Mapping_Texas_Ecological_Mapping_Systems_Data";
+        WmtsLayer expectedLayer = expected.getLayer(layerIdentifier);
+        WmtsLayer layer = capabilities.getLayer(layerIdentifier);
+        assertNotNull(layer);
+        assertEquals(expectedLayer.getTitles().get(0).getValue(), layer.getTitles().get(0).getValue());
+        assertEquals(expectedLayer.getTemplateUrl("tile"), layer.getTemplateUrl("tile"));
+        assertEquals(expectedLayer.getSelectedTileMatrixLinkIdentifier(), layer.getSelectedTileMatrixLinkIdentifier());
+        assertEquals(expectedLayer.getTileMatrixSetLinks().size(), layer.getTileMatrixSetLinks().size());
+
+        WmtsStyle style = layer.getStyle("default");
+        assertNotNull(style);
+        assertTrue(style.isDefault());
+        assertEquals("Default Style", style.getTitles().get(0).getValue());
+    }
+
+    @Test
+    public void readShouldOnlyBuildRequestedLayersAndTheirTileMatrixSets() throws Exception {
+        WmtsCapabilities capabilities = new WmtsCapabilitiesPullParser().read(new StringReader(CAPABILITIES)
+                , Collections.singleton("rivers"));
+
+        assertEquals(1, capabilities.getLayers().size());
+        assertNull(capabilities.getLayer("roads"));
+        assertEquals("rivers-set", capabilities.getLayer("rivers").getSelectedTileMatrixLinkIdentifier());
+        assertEquals(1, capabilities.getContents().geTileMatrixSets().size());
+        assertEquals(2, capabilities.getMaximumTileMatrixZoom("rivers-set"));
+    }
+
+    @Test
+    public void readShouldBuildAllLayersWhenNoLayerIsRequested() throws Exception {
+        WmtsCapabilities capabilities = new WmtsCapabilitiesPullParser().read(new StringReader(CAPABILITIES));
+
+        assertEquals(2, capabilities.getLayers().size());
+        assertEquals(3, capabilities.getContents().geTileMatrixSets().size());
+        assertEquals(1, capabilities.getMaximumTileMatrixZoom("roads-set"));
+        assertEquals(5, capabilities.getMinimumTileMatrixZoom("unused-set"));
+        assertEquals("https://example.com/roads/{z}/{y}/{x}.png", capabilities.getLayer("roads").getTemplateUrl("tile"));
+    }
+
+    @Test(expected = XmlPullParserException.class)
+    public void readShouldThrowExceptionWhenDocumentIsNotCapabilities() throws Exception {
+        new WmtsCapabilitiesPullParser().read(new StringReader("<ExceptionReport><Exception/></ExceptionReport>"));
+    }
+
+    @Test(expected = XmlPullParserException.class)
+    public void readShouldThrowExceptionWhenCapabilitiesHaveNoContents() throws Exception {
+        new WmtsCapabilitiesPullParser().read(new StringReader("<Capabilities version=\"1.0.0\"></Capabilities>"));
+    }
+
+    private static String createLayer(String identifier, String tileMatrixSet) {
+        return "<Layer>"
+                + "<ows:Title>" + identifier + "</ows:Title>"
+                + "<ows:WGS84BoundingBox><ows:LowerCorner>-180 -90</ows:LowerCorner><ows:UpperCorner>180 90</ows:UpperCorner></ows:WGS84BoundingBox>"
+                + "<ows:Identifier>" + identifier + "</ows:Identifier>"
+                + "<Style isDefault=\"true\"><ows:Identifier>default</ows:Identifier></Style>"
+                + "<Format>image/png</Format>"
+                + "<TileMatrixSetLink><TileMatrixSet>" + tileMatrixSet + "</TileMatrixSet></TileMatrixSetLink>"
+                + "<ResourceURL format=\"image/png\" resourceType=\"tile\" template=\"https://example.com/" + identifier
+                + "/{TileMatrix}/{TileRow}/{TileCol}.png\"/>"
+                + "</Layer>";
+    }
+
+    private static String createTileMatrixSet(String identifier, int... zooms) {
+        StringBuilder tileMatrixSet = new StringBuilder("<TileMatrixSet><ows:Identifier>").append(identifier).append("</ows:Identifier>");
+        for (int zoom : zooms) {
+            tileMatrixSet.append("<TileMatrix><ows:Identifier>").append(zoom).append("</ows:Identifier>")
+                    .append("<TileWidth>256</TileWidth></TileMatrix>");
+        }
+
+        return tileMatrixSet.append("</TileMatrixSet>").toString();
+    }
+}
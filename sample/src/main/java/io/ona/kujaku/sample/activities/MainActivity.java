@@ -7,7 +7,6 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.NotificationCompat;
@@ -43,7 +42,7 @@ import io.ona.kujaku.sample.BuildConfig;
 import io.ona.kujaku.sample.MyApplication;
 import io.ona.kujaku.sample.R;
 import io.ona.kujaku.services.MapboxOfflineDownloaderService;
-import io.ona.kujaku.tasks.GenericAsyncTask;
+import io.ona.kujaku.tasks.TaskScheduler;
 import io.ona.kujaku.utils.Constants;
 import io.ona.kujaku.utils.Permissions;
 
@@ -194,15 +193,13 @@ public class MainActivity extends BaseNavigationDrawerActivity {
 
 
     private void fetchDroppedPoints(OnFinishedListener onFinishedListener) {
-        GenericAsyncTask genericAsyncTask = new GenericAsyncTask(new AsyncTaskCallable() {
+        TaskScheduler.getInstance().submit(new AsyncTaskCallable() {
             @Override
             public Object[] call() throws Exception {
                 List<Point> droppedPoints = MyApplication.getInstance().getPointsRepository().getAllPoints();
                 return new Object[]{droppedPoints};
             }
-        });
-        genericAsyncTask.setOnFinishedListener(onFinishedListener);
-        genericAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }, onFinishedListener);
     }
 
     private void setCanStopMapDownload(boolean enabled) {
@@ -435,7 +432,7 @@ public class MainActivity extends BaseNavigationDrawerActivity {
     }
 
     private void saveDroppedPoints(Intent data) {
-        GenericAsyncTask genericAsyncTask = new GenericAsyncTask(new AsyncTaskCallable() {
+        TaskScheduler.getInstance().submit(new AsyncTaskCallable() {
             @Override
             public Object[] call() throws Exception {
                 List<String> geoJSONFeatures = data.getStringArrayListExtra(NEW_FEATURE_POINTS_JSON);
@@ -453,9 +450,7 @@ public class MainActivity extends BaseNavigationDrawerActivity {
                 }
                 return null;
             }
-        });
-        genericAsyncTask.setOnFinishedListener(null);
-        genericAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }, null);
     }
   
     private void confirmSampleStyleAvailable() {
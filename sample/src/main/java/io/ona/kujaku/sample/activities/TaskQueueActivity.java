@@ -22,6 +22,7 @@ import es.dmoral.toasty.Toasty;
 import io.ona.kujaku.data.realm.RealmDatabase;
 import io.ona.kujaku.data.realm.objects.MapBoxOfflineQueueTask;
 import io.ona.kujaku.sample.R;
+import io.realm.Realm;
 import io.realm.RealmResults;
 
 /**
@@ -32,6 +33,8 @@ public class TaskQueueActivity extends BaseNavigationDrawerActivity {
 
     private static final String TAG = TaskQueueActivity.class.getName();
 
+    private Realm realm;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -41,10 +44,20 @@ public class TaskQueueActivity extends BaseNavigationDrawerActivity {
 
         RealmDatabase realmDatabase = RealmDatabase.init(this);
 
-        RealmResults<MapBoxOfflineQueueTask> realmResults = realmDatabase.getTasks();
+        realm = Realm.getDefaultInstance();
+        RealmResults<MapBoxOfflineQueueTask> realmResults = realmDatabase.getTasks(realm);
         displayQueueTasks(listView, realmResults);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (realm != null) {
+            realm.close();
+            realm = null;
+        }
+    }
+
     private void displayQueueTasks(@NonNull ListView listView, @NonNull final RealmResults<MapBoxOfflineQueueTask> realmResults) {
         if (realmResults.size() == 0) {
             Toasty.info(this, getString(R.string.no_offline_download_tasks), Toast.LENGTH_LONG)